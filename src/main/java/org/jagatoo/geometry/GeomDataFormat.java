@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Storage formats for vertex attribute components.<br>
+ * Normalized formats map the integer range to [-1, 1] (signed) or
+ * [0, 1] (unsigned) like OpenGL's normalized vertex attributes, so they
+ * only suit data in that range (normals, colors, most texture coordinates).
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public enum GeomDataFormat
+{
+    FLOAT( 4, false, true ),
+    HALF_FLOAT( 2, false, true ),
+    NORMALIZED_SHORT( 2, true, true ),
+    NORMALIZED_UNSIGNED_SHORT( 2, true, false ),
+    NORMALIZED_BYTE( 1, true, true ),
+    NORMALIZED_UNSIGNED_BYTE( 1, true, false ),
+    ;
+    
+    private final int componentSize;
+    private final boolean normalized;
+    private final boolean signed;
+    
+    /**
+     * @return the size of one component in bytes.
+     */
+    public final int getComponentSize()
+    {
+        return ( componentSize );
+    }
+    
+    public final boolean isNormalized()
+    {
+        return ( normalized );
+    }
+    
+    public final boolean isSigned()
+    {
+        return ( signed );
+    }
+    
+    private static final float clamp( float value, float min, float max )
+    {
+        if ( value < min )
+            return ( min );
+        if ( value > max )
+            return ( max );
+        
+        return ( value );
+    }
+    
+    /**
+     * Encodes the value at the given (absolute) byte position.
+     * 
+     * @param buffer
+     * @param position
+     * @param value
+     */
+    public final void put( ByteBuffer buffer, int position, float value )
+    {
+        switch ( this )
+        {
+            case FLOAT:
+                buffer.putFloat( position, value );
+                break;
+            case HALF_FLOAT:
+                buffer.putShort( position, floatToHalf( value ) );
+                break;
+            case NORMALIZED_SHORT:
+                buffer.putShort( position, (short)Math.round( clamp( value, -1f, 1f ) * 32767f ) );
+                break;
+            case NORMALIZED_UNSIGNED_SHORT:
+                buffer.putShort( position, (short)Math.round( clamp( value, 0f, 1f ) * 65535f ) );
+                break;
+            case NORMALIZED_BYTE:
+                buffer.put( position, (byte)Math.round( clamp( value, -1f, 1f ) * 127f ) );
+                break;
+            case NORMALIZED_UNSIGNED_BYTE:
+                buffer.put( position, (byte)Math.round( clamp( value, 0f, 1f ) * 255f ) );
+                break;
+        }
+    }
+    
+    /**
+     * Decodes the value at the given (absolute) byte position.
+     * 
+     * @param buffer
+     * @param position
+     * 
+     * @return the value
+     */
+    public final float get( ByteBuffer buffer, int position )
+    {
+        switch ( this )
+        {
+            case FLOAT:
+                return ( buffer.getFloat( position ) );
+            case HALF_FLOAT:
+                return ( halfToFloat( buffer.getShort( position ) ) );
+            case NORMALIZED_SHORT:
+                return ( Math.max( buffer.getShort( position ) / 32767f, -1f ) );
+            case NORMALIZED_UNSIGNED_SHORT:
+                return ( ( buffer.getShort( position ) & 0xFFFF ) / 65535f );
+            case NORMALIZED_BYTE:
+                return ( Math.max( buffer.get( position ) / 127f, -1f ) );
+            case NORMALIZED_UNSIGNED_BYTE:
+                return ( ( buffer.get( position ) & 0xFF ) / 255f );
+        }
+        
+        throw new Error( "Unsupported format " + this );
+    }
+    
+    /**
+     * Converts a float to an IEEE 754 half-precision float (round to nearest even).
+     * 
+     * @param value
+     * 
+     * @return the half-float bits
+     */
+    public static short floatToHalf( float value )
+    {
+        final int bits = Float.floatToRawIntBits( value );
+        final int sign = ( bits >>> 16 ) & 0x8000;
+        final int exponent = ( bits >>> 23 ) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+        
+        if ( exponent == 0xFF )
+        {
+            // Inf or NaN (keep NaN a NaN)
+            return ( (short)( sign | 0x7C00 | ( ( mantissa != 0 ) ? ( 0x200 | ( mantissa >>> 13 ) ) : 0 ) ) );
+        }
+        
+        final int halfExponent = exponent - 127 + 15;
+        
+        if ( halfExponent >= 0x1F )
+        {
+            // overflow to Inf
+            return ( (short)( sign | 0x7C00 ) );
+        }
+        
+        if ( halfExponent <= 0 )
+        {
+            if ( halfExponent < -10 )
+            {
+                // underflow to zero
+                return ( (short)sign );
+            }
+            
+            // denormalized half
+            mantissa |= 0x800000;
+            final int shift = 14 - halfExponent;
+            int half = mantissa >>> shift;
+            final int rest = mantissa & ( ( 1 << shift ) - 1 );
+            final int halfway = 1 << ( shift - 1 );
+            if ( ( rest > halfway ) || ( ( rest == halfway ) && ( ( half & 1 ) != 0 ) ) )
+                half++;
+            
+            return ( (short)( sign | half ) );
+        }
+        
+        int half = ( halfExponent << 10 ) | ( mantissa >>> 13 );
+        final int rest = mantissa & 0x1FFF;
+        if ( ( rest > 0x1000 ) || ( ( rest == 0x1000 ) && ( ( half & 1 ) != 0 ) ) )
+            half++; // may carry into the exponent, which is correct (up to Inf)
+        
+        return ( (short)( sign | half ) );
+    }
+    
+    /**
+     * Converts IEEE 754 half-precision float bits to a float.
+     * 
+     * @param half
+     * 
+     * @return the float value
+     */
+    public static float halfToFloat( short half )
+    {
+        final int sign = ( half & 0x8000 ) << 16;
+        int exponent = ( half >>> 10 ) & 0x1F;
+        int mantissa = half & 0x3FF;
+        
+        if ( exponent == 0x1F )
+            return ( Float.intBitsToFloat( sign | 0x7F800000 | ( mantissa << 13 ) ) );
+        
+        if ( exponent == 0 )
+        {
+            if ( mantissa == 0 )
+                return ( Float.intBitsToFloat( sign ) );
+            
+            // normalize the denormalized half
+            exponent = 1;
+            while ( ( mantissa & 0x400 ) == 0 )
+            {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3FF;
+        }
+        
+        return ( Float.intBitsToFloat( sign | ( ( exponent - 15 + 127 ) << 23 ) | ( mantissa << 13 ) ) );
+    }
+    
+    private GeomDataFormat( int componentSize, boolean normalized, boolean signed )
+    {
+        this.componentSize = componentSize;
+        this.normalized = normalized;
+        this.signed = signed;
+    }
+}
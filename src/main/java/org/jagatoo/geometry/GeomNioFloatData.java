@@ -399,4 +399,21 @@ public class GeomNioFloatData extends GeomNioData
     {
         this( maxElements, elemSize, 0, reversed );
     }
+    
+    /**
+     * Creates a GeomNioFloatData, that adopts the given buffer without copying it.
+     * 
+     * @param buffer a direct buffer in native byte order holding maxElements * elemSize floats (or maxElements * stride / 4 for interleaved data)
+     * @param maxElements
+     * @param elemSize
+     * @param stride the stride in bytes (0 for tightly packed data)
+     */
+    public GeomNioFloatData( FloatBuffer buffer, int maxElements, int elemSize, int stride )
+    {
+        super( maxElements, maxElements * elemSize, elemSize, stride, false );
+        
+        this.floatStride = stride / 4;
+        
+        this.buffer = buffer;
+    }
 }
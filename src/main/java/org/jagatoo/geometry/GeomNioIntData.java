@@ -30,28 +30,57 @@
 package org.jagatoo.geometry;
 
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import org.jagatoo.util.nio.BufferUtils;
 
 /**
- * An implementation of the float data holder which uses a direct
- * NIO buffer.
+ * An implementation of the int data holder which uses a direct
+ * NIO buffer.<br>
+ * The values can be stored in 16 bit (see {@link #isShortData()}), if they
+ * are all less than 65536, which halves the memory and upload bandwidth
+ * for index data. The int-based accessors work for both formats. Setting
+ * a value, that doesn't fit into 16 bit, throws an IllegalArgumentException.
  * 
  * @author David Yazel
+ * @author Marvin Froehlich (aka Qudus)
  */
 public class GeomNioIntData extends GeomNioData
 {
+    /**
+     * The largest number of vertices, that can be addressed by 16 bit indices.
+     */
+    public static final int MAX_SHORT_VERTICES = 65535;
+    
     private final IntBuffer buffer;
+    private final ShortBuffer shortBuffer;
     
     /**
-     * @return the NIO int buffer underlying this. If the underlying
-     * format is not a float buffer then it will be converted.
+     * @return true, if the data is stored in a ShortBuffer (see {@link #getShortBuffer()}).
+     */
+    public final boolean isShortData()
+    {
+        return ( shortBuffer != null );
+    }
+    
+    /**
+     * @return the NIO int buffer underlying this or null, if the data is
+     * stored in 16 bit (see {@link #getShortBuffer()}).
      */
     public final IntBuffer getBuffer()
     {
         return ( buffer );
     }
     
+    /**
+     * @return the NIO short buffer underlying this or null, if the data is
+     * stored in 32 bit (see {@link #getBuffer()}). The values are unsigned.
+     */
+    public final ShortBuffer getShortBuffer()
+    {
+        return ( shortBuffer );
+    }
+    
     /**
      * @return an array with all the ints assigned in the last draw cycle.
      * In some implementations this might return a copy, so only use if you
@@ -60,6 +89,15 @@ public class GeomNioIntData extends GeomNioData
      */
     public final int[] getData()
     {
+        if ( shortBuffer != null )
+        {
+            int f[] = new int[ shortBuffer.limit() ];
+            for ( int i = 0; i < f.length; i++ )
+                f[ i ] = shortBuffer.get( i ) & 0xFFFF;
+            
+            return ( f );
+        }
+        
         int f[] = new int[ buffer.limit() ];
         buffer.rewind();
         buffer.get( f );
@@ -70,7 +108,10 @@ public class GeomNioIntData extends GeomNioData
     @Override
     public final void start()
     {
-        buffer.clear();
+        if ( shortBuffer != null )
+            shortBuffer.clear();
+        else
+            buffer.clear();
         setDirty( true );
     }
     
@@ -78,38 +119,74 @@ public class GeomNioIntData extends GeomNioData
     {
     }
     
+    private static final short toShort( int value )
+    {
+        if ( ( value < 0 ) || ( value > 0xFFFF ) )
+            throw new IllegalArgumentException( "The value " + value + " doesn't fit into 16 bit index data." );
+        
+        return ( (short)value );
+    }
+    
+    private final void putShorts( int index, int[] a, int start, int length )
+    {
+        // Check all values first, so that nothing is written, if one doesn't fit.
+        for ( int i = 0; i < length; i++ )
+            toShort( a[ start + i ] );
+        
+        for ( int i = 0; i < length; i++ )
+            shortBuffer.put( index + i, (short)a[ start + i ] );
+    }
+    
     /**
      * Special optimized way to set a bulk amount of ints right into
      * the data, starting at the index specified.
      */
     public final void set( int[] a, int start, int length )
     {
-        buffer.put( a, start, length );
-        buffer.rewind();
+        if ( shortBuffer != null )
+        {
+            putShorts( 0, a, start, length );
+        }
+        else
+        {
+            buffer.put( a, start, length );
+            buffer.rewind();
+        }
         setDirty( true );
     }
     
     public final void set( int index, int[] a, int start, int length )
     {
-        buffer.position( index );
-        buffer.put( a, start, length );
-        buffer.position( index ); // JSR231 back to where we were
+        if ( shortBuffer != null )
+        {
+            putShorts( index, a, start, length );
+        }
+        else
+        {
+            buffer.position( index );
+            buffer.put( a, start, length );
+            buffer.position( index ); // JSR231 back to where we were
+        }
         setDirty( true );
     }
     
     public final void set( int index, int[] a )
     {
-        buffer.position( index );
-        buffer.put( a );
-        buffer.position( index ); // JSR231 back to where we were
-        setDirty( true );
+        set( index, a, 0, a.length );
     }
     
     public final void set( int index, int i )
     {
-        buffer.position( index );
-        buffer.put( i );
-        buffer.position( index ); // JSR231 back to where we were
+        if ( shortBuffer != null )
+        {
+            shortBuffer.put( index, toShort( i ) );
+        }
+        else
+        {
+            buffer.position( index );
+            buffer.put( i );
+            buffer.position( index ); // JSR231 back to where we were
+        }
         setDirty( true );
     }
     
@@ -122,6 +199,9 @@ public class GeomNioIntData extends GeomNioData
      */
     public final int get( int index )
     {
+        if ( shortBuffer != null )
+            return ( shortBuffer.get( index ) & 0xFFFF );
+        
         buffer.position( index );
         return ( buffer.get() );
     }
@@ -135,6 +215,14 @@ public class GeomNioIntData extends GeomNioData
      */
     public final void get( int i0, int[] index )
     {
+        if ( shortBuffer != null )
+        {
+            for ( int i = 0; i < index.length; i++ )
+                index[ i ] = shortBuffer.get( i0 + i ) & 0xFFFF;
+            
+            return;
+        }
+        
         buffer.position( i0 );
         buffer.get( index );
     }
@@ -153,27 +241,115 @@ public class GeomNioIntData extends GeomNioData
      */
     GeomNioIntData duplicateGeomData( boolean copy )
     {
-        GeomNioIntData data = newInstance( getMaxElements(), getElemSize(), getStride(), isReversed() );
+        GeomNioIntData data;
+        if ( shortBuffer != null )
+            data = new GeomNioIntData( getMaxElements(), getElemSize(), getStride(), isReversed(), true );
+        else
+            data = newInstance( getMaxElements(), getElemSize(), getStride(), isReversed() );
+        
         if ( copy )
         {
-            data.buffer.clear();
-            data.buffer.put( this.buffer );
-            data.buffer.rewind();
-            this.buffer.rewind();
+            if ( shortBuffer != null )
+            {
+                data.shortBuffer.clear();
+                this.shortBuffer.rewind();
+                data.shortBuffer.put( this.shortBuffer );
+                data.shortBuffer.rewind();
+                this.shortBuffer.rewind();
+            }
+            else
+            {
+                data.buffer.clear();
+                data.buffer.put( this.buffer );
+                data.buffer.rewind();
+                this.buffer.rewind();
+            }
         }
         
         return ( data );
     }
     
-    public GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed )
+    /**
+     * Creates a copy of this data in the requested format.
+     * 
+     * @param shortData store in 16 bit?
+     * 
+     * @return the converted copy or this, if it already has the requested format.
+     */
+    GeomNioIntData convert( boolean shortData )
+    {
+        if ( shortData == isShortData() )
+            return ( this );
+        
+        GeomNioIntData data = new GeomNioIntData( getMaxElements(), getElemSize(), getStride(), isReversed(), shortData );
+        
+        final int n = getMaxSize();
+        for ( int i = 0; i < n; i++ )
+            data.set( i, get( i ) );
+        
+        return ( data );
+    }
+    
+    /**
+     * @param maxElems
+     * @param elemSize
+     * @param stride
+     * @param reversed
+     * @param shortData store the values in 16 bit? All values must be less than 65536 then.
+     */
+    public GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed, boolean shortData )
     {
         super( maxElems, maxElems * elemSize, elemSize, stride, reversed );
         
-        this.buffer = BufferUtils.createIntBuffer( maxElems * elemSize );
+        if ( shortData )
+        {
+            this.buffer = null;
+            this.shortBuffer = BufferUtils.createShortBuffer( maxElems * elemSize );
+        }
+        else
+        {
+            this.buffer = BufferUtils.createIntBuffer( maxElems * elemSize );
+            this.shortBuffer = null;
+        }
+    }
+    
+    public GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed )
+    {
+        this( maxElems, elemSize, stride, reversed, false );
     }
     
     public GeomNioIntData( int maxElems, int elemSize, boolean reversed )
     {
         this( maxElems, elemSize, 0, reversed );
     }
+    
+    /**
+     * Creates a GeomNioIntData, that adopts the given buffer without copying it.
+     * 
+     * @param buffer a direct buffer in native byte order holding maxElems * elemSize ints
+     * @param maxElems
+     * @param elemSize
+     */
+    public GeomNioIntData( IntBuffer buffer, int maxElems, int elemSize )
+    {
+        super( maxElems, maxElems * elemSize, elemSize, 0, false );
+        
+        this.buffer = buffer;
+        this.shortBuffer = null;
+    }
+    
+    /**
+     * Creates a GeomNioIntData, that adopts the given 16 bit buffer without copying it.
+     * 
+     * @param buffer a direct buffer in native byte order holding maxElems * elemSize unsigned shorts
+     * @param maxElems
+     * @param elemSize
+     */
+    public GeomNioIntData( ShortBuffer buffer, int maxElems, int elemSize )
+    {
+        super( maxElems, maxElems * elemSize, elemSize, 0, false );
+        
+        this.buffer = null;
+        this.shortBuffer = buffer;
+    }
 }
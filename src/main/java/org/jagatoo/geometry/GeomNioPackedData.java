@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import java.nio.ByteBuffer;
+
+import org.jagatoo.util.nio.BufferUtils;
+
+/**
+ * Interleaved vertex data with a storage format per attribute.<br>
+ * Each attribute starts at a 4 byte aligned offset and the stride is a
+ * multiple of 4 bytes, so a vertex with float coordinates, byte normals
+ * and half-float texture coordinates takes 12 + 4 + 4 = 20 bytes instead
+ * of 32.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class GeomNioPackedData
+{
+    private final int numVertices;
+    private final int[] features;
+    private final int[] units;
+    private final int[] sizes;
+    private final GeomDataFormat[] formats;
+    private final int[] offsets;
+    private final int stride;
+    
+    private final ByteBuffer buffer;
+    
+    private boolean dirty = true;
+    
+    public final int getNumVertices()
+    {
+        return ( numVertices );
+    }
+    
+    public final int getNumAttributes()
+    {
+        return ( sizes.length );
+    }
+    
+    /**
+     * @param attrib
+     * 
+     * @return the feature flag (e.g. {@link GeometryDataContainer#NORMALS}) of the attribute.
+     */
+    public final int getFeature( int attrib )
+    {
+        return ( features[ attrib ] );
+    }
+    
+    /**
+     * @param attrib
+     * 
+     * @return the texture unit or vertex attribute index of the attribute.
+     */
+    public final int getUnit( int attrib )
+    {
+        return ( units[ attrib ] );
+    }
+    
+    /**
+     * @param attrib
+     * 
+     * @return the number of components of the attribute.
+     */
+    public final int getSize( int attrib )
+    {
+        return ( sizes[ attrib ] );
+    }
+    
+    public final GeomDataFormat getFormat( int attrib )
+    {
+        return ( formats[ attrib ] );
+    }
+    
+    /**
+     * @param attrib
+     * 
+     * @return the byte offset of the attribute in each vertex.
+     */
+    public final int getOffset( int attrib )
+    {
+        return ( offsets[ attrib ] );
+    }
+    
+    /**
+     * @return the number of bytes per vertex.
+     */
+    public final int getStride()
+    {
+        return ( stride );
+    }
+    
+    /**
+     * @return the direct, native-order buffer holding all the vertices.
+     */
+    public final ByteBuffer getBuffer()
+    {
+        return ( buffer );
+    }
+    
+    /**
+     * Used by the renderer to set the data as non-dirty, plus for any function
+     * which wishes to dirty the data.
+     * 
+     * @param dirty
+     */
+    public void setDirty( boolean dirty )
+    {
+        this.dirty = dirty;
+    }
+    
+    public final boolean isDirty()
+    {
+        return ( dirty );
+    }
+    
+    /**
+     * @param feature the feature flag (e.g. {@link GeometryDataContainer#NORMALS})
+     * @param unit the texture unit or vertex attribute index (0 for the other features)
+     * 
+     * @return the attribute's index or -1, if it is not contained.
+     */
+    public final int findAttribute( int feature, int unit )
+    {
+        for ( int i = 0; i < features.length; i++ )
+        {
+            if ( ( features[ i ] == feature ) && ( units[ i ] == unit ) )
+                return ( i );
+        }
+        
+        return ( -1 );
+    }
+    
+    /**
+     * Encodes the given values for one vertex attribute.
+     * 
+     * @param vertex
+     * @param attrib
+     * @param values
+     * @param offset the offset in values
+     */
+    public final void set( int vertex, int attrib, float[] values, int offset )
+    {
+        final GeomDataFormat format = formats[ attrib ];
+        final int componentSize = format.getComponentSize();
+        
+        int pos = vertex * stride + offsets[ attrib ];
+        for ( int i = 0; i < sizes[ attrib ]; i++ )
+        {
+            format.put( buffer, pos, values[ offset + i ] );
+            pos += componentSize;
+        }
+        
+        dirty = true;
+    }
+    
+    /**
+     * Decodes the values of one vertex attribute.
+     * 
+     * @param vertex
+     * @param attrib
+     * @param values
+     * @param offset the offset in values
+     */
+    public final void get( int vertex, int attrib, float[] values, int offset )
+    {
+        final GeomDataFormat format = formats[ attrib ];
+        final int componentSize = format.getComponentSize();
+        
+        int pos = vertex * stride + offsets[ attrib ];
+        for ( int i = 0; i < sizes[ attrib ]; i++ )
+        {
+            values[ offset + i ] = format.get( buffer, pos );
+            pos += componentSize;
+        }
+    }
+    
+    /**
+     * @return a copy of this packed data with its own buffer.
+     */
+    public GeomNioPackedData duplicate()
+    {
+        GeomNioPackedData data = new GeomNioPackedData( numVertices, features.clone(), units.clone(), sizes.clone(), formats.clone() );
+        
+        data.buffer.clear();
+        this.buffer.rewind();
+        data.buffer.put( this.buffer );
+        data.buffer.rewind();
+        this.buffer.rewind();
+        
+        data.dirty = true;
+        
+        return ( data );
+    }
+    
+    /**
+     * @param numVertices
+     * @param features the feature flag of each attribute
+     * @param units the texture unit or vertex attribute index of each attribute
+     * @param sizes the number of components of each attribute
+     * @param formats the storage format of each attribute
+     */
+    public GeomNioPackedData( int numVertices, int[] features, int[] units, int[] sizes, GeomDataFormat[] formats )
+    {
+        this.numVertices = numVertices;
+        this.features = features;
+        this.units = units;
+        this.sizes = sizes;
+        this.formats = formats;
+        this.offsets = new int[ sizes.length ];
+        
+        int offset = 0;
+        for ( int i = 0; i < sizes.length; i++ )
+        {
+            offsets[ i ] = offset;
+            offset += ( sizes[ i ] * formats[ i ].getComponentSize() + 3 ) & ~3;
+        }
+        this.stride = offset;
+        
+        this.buffer = BufferUtils.createByteBuffer( numVertices * stride );
+    }
+}
@@ -75,6 +75,9 @@ public class GeometryDataContainer extends SimpleGeometryDataContainer
     protected final long[] vertexAttribsOffsets = new long[] { 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L };
     private int vertexFormat;
     
+    private GeomNioPackedData packedData = null;
+    private boolean packedSourceReleased = false;
+    
     /**
      * @return the format of the vertices in this object.
      */
@@ -1978,6 +1981,268 @@ public class GeometryDataContainer extends SimpleGeometryDataContainer
         makeInterleaved( features, colorAlpha, tuSizes, vaSizes );
     }
     
+    /**
+     * Builds a compact interleaved copy of the vertex data for upload (see
+     * {@link #getPackedData()}). Coordinates and vertex attributes are
+     * stored as floats, the other components in the given formats, so that
+     * each attribute may have a different width.<br>
+     * If releaseSource is true, the float normals, colors, texture-coordinates
+     * and vertex attributes are dropped, so that the packed data is their only
+     * copy. Only the coordinates stay (for bounds and picking). Otherwise the
+     * float data stays the editable source. Call {@link #updatePackedData()}
+     * after modifying it.
+     * 
+     * @param normalFormat
+     * @param colorFormat
+     * @param texCoordFormat
+     * @param releaseSource drop the float data of the packed non-coordinate attributes?
+     * 
+     * @return the packed data
+     */
+    public GeomNioPackedData makePacked( GeomDataFormat normalFormat, GeomDataFormat colorFormat, GeomDataFormat texCoordFormat, boolean releaseSource )
+    {
+        final int maxAttribs = 3 + textureUnitSize.length + vertexAttribsSize.length;
+        int[] features = new int[ maxAttribs ];
+        int[] units = new int[ maxAttribs ];
+        int[] sizes = new int[ maxAttribs ];
+        GeomDataFormat[] formats = new GeomDataFormat[ maxAttribs ];
+        int n = 0;
+        
+        if ( coords != null )
+        {
+            features[ n ] = COORDINATES; sizes[ n ] = getCoordinatesSize(); formats[ n ] = GeomDataFormat.FLOAT; n++;
+        }
+        
+        if ( hasNormals() )
+        {
+            features[ n ] = NORMALS; sizes[ n ] = 3; formats[ n ] = normalFormat; n++;
+        }
+        
+        if ( hasColors() )
+        {
+            features[ n ] = COLORS; sizes[ n ] = colorSize; formats[ n ] = colorFormat; n++;
+        }
+        
+        for ( int t = 0; t < textureUnitSize.length; t++ )
+        {
+            if ( hasTextureCoordinates( t ) )
+            {
+                features[ n ] = TEXTURE_COORDINATES; units[ n ] = t; sizes[ n ] = textureUnitSize[ t ]; formats[ n ] = texCoordFormat; n++;
+            }
+        }
+        
+        for ( int j = 0; j < vertexAttribsSize.length; j++ )
+        {
+            if ( hasVertexAttributes( j ) )
+            {
+                features[ n ] = VERTEX_ATTRIBUTES; units[ n ] = j; sizes[ n ] = vertexAttribsSize[ j ]; formats[ n ] = GeomDataFormat.FLOAT; n++;
+            }
+        }
+        
+        int[] features2 = new int[ n ];
+        int[] units2 = new int[ n ];
+        int[] sizes2 = new int[ n ];
+        GeomDataFormat[] formats2 = new GeomDataFormat[ n ];
+        System.arraycopy( features, 0, features2, 0, n );
+        System.arraycopy( units, 0, units2, 0, n );
+        System.arraycopy( sizes, 0, sizes2, 0, n );
+        System.arraycopy( formats, 0, formats2, 0, n );
+        
+        this.packedData = new GeomNioPackedData( getVertexCount(), features2, units2, sizes2, formats2 );
+        this.packedSourceReleased = false;
+        
+        updatePackedData();
+        
+        if ( releaseSource )
+        {
+            releaseUnpackedData();
+            this.packedSourceReleased = !isInterleaved();
+        }
+        
+        return ( packedData );
+    }
+    
+    /**
+     * Builds the packed data and keeps the float data as the editable source.
+     * 
+     * @see #makePacked(GeomDataFormat, GeomDataFormat, GeomDataFormat, boolean)
+     */
+    public final GeomNioPackedData makePacked( GeomDataFormat normalFormat, GeomDataFormat colorFormat, GeomDataFormat texCoordFormat )
+    {
+        return ( makePacked( normalFormat, colorFormat, texCoordFormat, false ) );
+    }
+    
+    /**
+     * Drops the float data, that is held by the packed data, except for the coordinates.
+     * Interleaved data is kept, since it is shared by all attributes.
+     */
+    private void releaseUnpackedData()
+    {
+        if ( isInterleaved() )
+            return;
+        
+        setNormalData( null );
+        setColorData( null );
+        
+        if ( texCoords != null )
+        {
+            texCoords = null;
+            texCoordSetMap = new int[ 0 ];
+            texCoordSetMap_public = new int[ 0 ];
+            vertexFormat &= ~TEXTURE_COORDINATES;
+        }
+        
+        if ( vertexAttribs != null )
+        {
+            vertexAttribs = null;
+            vertexFormat &= ~VERTEX_ATTRIBUTES;
+        }
+    }
+    
+    /**
+     * Encodes the current float data into the packed data again.
+     * Attributes, whose float data has been released, are left untouched.
+     */
+    public void updatePackedData()
+    {
+        if ( packedData == null )
+            return;
+        
+        final int numVertices = Math.min( getVertexCount(), packedData.getNumVertices() );
+        float[] values = new float[ 4 ];
+        
+        for ( int a = 0; a < packedData.getNumAttributes(); a++ )
+        {
+            final int feature = packedData.getFeature( a );
+            final int unit = packedData.getUnit( a );
+            
+            if ( !hasSourceData( feature, unit ) )
+                continue;
+            
+            for ( int i = 0; i < numVertices; i++ )
+            {
+                values[ 0 ] = 0f; values[ 1 ] = 0f; values[ 2 ] = 0f; values[ 3 ] = 0f;
+                
+                switch ( feature )
+                {
+                    case COORDINATES:
+                        getCoordinate( i, values );
+                        break;
+                    case NORMALS:
+                        getNormal( i, values );
+                        break;
+                    case COLORS:
+                        getColor( i, values );
+                        break;
+                    case TEXTURE_COORDINATES:
+                        getTextureCoordinate( unit, i, values );
+                        break;
+                    case VERTEX_ATTRIBUTES:
+                        getVertexAttribute( unit, i, values );
+                        break;
+                }
+                
+                packedData.set( i, a, values, 0 );
+            }
+        }
+    }
+    
+    private boolean hasSourceData( int feature, int unit )
+    {
+        switch ( feature )
+        {
+            case COORDINATES:
+                return ( coords != null );
+            case NORMALS:
+                return ( hasNormals() );
+            case COLORS:
+                return ( hasColors() );
+            case TEXTURE_COORDINATES:
+                return ( hasTextureCoordinates( unit ) );
+            case VERTEX_ATTRIBUTES:
+                return ( hasVertexAttributes( unit ) );
+        }
+        
+        return ( false );
+    }
+    
+    /**
+     * @return the packed data built by {@link #makePacked(GeomDataFormat, GeomDataFormat, GeomDataFormat)} or null.
+     */
+    public final GeomNioPackedData getPackedData()
+    {
+        return ( packedData );
+    }
+    
+    public final boolean isPacked()
+    {
+        return ( packedData != null );
+    }
+    
+    /**
+     * @return true, if the packed data is the only copy of some attributes
+     *         (see {@link #makePacked(GeomDataFormat, GeomDataFormat, GeomDataFormat, boolean)}).
+     */
+    public final boolean isPackedSourceReleased()
+    {
+        return ( packedSourceReleased );
+    }
+    
+    /**
+     * Decodes the attributes, whose float data has been released, from the packed data
+     * back into float data.
+     */
+    private void restoreUnpackedData()
+    {
+        final int numVertices = Math.min( getVertexCount(), packedData.getNumVertices() );
+        
+        for ( int a = 0; a < packedData.getNumAttributes(); a++ )
+        {
+            final int feature = packedData.getFeature( a );
+            final int unit = packedData.getUnit( a );
+            
+            if ( hasSourceData( feature, unit ) )
+                continue;
+            
+            float[] values = new float[ packedData.getSize( a ) ];
+            
+            for ( int i = 0; i < numVertices; i++ )
+            {
+                packedData.get( i, a, values, 0 );
+                
+                switch ( feature )
+                {
+                    case NORMALS:
+                        setNormal( i, values );
+                        break;
+                    case COLORS:
+                        setColor( i, values );
+                        break;
+                    case TEXTURE_COORDINATES:
+                        setTextureCoordinate( unit, i, values );
+                        break;
+                    case VERTEX_ATTRIBUTES:
+                        setVertexAttribute( unit, i, values );
+                        break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Drops the packed data. If the float data has been released by
+     * {@link #makePacked(GeomDataFormat, GeomDataFormat, GeomDataFormat, boolean)},
+     * it is decoded from the packed data first, so that no attribute is lost.
+     */
+    public void releasePackedData()
+    {
+        if ( ( packedData != null ) && packedSourceReleased )
+            restoreUnpackedData();
+        
+        this.packedData = null;
+        this.packedSourceReleased = false;
+    }
+    
     @Override
     protected void copyFrom( SimpleGeometryDataContainer original, boolean forceDuplicate )
     {
@@ -1988,6 +2253,7 @@ public class GeometryDataContainer extends SimpleGeometryDataContainer
         this.texCoordSetMap = ( o.texCoordSetMap != null ) ? o.texCoordSetMap.clone() : null;
         this.texCoordSetMap_public = ( o.texCoordSetMap_public != null ) ? o.texCoordSetMap_public.clone() : null;
         System.arraycopy( o.textureUnitSize, 0, this.textureUnitSize, 0, o.textureUnitSize.length );
+        System.arraycopy( o.vertexAttribsSize, 0, this.vertexAttribsSize, 0, o.vertexAttribsSize.length );
         this.colorSize = o.colorSize;
         this.vertexFormat = o.vertexFormat;
         this.hasNormals = o.hasNormals;
@@ -2035,6 +2301,9 @@ public class GeometryDataContainer extends SimpleGeometryDataContainer
                 }
             }
 //        }
+        
+        this.packedData = ( o.packedData != null ) ? o.packedData.duplicate() : null;
+        this.packedSourceReleased = o.packedSourceReleased;
     }
     
     protected GeometryDataContainer( GeometryArrayType type, boolean hasIndex, int coordsSize, int vertexCount, int[] stripCounts, int indexCount )
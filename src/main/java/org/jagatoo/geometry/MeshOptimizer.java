@@ -0,0 +1,836 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import org.jagatoo.opengl.enums.GeometryArrayType;
+
+/**
+ * Reorders indexed triangle meshes for the post-transform vertex cache,
+ * for overdraw and for vertex fetch locality.<br>
+ * <br>
+ * The triangle order is optimized by Tom Forsyth's "Linear-Speed Vertex
+ * Cache Optimisation". The optional overdraw pass splits the result into
+ * clusters at the points, where the cache would be flushed anyway (or the
+ * cache efficiency stays within a threshold) and sorts the clusters, so
+ * that outward facing clusters are drawn first (after Sander et al., "Fast
+ * Triangle Reordering for Vertex Locality and Reduced Overdraw"). Finally
+ * the vertices can be renumbered in the order of their first use.<br>
+ * <br>
+ * The efficiency is measured by the ACMR (average cache miss ratio:
+ * transformed vertices per triangle) and the ATVR (average transform to
+ * vertex ratio: transformed vertices per referenced vertex, 1.0 being
+ * optimal) of a simulated FIFO cache.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public final class MeshOptimizer
+{
+    /**
+     * The size of the simulated FIFO cache used for the statistics.
+     */
+    public static final int DEFAULT_FIFO_SIZE = 16;
+    
+    /**
+     * The cache clusters may be worse than the whole mesh by this factor
+     * in the overdraw pass.
+     */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+    
+    private static final int MIN_CLUSTER_SIZE = 8;
+    private static final int CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRI_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    
+    private static final float[] CACHE_SCORES = new float[ CACHE_SIZE ];
+    private static final float[] VALENCE_SCORES = new float[ 64 ];
+    static
+    {
+        for ( int i = 0; i < CACHE_SIZE; i++ )
+        {
+            if ( i < 3 )
+                CACHE_SCORES[ i ] = LAST_TRI_SCORE;
+            else
+                CACHE_SCORES[ i ] = (float)Math.pow( 1.0 - (double)( i - 3 ) / ( CACHE_SIZE - 3 ), CACHE_DECAY_POWER );
+        }
+        
+        for ( int i = 1; i < VALENCE_SCORES.length; i++ )
+            VALENCE_SCORES[ i ] = VALENCE_BOOST_SCALE * (float)Math.pow( i, -VALENCE_BOOST_POWER );
+    }
+    
+    /**
+     * ACMR and ATVR before and after an optimization.
+     */
+    public static class Statistics
+    {
+        private int numTriangles = 0;
+        private int numVertices = 0;
+        private long transformsBefore = 0L;
+        private long transformsAfter = 0L;
+        
+        public final int getNumTriangles()
+        {
+            return ( numTriangles );
+        }
+        
+        /**
+         * @return the number of referenced vertices.
+         */
+        public final int getNumVertices()
+        {
+            return ( numVertices );
+        }
+        
+        public final float getACMRBefore()
+        {
+            return ( ( numTriangles == 0 ) ? 0f : (float)transformsBefore / numTriangles );
+        }
+        
+        public final float getACMRAfter()
+        {
+            return ( ( numTriangles == 0 ) ? 0f : (float)transformsAfter / numTriangles );
+        }
+        
+        public final float getATVRBefore()
+        {
+            return ( ( numVertices == 0 ) ? 0f : (float)transformsBefore / numVertices );
+        }
+        
+        public final float getATVRAfter()
+        {
+            return ( ( numVertices == 0 ) ? 0f : (float)transformsAfter / numVertices );
+        }
+        
+        /**
+         * Accumulates the given statistics into this one.
+         * 
+         * @param stats
+         */
+        public void add( Statistics stats )
+        {
+            synchronized ( this )
+            {
+                this.numTriangles += stats.numTriangles;
+                this.numVertices += stats.numVertices;
+                this.transformsBefore += stats.transformsBefore;
+                this.transformsAfter += stats.transformsAfter;
+            }
+        }
+        
+        public void reset()
+        {
+            synchronized ( this )
+            {
+                numTriangles = 0;
+                numVertices = 0;
+                transformsBefore = 0L;
+                transformsAfter = 0L;
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return ( numTriangles + " triangles, " + numVertices + " vertices, ACMR " + getACMRBefore() + " -> " + getACMRAfter() + ", ATVR " + getATVRBefore() + " -> " + getATVRAfter() );
+        }
+    }
+    
+    /**
+     * Simulates a FIFO cache.
+     * 
+     * @return the number of transformed vertices.
+     */
+    private static int countTransforms( int[] indices, int offset, int numIndices, int numVertices, int fifoSize )
+    {
+        int[] timestamps = new int[ numVertices ];
+        int time = fifoSize + 1;
+        int transforms = 0;
+        
+        for ( int i = offset; i < offset + numIndices; i++ )
+        {
+            final int v = indices[ i ];
+            
+            if ( time - timestamps[ v ] > fifoSize )
+            {
+                timestamps[ v ] = time++;
+                transforms++;
+            }
+        }
+        
+        return ( transforms );
+    }
+    
+    private static int countReferencedVertices( int[] indices, int offset, int numIndices, int numVertices )
+    {
+        boolean[] used = new boolean[ numVertices ];
+        int count = 0;
+        
+        for ( int i = offset; i < offset + numIndices; i++ )
+        {
+            if ( !used[ indices[ i ] ] )
+            {
+                used[ indices[ i ] ] = true;
+                count++;
+            }
+        }
+        
+        return ( count );
+    }
+    
+    /**
+     * @param indices triangle list indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * @param fifoSize
+     * 
+     * @return the average cache miss ratio (transformed vertices per triangle) of a FIFO cache of the given size.
+     */
+    public static float computeACMR( int[] indices, int offset, int numIndices, int numVertices, int fifoSize )
+    {
+        if ( numIndices < 3 )
+            return ( 0f );
+        
+        return ( (float)countTransforms( indices, offset, numIndices, numVertices, fifoSize ) / ( numIndices / 3 ) );
+    }
+    
+    /**
+     * @param indices triangle list indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * @param fifoSize
+     * 
+     * @return the average transform to vertex ratio (transformed vertices per referenced vertex) of a FIFO cache of the given size.
+     */
+    public static float computeATVR( int[] indices, int offset, int numIndices, int numVertices, int fifoSize )
+    {
+        final int referenced = countReferencedVertices( indices, offset, numIndices, numVertices );
+        
+        if ( referenced == 0 )
+            return ( 0f );
+        
+        return ( (float)countTransforms( indices, offset, numIndices, numVertices, fifoSize ) / referenced );
+    }
+    
+    private static final float computeVertexScore( int cachePos, int remaining )
+    {
+        if ( remaining == 0 )
+            return ( -1f );
+        
+        float score = ( cachePos < 0 ) ? 0f : CACHE_SCORES[ cachePos ];
+        
+        if ( remaining < VALENCE_SCORES.length )
+            score += VALENCE_SCORES[ remaining ];
+        else
+            score += VALENCE_BOOST_SCALE * (float)Math.pow( remaining, -VALENCE_BOOST_POWER );
+        
+        return ( score );
+    }
+    
+    /**
+     * Reorders the triangles for the post-transform vertex cache (in place).
+     * 
+     * @param indices triangle list indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     */
+    public static void optimizeVertexCache( int[] indices, int offset, int numIndices, int numVertices )
+    {
+        final int numTris = numIndices / 3;
+        
+        if ( numTris < 2 )
+            return;
+        
+        // vertex -> triangles adjacency (compressed rows)
+        int[] remaining = new int[ numVertices ];
+        for ( int i = 0; i < numTris * 3; i++ )
+            remaining[ indices[ offset + i ] ]++;
+        
+        int[] adjStart = new int[ numVertices + 1 ];
+        for ( int v = 0; v < numVertices; v++ )
+            adjStart[ v + 1 ] = adjStart[ v ] + remaining[ v ];
+        
+        int[] adjacency = new int[ numTris * 3 ];
+        int[] fill = new int[ numVertices ];
+        for ( int t = 0; t < numTris; t++ )
+        {
+            for ( int k = 0; k < 3; k++ )
+            {
+                final int v = indices[ offset + t * 3 + k ];
+                adjacency[ adjStart[ v ] + fill[ v ]++ ] = t;
+            }
+        }
+        fill = null;
+        
+        int[] cachePos = new int[ numVertices ];
+        float[] vertexScores = new float[ numVertices ];
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            cachePos[ v ] = -1;
+            vertexScores[ v ] = computeVertexScore( -1, remaining[ v ] );
+        }
+        
+        boolean[] emitted = new boolean[ numTris ];
+        float[] triScores = new float[ numTris ];
+        for ( int t = 0; t < numTris; t++ )
+        {
+            triScores[ t ] = vertexScores[ indices[ offset + t * 3 + 0 ] ] + vertexScores[ indices[ offset + t * 3 + 1 ] ] + vertexScores[ indices[ offset + t * 3 + 2 ] ];
+        }
+        
+        int[] result = new int[ numTris * 3 ];
+        
+        int[] cache = new int[ CACHE_SIZE + 3 ];
+        int[] newCache = new int[ CACHE_SIZE + 3 ];
+        int cacheCount = 0;
+        
+        int bestTri = 0;
+        for ( int t = 1; t < numTris; t++ )
+        {
+            if ( triScores[ t ] > triScores[ bestTri ] )
+                bestTri = t;
+        }
+        
+        int scanCursor = 0;
+        
+        for ( int n = 0; n < numTris; n++ )
+        {
+            if ( bestTri < 0 )
+            {
+                // No candidate in the cache. Take the next unemitted triangle in input order.
+                // Searching triScores for the best one would make this quadratic.
+                while ( emitted[ scanCursor ] )
+                    scanCursor++;
+                
+                bestTri = scanCursor;
+            }
+            
+            final int t = bestTri;
+            emitted[ t ] = true;
+            
+            int newCount = 0;
+            for ( int k = 0; k < 3; k++ )
+            {
+                final int v = indices[ offset + t * 3 + k ];
+                result[ n * 3 + k ] = v;
+                
+                // remove the triangle from the vertex' active list
+                final int start = adjStart[ v ];
+                final int last = start + remaining[ v ] - 1;
+                for ( int a = start; a <= last; a++ )
+                {
+                    if ( adjacency[ a ] == t )
+                    {
+                        adjacency[ a ] = adjacency[ last ];
+                        adjacency[ last ] = t;
+                        break;
+                    }
+                }
+                remaining[ v ]--;
+                
+                boolean contained = false;
+                for ( int c = 0; c < newCount; c++ )
+                {
+                    if ( newCache[ c ] == v )
+                    {
+                        contained = true;
+                        break;
+                    }
+                }
+                if ( !contained )
+                    newCache[ newCount++ ] = v;
+            }
+            
+            for ( int c = 0; c < cacheCount; c++ )
+            {
+                final int v = cache[ c ];
+                
+                if ( ( v != newCache[ 0 ] ) && ( ( newCount < 2 ) || ( v != newCache[ 1 ] ) ) && ( ( newCount < 3 ) || ( v != newCache[ 2 ] ) ) )
+                    newCache[ newCount++ ] = v;
+            }
+            
+            int[] tmp = cache;
+            cache = newCache;
+            newCache = tmp;
+            cacheCount = newCount;
+            
+            // update the vertex scores (evicted vertices drop out of the cache)
+            for ( int c = 0; c < cacheCount; c++ )
+            {
+                final int v = cache[ c ];
+                cachePos[ v ] = ( c < CACHE_SIZE ) ? c : -1;
+                vertexScores[ v ] = computeVertexScore( cachePos[ v ], remaining[ v ] );
+            }
+            
+            if ( cacheCount > CACHE_SIZE )
+                cacheCount = CACHE_SIZE;
+            
+            // update the scores of the affected triangles and find the best one
+            bestTri = -1;
+            float bestScore = -1f;
+            for ( int c = 0; c < cacheCount; c++ )
+            {
+                final int v = cache[ c ];
+                
+                for ( int a = adjStart[ v ]; a < adjStart[ v ] + remaining[ v ]; a++ )
+                {
+                    final int t2 = adjacency[ a ];
+                    final float score = vertexScores[ indices[ offset + t2 * 3 + 0 ] ] + vertexScores[ indices[ offset + t2 * 3 + 1 ] ] + vertexScores[ indices[ offset + t2 * 3 + 2 ] ];
+                    triScores[ t2 ] = score;
+                    
+                    if ( score > bestScore )
+                    {
+                        bestScore = score;
+                        bestTri = t2;
+                    }
+                }
+            }
+        }
+        
+        System.arraycopy( result, 0, indices, offset, numTris * 3 );
+    }
+    
+    /**
+     * Reorders the clusters of an already cache optimized triangle list, so
+     * that outward facing clusters are drawn first (in place).
+     * 
+     * @param indices triangle list indices
+     * @param offset
+     * @param numIndices
+     * @param coords the vertex coordinates (3 floats per vertex)
+     * @param numVertices
+     * @param threshold the factor, by which the ACMR may get worse (e.g. {@link #DEFAULT_OVERDRAW_THRESHOLD})
+     */
+    public static void optimizeOverdraw( int[] indices, int offset, int numIndices, float[] coords, int numVertices, float threshold )
+    {
+        final int numTris = numIndices / 3;
+        
+        if ( numTris < 2 )
+            return;
+        
+        // find the cluster boundaries through a FIFO cache simulation
+        final float targetACMR = computeACMR( indices, offset, numTris * 3, numVertices, DEFAULT_FIFO_SIZE ) * threshold;
+        
+        int[] clusterStarts = new int[ numTris + 1 ];
+        int numClusters = 0;
+        
+        int[] timestamps = new int[ numVertices ];
+        int time = DEFAULT_FIFO_SIZE + 1;
+        int clusterMisses = 0;
+        int clusterStart = 0;
+        
+        for ( int t = 0; t < numTris; t++ )
+        {
+            final int clusterSize = t - clusterStart;
+            
+            // A cluster will start with a cold cache after the reordering.
+            // So it may only be split, when it is as good as the whole mesh including that cost.
+            if ( ( t == 0 ) || ( ( clusterSize >= MIN_CLUSTER_SIZE ) && ( (float)clusterMisses / clusterSize <= targetACMR ) ) )
+            {
+                clusterStarts[ numClusters++ ] = t;
+                clusterStart = t;
+                clusterMisses = 0;
+                time += DEFAULT_FIFO_SIZE + 1;
+            }
+            
+            int misses = 0;
+            for ( int k = 0; k < 3; k++ )
+            {
+                final int v = indices[ offset + t * 3 + k ];
+                if ( time - timestamps[ v ] > DEFAULT_FIFO_SIZE )
+                {
+                    timestamps[ v ] = time++;
+                    misses++;
+                }
+            }
+            
+            // The cache has been flushed anyway. So this is a free boundary.
+            if ( ( misses == 3 ) && ( clusterStart != t ) )
+            {
+                clusterStarts[ numClusters++ ] = t;
+                clusterStart = t;
+                clusterMisses = 0;
+            }
+            
+            clusterMisses += misses;
+        }
+        clusterStarts[ numClusters ] = numTris;
+        
+        if ( numClusters < 2 )
+            return;
+        
+        // mesh centroid
+        double mx = 0.0, my = 0.0, mz = 0.0;
+        for ( int i = 0; i < numTris * 3; i++ )
+        {
+            final int v = indices[ offset + i ] * 3;
+            mx += coords[ v + 0 ];
+            my += coords[ v + 1 ];
+            mz += coords[ v + 2 ];
+        }
+        mx /= numTris * 3;
+        my /= numTris * 3;
+        mz /= numTris * 3;
+        
+        // sort key: the cluster's (area weighted) normal dotted with its direction from the mesh centroid
+        final float[] keys = new float[ numClusters ];
+        Integer[] order = new Integer[ numClusters ];
+        for ( int c = 0; c < numClusters; c++ )
+        {
+            double cx = 0.0, cy = 0.0, cz = 0.0;
+            double nx = 0.0, ny = 0.0, nz = 0.0;
+            double area = 0.0;
+            
+            for ( int t = clusterStarts[ c ]; t < clusterStarts[ c + 1 ]; t++ )
+            {
+                final int a = indices[ offset + t * 3 + 0 ] * 3;
+                final int b = indices[ offset + t * 3 + 1 ] * 3;
+                final int d = indices[ offset + t * 3 + 2 ] * 3;
+                
+                final double e1x = coords[ b + 0 ] - coords[ a + 0 ], e1y = coords[ b + 1 ] - coords[ a + 1 ], e1z = coords[ b + 2 ] - coords[ a + 2 ];
+                final double e2x = coords[ d + 0 ] - coords[ a + 0 ], e2y = coords[ d + 1 ] - coords[ a + 1 ], e2z = coords[ d + 2 ] - coords[ a + 2 ];
+                final double tnx = e1y * e2z - e1z * e2y;
+                final double tny = e1z * e2x - e1x * e2z;
+                final double tnz = e1x * e2y - e1y * e2x;
+                final double tArea = Math.sqrt( tnx * tnx + tny * tny + tnz * tnz );
+                
+                nx += tnx;
+                ny += tny;
+                nz += tnz;
+                
+                cx += ( coords[ a + 0 ] + coords[ b + 0 ] + coords[ d + 0 ] ) * tArea;
+                cy += ( coords[ a + 1 ] + coords[ b + 1 ] + coords[ d + 1 ] ) * tArea;
+                cz += ( coords[ a + 2 ] + coords[ b + 2 ] + coords[ d + 2 ] ) * tArea;
+                area += tArea;
+            }
+            
+            final double nLength = Math.sqrt( nx * nx + ny * ny + nz * nz );
+            if ( ( area > 0.0 ) && ( nLength > 0.0 ) )
+            {
+                final double inv = 1.0 / ( area * 3.0 );
+                keys[ c ] = (float)( ( ( cx * inv - mx ) * nx + ( cy * inv - my ) * ny + ( cz * inv - mz ) * nz ) / nLength );
+            }
+            
+            order[ c ] = c;
+        }
+        
+        java.util.Arrays.sort( order, new java.util.Comparator<Integer>()
+        {
+            public int compare( Integer c1, Integer c2 )
+            {
+                return ( Float.compare( keys[ c2.intValue() ], keys[ c1.intValue() ] ) );
+            }
+        } );
+        
+        int[] result = new int[ numTris * 3 ];
+        int n = 0;
+        for ( int i = 0; i < numClusters; i++ )
+        {
+            final int c = order[ i ].intValue();
+            final int length = ( clusterStarts[ c + 1 ] - clusterStarts[ c ] ) * 3;
+            System.arraycopy( indices, offset + clusterStarts[ c ] * 3, result, n, length );
+            n += length;
+        }
+        
+        System.arraycopy( result, 0, indices, offset, numTris * 3 );
+    }
+    
+    /**
+     * Computes a vertex order by first use in the index list and remaps the
+     * indices accordingly (in place). Unreferenced vertices are moved to the end.
+     * 
+     * @param indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * 
+     * @return the remap table (old vertex index to new vertex index).
+     */
+    public static int[] optimizeVertexFetch( int[] indices, int offset, int numIndices, int numVertices )
+    {
+        int[] remap = new int[ numVertices ];
+        for ( int v = 0; v < numVertices; v++ )
+            remap[ v ] = -1;
+        
+        int next = 0;
+        for ( int i = offset; i < offset + numIndices; i++ )
+        {
+            final int v = indices[ i ];
+            if ( remap[ v ] < 0 )
+                remap[ v ] = next++;
+            
+            indices[ i ] = remap[ v ];
+        }
+        
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            if ( remap[ v ] < 0 )
+                remap[ v ] = next++;
+        }
+        
+        return ( remap );
+    }
+    
+    /**
+     * Reorders per-vertex data by the given remap table.
+     * 
+     * @param data
+     * @param size the number of floats per vertex
+     * @param remap the remap table returned by {@link #optimizeVertexFetch(int[], int, int, int)}
+     * 
+     * @return the reordered data.
+     */
+    public static float[] remapVertexData( float[] data, int size, int[] remap )
+    {
+        float[] result = new float[ data.length ];
+        
+        for ( int v = 0; v < remap.length; v++ )
+            System.arraycopy( data, v * size, result, remap[ v ] * size, size );
+        
+        return ( result );
+    }
+    
+    /**
+     * @param indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * 
+     * @return true, if all indices in the given range reference one of the first numVertices vertices.
+     */
+    public static boolean checkIndices( int[] indices, int offset, int numIndices, int numVertices )
+    {
+        for ( int i = offset; i < offset + numIndices; i++ )
+        {
+            if ( ( indices[ i ] < 0 ) || ( indices[ i ] >= numVertices ) )
+                return ( false );
+        }
+        
+        return ( true );
+    }
+    
+    /**
+     * Runs the vertex cache pass and optionally the overdraw pass on a triangle list.
+     * 
+     * @param indices triangle list indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * @param coords the vertex coordinates (3 floats per vertex) for the overdraw pass or null to skip it
+     * 
+     * @return the ACMR/ATVR statistics.
+     */
+    public static Statistics optimizeTriangles( int[] indices, int offset, int numIndices, int numVertices, float[] coords )
+    {
+        Statistics stats = new Statistics();
+        stats.numTriangles = numIndices / 3;
+        stats.numVertices = countReferencedVertices( indices, offset, numIndices, numVertices );
+        stats.transformsBefore = countTransforms( indices, offset, numIndices, numVertices, DEFAULT_FIFO_SIZE );
+        
+        optimizeVertexCache( indices, offset, numIndices, numVertices );
+        
+        if ( coords != null )
+            optimizeOverdraw( indices, offset, numIndices, coords, numVertices, DEFAULT_OVERDRAW_THRESHOLD );
+        
+        stats.transformsAfter = countTransforms( indices, offset, numIndices, numVertices, DEFAULT_FIFO_SIZE );
+        
+        return ( stats );
+    }
+    
+    private static float[] readAttribute( GeometryDataContainer geom, int feature, int unit, int size, int numVertices )
+    {
+        float[] data = new float[ numVertices * size ];
+        float[] value = new float[ size ];
+        
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            switch ( feature )
+            {
+                case GeometryDataContainer.COORDINATES:
+                    geom.getCoordinate( v, value );
+                    break;
+                case GeometryDataContainer.NORMALS:
+                    geom.getNormal( v, value );
+                    break;
+                case GeometryDataContainer.COLORS:
+                    geom.getColor( v, value );
+                    break;
+                case GeometryDataContainer.TEXTURE_COORDINATES:
+                    geom.getTextureCoordinate( unit, v, value );
+                    break;
+                case GeometryDataContainer.VERTEX_ATTRIBUTES:
+                    geom.getVertexAttribute( unit, v, value );
+                    break;
+            }
+            
+            System.arraycopy( value, 0, data, v * size, size );
+        }
+        
+        return ( data );
+    }
+    
+    private static void writeAttribute( GeometryDataContainer geom, int feature, int unit, int size, float[] data, int numVertices )
+    {
+        float[] value = new float[ size ];
+        
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            System.arraycopy( data, v * size, value, 0, size );
+            
+            switch ( feature )
+            {
+                case GeometryDataContainer.COORDINATES:
+                    geom.setCoordinate( v, value );
+                    break;
+                case GeometryDataContainer.NORMALS:
+                    geom.setNormal( v, value );
+                    break;
+                case GeometryDataContainer.COLORS:
+                    geom.setColor( v, value );
+                    break;
+                case GeometryDataContainer.TEXTURE_COORDINATES:
+                    geom.setTextureCoordinate( unit, v, value );
+                    break;
+                case GeometryDataContainer.VERTEX_ATTRIBUTES:
+                    geom.setVertexAttribute( unit, v, value );
+                    break;
+            }
+        }
+    }
+    
+    private static void remapAttribute( GeometryDataContainer geom, int feature, int unit, int size, int[] remap, int numVertices )
+    {
+        writeAttribute( geom, feature, unit, size, remapVertexData( readAttribute( geom, feature, unit, size, numVertices ), size, remap ), numVertices );
+    }
+    
+    /**
+     * Optimizes the rendered range of an indexed triangle geometry: triangle
+     * order for the vertex cache, optionally cluster order for overdraw and
+     * vertex order for fetch locality. All vertex attributes are reordered
+     * accordingly. Only the vertices up to the highest referenced one are
+     * touched. Indices outside of the range are remapped, but not reordered.
+     * 
+     * @param geom
+     * @param initialIndex the first rendered index
+     * @param numIndices the number of rendered indices
+     * @param numVertices the number of valid vertices
+     * @param overdraw run the overdraw pass?
+     * 
+     * @return the ACMR/ATVR statistics or null, if the geometry is no indexed
+     * triangle list or any index doesn't reference a valid vertex.
+     */
+    public static Statistics optimize( GeometryDataContainer geom, int initialIndex, int numIndices, int numVertices, boolean overdraw )
+    {
+        if ( !geom.hasIndex() || ( geom.getType() != GeometryArrayType.TRIANGLES ) || ( geom.getCoordinatesSize() != 3 ) )
+            return ( null );
+        
+        final int indexCount = geom.getIndexCount();
+        
+        if ( ( initialIndex < 0 ) || ( initialIndex > indexCount ) )
+            return ( null );
+        
+        numIndices = Math.min( numIndices, indexCount - initialIndex );
+        numIndices -= numIndices % 3;
+        numVertices = Math.min( numVertices, geom.getVertexCount() );
+        
+        if ( numIndices < 3 )
+            return ( null );
+        
+        int[] indices = new int[ indexCount ];
+        geom.getIndex( indices );
+        
+        if ( !checkIndices( indices, initialIndex, numIndices, numVertices ) )
+            return ( null );
+        
+        int usedVertices = 0;
+        for ( int i = initialIndex; i < initialIndex + numIndices; i++ )
+            usedVertices = Math.max( usedVertices, indices[ i ] + 1 );
+        
+        final float[] coords = readAttribute( geom, GeometryDataContainer.COORDINATES, 0, 3, usedVertices );
+        
+        Statistics stats = optimizeTriangles( indices, initialIndex, numIndices, usedVertices, overdraw ? coords : null );
+        
+        int[] remap = optimizeVertexFetch( indices, initialIndex, numIndices, usedVertices );
+        
+        // The indices outside of the rendered range must keep referencing the same vertices.
+        for ( int i = 0; i < indexCount; i++ )
+        {
+            if ( ( ( i < initialIndex ) || ( i >= initialIndex + numIndices ) ) && ( indices[ i ] >= 0 ) && ( indices[ i ] < usedVertices ) )
+                indices[ i ] = remap[ indices[ i ] ];
+        }
+        
+        writeAttribute( geom, GeometryDataContainer.COORDINATES, 0, 3, remapVertexData( coords, 3, remap ), usedVertices );
+        
+        if ( geom.hasNormals() )
+            remapAttribute( geom, GeometryDataContainer.NORMALS, 0, 3, remap, usedVertices );
+        
+        if ( geom.hasColors() )
+            remapAttribute( geom, GeometryDataContainer.COLORS, 0, geom.getColorsSize(), remap, usedVertices );
+        
+        for ( int t = 0; t < geom.getNumTextureUnits(); t++ )
+        {
+            if ( geom.hasTextureCoordinates( t ) )
+                remapAttribute( geom, GeometryDataContainer.TEXTURE_COORDINATES, t, geom.getTexCoordSize( t ), remap, usedVertices );
+        }
+        
+        for ( int j = 0; j < geom.getVertexAttributesCount(); j++ )
+        {
+            if ( geom.hasVertexAttributes( j ) )
+                remapAttribute( geom, GeometryDataContainer.VERTEX_ATTRIBUTES, j, geom.getVertexAttribSize( j ), remap, usedVertices );
+        }
+        
+        geom.setIndex( indices );
+        
+        return ( stats );
+    }
+    
+    /**
+     * Optimizes the rendered range of an indexed triangle geometry
+     * (see {@link #optimize(GeometryDataContainer, int, int, int, boolean)}).
+     * For indexed geometries the valid vertex count is the number of
+     * rendered indices.
+     * 
+     * @param geom
+     * @param overdraw run the overdraw pass?
+     * 
+     * @return the ACMR/ATVR statistics or null, if the geometry is no indexed
+     * triangle list or any index doesn't reference a valid vertex.
+     */
+    public static Statistics optimize( GeometryDataContainer geom, boolean overdraw )
+    {
+        return ( optimize( geom, geom.getInitialIndex(), geom.getValidVertexCount(), geom.getVertexCount(), overdraw ) );
+    }
+    
+    private MeshOptimizer()
+    {
+    }
+}
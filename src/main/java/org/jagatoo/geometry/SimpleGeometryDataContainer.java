@@ -73,6 +73,26 @@ public class SimpleGeometryDataContainer implements VertexContainer
     protected long coordsOffset = 0L;
     protected static final boolean reversed = false;
     
+    private static volatile boolean shortIndicesPreferred = false;
+    
+    /**
+     * If enabled, new indexed geometries with at most
+     * {@link GeomNioIntData#MAX_SHORT_VERTICES} vertices store their indices
+     * in 16 bit. Renderers must check {@link GeomNioIntData#isShortData()} then.<br>
+     * The index data is still created through {@link #newNioIntData(int, int, boolean, boolean)}.
+     * 
+     * @param preferred
+     */
+    public static void setShortIndicesPreferred( boolean preferred )
+    {
+        shortIndicesPreferred = preferred;
+    }
+    
+    public static boolean isShortIndicesPreferred()
+    {
+        return ( shortIndicesPreferred );
+    }
+    
     /**
      * @return this Geometry's basic type (used by OpenGL).
      */
@@ -494,6 +514,49 @@ public class SimpleGeometryDataContainer implements VertexContainer
         return ( indexData.getMaxElements() );
     }
     
+    /**
+     * Directly sets the index data buffer.
+     * 
+     * @param data
+     */
+    public void setIndexData( GeomNioIntData data )
+    {
+        if ( !hasIndex() )
+            throw new Error( "This geometry is not indexed." );
+        
+        this.indexData = data;
+    }
+    
+    /**
+     * Converts the index data to 16 bit or back to 32 bit storage.
+     * 16 bit indices are only possible for geometries with at most
+     * {@link GeomNioIntData#MAX_SHORT_VERTICES} vertices.
+     * 
+     * @param enabled
+     * 
+     * @return true, if the indices are stored in 16 bit now.
+     */
+    public boolean setShortIndices( boolean enabled )
+    {
+        if ( !hasIndex() )
+            throw new Error( "This geometry is not indexed." );
+        
+        if ( enabled && ( maxVertices > GeomNioIntData.MAX_SHORT_VERTICES ) )
+            return ( indexData.isShortData() );
+        
+        this.indexData = indexData.convert( enabled );
+        
+        return ( indexData.isShortData() );
+    }
+    
+    /**
+     * @return true, if the indices are stored in 16 bit.
+     */
+    public final boolean hasShortIndices()
+    {
+        return ( ( indexData != null ) && indexData.isShortData() );
+    }
+    
     /**
      * Sets all index values.
      * 
@@ -639,6 +702,24 @@ public class SimpleGeometryDataContainer implements VertexContainer
         return ( new GeomNioIntData( maxElems, elemSize, reversed ) );
     }
     
+    /**
+     * Creates the index data. Override this to control the 16 bit storage.
+     * 
+     * @param maxElems
+     * @param elemSize
+     * @param reversed
+     * @param shortData store the values in 16 bit?
+     * 
+     * @return the new index data
+     */
+    protected GeomNioIntData newNioIntData( int maxElems, int elemSize, boolean reversed, boolean shortData )
+    {
+        if ( !shortData )
+            return ( newNioIntData( maxElems, elemSize, reversed ) );
+        
+        return ( new GeomNioIntData( maxElems, elemSize, 0, reversed, true ) );
+    }
+    
     protected SimpleGeometryDataContainer( GeometryArrayType type, boolean hasIndex, int coordsSize, int vertexCount, int[] stripCounts, int indexCount )
     {
         this.type = type;
@@ -651,7 +732,7 @@ public class SimpleGeometryDataContainer implements VertexContainer
         
         if ( hasIndex )
         {
-            this.indexData = newNioIntData( indexCount, 1, false );
+            this.indexData = newNioIntData( indexCount, 1, false, shortIndicesPreferred && ( vertexCount <= GeomNioIntData.MAX_SHORT_VERTICES ) );
             this.numVertices = indexCount;
         }
         else
@@ -71,8 +71,12 @@ public abstract class DeviceComponent
     
     protected static int nextID = 1;
     
+    private static volatile int numComponentIndices = 0;
+    
     private final int id = nextID++;
     
+    private final int componentIndex = allocateIndex();
+    
     private final String name;
     
     private final Type type;
@@ -88,6 +92,34 @@ public abstract class DeviceComponent
         return ( id );
     }
     
+    private static synchronized int allocateIndex()
+    {
+        return ( numComponentIndices++ );
+    }
+    
+    /**
+     * @return the number of indices, that have been handed out to {@link DeviceComponent}s so far.
+     *         All indices are smaller than this value.
+     */
+    public static final int getNumComponentIndices()
+    {
+        return ( numComponentIndices );
+    }
+    
+    /**
+     * Gets this component's index. Indices are zero based, dense and never change,
+     * so they can be used to look up per-component data in plain arrays
+     * instead of Maps.
+     * 
+     * @return this component's index.
+     * 
+     * @see #getNumComponentIndices()
+     */
+    public final int getComponentIndex()
+    {
+        return ( componentIndex );
+    }
+    
     /**
      * @return this component's name.
      */
@@ -29,8 +29,6 @@
  */
 package org.jagatoo.input.events;
 
-import java.util.ArrayList;
-
 import org.jagatoo.input.devices.Controller;
 import org.jagatoo.input.devices.components.ControllerAxis;
 import org.jagatoo.input.devices.components.ControllerButton;
@@ -43,30 +41,36 @@ import org.jagatoo.input.render.InputSourceWindow;
  */
 public final class ControllerEventPool
 {
-    private static ArrayList< ControllerAxisChangedEvent > instances_axis = new ArrayList< ControllerAxisChangedEvent >( 64 );
-    private static ArrayList< ControllerButtonPressedEvent > instances_pressed = new ArrayList< ControllerButtonPressedEvent >( 64 );
-    private static ArrayList< ControllerButtonReleasedEvent > instances_released = new ArrayList< ControllerButtonReleasedEvent >( 64 );
-    private static int n_axis = 0;
-    private static int n_pressed = 0;
-    private static int n_released = 0;
+    private static final EventPool<ControllerAxisChangedEvent> pool_axis = new EventPool<ControllerAxisChangedEvent>( "ControllerAxisChangedEvent" )
+    {
+        @Override
+        protected ControllerAxisChangedEvent newInstance()
+        {
+            return ( new ControllerAxisChangedEvent() );
+        }
+    };
     
-    private static final Object LOCK_axis = new Object();
-    private static final Object LOCK_pressed = new Object();
-    private static final Object LOCK_released = new Object();
+    private static final EventPool<ControllerButtonPressedEvent> pool_pressed = new EventPool<ControllerButtonPressedEvent>( "ControllerButtonPressedEvent" )
+    {
+        @Override
+        protected ControllerButtonPressedEvent newInstance()
+        {
+            return ( new ControllerButtonPressedEvent() );
+        }
+    };
     
-    public static ControllerAxisChangedEvent allocAxis()
+    private static final EventPool<ControllerButtonReleasedEvent> pool_released = new EventPool<ControllerButtonReleasedEvent>( "ControllerButtonReleasedEvent" )
     {
-        synchronized ( LOCK_axis )
+        @Override
+        protected ControllerButtonReleasedEvent newInstance()
         {
-            if ( n_axis > 0 )
-            {
-                ControllerAxisChangedEvent e = instances_axis.remove( --n_axis );
-                
-                return ( e );
-            }
-            
-            return ( new ControllerAxisChangedEvent() );
+            return ( new ControllerButtonReleasedEvent() );
         }
+    };
+    
+    public static ControllerAxisChangedEvent allocAxis()
+    {
+        return ( pool_axis.alloc() );
     }
     
     public static ControllerAxisChangedEvent allocAxis( Controller controller, ControllerAxis axis, float axisDelta, long when, long lastWhen )
@@ -80,29 +84,12 @@ public final class ControllerEventPool
     
     public static void freeAxis( ControllerAxisChangedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_axis )
-        {
-            instances_axis.add( e );
-            n_axis++;
-        }
+        pool_axis.free( e );
     }
     
     public static ControllerButtonPressedEvent allocPressed()
     {
-        synchronized ( LOCK_pressed )
-        {
-            if ( n_pressed > 0 )
-            {
-                ControllerButtonPressedEvent e = instances_pressed.remove( --n_pressed );
-                
-                return ( e );
-            }
-            
-            return ( new ControllerButtonPressedEvent() );
-        }
+        return ( pool_pressed.alloc() );
     }
     
     public static ControllerButtonPressedEvent allocPressed( Controller controller, ControllerButton button, long when, long lastWhen )
@@ -116,29 +103,12 @@ public final class ControllerEventPool
     
     public static void freePressed( ControllerButtonPressedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_pressed )
-        {
-            instances_pressed.add( e );
-            n_pressed++;
-        }
+        pool_pressed.free( e );
     }
     
     public static ControllerButtonReleasedEvent allocReleased()
     {
-        synchronized ( LOCK_released )
-        {
-            if ( n_released > 0 )
-            {
-                ControllerButtonReleasedEvent e = instances_released.remove( --n_released );
-                
-                return ( e );
-            }
-            
-            return ( new ControllerButtonReleasedEvent() );
-        }
+        return ( pool_released.alloc() );
     }
     
     public static ControllerButtonReleasedEvent allocReleased( Controller controller, ControllerButton button, long when, long lastWhen )
@@ -152,76 +122,20 @@ public final class ControllerEventPool
     
     public static void freeReleased( ControllerButtonReleasedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_released )
-        {
-            instances_released.add( e );
-            n_released++;
-        }
+        pool_released.free( e );
     }
     
+    /**
+     * Drops all pooled (idle) instances. Since idle instances don't carry any state,
+     * that would be needed later, this drops them regardless of the sourceWindow.
+     * 
+     * @param sourceWindow
+     */
     public static void cleanup( InputSourceWindow sourceWindow )
     {
-        if ( sourceWindow == null )
-        {
-            synchronized ( LOCK_axis )
-            {
-                instances_axis.clear();
-                n_axis = 0;
-            }
-            
-            synchronized ( LOCK_pressed )
-            {
-                instances_pressed.clear();
-                n_pressed = 0;
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                instances_released.clear();
-                n_released = 0;
-            }
-        }
-        else
-        {
-            synchronized ( LOCK_axis )
-            {
-                for ( int i = instances_axis.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_axis.get( i ).getController().getSourceWindow() == sourceWindow )
-                    {
-                        instances_axis.remove( i );
-                        n_axis--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_pressed )
-            {
-                for ( int i = instances_pressed.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_pressed.get( i ).getController().getSourceWindow() == sourceWindow )
-                    {
-                        instances_pressed.remove( i );
-                        n_pressed--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                for ( int i = instances_released.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_released.get( i ).getController().getSourceWindow() == sourceWindow )
-                    {
-                        instances_released.remove( i );
-                        n_released--;
-                    }
-                }
-            }
-        }
+        pool_axis.cleanup();
+        pool_pressed.cleanup();
+        pool_released.cleanup();
     }
     
     private ControllerEventPool()
@@ -0,0 +1,513 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.input.events;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jagatoo.logging.JAGTLog;
+
+/**
+ * A pool for {@link InputEvent} instances of one concrete class.<br>
+ * <br>
+ * Each thread allocates from and frees to its own local cache, so the
+ * common case takes no lock at all. When a local cache runs empty or full,
+ * a whole batch of instances is exchanged with a shared lock-free store.
+ * This lets events flow from the producing thread (e.g. the AWT event thread)
+ * to the freeing thread (the game loop) without contention and, in steady state,
+ * without allocation.<br>
+ * <br>
+ * In debug mode (see {@link #setDebugMode(boolean)}) every outstanding instance
+ * is tracked together with its allocation site, which detects double frees
+ * and lets {@link #dumpLeaks(long)} report events, that have never been freed.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public abstract class EventPool<E extends InputEvent>
+{
+    private static final int BATCH_SIZE = 32;
+    private static final int LOCAL_CAPACITY = 2 * BATCH_SIZE;
+    private static final int SHARED_BATCHES = 64;
+    
+    private static final ArrayList<EventPool<?>> POOLS = new ArrayList<EventPool<?>>();
+    
+    private static volatile boolean debugMode = false;
+    
+    private static final class LocalCache
+    {
+        private final InputEvent[] instances = new InputEvent[ LOCAL_CAPACITY ];
+        private int size = 0;
+        private int generation;
+        
+        public LocalCache( int generation )
+        {
+            this.generation = generation;
+        }
+    }
+    
+    private static final class Allocation
+    {
+        private final long time;
+        private final Throwable site;
+        
+        public Allocation( long time, Throwable site )
+        {
+            this.time = time;
+            this.site = site;
+        }
+    }
+    
+    private final String name;
+    
+    private final ThreadLocal<LocalCache> localCache = new ThreadLocal<LocalCache>()
+    {
+        @Override
+        protected LocalCache initialValue()
+        {
+            return ( new LocalCache( generation.get() ) );
+        }
+    };
+    
+    /*
+     * Full batches of pooled instances and empty batch arrays for reuse.
+     */
+    private final AtomicReferenceArray<InputEvent[]> fullBatches = new AtomicReferenceArray<InputEvent[]>( SHARED_BATCHES );
+    private final AtomicReferenceArray<InputEvent[]> emptyBatches = new AtomicReferenceArray<InputEvent[]>( SHARED_BATCHES );
+    private final AtomicInteger numSharedBatches = new AtomicInteger( 0 );
+    
+    /*
+     * Incremented by cleanup() to invalidate all thread-local caches.
+     */
+    private final AtomicInteger generation = new AtomicInteger( 0 );
+    
+    private final AtomicLong numCreated = new AtomicLong( 0L );
+    private final AtomicLong numDiscarded = new AtomicLong( 0L );
+    private final AtomicInteger sharedHighWaterMark = new AtomicInteger( 0 );
+    private final AtomicInteger localHighWaterMark = new AtomicInteger( 0 );
+    
+    /*
+     * Debug mode bookkeeping, guarded by outstanding.
+     */
+    private final Map<InputEvent, Allocation> outstanding = new IdentityHashMap<InputEvent, Allocation>();
+    private final Map<InputEvent, Boolean> pooled = new IdentityHashMap<InputEvent, Boolean>();
+    private int numDoubleFrees = 0;
+    
+    /**
+     * Enables or disables the debug mode for all {@link EventPool}s.
+     * This is expensive and should only be used to hunt double frees and leaks.
+     * 
+     * @param enabled
+     */
+    public static void setDebugMode( boolean enabled )
+    {
+        if ( enabled == debugMode )
+            return;
+        
+        synchronized ( POOLS )
+        {
+            for ( int i = 0; i < POOLS.size(); i++ )
+            {
+                final EventPool<?> pool = POOLS.get( i );
+                
+                synchronized ( pool.outstanding )
+                {
+                    pool.outstanding.clear();
+                    pool.pooled.clear();
+                }
+            }
+            
+            debugMode = enabled;
+        }
+    }
+    
+    /**
+     * @return whether the debug mode is enabled for all {@link EventPool}s.
+     */
+    public static boolean isDebugMode()
+    {
+        return ( debugMode );
+    }
+    
+    /**
+     * @return a snapshot of all {@link EventPool}s (e.g. to read their statistics).
+     */
+    public static List<EventPool<?>> getPools()
+    {
+        synchronized ( POOLS )
+        {
+            return ( new ArrayList<EventPool<?>>( POOLS ) );
+        }
+    }
+    
+    /**
+     * Dumps all events of all pools, that have been allocated in debug mode
+     * more than minAgeMillis ago and have not been freed since.
+     * 
+     * @param minAgeMillis
+     * 
+     * @return the number of leaked events.
+     */
+    public static int dumpAllLeaks( long minAgeMillis )
+    {
+        int n = 0;
+        
+        synchronized ( POOLS )
+        {
+            for ( int i = 0; i < POOLS.size(); i++ )
+            {
+                n += POOLS.get( i ).dumpLeaks( minAgeMillis );
+            }
+        }
+        
+        return ( n );
+    }
+    
+    /**
+     * @return the name of the pooled event class.
+     */
+    public final String getName()
+    {
+        return ( name );
+    }
+    
+    /**
+     * @return the number of instances ever created by this pool.
+     * This is the high-water mark of the pool's size.
+     */
+    public final long getNumCreated()
+    {
+        return ( numCreated.get() );
+    }
+    
+    /**
+     * @return the number of instances dropped, because the shared store was full.
+     */
+    public final long getNumDiscarded()
+    {
+        return ( numDiscarded.get() );
+    }
+    
+    /**
+     * @return the maximum number of instances ever held by the shared store.
+     */
+    public final int getSharedHighWaterMark()
+    {
+        return ( sharedHighWaterMark.get() * BATCH_SIZE );
+    }
+    
+    /**
+     * @return the maximum number of instances ever held by one thread-local cache.
+     */
+    public final int getLocalHighWaterMark()
+    {
+        return ( localHighWaterMark.get() );
+    }
+    
+    /**
+     * @return the number of detected double frees (debug mode only).
+     */
+    public final int getNumDoubleFrees()
+    {
+        synchronized ( outstanding )
+        {
+            return ( numDoubleFrees );
+        }
+    }
+    
+    /**
+     * @return the number of currently allocated, not yet freed instances (debug mode only).
+     */
+    public final int getNumOutstanding()
+    {
+        synchronized ( outstanding )
+        {
+            return ( outstanding.size() );
+        }
+    }
+    
+    /**
+     * Dumps all events of this pool, that have been allocated in debug mode
+     * more than minAgeMillis ago and have not been freed since.
+     * 
+     * @param minAgeMillis
+     * 
+     * @return the number of leaked events.
+     */
+    public int dumpLeaks( long minAgeMillis )
+    {
+        final long maxTime = System.nanoTime() - minAgeMillis * 1000000L;
+        int n = 0;
+        
+        synchronized ( outstanding )
+        {
+            for ( Map.Entry<InputEvent, Allocation> entry : outstanding.entrySet() )
+            {
+                if ( entry.getValue().time <= maxTime )
+                {
+                    JAGTLog.error( "Leaked ", name, ": ", entry.getKey() );
+                    JAGTLog.print( entry.getValue().site );
+                    n++;
+                }
+            }
+        }
+        
+        return ( n );
+    }
+    
+    private static final void updateMax( AtomicInteger max, int value )
+    {
+        int current;
+        while ( ( value > ( current = max.get() ) ) && !max.compareAndSet( current, value ) );
+    }
+    
+    private final LocalCache getLocalCache()
+    {
+        final LocalCache cache = localCache.get();
+        
+        final int gen = generation.get();
+        if ( cache.generation != gen )
+        {
+            for ( int i = 0; i < cache.size; i++ )
+            {
+                cache.instances[ i ] = null;
+            }
+            
+            cache.size = 0;
+            cache.generation = gen;
+        }
+        
+        return ( cache );
+    }
+    
+    private final InputEvent[] takeBatch( AtomicReferenceArray<InputEvent[]> batches )
+    {
+        for ( int i = 0; i < SHARED_BATCHES; i++ )
+        {
+            final InputEvent[] batch = batches.get( i );
+            
+            if ( ( batch != null ) && batches.compareAndSet( i, batch, null ) )
+                return ( batch );
+        }
+        
+        return ( null );
+    }
+    
+    private final boolean putBatch( AtomicReferenceArray<InputEvent[]> batches, InputEvent[] batch )
+    {
+        for ( int i = 0; i < SHARED_BATCHES; i++ )
+        {
+            if ( ( batches.get( i ) == null ) && batches.compareAndSet( i, null, batch ) )
+                return ( true );
+        }
+        
+        return ( false );
+    }
+    
+    /**
+     * Moves one batch from the shared store into the (empty) local cache.
+     */
+    private final boolean refill( LocalCache cache )
+    {
+        if ( numSharedBatches.get() == 0 )
+            return ( false );
+        
+        final InputEvent[] batch = takeBatch( fullBatches );
+        
+        if ( batch == null )
+            return ( false );
+        
+        numSharedBatches.decrementAndGet();
+        
+        System.arraycopy( batch, 0, cache.instances, cache.size, BATCH_SIZE );
+        cache.size += BATCH_SIZE;
+        
+        for ( int i = 0; i < BATCH_SIZE; i++ )
+        {
+            batch[ i ] = null;
+        }
+        
+        putBatch( emptyBatches, batch );
+        
+        return ( true );
+    }
+    
+    /**
+     * Moves one batch from the (full) local cache into the shared store.
+     */
+    private final void spill( LocalCache cache )
+    {
+        InputEvent[] batch = takeBatch( emptyBatches );
+        if ( batch == null )
+            batch = new InputEvent[ BATCH_SIZE ];
+        
+        cache.size -= BATCH_SIZE;
+        System.arraycopy( cache.instances, cache.size, batch, 0, BATCH_SIZE );
+        
+        for ( int i = cache.size; i < cache.size + BATCH_SIZE; i++ )
+        {
+            cache.instances[ i ] = null;
+        }
+        
+        if ( putBatch( fullBatches, batch ) )
+        {
+            updateMax( sharedHighWaterMark, numSharedBatches.incrementAndGet() );
+        }
+        else
+        {
+            numDiscarded.addAndGet( BATCH_SIZE );
+            
+            if ( debugMode )
+            {
+                synchronized ( outstanding )
+                {
+                    for ( int i = 0; i < BATCH_SIZE; i++ )
+                    {
+                        pooled.remove( batch[ i ] );
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return a new instance of the pooled event class.
+     */
+    protected abstract E newInstance();
+    
+    /**
+     * Takes an instance from the pool or creates a new one, if the pool is empty.
+     * 
+     * @return the event instance.
+     */
+    @SuppressWarnings( "unchecked" )
+    public final E alloc()
+    {
+        final LocalCache cache = getLocalCache();
+        
+        final E e;
+        if ( ( cache.size > 0 ) || refill( cache ) )
+        {
+            e = (E)cache.instances[ --cache.size ];
+            cache.instances[ cache.size ] = null;
+        }
+        else
+        {
+            numCreated.incrementAndGet();
+            e = newInstance();
+        }
+        
+        if ( debugMode )
+        {
+            synchronized ( outstanding )
+            {
+                pooled.remove( e );
+                outstanding.put( e, new Allocation( System.nanoTime(), new Throwable( name + " allocated here" ) ) );
+            }
+        }
+        
+        return ( e );
+    }
+    
+    /**
+     * Returns the given instance to the pool.
+     * 
+     * @param e
+     */
+    public final void free( E e )
+    {
+        if ( e == null )
+            return;
+        
+        if ( debugMode )
+        {
+            synchronized ( outstanding )
+            {
+                if ( pooled.put( e, Boolean.TRUE ) != null )
+                {
+                    // It must not enter the pool a second time.
+                    numDoubleFrees++;
+                    JAGTLog.print( new IllegalStateException( "Double free of " + name + ": " + e ) );
+                    
+                    return;
+                }
+                
+                outstanding.remove( e );
+            }
+        }
+        
+        final LocalCache cache = getLocalCache();
+        
+        if ( cache.size == LOCAL_CAPACITY )
+        {
+            spill( cache );
+        }
+        
+        cache.instances[ cache.size++ ] = e;
+        
+        updateMax( localHighWaterMark, cache.size );
+    }
+    
+    /**
+     * Drops all pooled instances.<br>
+     * Thread-local caches of other threads are dropped, when they next access this pool.
+     */
+    public void cleanup()
+    {
+        generation.incrementAndGet();
+        
+        synchronized ( outstanding )
+        {
+            pooled.clear();
+        }
+        
+        for ( int i = 0; i < SHARED_BATCHES; i++ )
+        {
+            if ( fullBatches.getAndSet( i, null ) != null )
+            {
+                numSharedBatches.decrementAndGet();
+            }
+        }
+    }
+    
+    public EventPool( String name )
+    {
+        this.name = name;
+        
+        synchronized ( POOLS )
+        {
+            POOLS.add( this );
+        }
+    }
+}
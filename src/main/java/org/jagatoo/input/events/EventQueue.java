@@ -29,173 +29,497 @@
  */
 package org.jagatoo.input.events;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.jagatoo.input.InputSystem;
+import org.jagatoo.input.devices.InputDevice;
 import org.jagatoo.input.render.InputSourceWindow;
 
 /**
- * This is a simple synchronized event queue for JAGaTOO input events.
+ * This is a lock-free event queue for JAGaTOO input events.<br>
+ * <br>
+ * Each {@link InputEvent.Type} has its own bounded ring buffer.
+ * Any number of threads (AWT event thread, device polling threads, ...)
+ * may {@link #enqueue(InputEvent)} concurrently, while all the
+ * dequeueing, peeking and cleanup methods must be invoked from one single
+ * consumer thread (the thread, that updates the {@link InputSystem}).<br>
+ * <br>
+ * If a sub-queue is full, the new event is rejected, freed back to its pool
+ * and counted as overflowed (see {@link #getNumOverflowedEvents()}).
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
 public class EventQueue
 {
-    public static final Object LOCK = new Object();
+    /**
+     * The default capacity of each per-type sub-queue.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
     
-    private InputEvent[] events = new InputEvent[ 128 ];
-    private int numEvents = 0;
-    private boolean hasNullEvents = false;
+    /**
+     * A bounded multi-producer/single-consumer ring buffer.
+     * Each slot carries a sequence number telling, whether it is free for the
+     * producer of a certain round or published for the consumer.
+     */
+    private static final class EventRing
+    {
+        private final int mask;
+        private final AtomicReferenceArray<InputEvent> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong( 0L );
+        private volatile long head = 0L;
+        
+        public final int getCapacity()
+        {
+            return ( mask + 1 );
+        }
+        
+        public final int size()
+        {
+            final long size = tail.get() - head;
+            
+            if ( size <= 0L )
+                return ( 0 );
+            
+            return ( (int)Math.min( size, getCapacity() ) );
+        }
+        
+        public final boolean offer( InputEvent event )
+        {
+            while ( true )
+            {
+                final long t = tail.get();
+                final int index = (int)t & mask;
+                final long diff = sequences.get( index ) - t;
+                
+                if ( diff == 0L )
+                {
+                    if ( tail.compareAndSet( t, t + 1L ) )
+                    {
+                        slots.set( index, event );
+                        sequences.set( index, t + 1L );
+                        
+                        return ( true );
+                    }
+                }
+                else if ( diff < 0L )
+                {
+                    // The consumer has not yet freed this slot from the previous round.
+                    return ( false );
+                }
+                
+                // Otherwise another producer has claimed this slot. Retry.
+            }
+        }
+        
+        /**
+         * @param offset
+         * 
+         * @return the published event at head + offset or null, if it is not (yet) published.
+         */
+        public final InputEvent peek( int offset )
+        {
+            final long h = head + offset;
+            final int index = (int)h & mask;
+            
+            if ( sequences.get( index ) != h + 1L )
+                return ( null );
+            
+            return ( slots.get( index ) );
+        }
+        
+        /**
+         * Waits for a claimed slot to become published.
+         * This will only ever spin for the few instructions between a producer's
+         * claim and its publication.
+         * 
+         * @param offset
+         */
+        public final InputEvent awaitPeek( int offset )
+        {
+            InputEvent event;
+            while ( ( event = peek( offset ) ) == null )
+            {
+                Thread.yield();
+            }
+            
+            return ( event );
+        }
+        
+        public final InputEvent poll()
+        {
+            final long h = head;
+            final int index = (int)h & mask;
+            
+            if ( sequences.get( index ) != h + 1L )
+                return ( null );
+            
+            final InputEvent event = slots.get( index );
+            slots.set( index, null );
+            sequences.set( index, h + getCapacity() );
+            head = h + 1L;
+            
+            return ( event );
+        }
+        
+        public EventRing( int capacity )
+        {
+            int cap = 1;
+            while ( cap < capacity )
+            {
+                cap <<= 1;
+            }
+            
+            this.mask = cap - 1;
+            this.slots = new AtomicReferenceArray<InputEvent>( cap );
+            this.sequences = new AtomicLongArray( cap );
+            
+            for ( int i = 0; i < cap; i++ )
+            {
+                sequences.set( i, i );
+            }
+        }
+    }
+    
+    private static final InputEvent.Type[] TYPES = InputEvent.Type.values();
+    
+    private final EventRing[] rings = new EventRing[ TYPES.length ];
+    
+    // consumer-side scratch for the unfiltered dequeue
+    private final int[] remaining = new int[ TYPES.length ];
+    
+    private final AtomicLong numOverflowedEvents = new AtomicLong( 0L );
+    private final AtomicLong numDiscardedEvents = new AtomicLong( 0L );
+    
+    /**
+     * @param type
+     * 
+     * @return the capacity of the sub-queue for the given event type.
+     */
+    public final int getCapacity( InputEvent.Type type )
+    {
+        return ( rings[ type.ordinal() ].getCapacity() );
+    }
+    
+    /**
+     * @return the number of events, that have been rejected, because their sub-queue was full.
+     */
+    public final long getNumOverflowedEvents()
+    {
+        return ( numOverflowedEvents.get() );
+    }
+    
+    /**
+     * @return the number of queued events, that have been dropped by {@link #cleanup(InputSourceWindow)}.
+     */
+    public final long getNumDiscardedEvents()
+    {
+        return ( numDiscardedEvents.get() );
+    }
     
+    /**
+     * Resets the overflow- and discard-counters.
+     */
+    public final void resetCounters()
+    {
+        numOverflowedEvents.set( 0L );
+        numDiscardedEvents.set( 0L );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of queued events of the given type.
+     */
+    public final int getNumEvents( InputEvent.Type type )
+    {
+        return ( rings[ type.ordinal() ].size() );
+    }
+    
+    /**
+     * @return the number of queued events of all types.
+     */
     public final int getNumEvents()
     {
-        return ( numEvents );
+        int n = 0;
+        for ( int i = 0; i < rings.length; i++ )
+        {
+            n += rings[ i ].size();
+        }
+        
+        return ( n );
     }
     
-    public final InputEvent getEvent( int index )
+    /**
+     * Returns a queued event without removing it.<br>
+     * This must only be called from the consumer thread.
+     * 
+     * @param type
+     * @param index
+     * 
+     * @return the index'th queued event of the given type.
+     */
+    public final InputEvent getEvent( InputEvent.Type type, int index )
     {
-        return ( events[ index ] );
+        final EventRing ring = rings[ type.ordinal() ];
+        
+        if ( ( index < 0 ) || ( index >= ring.size() ) )
+            throw new IndexOutOfBoundsException( "index: " + index + ", size: " + ring.size() );
+        
+        return ( ring.awaitPeek( index ) );
     }
     
-    public final void enqueue( InputEvent event )
+    /**
+     * Returns a queued event without removing it. The events are indexed
+     * by type (all keyboard events first, then mouse and controller events).<br>
+     * This must only be called from the consumer thread.
+     * 
+     * @param index
+     * 
+     * @return the index'th queued event.
+     */
+    public final InputEvent getEvent( int index )
     {
-        synchronized ( LOCK )
+        int offset = index;
+        for ( int i = 0; i < rings.length; i++ )
         {
-            if ( numEvents == events.length - 1 )
-            {
-                InputEvent[] tmp = new InputEvent[ (int)( numEvents * 1.5 ) + 1 ];
-                System.arraycopy( events, 0, tmp, 0, numEvents );
-                events = tmp;
-            }
+            final int size = rings[ i ].size();
             
-            events[ numEvents++ ] = event;
+            if ( offset < size )
+                return ( rings[ i ].awaitPeek( offset ) );
+            
+            offset -= size;
         }
+        
+        throw new IndexOutOfBoundsException( "index: " + index + ", size: " + getNumEvents() );
     }
     
     /**
+     * Places the given event into the sub-queue for its type.<br>
+     * This method may be called from any thread.
      * 
-     * @param inputSystem
-     * @param filteredType
+     * @param event
+     * 
+     * @return false, if the sub-queue was full and the event has been dropped.
      */
-    public final void dequeueAndFire( InputSystem inputSystem, InputEvent.Type filteredType )
+    public final boolean enqueue( InputEvent event )
+    {
+        if ( rings[ event.getType().ordinal() ].offer( event ) )
+            return ( true );
+        
+        numOverflowedEvents.incrementAndGet();
+        freeEvent( event );
+        
+        return ( false );
+    }
+    
+    private static final void fireEvent( InputEvent event )
     {
-        synchronized ( LOCK )
+        switch ( event.getType() )
         {
-            if ( numEvents == 0 )
-                return;
-            
-            for ( int i = 0; i < numEvents; i++ )
-            {
-                final InputEvent event = events[ i ];
+            case KEYBOARD_EVENT:
+                final KeyboardEvent kbEvent = (KeyboardEvent)event;
+                kbEvent.getKeyboard().fireKeyboardEvent( kbEvent, true );
+                break;
+                
+            case MOUSE_EVENT:
+                final MouseEvent moEvent = (MouseEvent)event;
+                moEvent.getMouse().fireMouseEvent( moEvent, true );
+                break;
+                
+            case CONTROLLER_EVENT:
+                final ControllerEvent ctEvent = (ControllerEvent)event;
+                ctEvent.getController().fireControllerEvent( ctEvent, true );
+                break;
+        }
+    }
+    
+    private static final void freeEvent( InputEvent event )
+    {
+        switch ( event.getType() )
+        {
+            case KEYBOARD_EVENT:
+                switch ( ( (KeyboardEvent)event ).getSubType() )
+                {
+                    case PRESSED:
+                        KeyboardEventPool.freePressed( (KeyPressedEvent)event );
+                        break;
+                    case RELEASED:
+                        KeyboardEventPool.freeReleased( (KeyReleasedEvent)event );
+                        break;
+                    case TYPED:
+                        KeyboardEventPool.freeTyped( (KeyTypedEvent)event );
+                        break;
+                }
+                break;
                 
-                if ( event == null )
+            case MOUSE_EVENT:
+                switch ( ( (MouseEvent)event ).getSubType() )
                 {
-                    continue;
+                    case BUTTON_PRESSED:
+                        MouseEventPool.freePressed( (MouseButtonPressedEvent)event );
+                        break;
+                    case BUTTON_RELEASED:
+                        MouseEventPool.freeReleased( (MouseButtonReleasedEvent)event );
+                        break;
+                    case BUTTON_CLICKED:
+                        MouseEventPool.freeClicked( (MouseButtonClickedEvent)event );
+                        break;
+                    case WHEEL_MOVED:
+                        MouseEventPool.freeWheel( (MouseWheelEvent)event );
+                        break;
+                    case MOVED:
+                        MouseEventPool.freeMoved( (MouseMovedEvent)event );
+                        break;
+                    case STOPPED:
+                        MouseEventPool.freeStopped( (MouseStoppedEvent)event );
+                        break;
                 }
+                break;
                 
-                if ( ( filteredType == null ) || ( filteredType == event.getType() ) )
+            case CONTROLLER_EVENT:
+                switch ( ( (ControllerEvent)event ).getSubType() )
                 {
-                    switch ( event.getType() )
-                    {
-                        case KEYBOARD_EVENT:
-                            final KeyboardEvent kbEvent = (KeyboardEvent)event;
-                            kbEvent.getKeyboard().fireKeyboardEvent( kbEvent, true );
-                            break;
-                            
-                        case MOUSE_EVENT:
-                            final MouseEvent moEvent = (MouseEvent)event;
-                            moEvent.getMouse().fireMouseEvent( moEvent, true );
-                            break;
-                            
-                        case CONTROLLER_EVENT:
-                            final ControllerEvent ctEvent = (ControllerEvent)event;
-                            ctEvent.getController().fireControllerEvent( ctEvent, true );
-                            break;
-                    }
-                    
-                    if ( filteredType != null )
-                    {
-                        events[ i ] = null;
-                        hasNullEvents = true;
-                    }
+                    case BUTTON_PRESSED:
+                        ControllerEventPool.freePressed( (ControllerButtonPressedEvent)event );
+                        break;
+                    case BUTTON_RELEASED:
+                        ControllerEventPool.freeReleased( (ControllerButtonReleasedEvent)event );
+                        break;
+                    case AXIS_CHANGED:
+                        ControllerEventPool.freeAxis( (ControllerAxisChangedEvent)event );
+                        break;
                 }
-            }
-            
-            if ( filteredType == null )
-            {
-                numEvents = 0;
-            }
-            else
-            {
-                strip();
-            }
+                break;
         }
     }
     
-    private final void strip()
+    /**
+     * Fires and removes all queued events of the given type.
+     * If filteredType is null, the events of all types are fired
+     * in the order of their timestamps.<br>
+     * This must only be called from the consumer thread.
+     * 
+     * @param inputSystem
+     * @param filteredType
+     */
+    public final void dequeueAndFire( InputSystem inputSystem, InputEvent.Type filteredType )
     {
-        synchronized ( LOCK )
+        if ( filteredType != null )
         {
-            if ( !hasNullEvents || ( numEvents == 0 ) )
-                return;
+            final EventRing ring = rings[ filteredType.ordinal() ];
             
-            int offset = 0;
-            for ( int i = 0; i < numEvents; i++ )
+            // Only fire, what has been queued up to now.
+            // Events enqueued by listeners are fired in the next pass.
+            int n = ring.size();
+            InputEvent event;
+            while ( ( n-- > 0 ) && ( ( event = ring.poll() ) != null ) )
             {
-                if ( events[ i ] == null )
-                    offset++;
-                else if ( offset != 0 )
-                    events[ i - offset ] = events[ i ];
+                fireEvent( event );
             }
             
-            for ( int i = numEvents - offset; i < numEvents; i++ )
+            return;
+        }
+        
+        for ( int i = 0; i < rings.length; i++ )
+        {
+            remaining[ i ] = rings[ i ].size();
+        }
+        
+        while ( true )
+        {
+            int next = -1;
+            long nextWhen = Long.MAX_VALUE;
+            
+            for ( int i = 0; i < rings.length; i++ )
             {
-                events[ i ] = null;
+                if ( remaining[ i ] > 0 )
+                {
+                    final InputEvent head = rings[ i ].peek( 0 );
+                    
+                    if ( head == null )
+                    {
+                        remaining[ i ] = 0;
+                    }
+                    else if ( ( next == -1 ) || ( head.getWhen() < nextWhen ) )
+                    {
+                        next = i;
+                        nextWhen = head.getWhen();
+                    }
+                }
             }
             
-            numEvents = numEvents - offset;
-            hasNullEvents = false;
+            if ( next == -1 )
+                break;
+            
+            remaining[ next ]--;
+            fireEvent( rings[ next ].poll() );
+        }
+    }
+    
+    private static final InputDevice getDevice( InputEvent event )
+    {
+        switch ( event.getType() )
+        {
+            case KEYBOARD_EVENT:
+                return ( ( (KeyboardEvent)event ).getKeyboard() );
+            case MOUSE_EVENT:
+                return ( ( (MouseEvent)event ).getMouse() );
+            case CONTROLLER_EVENT:
+                return ( ( (ControllerEvent)event ).getController() );
         }
+        
+        return ( null );
     }
     
+    /**
+     * Removes all queued events, that belong to the given window
+     * (or all events, if sourceWindow is null).<br>
+     * This must only be called from the consumer thread.
+     * 
+     * @param sourceWindow
+     */
     public void cleanup( InputSourceWindow sourceWindow )
     {
-        synchronized ( LOCK )
+        for ( int i = 0; i < rings.length; i++ )
         {
-            if ( sourceWindow == null )
-            {
-                 for ( int i = 0; i < events.length; i++ )
-                 {
-                     events[ i ] = null;
-                     numEvents = 0;
-                 }
-            }
-            else
+            final EventRing ring = rings[ i ];
+            
+            int n = ring.size();
+            InputEvent event;
+            while ( ( n-- > 0 ) && ( ( event = ring.poll() ) != null ) )
             {
-                for ( int i = 0; i < events.length; i++ )
+                if ( ( sourceWindow == null ) || ( getDevice( event ).getSourceWindow() == sourceWindow ) )
                 {
-                    if ( events[ i ] != null )
-                    {
-                        switch ( events[ i ].getType() )
-                        {
-                            case KEYBOARD_EVENT:
-                                if ( ( (KeyboardEvent)events[ i ] ).getKeyboard().getSourceWindow() == sourceWindow )
-                                    events[ i ] = null;
-                                break;
-                                
-                            case MOUSE_EVENT:
-                                if ( ( (MouseEvent)events[ i ] ).getMouse().getSourceWindow() == sourceWindow )
-                                    events[ i ] = null;
-                                break;
-                                
-                            case CONTROLLER_EVENT:
-                                if ( ( (ControllerEvent)events[ i ] ).getController().getSourceWindow() == sourceWindow )
-                                    events[ i ] = null;
-                                break;
-                        }
-                    }
+                    numDiscardedEvents.incrementAndGet();
+                }
+                else if ( !ring.offer( event ) )
+                {
+                    numOverflowedEvents.incrementAndGet();
+                    freeEvent( event );
                 }
-                
-                strip();
             }
         }
     }
+    
+    /**
+     * @param capacity the capacity of each per-type sub-queue (rounded up to a power of two)
+     */
+    public EventQueue( int capacity )
+    {
+        if ( capacity < 1 )
+            throw new IllegalArgumentException( "capacity must be positive." );
+        
+        for ( int i = 0; i < rings.length; i++ )
+        {
+            rings[ i ] = new EventRing( capacity );
+        }
+    }
+    
+    public EventQueue()
+    {
+        this( DEFAULT_CAPACITY );
+    }
 }
@@ -29,8 +29,6 @@
  */
 package org.jagatoo.input.events;
 
-import java.util.ArrayList;
-
 import org.jagatoo.input.devices.Keyboard;
 import org.jagatoo.input.devices.components.Key;
 import org.jagatoo.input.render.InputSourceWindow;
@@ -42,30 +40,36 @@ import org.jagatoo.input.render.InputSourceWindow;
  */
 public final class KeyboardEventPool
 {
-    private static ArrayList< KeyPressedEvent > instances_pressed = new ArrayList< KeyPressedEvent >( 64 );
-    private static ArrayList< KeyReleasedEvent > instances_released = new ArrayList< KeyReleasedEvent >( 64 );
-    private static ArrayList< KeyTypedEvent > instances_typed = new ArrayList< KeyTypedEvent >( 64 );
-    private static int n_pressed = 0;
-    private static int n_released = 0;
-    private static int n_typed = 0;
+    private static final EventPool<KeyPressedEvent> pool_pressed = new EventPool<KeyPressedEvent>( "KeyPressedEvent" )
+    {
+        @Override
+        protected KeyPressedEvent newInstance()
+        {
+            return ( new KeyPressedEvent() );
+        }
+    };
     
-    private static final Object LOCK_pressed = new Object();
-    private static final Object LOCK_released = new Object();
-    private static final Object LOCK_typed = new Object();
+    private static final EventPool<KeyReleasedEvent> pool_released = new EventPool<KeyReleasedEvent>( "KeyReleasedEvent" )
+    {
+        @Override
+        protected KeyReleasedEvent newInstance()
+        {
+            return ( new KeyReleasedEvent() );
+        }
+    };
     
-    public static KeyPressedEvent allocPressed()
+    private static final EventPool<KeyTypedEvent> pool_typed = new EventPool<KeyTypedEvent>( "KeyTypedEvent" )
     {
-        synchronized ( LOCK_pressed )
+        @Override
+        protected KeyTypedEvent newInstance()
         {
-            if ( n_pressed > 0 )
-            {
-                KeyPressedEvent e = instances_pressed.remove( --n_pressed );
-                
-                return ( e );
-            }
-            
-            return ( new KeyPressedEvent() );
+            return ( new KeyTypedEvent() );
         }
+    };
+    
+    public static KeyPressedEvent allocPressed()
+    {
+        return ( pool_pressed.alloc() );
     }
     
     public static KeyPressedEvent allocPressed( Keyboard keyboard, Key key, int modifierMask, long when, long lastWhen )
@@ -79,29 +83,12 @@ public final class KeyboardEventPool
     
     public static void freePressed( KeyPressedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_pressed )
-        {
-            instances_pressed.add( e );
-            n_pressed++;
-        }
+        pool_pressed.free( e );
     }
     
     public static KeyReleasedEvent allocReleased()
     {
-        synchronized ( LOCK_released )
-        {
-            if ( n_released > 0 )
-            {
-                KeyReleasedEvent e = instances_released.remove( --n_released );
-                
-                return ( e );
-            }
-            
-            return ( new KeyReleasedEvent() );
-        }
+        return ( pool_released.alloc() );
     }
     
     public static KeyReleasedEvent allocReleased( Keyboard keyboard, Key key, int modifierMask, long when, long lastWhen )
@@ -115,29 +102,12 @@ public final class KeyboardEventPool
     
     public static void freeReleased( KeyReleasedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_released )
-        {
-            instances_released.add( e );
-            n_released++;
-        }
+        pool_released.free( e );
     }
     
     public static KeyTypedEvent allocTyped()
     {
-        synchronized ( LOCK_typed )
-        {
-            if ( n_typed > 0 )
-            {
-                KeyTypedEvent e = instances_typed.remove( --n_typed );
-                
-                return ( e );
-            }
-            
-            return ( new KeyTypedEvent() );
-        }
+        return ( pool_typed.alloc() );
     }
     
     public static KeyTypedEvent allocTyped( Keyboard keyboard, char keyChar, int modifierMask, long when, long lastWhen )
@@ -151,76 +121,20 @@ public final class KeyboardEventPool
     
     public static void freeTyped( KeyTypedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_typed )
-        {
-            instances_typed.add( e );
-            n_typed++;
-        }
+        pool_typed.free( e );
     }
     
+    /**
+     * Drops all pooled (idle) instances. Since idle instances don't carry any state,
+     * that would be needed later, this drops them regardless of the sourceWindow.
+     * 
+     * @param sourceWindow
+     */
     public static void cleanup( InputSourceWindow sourceWindow )
     {
-        if ( sourceWindow == null )
-        {
-            synchronized ( LOCK_pressed )
-            {
-                instances_pressed.clear();
-                n_pressed = 0;
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                instances_released.clear();
-                n_released = 0;
-            }
-            
-            synchronized ( LOCK_typed )
-            {
-                instances_typed.clear();
-                n_typed = 0;
-            }
-        }
-        else
-        {
-            synchronized ( LOCK_pressed )
-            {
-                for ( int i = instances_pressed.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_pressed.get( i ).getKeyboard().getSourceWindow() == sourceWindow )
-                    {
-                        instances_pressed.remove( i );
-                        n_pressed--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                for ( int i = instances_released.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_released.get( i ).getKeyboard().getSourceWindow() == sourceWindow )
-                    {
-                        instances_released.remove( i );
-                        n_released--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_typed )
-            {
-                for ( int i = instances_typed.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_typed.get( i ).getKeyboard().getSourceWindow() == sourceWindow )
-                    {
-                        instances_typed.remove( i );
-                        n_typed--;
-                    }
-                }
-            }
-        }
+        pool_pressed.cleanup();
+        pool_released.cleanup();
+        pool_typed.cleanup();
     }
     
     private KeyboardEventPool()
@@ -29,8 +29,6 @@
  */
 package org.jagatoo.input.events;
 
-import java.util.ArrayList;
-
 import org.jagatoo.input.devices.Mouse;
 import org.jagatoo.input.devices.components.MouseButton;
 import org.jagatoo.input.devices.components.MouseWheel;
@@ -43,39 +41,63 @@ import org.jagatoo.input.render.InputSourceWindow;
  */
 public final class MouseEventPool
 {
-    private static ArrayList< MouseMovedEvent > instances_moved = new ArrayList< MouseMovedEvent >( 64 );
-    private static ArrayList< MouseButtonPressedEvent > instances_pressed = new ArrayList< MouseButtonPressedEvent >( 64 );
-    private static ArrayList< MouseButtonReleasedEvent > instances_released = new ArrayList< MouseButtonReleasedEvent >( 64 );
-    private static ArrayList< MouseButtonClickedEvent > instances_clicked = new ArrayList< MouseButtonClickedEvent >( 16 );
-    private static ArrayList< MouseWheelEvent > instances_wheel = new ArrayList< MouseWheelEvent >( 64 );
-    private static ArrayList< MouseStoppedEvent > instances_stopped = new ArrayList< MouseStoppedEvent >( 64 );
-    private static int n_moved = 0;
-    private static int n_pressed = 0;
-    private static int n_released = 0;
-    private static int n_clicked = 0;
-    private static int n_wheel = 0;
-    private static int n_stopped = 0;
+    private static final EventPool<MouseMovedEvent> pool_moved = new EventPool<MouseMovedEvent>( "MouseMovedEvent" )
+    {
+        @Override
+        protected MouseMovedEvent newInstance()
+        {
+            return ( new MouseMovedEvent() );
+        }
+    };
     
-    private static final Object LOCK_moved = new Object();
-    private static final Object LOCK_pressed = new Object();
-    private static final Object LOCK_released = new Object();
-    private static final Object LOCK_clicked = new Object();
-    private static final Object LOCK_wheel = new Object();
-    private static final Object LOCK_stopped = new Object();
+    private static final EventPool<MouseButtonPressedEvent> pool_pressed = new EventPool<MouseButtonPressedEvent>( "MouseButtonPressedEvent" )
+    {
+        @Override
+        protected MouseButtonPressedEvent newInstance()
+        {
+            return ( new MouseButtonPressedEvent() );
+        }
+    };
     
-    public static MouseMovedEvent allocMoved()
+    private static final EventPool<MouseButtonReleasedEvent> pool_released = new EventPool<MouseButtonReleasedEvent>( "MouseButtonReleasedEvent" )
     {
-        synchronized ( LOCK_moved )
+        @Override
+        protected MouseButtonReleasedEvent newInstance()
         {
-            if ( n_moved > 0 )
-            {
-                MouseMovedEvent e = instances_moved.remove( --n_moved );
-                
-                return ( e );
-            }
-            
-            return ( new MouseMovedEvent() );
+            return ( new MouseButtonReleasedEvent() );
+        }
+    };
+    
+    private static final EventPool<MouseButtonClickedEvent> pool_clicked = new EventPool<MouseButtonClickedEvent>( "MouseButtonClickedEvent" )
+    {
+        @Override
+        protected MouseButtonClickedEvent newInstance()
+        {
+            return ( new MouseButtonClickedEvent() );
         }
+    };
+    
+    private static final EventPool<MouseWheelEvent> pool_wheel = new EventPool<MouseWheelEvent>( "MouseWheelEvent" )
+    {
+        @Override
+        protected MouseWheelEvent newInstance()
+        {
+            return ( new MouseWheelEvent() );
+        }
+    };
+    
+    private static final EventPool<MouseStoppedEvent> pool_stopped = new EventPool<MouseStoppedEvent>( "MouseStoppedEvent" )
+    {
+        @Override
+        protected MouseStoppedEvent newInstance()
+        {
+            return ( new MouseStoppedEvent() );
+        }
+    };
+    
+    public static MouseMovedEvent allocMoved()
+    {
+        return ( pool_moved.alloc() );
     }
     
     public static MouseMovedEvent allocMoved( Mouse mouse, int x, int y, int dx, int dy, long when, long lastWhen )
@@ -89,29 +111,12 @@ public final class MouseEventPool
     
     public static void freeMoved( MouseMovedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_moved )
-        {
-            instances_moved.add( e );
-            n_moved++;
-        }
+        pool_moved.free( e );
     }
     
     public static MouseButtonPressedEvent allocPressed()
     {
-        synchronized ( LOCK_pressed )
-        {
-            if ( n_pressed > 0 )
-            {
-                MouseButtonPressedEvent e = instances_pressed.remove( --n_pressed );
-                
-                return ( e );
-            }
-            
-            return ( new MouseButtonPressedEvent() );
-        }
+        return ( pool_pressed.alloc() );
     }
     
     public static MouseButtonPressedEvent allocPressed( Mouse mouse, MouseButton button, long when, long lastWhen )
@@ -125,29 +130,12 @@ public final class MouseEventPool
     
     public static void freePressed( MouseButtonPressedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_pressed )
-        {
-            instances_pressed.add( e );
-            n_pressed++;
-        }
+        pool_pressed.free( e );
     }
     
     public static MouseButtonReleasedEvent allocReleased()
     {
-        synchronized ( LOCK_released )
-        {
-            if ( n_released > 0 )
-            {
-                MouseButtonReleasedEvent e = instances_released.remove( --n_released );
-                
-                return ( e );
-            }
-            
-            return ( new MouseButtonReleasedEvent() );
-        }
+        return ( pool_released.alloc() );
     }
     
     public static MouseButtonReleasedEvent allocReleased( Mouse mouse, MouseButton button, long when, long lastWhen )
@@ -161,29 +149,12 @@ public final class MouseEventPool
     
     public static void freeReleased( MouseButtonReleasedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_released )
-        {
-            instances_released.add( e );
-            n_released++;
-        }
+        pool_released.free( e );
     }
     
     public static MouseButtonClickedEvent allocClicked()
     {
-        synchronized ( LOCK_clicked )
-        {
-            if ( n_clicked > 0 )
-            {
-                MouseButtonClickedEvent e = instances_clicked.remove( --n_clicked );
-                
-                return ( e );
-            }
-            
-            return ( new MouseButtonClickedEvent() );
-        }
+        return ( pool_clicked.alloc() );
     }
     
     public static MouseButtonClickedEvent allocClicked( Mouse mouse, MouseButton button, long when, long lastWhen )
@@ -197,29 +168,12 @@ public final class MouseEventPool
     
     public static void freeClicked( MouseButtonClickedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_clicked )
-        {
-            instances_clicked.add( e );
-            n_clicked++;
-        }
+        pool_clicked.free( e );
     }
     
     public static MouseWheelEvent allocWheel()
     {
-        synchronized ( LOCK_wheel )
-        {
-            if ( n_wheel > 0 )
-            {
-                MouseWheelEvent e = instances_wheel.remove( --n_wheel );
-                
-                return ( e );
-            }
-            
-            return ( new MouseWheelEvent() );
-        }
+        return ( pool_wheel.alloc() );
     }
     
     public static MouseWheelEvent allocWheel( Mouse mouse, MouseWheel wheel, int wheelDelta, boolean isPageMove, long when, long lastWhen )
@@ -233,29 +187,12 @@ public final class MouseEventPool
     
     public static void freeWheel( MouseWheelEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_wheel )
-        {
-            instances_wheel.add( e );
-            n_wheel++;
-        }
+        pool_wheel.free( e );
     }
     
     public static MouseStoppedEvent allocStopped()
     {
-        synchronized ( LOCK_stopped )
-        {
-            if ( n_stopped > 0 )
-            {
-                MouseStoppedEvent e = instances_stopped.remove( --n_stopped );
-                
-                return ( e );
-            }
-            
-            return ( new MouseStoppedEvent() );
-        }
+        return ( pool_stopped.alloc() );
     }
     
     public static MouseStoppedEvent allocStopped( Mouse mouse, int x, int y, long when, long lastWhen )
@@ -269,130 +206,23 @@ public final class MouseEventPool
     
     public static void freeStopped( MouseStoppedEvent e )
     {
-        if ( e == null )
-            return;
-        
-        synchronized ( LOCK_stopped )
-        {
-            instances_stopped.add( e );
-            n_stopped++;
-        }
+        pool_stopped.free( e );
     }
     
+    /**
+     * Drops all pooled (idle) instances. Since idle instances don't carry any state,
+     * that would be needed later, this drops them regardless of the sourceWindow.
+     * 
+     * @param sourceWindow
+     */
     public static void cleanup( InputSourceWindow sourceWindow )
     {
-        if ( sourceWindow == null )
-        {
-            synchronized ( LOCK_moved )
-            {
-                instances_moved.clear();
-                n_moved = 0;
-            }
-            
-            synchronized ( LOCK_pressed )
-            {
-                instances_pressed.clear();
-                n_pressed = 0;
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                instances_released.clear();
-                n_released = 0;
-            }
-            
-            synchronized ( LOCK_clicked )
-            {
-                instances_clicked.clear();
-                n_clicked = 0;
-            }
-            
-            synchronized ( LOCK_wheel )
-            {
-                instances_wheel.clear();
-                n_wheel = 0;
-            }
-            
-            synchronized ( LOCK_stopped )
-            {
-                instances_stopped.clear();
-                n_stopped = 0;
-            }
-        }
-        else
-        {
-            synchronized ( LOCK_moved )
-            {
-                for ( int i = instances_moved.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_moved.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_moved.remove( i );
-                        n_moved--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_pressed )
-            {
-                for ( int i = instances_pressed.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_pressed.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_pressed.remove( i );
-                        n_pressed--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_released )
-            {
-                for ( int i = instances_released.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_released.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_released.remove( i );
-                        n_released--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_clicked )
-            {
-                for ( int i = instances_clicked.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_clicked.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_clicked.remove( i );
-                        n_clicked--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_wheel )
-            {
-                for ( int i = instances_wheel.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_wheel.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_wheel.remove( i );
-                        n_wheel--;
-                    }
-                }
-            }
-            
-            synchronized ( LOCK_stopped )
-            {
-                for ( int i = instances_stopped.size() - 1; i >= 0; i-- )
-                {
-                    if ( instances_stopped.get( i ).getMouse().getSourceWindow() == sourceWindow )
-                    {
-                        instances_stopped.remove( i );
-                        n_stopped--;
-                    }
-                }
-            }
-        }
+        pool_moved.cleanup();
+        pool_pressed.cleanup();
+        pool_released.cleanup();
+        pool_clicked.cleanup();
+        pool_wheel.cleanup();
+        pool_stopped.cleanup();
     }
     
     private MouseEventPool()
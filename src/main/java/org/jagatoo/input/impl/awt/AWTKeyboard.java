@@ -329,30 +329,20 @@ public class AWTKeyboard extends Keyboard
     /*
     private final void notifyStatesManagersFromQueue( InputSystem is, EventQueue eventQueue, long nanoTime )
     {
-        synchronized ( EventQueue.LOCK )
+        final int numEvents = eventQueue.getNumEvents( InputEvent.Type.KEYBOARD_EVENT );
+        
+        for ( int i = 0; i < numEvents; i++ )
         {
-            if ( eventQueue.getNumEvents() == 0 )
-                return;
+            final KeyboardEvent kbEvent = (KeyboardEvent)eventQueue.getEvent( InputEvent.Type.KEYBOARD_EVENT, i );
             
-            for ( int i = 0; i < eventQueue.getNumEvents(); i++ )
+            switch( kbEvent.getSubType() )
             {
-                final InputEvent event = eventQueue.getEvent( i );
-                
-                System.out.println( event );
-                if ( event.getType() == InputEvent.Type.KEYBOARD_EVENT )
-                {
-                    final KeyboardEvent kbEvent = (KeyboardEvent)event;
-                    
-                    switch( kbEvent.getSubType() )
-                    {
-                        case PRESSED:
-                            is.notifyInputStatesManagers( this, kbEvent.getComponent(), 1, +1, nanoTime );
-                            break;
-                        case RELEASED:
-                            is.notifyInputStatesManagers( this, kbEvent.getComponent(), 0, -1, nanoTime );
-                            break;
-                    }
-                }
+                case PRESSED:
+                    is.notifyInputStatesManagers( this, kbEvent.getComponent(), 1, +1, nanoTime );
+                    break;
+                case RELEASED:
+                    is.notifyInputStatesManagers( this, kbEvent.getComponent(), 0, -1, nanoTime );
+                    break;
             }
         }
     }
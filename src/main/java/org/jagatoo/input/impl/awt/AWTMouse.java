@@ -216,42 +216,33 @@ public class AWTMouse extends Mouse
     
     private final void notifyStatesManagersFromQueue( InputSystem is, EventQueue eventQueue, long nanoTime )
     {
-        if ( eventQueue.getNumEvents() == 0 )
-            return;
+        final int numEvents = eventQueue.getNumEvents( InputEvent.Type.MOUSE_EVENT );
         
-        synchronized ( EventQueue.LOCK )
+        for ( int i = 0; i < numEvents; i++ )
         {
-            for ( int i = 0; i < eventQueue.getNumEvents(); i++ )
+            final MouseEvent moEvent = (MouseEvent)eventQueue.getEvent( InputEvent.Type.MOUSE_EVENT, i );
+            
+            switch( moEvent.getSubType() )
             {
-                final InputEvent event = eventQueue.getEvent( i );
-                
-                if ( event.getType() == InputEvent.Type.MOUSE_EVENT )
-                {
-                    final MouseEvent moEvent = (MouseEvent)event;
+                case BUTTON_PRESSED:
+                    is.notifyInputStatesManagers( this, moEvent.getComponent(), 1, +1, nanoTime );
+                    break;
+                case BUTTON_RELEASED:
+                    is.notifyInputStatesManagers( this, moEvent.getComponent(), 0, -1, nanoTime );
+                    break;
+                case WHEEL_MOVED:
+                    final MouseWheelEvent mwEvent = (MouseWheelEvent)moEvent;
+                    final MouseWheel wheel = (MouseWheel)mwEvent.getComponent();
+                    is.notifyInputStatesManagers( this, wheel, wheel.getIntValue(), mwEvent.getWheelDelta(), nanoTime );
+                    break;
+                case MOVED:
+                    final MouseMovedEvent mmEvent = (MouseMovedEvent)moEvent;
+                    if ( mmEvent.getDX() != 0 )
+                        is.notifyInputStatesManagers( this, mmEvent.getMouse().getXAxis(), mmEvent.getX(), mmEvent.getDX(), nanoTime );
                     
-                    switch( moEvent.getSubType() )
-                    {
-                        case BUTTON_PRESSED:
-                            is.notifyInputStatesManagers( this, moEvent.getComponent(), 1, +1, nanoTime );
-                            break;
-                        case BUTTON_RELEASED:
-                            is.notifyInputStatesManagers( this, moEvent.getComponent(), 0, -1, nanoTime );
-                            break;
-                        case WHEEL_MOVED:
-                            final MouseWheelEvent mwEvent = (MouseWheelEvent)moEvent;
-                            final MouseWheel wheel = (MouseWheel)mwEvent.getComponent();
-                            is.notifyInputStatesManagers( this, wheel, wheel.getIntValue(), mwEvent.getWheelDelta(), nanoTime );
-                            break;
-                        case MOVED:
-                            final MouseMovedEvent mmEvent = (MouseMovedEvent)moEvent;
-                            if ( mmEvent.getDX() != 0 )
-                                is.notifyInputStatesManagers( this, mmEvent.getMouse().getXAxis(), mmEvent.getX(), mmEvent.getDX(), nanoTime );
-                            
-                            if ( mmEvent.getDY() != 0 )
-                                is.notifyInputStatesManagers( this, mmEvent.getMouse().getYAxis(), mmEvent.getY(), mmEvent.getDY(), nanoTime );
-                            break;
-                    }
-                }
+                    if ( mmEvent.getDY() != 0 )
+                        is.notifyInputStatesManagers( this, mmEvent.getMouse().getYAxis(), mmEvent.getY(), mmEvent.getDY(), nanoTime );
+                    break;
             }
         }
     }
@@ -31,6 +31,7 @@ package org.jagatoo.input.managers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -39,7 +40,11 @@ import org.jagatoo.input.actions.InputAction;
 import org.jagatoo.input.devices.components.DeviceComponent;
 
 /**
- * This is a generic input-bindings manager.
+ * This is a generic input-bindings manager.<br>
+ * <br>
+ * Bindings are resolved through arrays indexed by {@link DeviceComponent#getComponentIndex()}
+ * and {@link InputAction#ordinal()}, so that looking up the action for a component
+ * doesn't need any hashing on the event path.
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
@@ -50,6 +55,16 @@ public class InputBindingsManager< A extends InputAction >
     private final HashMap< DeviceComponent, A > keyBindings;
     protected final DeviceComponent[][] boundKeys;
     
+    /**
+     * The bound action for each component index (or null).
+     */
+    private InputAction[] componentActions;
+    
+    /**
+     * The bound action for each action ordinal, if at least one component is bound to it (or null).
+     */
+    private final InputAction[] boundActions;
+    
     private final ArrayList< InputBindingListener< A > > listeners = new ArrayList< InputBindingListener< A > >();
     
     public final void addInputBindingListener( InputBindingListener< A > l )
@@ -78,14 +93,72 @@ public class InputBindingsManager< A extends InputAction >
         }
     }
     
+    private void putBinding( DeviceComponent comp, A action )
+    {
+        final int index = comp.getComponentIndex();
+        
+        if ( index >= componentActions.length )
+        {
+            InputAction[] tmp = new InputAction[ Math.max( index + 1, DeviceComponent.getNumComponentIndices() ) ];
+            System.arraycopy( componentActions, 0, tmp, 0, componentActions.length );
+            componentActions = tmp;
+        }
+        
+        keyBindings.put( comp, action );
+        componentActions[ index ] = action;
+    }
+    
+    private A removeBinding( DeviceComponent comp )
+    {
+        final int index = comp.getComponentIndex();
+        
+        if ( index < componentActions.length )
+            componentActions[ index ] = null;
+        
+        return ( keyBindings.remove( comp ) );
+    }
+    
+    /**
+     * Refreshes the bound action for the given ordinal after a change to {@link #boundKeys}.
+     * 
+     * @param ordinal
+     * @param action
+     */
+    private void updateBoundAction( int ordinal, InputAction action )
+    {
+        final DeviceComponent[] keys = boundKeys[ ordinal ];
+        
+        if ( keys != null )
+        {
+            for ( int i = 0; i < NUM_KEY_SETS; i++ )
+            {
+                if ( keys[ i ] != null )
+                {
+                    boundActions[ ordinal ] = action;
+                    return;
+                }
+            }
+        }
+        
+        boundActions[ ordinal ] = null;
+    }
+    
     public final int getNumActions()
     {
         return ( boundKeys.length );
     }
     
+    /**
+     * The returned set used to be the live key set of the bindings map.
+     * Removing from it bypassed the action lookup tables and the
+     * {@link InputBindingListener}s, so it is read-only now and modifications
+     * throw an UnsupportedOperationException. Use {@link #unbind(DeviceComponent)} instead.
+     * 
+     * @return an unmodifiable view of all currently bound components.
+     */
     public final Set< DeviceComponent > getBoundInputComponents()
     {
-        return ( keyBindings.keySet() );
+        return ( Collections.unmodifiableSet( keyBindings.keySet() ) );
     }
     
     public final int getBoundInputComponents( DeviceComponent[] result )
@@ -104,9 +177,16 @@ public class InputBindingsManager< A extends InputAction >
         return ( i );
     }
     
+    /**
+     * Read-only like {@link #getBoundInputComponents()}. Modifications throw an
+     * UnsupportedOperationException. Use {@link #unbind(InputAction)} instead.
+     * 
+     * @return an unmodifiable view of the actions of all bindings.
+     *         An action is contained once per component, it is bound to.
+     */
     public final Collection< A > getBoundActions()
     {
-        return ( keyBindings.values() );
+        return ( Collections.unmodifiableCollection( keyBindings.values() ) );
     }
     
     public final void getBoundActions( DeviceComponent[] components, InputAction[] result )
@@ -119,6 +199,17 @@ public class InputBindingsManager< A extends InputAction >
         }
     }
     
+    /**
+     * @param ordinal the action's ordinal
+     * 
+     * @return the action with the given ordinal, if any component is bound to it, null otherwise.
+     */
+    @SuppressWarnings( "unchecked" )
+    public final A getBoundActionByOrdinal( int ordinal )
+    {
+        return ( (A)boundActions[ ordinal ] );
+    }
+    
     /**
      * Unbinds a specific key.
      * 
@@ -128,7 +219,7 @@ public class InputBindingsManager< A extends InputAction >
      */
     public final A unbind( DeviceComponent comp )
     {
-        final A prevBound = keyBindings.remove( comp );
+        final A prevBound = removeBinding( comp );
         
         if ( prevBound != null )
         {
@@ -148,6 +239,7 @@ public class InputBindingsManager< A extends InputAction >
                         }
                         */
                         boundKeys[ ordinal ][ i ] = null;
+                        updateBoundAction( ordinal, prevBound );
                         
                         notifyUnbound( comp, InputBindingsSet.values()[ i ], prevBound );
                         
@@ -199,14 +291,23 @@ public class InputBindingsManager< A extends InputAction >
      * 
      * @return the InputAction, that is currently bound to the given key.
      */
+    @SuppressWarnings( "unchecked" )
     public final A getBoundAction( DeviceComponent comp, InputBindingsSet set )
     {
-        if ( set == null )
-            return ( keyBindings.get( comp ) );
+        final InputAction[] componentActions = this.componentActions;
+        final int index = comp.getComponentIndex();
+        
+        if ( index >= componentActions.length )
+            return ( null );
         
-        final A result = keyBindings.get( comp );
+        final A result = (A)componentActions[ index ];
         
-        if ( ( boundKeys[ result.ordinal() ] != null ) && ( boundKeys[ result.ordinal() ][ set.ordinal() ] == comp ) )
+        if ( ( set == null ) || ( result == null ) )
+            return ( result );
+        
+        final DeviceComponent[] keys = boundKeys[ result.ordinal() ];
+        
+        if ( ( keys != null ) && ( keys[ set.ordinal() ] == comp ) )
             return ( result );
         
         return ( null );
@@ -280,7 +381,8 @@ public class InputBindingsManager< A extends InputAction >
         }
         
         keys[ set.ordinal() ] = comp;
-        keyBindings.put( comp, action );
+        putBinding( comp, action );
+        boundActions[ action.ordinal() ] = action;
         
         notifyBound( comp, set, action );
         
@@ -319,7 +421,7 @@ public class InputBindingsManager< A extends InputAction >
                         {
                             notifyUnbound( boundKeys[ i ][ j ], InputBindingsSet.values()[ j ], keyBindings.get( boundKeys[ i ][ j ] ) );
                             
-                            keyBindings.remove( boundKeys[ i ][ j ] );
+                            removeBinding( boundKeys[ i ][ j ] );
                             boundKeys[ i ][ j ] = null;
                         }
                     }
@@ -331,10 +433,12 @@ public class InputBindingsManager< A extends InputAction >
                     {
                         notifyUnbound( boundKeys[ i ][ j ], InputBindingsSet.values()[ j ], keyBindings.get( boundKeys[ i ][ j ] ) );
                         
-                        keyBindings.remove( boundKeys[ i ][ j ] );
+                        removeBinding( boundKeys[ i ][ j ] );
                         boundKeys[ i ][ j ] = null;
                     }
                 }
+                
+                updateBoundAction( i, boundActions[ i ] );
             }
         }
     }
@@ -370,11 +474,16 @@ public class InputBindingsManager< A extends InputAction >
     }
     
     /**
-     * @return a Map with the KeyCodes mapped to InputActions.
+     * The returned map used to be the live bindings map. Changing it left the
+     * action lookup tables stale and didn't notify the {@link InputBindingListener}s,
+     * so it is read-only now and modifications throw an UnsupportedOperationException.
+     * 
+     * @return an unmodifiable Map with the KeyCodes mapped to InputActions.
+     *         Use the bind() and unbind() methods to change it.
      */
     public Map< DeviceComponent, A > getInputBindingsMap()
     {
-        return ( keyBindings );
+        return ( Collections.unmodifiableMap( keyBindings ) );
     }
     
     /**
@@ -412,11 +521,13 @@ public class InputBindingsManager< A extends InputAction >
                     }
                 }
             }
+            
+            updateBoundAction( i, bindings.boundActions[ i ] );
         }
         
         for ( DeviceComponent comp: bindings.keyBindings.keySet() )
         {
-            this.keyBindings.put( comp, bindings.keyBindings.get( comp ) );
+            this.putBinding( comp, bindings.keyBindings.get( comp ) );
         }
     }
     
@@ -432,5 +543,7 @@ public class InputBindingsManager< A extends InputAction >
     {
         this.keyBindings = new HashMap< DeviceComponent, A >();
         this.boundKeys = new DeviceComponent[ numCommands ][];
+        this.componentActions = new InputAction[ DeviceComponent.getNumComponentIndices() ];
+        this.boundActions = new InputAction[ numCommands ];
     }
 }
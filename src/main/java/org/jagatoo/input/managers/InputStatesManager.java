@@ -220,18 +220,21 @@ public class InputStatesManager
         
         final int ordinal = action.ordinal();
         
-        if ( mouseAxesIgnored && ( comp instanceof MouseAxis ) )
-            tmpPrevStates[ ordinal ] = (short)state;
-        else if ( mouseButtonsIgnored && ( comp instanceof MouseButton ) )
-            tmpPrevStates[ ordinal ] = (short)state;
-        else if ( mouseWheelIgnored && ( comp instanceof MouseWheel ) )
-            tmpPrevStates[ ordinal ] = (short)state;
-        else if ( mouseWheelIgnored && ( comp instanceof WheelUpDownComponent ) )
-            tmpPrevStates[ ordinal ] = (short)state;
-        else if ( keyboardIgnored && ( device instanceof Keyboard ) )
-            { state = 0; tmpPrevStates[ ordinal ] = (short)state; }
-        else if ( controllersIgnored && ( device instanceof Controller ) )
-            tmpPrevStates[ ordinal ] = (short)state;
+        if ( suspendMask != 0 )
+        {
+            if ( mouseAxesIgnored && ( comp instanceof MouseAxis ) )
+                tmpPrevStates[ ordinal ] = (short)state;
+            else if ( mouseButtonsIgnored && ( comp instanceof MouseButton ) )
+                tmpPrevStates[ ordinal ] = (short)state;
+            else if ( mouseWheelIgnored && ( comp instanceof MouseWheel ) )
+                tmpPrevStates[ ordinal ] = (short)state;
+            else if ( mouseWheelIgnored && ( comp instanceof WheelUpDownComponent ) )
+                tmpPrevStates[ ordinal ] = (short)state;
+            else if ( keyboardIgnored && ( device instanceof Keyboard ) )
+                { state = 0; tmpPrevStates[ ordinal ] = (short)state; }
+            else if ( controllersIgnored && ( device instanceof Controller ) )
+                tmpPrevStates[ ordinal ] = (short)state;
+        }
         
         tmpCurrStates[ ordinal ] = (short)state;
         
@@ -324,8 +327,13 @@ public class InputStatesManager
     {
         actions.clear();
         
-        for ( InputAction action : bindingsManager.getBoundActions() )
+        for ( int j = 0; j < numStates; j++ )
         {
+            final InputAction action = bindingsManager.getBoundActionByOrdinal( j );
+            
+            if ( action == null )
+                continue;
+            
             final InputState state2 = getInputState( action );
             
             if ( state2 == state )
@@ -363,8 +371,13 @@ public class InputStatesManager
     public int getActionsByState( InputState state, InputAction[] actions )
     {
         int i = 0;
-        for ( InputAction action : bindingsManager.getBoundActions() )
+        for ( int j = 0; j < numStates; j++ )
         {
+            final InputAction action = bindingsManager.getBoundActionByOrdinal( j );
+            
+            if ( action == null )
+                continue;
+            
             final InputState state2 = getInputState( action );
             
             if ( state2 == state )
@@ -390,8 +403,13 @@ public class InputStatesManager
         InputAction[] actions = null;
         
         int i = 0;
-        for ( InputAction action : bindingsManager.getBoundActions() )
+        for ( int j = 0; j < numStates; j++ )
         {
+            final InputAction action = bindingsManager.getBoundActionByOrdinal( j );
+            
+            if ( action == null )
+                continue;
+            
             final InputState state2 = getInputState( action );
             
             if ( state2 == state )
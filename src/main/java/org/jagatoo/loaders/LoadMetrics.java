@@ -0,0 +1,571 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the metrics of one model or texture load: the time spent in
+ * each {@link LoadPhase}, the bytes read, the number of geometries,
+ * vertices, indices and textures created and an estimate of the peak
+ * temporary memory.<br>
+ * <br>
+ * A loader starts a record through {@link #begin(String, Object)} and
+ * finishes it through {@link #end(boolean)} in a finally block. In between the
+ * record is available to any code on the loading thread through
+ * {@link #current()}. Nested loads (e.g. the textures of a model) get
+ * their own records.<br>
+ * Tasks, that a load hands to worker threads, are wrapped through
+ * {@link #bind(Runnable)} or {@link #bind(Callable)}, so that their counts
+ * and nested loads go to the same record. The phase times are only taken
+ * on the thread, that has begun the load.<br>
+ * <br>
+ * If no {@link LoadMetricsListener} is registered, begin() returns an
+ * inactive record, that ignores all calls. So the loaders pay nothing
+ * for the instrumentation unless it is used.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public final class LoadMetrics
+{
+    private static final CopyOnWriteArrayList<LoadMetricsListener> listeners = new CopyOnWriteArrayList<LoadMetricsListener>();
+    private static final ThreadLocal<LoadMetrics> current = new ThreadLocal<LoadMetrics>();
+    
+    private static final LoadPhase[] PHASES = LoadPhase.values();
+    
+    /**
+     * The inactive record.
+     */
+    public static final LoadMetrics NONE = new LoadMetrics( null, null, null, false );
+    
+    private final String loader;
+    private final String resource;
+    private final LoadMetrics parent;
+    private final boolean active;
+    private final Thread owner;
+    
+    private final long startTime;
+    private long duration = -1L;
+    private final long[] phaseTimes = new long[ PHASES.length ];
+    private LoadPhase phase = LoadPhase.PARSE;
+    private long phaseStart;
+    
+    private long bytesRead = 0L;
+    private int numGeometries = 0;
+    private long numVertices = 0L;
+    private long numIndices = 0L;
+    private int numTextures = 0;
+    private long peakTemporaryBytes = 0L;
+    private boolean successful = true;
+    private Throwable failure = null;
+    
+    public static void addListener( LoadMetricsListener listener )
+    {
+        listeners.add( listener );
+    }
+    
+    public static void removeListener( LoadMetricsListener listener )
+    {
+        listeners.remove( listener );
+    }
+    
+    /**
+     * @return whether any load metrics are collected.
+     */
+    public static boolean isEnabled()
+    {
+        return ( !listeners.isEmpty() );
+    }
+    
+    /**
+     * Starts a new record and makes it the current one for this thread.
+     * 
+     * @param loader the loader's name (e.g. "MD2")
+     * @param resource the loaded resource (e.g. a URL or filename), may be null
+     * 
+     * @return the new record or {@link #NONE}, if no listener is registered.
+     */
+    public static LoadMetrics begin( String loader, Object resource )
+    {
+        if ( listeners.isEmpty() )
+            return ( NONE );
+        
+        final LoadMetrics metrics = new LoadMetrics( loader, ( resource == null ) ? null : String.valueOf( resource ), current.get(), true );
+        current.set( metrics );
+        
+        return ( metrics );
+    }
+    
+    /**
+     * Makes the given record the current one of this thread. Worker tasks
+     * normally use {@link #bind(Runnable)} instead.
+     * 
+     * @param metrics
+     * 
+     * @return the previous record to be restored through {@link #detach(LoadMetrics)}.
+     */
+    public static LoadMetrics attach( LoadMetrics metrics )
+    {
+        final LoadMetrics prev = current.get();
+        
+        if ( ( metrics == null ) || !metrics.isActive() )
+            current.remove();
+        else
+            current.set( metrics );
+        
+        return ( prev );
+    }
+    
+    /**
+     * Restores the record, that has been current before {@link #attach(LoadMetrics)}.
+     * 
+     * @param prev
+     */
+    public static void detach( LoadMetrics prev )
+    {
+        if ( prev == null )
+            current.remove();
+        else
+            current.set( prev );
+    }
+    
+    /**
+     * @return the record of the load running on this thread or {@link #NONE}.
+     */
+    public static LoadMetrics current()
+    {
+        final LoadMetrics metrics = current.get();
+        
+        return ( ( metrics == null ) ? NONE : metrics );
+    }
+    
+    public final boolean isActive()
+    {
+        return ( active );
+    }
+    
+    public final String getLoader()
+    {
+        return ( loader );
+    }
+    
+    public final String getResource()
+    {
+        return ( resource );
+    }
+    
+    /**
+     * @return the record of the load, this one is nested into, or null.
+     */
+    public final LoadMetrics getParent()
+    {
+        return ( parent );
+    }
+    
+    /**
+     * Switches to the given phase.
+     * 
+     * @param phase
+     * 
+     * @return the previous phase to switch back to.
+     */
+    public final LoadPhase enterPhase( LoadPhase phase )
+    {
+        if ( !active || ( Thread.currentThread() != owner ) )
+            return ( phase );
+        
+        final LoadPhase prev = this.phase;
+        
+        if ( phase == prev )
+            return ( prev );
+        
+        final long now = System.nanoTime();
+        phaseTimes[ prev.ordinal() ] += now - phaseStart;
+        phaseStart = now;
+        this.phase = phase;
+        
+        return ( prev );
+    }
+    
+    public final LoadPhase getPhase()
+    {
+        return ( phase );
+    }
+    
+    /**
+     * @param phase
+     * 
+     * @return the time spent in the given phase in nanoseconds.
+     */
+    public final long getPhaseTime( LoadPhase phase )
+    {
+        return ( phaseTimes[ phase.ordinal() ] );
+    }
+    
+    public final void addBytesRead( long bytes )
+    {
+        if ( active )
+        {
+            synchronized ( this )
+            {
+                bytesRead += bytes;
+            }
+        }
+    }
+    
+    public final synchronized long getBytesRead()
+    {
+        return ( bytesRead );
+    }
+    
+    public final void addGeometry( int numVertices, int numIndices )
+    {
+        if ( active )
+        {
+            synchronized ( this )
+            {
+                this.numGeometries++;
+                this.numVertices += numVertices;
+                this.numIndices += numIndices;
+            }
+        }
+    }
+    
+    public final synchronized int getNumGeometries()
+    {
+        return ( numGeometries );
+    }
+    
+    public final synchronized long getNumVertices()
+    {
+        return ( numVertices );
+    }
+    
+    public final synchronized long getNumIndices()
+    {
+        return ( numIndices );
+    }
+    
+    public final void addTextures( int numTextures )
+    {
+        if ( active )
+        {
+            synchronized ( this )
+            {
+                this.numTextures += numTextures;
+            }
+        }
+    }
+    
+    public final synchronized int getNumTextures()
+    {
+        return ( numTextures );
+    }
+    
+    /**
+     * Notes the size of a temporary allocation (e.g. a buffer holding the
+     * whole file). The largest one is kept as the peak estimate.
+     * 
+     * @param bytes
+     */
+    public final void noteTemporaryBytes( long bytes )
+    {
+        if ( active )
+        {
+            synchronized ( this )
+            {
+                if ( bytes > peakTemporaryBytes )
+                    peakTemporaryBytes = bytes;
+            }
+        }
+    }
+    
+    public final synchronized long getPeakTemporaryBytes()
+    {
+        return ( peakTemporaryBytes );
+    }
+    
+    /**
+     * Marks this load as failed. It still has to be ended.
+     * 
+     * @param failure
+     */
+    public final void setFailure( Throwable failure )
+    {
+        if ( active )
+        {
+            synchronized ( this )
+            {
+                this.successful = false;
+                this.failure = failure;
+            }
+        }
+    }
+    
+    public final synchronized Throwable getFailure()
+    {
+        return ( failure );
+    }
+    
+    public final synchronized boolean isSuccessful()
+    {
+        return ( successful );
+    }
+    
+    /**
+     * @return the total time of the load in nanoseconds.
+     */
+    public final long getDuration()
+    {
+        return ( duration );
+    }
+    
+    /**
+     * Finishes this record, restores the parent record as the current one
+     * and passes this one to the listeners.
+     * 
+     * @param successful false, if the load has failed
+     */
+    public final void end( boolean successful )
+    {
+        if ( !active || ( duration >= 0L ) )
+            return;
+        
+        if ( !successful )
+        {
+            synchronized ( this )
+            {
+                this.successful = false;
+            }
+        }
+        
+        final long now = System.nanoTime();
+        phaseTimes[ phase.ordinal() ] += now - phaseStart;
+        duration = now - startTime;
+        
+        if ( current.get() == this )
+        {
+            if ( parent == null )
+                current.remove();
+            else
+                current.set( parent );
+        }
+        
+        for ( LoadMetricsListener listener : listeners )
+            listener.onLoadFinished( this );
+    }
+    
+    private static class MeteredInputStream extends FilterInputStream
+    {
+        private final LoadMetrics metrics;
+        
+        @Override
+        public int read() throws IOException
+        {
+            final LoadPhase prev = metrics.enterPhase( LoadPhase.READ );
+            try
+            {
+                final int b = super.read();
+                if ( b >= 0 )
+                    metrics.addBytesRead( 1L );
+                
+                return ( b );
+            }
+            finally
+            {
+                metrics.enterPhase( prev );
+            }
+        }
+        
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException
+        {
+            final LoadPhase prev = metrics.enterPhase( LoadPhase.READ );
+            try
+            {
+                final int n = super.read( b, off, len );
+                if ( n > 0 )
+                    metrics.addBytesRead( n );
+                
+                return ( n );
+            }
+            finally
+            {
+                metrics.enterPhase( prev );
+            }
+        }
+        
+        @Override
+        public long skip( long n ) throws IOException
+        {
+            final long skipped = super.skip( n );
+            metrics.addBytesRead( skipped );
+            
+            return ( skipped );
+        }
+        
+        public MeteredInputStream( InputStream in, LoadMetrics metrics )
+        {
+            super( in );
+            
+            this.metrics = metrics;
+        }
+    }
+    
+    /**
+     * Wraps a task, that is run on a worker thread on behalf of this load,
+     * so that it reports into this record. If this record is inactive, the task
+     * itself is returned.
+     * 
+     * @param task
+     * 
+     * @return the wrapped task.
+     */
+    public final Runnable bind( final Runnable task )
+    {
+        if ( !active )
+            return ( task );
+        
+        return ( new Runnable()
+        {
+            public void run()
+            {
+                final LoadMetrics prev = attach( LoadMetrics.this );
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    detach( prev );
+                }
+            }
+        } );
+    }
+    
+    /**
+     * Wraps a task, that is run on a worker thread on behalf of this load,
+     * so that it reports into this record. If this record is inactive, the task
+     * itself is returned.
+     * 
+     * @param <V>
+     * @param task
+     * 
+     * @return the wrapped task.
+     */
+    public final <V> Callable<V> bind( final Callable<V> task )
+    {
+        if ( !active )
+            return ( task );
+        
+        return ( new Callable<V>()
+        {
+            public V call() throws Exception
+            {
+                final LoadMetrics prev = attach( LoadMetrics.this );
+                try
+                {
+                    return ( task.call() );
+                }
+                finally
+                {
+                    detach( prev );
+                }
+            }
+        } );
+    }
+    
+    /**
+     * Wraps the given stream, so that the bytes read and the time spent
+     * waiting for it are recorded. If this record is inactive, the stream
+     * itself is returned.
+     * 
+     * @param in
+     * 
+     * @return the wrapped stream.
+     */
+    public final InputStream wrap( InputStream in )
+    {
+        if ( !active || ( in == null ) )
+            return ( in );
+        
+        return ( new MeteredInputStream( in, this ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString()
+    {
+        if ( !active )
+            return ( "LoadMetrics.NONE" );
+        
+        StringBuilder sb = new StringBuilder( 200 );
+        
+        sb.append( loader ).append( " \"" ).append( resource ).append( "\": " );
+        sb.append( duration / 1000000f ).append( "ms (" );
+        for ( int i = 0; i < PHASES.length; i++ )
+        {
+            if ( i > 0 )
+                sb.append( ", " );
+            sb.append( PHASES[ i ].name().toLowerCase() ).append( '=' ).append( phaseTimes[ i ] / 1000000f ).append( "ms" );
+        }
+        sb.append( "), " ).append( bytesRead ).append( " bytes, " );
+        sb.append( numGeometries ).append( " geometries, " );
+        sb.append( numVertices ).append( " vertices, " );
+        sb.append( numIndices ).append( " indices, " );
+        sb.append( numTextures ).append( " textures, peak temp " );
+        sb.append( peakTemporaryBytes ).append( " bytes" );
+        
+        if ( failure != null )
+            sb.append( ", FAILED: " ).append( failure );
+        else if ( !successful )
+            sb.append( ", FAILED" );
+        
+        return ( sb.toString() );
+    }
+    
+    private LoadMetrics( String loader, String resource, LoadMetrics parent, boolean active )
+    {
+        this.loader = loader;
+        this.resource = resource;
+        this.parent = parent;
+        this.active = active;
+        this.owner = active ? Thread.currentThread() : null;
+        
+        this.startTime = active ? System.nanoTime() : 0L;
+        this.phaseStart = startTime;
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jagatoo.logging.JAGTLog;
+
+/**
+ * Aggregates {@link LoadMetrics} in memory: totals per loader, the
+ * slowest loads and all loads exceeding a time budget.
+ * 
+ * <pre>
+ * LoadMetricsAggregator aggregator = new LoadMetricsAggregator();
+ * aggregator.setBudget( 50000000L ); // 50 ms
+ * LoadMetrics.addListener( aggregator );
+ * ...
+ * aggregator.printSummary();
+ * </pre>
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class LoadMetricsAggregator implements LoadMetricsListener
+{
+    /**
+     * The sums of all loads of one loader.
+     */
+    public static class Totals
+    {
+        private final String loader;
+        private int numLoads = 0;
+        private int numFailures = 0;
+        private long time = 0L;
+        private long maxTime = 0L;
+        private final long[] phaseTimes = new long[ LoadPhase.values().length ];
+        private long bytesRead = 0L;
+        private long numGeometries = 0L;
+        private long numVertices = 0L;
+        private long numIndices = 0L;
+        private long numTextures = 0L;
+        private long peakTemporaryBytes = 0L;
+        
+        public final String getLoader()
+        {
+            return ( loader );
+        }
+        
+        public final int getNumLoads()
+        {
+            return ( numLoads );
+        }
+        
+        public final int getNumFailures()
+        {
+            return ( numFailures );
+        }
+        
+        /**
+         * @return the total time of all loads in nanoseconds.
+         */
+        public final long getTime()
+        {
+            return ( time );
+        }
+        
+        /**
+         * @return the time of the slowest load in nanoseconds.
+         */
+        public final long getMaxTime()
+        {
+            return ( maxTime );
+        }
+        
+        public final long getPhaseTime( LoadPhase phase )
+        {
+            return ( phaseTimes[ phase.ordinal() ] );
+        }
+        
+        public final long getBytesRead()
+        {
+            return ( bytesRead );
+        }
+        
+        public final long getNumGeometries()
+        {
+            return ( numGeometries );
+        }
+        
+        public final long getNumVertices()
+        {
+            return ( numVertices );
+        }
+        
+        public final long getNumIndices()
+        {
+            return ( numIndices );
+        }
+        
+        public final long getNumTextures()
+        {
+            return ( numTextures );
+        }
+        
+        /**
+         * @return the largest peak temporary allocation of any load.
+         */
+        public final long getPeakTemporaryBytes()
+        {
+            return ( peakTemporaryBytes );
+        }
+        
+        void add( LoadMetrics metrics )
+        {
+            numLoads++;
+            if ( !metrics.isSuccessful() )
+                numFailures++;
+            
+            time += metrics.getDuration();
+            maxTime = Math.max( maxTime, metrics.getDuration() );
+            
+            for ( LoadPhase phase : LoadPhase.values() )
+                phaseTimes[ phase.ordinal() ] += metrics.getPhaseTime( phase );
+            
+            bytesRead += metrics.getBytesRead();
+            numGeometries += metrics.getNumGeometries();
+            numVertices += metrics.getNumVertices();
+            numIndices += metrics.getNumIndices();
+            numTextures += metrics.getNumTextures();
+            peakTemporaryBytes = Math.max( peakTemporaryBytes, metrics.getPeakTemporaryBytes() );
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder( 200 );
+            
+            sb.append( loader ).append( ": " ).append( numLoads ).append( " loads (" ).append( numFailures ).append( " failed), " );
+            sb.append( time / 1000000f ).append( "ms total, " ).append( maxTime / 1000000f ).append( "ms max (" );
+            
+            final LoadPhase[] phases = LoadPhase.values();
+            for ( int i = 0; i < phases.length; i++ )
+            {
+                if ( i > 0 )
+                    sb.append( ", " );
+                sb.append( phases[ i ].name().toLowerCase() ).append( '=' ).append( phaseTimes[ i ] / 1000000f ).append( "ms" );
+            }
+            
+            sb.append( "), " ).append( bytesRead ).append( " bytes, " );
+            sb.append( numGeometries ).append( " geometries, " ).append( numVertices ).append( " vertices, " ).append( numIndices ).append( " indices, " );
+            sb.append( numTextures ).append( " textures, peak temp " ).append( peakTemporaryBytes ).append( " bytes" );
+            
+            return ( sb.toString() );
+        }
+        
+        Totals( String loader )
+        {
+            this.loader = loader;
+        }
+    }
+    
+    private final HashMap<String, Totals> totals = new HashMap<String, Totals>();
+    private final ArrayList<LoadMetrics> slowestLoads = new ArrayList<LoadMetrics>();
+    private final ArrayList<LoadMetrics> overBudgetLoads = new ArrayList<LoadMetrics>();
+    private int maxSlowestLoads = 16;
+    private int maxOverBudgetLoads = 256;
+    private long budget = Long.MAX_VALUE;
+    
+    /**
+     * Sets the number of slowest loads to keep.
+     * 
+     * @param max
+     */
+    public synchronized void setMaxSlowestLoads( int max )
+    {
+        this.maxSlowestLoads = max;
+        
+        while ( slowestLoads.size() > max )
+            slowestLoads.remove( slowestLoads.size() - 1 );
+    }
+    
+    public final int getMaxSlowestLoads()
+    {
+        return ( maxSlowestLoads );
+    }
+    
+    /**
+     * Sets the time budget of a single load. Loads exceeding it are kept
+     * (up to the given number) and logged as an error.
+     * 
+     * @param nanos
+     * @param maxLoads
+     */
+    public synchronized void setBudget( long nanos, int maxLoads )
+    {
+        this.budget = nanos;
+        this.maxOverBudgetLoads = maxLoads;
+    }
+    
+    /**
+     * Sets the time budget of a single load.
+     * 
+     * @param nanos
+     */
+    public final void setBudget( long nanos )
+    {
+        setBudget( nanos, maxOverBudgetLoads );
+    }
+    
+    /**
+     * @return the time budget of a single load in nanoseconds.
+     */
+    public final long getBudget()
+    {
+        return ( budget );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void onLoadFinished( LoadMetrics metrics )
+    {
+        Totals t = totals.get( metrics.getLoader() );
+        if ( t == null )
+        {
+            t = new Totals( metrics.getLoader() );
+            totals.put( metrics.getLoader(), t );
+        }
+        t.add( metrics );
+        
+        int i = slowestLoads.size();
+        while ( ( i > 0 ) && ( slowestLoads.get( i - 1 ).getDuration() < metrics.getDuration() ) )
+            i--;
+        
+        if ( i < maxSlowestLoads )
+        {
+            slowestLoads.add( i, metrics );
+            
+            if ( slowestLoads.size() > maxSlowestLoads )
+                slowestLoads.remove( slowestLoads.size() - 1 );
+        }
+        
+        if ( metrics.getDuration() > budget )
+        {
+            if ( overBudgetLoads.size() < maxOverBudgetLoads )
+                overBudgetLoads.add( metrics );
+            
+            JAGTLog.error( "Load exceeded budget: ", metrics );
+        }
+    }
+    
+    /**
+     * @param loader
+     * 
+     * @return the totals of the given loader or null.
+     */
+    public synchronized Totals getTotals( String loader )
+    {
+        return ( totals.get( loader ) );
+    }
+    
+    /**
+     * @return the totals of all loaders.
+     */
+    public synchronized List<Totals> getAllTotals()
+    {
+        return ( new ArrayList<Totals>( totals.values() ) );
+    }
+    
+    /**
+     * @return the slowest loads, the slowest first.
+     */
+    public synchronized List<LoadMetrics> getSlowestLoads()
+    {
+        return ( new ArrayList<LoadMetrics>( slowestLoads ) );
+    }
+    
+    /**
+     * @return the loads, that exceeded the budget.
+     */
+    public synchronized List<LoadMetrics> getOverBudgetLoads()
+    {
+        return ( new ArrayList<LoadMetrics>( overBudgetLoads ) );
+    }
+    
+    public synchronized void reset()
+    {
+        totals.clear();
+        slowestLoads.clear();
+        overBudgetLoads.clear();
+    }
+    
+    /**
+     * Logs the totals and the slowest loads.
+     */
+    public synchronized void printSummary()
+    {
+        JAGTLog.println( "Load metrics per loader:" );
+        for ( Totals t : totals.values() )
+            JAGTLog.println( "    ", t );
+        
+        JAGTLog.println( "Slowest loads:" );
+        for ( int i = 0; i < slowestLoads.size(); i++ )
+            JAGTLog.println( "    ", slowestLoads.get( i ) );
+    }
+}
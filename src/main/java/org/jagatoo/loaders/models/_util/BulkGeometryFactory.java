@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.jagatoo.datatypes.NamedObject;
+
+/**
+ * A {@link GeometryFactory}, that accepts whole vertex arrays as NIO
+ * buffers.<br>
+ * All buffers passed to these methods are direct, in native byte order
+ * and start at position 0. The ownership passes to the geometry, so an
+ * implementation may adopt them without copying. The loader doesn't touch
+ * a buffer after it has been handed over.<br>
+ * <br>
+ * Loaders don't call these methods directly, but through
+ * {@link GeometryBuffers}, which falls back to the array methods of a plain
+ * {@link GeometryFactory}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public interface BulkGeometryFactory extends GeometryFactory
+{
+    public void setCoordinates( NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices );
+    
+    public void setNormals( NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices );
+    
+    public void setTexCoords( NamedObject geometry, GeometryType type, int textureUnit, int texCoordSize, FloatBuffer data, int numVertices );
+    
+    public void setColors( NamedObject geometry, GeometryType type, int colorSize, FloatBuffer data, int numVertices );
+    
+    public void setVertexAttribs( NamedObject geometry, GeometryType type, int attribIndex, int attribSize, FloatBuffer data, int numVertices );
+    
+    public void setIndex( NamedObject geometry, GeometryType type, IntBuffer data, int numIndices );
+    
+    /**
+     * Hands over the complete vertex data of a geometry created by
+     * {@link #createInterleavedGeometry(String, GeometryType, int, int, int, int[], int, boolean, int[], int[])}.
+     * Each vertex holds the coordinates, normal, color, texture coordinates
+     * and vertex attributes (each if contained in the features mask) in this order.
+     * 
+     * @param geometry
+     * @param type
+     * @param data the interleaved float data
+     * @param numVertices
+     */
+    public void setInterleavedData( NamedObject geometry, GeometryType type, ByteBuffer data, int numVertices );
+}
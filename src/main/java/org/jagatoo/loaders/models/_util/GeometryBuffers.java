@@ -0,0 +1,457 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.jagatoo.datatypes.NamedObject;
+import org.jagatoo.geometry.GeometryDataContainer;
+import org.jagatoo.geometry.MeshOptimizer;
+import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
+import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
+import org.jagatoo.util.nio.BufferUtils;
+
+/**
+ * Hands whole vertex arrays to a {@link GeometryFactory}.<br>
+ * A {@link BulkGeometryFactory} receives the buffers as they are. Any other
+ * factory receives them through its array methods, so that it is still
+ * called once per array instead of once per vertex.<br>
+ * Buffers created for a plain factory (see {@link #createFloatBuffer(GeometryFactory, int)})
+ * are backed by heap arrays, which are handed over without a copy.<br>
+ * <br>
+ * If enabled, the loaders pass their indexed triangle lists through the
+ * {@link MeshOptimizer} before handing them over.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public final class GeometryBuffers
+{
+    private static final LogHandle LOG = JAGTLog.getHandle( GeometryBuffers.class );
+    
+    private static volatile boolean meshOptimizationEnabled = false;
+    private static volatile boolean overdrawOptimizationEnabled = false;
+    private static final MeshOptimizer.Statistics meshStatistics = new MeshOptimizer.Statistics();
+    
+    /**
+     * Enables or disables the vertex cache optimization of loaded meshes.
+     * This is disabled by default, since it costs loading time.<br>
+     * OBJ, MD3, MD5 and 3DS meshes get their triangles and vertices reordered
+     * (the animation frames and bone weights of MD3 and MD5 are remapped
+     * accordingly). BSP faces are optimized through
+     * {@link #finalizeGeometry(GeometryFactory, NamedObject, GeometryType, int, int, int, int)},
+     * if the factory creates {@link GeometryDataContainer}s.<br>
+     * ASE, AC3D and MD2 create non-indexed triangle, strip and fan arrays, so
+     * there's nothing to reorder. COLLADA, MS3D and Cal3D don't pass their
+     * meshes through a {@link GeometryFactory} and are not covered.
+     * 
+     * @param enabled
+     */
+    public static void setMeshOptimizationEnabled( boolean enabled )
+    {
+        meshOptimizationEnabled = enabled;
+    }
+    
+    /**
+     * @return whether loaded meshes are optimized for the vertex cache.
+     */
+    public static boolean isMeshOptimizationEnabled()
+    {
+        return ( meshOptimizationEnabled );
+    }
+    
+    /**
+     * Enables or disables the additional overdraw pass of the mesh optimization.
+     * 
+     * @param enabled
+     */
+    public static void setOverdrawOptimizationEnabled( boolean enabled )
+    {
+        overdrawOptimizationEnabled = enabled;
+    }
+    
+    /**
+     * @return whether the mesh optimization includes the overdraw pass.
+     */
+    public static boolean isOverdrawOptimizationEnabled()
+    {
+        return ( overdrawOptimizationEnabled );
+    }
+    
+    /**
+     * @return the accumulated ACMR/ATVR statistics of all meshes optimized so far.
+     */
+    public static MeshOptimizer.Statistics getMeshStatistics()
+    {
+        return ( meshStatistics );
+    }
+    
+    /**
+     * Reorders the triangles of an indexed triangle list in place, if the
+     * mesh optimization is enabled.
+     * 
+     * @param name the mesh name (for the log)
+     * @param indices
+     * @param offset
+     * @param numIndices
+     * @param numVertices
+     * @param coords the vertex coordinates (needed for the overdraw pass only, may be null)
+     * 
+     * @return true, if the triangles have been reordered (false, if any index is out of range).
+     */
+    public static boolean optimizeTriangles( String name, int[] indices, int offset, int numIndices, int numVertices, float[] coords )
+    {
+        if ( !meshOptimizationEnabled || ( numIndices < 6 ) )
+            return ( false );
+        
+        if ( !MeshOptimizer.checkIndices( indices, offset, numIndices, numVertices ) )
+        {
+            LOG.error( "Mesh \"", name, "\" references vertices out of range. It is not optimized." );
+            
+            return ( false );
+        }
+        
+        MeshOptimizer.Statistics stats = MeshOptimizer.optimizeTriangles( indices, offset, numIndices, numVertices, overdrawOptimizationEnabled ? coords : null );
+        meshStatistics.add( stats );
+        
+        LOG.debug( "Optimized mesh \"", name, "\": ", stats );
+        
+        return ( true );
+    }
+    
+    /**
+     * Finalizes the geometry through the factory. If the mesh optimization is
+     * enabled and the geometry is an indexed triangle {@link GeometryDataContainer},
+     * its rendered range is optimized in place first (see {@link MeshOptimizer#optimize(GeometryDataContainer, int, int, int, boolean)}).
+     * This is meant for loaders, that don't optimize their index arrays themselves.
+     */
+    public static void finalizeGeometry( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, int initialVertexIndex, int numValidVertices, int initialIndexIndex, int numValidIndices )
+    {
+        if ( meshOptimizationEnabled && ( type == GeometryType.INDEXED_TRIANGLE_ARRAY ) && ( numValidIndices >= 6 ) && ( geometry instanceof GeometryDataContainer ) )
+        {
+            MeshOptimizer.Statistics stats = MeshOptimizer.optimize( (GeometryDataContainer)geometry, initialIndexIndex, numValidIndices, initialVertexIndex + numValidVertices, overdrawOptimizationEnabled );
+            
+            if ( stats != null )
+            {
+                meshStatistics.add( stats );
+                
+                LOG.debug( "Optimized mesh \"", geometry.getName(), "\": ", stats );
+            }
+        }
+        
+        geomFactory.finalizeGeometry( geometry, type, initialVertexIndex, numValidVertices, initialIndexIndex, numValidIndices );
+    }
+    
+    /**
+     * Reorders the triangles of an indexed triangle list and renumbers the
+     * vertices in the order of their first use, if the mesh optimization
+     * is enabled. The vertex data has to be reordered by the returned
+     * table through {@link MeshOptimizer#remapVertexData(float[], int, int[])}.
+     * 
+     * @param name the mesh name (for the log)
+     * @param indices
+     * @param numIndices
+     * @param numVertices
+     * @param coords the vertex coordinates (needed for the overdraw pass only, may be null)
+     * 
+     * @return the remap table or null, if the mesh has not been optimized.
+     */
+    public static int[] optimizeMesh( String name, int[] indices, int numIndices, int numVertices, float[] coords )
+    {
+        if ( !optimizeTriangles( name, indices, 0, numIndices, numVertices, coords ) )
+            return ( null );
+        
+        return ( MeshOptimizer.optimizeVertexFetch( indices, 0, numIndices, numVertices ) );
+    }
+    
+    /**
+     * @param geomFactory
+     * 
+     * @return true, if the factory (or the factory wrapped by a {@link MeteredGeometryFactory}) accepts NIO buffers.
+     */
+    public static boolean isBulkFactory( GeometryFactory geomFactory )
+    {
+        if ( geomFactory instanceof MeteredGeometryFactory )
+            geomFactory = ( (MeteredGeometryFactory)geomFactory ).getGeometryFactory();
+        
+        return ( geomFactory instanceof BulkGeometryFactory );
+    }
+    
+    /**
+     * @return a new direct FloatBuffer in native byte order.
+     */
+    public static FloatBuffer createFloatBuffer( int size )
+    {
+        return ( BufferUtils.createFloatBuffer( size ) );
+    }
+    
+    /**
+     * @return a new direct IntBuffer in native byte order.
+     */
+    public static IntBuffer createIntBuffer( int size )
+    {
+        return ( BufferUtils.createIntBuffer( size ) );
+    }
+    
+    /**
+     * @return a new direct FloatBuffer for a {@link BulkGeometryFactory} or an array backed one for any other factory.
+     */
+    public static FloatBuffer createFloatBuffer( GeometryFactory geomFactory, int size )
+    {
+        if ( isBulkFactory( geomFactory ) )
+            return ( createFloatBuffer( size ) );
+        
+        return ( FloatBuffer.wrap( new float[ size ] ) );
+    }
+    
+    /**
+     * @return a new direct IntBuffer for a {@link BulkGeometryFactory} or an array backed one for any other factory.
+     */
+    public static IntBuffer createIntBuffer( GeometryFactory geomFactory, int size )
+    {
+        if ( isBulkFactory( geomFactory ) )
+            return ( createIntBuffer( size ) );
+        
+        return ( IntBuffer.wrap( new int[ size ] ) );
+    }
+    
+    /**
+     * @return a new direct ByteBuffer in native byte order, large enough
+     * for the given number of interleaved vertices.
+     */
+    public static ByteBuffer createInterleavedBuffer( int numVertices, int features, boolean colorAlpha, int[] tuSizes, int[] vaSizes )
+    {
+        final int stride = getInterleavedStride( features, colorAlpha, tuSizes, vaSizes );
+        
+        return ( ByteBuffer.allocateDirect( numVertices * stride * 4 ).order( ByteOrder.nativeOrder() ) );
+    }
+    
+    /**
+     * @return the number of floats per interleaved vertex.
+     */
+    public static int getInterleavedStride( int features, boolean colorAlpha, int[] tuSizes, int[] vaSizes )
+    {
+        int stride = 0;
+        
+        if ( ( features & GeometryDataContainer.COORDINATES ) != 0 )
+            stride += 3;
+        
+        if ( ( features & GeometryDataContainer.NORMALS ) != 0 )
+            stride += 3;
+        
+        if ( ( features & GeometryDataContainer.COLORS ) != 0 )
+            stride += colorAlpha ? 4 : 3;
+        
+        if ( ( features & GeometryDataContainer.TEXTURE_COORDINATES ) != 0 )
+        {
+            for ( int i = 0; i < tuSizes.length; i++ )
+                stride += tuSizes[ i ];
+        }
+        
+        if ( ( features & GeometryDataContainer.VERTEX_ATTRIBUTES ) != 0 )
+        {
+            for ( int i = 0; i < vaSizes.length; i++ )
+                stride += vaSizes[ i ];
+        }
+        
+        return ( stride );
+    }
+    
+    private static float[] toArray( FloatBuffer data, int length )
+    {
+        if ( data.hasArray() && ( data.arrayOffset() == 0 ) )
+            return ( data.array() );
+        
+        float[] array = new float[ length ];
+        data.position( 0 );
+        data.get( array, 0, length );
+        data.position( 0 );
+        
+        return ( array );
+    }
+    
+    public static void setCoordinates( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+            ( (BulkGeometryFactory)geomFactory ).setCoordinates( geometry, type, data, numVertices );
+        else
+            geomFactory.setCoordinates( geometry, type, 0, toArray( data, numVertices * 3 ), 0, numVertices );
+    }
+    
+    public static void setNormals( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+            ( (BulkGeometryFactory)geomFactory ).setNormals( geometry, type, data, numVertices );
+        else
+            geomFactory.setNormals( geometry, type, 0, toArray( data, numVertices * 3 ), 0, numVertices );
+    }
+    
+    public static void setTexCoords( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, int textureUnit, int texCoordSize, FloatBuffer data, int numVertices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+            ( (BulkGeometryFactory)geomFactory ).setTexCoords( geometry, type, textureUnit, texCoordSize, data, numVertices );
+        else
+            geomFactory.setTexCoords( geometry, type, textureUnit, texCoordSize, 0, toArray( data, numVertices * texCoordSize ), 0, numVertices );
+    }
+    
+    public static void setColors( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, int colorSize, FloatBuffer data, int numVertices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+            ( (BulkGeometryFactory)geomFactory ).setColors( geometry, type, colorSize, data, numVertices );
+        else
+            geomFactory.setColors( geometry, type, colorSize, 0, toArray( data, numVertices * colorSize ), 0, numVertices );
+    }
+    
+    public static void setVertexAttribs( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, int attribIndex, int attribSize, FloatBuffer data, int numVertices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+            ( (BulkGeometryFactory)geomFactory ).setVertexAttribs( geometry, type, attribIndex, attribSize, data, numVertices );
+        else
+            geomFactory.setVertexAttribs( geometry, type, attribIndex, attribSize, 0, toArray( data, numVertices * attribSize ), 0, numVertices );
+    }
+    
+    public static void setIndex( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, IntBuffer data, int numIndices )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+        {
+            ( (BulkGeometryFactory)geomFactory ).setIndex( geometry, type, data, numIndices );
+        }
+        else if ( data.hasArray() && ( data.arrayOffset() == 0 ) )
+        {
+            geomFactory.setIndex( geometry, type, 0, data.array(), 0, numIndices );
+        }
+        else
+        {
+            int[] array = new int[ numIndices ];
+            data.position( 0 );
+            data.get( array, 0, numIndices );
+            data.position( 0 );
+            
+            geomFactory.setIndex( geometry, type, 0, array, 0, numIndices );
+        }
+    }
+    
+    /**
+     * Hands over the index array. Only a {@link BulkGeometryFactory} gets a (direct) copy of it.
+     */
+    public static void setIndex( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, int[] data, int offset, int numIndices )
+    {
+        if ( isBulkFactory( geomFactory ) )
+        {
+            IntBuffer buffer = createIntBuffer( numIndices );
+            buffer.put( data, offset, numIndices );
+            buffer.rewind();
+            
+            ( (BulkGeometryFactory)geomFactory ).setIndex( geometry, type, buffer, numIndices );
+        }
+        else
+        {
+            geomFactory.setIndex( geometry, type, 0, data, offset, numIndices );
+        }
+    }
+    
+    /**
+     * Hands over interleaved vertex data (see {@link BulkGeometryFactory#setInterleavedData(NamedObject, GeometryType, ByteBuffer, int)}).
+     * For a plain {@link GeometryFactory} the data is split into one array per vertex component.
+     */
+    public static void setInterleavedData( GeometryFactory geomFactory, NamedObject geometry, GeometryType type, ByteBuffer data, int numVertices, int features, boolean colorAlpha, int[] tuSizes, int[] vaSizes )
+    {
+        if ( geomFactory instanceof BulkGeometryFactory )
+        {
+            ( (BulkGeometryFactory)geomFactory ).setInterleavedData( geometry, type, data, numVertices );
+            
+            return;
+        }
+        
+        final int stride = getInterleavedStride( features, colorAlpha, tuSizes, vaSizes );
+        final FloatBuffer floats = data.duplicate().order( data.order() ).asFloatBuffer();
+        
+        int offset = 0;
+        
+        if ( ( features & GeometryDataContainer.COORDINATES ) != 0 )
+        {
+            geomFactory.setCoordinates( geometry, type, 0, deinterleave( floats, stride, offset, 3, numVertices ), 0, numVertices );
+            offset += 3;
+        }
+        
+        if ( ( features & GeometryDataContainer.NORMALS ) != 0 )
+        {
+            geomFactory.setNormals( geometry, type, 0, deinterleave( floats, stride, offset, 3, numVertices ), 0, numVertices );
+            offset += 3;
+        }
+        
+        if ( ( features & GeometryDataContainer.COLORS ) != 0 )
+        {
+            final int colorSize = colorAlpha ? 4 : 3;
+            geomFactory.setColors( geometry, type, colorSize, 0, deinterleave( floats, stride, offset, colorSize, numVertices ), 0, numVertices );
+            offset += colorSize;
+        }
+        
+        if ( ( features & GeometryDataContainer.TEXTURE_COORDINATES ) != 0 )
+        {
+            for ( int i = 0; i < tuSizes.length; i++ )
+            {
+                geomFactory.setTexCoords( geometry, type, i, tuSizes[ i ], 0, deinterleave( floats, stride, offset, tuSizes[ i ], numVertices ), 0, numVertices );
+                offset += tuSizes[ i ];
+            }
+        }
+        
+        if ( ( features & GeometryDataContainer.VERTEX_ATTRIBUTES ) != 0 )
+        {
+            for ( int i = 0; i < vaSizes.length; i++ )
+            {
+                geomFactory.setVertexAttribs( geometry, type, i, vaSizes[ i ], 0, deinterleave( floats, stride, offset, vaSizes[ i ], numVertices ), 0, numVertices );
+                offset += vaSizes[ i ];
+            }
+        }
+    }
+    
+    private static float[] deinterleave( FloatBuffer data, int stride, int offset, int size, int numVertices )
+    {
+        float[] array = new float[ numVertices * size ];
+        
+        for ( int i = 0; i < numVertices; i++ )
+        {
+            final int src = i * stride + offset;
+            
+            for ( int j = 0; j < size; j++ )
+                array[ i * size + j ] = data.get( src + j );
+        }
+        
+        return ( array );
+    }
+    
+    private GeometryBuffers()
+    {
+    }
+}
@@ -31,6 +31,7 @@ package org.jagatoo.loaders.models._util;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 
 /**
@@ -104,4 +105,31 @@ public class LoaderUtils
         
         return ( filename.substring( lastSlashPos + 1, lastDotPos ) );
     }
+    
+    /**
+     * @param url
+     * 
+     * @return the local file denoted by the given URL or null, if it is not a local file.
+     */
+    public static final File getLocalFile( URL url )
+    {
+        if ( !"file".equals( url.getProtocol() ) )
+            return ( null );
+        
+        try
+        {
+            File file = new File( url.toURI() );
+            
+            if ( file.isFile() )
+                return ( file );
+        }
+        catch ( URISyntaxException e )
+        {
+        }
+        catch ( IllegalArgumentException e )
+        {
+        }
+        
+        return ( null );
+    }
 }
@@ -0,0 +1,411 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.IdentityHashMap;
+
+import org.jagatoo.datatypes.NamedObject;
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
+import org.openmali.vecmath2.Colorf;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.TexCoordf;
+import org.openmali.vecmath2.Vector3f;
+
+/**
+ * Wraps a {@link GeometryFactory} to record the created geometries and the
+ * time spent in its bulk callbacks into a {@link LoadMetrics} record.
+ * The per-vertex callbacks are not timed, their time goes to the loader's
+ * current phase.<br>
+ * Use {@link #wrap(GeometryFactory, LoadMetrics)}, which returns the factory
+ * itself, if the record is inactive.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class MeteredGeometryFactory implements BulkGeometryFactory
+{
+    private static class InterleavedFormat
+    {
+        final int features;
+        final boolean colorAlpha;
+        final int[] tuSizes;
+        final int[] vaSizes;
+        
+        InterleavedFormat( int features, boolean colorAlpha, int[] tuSizes, int[] vaSizes )
+        {
+            this.features = features;
+            this.colorAlpha = colorAlpha;
+            this.tuSizes = tuSizes;
+            this.vaSizes = vaSizes;
+        }
+    }
+    
+    private final GeometryFactory geomFactory;
+    private final LoadMetrics metrics;
+    private final IdentityHashMap<NamedObject, InterleavedFormat> interleavedFormats = new IdentityHashMap<NamedObject, InterleavedFormat>();
+    
+    /**
+     * @return the wrapped factory.
+     */
+    public final GeometryFactory getGeometryFactory()
+    {
+        return ( geomFactory );
+    }
+    
+    public NamedObject createGeometry( String name, GeometryType type, int coordSize, int numVertices, int numIndices, int[] numStrips )
+    {
+        metrics.addGeometry( numVertices, numIndices );
+        
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            return ( geomFactory.createGeometry( name, type, coordSize, numVertices, numIndices, numStrips ) );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public NamedObject createInterleavedGeometry( String name, GeometryType type, int coordSize, int numVertices, int numIndices, int[] numStrips, int features, boolean colorAlpha, int[] tuSizes, int[] vaSizes )
+    {
+        metrics.addGeometry( numVertices, numIndices );
+        
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            NamedObject geometry = geomFactory.createInterleavedGeometry( name, type, coordSize, numVertices, numIndices, numStrips, features, colorAlpha, tuSizes, vaSizes );
+            
+            if ( !( geomFactory instanceof BulkGeometryFactory ) )
+                interleavedFormats.put( geometry, new InterleavedFormat( features, colorAlpha, tuSizes, vaSizes ) );
+            
+            return ( geometry );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setCoordinate( NamedObject geometry, GeometryType type, int vertexIndex, float x, float y, float z )
+    {
+        geomFactory.setCoordinate( geometry, type, vertexIndex, x, y, z );
+    }
+    
+    public void setCoordinates( NamedObject geometry, GeometryType type, int vertexIndex, float[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setCoordinates( geometry, type, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setCoordinates( NamedObject geometry, GeometryType type, int vertexIndex, Point3f[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setCoordinates( geometry, type, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setNormal( NamedObject geometry, GeometryType type, int vertexIndex, float x, float y, float z )
+    {
+        geomFactory.setNormal( geometry, type, vertexIndex, x, y, z );
+    }
+    
+    public void setNormals( NamedObject geometry, GeometryType type, int vertexIndex, float[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setNormals( geometry, type, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setNormals( NamedObject geometry, GeometryType type, int vertexIndex, Vector3f[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setNormals( geometry, type, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setTexCoord( NamedObject geometry, GeometryType type, int textureUnit, int vertexIndex, float s, float t )
+    {
+        geomFactory.setTexCoord( geometry, type, textureUnit, vertexIndex, s, t );
+    }
+    
+    public void setTexCoords( NamedObject geometry, GeometryType type, int textureUnit, int texCoordSize, int vertexIndex, float[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setTexCoords( geometry, type, textureUnit, texCoordSize, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setTexCoords( NamedObject geometry, GeometryType type, int textureUnit, int texCoordSize, int vertexIndex, TexCoordf<?>[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setTexCoords( geometry, type, textureUnit, texCoordSize, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setColors( NamedObject geometry, GeometryType type, int colorSize, int vertexIndex, float[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setColors( geometry, type, colorSize, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setColors( NamedObject geometry, GeometryType type, int colorSize, int vertexIndex, Colorf[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setColors( geometry, type, colorSize, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setVertexAttribs( NamedObject geometry, GeometryType type, int attribIndex, int attribSize, int vertexIndex, float[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setVertexAttribs( geometry, type, attribIndex, attribSize, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setIndex( NamedObject geometry, GeometryType type, int vertexIndex, int[] data, int offset, int num )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.setIndex( geometry, type, vertexIndex, data, offset, num );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void finalizeGeometry( NamedObject geometry, GeometryType type, int initialVertexIndex, int numValidVertices, int initialIndexIndex, int numValidIndices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            geomFactory.finalizeGeometry( geometry, type, initialVertexIndex, numValidVertices, initialIndexIndex, numValidIndices );
+            
+            interleavedFormats.remove( geometry );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setCoordinates( NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setCoordinates( geomFactory, geometry, type, data, numVertices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setNormals( NamedObject geometry, GeometryType type, FloatBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setNormals( geomFactory, geometry, type, data, numVertices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setTexCoords( NamedObject geometry, GeometryType type, int textureUnit, int texCoordSize, FloatBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setTexCoords( geomFactory, geometry, type, textureUnit, texCoordSize, data, numVertices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setColors( NamedObject geometry, GeometryType type, int colorSize, FloatBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setColors( geomFactory, geometry, type, colorSize, data, numVertices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setVertexAttribs( NamedObject geometry, GeometryType type, int attribIndex, int attribSize, FloatBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setVertexAttribs( geomFactory, geometry, type, attribIndex, attribSize, data, numVertices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setIndex( NamedObject geometry, GeometryType type, IntBuffer data, int numIndices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            GeometryBuffers.setIndex( geomFactory, geometry, type, data, numIndices );
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    public void setInterleavedData( NamedObject geometry, GeometryType type, ByteBuffer data, int numVertices )
+    {
+        final LoadPhase prev = metrics.enterPhase( LoadPhase.FACTORY );
+        try
+        {
+            if ( geomFactory instanceof BulkGeometryFactory )
+            {
+                ( (BulkGeometryFactory)geomFactory ).setInterleavedData( geometry, type, data, numVertices );
+            }
+            else
+            {
+                final InterleavedFormat format = interleavedFormats.get( geometry );
+                
+                if ( format == null )
+                    throw new Error( "The geometry has not been created through createInterleavedGeometry()." );
+                
+                GeometryBuffers.setInterleavedData( geomFactory, geometry, type, data, numVertices, format.features, format.colorAlpha, format.tuSizes, format.vaSizes );
+            }
+        }
+        finally
+        {
+            metrics.enterPhase( prev );
+        }
+    }
+    
+    /**
+     * Forgets the interleaved formats of geometries, that haven't been finalized.
+     * Called at the end of the load.
+     */
+    public void release()
+    {
+        interleavedFormats.clear();
+    }
+    
+    /**
+     * @param geomFactory
+     * @param metrics
+     * 
+     * @return a factory recording into the given metrics or the given factory itself, if the metrics are inactive.
+     */
+    public static GeometryFactory wrap( GeometryFactory geomFactory, LoadMetrics metrics )
+    {
+        if ( !metrics.isActive() || ( geomFactory == null ) || ( geomFactory instanceof MeteredGeometryFactory ) )
+            return ( geomFactory );
+        
+        return ( new MeteredGeometryFactory( geomFactory, metrics ) );
+    }
+    
+    public MeteredGeometryFactory( GeometryFactory geomFactory, LoadMetrics metrics )
+    {
+        this.geomFactory = geomFactory;
+        this.metrics = metrics;
+    }
+}
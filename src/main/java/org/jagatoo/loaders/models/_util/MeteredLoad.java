@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.io.InputStream;
+
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
+
+/**
+ * Bundles the {@link LoadMetrics} record of one model load with the
+ * metered {@link GeometryFactory}. A loader uses it like this:
+ * <pre>
+ * final MeteredLoad load = MeteredLoad.begin( "MD2", baseURL, geomFactory );
+ * try
+ * {
+ *     parse( load.wrap( in ), load.getGeometryFactory() );
+ *     
+ *     load.setSuccessful();
+ * }
+ * finally
+ * {
+ *     load.end();
+ * }
+ * </pre>
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public final class MeteredLoad
+{
+    private final LoadMetrics metrics;
+    private final GeometryFactory geomFactory;
+    private boolean successful = false;
+    
+    /**
+     * @return the record of this load ({@link LoadMetrics#NONE}, if no metrics are collected).
+     */
+    public final LoadMetrics getMetrics()
+    {
+        return ( metrics );
+    }
+    
+    /**
+     * @return the factory to create the geometries through.
+     */
+    public final GeometryFactory getGeometryFactory()
+    {
+        return ( geomFactory );
+    }
+    
+    /**
+     * @see LoadMetrics#wrap(InputStream)
+     * 
+     * @param in
+     * 
+     * @return the wrapped stream.
+     */
+    public final InputStream wrap( InputStream in )
+    {
+        return ( metrics.wrap( in ) );
+    }
+    
+    /**
+     * @see LoadMetrics#enterPhase(LoadPhase)
+     * 
+     * @param phase
+     * 
+     * @return the previous phase.
+     */
+    public final LoadPhase enterPhase( LoadPhase phase )
+    {
+        return ( metrics.enterPhase( phase ) );
+    }
+    
+    /**
+     * Marks the load as successful. Must be the last statement in the try block.
+     */
+    public final void setSuccessful()
+    {
+        this.successful = true;
+    }
+    
+    /**
+     * Finishes the record. Must be called in a finally block.
+     */
+    public final void end()
+    {
+        if ( geomFactory instanceof MeteredGeometryFactory )
+            ( (MeteredGeometryFactory)geomFactory ).release();
+        
+        metrics.end( successful );
+    }
+    
+    /**
+     * Starts the record of a model load.
+     * 
+     * @param loader the loader's name (e.g. "MD2")
+     * @param resource the loaded resource, may be null
+     * @param geomFactory the loader's factory, may be null
+     * 
+     * @return the new load.
+     */
+    public static MeteredLoad begin( String loader, Object resource, GeometryFactory geomFactory )
+    {
+        final LoadMetrics metrics = LoadMetrics.begin( loader, resource );
+        
+        return ( new MeteredLoad( metrics, MeteredGeometryFactory.wrap( geomFactory, metrics ) ) );
+    }
+    
+    private MeteredLoad( LoadMetrics metrics, GeometryFactory geomFactory )
+    {
+        this.metrics = metrics;
+        this.geomFactory = geomFactory;
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A cache for compiled model data.<br>
+ * After a model has been parsed for the first time, a loader can write its
+ * converted data to a cache file in the jagatoo binary cache format and
+ * read it back on the next load instead of parsing the source again.<br>
+ * <br>
+ * The format is flat and little-endian. All arrays are stored as blocks
+ * aligned to 8 bytes, so that they can be used directly from a
+ * memory-mapped cache file (see {@link ModelCacheWriter} and
+ * {@link ModelCacheReader}).<br>
+ * <br>
+ * A cache file is invalidated, if the length or the modification time of
+ * the source or of any of its dependencies (e.g. material libraries) has
+ * changed. If a resource doesn't provide a modification time or hash
+ * verification is enabled, a hash of the contents is compared.
+ * Only local files and entries of local jar files can be validated, so
+ * resources behind any other URL are never cached.<br>
+ * <br>
+ * Currently the OBJ and the MD5 mesh loaders use this cache. The ASE, AC3D
+ * and COLLADA loaders push their data straight into the factories while
+ * parsing and have no intermediate form to be cached yet. 3DS is a binary
+ * format and is cheap to parse anyway.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class ModelCache
+{
+    /**
+     * "JGTC" in little-endian byte order
+     */
+    public static final int MAGIC = 0x4354474A;
+    public static final int FORMAT_VERSION = 2;
+    
+    public static final String FILE_EXTENSION = "jgc";
+    
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    
+    /**
+     * The length stamped for a resource, that doesn't exist.
+     */
+    static final long MISSING = -1L;
+    
+    /**
+     * The hash stamped, if the contents haven't been hashed.
+     */
+    static final long NO_HASH = 0L;
+    
+    /**
+     * The state of a resource at the time, it has been read.
+     * A stamp must be taken <b>before</b> the resource is read, so that changes
+     * during the load invalidate the cache file.
+     */
+    public static final class Stamp
+    {
+        private final URL resource;
+        final long length;
+        final long lastModified;
+        final long hash;
+        
+        public final URL getResource()
+        {
+            return ( resource );
+        }
+        
+        /**
+         * @return true, if the resource didn't exist, when it was stamped.
+         */
+        public final boolean isMissing()
+        {
+            return ( length == MISSING );
+        }
+        
+        Stamp( URL resource, long length, long lastModified, long hash )
+        {
+            this.resource = resource;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+    
+    private final File cacheDir;
+    
+    private boolean hashVerificationEnabled = false;
+    
+    /**
+     * @return the folder, the cache files are stored in or null, if they're
+     * stored next to the source files.
+     */
+    public final File getCacheDir()
+    {
+        return ( cacheDir );
+    }
+    
+    /**
+     * If enabled, the contents' hashes of the sources are compared in
+     * addition to their length and modification time.
+     * Cache files written without hash verification are rewritten once.
+     * 
+     * @param enabled
+     */
+    public void setHashVerificationEnabled( boolean enabled )
+    {
+        this.hashVerificationEnabled = enabled;
+    }
+    
+    public final boolean isHashVerificationEnabled()
+    {
+        return ( hashVerificationEnabled );
+    }
+    
+    /**
+     * @return the local file, the given resource is validated against (the jar file for a jar entry)
+     * or null, if this would need a connection. The file may not exist.
+     */
+    private static File getStampFile( URL resource )
+    {
+        if ( "jar".equals( resource.getProtocol() ) )
+        {
+            final String spec = resource.getFile();
+            final int separator = spec.indexOf( "!/" );
+            
+            if ( separator < 0 )
+                return ( null );
+            
+            try
+            {
+                resource = new URL( spec.substring( 0, separator ) );
+            }
+            catch ( MalformedURLException e )
+            {
+                return ( null );
+            }
+        }
+        
+        if ( !"file".equals( resource.getProtocol() ) )
+            return ( null );
+        
+        try
+        {
+            return ( new File( resource.toURI() ) );
+        }
+        catch ( URISyntaxException e )
+        {
+        }
+        catch ( IllegalArgumentException e )
+        {
+        }
+        
+        return ( null );
+    }
+    
+    private static final long hash( long hash, byte b )
+    {
+        return ( ( hash ^ ( b & 0xFF ) ) * FNV_PRIME );
+    }
+    
+    /**
+     * Computes the 64 bit FNV-1a hash of the file's contents.
+     */
+    private static long computeHash( File file ) throws IOException
+    {
+        long hash = FNV_OFFSET_BASIS;
+        
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            
+            for ( long pos = 0L; pos < size; pos += Integer.MAX_VALUE )
+            {
+                MappedByteBuffer map = channel.map( FileChannel.MapMode.READ_ONLY, pos, Math.min( size - pos, Integer.MAX_VALUE ) );
+                
+                while ( map.hasRemaining() )
+                    hash = hash( hash, map.get() );
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+        
+        return ( hash );
+    }
+    
+    /**
+     * Takes the stamp (length, modification time, hash), a cache file is
+     * validated against. This never opens a connection.
+     * 
+     * @param resource
+     * 
+     * @return the stamp or null, if the resource cannot be validated without a connection.
+     * 
+     * @throws IOException
+     */
+    public Stamp stamp( URL resource ) throws IOException
+    {
+        final File file = getStampFile( resource );
+        
+        if ( file == null )
+            return ( null );
+        
+        if ( !file.isFile() )
+            return ( new Stamp( resource, MISSING, 0L, NO_HASH ) );
+        
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        
+        long hash = NO_HASH;
+        if ( hashVerificationEnabled || ( lastModified <= 0L ) )
+            hash = computeHash( file );
+        
+        return ( new Stamp( resource, length, lastModified, hash ) );
+    }
+    
+    /**
+     * Checks a stamp read from a cache file against the resource's current state.
+     */
+    final boolean isUpToDate( URL resource, long length, long lastModified, long hash ) throws IOException
+    {
+        final File file = getStampFile( resource );
+        
+        if ( file == null )
+            return ( false );
+        
+        if ( !file.isFile() )
+            return ( length == MISSING );
+        
+        if ( ( file.length() != length ) || ( file.lastModified() != lastModified ) )
+            return ( false );
+        
+        if ( hashVerificationEnabled || ( lastModified <= 0L ) )
+            return ( ( hash != NO_HASH ) && ( computeHash( file ) == hash ) );
+        
+        return ( true );
+    }
+    
+    /**
+     * @param source
+     * @param loaderID a short identifier of the loader (e.g. "OBJ")
+     * 
+     * @return the cache file for the given source or null, if the source
+     * cannot be cached (a non-local resource without a cache folder).
+     */
+    public File getCacheFile( URL source, String loaderID )
+    {
+        final String suffix = "." + loaderID.toLowerCase() + "." + FILE_EXTENSION;
+        
+        if ( cacheDir == null )
+        {
+            File file = LoaderUtils.getLocalFile( source );
+            
+            if ( file == null )
+                return ( null );
+            
+            return ( new File( file.getParentFile(), file.getName() + suffix ) );
+        }
+        
+        String path = source.getPath();
+        String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+        
+        long hash = FNV_OFFSET_BASIS;
+        String externalForm = source.toExternalForm();
+        for ( int i = 0; i < externalForm.length(); i++ )
+        {
+            final char ch = externalForm.charAt( i );
+            hash = hash( hash, (byte)( ch >>> 8 ) );
+            hash = hash( hash, (byte)ch );
+        }
+        
+        return ( new File( cacheDir, name + "-" + Long.toHexString( hash ) + suffix ) );
+    }
+    
+    /**
+     * Opens the cache file for the given source.
+     * 
+     * @param source
+     * @param loaderID a short identifier of the loader (e.g. "OBJ")
+     * @param loaderVersion the version of the loader's cache layout
+     * 
+     * @return the reader or null, if there is no valid cache file.
+     * 
+     * @throws IOException
+     */
+    public ModelCacheReader open( URL source, String loaderID, int loaderVersion ) throws IOException
+    {
+        final File cacheFile = getCacheFile( source, loaderID );
+        
+        if ( ( cacheFile == null ) || !cacheFile.isFile() )
+            return ( null );
+        
+        ModelCacheReader reader = ModelCacheReader.open( cacheFile );
+        
+        if ( reader == null )
+            return ( null );
+        
+        boolean valid;
+        try
+        {
+            valid = reader.isValid( this, source, loaderID, loaderVersion );
+        }
+        catch ( RuntimeException e )
+        {
+            // a truncated or otherwise corrupt cache file
+            valid = false;
+        }
+        
+        if ( !valid )
+        {
+            reader.close();
+            
+            return ( null );
+        }
+        
+        return ( reader );
+    }
+    
+    /**
+     * Creates a new cache file for the given source. The file replaces the
+     * existing one, when the writer is closed.
+     * 
+     * @param source the source's stamp, taken before it was read
+     * @param loaderID a short identifier of the loader (e.g. "OBJ")
+     * @param loaderVersion the version of the loader's cache layout
+     * 
+     * @return the writer or null, if the source cannot be cached.
+     * 
+     * @throws IOException
+     */
+    public ModelCacheWriter create( Stamp source, String loaderID, int loaderVersion ) throws IOException
+    {
+        final File cacheFile = getCacheFile( source.getResource(), loaderID );
+        
+        if ( ( cacheFile == null ) || source.isMissing() )
+            return ( null );
+        
+        if ( ( cacheDir != null ) && !cacheDir.exists() )
+            cacheDir.mkdirs();
+        
+        return ( new ModelCacheWriter( cacheFile, loaderID, loaderVersion, source ) );
+    }
+    
+    /**
+     * Deletes the cache file for the given source.
+     * 
+     * @param source
+     * @param loaderID
+     */
+    public void invalidate( URL source, String loaderID )
+    {
+        final File cacheFile = getCacheFile( source, loaderID );
+        
+        if ( cacheFile != null )
+            cacheFile.delete();
+    }
+    
+    /**
+     * Creates a new ModelCache.
+     * 
+     * @param cacheDir the folder to store the cache files in. If null, the
+     *                 cache files are stored next to the (local) source files.
+     */
+    public ModelCache( File cacheDir )
+    {
+        this.cacheDir = cacheDir;
+    }
+    
+    /**
+     * Creates a new ModelCache, that stores the cache files next to the
+     * (local) source files.
+     */
+    public ModelCache()
+    {
+        this( null );
+    }
+}
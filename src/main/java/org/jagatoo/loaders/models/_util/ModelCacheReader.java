@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a cache file in the jagatoo binary cache format
+ * (see {@link ModelCacheWriter}).<br>
+ * The file is memory-mapped. Array blocks can either be copied into Java
+ * arrays or viewed in place through {@link #readFloatBuffer()} and
+ * {@link #readIntBuffer()}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class ModelCacheReader
+{
+    private final File file;
+    private ByteBuffer map;
+    
+    /**
+     * @return the cache file.
+     */
+    public final File getFile()
+    {
+        return ( file );
+    }
+    
+    private final int readBlockHeader( int type ) throws IOException
+    {
+        final int blockType = map.getInt();
+        final int count = map.getInt();
+        
+        if ( blockType != type )
+            throw new IOException( "Corrupt cache file " + file + ": expected block type " + type + ", found " + blockType + "." );
+        
+        return ( count );
+    }
+    
+    private final void skipPadding( long numBytes )
+    {
+        map.position( map.position() + (int)( -numBytes & 7L ) );
+    }
+    
+    public int readInt()
+    {
+        final int value = map.getInt();
+        map.getInt();
+        
+        return ( value );
+    }
+    
+    public long readLong()
+    {
+        return ( map.getLong() );
+    }
+    
+    public float readFloat()
+    {
+        final float value = map.getFloat();
+        map.getInt();
+        
+        return ( value );
+    }
+    
+    public boolean readBoolean()
+    {
+        return ( readInt() != 0 );
+    }
+    
+    public String readString() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_STRING );
+        
+        if ( length < 0 )
+            return ( null );
+        
+        byte[] bytes = new byte[ length ];
+        map.get( bytes );
+        skipPadding( length );
+        
+        return ( new String( bytes, "UTF-8" ) );
+    }
+    
+    public byte[] readBytes() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_BYTES );
+        
+        byte[] data = new byte[ length ];
+        map.get( data );
+        skipPadding( length );
+        
+        return ( data );
+    }
+    
+    public short[] readShorts() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_SHORTS );
+        
+        short[] data = new short[ length ];
+        map.asShortBuffer().get( data );
+        map.position( map.position() + length * 2 );
+        skipPadding( length * 2L );
+        
+        return ( data );
+    }
+    
+    public int[] readInts() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_INTS );
+        
+        int[] data = new int[ length ];
+        map.asIntBuffer().get( data );
+        map.position( map.position() + length * 4 );
+        skipPadding( length * 4L );
+        
+        return ( data );
+    }
+    
+    public float[] readFloats() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_FLOATS );
+        
+        float[] data = new float[ length ];
+        map.asFloatBuffer().get( data );
+        map.position( map.position() + length * 4 );
+        skipPadding( length * 4L );
+        
+        return ( data );
+    }
+    
+    /**
+     * Reads a float array written by {@link ModelCacheWriter#writeOptionalFloats(float[])}.
+     * 
+     * @return the array or null.
+     */
+    public final float[] readOptionalFloats() throws IOException
+    {
+        if ( !readBoolean() )
+            return ( null );
+        
+        return ( readFloats() );
+    }
+    
+    /**
+     * @return a read-only view of the next int block in the mapped file.
+     */
+    public IntBuffer readIntBuffer() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_INTS );
+        
+        ByteBuffer slice = map.slice().order( ByteOrder.LITTLE_ENDIAN );
+        slice.limit( length * 4 );
+        map.position( map.position() + length * 4 );
+        skipPadding( length * 4L );
+        
+        return ( slice.asIntBuffer() );
+    }
+    
+    /**
+     * @return a read-only view of the next float block in the mapped file.
+     */
+    public FloatBuffer readFloatBuffer() throws IOException
+    {
+        final int length = readBlockHeader( ModelCacheWriter.BLOCK_FLOATS );
+        
+        ByteBuffer slice = map.slice().order( ByteOrder.LITTLE_ENDIAN );
+        slice.limit( length * 4 );
+        map.position( map.position() + length * 4 );
+        skipPadding( length * 4L );
+        
+        return ( slice.asFloatBuffer() );
+    }
+    
+    /**
+     * @return the given file offset as a buffer position or -1, if it is outside of the mapped file.
+     */
+    private final int toPosition( long offset )
+    {
+        if ( ( offset < ModelCacheWriter.HEADER_SIZE ) || ( offset > map.limit() ) )
+            return ( -1 );
+        
+        return ( (int)offset );
+    }
+    
+    /**
+     * Checks the header and the dependencies against the current state of
+     * the sources and moves to the payload.
+     */
+    final boolean isValid( ModelCache cache, URL source, String loaderID, int loaderVersion ) throws IOException
+    {
+        if ( map.getInt( 8 ) != loaderVersion )
+            return ( false );
+        
+        final int dependencyPosition = toPosition( map.getLong( 40 ) );
+        final int payloadPosition = toPosition( map.getLong( 48 ) );
+        
+        if ( ( dependencyPosition < 0 ) || ( payloadPosition < 0 ) || ( dependencyPosition < payloadPosition ) )
+            return ( false );
+        
+        map.position( ModelCacheWriter.HEADER_SIZE );
+        if ( !loaderID.equals( readString() ) )
+            return ( false );
+        
+        try
+        {
+            if ( !cache.isUpToDate( source, map.getLong( 16 ), map.getLong( 24 ), map.getLong( 32 ) ) )
+                return ( false );
+            
+            map.position( dependencyPosition );
+            final int numDependencies = readInt();
+            for ( int i = 0; i < numDependencies; i++ )
+            {
+                final URL dependency = new URL( readString() );
+                final long length = readLong();
+                final long lastModified = readLong();
+                final long hash = readLong();
+                
+                if ( !cache.isUpToDate( dependency, length, lastModified, hash ) )
+                    return ( false );
+            }
+        }
+        catch ( IOException e )
+        {
+            return ( false );
+        }
+        
+        map.position( payloadPosition );
+        
+        return ( true );
+    }
+    
+    /**
+     * Releases the mapped file.
+     */
+    public void close()
+    {
+        map = null;
+    }
+    
+    /**
+     * Maps the given cache file.
+     * 
+     * @param file
+     * 
+     * @return the reader or null, if the file is no cache file of the current format version.
+     * 
+     * @throws IOException
+     */
+    static ModelCacheReader open( File file ) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        
+        ByteBuffer map;
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            
+            if ( ( channel.size() < ModelCacheWriter.HEADER_SIZE ) || ( channel.size() > Integer.MAX_VALUE ) )
+                return ( null );
+            
+            map = channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() ).order( ByteOrder.LITTLE_ENDIAN );
+        }
+        finally
+        {
+            raf.close();
+        }
+        
+        if ( ( map.getInt( 0 ) != ModelCache.MAGIC ) || ( map.getInt( 4 ) != ModelCache.FORMAT_VERSION ) )
+            return ( null );
+        
+        return ( new ModelCacheReader( file, map ) );
+    }
+    
+    private ModelCacheReader( File file, ByteBuffer map )
+    {
+        this.file = file;
+        this.map = map;
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models._util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Writes a cache file in the jagatoo binary cache format.<br>
+ * <br>
+ * The file starts with a fixed header of {@link #HEADER_SIZE} bytes
+ * (magic, format version, loader version, the source's stamp and the
+ * offsets of the payload and the dependency table) followed by the loader
+ * ID. The payload is a flat sequence of scalars and blocks. Each scalar
+ * takes 8 bytes. Each block consists of its type and element count
+ * followed by the data, padded to a multiple of 8 bytes. So all array
+ * data is aligned and can be viewed in place in a memory-mapped file.<br>
+ * <br>
+ * The data is written to a temporary file, which replaces the cache file,
+ * when the writer is closed.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class ModelCacheWriter
+{
+    public static final int HEADER_SIZE = 64;
+    
+    static final int BLOCK_BYTES = 1;
+    static final int BLOCK_SHORTS = 2;
+    static final int BLOCK_INTS = 3;
+    static final int BLOCK_FLOATS = 4;
+    static final int BLOCK_STRING = 5;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final File cacheFile;
+    private final File tmpFile;
+    private final int loaderVersion;
+    private final ModelCache.Stamp stamp;
+    
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+    private long bufferPosition = 0L;
+    
+    private final long payloadOffset;
+    
+    private final ArrayList<ModelCache.Stamp> dependencies = new ArrayList<ModelCache.Stamp>();
+    
+    private boolean closed = false;
+    
+    /**
+     * @return the cache file, this writer will replace.
+     */
+    public final File getCacheFile()
+    {
+        return ( cacheFile );
+    }
+    
+    /**
+     * Adds a resource, the cached data depends on (e.g. a material library).
+     * The cache file is invalidated, when the resource changes (or is created,
+     * if it was missing).
+     * 
+     * @param dependency the resource's stamp, taken before it was read (see {@link ModelCache#stamp(URL)})
+     */
+    public void addDependency( ModelCache.Stamp dependency )
+    {
+        dependencies.add( dependency );
+    }
+    
+    private final long getPosition()
+    {
+        return ( bufferPosition + buffer.position() );
+    }
+    
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+            channel.write( buffer );
+        
+        bufferPosition = channel.position();
+        buffer.clear();
+    }
+    
+    private final void ensureRemaining( int bytes ) throws IOException
+    {
+        if ( buffer.remaining() < bytes )
+            flush();
+    }
+    
+    private final void pad( long numBytes ) throws IOException
+    {
+        int padding = (int)( -numBytes & 7L );
+        
+        ensureRemaining( padding );
+        for ( int i = 0; i < padding; i++ )
+            buffer.put( (byte)0 );
+    }
+    
+    private final void writeBlockHeader( int type, int count ) throws IOException
+    {
+        ensureRemaining( 8 );
+        buffer.putInt( type );
+        buffer.putInt( count );
+    }
+    
+    public void writeInt( int value ) throws IOException
+    {
+        ensureRemaining( 8 );
+        buffer.putInt( value );
+        buffer.putInt( 0 );
+    }
+    
+    public void writeLong( long value ) throws IOException
+    {
+        ensureRemaining( 8 );
+        buffer.putLong( value );
+    }
+    
+    public void writeFloat( float value ) throws IOException
+    {
+        ensureRemaining( 8 );
+        buffer.putFloat( value );
+        buffer.putInt( 0 );
+    }
+    
+    public void writeBoolean( boolean value ) throws IOException
+    {
+        writeInt( value ? 1 : 0 );
+    }
+    
+    /**
+     * Writes a string block. null is preserved.
+     * 
+     * @param value
+     */
+    public void writeString( String value ) throws IOException
+    {
+        if ( value == null )
+        {
+            writeBlockHeader( BLOCK_STRING, -1 );
+            
+            return;
+        }
+        
+        byte[] bytes = value.getBytes( "UTF-8" );
+        
+        writeBlockHeader( BLOCK_STRING, bytes.length );
+        writeData( bytes, 0, bytes.length );
+    }
+    
+    private void writeData( byte[] data, int offset, int length ) throws IOException
+    {
+        int done = 0;
+        while ( done < length )
+        {
+            if ( !buffer.hasRemaining() )
+                flush();
+            
+            final int n = Math.min( length - done, buffer.remaining() );
+            buffer.put( data, offset + done, n );
+            done += n;
+        }
+        
+        pad( length );
+    }
+    
+    public void writeBytes( byte[] data, int offset, int length ) throws IOException
+    {
+        writeBlockHeader( BLOCK_BYTES, length );
+        writeData( data, offset, length );
+    }
+    
+    public void writeShorts( short[] data, int offset, int length ) throws IOException
+    {
+        writeBlockHeader( BLOCK_SHORTS, length );
+        
+        int done = 0;
+        while ( done < length )
+        {
+            ensureRemaining( 2 );
+            
+            final int n = Math.min( length - done, buffer.remaining() / 2 );
+            buffer.asShortBuffer().put( data, offset + done, n );
+            buffer.position( buffer.position() + n * 2 );
+            done += n;
+        }
+        
+        pad( length * 2L );
+    }
+    
+    public void writeInts( int[] data, int offset, int length ) throws IOException
+    {
+        writeBlockHeader( BLOCK_INTS, length );
+        
+        int done = 0;
+        while ( done < length )
+        {
+            ensureRemaining( 4 );
+            
+            final int n = Math.min( length - done, buffer.remaining() / 4 );
+            buffer.asIntBuffer().put( data, offset + done, n );
+            buffer.position( buffer.position() + n * 4 );
+            done += n;
+        }
+        
+        pad( length * 4L );
+    }
+    
+    public final void writeInts( int[] data ) throws IOException
+    {
+        writeInts( data, 0, data.length );
+    }
+    
+    public void writeFloats( float[] data, int offset, int length ) throws IOException
+    {
+        writeBlockHeader( BLOCK_FLOATS, length );
+        
+        int done = 0;
+        while ( done < length )
+        {
+            ensureRemaining( 4 );
+            
+            final int n = Math.min( length - done, buffer.remaining() / 4 );
+            buffer.asFloatBuffer().put( data, offset + done, n );
+            buffer.position( buffer.position() + n * 4 );
+            done += n;
+        }
+        
+        pad( length * 4L );
+    }
+    
+    public final void writeFloats( float[] data ) throws IOException
+    {
+        writeFloats( data, 0, data.length );
+    }
+    
+    /**
+     * Writes a float array, that may be null.
+     * 
+     * @param data
+     */
+    public final void writeOptionalFloats( float[] data ) throws IOException
+    {
+        writeBoolean( data != null );
+        
+        if ( data != null )
+            writeFloats( data, 0, data.length );
+    }
+    
+    /**
+     * Discards the written data. The existing cache file is left untouched.
+     */
+    public void abort()
+    {
+        if ( closed )
+            return;
+        
+        closed = true;
+        
+        try
+        {
+            raf.close();
+        }
+        catch ( IOException e )
+        {
+        }
+        
+        tmpFile.delete();
+    }
+    
+    /**
+     * Writes the dependency table and the header and replaces the cache
+     * file by the written one.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        if ( closed )
+            return;
+        
+        try
+        {
+            final long dependencyOffset = getPosition();
+            
+            writeInt( dependencies.size() );
+            for ( int i = 0; i < dependencies.size(); i++ )
+            {
+                final ModelCache.Stamp dependency = dependencies.get( i );
+                
+                writeString( dependency.getResource().toExternalForm() );
+                writeLong( dependency.length );
+                writeLong( dependency.lastModified );
+                writeLong( dependency.hash );
+            }
+            
+            flush();
+            
+            // The reader maps the whole file into a single buffer.
+            if ( channel.size() > Integer.MAX_VALUE )
+                throw new IOException( "The cache file " + cacheFile + " would exceed 2 GB." );
+            
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+            header.putInt( ModelCache.MAGIC );
+            header.putInt( ModelCache.FORMAT_VERSION );
+            header.putInt( loaderVersion );
+            header.putInt( 0 );
+            header.putLong( stamp.length );
+            header.putLong( stamp.lastModified );
+            header.putLong( stamp.hash );
+            header.putLong( dependencyOffset );
+            header.putLong( payloadOffset );
+            header.putLong( 0L );
+            header.flip();
+            
+            long pos = 0L;
+            while ( header.hasRemaining() )
+                pos += channel.write( header, pos );
+            
+            closed = true;
+            raf.close();
+        }
+        catch ( IOException e )
+        {
+            abort();
+            
+            throw e;
+        }
+        
+        if ( !tmpFile.renameTo( cacheFile ) )
+        {
+            cacheFile.delete();
+            
+            if ( !tmpFile.renameTo( cacheFile ) )
+            {
+                tmpFile.delete();
+                
+                throw new IOException( "Unable to replace the cache file " + cacheFile );
+            }
+        }
+    }
+    
+    ModelCacheWriter( File cacheFile, String loaderID, int loaderVersion, ModelCache.Stamp stamp ) throws IOException
+    {
+        this.cacheFile = cacheFile;
+        this.tmpFile = new File( cacheFile.getPath() + ".tmp" );
+        this.loaderVersion = loaderVersion;
+        this.stamp = stamp;
+        
+        this.raf = new RandomAccessFile( tmpFile, "rw" );
+        this.raf.setLength( 0L );
+        this.channel = raf.getChannel();
+        
+        // The header is written, when the writer is closed.
+        for ( int i = 0; i < HEADER_SIZE; i++ )
+            buffer.put( (byte)0 );
+        
+        writeString( loaderID );
+        
+        this.payloadOffset = getPosition();
+    }
+}
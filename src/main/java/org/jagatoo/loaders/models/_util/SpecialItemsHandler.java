@@ -53,6 +53,11 @@ public interface SpecialItemsHandler
         SOUND,
         SKYBOX,
         NAMED_OBJECT,
+        /**
+         * A door separating two BSP areas. The name is the door's model name ("*n"),
+         * the item is the BSPVisibilityUpdater to open or close the portal with.
+         */
+        AREA_PORTAL,
         ;
     }
     
@@ -78,6 +78,7 @@ import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
@@ -720,6 +721,21 @@ public class AC3DPrototypeLoader
      * The real loading method
      */
     public static void load( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, NodeFactory nodeFactory, boolean keepNestedTransforms, NamedObject rootGroup, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "AC3D", baseURL, geomFactory );
+        try
+        {
+            loadModel( load.wrap( in ), baseURL, appFactory, load.getGeometryFactory(), nodeFactory, keepNestedTransforms, rootGroup, siHandler );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    private static void loadModel( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, NodeFactory nodeFactory, boolean keepNestedTransforms, NamedObject rootGroup, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
     {
         BufferedReader reader = new BufferedReader( new InputStreamReader( in ) );
         
@@ -44,6 +44,7 @@ import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler.SpecialItemType;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.opengl.enums.BlendMode;
 import org.jagatoo.opengl.enums.DrawMode;
 import org.jagatoo.opengl.enums.FaceCullMode;
@@ -64,6 +65,8 @@ import org.openmali.vecmath2.util.MatrixUtils;
  */
 public class AseConverter
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseConverter.class );
+    
     private static final GeometryType GEOM_TYPE = GeometryType.TRIANGLE_ARRAY;
     
     private static final boolean TGT_GROUPS_ONLY = false;
@@ -94,7 +97,7 @@ public class AseConverter
                 nFaces = aseMesh.totals[ matID ];
             }
             
-            JAGTLog.debug( "Getting mesh for sub-material ", matID, " with ", nFaces, " faces" );
+            LOG.debug( "Getting mesh for sub-material ", matID, " with ", nFaces, " faces" );
             
             NamedObject geom = geomFactory.createGeometry( "", GEOM_TYPE, 3, nFaces * 3, 0, null );
             
@@ -270,12 +273,12 @@ public class AseConverter
             }
             texName = texName.replace( '\\', '/' );
             
-            JAGTLog.debug( "opacity texture name is ", texName );
+            LOG.debug( "opacity texture name is ", texName );
             
             AbstractTexture tex = appFactory.loadOrGetTexture( texName, baseURL, true, true, true, true, true );
             
-            JAGTLog.debug( "setting name to ", texName );
-            JAGTLog.debug( "checked name is ", tex.getName() );
+            LOG.debug( "setting name to ", texName );
+            LOG.debug( "checked name is ", tex.getName() );
             
             appFactory.applyTexture( tex, 0, app );
             
@@ -305,7 +308,7 @@ public class AseConverter
             }
             texName = texName.replace( '\\', '/' );
             
-            JAGTLog.debug( "texture name is ", texName );
+            LOG.debug( "texture name is ", texName );
             
             AbstractTexture tex = appFactory.loadOrGetTexture( texName, baseURL, true, false, true, true, true );
             
@@ -345,7 +348,7 @@ public class AseConverter
      */
     private NamedObject getShape( AseFile file, AseGeom aseGeom, Tuple3f geomOffset, AppearanceFactory appFactory, URL baseURL, GeometryFactory geomFactory, NodeFactory nodeFactory )
     {
-        JAGTLog.debug( "Shape ", aseGeom.name, " using material ref ", aseGeom.materialRef );
+        LOG.debug( "Shape ", aseGeom.name, " using material ref ", aseGeom.materialRef );
         
         AseMaterial m;
         if ( file.materials.size() > 0 )
@@ -356,7 +359,7 @@ public class AseConverter
         if ( m.subMaterials.size() > 0 )
         {
             NamedObject group = nodeFactory.createSimpleGroup( aseGeom.name, BoundsType.SPHERE );
-            JAGTLog.debug( "   Shape ", aseGeom.name, " has sub-materials, building multiple objects" );
+            LOG.debug( "   Shape ", aseGeom.name, " has sub-materials, building multiple objects" );
             
             for ( int i = 0; i < m.subMaterials.size(); i++ )
             {
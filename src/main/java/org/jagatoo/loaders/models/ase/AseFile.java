@@ -68,6 +68,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for the ase file format. Once the data is loaded, several methods can
@@ -97,6 +98,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class AseFile extends AseNode
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseFile.class );
+    
     /**
      * Field used by the parser to store ASE information
      */
@@ -254,14 +257,14 @@ public class AseFile extends AseNode
                     switch ( line.getType() )
                     {
                         case GEOMETRY_OBJECT:
-                            JAGTLog.debug( "Geom Object Starting" );
+                            LOG.debug( "Geom Object Starting" );
                             
                             AseGeom a = new AseGeom();
                             a.parse( in );
                             objects.put( a.name, a );
                             allTopLevelObjects.put( a.name, a );
                             updateHierarchyFromNodeParent( objects, allTopLevelObjects, a );
-                            JAGTLog.debug( "Geom Object " + a.name + " parsed" );
+                            LOG.debug( "Geom Object " + a.name + " parsed" );
                             
                             break;
                         
@@ -271,12 +274,12 @@ public class AseFile extends AseNode
                             objects.put( g.name, g );
                             allTopLevelObjects.put( g.name, g );
                             updateHierarchyFromNodeParent( objects, allTopLevelObjects, g );
-                            JAGTLog.debug( "Geom Object " + g.name + " parsed" );
+                            LOG.debug( "Geom Object " + g.name + " parsed" );
                             
                             break;
                         
                         case MATERIAL_LIST:
-                            JAGTLog.debug( "Parsing material list" );
+                            LOG.debug( "Parsing material list" );
                             
                             break;
                         
@@ -290,7 +293,7 @@ public class AseFile extends AseNode
                             
                             AseMaterial m = new AseMaterial();
                             m.parse( in );
-                            JAGTLog.debug( "   Parsed material " + m.name );
+                            LOG.debug( "   Parsed material " + m.name );
                             materials.add( m );
                             
                             break;
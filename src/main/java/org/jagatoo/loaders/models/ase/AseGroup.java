@@ -66,6 +66,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Object for the ASE node *GROUP. It is a collection of subgroups, child geom
@@ -76,6 +77,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class AseGroup extends AseGeom
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseGroup.class );
+    
     public AseHelper helper = null;
     
     public Map< String, AseGeom > objects = new HashMap< String, AseGeom >();
@@ -92,7 +95,7 @@ public class AseGroup extends AseGeom
     {
         // for this to work, blocks have to open on the same line as the
         // property definition.
-        JAGTLog.debug( "  parsing " + this.getClass().getName() );
+        LOG.debug( "  parsing " + this.getClass().getName() );
         
         boolean inBlock = in.blockStart;
         
@@ -104,12 +107,12 @@ public class AseGroup extends AseGeom
             // Parses child geometry
             if ( line.getType() == AseFileLine.Type.GEOMETRY_OBJECT )
             {
-                JAGTLog.debug( "Geom Object Starting" );
+                LOG.debug( "Geom Object Starting" );
                 
                 AseGeom a = new AseGeom();
                 a.parse( in );
                 objects.put( a.name, a );
-                JAGTLog.debug( "Geom Object " + a.name + " parsed" );
+                LOG.debug( "Geom Object " + a.name + " parsed" );
                 
             }
             // Parses child groups
@@ -118,19 +121,19 @@ public class AseGroup extends AseGeom
                 AseGroup g = new AseGroup();
                 g.parse( in );
                 objects.put( g.name, g );
-                JAGTLog.debug( "Geom Object " + g.name + " parsed" );
+                LOG.debug( "Geom Object " + g.name + " parsed" );
                 
                 // Parses the Group's helper object
             }
             else if ( line.getType() == AseFileLine.Type.HELPER_OBJECT )
             {
-                JAGTLog.debug( "Group Helper Object Starting" );
+                LOG.debug( "Group Helper Object Starting" );
                 
                 AseHelper h = new AseHelper();
                 h.parse( in );
                 helper = h;
                 
-                JAGTLog.debug( "Helper Object " + h.name + " parsed" );
+                LOG.debug( "Helper Object " + h.name + " parsed" );
                 
                 // Set the groups name and transform to that of the helper
                 // object
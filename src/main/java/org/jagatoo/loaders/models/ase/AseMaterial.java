@@ -66,6 +66,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.vecmath2.Colorf;
 
 /**
@@ -76,6 +77,8 @@ import org.openmali.vecmath2.Colorf;
  */
 public class AseMaterial extends AseNode
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseMaterial.class );
+    
     public String className;
     public String name;
     public Colorf ambient = new Colorf();
@@ -155,7 +158,7 @@ public class AseMaterial extends AseNode
                     
                     AseMaterial m = new AseMaterial();
                     m.parse( in );
-                    JAGTLog.debug( "   Parsed sub-material " + m.name );
+                    LOG.debug( "   Parsed sub-material " + m.name );
                     subMaterials.add( m );
                     in.blockEnd = false;
                     
@@ -63,6 +63,7 @@
 package org.jagatoo.loaders.models.ase;
 
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * The ASE mesh object holds the information for a single mesh. It is parsed a
@@ -81,6 +82,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class AseMesh extends AseNode
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseMesh.class );
+    
     private static final int MAX_MATERIALS = 100;
     
     public int numVertices = 0;
@@ -199,7 +202,7 @@ public class AseMesh extends AseNode
         {
             if ( totals[ i ] != 0 )
             {
-                JAGTLog.debug( totals[ i ] + " faces use material " + i );
+                LOG.debug( totals[ i ] + " faces use material " + i );
             }
         }
     }
@@ -67,6 +67,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.vecmath2.Colorf;
 import org.openmali.vecmath2.Vector3f;
 
@@ -80,6 +81,8 @@ import org.openmali.vecmath2.Vector3f;
  */
 public class AseNode
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AseNode.class );
+    
     protected static final Boolean debug = null;
     protected Map< String, String > properties;
     
@@ -121,19 +124,19 @@ public class AseNode
                 {
                     f.setFloat( this, Float.parseFloat( line.getParameter( 0 ) ) );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
                 }
                 else if ( type.equals( "int" ) )
                 {
                     f.setInt( this, Integer.parseInt( line.getParameter( 0 ) ) );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
                 }
                 else if ( type.equals( "boolean" ) )
                 {
                     f.setBoolean( this, Integer.parseInt( line.getParameter( 0 ) ) == 1 );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + f.getBoolean( this ) );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + f.getBoolean( this ) );
                 }
                 else if ( type.equals( "org.openmali.vecmath2.Colorf" ) )
                 {
@@ -142,7 +145,7 @@ public class AseNode
                     c.setGreen( Float.parseFloat( line.getParameter( 1 ) ) );
                     c.setBlue( Float.parseFloat( line.getParameter( 2 ) ) );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + c );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + c );
                 }
                 else if ( type.equals( "org.openmali.vecmath2.Vector3f" ) )
                 {
@@ -151,13 +154,13 @@ public class AseNode
                     v.setY( Float.parseFloat( line.getParameter( 1 ) ) );
                     v.setZ( Float.parseFloat( line.getParameter( 2 ) ) );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + v );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + v );
                 }
                 else if ( type.equals( "java.lang.String" ) )
                 {
                     f.set( this, line.getParameter( 0 ) );
                     
-                    JAGTLog.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
+                    LOG.debug( "  Setting " + line.getKey() + "/" + f.getName() + " to " + line.getParameter( 0 ) );
                 }
                 else
                 {
@@ -165,14 +168,14 @@ public class AseNode
                     // it
                     if ( AseNode.class.isAssignableFrom( f.getType() ) )
                     {
-                        JAGTLog.debug( "  AseNode detected" );
+                        LOG.debug( "  AseNode detected" );
                         
                         AseNode node = (AseNode)f.get( this );
                         node.parse( in );
                     }
                     else
                     {
-                        JAGTLog.debug( "  Can't determine type of matched " + line.getKey() + ", field " + property );
+                        LOG.debug( "  Can't determine type of matched " + line.getKey() + ", field " + property );
                         
                         return ( false );
                     }
@@ -201,7 +204,7 @@ public class AseNode
         // is a block, then trash the block since we don't handle it
         if ( in.blockStart )
         {
-            JAGTLog.debug( "  Trashing block " /*+ in.key*/);
+            LOG.debug( "  Trashing block " /*+ in.key*/);
             
             int numOpen = 1;
             
@@ -230,7 +233,7 @@ public class AseNode
     {
         // for this to work, blocks have to open on the same line as the
         // property definition.
-        JAGTLog.debug( "  parsing " + this.getClass().getName() );
+        LOG.debug( "  parsing " + this.getClass().getName() );
         
         boolean inBlock = in.blockStart;
         
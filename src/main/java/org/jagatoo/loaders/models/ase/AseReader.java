@@ -71,11 +71,13 @@ import java.io.Reader;
 import java.net.URL;
 
 import org.jagatoo.datatypes.NamedObject;
+import org.jagatoo.loaders.LoadPhase;
 import org.jagatoo.loaders.IncorrectFormatException;
 import org.jagatoo.loaders.ParsingException;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 
@@ -258,10 +260,21 @@ public class AseReader //extends LineNumberReader
      */
     public static final void load( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
-        AseReader aseReader = new AseReader( new BufferedReader( new InputStreamReader( in ) ) );
-        AseFile aseFile = new AseFile();
-        aseFile.parse( aseReader );
-        
-        AseConverter.getTransformGroupTree( aseFile, appFactory, baseURL, geomFactory, convertZup2Yup, scale, nodeFactory, siHandler, rootGroup );
+        final MeteredLoad load = MeteredLoad.begin( "ASE", baseURL, geomFactory );
+        try
+        {
+            AseReader aseReader = new AseReader( new BufferedReader( new InputStreamReader( load.wrap( in ) ) ) );
+            AseFile aseFile = new AseFile();
+            aseFile.parse( aseReader );
+            
+            load.enterPhase( LoadPhase.CONVERT );
+            AseConverter.getTransformGroupTree( aseFile, appFactory, baseURL, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
     }
 }
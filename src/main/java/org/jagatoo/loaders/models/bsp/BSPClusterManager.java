@@ -62,13 +62,18 @@
  */
 package org.jagatoo.loaders.models.bsp;
 
+import java.util.Arrays;
 import java.util.BitSet;
 
-import org.jagatoo.loaders.models.bsp.lumps.BSPLeaf;
-import org.jagatoo.loaders.models.bsp.lumps.BSPNode;
-import org.jagatoo.loaders.models.bsp.lumps.BSPPlane;
+import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity;
+import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity_func_door;
+import org.jagatoo.loaders.models.bsp.lumps.BSPLeafData;
+import org.jagatoo.loaders.models.bsp.lumps.BSPModel;
+import org.jagatoo.loaders.models.bsp.lumps.BSPNodeData;
+import org.jagatoo.loaders.models.bsp.lumps.BSPPlaneData;
 import org.jagatoo.loaders.models.bsp.lumps.BSPVisData;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.vecmath2.Matrix4f;
 import org.openmali.vecmath2.Point3f;
 import org.openmali.vecmath2.Tuple3f;
@@ -82,17 +87,111 @@ import org.openmali.vecmath2.util.FloatUtils;
  */
 public class BSPClusterManager implements BSPVisibilityUpdater
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( BSPClusterManager.class );
+    
+    /**
+     * The number of camera clusters, whose visible-face words are cached.
+     */
+    public static final int VIS_CACHE_SIZE = 8;
+    
+    /**
+     * The func_door spawn flag for doors, that are open at map start.
+     */
+    private static final int DOOR_START_OPEN = 1;
+    
     private final BSPVisData       bspVisData;
     private final boolean          hasVisBitset;
     
     protected final BitSet         shapeBitset;
-    private final int[][][]        clusterLeafs;
     private final int[]            leafToCluster;
     private final float[]          planes;
     private final int[]            nodes;
     
+    private final int              numClusters;
+    
+    /**
+     * The number of long words per decompressed PVS row.
+     */
+    private final int              clusterWords;
+    
+    /**
+     * The decompressed PVS. Row c (clusterWords long words) has bit t set,
+     * if cluster t is visible from cluster c.
+     */
+    private final long[]           pvs;
+    
+    /**
+     * The number of long words needed to hold one bit per face.
+     */
+    private final int              faceWords;
+    
+    /**
+     * Sparse per-cluster face masks: the word indices and the words
+     * with one bit for each face referenced by the cluster's leafs.
+     */
+    private final int[][]          clusterMaskIndices;
+    private final long[][]         clusterMaskWords;
+    
+    private final int[]            cacheClusters = new int[ VIS_CACHE_SIZE ];
+    private final long[][]         cacheFaces = new long[ VIS_CACHE_SIZE ][];
+    private int                    cacheSize = 0;
+    private long                   cacheHits = 0L;
+    private long                   cacheMisses = 0L;
+    
+    /**
+     * The face words currently reflected by the shapeBitset
+     * or null, if the BitSet has been modified otherwise.
+     */
+    private long[]                 currentFaces = null;
+    
+    /**
+     * true, if all faces are currently enabled because the PVS isn't used.
+     */
+    private boolean                allFacesApplied = false;
+    
+    /*
+     * Culling stage data. The bounds are null for maps, that don't
+     * provide usable node and leaf boxes (everything but Quake3).
+     */
+    private float[]                nodeBounds = null;
+    private float[]                leafBounds = null;
+    private int[]                  leafFirstFace = null;
+    private int[]                  leafNumFaces = null;
+    private int[]                  leafFaces = null;
+    private int[]                  leafArea = null;
+    private int[]                  clusterArea = null;
+    private int                    numAreas = 0;
+    private long[][]               areaFaceMasks = null;
+    
+    /**
+     * Two areas per portal, separated by the portal's func_door.
+     */
+    private int[]                  portalAreas = new int[ 0 ];
+    private String[]               portalModels = new String[ 0 ];
+    private boolean[]              portalOpen = new boolean[ 0 ];
+    
+    private boolean[]              areaReachable = null;
+    private int[]                  areaStack = null;
+    private final long[][]         cullFaces = new long[ 2 ][];
+    private int                    cullBuffer = 0;
+    private long[]                 walkClusters = null;
+    private long[]                 reachableFaces = null;
+    private final float[]          frustumPlanes = new float[ 24 ];
+    
     private   boolean        usePVS = true;
     private   boolean        lastUsePVS = true;
+    private   boolean        useFrustumCulling = true;
+    private   boolean        useAreaCulling = true;
+    private   boolean        lastCulled = false;
+    
+    private final int        numReferencedFaces;
+    private   int            numVisibleFaces = 0;
+    private   int            clustersCulledByPVS = 0;
+    private   int            facesCulledByPVS = 0;
+    private   int            clustersCulledByAreas = 0;
+    private   int            facesCulledByAreas = 0;
+    private   int            clustersCulledByFrustum = 0;
+    private   int            facesCulledByFrustum = 0;
     
     public final BitSet getBitSet()
     {
@@ -100,11 +199,83 @@ public class BSPClusterManager implements BSPVisibilityUpdater
     }
     
     /**
-     * Calculates which cluster the camera position is in
+     * @return the number of visibility updates served by the cluster cache.
+     */
+    public final long getVisCacheHits()
+    {
+        return ( cacheHits );
+    }
+    
+    /**
+     * @return the number of visibility updates, that had to evaluate the PVS.
+     */
+    public final long getVisCacheMisses()
+    {
+        return ( cacheMisses );
+    }
+    
+    /**
+     * @return the number of faces, that were visible after the last visibility update.
+     */
+    public final int getNumVisibleFaces()
+    {
+        return ( numVisibleFaces );
+    }
+    
+    /**
+     * @return the number of clusters, that were hidden by the PVS in the last visibility update.
+     */
+    public final int getNumClustersCulledByPVS()
+    {
+        return ( clustersCulledByPVS );
+    }
+    
+    /**
+     * @return the number of faces, that were hidden by the PVS in the last visibility update.
+     */
+    public final int getNumFacesCulledByPVS()
+    {
+        return ( facesCulledByPVS );
+    }
+    
+    /**
+     * @return the number of PVS-visible clusters, that were hidden by closed area portals in the last visibility update.
+     */
+    public final int getNumClustersCulledByAreas()
+    {
+        return ( clustersCulledByAreas );
+    }
+    
+    /**
+     * @return the number of PVS-visible faces, that were hidden by closed area portals in the last visibility update.
+     */
+    public final int getNumFacesCulledByAreas()
+    {
+        return ( facesCulledByAreas );
+    }
+    
+    /**
+     * @return the number of remaining clusters, that were outside of the view frustum in the last visibility update.
+     */
+    public final int getNumClustersCulledByFrustum()
+    {
+        return ( clustersCulledByFrustum );
+    }
+    
+    /**
+     * @return the number of remaining faces, that were outside of the view frustum in the last visibility update.
+     */
+    public final int getNumFacesCulledByFrustum()
+    {
+        return ( facesCulledByFrustum );
+    }
+    
+    /**
+     * Calculates which leaf the camera position is in
      * 
      * @param camPos the position of the camera (View)
      */
-    private int getCluster( Tuple3f camPos )
+    private int getLeaf( Tuple3f camPos )
     {
         int index = 0;
         
@@ -127,20 +298,7 @@ public class BSPClusterManager implements BSPVisibilityUpdater
                 index = nodes[ node + 2 ];
         }
         
-        return ( leafToCluster[ -( index + 1 ) ] );
-    }
-    
-    private final boolean isClusterVisible( int camCluster, int testCluster )
-    {
-        int i = ( camCluster * bspVisData.bytesPerCluster ) + ( testCluster / 8 );
-        
-        return ( ( bspVisData.pBitsets[ i ] & ( 1 << ( testCluster & 0x07 ) ) ) != 0 );
-        
-        /*
-        int i = ( camCluster * bspVisData.bytesPerCluster * 8 ) + testCluster;
-        
-        return ( visData[ i ] );
-        */
+        return ( -( index + 1 ) );
     }
     
     /**
@@ -161,16 +319,476 @@ public class BSPClusterManager implements BSPVisibilityUpdater
         return ( usePVS );
     }
     
+    /**
+     * Enables or disables culling of leafs outside of the view frustum.
+     * This only has an effect, if a frustum is passed to
+     * {@link #updateVisibility(Matrix4f, float[])}.
+     * 
+     * @param enabled
+     */
+    public void setFrustumCullingEnabled( boolean enabled )
+    {
+        this.useFrustumCulling = enabled;
+    }
+    
+    /**
+     * @return <b>true</b>, if leafs outside of the view frustum are culled.
+     */
+    public boolean isFrustumCullingEnabled()
+    {
+        return ( useFrustumCulling );
+    }
+    
+    /**
+     * Enables or disables culling of areas, that are separated from the
+     * camera's area by closed area portals.
+     * 
+     * @param enabled
+     */
+    public void setAreaCullingEnabled( boolean enabled )
+    {
+        this.useAreaCulling = enabled;
+    }
+    
+    /**
+     * @return <b>true</b>, if areas behind closed area portals are culled.
+     */
+    public boolean isAreaCullingEnabled()
+    {
+        return ( useAreaCulling );
+    }
+    
+    /**
+     * @return the number of areas, the map is divided into.
+     */
+    public final int getNumAreas()
+    {
+        return ( numAreas );
+    }
+    
+    /**
+     * @return the number of area portals found in the map's func_door entities.
+     */
+    public final int getNumAreaPortals()
+    {
+        return ( portalOpen.length );
+    }
+    
+    /**
+     * @param portal
+     * 
+     * @return the model name ("*n") of the func_door, that carries the area portal.
+     */
+    public final String getAreaPortalModel( int portal )
+    {
+        return ( portalModels[ portal ] );
+    }
+    
+    /**
+     * Opens or closes an area portal. A portal is initially open,
+     * if its door has the START_OPEN spawn flag, like in the game.
+     * 
+     * @param portal
+     * @param open
+     */
+    public void setAreaPortalOpen( int portal, boolean open )
+    {
+        portalOpen[ portal ] = open;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public boolean setAreaPortalOpen( String model, boolean open )
+    {
+        boolean found = false;
+        
+        for ( int p = 0; p < portalModels.length; p++ )
+        {
+            if ( portalModels[ p ].equals( model ) )
+            {
+                portalOpen[ p ] = open;
+                found = true;
+            }
+        }
+        
+        return ( found );
+    }
+    
+    /**
+     * @param portal
+     * 
+     * @return <b>true</b>, if the area portal is open.
+     */
+    public final boolean isAreaPortalOpen( int portal )
+    {
+        return ( portalOpen[ portal ] );
+    }
+    
     private int lastCluster = -2;
     
+    private static final void orMask( int[] indices, long[] words, long[] faces )
+    {
+        if ( indices == null )
+            return;
+        
+        for ( int k = 0; k < indices.length; k++ )
+        {
+            faces[ indices[ k ] ] |= words[ k ];
+        }
+    }
+    
+    private final void orClusterMask( int cluster, long[] faces )
+    {
+        orMask( clusterMaskIndices[ cluster ], clusterMaskWords[ cluster ], faces );
+    }
+    
+    /**
+     * Computes the faces visible from the given cluster as the OR of the
+     * face masks of all clusters visible in the camera cluster's PVS row.
+     */
+    private void computeVisibleFaces( int camCluster, long[] faces )
+    {
+        for ( int w = 0; w < faces.length; w++ )
+            faces[ w ] = 0L;
+        
+        if ( !hasVisBitset || ( camCluster < 0 ) || ( camCluster >= numClusters ) )
+        {
+            for ( int c = 0; c < numClusters; c++ )
+                orClusterMask( c, faces );
+            
+            return;
+        }
+        
+        final int row = camCluster * clusterWords;
+        
+        for ( int w = 0; w < clusterWords; w++ )
+        {
+            long bits = pvs[ row + w ];
+            
+            while ( bits != 0L )
+            {
+                orClusterMask( ( w << 6 ) | Long.numberOfTrailingZeros( bits ), faces );
+                
+                bits &= bits - 1L;
+            }
+        }
+    }
+    
+    /**
+     * Looks up the visible faces for the given cluster in the LRU cache
+     * or computes them into the least recently used entry.
+     */
+    private long[] getVisibleFaces( int camCluster )
+    {
+        for ( int i = 0; i < cacheSize; i++ )
+        {
+            if ( cacheClusters[ i ] == camCluster )
+            {
+                long[] faces = cacheFaces[ i ];
+                
+                System.arraycopy( cacheClusters, 0, cacheClusters, 1, i );
+                System.arraycopy( cacheFaces, 0, cacheFaces, 1, i );
+                cacheClusters[ 0 ] = camCluster;
+                cacheFaces[ 0 ] = faces;
+                
+                cacheHits++;
+                
+                return ( faces );
+            }
+        }
+        
+        cacheMisses++;
+        
+        long[] faces;
+        if ( cacheSize < VIS_CACHE_SIZE )
+        {
+            faces = new long[ faceWords ];
+            cacheSize++;
+        }
+        else
+        {
+            // The evicted entry is never the current one, since that is the most recent.
+            faces = cacheFaces[ VIS_CACHE_SIZE - 1 ];
+        }
+        
+        System.arraycopy( cacheClusters, 0, cacheClusters, 1, cacheSize - 1 );
+        System.arraycopy( cacheFaces, 0, cacheFaces, 1, cacheSize - 1 );
+        cacheClusters[ 0 ] = camCluster;
+        cacheFaces[ 0 ] = faces;
+        
+        computeVisibleFaces( camCluster, faces );
+        
+        return ( faces );
+    }
+    
+    /**
+     * Applies the given face words to the shapeBitset by only flipping
+     * the bits, that differ from the currently applied words.
+     * 
+     * @return true, if any bit has changed.
+     */
+    private boolean applyVisibleFaces( long[] faces )
+    {
+        final long[] current = currentFaces;
+        boolean changed = ( current == null );
+        
+        if ( current == null )
+            shapeBitset.clear();
+        
+        allFacesApplied = false;
+        
+        for ( int w = 0; w < faces.length; w++ )
+        {
+            long diff = ( current == null ) ? faces[ w ] : ( faces[ w ] ^ current[ w ] );
+            
+            if ( diff != 0L )
+                changed = true;
+            
+            while ( diff != 0L )
+            {
+                shapeBitset.flip( ( w << 6 ) | Long.numberOfTrailingZeros( diff ) );
+                
+                diff &= diff - 1L;
+            }
+        }
+        
+        currentFaces = faces;
+        
+        return ( changed );
+    }
+    
+    /**
+     * Extracts the six view frustum planes from a combined view-projection
+     * matrix (left, right, bottom, top, near, far). Each plane is stored
+     * as (a, b, c, d) with a point being inside, if a*x + b*y + c*z + d &gt;= 0.
+     * 
+     * @param viewProjection the projection matrix multiplied by the world-to-view matrix
+     * @param planes the array to write the 24 plane values to
+     * 
+     * @return the planes array
+     */
+    public static float[] extractFrustumPlanes( Matrix4f viewProjection, float[] planes )
+    {
+        final Matrix4f m = viewProjection;
+        
+        for ( int p = 0; p < 6; p++ )
+        {
+            final float sign = ( ( p & 1 ) == 0 ) ? 1.0f : -1.0f;
+            final int i = p * 4;
+            
+            switch ( p >> 1 )
+            {
+                case 0:
+                    planes[ i + 0 ] = m.m30() + sign * m.m00();
+                    planes[ i + 1 ] = m.m31() + sign * m.m01();
+                    planes[ i + 2 ] = m.m32() + sign * m.m02();
+                    planes[ i + 3 ] = m.m33() + sign * m.m03();
+                    break;
+                case 1:
+                    planes[ i + 0 ] = m.m30() + sign * m.m10();
+                    planes[ i + 1 ] = m.m31() + sign * m.m11();
+                    planes[ i + 2 ] = m.m32() + sign * m.m12();
+                    planes[ i + 3 ] = m.m33() + sign * m.m13();
+                    break;
+                default:
+                    planes[ i + 0 ] = m.m30() + sign * m.m20();
+                    planes[ i + 1 ] = m.m31() + sign * m.m21();
+                    planes[ i + 2 ] = m.m32() + sign * m.m22();
+                    planes[ i + 3 ] = m.m33() + sign * m.m23();
+                    break;
+            }
+        }
+        
+        return ( planes );
+    }
+    
     /**
-     * Disables geometry that is invisible according to the PVS
+     * Marks all areas reachable from the camera's area through open portals.
      * 
-     * @param camPos the position of the camera
+     * @return true, if at least one area is unreachable.
+     */
+    private boolean floodAreas( int camArea )
+    {
+        if ( ( portalOpen.length == 0 ) || ( camArea < 0 ) || ( camArea >= numAreas ) )
+            return ( false );
+        
+        for ( int a = 0; a < numAreas; a++ )
+            areaReachable[ a ] = false;
+        
+        areaReachable[ camArea ] = true;
+        areaStack[ 0 ] = camArea;
+        int top = 1;
+        int numReached = 1;
+        
+        while ( top > 0 )
+        {
+            final int area = areaStack[ --top ];
+            
+            for ( int p = 0; p < portalOpen.length; p++ )
+            {
+                if ( !portalOpen[ p ] )
+                    continue;
+                
+                final int other;
+                if ( portalAreas[ p * 2 + 0 ] == area )
+                    other = portalAreas[ p * 2 + 1 ];
+                else if ( portalAreas[ p * 2 + 1 ] == area )
+                    other = portalAreas[ p * 2 + 0 ];
+                else
+                    continue;
+                
+                if ( !areaReachable[ other ] )
+                {
+                    areaReachable[ other ] = true;
+                    areaStack[ top++ ] = other;
+                    numReached++;
+                }
+            }
+        }
+        
+        return ( numReached < numAreas );
+    }
+    
+    /**
+     * Tests a box against the frustum planes, that are flagged in the mask.
      * 
-     * @return true, if PVS has changed.
+     * @return the mask of planes, the box intersects or -1, if the box is outside.
+     */
+    private int classifyBox( float[] bounds, int offset, int planeMask )
+    {
+        final float[] fp = frustumPlanes;
+        
+        for ( int p = 0; p < 6; p++ )
+        {
+            final int bit = 1 << p;
+            
+            if ( ( planeMask & bit ) == 0 )
+                continue;
+            
+            final int i = p * 4;
+            final float a = fp[ i + 0 ];
+            final float b = fp[ i + 1 ];
+            final float c = fp[ i + 2 ];
+            final float d = fp[ i + 3 ];
+            
+            // the corner farthest along the plane normal
+            final float px = ( a >= 0.0f ) ? bounds[ offset + 3 ] : bounds[ offset + 0 ];
+            final float py = ( b >= 0.0f ) ? bounds[ offset + 4 ] : bounds[ offset + 1 ];
+            final float pz = ( c >= 0.0f ) ? bounds[ offset + 5 ] : bounds[ offset + 2 ];
+            
+            if ( a * px + b * py + c * pz + d < 0.0f )
+                return ( -1 );
+            
+            // the opposite corner
+            final float nx = ( a >= 0.0f ) ? bounds[ offset + 0 ] : bounds[ offset + 3 ];
+            final float ny = ( b >= 0.0f ) ? bounds[ offset + 1 ] : bounds[ offset + 4 ];
+            final float nz = ( c >= 0.0f ) ? bounds[ offset + 2 ] : bounds[ offset + 5 ];
+            
+            if ( a * nx + b * ny + c * nz + d >= 0.0f )
+                planeMask &= ~bit;
+        }
+        
+        return ( planeMask );
+    }
+    
+    /**
+     * Walks the BSP tree and ORs the faces of all leafs into the given words,
+     * that pass the PVS, area and frustum tests. Subtrees completely outside
+     * of the frustum are skipped, subtrees completely inside aren't tested again.
+     */
+    private void walkNode( int index, int planeMask, boolean visAll, int row, boolean cullAreas, long[] faces )
+    {
+        while ( index >= 0 )
+        {
+            if ( planeMask != 0 )
+            {
+                planeMask = classifyBox( nodeBounds, index * 6, planeMask );
+                
+                if ( planeMask < 0 )
+                    return;
+            }
+            
+            final int node = index * 3;
+            
+            walkNode( nodes[ node + 1 ], planeMask, visAll, row, cullAreas, faces );
+            
+            index = nodes[ node + 2 ];
+        }
+        
+        final int leaf = -( index + 1 );
+        final int cluster = leafToCluster[ leaf ];
+        
+        if ( ( cluster < 0 ) || ( cluster >= numClusters ) || ( leafNumFaces[ leaf ] <= 0 ) )
+            return;
+        
+        if ( !visAll && ( ( ( pvs[ row + ( cluster >>> 6 ) ] >>> cluster ) & 1L ) == 0L ) )
+            return;
+        
+        if ( cullAreas )
+        {
+            final int area = leafArea[ leaf ];
+            
+            if ( ( area >= 0 ) && ( area < numAreas ) && !areaReachable[ area ] )
+                return;
+        }
+        
+        if ( ( planeMask != 0 ) && ( classifyBox( leafBounds, leaf * 6, planeMask ) < 0 ) )
+            return;
+        
+        walkClusters[ cluster >>> 6 ] |= 1L << cluster;
+        
+        final int first = leafFirstFace[ leaf ];
+        final int last = first + leafNumFaces[ leaf ];
+        for ( int k = first; k < last; k++ )
+        {
+            final int face = leafFaces[ k ];
+            
+            faces[ face >>> 6 ] |= 1L << face;
+        }
+    }
+    
+    private static int bitCount( long[] words )
+    {
+        int n = 0;
+        
+        for ( int w = 0; w < words.length; w++ )
+            n += Long.bitCount( words[ w ] );
+        
+        return ( n );
+    }
+    
+    private void updatePVSStats( int camCluster, long[] faces )
+    {
+        if ( !hasVisBitset || ( camCluster < 0 ) || ( camCluster >= numClusters ) )
+        {
+            clustersCulledByPVS = 0;
+        }
+        else
+        {
+            final int row = camCluster * clusterWords;
+            int n = 0;
+            for ( int w = 0; w < clusterWords; w++ )
+                n += Long.bitCount( pvs[ row + w ] );
+            
+            clustersCulledByPVS = numClusters - n;
+        }
+        
+        facesCulledByPVS = numReferencedFaces - bitCount( faces );
+    }
+    
+    /**
+     * {@inheritDoc}
      */
     public boolean updateVisibility( Matrix4f cameraTransform )
+    {
+        return ( updateVisibility( cameraTransform, null ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public boolean updateVisibility( Matrix4f cameraTransform, float[] frustum )
     {
         Point3f camPos = Point3f.fromPool();
         
@@ -182,112 +800,279 @@ public class BSPClusterManager implements BSPVisibilityUpdater
         
         if ( !usePVS )
         {
+            Point3f.toPool( camPos );
+            
+            if ( allFacesApplied )
+                return ( false );
+            
             shapeBitset.set( 0, shapeBitset.size() - 1 );
+            currentFaces = null;
+            allFacesApplied = true;
+            lastCulled = false;
             
-            Point3f.toPool( camPos );
+            numVisibleFaces = numReferencedFaces;
+            clustersCulledByPVS = 0;
+            facesCulledByPVS = 0;
+            clustersCulledByAreas = 0;
+            facesCulledByAreas = 0;
+            clustersCulledByFrustum = 0;
+            facesCulledByFrustum = 0;
             
             return ( true );
         }
         
-        int camCluster = getCluster( camPos );
-        if ( lastCluster == camCluster && !usePVSChanged )
+        int camLeaf = getLeaf( camPos );
+        int camCluster = leafToCluster[ camLeaf ];
+        
+        Point3f.toPool( camPos );
+        
+        // Leaf boxes are only available for Quake3 maps.
+        final boolean cullFrustum = useFrustumCulling && ( frustum != null ) && ( nodeBounds != null );
+        final boolean cullAreas = useAreaCulling && ( nodeBounds != null ) && floodAreas( leafArea[ camLeaf ] );
+        
+        if ( !cullFrustum && !cullAreas )
         {
-            Point3f.toPool( camPos );
+            if ( lastCluster == camCluster && !usePVSChanged && !lastCulled )
+            {
+                return ( false );
+            }
             
-            return ( false );
+            lastCluster = camCluster;
+            lastCulled = false;
+            
+            long[] faces = getVisibleFaces( camCluster );
+            
+            final boolean changed = applyVisibleFaces( faces );
+            
+            updatePVSStats( camCluster, faces );
+            clustersCulledByAreas = 0;
+            facesCulledByAreas = 0;
+            clustersCulledByFrustum = 0;
+            facesCulledByFrustum = 0;
+            numVisibleFaces = numReferencedFaces - facesCulledByPVS;
+            
+            return ( changed );
         }
         
         lastCluster = camCluster;
+        lastCulled = true;
         
-        boolean allClustersVisible = !hasVisBitset || ( camCluster < 0 );
+        final long[] pvsFaces = getVisibleFaces( camCluster );
+        updatePVSStats( camCluster, pvsFaces );
         
-        shapeBitset.clear();
+        final boolean visAll = !hasVisBitset || ( camCluster < 0 ) || ( camCluster >= numClusters );
+        final int row = visAll ? 0 : camCluster * clusterWords;
         
-        for ( int i = 0; i < bspVisData.numOfClusters; i++ )
+        // PVS-visible clusters and faces, that are in unreachable areas
+        int areaClusters = numClusters - clustersCulledByPVS;
+        int areaFaces = numReferencedFaces - facesCulledByPVS;
+        if ( cullAreas )
         {
-            int[][] clusterLeafs_i = clusterLeafs[ i ];
+            for ( int c = 0; c < numClusters; c++ )
+            {
+                final int area = clusterArea[ c ];
+                
+                if ( ( area >= 0 ) && !areaReachable[ area ] && ( visAll || ( ( ( pvs[ row + ( c >>> 6 ) ] >>> c ) & 1L ) != 0L ) ) )
+                    areaClusters--;
+            }
+            
+            final long[] reachable = reachableFaces;
+            for ( int w = 0; w < faceWords; w++ )
+                reachable[ w ] = 0L;
             
-            if ( ( clusterLeafs_i != null ) && ( allClustersVisible || isClusterVisible( camCluster, i ) ) )
+            for ( int a = 0; a < numAreas; a++ )
             {
-                for ( int j = 0; j < clusterLeafs_i.length; j++ )
+                if ( areaReachable[ a ] )
                 {
-                    int[] clusterLeafs_i_j = clusterLeafs_i[ j ];
-                    
-                    if ( clusterLeafs_i_j.length > 0 )
-                    {
-                        for ( int k = 0; k < clusterLeafs_i_j.length; k++ )
-                        {
-                            int clusterLeaf = clusterLeafs_i_j[ k ];
-                            
-                            if ( !shapeBitset.get( clusterLeaf ) )
-                            {
-                                shapeBitset.set( clusterLeaf );
-                            }
-                        }
-                    }
+                    final long[] mask = areaFaceMasks[ a ];
+                    for ( int w = 0; w < faceWords; w++ )
+                        reachable[ w ] |= mask[ w ];
                 }
             }
+            
+            areaFaces = 0;
+            for ( int w = 0; w < faceWords; w++ )
+                areaFaces += Long.bitCount( reachable[ w ] & pvsFaces[ w ] );
         }
         
-        Point3f.toPool( camPos );
+        clustersCulledByAreas = ( numClusters - clustersCulledByPVS ) - areaClusters;
+        facesCulledByAreas = ( numReferencedFaces - facesCulledByPVS ) - areaFaces;
         
-        return ( true );
+        if ( cullFrustum )
+            System.arraycopy( frustum, 0, frustumPlanes, 0, 24 );
+        
+        // Write to the buffer, that isn't currently applied.
+        cullBuffer ^= 1;
+        long[] faces = cullFaces[ cullBuffer ];
+        if ( faces == null )
+        {
+            faces = new long[ faceWords ];
+            cullFaces[ cullBuffer ] = faces;
+        }
+        else
+        {
+            for ( int w = 0; w < faceWords; w++ )
+                faces[ w ] = 0L;
+        }
+        
+        for ( int w = 0; w < walkClusters.length; w++ )
+            walkClusters[ w ] = 0L;
+        
+        if ( nodes.length > 0 )
+            walkNode( 0, cullFrustum ? 0x3F : 0, visAll, row, cullAreas, faces );
+        
+        numVisibleFaces = bitCount( faces );
+        
+        int walkedClusters = 0;
+        for ( int w = 0; w < clusterWords; w++ )
+            walkedClusters += Long.bitCount( walkClusters[ w ] );
+        
+        clustersCulledByFrustum = Math.max( 0, areaClusters - walkedClusters );
+        facesCulledByFrustum = Math.max( 0, areaFaces - numVisibleFaces );
+        
+        return ( applyVisibleFaces( faces ) );
     }
     
-    /*
-    private static final BitSet generateBitSet( byte[] visData )
+    /**
+     * Decompresses the PVS bytes into long words. Bits beyond the number of
+     * clusters are masked out.
+     */
+    private static long[] decompressPVS( BSPVisData bspVisData, int numClusters, int clusterWords )
     {
-        BitSet bitset = new BitSet( visData.length * 8 );
+        final byte[] bitsets = bspVisData.pBitsets;
         
-        for ( int byteIndex = 0; byteIndex < visData.length; byteIndex++ )
+        if ( bitsets == null )
+            return ( null );
+        
+        final int bytesPerCluster = bspVisData.bytesPerCluster;
+        final int usedBytes = Math.min( bytesPerCluster, clusterWords * 8 );
+        final long lastWordMask = ( ( numClusters & 63 ) == 0 ) ? -1L : ( ( 1L << ( numClusters & 63 ) ) - 1L );
+        
+        long[] pvs = new long[ numClusters * clusterWords ];
+        
+        for ( int c = 0; c < numClusters; c++ )
         {
-            int bitIndex0 = byteIndex * 8;
-            byte byt = visData[ byteIndex ];
+            final int src = c * bytesPerCluster;
+            final int dst = c * clusterWords;
             
-            for ( int bitIndex = 0; bitIndex < 8; bitIndex++ )
+            for ( int b = 0; ( b < usedBytes ) && ( src + b < bitsets.length ); b++ )
             {
-                boolean bitValue = ( byt & ( 1 << bitIndex ) ) != 0;
-                
-                bitset.set( bitIndex0 + bitIndex, bitValue );
+                pvs[ dst + ( b >>> 3 ) ] |= ( bitsets[ src + b ] & 0xFFL ) << ( ( b & 7 ) << 3 );
             }
+            
+            if ( clusterWords > 0 )
+                pvs[ dst + clusterWords - 1 ] &= lastWordMask;
         }
         
-        return ( bitset );
+        return ( pvs );
     }
-    */
     
-    /*
-    private static final boolean[] decompressVisData( byte[] compressed )
+    private static int computeFaceWords( int[][][] clusterLeafs )
     {
-        boolean[] decompressed = new boolean[ compressed.length * 8 ];
+        int maxFace = -1;
         
-        for ( int byteIndex = 0; byteIndex < compressed.length; byteIndex++ )
+        for ( int c = 0; c < clusterLeafs.length; c++ )
         {
-            int bitIndex0 = byteIndex * 8;
-            byte byt = compressed[ byteIndex ];
+            if ( clusterLeafs[ c ] == null )
+                continue;
             
-            for ( int bitIndex = 0; bitIndex < 8; bitIndex++ )
+            for ( int j = 0; j < clusterLeafs[ c ].length; j++ )
             {
-                boolean bitValue = ( byt & ( 1 << bitIndex ) ) != 0;
+                final int[] faces = clusterLeafs[ c ][ j ];
                 
-                decompressed[bitIndex0 + bitIndex] = bitValue;
+                for ( int k = 0; k < faces.length; k++ )
+                {
+                    if ( faces[ k ] > maxFace )
+                        maxFace = faces[ k ];
+                }
             }
         }
         
-        return ( decompressed );
+        return ( ( maxFace + 64 ) >>> 6 );
+    }
+    
+    /**
+     * Builds the sparse face mask of each cluster from its leafs' faces.
+     */
+    private static void buildClusterMasks( int[][][] clusterLeafs, int faceWords, int[][] maskIndices, long[][] maskWords )
+    {
+        final long[] dense = new long[ faceWords ];
+        
+        for ( int c = 0; c < clusterLeafs.length; c++ )
+        {
+            if ( clusterLeafs[ c ] == null )
+                continue;
+            
+            int minWord = faceWords;
+            int maxWord = -1;
+            
+            for ( int j = 0; j < clusterLeafs[ c ].length; j++ )
+            {
+                final int[] faces = clusterLeafs[ c ][ j ];
+                
+                for ( int k = 0; k < faces.length; k++ )
+                {
+                    final int w = faces[ k ] >>> 6;
+                    
+                    dense[ w ] |= 1L << faces[ k ];
+                    
+                    if ( w < minWord )
+                        minWord = w;
+                    if ( w > maxWord )
+                        maxWord = w;
+                }
+            }
+            
+            int n = 0;
+            for ( int w = minWord; w <= maxWord; w++ )
+            {
+                if ( dense[ w ] != 0L )
+                    n++;
+            }
+            
+            if ( n == 0 )
+                continue;
+            
+            maskIndices[ c ] = new int[ n ];
+            maskWords[ c ] = new long[ n ];
+            
+            n = 0;
+            for ( int w = minWord; w <= maxWord; w++ )
+            {
+                if ( dense[ w ] != 0L )
+                {
+                    maskIndices[ c ][ n ] = w;
+                    maskWords[ c ][ n ] = dense[ w ];
+                    dense[ w ] = 0L;
+                    n++;
+                }
+            }
+        }
     }
-    */
     
     public BSPClusterManager( BSPVisData bspVisData, int[][][] clusterLeafs, int[] leafToCluster, float[] planes, int[] nodes, BitSet shapeBitset )
     {
         this.bspVisData     = bspVisData;
         this.hasVisBitset   = ( bspVisData.pBitsets != null );
-        this.clusterLeafs   = clusterLeafs;
         this.leafToCluster  = leafToCluster;
         this.planes         = planes;
         this.nodes          = nodes;
         this.shapeBitset    = shapeBitset;
         
+        this.numClusters    = clusterLeafs.length;
+        this.clusterWords   = ( numClusters + 63 ) >>> 6;
+        this.pvs            = decompressPVS( bspVisData, numClusters, clusterWords );
+        
+        this.faceWords      = computeFaceWords( clusterLeafs );
+        this.clusterMaskIndices = new int[ numClusters ][];
+        this.clusterMaskWords   = new long[ numClusters ][];
+        buildClusterMasks( clusterLeafs, faceWords, clusterMaskIndices, clusterMaskWords );
+        
+        final long[] referenced = new long[ faceWords ];
+        for ( int c = 0; c < numClusters; c++ )
+            orClusterMask( c, referenced );
+        this.numReferencedFaces = bitCount( referenced );
+        
         //System.out.println( bspVisData.pBitsets.length + ", " + bspVisData.bytesPerCluster + ", " + bspVisData.numOfClusters );
         //System.out.println( clusterLeafs.length + ", " + leafToCluster.length + ", " + planes.length );
     }
@@ -296,88 +1081,299 @@ public class BSPClusterManager implements BSPVisibilityUpdater
     {
         this.bspVisData     = template.bspVisData;
         this.hasVisBitset   = template.hasVisBitset;
-        this.clusterLeafs   = template.clusterLeafs;
         this.leafToCluster  = template.leafToCluster;
         this.planes         = template.planes;
         this.nodes          = template.nodes;
         this.shapeBitset    = template.shapeBitset;
+        
+        this.numClusters    = template.numClusters;
+        this.clusterWords   = template.clusterWords;
+        this.pvs            = template.pvs;
+        this.faceWords      = template.faceWords;
+        this.clusterMaskIndices = template.clusterMaskIndices;
+        this.clusterMaskWords   = template.clusterMaskWords;
+        this.numReferencedFaces = template.numReferencedFaces;
+        
+        this.nodeBounds     = template.nodeBounds;
+        this.leafBounds     = template.leafBounds;
+        this.leafFirstFace  = template.leafFirstFace;
+        this.leafNumFaces   = template.leafNumFaces;
+        this.leafFaces      = template.leafFaces;
+        this.leafArea       = template.leafArea;
+        this.clusterArea    = template.clusterArea;
+        this.numAreas       = template.numAreas;
+        this.areaFaceMasks  = template.areaFaceMasks;
+        this.portalAreas    = template.portalAreas;
+        this.portalModels   = template.portalModels;
+        this.portalOpen     = template.portalOpen.clone();
+        
+        if ( nodeBounds != null )
+            allocateCullingBuffers();
     }
     
+    private void allocateCullingBuffers()
+    {
+        this.areaReachable  = new boolean[ numAreas ];
+        this.areaStack      = new int[ numAreas ];
+        this.walkClusters   = new long[ clusterWords ];
+        this.reachableFaces = new long[ faceWords ];
+    }
     
     /**
-     * converts the nodes for the BSP
+     * Converts Z-up integer boxes to scaled Y-up float boxes (min xyz, max xyz).
      */
-    private static int[] convertNodes( BSPNode[] bspNodes )
+    private static float[] convertBounds( int[] mins, int[] maxs, int count, float worldScale )
     {
-        int[] nodes = new int[ bspNodes.length * 3 ];
-        for ( int i = 0; i < bspNodes.length; i++ )
+        float[] bounds = new float[ count * 6 ];
+        for ( int i = 0; i < count; i++ )
         {
-            final int j = i * 3;
-            nodes[ j + 0 ] = bspNodes[ i ].plane;
-            nodes[ j + 1 ] = bspNodes[ i ].front;
-            nodes[ j + 2 ] = bspNodes[ i ].back;
+            final int s = i * 3;
+            final int d = i * 6;
+            
+            bounds[ d + 0 ] = mins[ s + 0 ] * worldScale;
+            bounds[ d + 1 ] = mins[ s + 2 ] * worldScale;
+            bounds[ d + 2 ] = -maxs[ s + 1 ] * worldScale;
+            bounds[ d + 3 ] = maxs[ s + 0 ] * worldScale;
+            bounds[ d + 4 ] = maxs[ s + 2 ] * worldScale;
+            bounds[ d + 5 ] = -mins[ s + 1 ] * worldScale;
         }
         
-        return ( nodes );
+        return ( bounds );
     }
     
     /**
-     * Takes all the faces in the leaf and adds them to the cluster
+     * Finds the two areas, the given func_door model connects. Like the
+     * engine does, the model's box is expanded by one unit and the areas of
+     * all touched leafs are collected.
      * 
-     * @param leaf 
+     * @return the two areas (area1 &lt;&lt; 16 | area2) or -1, if the model doesn't separate two areas.
      */
-    private static int[] convertLeaf( BSPLeaf leaf, int[] leafFaces, int[][][] clusterLeafs, int[] clusterLeaf )
+    private static int findPortalAreas( BSPModel model, BSPLeafData leafs )
     {
-        if ( leaf.numOfLeafFaces == 0 )
+        int area1 = -1;
+        int area2 = -1;
+        
+        for ( int i = 0; i < leafs.count; i++ )
         {
-            //if (Xith3DDefaults.getLocalDebug( BSPLoader.DEBUG ))
-            //System.out.println( "no faces, but " + leaf.numOfLeafBrushes + " brushes" );
-            return ( new int[] {} );
+            final int area = leafs.area[ i ];
+            
+            if ( ( area < 0 ) || ( area == area1 ) || ( area == area2 ) )
+                continue;
+            
+            boolean touches = true;
+            for ( int k = 0; ( k < 3 ) && touches; k++ )
+            {
+                touches = ( leafs.mins[ i * 3 + k ] <= model.max[ k ] + 1.0f ) && ( leafs.maxs[ i * 3 + k ] >= model.min[ k ] - 1.0f );
+            }
+            
+            if ( !touches )
+                continue;
+            
+            if ( area1 < 0 )
+                area1 = area;
+            else if ( area2 < 0 )
+                area2 = area;
+            else
+                LOG.debug( "Area portal touches more than two areas." );
         }
         
-        int[] leafFaces2 = new int[ leaf.numOfLeafFaces ];
-        for ( int i = 0; i < leaf.numOfLeafFaces; i++ )
+        if ( area2 < 0 )
+            return ( -1 );
+        
+        return ( ( area1 << 16 ) | area2 );
+    }
+    
+    /**
+     * Prepares the frustum and area culling stage from the Quake3 node and
+     * leaf boxes, the leafs' areas and the func_door area portals.
+     */
+    private void initCulling( BSPScenePrototype prototype, float worldScale )
+    {
+        final BSPNodeData bspNodes = prototype.nodes;
+        final BSPLeafData bspLeafs = prototype.leafs;
+        
+        if ( ( prototype.sourceBSPVersion != 46 ) || ( bspNodes == null ) || ( bspLeafs == null ) || ( prototype.leafFaces == null ) )
+            return;
+        
+        this.nodeBounds     = convertBounds( bspNodes.mins, bspNodes.maxs, bspNodes.count, worldScale );
+        this.leafBounds     = convertBounds( bspLeafs.mins, bspLeafs.maxs, bspLeafs.count, worldScale );
+        this.leafFirstFace  = bspLeafs.leafFace;
+        this.leafNumFaces   = bspLeafs.numOfLeafFaces;
+        this.leafFaces      = prototype.leafFaces;
+        this.leafArea       = bspLeafs.area;
+        
+        int maxArea = -1;
+        for ( int i = 0; i < bspLeafs.count; i++ )
         {
-            leafFaces2[ i ] = leafFaces[ i + leaf.leafFace ];
+            if ( bspLeafs.area[ i ] > maxArea )
+                maxArea = bspLeafs.area[ i ];
         }
+        this.numAreas = maxArea + 1;
         
-        clusterLeaf[ leaf.cluster ]++;
+        this.clusterArea = new int[ numClusters ];
+        Arrays.fill( clusterArea, -1 );
+        this.areaFaceMasks = new long[ numAreas ][ faceWords ];
         
-        if ( clusterLeafs[ leaf.cluster ] == null )
+        for ( int i = 0; i < bspLeafs.count; i++ )
         {
-            clusterLeafs[ leaf.cluster ] = new int[ 1 ][];
+            final int cluster = bspLeafs.cluster[ i ];
+            final int area = bspLeafs.area[ i ];
+            
+            if ( ( cluster < 0 ) || ( cluster >= numClusters ) || ( area < 0 ) )
+                continue;
+            
+            if ( clusterArea[ cluster ] < 0 )
+                clusterArea[ cluster ] = area;
+            
+            final long[] mask = areaFaceMasks[ area ];
+            final int first = leafFirstFace[ i ];
+            for ( int k = first; k < first + leafNumFaces[ i ]; k++ )
+            {
+                final int face = leafFaces[ k ];
+                
+                mask[ face >>> 6 ] |= 1L << face;
+            }
         }
-        else
+        
+        final BSPEntity[] entities = prototype.entities;
+        final BSPModel[] models = prototype.models;
+        
+        if ( ( entities != null ) && ( models != null ) && ( numAreas > 1 ) )
+        {
+            int[] areas = new int[ entities.length * 2 ];
+            String[] modelNames = new String[ entities.length ];
+            boolean[] startOpen = new boolean[ entities.length ];
+            int numPortals = 0;
+            
+            for ( int i = 0; i < entities.length; i++ )
+            {
+                if ( !( entities[ i ] instanceof BSPEntity_func_door ) )
+                    continue;
+                
+                final String model = ( (BSPEntity_func_door)entities[ i ] ).model;
+                
+                if ( ( model == null ) || !model.startsWith( "*" ) )
+                    continue;
+                
+                int modelIndex;
+                try
+                {
+                    modelIndex = Integer.parseInt( model.substring( 1 ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    continue;
+                }
+                
+                if ( ( modelIndex <= 0 ) || ( modelIndex >= models.length ) )
+                    continue;
+                
+                final int portal = findPortalAreas( models[ modelIndex ], bspLeafs );
+                
+                if ( portal < 0 )
+                    continue;
+                
+                areas[ numPortals * 2 + 0 ] = portal >>> 16;
+                areas[ numPortals * 2 + 1 ] = portal & 0xFFFF;
+                modelNames[ numPortals ] = model;
+                startOpen[ numPortals ] = ( ( (BSPEntity_func_door)entities[ i ] ).spawnFlags & DOOR_START_OPEN ) != 0;
+                numPortals++;
+            }
+            
+            this.portalAreas = new int[ numPortals * 2 ];
+            System.arraycopy( areas, 0, portalAreas, 0, numPortals * 2 );
+            this.portalModels = new String[ numPortals ];
+            System.arraycopy( modelNames, 0, portalModels, 0, numPortals );
+            this.portalOpen = new boolean[ numPortals ];
+            System.arraycopy( startOpen, 0, portalOpen, 0, numPortals );
+        }
+        
+        allocateCullingBuffers();
+        
+        LOG.debug( "total areas = ", numAreas );
+        LOG.debug( "total area portals = ", portalOpen.length );
+    }
+    
+    /**
+     * converts the nodes for the BSP
+     */
+    private static int[] convertNodes( BSPNodeData bspNodes )
+    {
+        int[] nodes = new int[ bspNodes.count * 3 ];
+        for ( int i = 0; i < bspNodes.count; i++ )
+        {
+            final int j = i * 3;
+            nodes[ j + 0 ] = bspNodes.plane[ i ];
+            nodes[ j + 1 ] = bspNodes.front[ i ];
+            nodes[ j + 2 ] = bspNodes.back[ i ];
+        }
+        
+        return ( nodes );
+    }
+    
+    /**
+     * Takes all the faces of all leafs and adds them to their clusters.
+     * The leafs are counted per cluster first, so that each cluster's
+     * array is allocated exactly once.
+     * 
+     * @return the number of referenced leafs
+     */
+    private static int convertLeafs( BSPLeafData leafs, int[] leafFaces, int[][][] clusterLeafs )
+    {
+        final int numClusters = clusterLeafs.length;
+        final int[] numClusterLeafs = new int[ numClusters ];
+        
+        for ( int i = 0; i < leafs.count; i++ )
         {
-            int[][] tmp = new int[ clusterLeafs[ leaf.cluster ].length + 1 ][];
-            System.arraycopy( clusterLeafs[ leaf.cluster ], 0, tmp, 0, clusterLeafs[ leaf.cluster ].length );
-            clusterLeafs[ leaf.cluster ] = tmp;
+            final int cluster = leafs.cluster[ i ];
             
+            if ( ( leafs.numOfLeafFaces[ i ] > 0 ) && ( cluster >= 0 ) && ( cluster < numClusters ) )
+                numClusterLeafs[ cluster ]++;
         }
         
-        clusterLeafs[ leaf.cluster ][ clusterLeafs[ leaf.cluster ].length - 1 ] = leafFaces2;
+        int numLeaves = 0;
+        for ( int c = 0; c < numClusters; c++ )
+        {
+            if ( numClusterLeafs[ c ] > 0 )
+            {
+                clusterLeafs[ c ] = new int[ numClusterLeafs[ c ] ][];
+                numLeaves += numClusterLeafs[ c ];
+                numClusterLeafs[ c ] = 0;
+            }
+        }
         
-        return ( leafFaces2 );
+        for ( int i = 0; i < leafs.count; i++ )
+        {
+            final int cluster = leafs.cluster[ i ];
+            final int numOfLeafFaces = leafs.numOfLeafFaces[ i ];
+            
+            if ( ( numOfLeafFaces > 0 ) && ( cluster >= 0 ) && ( cluster < numClusters ) )
+            {
+                int[] leafFaces2 = new int[ numOfLeafFaces ];
+                System.arraycopy( leafFaces, leafs.leafFace[ i ], leafFaces2, 0, numOfLeafFaces );
+                
+                clusterLeafs[ cluster ][ numClusterLeafs[ cluster ]++ ] = leafFaces2;
+            }
+        }
         
-        //if (Xith3DDefaults.getLocalDebug( BSPLoader.DEBUG ))
-        //System.out.println( "there are " + smap.size() + " unique textures in " + leaf.numOfLeafFaces + " faces" );
+        return ( numLeaves );
     }
     
     /**
      * converts the planes for the BSP
      */
-    private static float[] convertPlanes( BSPPlane[] bspPlanes )
+    private static float[] convertPlanes( BSPPlaneData bspPlanes )
     {
+        final float[] src = bspPlanes.planes;
+        
         // now convert the planes
-        float[] planes = new float[ bspPlanes.length * 4 ];
-        for ( int i = 0; i < bspPlanes.length; i++ )
+        float[] planes = new float[ bspPlanes.count * 4 ];
+        for ( int j = 0; j < planes.length; j += 4 )
         {
-            final int j = i * 4;
-            //planes[i].normal.normalize();
-            planes[ j + 0 ] = bspPlanes[ i ].normal.getX();
-            planes[ j + 1 ] = bspPlanes[ i ].normal.getZ();
-            planes[ j + 2 ] = -bspPlanes[ i ].normal.getY();
-            planes[ j + 3 ] = bspPlanes[ i ].d;
+            planes[ j + 0 ] = src[ j + 0 ];
+            planes[ j + 1 ] = src[ j + 2 ];
+            planes[ j + 2 ] = -src[ j + 1 ];
+            planes[ j + 3 ] = src[ j + 3 ];
         }
         
         return ( planes );
@@ -391,32 +1387,36 @@ public class BSPClusterManager implements BSPVisibilityUpdater
      */
     public static BSPClusterManager create( BSPScenePrototype prototype, BitSet faceBitset )
     {
-        int[] clusterLeaf = new int[ prototype.leafs.length ];
+        return ( create( prototype, faceBitset, 1.0f ) );
+    }
+    
+    /**
+     * Creates a BSPClusterManager from the visdata contained in the prototype.
+     * 
+     * @param prototype
+     * @param faceBitset
+     * @param worldScale the scale, the geometry has been loaded with (for the culling boxes)
+     */
+    public static BSPClusterManager create( BSPScenePrototype prototype, BitSet faceBitset, float worldScale )
+    {
         int[][][] clusterLeafs = new int[ prototype.visData.numOfClusters ][][];
         
-        int[][] leafs = new int[ prototype.leafs.length ][];
-        int[] leafToCluster = new int[ prototype.leafs.length ];
+        int numLeaves = convertLeafs( prototype.leafs, prototype.leafFaces, clusterLeafs );
+        int[] leafToCluster = prototype.leafs.cluster;
         
-        for ( int i = 0; i < prototype.leafs.length; i++ )
-        {
-            leafs[ i ] = convertLeaf( prototype.leafs[ i ], prototype.leafFaces, clusterLeafs, clusterLeaf );
-            leafToCluster[ i ] = prototype.leafs[ i ].cluster;
-        }
-        
-        JAGTLog.debug( "Converting nodes..." );
+        LOG.debug( "Converting nodes..." );
         
         int[] nodes = convertNodes( prototype.nodes );
         float[] planes = convertPlanes( prototype.planes );
         
+        LOG.debug( "total referenced leaves = ", numLeaves );
+        LOG.debug( "total leaves = ", prototype.leafs.count );
+        LOG.debug( "total faces = ", prototype.geometries[0].length );
         
-        int numLeaves = 0;
-        for ( int i = 0; i < clusterLeaf.length; i++ )
-            numLeaves += clusterLeaf[ i ];
+        BSPClusterManager clusterManager = new BSPClusterManager( prototype.visData, clusterLeafs, leafToCluster, planes, nodes, faceBitset );
         
-        JAGTLog.debug( "total referenced leaves = ", numLeaves );
-        JAGTLog.debug( "total leaves = ", prototype.leafs.length );
-        JAGTLog.debug( "total faces = ", prototype.geometries[0].length );
+        clusterManager.initCulling( prototype, worldScale );
         
-        return ( new BSPClusterManager( prototype.visData, clusterLeafs, leafToCluster, planes, nodes, faceBitset ) );
+        return ( clusterManager );
     }
 }
@@ -44,7 +44,7 @@ import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity;
 import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity_Location;
 import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity_light;
 import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity_misc_model;
-import org.jagatoo.loaders.models.bsp.lumps.BSPFace;
+import org.jagatoo.loaders.models.bsp.lumps.BSPFaceData;
 import org.jagatoo.loaders.models.bsp.lumps.BSPModel;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.opengl.enums.BlendFunction;
@@ -126,7 +126,7 @@ public class BSPConverter
         appFactory.setColoringAttribsShadeModel( mainCA, ShadeModel.GOURAUD );
     }
     
-    private static NamedObject convertFaceToShape( int sourceBSPVersion, int faceIndex, BSPFace face, NamedObject geometry, AbstractTexture[][] baseTextures, AbstractTexture[] lightMaps, NodeFactory nodeFactory, BoundsType boundsType, AppearanceFactory appFactory, HashMap<String, NamedObject> appCache )
+    private static NamedObject convertFaceToShape( int sourceBSPVersion, int faceIndex, int textureID, int lightmapID, NamedObject geometry, AbstractTexture[][] baseTextures, AbstractTexture[] lightMaps, NodeFactory nodeFactory, BoundsType boundsType, AppearanceFactory appFactory, HashMap<String, NamedObject> appCache )
     //private static NamedObject convertFaceToShape( BSPScenePrototype prototype, NodeFactory nodeFactory, AppearanceFactory appFactory, HashMap<String, Object> appCache )
     {
         if ( geometry == null )
@@ -136,28 +136,28 @@ public class BSPConverter
         
         final String appKey;
         
-        String baseTexName = baseTextures[ face.textureID ][0].getName();
-        boolean isTranslucentTex = ( face.textureID >= 0 ) && ( baseTextures[ face.textureID ][0].getFormat().hasAlpha() || ( baseTexName.indexOf( "flame" ) >= 0 ) );
+        String baseTexName = baseTextures[ textureID ][0].getName();
+        boolean isTranslucentTex = ( textureID >= 0 ) && ( baseTextures[ textureID ][0].getFormat().hasAlpha() || ( baseTexName.indexOf( "flame" ) >= 0 ) );
         
         if ( baseTexName.startsWith( "{" ) )
         {
             isTranslucentTex = true;
         }
         
-        if ( face.lightmapID < 0 )
+        if ( lightmapID < 0 )
         {
             if ( isTranslucentTex )
             {
-                appKey = "appB-" + face.textureID;
+                appKey = "appB-" + textureID;
             }
             else
             {
-                appKey = "appA-" + face.textureID;
+                appKey = "appA-" + textureID;
             }
         }
         else
         {
-            appKey = "appC-" + face.textureID + "-" + face.lightmapID;
+            appKey = "appC-" + textureID + "-" + lightmapID;
         }
         
         NamedObject app = appCache.get( appKey );
@@ -165,12 +165,12 @@ public class BSPConverter
         {
             app = appFactory.createAppearance( appKey, AppearanceFactory.APP_FLAG_STATIC );
             
-            if ( face.textureID >= 0 )
-                appFactory.applyTexture( baseTextures[ face.textureID ][0], 0, app );
+            if ( textureID >= 0 )
+                appFactory.applyTexture( baseTextures[ textureID ][0], 0, app );
             else
                 appFactory.applyTexture( appFactory.getFallbackTexture(), 0, app );
             
-            if ( face.lightmapID < 0 )
+            if ( lightmapID < 0 )
             {
                 if ( isTranslucentTex )
                 {
@@ -187,7 +187,7 @@ public class BSPConverter
             }
             else
             {
-                appFactory.applyTexture( lightMaps[ face.lightmapID ], 1, app );
+                appFactory.applyTexture( lightMaps[ lightmapID ], 1, app );
                 appFactory.applyTextureAttributes( texAttrComb, 1, app );
             }
             
@@ -201,7 +201,7 @@ public class BSPConverter
         return ( nodeFactory.createShape( "Shape" + faceIndex, geometry, app, boundsType ) );
     }
     
-    private static Object[] convertFacesToShapes( int sourceBSPVersion, BSPModel[] models, BSPFace[] faces, NamedObject[][] geometries, AbstractTexture[][] baseTextures, AbstractTexture[] lightMaps, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, float worldScale, SpecialItemsHandler siHandler )
+    private static Object[] convertFacesToShapes( int sourceBSPVersion, BSPModel[] models, BSPFaceData faces, NamedObject[][] geometries, AbstractTexture[][] baseTextures, AbstractTexture[] lightMaps, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, float worldScale, SpecialItemsHandler siHandler )
     {
         initAppearanceComponents( appFactory );
         
@@ -261,18 +261,19 @@ public class BSPConverter
             
             for ( int f = 0; f < model.numOfFaces; f++ )
             {
-                BSPFace face = faces[ model.faceIndex + f ];
+                final int textureID = faces.textureID[ model.faceIndex + f ];
+                final int lightmapID = faces.lightmapID[ model.faceIndex + f ];
                 
                 NamedObject shape;
                 
-                String baseTexName = baseTextures[ face.textureID ][0].getName();
+                String baseTexName = baseTextures[ textureID ][0].getName();
                 if ( baseTexName.startsWith( "sky" ) )
                 {
                     shape = nodeFactory.createDummyNode();
                     
                     if ( !skyboxPublished )
                     {
-                        AbstractTexture[] skyTextures = baseTextures[ face.textureID ];
+                        AbstractTexture[] skyTextures = baseTextures[ textureID ];
                         Object skybox = nodeFactory.createSkyBox( skyTextures[1], skyTextures[2], skyTextures[3], skyTextures[4], skyTextures[5], skyTextures[6] );
                         siHandler.addSpecialItem( SpecialItemType.SKYBOX, null, skybox );
                         
@@ -285,7 +286,7 @@ public class BSPConverter
                 }
                 else
                 {
-                    shape = convertFaceToShape( sourceBSPVersion, f, face, geometries[ m ][ f ], baseTextures, lightMaps, nodeFactory, nodeBoundsType, appFactory, appCache );
+                    shape = convertFaceToShape( sourceBSPVersion, f, textureID, lightmapID, geometries[ m ][ f ], baseTextures, lightMaps, nodeFactory, nodeBoundsType, appFactory, appCache );
                     
                     if ( shape == null )
                     {
@@ -298,7 +299,7 @@ public class BSPConverter
                         if ( baseTexName.startsWith( "+" ) )
                         {
                             NamedObject appearance = nodeFactory.getAppearanceFromShape( shape );
-                            BSPTextureAnimator animator = new BSPTextureAnimator( baseTextures[ face.textureID ], appearance, 0, appFactory, 10f );
+                            BSPTextureAnimator animator = new BSPTextureAnimator( baseTextures[ textureID ], appearance, 0, appFactory, 10f );
                             
                             shape = siHandler.createTextureAnimator( animator, shape );
                         }
@@ -435,7 +436,15 @@ public class BSPConverter
         
         if ( mainGroupType == GroupType.BSP_TREE )
         {
-            nodeFactory.setBSPGroupVisibilityUpdater( bspTreeGroup, BSPClusterManager.create( prototype, faceBitset ) );
+            BSPClusterManager clusterManager = BSPClusterManager.create( prototype, faceBitset, worldScale );
+            
+            nodeFactory.setBSPGroupVisibilityUpdater( bspTreeGroup, clusterManager );
+            
+            // The application opens and closes the portals along with its doors.
+            for ( int p = 0; p < clusterManager.getNumAreaPortals(); p++ )
+            {
+                siHandler.addSpecialItem( SpecialItemType.AREA_PORTAL, clusterManager.getAreaPortalModel( p ), clusterManager );
+            }
         }
         
         //checkBrushes( prototype, scene );
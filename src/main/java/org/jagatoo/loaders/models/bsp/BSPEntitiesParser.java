@@ -684,6 +684,42 @@ public class BSPEntitiesParser
         }
     }
     
+    /**
+     * Quake3 doors carry the areaportal brushes, that separate two areas.
+     */
+    public static class BSPEntity_func_door extends BSPEntity
+    {
+        public String model;
+        public int spawnFlags;
+        
+        @Override
+        protected String getFieldsString()
+        {
+            return ( super.getFieldsString() +
+                    "    model = " + qs( model ) + "\n" +
+                    "    spawnFlags = " + spawnFlags + "\n"
+                  );
+        }
+        
+        @Override
+        protected void parseLine( String line )
+        {
+            if ( line.startsWith( "\"model\"" ) )
+            {
+                this.model = parseLineValue( line );
+            }
+            else if ( line.startsWith( "\"spawnflags\"" ) )
+            {
+                this.spawnFlags = Integer.parseInt( parseLineValue( line ) );
+            }
+        }
+        
+        public BSPEntity_func_door( String className2 )
+        {
+            super( "func_door", className2 );
+        }
+    }
+    
     public static class BSPEntity_func_wall extends BSPEntity
     {
         public String model;
@@ -1073,6 +1109,10 @@ public class BSPEntitiesParser
                         {
                             entity = new BSPEntity_func_wall( classname );
                         }
+                        else if ( classname.startsWith( "func_door" ) )
+                        {
+                            entity = new BSPEntity_func_door( classname );
+                        }
                     }
                     else if ( classname.startsWith( "infodecal" ) )
                     {
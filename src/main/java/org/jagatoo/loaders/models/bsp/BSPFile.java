@@ -62,17 +62,29 @@
  */
 package org.jagatoo.loaders.models.bsp;
 
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
-import org.jagatoo.loaders.models.bsp.lumps.BSPLump;
 import org.jagatoo.util.streams.StreamUtils;
+import org.jagatoo.loaders.models.bsp.lumps.BSPLump;
 
 /**
- * Represents a BSP source file.
+ * Represents a BSP source file.<br>
+ * <br>
+ * The whole file is held in one little-endian {@link ByteBuffer}, which is
+ * memory-mapped for local files and backed by a fully read byte-array for
+ * any other source. Seeking to a lump is therefore a simple position change
+ * and the lump contents can be accessed in bulk through
+ * {@link #getLumpBuffer(int)}, {@link #getLumpInts(int)},
+ * {@link #getLumpFloats(int)} and {@link #getLumpShorts(int)}.
  * 
  * @author David Yazel
  * @author Marvin Froehlich (aka Qudus)
@@ -80,7 +92,8 @@ import org.jagatoo.util.streams.StreamUtils;
 class BSPFile
 {
     private final URL                  baseURL;
-    private final BufferedInputStream  in;
+    private final ByteBuffer           buffer;
+    private final boolean              mapped;
     
     private final String               filename;
     private char[]                     ID;
@@ -101,80 +114,173 @@ class BSPFile
         return ( baseURL );
     }
     
-    public final BufferedInputStream getInputStrema()
+    /**
+     * @return true, if the file contents are memory-mapped,
+     * false, if they have been read into a byte-array.
+     */
+    public final boolean isMapped()
+    {
+        return ( mapped );
+    }
+    
+    /**
+     * @return the total size of the file in bytes.
+     */
+    public final int getSize()
     {
-        return ( in );
+        return ( buffer.capacity() );
     }
     
-    public final void resetPointer() throws IOException
+    public final void resetPointer()
     {
-        in.reset();
+        buffer.position( 0 );
+    }
+    
+    public final int getPointer()
+    {
+        return ( buffer.position() );
+    }
+    
+    private final BSPLump checkLump( int lump ) throws IOException
+    {
+        final BSPLump l = lumps[ lump ];
+        
+        // long arithmetic, so that a corrupt offset/length pair can't overflow the check.
+        if ( ( l.offset < 0 ) || ( l.length < 0 ) || ( (long)l.offset + (long)l.length > buffer.capacity() ) )
+            throw new IOException( "Lump " + lump + " (offset " + l.offset + ", length " + l.length + ") exceeds the file size of " + buffer.capacity() + " bytes." );
+        
+        return ( l );
     }
     
     public final void seek( int lump ) throws IOException
     {
-        in.reset();
+        final BSPLump l = checkLump( lump );
         
-        long toSkip = lumps[ lump ].offset;
+        buffer.position( l.offset );
+    }
+    
+    /**
+     * Creates a little-endian view of the given lump's bytes.
+     * The returned buffer's position is zero and its limit is the lump length.
+     * It doesn't affect the file pointer.
+     * 
+     * @param lump the lump index
+     * 
+     * @return the lump view.
+     * 
+     * @throws IOException if the lump exceeds the file size
+     */
+    public final ByteBuffer getLumpBuffer( int lump ) throws IOException
+    {
+        final BSPLump l = checkLump( lump );
+        
+        ByteBuffer dup = buffer.duplicate();
+        dup.limit( l.offset + l.length );
+        dup.position( l.offset );
         
-        StreamUtils.skipBytes( in, toSkip );
+        return ( dup.slice().order( ByteOrder.LITTLE_ENDIAN ) );
     }
     
-    public final void skipBytes( int numBytes ) throws IOException
+    /**
+     * Creates a little-endian int view of the given lump.
+     * Trailing bytes, that don't make a full int, are ignored.
+     * 
+     * @param lump the lump index
+     * 
+     * @return the int view.
+     * 
+     * @throws IOException if the lump exceeds the file size
+     */
+    public final IntBuffer getLumpInts( int lump ) throws IOException
     {
-        StreamUtils.skipBytes( in, numBytes );
+        return ( getLumpBuffer( lump ).asIntBuffer() );
     }
     
-    public final byte readByte() throws IOException
+    /**
+     * Creates a little-endian float view of the given lump.
+     * Trailing bytes, that don't make a full float, are ignored.
+     * 
+     * @param lump the lump index
+     * 
+     * @return the float view.
+     * 
+     * @throws IOException if the lump exceeds the file size
+     */
+    public final FloatBuffer getLumpFloats( int lump ) throws IOException
     {
-        return ( (byte)in.read() );
+        return ( getLumpBuffer( lump ).asFloatBuffer() );
     }
     
-    public final char readChar() throws IOException
+    /**
+     * Creates a little-endian short view of the given lump.
+     * Trailing bytes, that don't make a full short, are ignored.
+     * 
+     * @param lump the lump index
+     * 
+     * @return the short view.
+     * 
+     * @throws IOException if the lump exceeds the file size
+     */
+    public final ShortBuffer getLumpShorts( int lump ) throws IOException
     {
-        return ( (char)readByte() );
+        return ( getLumpBuffer( lump ).asShortBuffer() );
     }
     
-    public final int readInt() throws IOException
+    public final void skipBytes( int numBytes )
     {
-        return ( StreamUtils.readSwappedInt( in ) );
+        buffer.position( buffer.position() + numBytes );
     }
     
-    public final short readShort() throws IOException
+    public final byte readByte()
     {
-        return ( StreamUtils.readSwappedShort( in ) );
+        return ( buffer.get() );
     }
     
-    public final int readUnsignedShort() throws IOException
+    public final char readChar()
     {
-        return ( StreamUtils.readSwappedUnsignedShort( in ) );
+        return ( (char)buffer.get() );
     }
     
-    public final float readFloat() throws IOException
+    public final int readInt()
     {
-        return ( Float.intBitsToFloat( StreamUtils.readSwappedInt( in ) ) );
+        return ( buffer.getInt() );
     }
     
-    public final void readFully( byte[] data ) throws IOException
+    public final short readShort()
     {
-        in.read( data );
+        return ( buffer.getShort() );
     }
     
-    public final void readFully( byte[] data, int offset, int length ) throws IOException
+    public final int readUnsignedShort()
     {
-        in.read( data, offset, length );
+        return ( buffer.getShort() & 0xFFFF );
     }
     
-    public final byte[] readFully( int count ) throws IOException
+    public final float readFloat()
+    {
+        return ( buffer.getFloat() );
+    }
+    
+    public final void readFully( byte[] data )
+    {
+        buffer.get( data );
+    }
+    
+    public final void readFully( byte[] data, int offset, int length )
+    {
+        buffer.get( data, offset, length );
+    }
+    
+    public final byte[] readFully( int count )
     {
         byte[] data = new byte[ count ];
         
-        in.read( data );
+        buffer.get( data );
         
         return ( data );
     }
     
-    public final void readFully( char[] data, int count ) throws IOException
+    public final void readFully( char[] data, int count )
     {
         for ( int i = 0; i < count; i++ )
         {
@@ -182,7 +288,7 @@ class BSPFile
         }
     }
     
-    protected final void readDirectory() throws IOException
+    protected final void readDirectory()
     {
         final int lumpCount;
         switch ( version )
@@ -208,9 +314,12 @@ class BSPFile
         }
     }
     
-    public final void close() throws IOException
+    /**
+     * Nothing to release for a mapped or buffered file. The mapping is
+     * released, when this BSPFile is garbage collected.
+     */
+    public final void close()
     {
-        in.close();
     }
     
     public final char[] getID()
@@ -260,7 +369,7 @@ class BSPFile
         }
     }
     
-    private void checkHeader() throws IOException, IncorrectFormatException
+    private void checkHeader() throws IncorrectFormatException
     {
         // read bsp "magic number" ( "IBSP" or "VBSP" )
         this.ID = new char[ 4 ];
@@ -287,22 +396,46 @@ class BSPFile
         checkVersion( version );
     }
     
-    protected BSPFile( InputStream in, String filename, URL baseURL ) throws IOException
+    private BSPFile( ByteBuffer buffer, boolean mapped, String filename, URL baseURL ) throws IncorrectFormatException
     {
         super();
         
         this.filename = filename;
         this.baseURL = baseURL;
         
-        if ( in instanceof BufferedInputStream )
-            this.in = (BufferedInputStream)in;
-        else
-            this.in = new BufferedInputStream( in );
-        
-        this.in.mark( Integer.MAX_VALUE );
+        this.buffer = buffer.order( ByteOrder.LITTLE_ENDIAN );
+        this.mapped = mapped;
         
         checkHeader();
         
         readDirectory();
     }
+    
+    /**
+     * Reads the whole stream into memory. The stream is NOT closed.
+     * 
+     * @param in
+     * @param filename
+     * @param baseURL
+     * 
+     * @throws IOException
+     */
+    protected BSPFile( InputStream in, String filename, URL baseURL ) throws IOException
+    {
+        this( StreamUtils.readFullyToBuffer( in ), false, filename, baseURL );
+    }
+    
+    /**
+     * Memory-maps the given file.
+     * 
+     * @param file
+     * @param filename
+     * @param baseURL
+     * 
+     * @throws IOException
+     */
+    protected BSPFile( File file, String filename, URL baseURL ) throws IOException
+    {
+        this( StreamUtils.mapFile( file ), true, filename, baseURL );
+    }
 }
@@ -63,18 +63,24 @@
 package org.jagatoo.loaders.models.bsp;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 
 import org.jagatoo.datatypes.NamedObject;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.GroupType;
 import org.jagatoo.loaders.models._util.LoaderUtils;
 import org.jagatoo.loaders.models._util.NodeFactory;
@@ -85,6 +91,7 @@ import org.jagatoo.loaders.models.bsp.lumps.*;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.loaders.textures.AbstractTextureImage;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.opengl.enums.TextureImageFormat;
 
 /**
@@ -99,6 +106,8 @@ import org.jagatoo.opengl.enums.TextureImageFormat;
  */
 public class BSPPrototypeLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( BSPPrototypeLoader.class );
+    
     public static boolean loadNormals = true;
     
     protected static final Boolean DEBUG = null;
@@ -107,7 +116,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kEntities < 0 )
         {
-            //JAGTLog.debug( "kEntities not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kEntities not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -327,11 +336,46 @@ public class BSPPrototypeLoader
         return ( new AbstractTexture[] { texture } );
     }
     
+    /**
+     * Decodes the miptex lumps of all given textures in parallel. Each texture
+     * is decoded by the first WAD file containing it, which is the one
+     * {@link #loadTexture(BSPFile, String, WADFile[], BSPEntity[], AppearanceFactory)} picks.
+     */
+    private static void decodeWADTextures( String[] textureNames, WADFile[] wadFiles, AppearanceFactory appFactory )
+    {
+        if ( ( wadFiles == null ) || ( wadFiles.length == 0 ) )
+            return;
+        
+        ArrayList<ArrayList<String>> namesPerWAD = new ArrayList<ArrayList<String>>( wadFiles.length );
+        for ( int j = 0; j < wadFiles.length; j++ )
+            namesPerWAD.add( new ArrayList<String>() );
+        
+        for ( int i = 0; i < textureNames.length; i++ )
+        {
+            for ( int j = 0; j < wadFiles.length; j++ )
+            {
+                if ( wadFiles[ j ].containsResource( textureNames[ i ] ) )
+                {
+                    namesPerWAD.get( j ).add( textureNames[ i ] );
+                    break;
+                }
+            }
+        }
+        
+        for ( int j = 0; j < wadFiles.length; j++ )
+        {
+            ArrayList<String> names = namesPerWAD.get( j );
+            
+            if ( names.size() > 0 )
+                wadFiles[ j ].decodeTextures( names.toArray( new String[ names.size() ] ), appFactory );
+        }
+    }
+    
     protected static AbstractTexture[][] readTextures( BSPFile file, BSPDirectory bspDir, WADFile[] wadFiles, BSPEntity[] entities, AppearanceFactory appFactory ) throws IOException
     {
         if ( bspDir.kTextures < 0 )
         {
-            //JAGTLog.debug( "kTextures not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kTextures not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -353,6 +397,8 @@ public class BSPPrototypeLoader
         
         if ( file.getVersion() == 30 )
         {
+            String[] textureNames = new String[ textureCount ];
+            
             for ( int i = 0; i < textureCount; i++ )
             {       
                 file.seek( bspDir.kTextures );
@@ -393,7 +439,14 @@ public class BSPPrototypeLoader
                 System.out.println( ", ofs3: " + offset3 + ", ofs4: "  + offset4 + " }" );
                 */
                 
-                textures[ i ] = loadTexture( file, textureName, wadFiles, entities, appFactory );
+                textureNames[ i ] = textureName;
+            }
+            
+            decodeWADTextures( textureNames, wadFiles, appFactory );
+            
+            for ( int i = 0; i < textureCount; i++ )
+            {
+                textures[ i ] = loadTexture( file, textureNames[ i ], wadFiles, entities, appFactory );
             }
         }
         else if ( file.getVersion() == 46 )
@@ -455,7 +508,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kLightmaps < 0 )
         {
-            //JAGTLog.debug( "kLightmaps not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kLightmaps not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -512,7 +565,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kLightmaps < 0 )
         {
-            //JAGTLog.debug( "kLightmaps not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kLightmaps not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -536,7 +589,7 @@ public class BSPPrototypeLoader
         
         if ( kTexInfo < 0 )
         {
-            //JAGTLog.debug( "kTexInfo not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kTexInfo not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -570,65 +623,69 @@ public class BSPPrototypeLoader
         return ( texInfos );
     }
     
-    protected static BSPVertex[] readVertices( BSPFile file, BSPDirectory bspDir ) throws IOException
+    protected static BSPVertexData readVertices( BSPFile file, BSPDirectory bspDir ) throws IOException
     {
         if ( bspDir.kVertices < 0 )
         {
-            //JAGTLog.debug( "kVertices not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kVertices not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kVertices );
-        int num = 0;
+        final ByteBuffer bytes = file.getLumpBuffer( bspDir.kVertices );
+        final FloatBuffer floats = bytes.asFloatBuffer();
+        
         if ( bspDir.getVersion() == 30 )
-            num = file.lumps[ bspDir.kVertices ].length / ( 3 * 4 );
-        else if ( bspDir.getVersion() == 46 )
-            num = file.lumps[ bspDir.kVertices ].length / ( 11 * 4 );
+        {
+            final int num = floats.limit() / 3;
+            
+            BSPVertexData vertices = new BSPVertexData( num, true );
+            floats.get( vertices.positions );
+            
+            return ( vertices );
+        }
+        
+        if ( bspDir.getVersion() != 46 )
+            return ( new BSPVertexData( 0, true ) );
+        
+        // Vertex records are made of 4-byte fields only (the color being four bytes).
+        // So the whole lump is accessed as floats with a stride of the record size.
+        final int num = floats.limit() / 11;
         
-        BSPVertex[] vertices = new BSPVertex[ num ];
+        BSPVertexData vertices = new BSPVertexData( num, false );
+        final float[] positions = vertices.positions;
+        final float[] texCoords = vertices.texCoords;
+        final float[] lightTexCoords = vertices.lightTexCoords;
+        final float[] normals = vertices.normals;
+        final float[] colors = vertices.colors;
         
         for ( int i = 0; i < num; i++ )
         {
-            BSPVertex vertex              = new BSPVertex();
-            vertices[ i ]                 = vertex;
+            final int f = i * 11;
             
-            vertex.position.setX(    file.readFloat() );
-            vertex.position.setY(    file.readFloat() );
-            vertex.position.setZ(    file.readFloat() );
+            positions[ i * 3 + 0 ] = floats.get( f + 0 );
+            positions[ i * 3 + 1 ] = floats.get( f + 1 );
+            positions[ i * 3 + 2 ] = floats.get( f + 2 );
             
-            if ( bspDir.getVersion() == 46 )
+            texCoords[ i * 2 + 0 ] = floats.get( f + 3 );
+            texCoords[ i * 2 + 1 ] = floats.get( f + 4 );
+            
+            lightTexCoords[ i * 2 + 0 ] = floats.get( f + 5 );
+            lightTexCoords[ i * 2 + 1 ] = floats.get( f + 6 );
+            
+            normals[ i * 3 + 0 ] = floats.get( f + 7 );
+            normals[ i * 3 + 1 ] = floats.get( f + 8 );
+            normals[ i * 3 + 2 ] = floats.get( f + 9 );
+            
+            final int c = ( f + 10 ) * 4;
+            
+            for ( int k = 0; k < 4; k++ )
             {
-                vertex.texCoord.setS(    file.readFloat() );
-                vertex.texCoord.setT(    file.readFloat() );
-                
-                vertex.lightTexCoord.setS( file.readFloat() );
-                vertex.lightTexCoord.setT( file.readFloat() );
-                
-                vertex.normal.setX(      file.readFloat() );
-                vertex.normal.setY(      file.readFloat() );
-                vertex.normal.setZ(      file.readFloat() );
-                
-                int r = file.readByte();
-                if ( r < 0 )
-                    r = -r + 127;
-                
-                int g = file.readByte();
-                if ( g < 0 )
-                    g = -g + 127;
-                
-                int b = file.readByte();
-                if ( b < 0 )
-                    b = -b + 127;
-                
-                int a = file.readByte();
-                if ( a < 0 )
-                    a = -a + 127;
+                int v = bytes.get( c + k );
+                if ( v < 0 )
+                    v = -v + 127;
                 
-                vertex.color.setRed( (float)r / 255f );
-                vertex.color.setGreen( (float)g / 255f );
-                vertex.color.setBlue( (float)b / 255f );
-                vertex.color.setAlpha( (float)a / 255f );
+                colors[ i * 4 + k ] = (float)v / 255f;
             }
         }
         
@@ -639,19 +696,15 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kMeshVerts < 0 )
         {
-            //JAGTLog.debug( "kMeshVerts not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kMeshVerts not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kMeshVerts );
-        int num = file.lumps[ bspDir.kMeshVerts ].length / 4;
+        IntBuffer ints = file.getLumpInts( bspDir.kMeshVerts );
         
-        int[] meshVertices = new int[ num ];
-        for ( int i = 0; i < num; i++ )
-        {
-            meshVertices[ i ] = file.readInt();
-        }
+        int[] meshVertices = new int[ ints.remaining() ];
+        ints.get( meshVertices );
         
         return ( meshVertices );
     }
@@ -668,7 +721,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kBrushSides < 0 )
         {
-            //JAGTLog.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -695,107 +748,99 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kSurfEdges < 0 )
         {
-            //JAGTLog.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kSurfEdges );
-        int num = file.lumps[ bspDir.kSurfEdges ].length / 4;
+        IntBuffer ints = file.getLumpInts( bspDir.kSurfEdges );
         
-        int[] surfEdges = new int[ num ];
-
-        for ( int i = 0; i < num; i++ )
-        {
-            surfEdges[ i ] = file.readInt();
-        }
+        int[] surfEdges = new int[ ints.remaining() ];
+        ints.get( surfEdges );
         
         return ( surfEdges );
     }
     
-    protected static BSPFace[] readFaces( BSPFile file, BSPDirectory bspDir ) throws IOException
+    protected static BSPFaceData readFaces( BSPFile file, BSPDirectory bspDir ) throws IOException
     {
         if ( bspDir.kFaces < 0 )
         {
-            //JAGTLog.debug( "kFaces not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kFaces not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kFaces );
+        final ByteBuffer bytes = file.getLumpBuffer( bspDir.kFaces );
         
         if ( file.getVersion() == 30 )
         {
-            int num = file.lumps[ bspDir.kFaces ].length / ( 2 + 2 + 4 + 2 + 2 + 4 + 4 );
-
-            BSPFace[] faces = new BSPFace[ num ];
+            final int recordSize = 2 + 2 + 4 + 2 + 2 + 4 + 4;
+            final int num = bytes.limit() / recordSize;
+            
+            BSPFaceData faces = new BSPFaceData( num );
             
             for ( int i = 0; i < num; i++ )
             {
-                BSPFace face            = new BSPFace();
-                faces[ i ]              = face;
+                final int b = i * recordSize;
                 
-                face.effect       = -1;
+                faces.effect[ i ] = -1;
                 
-                /*int planenum = */file.readUnsignedShort();  // ushort planeNum : Index into planes lump
-                /*int side = */file.readUnsignedShort();      // ushort side     : If non-zero, must flip the normal of the given plane to match face orientation
+                // ushort planeNum (b + 0) : Index into planes lump
+                // ushort side     (b + 2) : If non-zero, must flip the normal of the given plane to match face orientation
                 
-                face.vertexIndex = file.readInt();   //int firstedge; : we must support > 64k edges
-                face.numOfVerts  = file.readUnsignedShort(); // ushort numedges :
+                faces.vertexIndex[ i ] = bytes.getInt( b + 4 );                 // int firstedge; : we must support > 64k edges
+                faces.numOfVerts[ i ]  = bytes.getShort( b + 8 ) & 0xFFFF;      // ushort numedges :
                 
-                face.textureID   = file.readUnsignedShort();   // ushort texinfo : Index into texinfo lump
+                faces.textureID[ i ]   = bytes.getShort( b + 10 ) & 0xFFFF;     // ushort texinfo : Index into texinfo lump
                 
                 // lighting info
-                /*byte[] styles = */file.readFully( 4 ); // byte styles[ MAXLIGHTMAPS ] : #define MAXLIGHTMAPS 4
-                face.lightmapID = file.readInt();   // int lightofs : start of [ numstyles * surfsize ] samples
+                // byte styles[ MAXLIGHTMAPS ] (b + 12) : #define MAXLIGHTMAPS 4
+                faces.lightmapID[ i ] = bytes.getInt( b + 16 );                 // int lightofs : start of [ numstyles * surfsize ] samples
             }
             
             return ( faces );
         }
         else if ( file.getVersion() == 46 )
         {
-            int num = file.lumps[ bspDir.kFaces ].length / ( 26 * 4 );
-    
-            BSPFace[] faces = new BSPFace[ num ];
-    
+            final IntBuffer ints = bytes.asIntBuffer();
+            final FloatBuffer floats = bytes.asFloatBuffer();
+            final int num = ints.limit() / 26;
+            
+            BSPFaceData faces = new BSPFaceData( num );
+            
             for ( int i = 0; i < num; i++ )
             {
-                BSPFace face                     = new BSPFace();
-                faces[ i ]                       = face;
-                
-                face.textureID             = file.readInt();
-                face.effect                = file.readInt();
-                face.type                  = file.readInt();
-                face.vertexIndex           = file.readInt();
-                face.numOfVerts            = file.readInt();
-                face.meshVertIndex         = file.readInt();
-                face.numMeshVerts          = file.readInt();
-                face.lightmapID            = file.readInt();
-                face.lMapCorner[ 0 ]       = file.readInt();
-                face.lMapCorner[ 1 ]       = file.readInt();
-                
-                face.lMapSize[ 0 ]         = file.readInt();
-                face.lMapSize[ 1 ]         = file.readInt();
-                
-                face.lMapPos[ 0 ]          = file.readFloat();
-                face.lMapPos[ 1 ]          = file.readFloat();
-                face.lMapPos[ 2 ]          = file.readFloat();
-                
-                face.lMapBitsets[ 0 ][ 0 ] = file.readFloat();
-                face.lMapBitsets[ 0 ][ 1 ] = file.readFloat();
-                face.lMapBitsets[ 0 ][ 2 ] = file.readFloat();
-                
-                face.lMapBitsets[ 1 ][ 0 ] = file.readFloat();
-                face.lMapBitsets[ 1 ][ 1 ] = file.readFloat();
-                face.lMapBitsets[ 1 ][ 2 ] = file.readFloat();
+                final int f = i * 26;
+                
+                faces.textureID[ i ]           = ints.get( f + 0 );
+                faces.effect[ i ]              = ints.get( f + 1 );
+                faces.type[ i ]                = ints.get( f + 2 );
+                faces.vertexIndex[ i ]         = ints.get( f + 3 );
+                faces.numOfVerts[ i ]          = ints.get( f + 4 );
+                faces.meshVertIndex[ i ]       = ints.get( f + 5 );
+                faces.numMeshVerts[ i ]        = ints.get( f + 6 );
+                faces.lightmapID[ i ]          = ints.get( f + 7 );
+                faces.lMapCorner[ i * 2 + 0 ]  = ints.get( f + 8 );
+                faces.lMapCorner[ i * 2 + 1 ]  = ints.get( f + 9 );
+                
+                faces.lMapSize[ i * 2 + 0 ]    = ints.get( f + 10 );
+                faces.lMapSize[ i * 2 + 1 ]    = ints.get( f + 11 );
+                
+                faces.lMapPos[ i * 3 + 0 ]     = floats.get( f + 12 );
+                faces.lMapPos[ i * 3 + 1 ]     = floats.get( f + 13 );
+                faces.lMapPos[ i * 3 + 2 ]     = floats.get( f + 14 );
+                
+                for ( int k = 0; k < 6; k++ )
+                {
+                    faces.lMapBitsets[ i * 6 + k ] = floats.get( f + 15 + k );
+                }
                 
-                face.vNormal[ 0 ]          = file.readFloat();
-                face.vNormal[ 1 ]          = file.readFloat();
-                face.vNormal[ 2 ]          = file.readFloat();
+                faces.vNormal[ i * 3 + 0 ]     = floats.get( f + 21 );
+                faces.vNormal[ i * 3 + 1 ]     = floats.get( f + 22 );
+                faces.vNormal[ i * 3 + 2 ]     = floats.get( f + 23 );
                 
-                face.size[ 0 ]             = file.readInt();
-                face.size[ 1 ]             = file.readInt();
-                //System.out.println( "type=" + face.type + ", verts " + face.numOfVerts + ", " + face.numMeshVerts );
+                faces.size[ i * 2 + 0 ]        = ints.get( f + 24 );
+                faces.size[ i * 2 + 1 ]        = ints.get( f + 25 );
             }
             
             return ( faces );
@@ -808,7 +853,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kVisData < 0 )
         {
-            //JAGTLog.debug( "kVisData not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kVisData not currently supported by ", bspDir.getClass().getSimpleName() );
             return ( null );
         }
         
@@ -843,11 +888,11 @@ public class BSPPrototypeLoader
         return ( visData );
     }
     
-    protected static BSPPlane[] readPlanes( BSPFile file, BSPDirectory bspDir, float worldScale ) throws IOException
+    protected static BSPPlaneData readPlanes( BSPFile file, BSPDirectory bspDir, float worldScale ) throws IOException
     {
         if ( bspDir.kPlanes < 0 )
         {
-            //JAGTLog.debug( "kPlanes not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kPlanes not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -862,236 +907,197 @@ public class BSPPrototypeLoader
             entryLength = 4;
         }
         
-        file.seek( bspDir.kPlanes );
-        int num = file.lumps[ bspDir.kPlanes ].length / ( entryLength * 4 );
-        BSPPlane[] planes = new BSPPlane[ num ];
+        final FloatBuffer floats = file.getLumpFloats( bspDir.kPlanes );
+        final int num = ( entryLength == 0 ) ? 0 : floats.limit() / entryLength;
         
-        for ( int i = 0; i < num; i++ )
+        BSPPlaneData planes = new BSPPlaneData( num );
+        final float[] data = planes.planes;
+        
+        if ( entryLength == 4 )
         {
-            BSPPlane plane = new BSPPlane();
-            planes[ i ] = plane;
-            
-            plane.normal.setX( file.readFloat() );
-            plane.normal.setY( file.readFloat() );
-            plane.normal.setZ( file.readFloat() );
-            plane.d = file.readFloat() * worldScale;
-            
-            file.skipBytes( ( entryLength - 4 ) * 4 );
+            floats.get( data );
             
-            //System.out.println( i + ": " + planes[ i ].normal + ", " + planes[ i ].d );
+            for ( int i = 3; i < data.length; i += 4 )
+            {
+                data[ i ] *= worldScale;
+            }
+        }
+        else
+        {
+            for ( int i = 0; i < num; i++ )
+            {
+                final int f = i * entryLength;
+                
+                data[ i * 4 + 0 ] = floats.get( f + 0 );
+                data[ i * 4 + 1 ] = floats.get( f + 1 );
+                data[ i * 4 + 2 ] = floats.get( f + 2 );
+                data[ i * 4 + 3 ] = floats.get( f + 3 ) * worldScale;
+            }
         }
         
         return ( planes );
     }
     
-    protected static BSPNode[] readNodes( BSPFile file, BSPDirectory bspDir ) throws IOException
+    protected static BSPNodeData readNodes( BSPFile file, BSPDirectory bspDir ) throws IOException
     {
         if ( bspDir.kNodes < 0 )
         {
-            //JAGTLog.debug( "kNodes not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kNodes not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kNodes );
-        
-        int length = 0;
-        if ( file.getVersion() == 30 )
-        {
-            length = 24;
-        }
-        else if ( file.getVersion() == 46 )
-        {
-            length = ( 9 * 4 );
-        }
-        
-        int num = file.lumps[ bspDir.kNodes ].length / length;
-        BSPNode[] nodes = new BSPNode[ num ];
+        final ByteBuffer bytes = file.getLumpBuffer( bspDir.kNodes );
         
         if ( file.getVersion() == 30 ) 
         {
-            for (int i = 0; i < num; i++)
+            final int num = bytes.limit() / 24;
+            BSPNodeData nodes = new BSPNodeData( num );
+            
+            for ( int i = 0; i < num; i++ )
             {
-                BSPNode node         = new BSPNode();
-                nodes[ i ]           = node;
+                final int b = i * 24;
                 
-                node.plane     = file.readInt(); // index into planes array
+                nodes.plane[ i ] = bytes.getInt( b + 0 ); // index into planes array
                 
                 // If > 0, then indices into nodes; otherwise, bitwise inverse = indices into leaves.
-                short child0 = file.readShort();
-                short child1 = file.readShort();
+                short child0 = bytes.getShort( b + 4 );
+                short child1 = bytes.getShort( b + 6 );
                 
                 // FIXME: How to use this index for leafs, but not for nodes???
                 
-                /*
-                if ( child0 <= 0 )
-                    System.out.println( child0 );
-                if ( child1 <= 0 )
-                    System.out.println( child1 );
-                */
-                
                 if ( child0 > 0 )
-                    node.front = child0;
+                    nodes.front[ i ] = child0;
                 else
-                    //node.front = -( Integer.reverse( child0 ) >> 16 );
-                    node.front = -( child0 + 1 );
+                    nodes.front[ i ] = -( child0 + 1 );
                 if ( child1 > 0 )
-                    node.back = child1;
+                    nodes.back[ i ] = child1;
                 else
-                    //node.back = -( Integer.reverse( child1 ) >> 16 );
-                    node.back = -( child1 + 1 );
-                
-                node.mins[ 0 ] = file.readShort();
-                node.mins[ 1 ] = file.readShort();
-                node.mins[ 2 ] = file.readShort();
-                
-                node.maxs[ 0 ] = file.readShort();
-                node.maxs[ 1 ] = file.readShort();
-                node.maxs[ 2 ] = file.readShort();
+                    nodes.back[ i ] = -( child1 + 1 );
                 
-                /*int firstFace = */file.readUnsignedShort();
-                /*int numFaces = */file.readUnsignedShort();// counting both sides
+                for ( int k = 0; k < 3; k++ )
+                {
+                    nodes.mins[ i * 3 + k ] = bytes.getShort( b + 8 + k * 2 );
+                    nodes.maxs[ i * 3 + k ] = bytes.getShort( b + 14 + k * 2 );
+                }
                 
-                //System.out.println( "      " + node.plane + " - " + node.front + " - " + node.back );
-                //System.out.println( "mins: " + node.mins[ 0 ] + " - " + node.mins[ 1 ] + " - " + node.mins[ 2 ] );
-                //System.out.println( "maxs: " + node.maxs[ 0 ] + " - " + node.maxs[ 1 ] + " - " + node.maxs[ 2 ] );
+                // ushort firstFace (b + 20), ushort numFaces (b + 22) : counting both sides
             }
+            
+            return ( nodes );
         }
         else if ( file.getVersion() == 46 )
         {
-            for (int i = 0; i < num; i++)
+            final IntBuffer ints = bytes.asIntBuffer();
+            final int num = ints.limit() / 9;
+            BSPNodeData nodes = new BSPNodeData( num );
+            
+            for ( int i = 0; i < num; i++ )
             {
-                BSPNode node = new BSPNode();
-                nodes[ i ]   = node;
+                final int f = i * 9;
                 
-                node.plane     = file.readInt();
-                node.front     = file.readInt();
-                node.back      = file.readInt();
+                nodes.plane[ i ] = ints.get( f + 0 );
+                nodes.front[ i ] = ints.get( f + 1 );
+                nodes.back[ i ]  = ints.get( f + 2 );
                 
-                node.mins[ 0 ] = file.readInt();
-                node.mins[ 1 ] = file.readInt();
-                node.mins[ 2 ] = file.readInt();
-                
-                node.maxs[ 0 ] = file.readInt();
-                node.maxs[ 1 ] = file.readInt();
-                node.maxs[ 2 ] = file.readInt();
+                for ( int k = 0; k < 3; k++ )
+                {
+                    nodes.mins[ i * 3 + k ] = ints.get( f + 3 + k );
+                    nodes.maxs[ i * 3 + k ] = ints.get( f + 6 + k );
+                }
             }
+            
+            return ( nodes );
         }
         
-        return ( nodes );
+        return ( new BSPNodeData( 0 ) );
     }
     
-    protected static BSPLeaf[] readLeafs( BSPFile file, BSPDirectory bspDir ) throws IOException
+    protected static BSPLeafData readLeafs( BSPFile file, BSPDirectory bspDir ) throws IOException
     {
         if ( bspDir.kLeafs < 0 )
         {
-            //JAGTLog.debug( "kLeafs not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kLeafs not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        int entryLength = 0;
-        if ( file.getVersion() == 30 )
-        {
-            entryLength = 26;
-        }
-        else if ( file.getVersion() == 46 )
-        {
-            entryLength = ( 12 * 4 );
-        }
-        
-        file.seek( bspDir.kLeafs );
-        int num = file.lumps[ bspDir.kLeafs ].length / entryLength;
-        
-        BSPLeaf[] leafs = new BSPLeaf[ num ];
-        
-        //System.out.println( num );
+        final ByteBuffer bytes = file.getLumpBuffer( bspDir.kLeafs );
         
         if ( file.getVersion() == 30 )
         {
+            /*
+            signed int contents;            // Contents enum
+            unsigned int vis_offset;        // Something to do with visibility; -1 = no visibility info
+            signed short mins[3], maxs[3];  // Bounding box
+            unsigned short firstmarksurface, nummarksurfaces;   // Index and count into marksurfaces lump
+            unsigned char ambient_level[4]; // Ambient sound levels, indexed by ambient enum
+            */
+            final int recordSize = 28;
+            final int num = bytes.limit() / recordSize;
+            
+            BSPLeafData leafs = new BSPLeafData( num );
+            
             for ( int i = 0; i < num; i++ )
             {
-                BSPLeaf leaf                = new BSPLeaf();
-                leafs[ i ]                  = leaf;
-                
-                /*
-                signed int contents;            // Contents enum
-                unsigned int vis_offset;        // Something to do with visibility; -1 = no visibility info
-                signed short mins[3], maxs[3];  // Bounding box
-                unsigned short firstmarksurface, nummarksurfaces;   // Index and count into marksurfaces lump
-                unsigned char ambient_level[4]; // Ambient sound levels, indexed by ambient enum
-                */
-                
-                /*int contents = */file.readInt();
-                /*int visOffset = */file.readInt();
-                
-                //System.out.println( "contents: " + contents );
-                //System.out.println( "visOffset: "+ visOffset );
+                final int b = i * recordSize;
                 
                 // for frustum culling
-                leaf.mins[ 0 ]        = file.readShort();
-                leaf.mins[ 1 ]        = file.readShort();
-                leaf.mins[ 2 ]        = file.readShort();
-                    
-                leaf.maxs[ 0 ]        = file.readShort();
-                leaf.maxs[ 1 ]        = file.readShort();
-                leaf.maxs[ 2 ]        = file.readShort();
-                
-                /*int firstMarkSurface = */file.readUnsignedShort();
-                /*int numMarkSurfaces = */file.readUnsignedShort();
-                
-                //System.out.println( "firstMarkSurface: " + firstMarkSurface );
-                //System.out.println( "numMarkSurfaces: " + numMarkSurfaces );
-                
-                file.readFully( 4 ); // ambient_level;
+                for ( int k = 0; k < 3; k++ )
+                {
+                    leafs.mins[ i * 3 + k ] = bytes.getShort( b + 8 + k * 2 );
+                    leafs.maxs[ i * 3 + k ] = bytes.getShort( b + 14 + k * 2 );
+                }
             }
+            
+            return ( leafs );
         }
         else if ( file.getVersion() == 46 )
         {
+            final IntBuffer ints = bytes.asIntBuffer();
+            final int num = ints.limit() / 12;
+            
+            BSPLeafData leafs = new BSPLeafData( num );
+            
             for ( int i = 0; i < num; i++ )
             {
-                BSPLeaf leaf                = new BSPLeaf();
-                leafs[ i ]                  = leaf;
+                final int f = i * 12;
                 
-                leaf.cluster          = file.readInt();
-                leaf.area             = file.readInt();
+                leafs.cluster[ i ]          = ints.get( f + 0 );
+                leafs.area[ i ]             = ints.get( f + 1 );
                 
-                leaf.mins[ 0 ]        = file.readInt();
-                leaf.mins[ 1 ]        = file.readInt();
-                leaf.mins[ 2 ]        = file.readInt();
-                
-                leaf.maxs[ 0 ]        = file.readInt();
-                leaf.maxs[ 1 ]        = file.readInt();
-                leaf.maxs[ 2 ]        = file.readInt();
+                for ( int k = 0; k < 3; k++ )
+                {
+                    leafs.mins[ i * 3 + k ] = ints.get( f + 2 + k );
+                    leafs.maxs[ i * 3 + k ] = ints.get( f + 5 + k );
+                }
                 
-                leaf.leafFace         = file.readInt();
-                leaf.numOfLeafFaces   = file.readInt();
+                leafs.leafFace[ i ]         = ints.get( f + 8 );
+                leafs.numOfLeafFaces[ i ]   = ints.get( f + 9 );
                 
-                leaf.leafBrush        = file.readInt();
-                leaf.numOfLeafBrushes = file.readInt();
+                leafs.leafBrush[ i ]        = ints.get( f + 10 );
+                leafs.numOfLeafBrushes[ i ] = ints.get( f + 11 );
             }
+            
+            return ( leafs );
         }
         
-        return ( leafs );
+        return ( new BSPLeafData( 0 ) );
     }
     
     protected static int[] readLeafFaces( BSPFile file, BSPDirectory bspDir ) throws IOException
     {
         if ( bspDir.kLeafFaces < 0 )
         {
-            //JAGTLog.debug( "kLeafFaces not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kLeafFaces not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
         
-        file.seek( bspDir.kLeafFaces );
-        int num = file.lumps[ bspDir.kLeafFaces ].length / 4;
+        IntBuffer ints = file.getLumpInts( bspDir.kLeafFaces );
         
-        int[] leafFaces = new int[ num ];
-        for ( int i = 0; i < num; i++ )
-        {
-            leafFaces[ i ] = file.readInt();
-        }
+        int[] leafFaces = new int[ ints.remaining() ];
+        ints.get( leafFaces );
         
         return ( leafFaces );
     }
@@ -1100,7 +1106,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kBrushes < 0 )
         {
-            //JAGTLog.debug( "kBrushes not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kBrushes not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -1126,7 +1132,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kBrushSides < 0 )
         {
-            //JAGTLog.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kBrushSides not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -1151,7 +1157,7 @@ public class BSPPrototypeLoader
     {
         if ( bspDir.kModels < 0 )
         {
-            //JAGTLog.debug( "kModels not currently supported by ", bspDir.getClass().getSimpleName() );
+            //LOG.debug( "kModels not currently supported by ", bspDir.getClass().getSimpleName() );
             
             return ( null );
         }
@@ -1227,6 +1233,27 @@ public class BSPPrototypeLoader
      * Loads the BSP scene prototype.
      */
     private static BSPScenePrototype load( BSPFile bspFile, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "BSP", bspFile.getName(), geomFactory );
+        load.getMetrics().addBytesRead( bspFile.getSize() );
+        if ( !bspFile.isMapped() )
+            load.getMetrics().noteTemporaryBytes( bspFile.getSize() );
+        
+        try
+        {
+            final BSPScenePrototype result = loadScene( bspFile, load.getGeometryFactory(), convertZup2Yup, worldScale, appFactory, nodeFactory, sceneGroup, mainGroupType, siHandler, load.getMetrics() );
+            
+            load.setSuccessful();
+            
+            return ( result );
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    private static BSPScenePrototype loadScene( BSPFile bspFile, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, SpecialItemsHandler siHandler, LoadMetrics metrics ) throws IOException, IncorrectFormatException, ParsingException
     {
         final BSPDirectory bspDir;
         
@@ -1246,6 +1273,7 @@ public class BSPPrototypeLoader
         
         BSPScenePrototype prototype = loader.loadPrototypeData( bspFile, bspDir, worldScale, appFactory );
         
+        metrics.enterPhase( LoadPhase.CONVERT );
         loader.convertFacesToGeometries( prototype, appFactory, geomFactory, convertZup2Yup, worldScale );
         
         BSPConverter.convert( prototype, appFactory, nodeFactory, sceneGroup, mainGroupType, worldScale, bspFile.getBaseURL(), siHandler );
@@ -1271,9 +1299,43 @@ public class BSPPrototypeLoader
     
     /**
      * Loads the BSP scene prototype.
+     * The file is memory-mapped instead of being read into memory.
+     */
+    public static BSPScenePrototype load( File file, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        String filename = file.getName();
+        if ( filename.endsWith( ".bsp" ) )
+            filename = filename.substring( 0, filename.length() - 4 );
+        
+        BSPFile bspFile = new BSPFile( file, filename, LoaderUtils.extractBaseURL( file ) );
+        
+        return ( load( bspFile, geomFactory, convertZup2Yup, worldScale, appFactory, nodeFactory, sceneGroup, mainGroupType, siHandler ) );
+    }
+    
+    /**
+     * Loads the BSP scene prototype.
+     * Local files are memory-mapped, any other resource is read into memory.
      */
     public static BSPScenePrototype load( URL url, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale, AppearanceFactory appFactory, NodeFactory nodeFactory, NamedObject sceneGroup, GroupType mainGroupType, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
     {
-        return ( load( url.openStream(), LoaderUtils.extractFilenameWithoutExt( url ), LoaderUtils.extractBaseURL( url ), geomFactory, convertZup2Yup, worldScale, appFactory, nodeFactory, sceneGroup, mainGroupType, siHandler ) );
+        final File file = LoaderUtils.getLocalFile( url );
+        
+        if ( file != null )
+        {
+            BSPFile bspFile = new BSPFile( file, LoaderUtils.extractFilenameWithoutExt( url ), LoaderUtils.extractBaseURL( url ) );
+            
+            return ( load( bspFile, geomFactory, convertZup2Yup, worldScale, appFactory, nodeFactory, sceneGroup, mainGroupType, siHandler ) );
+        }
+        
+        InputStream in = url.openStream();
+        
+        try
+        {
+            return ( load( in, LoaderUtils.extractFilenameWithoutExt( url ), LoaderUtils.extractBaseURL( url ), geomFactory, convertZup2Yup, worldScale, appFactory, nodeFactory, sceneGroup, mainGroupType, siHandler ) );
+        }
+        finally
+        {
+            in.close();
+        }
     }
 }
@@ -97,19 +97,19 @@ public class BSPScenePrototype
     public BSPTexInfo[]     texInfos;
     
     /**
-     * 
+     * One array per field of the lump (formerly a {@link BSPPlane} array).
      */
-    public BSPPlane[]       planes;
+    public BSPPlaneData     planes;
     
     /**
-     * 
+     * One array per field of the lump (formerly a {@link BSPNode} array).
      */
-    public BSPNode[]        nodes;
+    public BSPNodeData      nodes;
     
     /**
-     * 
+     * One array per field of the lump (formerly a {@link BSPLeaf} array).
      */
-    public BSPLeaf[]        leafs;
+    public BSPLeafData      leafs;
     
     /**
      * 
@@ -127,9 +127,9 @@ public class BSPScenePrototype
     public NamedObject[][]  geometries;
     
     /**
-     * 
+     * One array per field of the lump (formerly a {@link BSPVertex} array).
      */
-    public BSPVertex[]      vertices;
+    public BSPVertexData    vertices;
     
     /**
      * 
@@ -147,9 +147,9 @@ public class BSPScenePrototype
     public int[]    surfEdges;
     
     /**
-     * 
+     * One array per field of the lump (formerly a {@link BSPFace} array).
      */
-    public BSPFace[]        faces;
+    public BSPFaceData      faces;
     
     public byte[]           lightMapData;
     
@@ -41,9 +41,10 @@ import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
 import org.jagatoo.loaders.models.bsp.lumps.BSP30Model;
 import org.jagatoo.loaders.models.bsp.lumps.BSPDirectory;
 import org.jagatoo.loaders.models.bsp.lumps.BSPEdge;
-import org.jagatoo.loaders.models.bsp.lumps.BSPFace;
+import org.jagatoo.loaders.models.bsp.lumps.BSPFaceData;
 import org.jagatoo.loaders.models.bsp.lumps.BSPTexInfo;
 import org.jagatoo.loaders.models.bsp.lumps.BSPVertex;
+import org.jagatoo.loaders.models.bsp.lumps.BSPVertexData;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.loaders.textures.AbstractTextureImage;
 import org.jagatoo.opengl.enums.TextureImageFormat;
@@ -86,12 +87,12 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
             prototype.vertices = BSPPrototypeLoader.readVertices( bspFile, bspDir );
             //prototype.meshVertices = BSPPrototypeLoader.readMeshVertices( bspFile, bspDir );
             prototype.leafs = BSPPrototypeLoader.readLeafs( bspFile, bspDir);
-            prototype.visData = BSPPrototypeLoader.readVisData( bspFile, bspDir, prototype.leafs.length );
+            prototype.visData = BSPPrototypeLoader.readVisData( bspFile, bspDir, prototype.leafs.count );
             prototype.nodes = BSPPrototypeLoader.readNodes( bspFile, bspDir );
             //prototype.leafFaces = BSPPrototypeLoader.readLeafFaces( bspFile, bspDir );
             prototype.texInfos = BSPPrototypeLoader.readTexInfos( bspFile, bspDir );
             prototype.faces = BSPPrototypeLoader.readFaces( bspFile, bspDir );
-            prototype.lightMaps = new AbstractTexture[ prototype.faces.length ];
+            prototype.lightMaps = new AbstractTexture[ prototype.faces.count ];
             prototype.lightMapData = BSPPrototypeLoader.readLightmapData( bspFile, bspDir );
             //prototype.leafs = BSPPrototypeLoader.readLeafs( bspFile, bspDir);
             //prototype.leafBrushes = BSPPrototypeLoader.readLeafBrushes( bspFile, bspDir);
@@ -149,30 +150,31 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
      * @param face 
      * @return 
      */
-    private NamedObject convertFaceToGeometry( int faceIndex, BSPFace face, int[] surfEdges, BSPEdge[] bspEdges, BSPVertex[] vertices, BSPTexInfo[] texInfos, AbstractTexture[][] baseTextures, byte[] lightMapData, AbstractTexture[] lightMaps, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    private NamedObject convertFaceToGeometry( int faceIndex, int face, BSPFaceData faces, int[] surfEdges, BSPEdge[] bspEdges, BSPVertexData vertices, BSPTexInfo[] texInfos, AbstractTexture[][] baseTextures, byte[] lightMapData, AbstractTexture[] lightMaps, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
-        final int numVertices = face.numOfVerts;
+        final int numVertices = faces.numOfVerts[ face ];
+        final int vertexIndex = faces.vertexIndex[ face ];
         
         BSPVertex[] control = new BSPVertex[ numVertices ];
-        BSPVertex v0;
-        //BSPVertex v1;
+        int v0;
+        //int v1;
         
         int j = 0;
-        for ( int i = 0; i < face.numOfVerts; i++ )
+        for ( int i = 0; i < numVertices; i++ )
         {
-            int sfIdx = surfEdges[ face.vertexIndex + i ];
+            int sfIdx = surfEdges[ vertexIndex + i ];
             if ( sfIdx >= 0 )
             {
-                v0 = vertices[ bspEdges[ sfIdx ].vindices[ 0 ] ];
-                //v1 = vertices[ bspEdges[ sfIdx ].vindices[ 1 ] ];
+                v0 = bspEdges[ sfIdx ].vindices[ 0 ];
+                //v1 = bspEdges[ sfIdx ].vindices[ 1 ];
             }
             else
             {
-                v0 = vertices[ bspEdges[ -sfIdx ].vindices[ 1 ] ];
-                //v1 = vertices[ bspEdges[ -sfIdx ].vindices[ 0 ] ];
+                v0 = bspEdges[ -sfIdx ].vindices[ 1 ];
+                //v1 = bspEdges[ -sfIdx ].vindices[ 0 ];
             }
             
-            control[ j++ ] = v0;
+            control[ j++ ] = vertices.get( v0, new BSPVertex() );
         }
         
         if ( BSPPrototypeLoader.loadNormals )
@@ -189,16 +191,17 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
          * But since lightmaps are not currently working, we disable
          * them through this line.
          */
-        face.lightmapID = -1;
+        faces.lightmapID[ face ] = -1;
         
         NamedObject ga = geomFactory.createInterleavedGeometry( "Geometry " + faceIndex,
                                                                 geomType, 3,
                                                                 numVertices, 0, null,
-                                                                Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES, false, ( face.lightmapID >= 0 ) ? new int[] { 2, 2 } : new int[] { 2 }, null
+                                                                Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES, false, ( faces.lightmapID[ face ] >= 0 ) ? new int[] { 2, 2 } : new int[] { 2 }, null
                                                               );
         
-        BSPTexInfo texInfo = texInfos[ face.textureID ];
-        face.textureID = texInfo.textureID;
+        BSPTexInfo texInfo = texInfos[ faces.textureID[ face ] ];
+        final int textureID = texInfo.textureID;
+        faces.textureID[ face ] = textureID;
         
         //Matrix4f m = Matrix4f.fromPool();
         Point3f p = Point3f.fromPool();
@@ -225,10 +228,10 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
             float u = p.getX() * texInfo.s[0] + p.getY() * texInfo.s[1] + p.getZ() * texInfo.s[2] + texInfo.s[3];
             float v = p.getX() * texInfo.t[0] + p.getY() * texInfo.t[1] + p.getZ() * texInfo.t[2] + texInfo.t[3];
             
-            if ( face.textureID >= 0 )
+            if ( textureID >= 0 )
             {
-                int orgWidth = baseTextures[ face.textureID ][0].getImage( 0 ).getOriginalWidth();
-                int orgHeight = baseTextures[ face.textureID ][0].getImage( 0 ).getOriginalHeight();
+                int orgWidth = baseTextures[ textureID ][0].getImage( 0 ).getOriginalWidth();
+                int orgHeight = baseTextures[ textureID ][0].getImage( 0 ).getOriginalHeight();
                 
                 u /= orgWidth;
                 v /= orgHeight;
@@ -248,15 +251,15 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
         
         Point3f.toPool( p );
         
-        if ( face.lightmapID >= 0 )
+        if ( faces.lightmapID[ face ] >= 0 )
         {
             int lightMapWidth = (int)FastMath.ceil( max_u / 16f ) - (int)FastMath.floor( min_u / 16f ) + 1;
             int lightMapHeight = (int)FastMath.ceil( max_v / 16f ) - (int)FastMath.floor( min_v / 16f ) + 1;
             
             //System.out.println( lightMapWidth + "x" + lightMapHeight );
             
-            int lightMapDataOffset = face.lightmapID;
-            face.lightmapID = faceIndex;
+            int lightMapDataOffset = faces.lightmapID[ face ];
+            faces.lightmapID[ face ] = faceIndex;
             
             AbstractTextureImage texImg0 = appFactory.createTextureImage( TextureImageFormat.RGB, lightMapWidth, lightMapHeight );
             
@@ -304,7 +307,7 @@ public class BSPVersionDataLoader30 implements BSPVersionDataLoader
             
             for ( int f = 0; f < numFaces; f++ )
             {
-                geometries[ f ] = convertFaceToGeometry( f, prototype.faces[ model.faceIndex + f ], prototype.surfEdges, prototype.edges, prototype.vertices, prototype.texInfos, prototype.baseTextures, prototype.lightMapData, prototype.lightMaps, appFactory, geomFactory, convertZup2Yup, worldScale );
+                geometries[ f ] = convertFaceToGeometry( f, model.faceIndex + f, prototype.faces, prototype.surfEdges, prototype.edges, prototype.vertices, prototype.texInfos, prototype.baseTextures, prototype.lightMapData, prototype.lightMaps, appFactory, geomFactory, convertZup2Yup, worldScale );
             }
             
             prototype.geometries[ m ] = geometries;
@@ -30,19 +30,22 @@
 package org.jagatoo.loaders.models.bsp;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 
 import org.jagatoo.datatypes.NamedObject;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
 import org.jagatoo.loaders.models.bsp.lumps.BSP46Model;
 import org.jagatoo.loaders.models.bsp.lumps.BSPDirectory;
-import org.jagatoo.loaders.models.bsp.lumps.BSPFace;
+import org.jagatoo.loaders.models.bsp.lumps.BSPFaceData;
 import org.jagatoo.loaders.models.bsp.lumps.BSPVertex;
+import org.jagatoo.loaders.models.bsp.lumps.BSPVertexData;
 import org.jagatoo.loaders.models.bsp.util.PatchSurface;
-import org.openmali.vecmath2.Vector3f;
 import org.openmali.vecmath2.Vertex3f;
 
 /**
@@ -79,7 +82,7 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
             prototype.faces = BSPPrototypeLoader.readFaces( bspFile, bspDir );
             prototype.lightMaps = BSPPrototypeLoader.readLightmaps( bspFile, bspDir, appFactory );
             //prototype.lightVolumes = BSPPrototypeLoader.readLightVolumes( bspFile, bspDir, appFactory );
-            prototype.visData = BSPPrototypeLoader.readVisData( bspFile, bspDir, prototype.leafs.length );
+            prototype.visData = BSPPrototypeLoader.readVisData( bspFile, bspDir, prototype.leafs.count );
             
             bspFile.close();
         }
@@ -91,12 +94,97 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
         return ( prototype );
     }
     
-    private static final float[] getNormal( Vector3f normal, boolean convertZup2Yup )
+    /**
+     * Texture unit 0 holds the regular tex coords, unit 1 the lightmap tex coords.
+     */
+    private static final int[] TU_SIZES = new int[] { 2, 2 };
+    
+    private static final int getFeatures()
+    {
+        return ( Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES );
+    }
+    
+    private static final void putVector( FloatBuffer buffer, float x, float y, float z, float scale, boolean convertZup2Yup )
+    {
+        if ( convertZup2Yup )
+            buffer.put( x * scale ).put( z * scale ).put( -y * scale );
+        else
+            buffer.put( x * scale ).put( y * scale ).put( z * scale );
+    }
+    
+    private static final void putVector( float[] array, int index, float x, float y, float z, float scale, boolean convertZup2Yup )
     {
+        array[ index + 0 ] = x * scale;
+        
         if ( convertZup2Yup )
-            return ( new float[] { normal.getX(), normal.getZ(), -normal.getY() } );
+        {
+            array[ index + 1 ] = z * scale;
+            array[ index + 2 ] = -y * scale;
+        }
+        else
+        {
+            array[ index + 1 ] = y * scale;
+            array[ index + 2 ] = z * scale;
+        }
+    }
+    
+    /**
+     * Hands the vertices over to the GeometryFactory at once.<br>
+     * A {@link org.jagatoo.loaders.models._util.BulkGeometryFactory} gets one interleaved direct buffer,
+     * any other factory gets one plain array per vertex component.
+     */
+    private static void setVertices( NamedObject ga, GeometryType geomType, BSPVertexData vertices, int first, int numVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    {
+        final float[] pos = vertices.positions;
+        final float[] nrm = vertices.normals;
+        final float[] tc = vertices.texCoords;
+        final float[] ltc = vertices.lightTexCoords;
+        final boolean loadNormals = BSPPrototypeLoader.loadNormals;
+        
+        if ( !GeometryBuffers.isBulkFactory( geomFactory ) )
+        {
+            float[] coords = new float[ numVertices * 3 ];
+            float[] normals = loadNormals ? new float[ numVertices * 3 ] : null;
+            
+            for ( int i = 0; i < numVertices; i++ )
+            {
+                final int j = first + i;
+                
+                putVector( coords, i * 3, pos[ j * 3 + 0 ], pos[ j * 3 + 1 ], pos[ j * 3 + 2 ], worldScale, convertZup2Yup );
+                
+                if ( loadNormals )
+                    putVector( normals, i * 3, nrm[ j * 3 + 0 ], nrm[ j * 3 + 1 ], nrm[ j * 3 + 2 ], 1f, convertZup2Yup );
+            }
+            
+            float[] texCoords = new float[ numVertices * 2 ];
+            float[] lightTexCoords = new float[ numVertices * 2 ];
+            System.arraycopy( tc, first * 2, texCoords, 0, numVertices * 2 );
+            System.arraycopy( ltc, first * 2, lightTexCoords, 0, numVertices * 2 );
+            
+            geomFactory.setCoordinates( ga, geomType, 0, coords, 0, numVertices );
+            if ( loadNormals )
+                geomFactory.setNormals( ga, geomType, 0, normals, 0, numVertices );
+            geomFactory.setTexCoords( ga, geomType, 0, TU_SIZES[ 0 ], 0, texCoords, 0, numVertices );
+            geomFactory.setTexCoords( ga, geomType, 1, TU_SIZES[ 1 ], 0, lightTexCoords, 0, numVertices );
+            
+            return;
+        }
         
-        return ( new float[] { normal.getX(), normal.getY(), normal.getZ() } );
+        final ByteBuffer data = GeometryBuffers.createInterleavedBuffer( numVertices, getFeatures(), false, TU_SIZES, null );
+        final FloatBuffer buffer = data.asFloatBuffer();
+        
+        for ( int j = first; j < first + numVertices; j++ )
+        {
+            putVector( buffer, pos[ j * 3 + 0 ], pos[ j * 3 + 1 ], pos[ j * 3 + 2 ], worldScale, convertZup2Yup );
+            
+            if ( loadNormals )
+                putVector( buffer, nrm[ j * 3 + 0 ], nrm[ j * 3 + 1 ], nrm[ j * 3 + 2 ], 1f, convertZup2Yup );
+            
+            buffer.put( tc[ j * 2 + 0 ] ).put( tc[ j * 2 + 1 ] );
+            buffer.put( ltc[ j * 2 + 0 ] ).put( ltc[ j * 2 + 1 ] );
+        }
+        
+        GeometryBuffers.setInterleavedData( geomFactory, ga, geomType, data, numVertices, getFeatures(), false, TU_SIZES, null );
     }
     
     /**
@@ -105,67 +193,58 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
      * 
      * ATTENTION: This method messes up vertex winding!!!
      * 
-     * @param face 
+     * @param faceIndex the index used for the geometry's name
+     * @param face the index into the faces
      * @return 
      */
     @SuppressWarnings( "unused" )
-    private NamedObject convertFaceToIndexedStripGeom( int faceIndex, BSPFace face, BSPVertex[] vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    private NamedObject convertFaceToIndexedStripGeom( int faceIndex, int face, BSPFaceData faces, BSPVertexData vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
+        final int vertexIndex = faces.vertexIndex[ face ];
+        final int numOfVerts = faces.numOfVerts[ face ];
+        final int meshVertIndex = faces.meshVertIndex[ face ];
+        final int numMeshVerts = faces.numMeshVerts[ face ];
+        
         GeometryType geomType = GeometryType.INDEXED_TRIANGLE_STRIP_ARRAY;
         NamedObject ga = geomFactory.createInterleavedGeometry( "Geometry " + faceIndex,
                                                                 geomType, 3,
-                                                                face.numOfVerts, ( face.numMeshVerts / 3 ) + 2, new int[] { face.numMeshVerts },
-                                                                Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES, false, new int[] { 2, 2 }, null
+                                                                numOfVerts, ( numMeshVerts / 3 ) + 2, new int[] { numMeshVerts },
+                                                                getFeatures(), false, TU_SIZES, null
                                                               );
         
-        for ( int i = 0; i < face.numOfVerts; i++ )
-        {
-            int j = face.vertexIndex + i;
-            if ( convertZup2Yup )
-                geomFactory.setCoordinate( ga, geomType, i, vertices[ j ].position.getX() * worldScale, vertices[ j ].position.getZ() * worldScale, -vertices[ j ].position.getY() * worldScale );
-            else
-                geomFactory.setCoordinate( ga, geomType, i, vertices[ j ].position.getX() * worldScale, vertices[ j ].position.getY() * worldScale, vertices[ j ].position.getZ() * worldScale );
-            if ( BSPPrototypeLoader.loadNormals )
-                geomFactory.setNormals( ga, geomType, i, getNormal( vertices[ j ].normal, convertZup2Yup ), 0, 1 );
-            geomFactory.setTexCoord( ga, geomType, 0, i, vertices[ j ].texCoord.getS(), vertices[ j ].texCoord.getT() );
-            geomFactory.setTexCoord( ga, geomType, 1, i, vertices[ j ].lightTexCoord.getS(), vertices[ j ].lightTexCoord.getT() );
-            
-            /*
-            if ( vertices[ j ].color.getRed() < 0f )
-                throw new Error( "illegal color + " + vertices[ j ].color );
-            
-            geomFactory.setColor( ga, geomType, vertices[ j ].color.hasAlpha() ? 4 : 3, i, new float[] { vertices[ j ].color.getRed(), vertices[ j ].color.getGreen(), vertices[ j ].color.getBlue(), vertices[ j ].color.getAlpha() }, 0, 1 );
-            */
-        }
+        setVertices( ga, geomType, vertices, vertexIndex, numOfVerts, geomFactory, convertZup2Yup, worldScale );
         
-        int[] index = new int[ ( face.numMeshVerts / 3 ) + 2 ];
-        for ( int i = 0; i < face.numMeshVerts; i++ )
+        int[] index = new int[ ( numMeshVerts / 3 ) + 2 ];
+        for ( int i = 0; i < numMeshVerts; i++ )
         {
             if ( i < 3 )
             {
-                index[i] = meshVertices[face.meshVertIndex + i];
+                index[i] = meshVertices[meshVertIndex + i];
             }
             else if ( ( i % 3 ) == 2 )
             {
-                index[2 + i / 3] = meshVertices[face.meshVertIndex + i];
+                index[2 + i / 3] = meshVertices[meshVertIndex + i];
             }
         }
         
-        geomFactory.setIndex( ga, geomType, 0, index, 0, index.length );
+        GeometryBuffers.setIndex( geomFactory, ga, geomType, index, 0, index.length );
         
-        geomFactory.finalizeGeometry( ga, geomType, 0, face.numOfVerts, 0, index.length );
+        geomFactory.finalizeGeometry( ga, geomType, 0, numOfVerts, 0, index.length );
         
         return ( ga );
     }
     
-    private NamedObject convertFaceToSurfacePatch( int faceIndex, BSPFace face, BSPVertex[] vertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    private NamedObject convertFaceToSurfacePatch( int faceIndex, int face, BSPFaceData faces, BSPVertexData vertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
-        BSPVertex[] control = new BSPVertex[ face.numOfVerts ];
+        final int vertexIndex = faces.vertexIndex[ face ];
+        final int numOfVerts = faces.numOfVerts[ face ];
+        
+        BSPVertex[] control = new BSPVertex[ numOfVerts ];
         
-        for ( int i = 0; i < face.numOfVerts; i++ )
-            control[ i ] = vertices[ face.vertexIndex + i ];
+        for ( int i = 0; i < numOfVerts; i++ )
+            control[ i ] = vertices.get( vertexIndex + i, new BSPVertex() );
         
-        PatchSurface ps = new PatchSurface( control, face.size[ 0 ], face.size[ 1 ] );
+        PatchSurface ps = new PatchSurface( control, faces.size[ face * 2 + 0 ], faces.size[ face * 2 + 1 ] );
         
         GeometryType geomType = GeometryType.INDEXED_TRIANGLE_ARRAY;
         
@@ -179,25 +258,18 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
         NamedObject ga = geomFactory.createInterleavedGeometry( "Geometry " + faceIndex,
                                                                 geomType, 3,
                                                                 ps.mPoints.length, ps.mIndices.length, null,
-                                                                Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES, false, new int[] { 2, 2 }, null
+                                                                getFeatures(), false, TU_SIZES, null
                                                               );
         
+        BSPVertexData points = new BSPVertexData( ps.mPoints.length, false );
         for ( int i = 0; i < ps.mPoints.length; i++ )
-        {
-            if ( convertZup2Yup )
-                geomFactory.setCoordinate( ga, geomType, i, ps.mPoints[ i ].position.getX() * worldScale, ps.mPoints[ i ].position.getZ() * worldScale, -ps.mPoints[ i ].position.getY() * worldScale );
-            else
-                geomFactory.setCoordinate( ga, geomType, i, ps.mPoints[ i ].position.getX() * worldScale, ps.mPoints[ i ].position.getY() * worldScale, ps.mPoints[ i ].position.getZ() * worldScale );
-            if ( BSPPrototypeLoader.loadNormals )
-                geomFactory.setNormals( ga, geomType, i, getNormal( ps.mPoints[ i ].normal, convertZup2Yup ), 0, 1 );
-            geomFactory.setTexCoord( ga, geomType, 0, i, ps.mPoints[ i ].texCoord.getS(), ps.mPoints[ i ].texCoord.getT() );
-            geomFactory.setTexCoord( ga, geomType, 1, i, ps.mPoints[ i ].lightTexCoord.getS(), ps.mPoints[ i ].lightTexCoord.getT() );
-            //geomFactory.setColors( ga, geomType, ps.mPoints[ i ].color.hasAlpha() ? 4 : 3, i, new float[] { ps.mPoints[ i ].color.getRed(), ps.mPoints[ i ].color.getGreen(), ps.mPoints[ i ].color.getBlue(), ps.mPoints[ i ].color.getAlpha() }, 0, 1 );
-        }
+            points.set( i, ps.mPoints[ i ] );
         
-        geomFactory.setIndex( ga, geomType, 0, ps.mIndices, 0, ps.mIndices.length );
+        setVertices( ga, geomType, points, 0, points.count, geomFactory, convertZup2Yup, worldScale );
         
-        geomFactory.finalizeGeometry( ga, geomType, 0, ps.mPoints.length, 0, ps.mIndices.length );
+        GeometryBuffers.setIndex( geomFactory, ga, geomType, ps.mIndices, 0, ps.mIndices.length );
+        
+        GeometryBuffers.finalizeGeometry( geomFactory, ga, geomType, 0, ps.mPoints.length, 0, ps.mIndices.length );
         
         return ( ga );
     }
@@ -206,44 +278,28 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
      * Creates the indexed geometry array for the BSP face.  The lightmap tex coords are stored in
      * unit 1, the regular tex coords are stored in unit 0
      * 
-     * @param face 
+     * @param faceIndex the index used for the geometry's name
+     * @param face the index into the faces
      * @return 
      */
-    private NamedObject convertFaceToIndexedGeom( int faceIndex, BSPFace face, BSPVertex[] vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    private NamedObject convertFaceToIndexedGeom( int faceIndex, int face, BSPFaceData faces, BSPVertexData vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
+        final int vertexIndex = faces.vertexIndex[ face ];
+        final int numOfVerts = faces.numOfVerts[ face ];
+        final int numMeshVerts = faces.numMeshVerts[ face ];
+        
         GeometryType geomType = GeometryType.INDEXED_TRIANGLE_ARRAY;
         NamedObject ga = geomFactory.createInterleavedGeometry( "Geometry " + faceIndex,
                                                                 geomType, 3,
-                                                                face.numOfVerts, face.numMeshVerts, null,
-                                                                Vertex3f.COORDINATES | ( BSPPrototypeLoader.loadNormals ? Vertex3f.NORMALS : 0 ) | Vertex3f.TEXTURE_COORDINATES, false, new int[] { 2, 2 }, null
+                                                                numOfVerts, numMeshVerts, null,
+                                                                getFeatures(), false, TU_SIZES, null
                                                               );
         
-        for ( int i = 0; i < face.numOfVerts; i++ )
-        {
-            int j = face.vertexIndex + i;
-            if ( convertZup2Yup )
-                geomFactory.setCoordinate( ga, geomType, i, vertices[ j ].position.getX() * worldScale, vertices[ j ].position.getZ() * worldScale, -vertices[ j ].position.getY() * worldScale );
-            else
-                geomFactory.setCoordinate( ga, geomType, i, vertices[ j ].position.getX() * worldScale, vertices[ j ].position.getY() * worldScale, vertices[ j ].position.getZ() * worldScale );
-            if ( BSPPrototypeLoader.loadNormals )
-                geomFactory.setNormals( ga, geomType, i, getNormal( vertices[ j ].normal, convertZup2Yup ), 0, 1 );
-            geomFactory.setTexCoord( ga, geomType, 0, i, vertices[ j ].texCoord.getS(), vertices[ j ].texCoord.getT() );
-            geomFactory.setTexCoord( ga, geomType, 1, i, vertices[ j ].lightTexCoord.getS(), vertices[ j ].lightTexCoord.getT() );
-            
-            /*
-            if ( vertices[ j ].color.getRed() < 0f )
-                throw new Error( "illegal color + " + vertices[ j ].color );
-            
-            geomFactory.setColor( ga, geomType, vertices[ j ].color.hasAlpha() ? 4 : 3, i, new float[] { vertices[ j ].color.getRed(), vertices[ j ].color.getGreen(), vertices[ j ].color.getBlue(), vertices[ j ].color.getAlpha() }, 0, 1 );
-            */
-        }
+        setVertices( ga, geomType, vertices, vertexIndex, numOfVerts, geomFactory, convertZup2Yup, worldScale );
         
-        int[] index = new int[ face.numMeshVerts ];
-        System.arraycopy( meshVertices, face.meshVertIndex, index, 0, face.numMeshVerts );
+        GeometryBuffers.setIndex( geomFactory, ga, geomType, meshVertices, faces.meshVertIndex[ face ], numMeshVerts );
         
-        geomFactory.setIndex( ga, geomType, 0, index, 0, index.length );
-        
-        geomFactory.finalizeGeometry( ga, geomType, 0, face.numOfVerts, 0, index.length );
+        GeometryBuffers.finalizeGeometry( geomFactory, ga, geomType, 0, numOfVerts, 0, numMeshVerts );
         
         return ( ga );
     }
@@ -253,6 +309,7 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
      * 
      * @param faceIndex
      * @param face
+     * @param faces
      * @param vertices
      * @param meshVertices
      * @param geomFactory
@@ -260,7 +317,7 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
      * @param worldScale
      * @return the new billboard geometry 
      */
-    private NamedObject convertFaceToBillboard( int faceIndex, BSPFace face, BSPVertex[] vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    private NamedObject convertFaceToBillboard( int faceIndex, int face, BSPFaceData faces, BSPVertexData vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
         System.out.println( "TODO: Implement the abstract creation of Billboard geometry" );
         
@@ -268,26 +325,39 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
     }
     
     /**
-     * {@inheritDoc}
+     * Creates the geometry for the given face.
+     * 
+     * @param faceIndex the index used for the geometry's name
+     * @param face the index into the faces
+     * @param faces
+     * @param vertices
+     * @param meshVertices
+     * @param geomFactory
+     * @param convertZup2Yup
+     * @param worldScale
+     * 
+     * @return the new geometry
      */
-    public NamedObject convertFaceToGeometry( int faceIndex, BSPFace face, BSPVertex[] vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
+    public NamedObject convertFaceToGeometry( int faceIndex, int face, BSPFaceData faces, BSPVertexData vertices, int[] meshVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float worldScale )
     {
-        switch ( face.type )
+        final int type = faces.type[ face ];
+        
+        switch ( type )
         {
             case 1:
-                return ( convertFaceToIndexedGeom( faceIndex, face, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
+                return ( convertFaceToIndexedGeom( faceIndex, face, faces, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
             
             case 2:
-                return ( convertFaceToSurfacePatch( faceIndex, face, vertices, geomFactory, convertZup2Yup, worldScale ) );
+                return ( convertFaceToSurfacePatch( faceIndex, face, faces, vertices, geomFactory, convertZup2Yup, worldScale ) );
             
             case 3:
-                return ( convertFaceToIndexedGeom( faceIndex, face, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
+                return ( convertFaceToIndexedGeom( faceIndex, face, faces, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
                 
             case 4:
-                return ( convertFaceToBillboard( faceIndex, face, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
+                return ( convertFaceToBillboard( faceIndex, face, faces, vertices, meshVertices, geomFactory, convertZup2Yup, worldScale ) );
         }
         
-        throw new Error( "Unsupported face type " + face.type );
+        throw new Error( "Unsupported face type " + type );
     }
     
     /**
@@ -308,9 +378,7 @@ public class BSPVersionDataLoader46 implements BSPVersionDataLoader
             
             for ( int f = 0; f < model.numOfFaces; f++ )
             {
-                BSPFace face = prototype.faces[ model.faceIndex + f ];
-                
-                geometries[ f ] = convertFaceToGeometry( f, face, prototype.vertices, prototype.meshVertices, geomFactory, convertZup2Yup, worldScale );
+                geometries[ f ] = convertFaceToGeometry( f, model.faceIndex + f, prototype.faces, prototype.vertices, prototype.meshVertices, geomFactory, convertZup2Yup, worldScale );
             }
             
             prototype.geometries[m] = geometries;
@@ -34,7 +34,7 @@ import java.util.BitSet;
 import org.openmali.vecmath2.Matrix4f;
 
 /**
- * Insert type comment here.
+ * Updates the visible faces of a BSP tree for the current camera.
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
@@ -42,5 +42,61 @@ public interface BSPVisibilityUpdater
 {
     public BitSet getBitSet();
     
+    /**
+     * Disables geometry that is invisible according to the PVS and to closed area portals.
+     * 
+     * @param cameraTransform the camera's transform
+     * 
+     * @return true, if the visible geometry has changed.
+     */
     public boolean updateVisibility( Matrix4f cameraTransform );
+    
+    /**
+     * Disables geometry that is invisible according to the PVS, to closed
+     * area portals and to the given view frustum.
+     * 
+     * @param cameraTransform the camera's transform
+     * @param frustum the six frustum planes in world space (see {@link BSPClusterManager#extractFrustumPlanes(Matrix4f, float[])}) or null
+     * 
+     * @return true, if the visible geometry has changed.
+     */
+    public boolean updateVisibility( Matrix4f cameraTransform, float[] frustum );
+    
+    /**
+     * @return the number of area portals (doors separating two areas).
+     */
+    public int getNumAreaPortals();
+    
+    /**
+     * @param portal
+     * 
+     * @return the model name ("*n") of the door, that carries the area portal.
+     */
+    public String getAreaPortalModel( int portal );
+    
+    /**
+     * Opens or closes an area portal. Areas, that are only reachable
+     * through closed portals, are culled.
+     * 
+     * @param portal
+     * @param open
+     */
+    public void setAreaPortalOpen( int portal, boolean open );
+    
+    /**
+     * Opens or closes the area portals of the door with the given model name ("*n").
+     * 
+     * @param model
+     * @param open
+     * 
+     * @return false, if the model doesn't carry an area portal.
+     */
+    public boolean setAreaPortalOpen( String model, boolean open );
+    
+    /**
+     * @param portal
+     * 
+     * @return <b>true</b>, if the area portal is open.
+     */
+    public boolean isAreaPortalOpen( int portal );
 }
@@ -32,21 +32,29 @@ package org.jagatoo.loaders.models.bsp;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.jagatoo.image.BufferedImageFactory;
 import org.jagatoo.image.SharedBufferedImage;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
+import org.jagatoo.loaders.LoadMetrics;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.LoaderUtils;
 import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity;
 import org.jagatoo.loaders.models.bsp.BSPEntitiesParser.BSPEntity_worldspawn;
 import org.jagatoo.loaders.textures.AbstractTexture;
@@ -54,10 +62,14 @@ import org.jagatoo.loaders.textures.AbstractTextureImage;
 import org.jagatoo.opengl.enums.TextureImageFormat;
 import org.jagatoo.util.image.ImageUtility;
 import org.jagatoo.util.streams.StreamUtils;
+import org.jagatoo.util.threads.WorkerPool;
 import org.openmali.FastMath;
 
 /**
- * Represents a Half-Life WAD source file.
+ * Represents a Half-Life WAD source file.<br>
+ * The archive is read (or memory-mapped for local files) once and all
+ * resources are served as bounded slices of that buffer, so concurrent
+ * readers don't interfere with each other.
  * 
  * @author Sebastian Thiele (aka SETIssl)
  * @author Marvin Froehlich (aka Qudus)
@@ -66,6 +78,8 @@ public class WADFile
 {
     private static final int MAGIC_NUMBER_WAD3 = 0x57414433;
     
+    private static final WorkerPool decodeWorkers = new WorkerPool( "WADDecoder", Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ), Thread.NORM_PRIORITY - 1 );
+    
     // wad directory, contains info for integrated files
     private static class WADDirectoryEntry 
     {
@@ -96,12 +110,90 @@ public class WADFile
         }
     }
     
+    // a miptex lump and the texture images, its RGB(A) mipmap levels are decoded into
+    private static class DecodedMipTex
+    {
+        public String                 resName;
+        public byte[]                 nameBytes;
+        public boolean                hasAlpha;
+        public AbstractTextureImage[] mipmaps;
+        
+        // the header-less miptex data, released after decoding
+        public ByteBuffer             lump;
+        public int                    imgDataSize;
+    }
+    
+    // a miptex, that is decoded by a worker thread, and the number of reads, it is kept for
+    private static class PendingMipTex
+    {
+        public Future<DecodedMipTex> future;
+        public int                   remainingReads;
+        public boolean               consumed = false;
+    }
+    
+    /**
+     * An InputStream over a ByteBuffer slice.
+     */
+    private static class ResourceInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+        
+        @Override
+        public int read()
+        {
+            if ( !buffer.hasRemaining() )
+                return ( -1 );
+            
+            return ( buffer.get() & 0xFF );
+        }
+        
+        @Override
+        public int read( byte[] b, int off, int len )
+        {
+            if ( len == 0 )
+                return ( 0 );
+            
+            if ( !buffer.hasRemaining() )
+                return ( -1 );
+            
+            len = Math.min( len, buffer.remaining() );
+            buffer.get( b, off, len );
+            
+            return ( len );
+        }
+        
+        @Override
+        public long skip( long n )
+        {
+            final int k = (int)Math.max( 0L, Math.min( n, buffer.remaining() ) );
+            buffer.position( buffer.position() + k );
+            
+            return ( k );
+        }
+        
+        @Override
+        public int available()
+        {
+            return ( buffer.remaining() );
+        }
+        
+        public ResourceInputStream( ByteBuffer buffer )
+        {
+            this.buffer = buffer;
+        }
+    }
+    
     private final URL     wadResource;
     private final String  wadFilename;
     private int           magicNumber;
     private String        wadType;
     
+    private final ByteBuffer wadBuffer;
+    private final boolean    mapped;
+    
     private final HashMap<String, WADDirectoryEntry> wadDir;
+    // decodeTextures() and the reads may run on different threads. So the map and its entries are guarded by the map.
+    private final HashMap<String, PendingMipTex> pendingTextures = new HashMap<String, PendingMipTex>();
     
     public final String getWADFilename()
     {
@@ -113,6 +205,14 @@ public class WADFile
         return ( wadType );
     }
     
+    /**
+     * @return <b>true</b>, if the WAD file is memory-mapped (local file), <b>false</b>, if it has been read into the heap.
+     */
+    public final boolean isMapped()
+    {
+        return ( mapped );
+    }
+    
     public final int getLumpCount()
     {
         return ( wadDir.size() );
@@ -138,7 +238,36 @@ public class WADFile
         return ( wadDir.containsKey( resName.toLowerCase() ) );
     }
     
-    public final BufferedInputStream getResourceAsStream( String resName ) throws IOException
+    /**
+     * @return a little-endian slice of the WAD buffer, that is bounded to the entry's data.
+     */
+    private ByteBuffer getEntryBuffer( WADDirectoryEntry entry ) throws IOException
+    {
+        final int offset = (int)entry.offset;
+        
+        if ( ( offset < 0 ) || ( entry.compFileSize < 0 ) || ( offset > wadBuffer.capacity() - entry.compFileSize ) )
+        {
+            throw new IOException( "The resource \"" + entry.fileName + "\" exceeds the WAD file." );
+        }
+        
+        ByteBuffer slice = wadBuffer.duplicate();
+        slice.limit( offset + entry.compFileSize );
+        slice.position( offset );
+        
+        return ( slice.slice().order( ByteOrder.LITTLE_ENDIAN ) );
+    }
+    
+    /**
+     * Gets a read-only view on the resource's data. The returned buffers are
+     * independent of each other and can be read from different threads.
+     * 
+     * @param resName
+     * 
+     * @return the resource's data or null, if the resource doesn't exist.
+     * 
+     * @throws IOException
+     */
+    public final ByteBuffer getResource( String resName ) throws IOException
     {
         WADDirectoryEntry entry = wadDir.get( resName.toLowerCase() );
         
@@ -147,42 +276,45 @@ public class WADFile
             return ( null );
         }
         
-        InputStream in = wadResource.openStream();
-        if ( !( in instanceof BufferedInputStream ) )
+        return ( getEntryBuffer( entry ).asReadOnlyBuffer().order( ByteOrder.LITTLE_ENDIAN ) );
+    }
+    
+    public final BufferedInputStream getResourceAsStream( String resName ) throws IOException
+    {
+        ByteBuffer resource = getResource( resName );
+        
+        if ( resource == null )
         {
-            in = new BufferedInputStream( in );
+            return ( null );
         }
         
-        in.skip( entry.offset );
-        
-        return ( (BufferedInputStream)in );
+        return ( new BufferedInputStream( new ResourceInputStream( resource ) ) );
     }
     
     public final void exportResource( String resName, String filename ) throws IOException
     {
-        WADDirectoryEntry entry = wadDir.get( resName.toLowerCase() );
+        ByteBuffer resource = getResource( resName );
         
-        if ( entry == null )
+        if ( resource == null )
         {
             throw new IOException( "The resource was not found in this WAD file." );
         }
         
-        InputStream in = wadResource.openStream();
-        if ( !( in instanceof BufferedInputStream ) )
+        BufferedOutputStream out = new BufferedOutputStream( new FileOutputStream( filename ) );
+        try
         {
-            in = new BufferedInputStream( in );
+            byte[] chunk = new byte[ Math.min( 8192, Math.max( 1, resource.remaining() ) ) ];
+            while ( resource.hasRemaining() )
+            {
+                final int n = Math.min( chunk.length, resource.remaining() );
+                resource.get( chunk, 0, n );
+                out.write( chunk, 0, n );
+            }
         }
-        
-        in.skip( entry.offset );
-        
-        BufferedOutputStream out = new BufferedOutputStream( new FileOutputStream( filename ) );
-        for ( int i = 0; i < entry.compFileSize; i++ )
+        finally
         {
-            out.write( (byte)in.read() );
+            out.close();
         }
-        out.close();
-        
-        in.close();
     }
     
     private static void transferScaledBytes( byte[] unscaledData, int bytesPerPixel, ByteBuffer bb, int orgWidth, int orgHeight, int width, int height )
@@ -205,7 +337,7 @@ public class WADFile
         }
     }
     
-    private void readTransparentTexture( DataInputStream din, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
+    private void readTransparentTexture( ByteBuffer src, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
     {
         final boolean needsPostScaling = ( pixelData != null );
         
@@ -216,7 +348,7 @@ public class WADFile
         int pos = 0;
         for ( int i = 0; i < size; i++ )
         {
-            int palIdx = din.read();
+            int palIdx = src.get() & 0xFF;
             
             r = palette[palIdx][0];
             g = palette[palIdx][1];
@@ -255,7 +387,7 @@ public class WADFile
         }
     }
     
-    private void readGlassTexture( DataInputStream din, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
+    private void readGlassTexture( ByteBuffer src, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
     {
         final boolean needsPostScaling = ( pixelData != null );
         
@@ -266,7 +398,7 @@ public class WADFile
         int pos = 0;
         for ( int i = 0; i < size; i++ )
         {
-            int palIdx = din.read();
+            int palIdx = src.get() & 0xFF;
             
             r = palette[palIdx][0];
             g = palette[palIdx][1];
@@ -517,7 +649,7 @@ public class WADFile
         return ( textures );
     }
     
-    private void readSpecialTexture( DataInputStream din, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
+    private void readSpecialTexture( ByteBuffer src, byte[][] palette, int orgWidth, int orgHeight, int width, int height, ByteBuffer bb, byte[] pixelData ) throws IOException
     {
         final boolean needsPostScaling = ( pixelData != null );
         
@@ -528,7 +660,7 @@ public class WADFile
         int pos = 0;
         for ( int i = 0; i < size; i++ )
         {
-            int palIdx = din.read();
+            int palIdx = src.get() & 0xFF;
             
             if ( !needsPostScaling )
             {
@@ -556,7 +688,7 @@ public class WADFile
         }
     }
     
-    private void readRegularTexture( DataInputStream din, byte[][] palette, int orgWidth, int orgHeight, int width, int height, boolean changeGamma, ByteBuffer bb, byte[] pixelData ) throws IOException
+    private void readRegularTexture( ByteBuffer src, byte[][] palette, int orgWidth, int orgHeight, int width, int height, boolean changeGamma, ByteBuffer bb, byte[] pixelData ) throws IOException
     {
         final boolean needsPostScaling = ( pixelData != null );
         
@@ -585,7 +717,7 @@ public class WADFile
         int pos = 0;
         for ( int j = 0; j < size; j++ )
         {
-            int palIdx = din.read();
+            int palIdx = src.get() & 0xFF;
             
             if ( !needsPostScaling )
             {
@@ -638,120 +770,393 @@ public class WADFile
         return ( texture );
     }
     
-    private final AbstractTexture[] readTexture( String resName, AppearanceFactory appFactory, URL baseURL, BSPEntity[] entities, boolean ignoreAnimations ) throws IOException
+    /**
+     * Reads the miptex header and creates the (still empty) texture images.
+     */
+    private DecodedMipTex prepareMipTex( String resName, WADDirectoryEntry entry, AppearanceFactory appFactory ) throws IOException
     {
-        if ( magicNumber == MAGIC_NUMBER_WAD3 )
+        ByteBuffer lump = getEntryBuffer( entry );
+        
+        byte[] nameBytes = new byte[ 16 ];
+        lump.get( nameBytes );
+        //System.out.println( new String( name ).trim() );
+        
+        int orgWidth = lump.getInt();
+        int orgHeight = lump.getInt();
+        
+        int width = ImageUtility.roundUpPower2( orgWidth );
+        int height = ImageUtility.roundUpPower2( orgHeight );
+        
+        //System.out.println( orgWidth + "x" + orgHeight + ", " + width + "x" + height );
+        
+        int[] offsets = new int[ 4 ];
+        for ( int i = 0; i < 4; i++ )
         {
-            WADDirectoryEntry entry = wadDir.get( resName.toLowerCase() );
+            offsets[i] = lump.getInt();
+            //System.out.println( offsets[i] );
+        }
+        
+        int imgDataSize0 = offsets[1] - offsets[0];
+        int imgDataSize = imgDataSize0;
+        imgDataSize0 = imgDataSize0 >> 2;
+        imgDataSize += imgDataSize0;
+        imgDataSize0 = imgDataSize0 >> 2;
+        imgDataSize += imgDataSize0;
+        imgDataSize0 = imgDataSize0 >> 2;
+        imgDataSize += imgDataSize0;
+        
+        if ( ( imgDataSize < 0 ) || ( imgDataSize > lump.remaining() ) )
+        {
+            throw new IOException( "Corrupt miptex \"" + entry.fileName + "\"." );
+        }
+        
+        boolean isTransparentTexture = resName.startsWith( "{" );
+        boolean isGlassTexture = resName.startsWith( "glass" );
+        boolean isSkyTexture = resName.startsWith( "sky" );
+        boolean isSpecialTexture = resName.startsWith( "clip" ) || resName.startsWith( "origin" ) || resName.startsWith( "aatrigger" );
+        
+        DecodedMipTex mipTex = new DecodedMipTex();
+        mipTex.resName = resName;
+        mipTex.nameBytes = nameBytes;
+        mipTex.hasAlpha = isTransparentTexture || isGlassTexture || isSpecialTexture;
+        mipTex.lump = lump;
+        mipTex.imgDataSize = imgDataSize;
+        
+        final int pixelSize = mipTex.hasAlpha ? 4 : 3;
+        
+        int numMipmaps = isSkyTexture ? 1 : 4;
+        mipTex.mipmaps = new AbstractTextureImage[ numMipmaps ];
+        
+        for ( int i = 0; i < numMipmaps; i++ )
+        {
+            if ( mipTex.hasAlpha )
+                mipTex.mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGBA, orgWidth, orgHeight, width, height );
+            else
+                mipTex.mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGB, orgWidth, orgHeight, width, height );
+            ByteBuffer bb = mipTex.mipmaps[i].getDataBuffer();
             
-            if ( entry == null )
-            {
-                throw new IOException( "The resource was not found in this WAD file." );
-            }
+            bb.position( 0 );
+            bb.limit( width * height * pixelSize );
             
-            InputStream in = wadResource.openStream();
-            if ( !( in instanceof BufferedInputStream ) )
-            {
-                in = new BufferedInputStream( in );
-            }
+            orgWidth = orgWidth >> 1;
+            orgHeight = orgHeight >> 1;
+            width = width >> 1;
+            height = height >> 1;
+        }
+        
+        return ( mipTex );
+    }
+    
+    /**
+     * Decodes the RGB(A) mipmap levels of a prepared miptex directly into its texture images.
+     * This only writes to views on the miptex' own buffers and is therefore safe to be invoked
+     * from worker threads.
+     */
+    private void decodeMipTex( DecodedMipTex mipTex, ByteBuffer[] targets ) throws IOException
+    {
+        ByteBuffer lump = mipTex.lump;
+        
+        ByteBuffer imgData = lump.duplicate();
+        imgData.limit( lump.position() + mipTex.imgDataSize );
+        lump.position( lump.position() + mipTex.imgDataSize );
+        
+        /*
+         * Read the palette first...
+         */
+        int paletteSize = lump.getShort();
+        byte[][] palette = new byte[paletteSize][];
+        for ( int i = 0; i < paletteSize; i++ )
+        {
+            palette[i] = new byte[] { lump.get(), lump.get(), lump.get() };
+        }
+        
+        final String resName = mipTex.resName;
+        boolean isTransparentTexture = resName.startsWith( "{" );
+        boolean isGlassTexture = resName.startsWith( "glass" );
+        boolean isSkyTexture = resName.startsWith( "sky" );
+        boolean isSpecialTexture = resName.startsWith( "clip" ) || resName.startsWith( "origin" ) || resName.startsWith( "aatrigger" );
+        
+        final int pixelSize = mipTex.hasAlpha ? 4 : 3;
+        
+        for ( int i = 0; i < targets.length; i++ )
+        {
+            AbstractTextureImage mipmap = mipTex.mipmaps[i];
+            int orgWidth = mipmap.getOriginalWidth();
+            int orgHeight = mipmap.getOriginalHeight();
+            int width = mipmap.getWidth();
+            int height = mipmap.getHeight();
             
-            DataInputStream din = new DataInputStream( in );
+            //System.out.println( width + ", " + height );
             
-            din.skip( entry.offset );
+            ByteBuffer bb = targets[i];
             
-            byte[] nameBytes = new byte[ 16 ];
-            din.read( nameBytes );
-            //System.out.println( new String( name ).trim() );
+            byte[] pixelData = null;
+            if ( ( orgWidth != width ) || ( orgHeight != height ) )
+            {
+                pixelData = new byte[ orgWidth * orgHeight * pixelSize ];
+            }
             
-            int orgWidth = Integer.reverseBytes( din.readInt() );
-            int orgHeight = Integer.reverseBytes( din.readInt() );
+            if ( isTransparentTexture )
+                readTransparentTexture( imgData, palette, orgWidth, orgHeight, width, height, bb, pixelData );
+            else if ( isGlassTexture )
+                readGlassTexture( imgData, palette, orgWidth, orgHeight, width, height, bb, pixelData );
+            else if ( isSkyTexture )
+                readRegularTexture( imgData, palette, orgWidth, orgHeight, width, height, false, bb, pixelData );
+            else if ( isSpecialTexture )
+                readSpecialTexture( imgData, palette, orgWidth, orgHeight, width, height, bb, pixelData );
+            else
+                readRegularTexture( imgData, palette, orgWidth, orgHeight, width, height, true, bb, pixelData );
+        }
+        
+        mipTex.lump = null;
+    }
+    
+    /**
+     * @return views on the texture images' data buffers, that can be written from another thread.
+     */
+    private static ByteBuffer[] getDecodeTargets( DecodedMipTex mipTex )
+    {
+        ByteBuffer[] targets = new ByteBuffer[ mipTex.mipmaps.length ];
+        
+        for ( int i = 0; i < targets.length; i++ )
+        {
+            targets[i] = mipTex.mipmaps[i].getDataBuffer().duplicate();
+        }
+        
+        return ( targets );
+    }
+    
+    /**
+     * Creates new texture images holding a copy of the given decoded miptex' pixels.
+     */
+    private static DecodedMipTex copyMipTex( DecodedMipTex mipTex, AppearanceFactory appFactory )
+    {
+        DecodedMipTex copy = new DecodedMipTex();
+        copy.resName = mipTex.resName;
+        copy.nameBytes = mipTex.nameBytes;
+        copy.hasAlpha = mipTex.hasAlpha;
+        copy.mipmaps = new AbstractTextureImage[ mipTex.mipmaps.length ];
+        
+        for ( int i = 0; i < copy.mipmaps.length; i++ )
+        {
+            AbstractTextureImage src = mipTex.mipmaps[i];
             
-            int width = ImageUtility.roundUpPower2( orgWidth );
-            int height = ImageUtility.roundUpPower2( orgHeight );
+            if ( copy.hasAlpha )
+                copy.mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGBA, src.getOriginalWidth(), src.getOriginalHeight(), src.getWidth(), src.getHeight() );
+            else
+                copy.mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGB, src.getOriginalWidth(), src.getOriginalHeight(), src.getWidth(), src.getHeight() );
+            
+            ByteBuffer srcBB = src.getDataBuffer().duplicate();
+            srcBB.position( 0 );
+            ByteBuffer bb = copy.mipmaps[i].getDataBuffer();
             
-            //System.out.println( orgWidth + "x" + orgHeight + ", " + width + "x" + height );
+            bb.position( 0 );
+            bb.put( srcBB );
             
-            int[] offsets = new int[ 4 ];
-            for ( int i = 0; i < 4; i++ )
+            bb.position( 0 );
+            bb.limit( srcBB.limit() );
+        }
+        
+        return ( copy );
+    }
+    
+    /**
+     * Collects the other frames of an animated texture (the ones, that
+     * {@link #readTexture(String, AppearanceFactory)} reads along with it).
+     */
+    private final ArrayList<WADDirectoryEntry> getAnimationFrames( WADDirectoryEntry entry )
+    {
+        ArrayList<WADDirectoryEntry> frames = new ArrayList<WADDirectoryEntry>();
+        
+        for ( WADDirectoryEntry entry2 : wadDir.values() )
+        {
+            if ( entry2.fileName.substring( 2 ).equalsIgnoreCase( entry.fileName.substring( 2 ) ) && ( entry2.fileName.charAt( 1 ) != entry.fileName.charAt( 1 ) ) )
+            {
+                frames.add( entry2 );
+            }
+        }
+        
+        return ( frames );
+    }
+    
+    private final void submitDecode( String resName, WADDirectoryEntry entry, AppearanceFactory appFactory, ThreadPoolExecutor workers )
+    {
+        final String key = resName.toLowerCase();
+        
+        synchronized ( pendingTextures )
+        {
+            PendingMipTex pending = pendingTextures.get( key );
+            if ( pending != null )
             {
-                offsets[i] = Integer.reverseBytes( din.readInt() );
-                //System.out.println( offsets[i] );
+                pending.remainingReads++;
+                
+                return;
             }
             
-            int imgDataSize0 = offsets[1] - offsets[0];
-            int imgDataSize = imgDataSize0;
-            imgDataSize0 = imgDataSize0 >> 2;
-            imgDataSize += imgDataSize0;
-            imgDataSize0 = imgDataSize0 >> 2;
-            imgDataSize += imgDataSize0;
-            imgDataSize0 = imgDataSize0 >> 2;
-            imgDataSize += imgDataSize0;
+            final DecodedMipTex mipTex;
+            try
+            {
+                mipTex = prepareMipTex( resName, entry, appFactory );
+            }
+            catch ( IOException e )
+            {
+                // will be reported by readTexture()
+                return;
+            }
             
-            byte[] imgData = new byte[ imgDataSize ];
-            din.read( imgData );
+            final ByteBuffer[] targets = getDecodeTargets( mipTex );
             
-            /*
-             * Read the palette first...
-             */
-            int paletteSize = StreamUtils.readSwappedShort( din );
-            byte[][] palette = new byte[paletteSize][];
-            for ( int i = 0; i < paletteSize; i++ )
+            pending = new PendingMipTex();
+            pending.remainingReads = 1;
+            pending.future = workers.submit( LoadMetrics.current().bind( new Callable<DecodedMipTex>()
             {
-                palette[i] = new byte[] { (byte)in.read(), (byte)in.read(), (byte)in.read() };
-            }
-            din.close();
+                public DecodedMipTex call() throws IOException
+                {
+                    decodeMipTex( mipTex, targets );
+                    
+                    return ( mipTex );
+                }
+            } ) );
             
-            boolean isAnimatedTexture = resName.startsWith( "+" );
-            boolean isTransparentTexture = resName.startsWith( "{" );
-            boolean isGlassTexture = resName.startsWith( "glass" );
-            boolean isSkyTexture = resName.startsWith( "sky" );
-            boolean isSpecialTexture = resName.startsWith( "clip" ) || resName.startsWith( "origin" ) || resName.startsWith( "aatrigger" );
+            pendingTextures.put( key, pending );
+        }
+    }
+    
+    /**
+     * Starts decoding the given miptex resources on a pool of worker threads.
+     * The texture images are created by this method and filled by the workers.
+     * {@link #readTexture(String, AppearanceFactory)} and
+     * {@link #readSkyTextures(String, AppearanceFactory, URL, BSPEntity[])}
+     * wait for the texture they read and then only create the texture object.<br>
+     * Each given name is read once. Names, that are given multiple times, and the frames of
+     * animated textures are decoded once and copied for each further read.<br>
+     * Unknown resources are ignored. Resources, that fail to decode, are
+     * reported with an exception, when they are read.
+     * 
+     * @param resNames
+     * @param appFactory
+     */
+    public final void decodeTextures( String[] resNames, AppearanceFactory appFactory )
+    {
+        if ( magicNumber != MAGIC_NUMBER_WAD3 )
+            return;
+        
+        final ThreadPoolExecutor workers = decodeWorkers.getExecutor();
+        
+        for ( int i = 0; i < resNames.length; i++ )
+        {
+            final String resName = resNames[i];
+            final WADDirectoryEntry entry = wadDir.get( resName.toLowerCase() );
             
-            din = new DataInputStream( new ByteArrayInputStream( imgData ) );
+            if ( entry == null )
+                continue;
             
-            int numMipmaps = isSkyTexture ? 1 : 4;
-            AbstractTextureImage[] mipmaps = new AbstractTextureImage[ numMipmaps ];
+            submitDecode( resName, entry, appFactory, workers );
             
-            for ( int i = 0; i < numMipmaps; i++ )
+            if ( resName.startsWith( "+" ) )
             {
-                //System.out.println( width + ", " + height );
+                ArrayList<WADDirectoryEntry> frames = getAnimationFrames( entry );
                 
-                if ( isTransparentTexture || isGlassTexture || isSpecialTexture )
-                    mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGBA, orgWidth, orgHeight, width, height );
-                else
-                    mipmaps[i] = appFactory.createTextureImage( TextureImageFormat.RGB, orgWidth, orgHeight, width, height );
-                ByteBuffer bb = mipmaps[i].getDataBuffer();
-                
-                byte[] pixelData = null;
-                if ( ( orgWidth != width ) || ( orgHeight != height ) )
+                for ( int j = 0; j < frames.size(); j++ )
                 {
-                    pixelData = new byte[ orgWidth * orgHeight * mipmaps[i].getPixelSize() ];
+                    submitDecode( frames.get( j ).fileName, frames.get( j ), appFactory, workers );
+                }
+            }
+        }
+    }
+    
+    /**
+     * Takes the miptex decoded by {@link #decodeTextures(String[], AppearanceFactory)}
+     * or decodes it now, if it hasn't been submitted.
+     */
+    private final DecodedMipTex takeMipTex( String resName, WADDirectoryEntry entry, AppearanceFactory appFactory ) throws IOException
+    {
+        final String key = resName.toLowerCase();
+        final PendingMipTex pending;
+        final boolean firstRead;
+        
+        synchronized ( pendingTextures )
+        {
+            pending = pendingTextures.get( key );
+            
+            if ( pending != null )
+            {
+                // The last read releases the entry.
+                if ( --pending.remainingReads == 0 )
+                {
+                    pendingTextures.remove( key );
                 }
                 
-                if ( isTransparentTexture )
-                    readTransparentTexture( din, palette, orgWidth, orgHeight, width, height, bb, pixelData );
-                else if ( isGlassTexture )
-                    readGlassTexture( din, palette, orgWidth, orgHeight, width, height, bb, pixelData );
-                else if ( isSkyTexture )
-                    readRegularTexture( din, palette, orgWidth, orgHeight, width, height, false, bb, pixelData );
-                else if ( isSpecialTexture )
-                    readSpecialTexture( din, palette, orgWidth, orgHeight, width, height, bb, pixelData );
-                else
-                    readRegularTexture( din, palette, orgWidth, orgHeight, width, height, true, bb, pixelData );
-                
-                bb.position( 0 );
-                if ( mipmaps[i].getFormat().hasAlpha() )
-                    bb.limit( width * height * 4 );
-                else
-                    bb.limit( width * height * 3 );
-                
-                orgWidth = orgWidth >> 1;
-                orgHeight = orgHeight >> 1;
-                width = width >> 1;
-                height = height >> 1;
+                firstRead = !pending.consumed;
+                pending.consumed = true;
             }
+            else
+            {
+                firstRead = true;
+            }
+        }
+        
+        if ( pending == null )
+        {
+            DecodedMipTex mipTex = prepareMipTex( resName, entry, appFactory );
+            decodeMipTex( mipTex, getDecodeTargets( mipTex ) );
+            
+            return ( mipTex );
+        }
+        
+        DecodedMipTex mipTex;
+        try
+        {
+            mipTex = pending.future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            
+            throw new InterruptedIOException( "Interrupted while decoding \"" + resName + "\"." );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
             
-            din.close();
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            
+            IOException ioe = new IOException( "Failed to decode \"" + resName + "\"." );
+            ioe.initCause( cause );
+            
+            throw ioe;
+        }
+        
+        // Only the first read gets the decoded images themselves. The others get copies.
+        if ( !firstRead )
+            return ( copyMipTex( mipTex, appFactory ) );
+        
+        return ( mipTex );
+    }
+    
+    private final AbstractTexture[] readTexture( String resName, AppearanceFactory appFactory, URL baseURL, BSPEntity[] entities, boolean ignoreAnimations ) throws IOException
+    {
+        if ( magicNumber == MAGIC_NUMBER_WAD3 )
+        {
+            WADDirectoryEntry entry = wadDir.get( resName.toLowerCase() );
+            
+            if ( entry == null )
+            {
+                throw new IOException( "The resource was not found in this WAD file." );
+            }
+            
+            DecodedMipTex mipTex = takeMipTex( resName, entry, appFactory );
+            
+            byte[] nameBytes = mipTex.nameBytes;
+            
+            boolean isAnimatedTexture = resName.startsWith( "+" );
+            boolean isSkyTexture = resName.startsWith( "sky" );
+            
+            AbstractTextureImage[] mipmaps = mipTex.mipmaps;
             
             AbstractTexture texture = createNewTexture( mipmaps[0], nameBytes, appFactory, isSkyTexture );
             
@@ -770,22 +1175,18 @@ public class WADFile
                     numFrames = 1;
                 }
                 
-                for ( WADDirectoryEntry entry2 : wadDir.values() )
+                ArrayList<WADDirectoryEntry> frames = getAnimationFrames( entry );
+                for ( int i = 0; i < frames.size(); i++ )
                 {
-                    if ( entry2.fileName.substring( 2 ).equalsIgnoreCase( entry.fileName.substring( 2 ) ) )
+                    WADDirectoryEntry entry2 = frames.get( i );
+                    
+                    if ( ( entry2.fileName.charAt( 1 ) == 'A' ) || ( entry2.fileName.charAt( 1 ) == 'a' ) )
                     {
-                        if ( entry2.fileName.charAt( 1 ) == entry.fileName.charAt( 1 ) )
-                        {
-                            // we already have this frame collected!
-                        }
-                        else if ( ( entry2.fileName.charAt( 1 ) == 'A' ) || ( entry2.fileName.charAt( 1 ) == 'a' ) )
-                        {
-                            offFrame = readTexture( entry2.fileName, appFactory, baseURL, entities, true )[0];
-                        }
-                        else
-                        {
-                            animFrames[numFrames++] = readTexture( entry2.fileName, appFactory, baseURL, entities, true )[0];
-                        }
+                        offFrame = readTexture( entry2.fileName, appFactory, baseURL, entities, true )[0];
+                    }
+                    else
+                    {
+                        animFrames[numFrames++] = readTexture( entry2.fileName, appFactory, baseURL, entities, true )[0];
                     }
                 }
                 
@@ -820,14 +1221,12 @@ public class WADFile
         return ( readTexture( resName, appFactory, baseURL, entities, false ) );
     }
     
-    private HashMap<String, WADDirectoryEntry> readWADDirectory( URL wadFile ) throws IOException, IncorrectFormatException, ParsingException
+    private HashMap<String, WADDirectoryEntry> readWADDirectory( ByteBuffer in ) throws IOException, IncorrectFormatException, ParsingException
     {      
         try
         {
-            DataInputStream in = new DataInputStream( new BufferedInputStream( wadFile.openStream() ) );
-            
             // read WAD header
-            int magicNumber = in.readInt();
+            int magicNumber = Integer.reverseBytes( in.getInt( 0 ) );
             if ( magicNumber != MAGIC_NUMBER_WAD3 )
             {
                 throw new IncorrectFormatException( "This is not a WAD3 file!" );
@@ -836,8 +1235,8 @@ public class WADFile
             this.magicNumber = magicNumber;
             this.wadType = "WAD3";
             
-            int lumpCount = Integer.reverseBytes( in.readInt() ); // - Number of files
-            int dirOffset = Integer.reverseBytes( in.readInt() ); // - Directory offset
+            int lumpCount = in.getInt( 4 ); // - Number of files
+            int dirOffset = in.getInt( 8 ); // - Directory offset
             
             /*
             System.out.println( "WadFile: " + wadFile );
@@ -848,7 +1247,8 @@ public class WADFile
             HashMap<String, WADDirectoryEntry> wadDir = new HashMap<String, WADDirectoryEntry>( lumpCount );
             
             // read Lump Dir
-            in.skipBytes( dirOffset - ( 3 * 4 ) );
+            ByteBuffer dir = in.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+            dir.position( dirOffset );
             
             byte[] bytes16 = new byte[ 16 ];
             
@@ -856,15 +1256,15 @@ public class WADFile
             {
                 WADDirectoryEntry entry = new WADDirectoryEntry();
                 
-                entry.offset = Integer.reverseBytes( in.readInt() );
-                entry.compFileSize = Integer.reverseBytes( in.readInt() );
-                entry.uncompFileSize = Integer.reverseBytes( in.readInt() );
+                entry.offset = dir.getInt();
+                entry.compFileSize = dir.getInt();
+                entry.uncompFileSize = dir.getInt();
                 
-                entry.fileType = in.readByte();
-                entry.compType = in.readByte();
-                entry.padding = new byte[] { in.readByte(), in.readByte() };
+                entry.fileType = dir.get();
+                entry.compType = dir.get();
+                entry.padding = new byte[] { dir.get(), dir.get() };
                 
-                in.read( bytes16, 0, 16 );
+                dir.get( bytes16, 0, 16 );
                 entry.fileName = new String( bytes16 ).trim();
                 
                 wadDir.put( entry.fileName.toLowerCase(), entry );
@@ -875,13 +1275,11 @@ public class WADFile
                 //System.out.println( entry );
             }
             
-            in.close();
-            
             return ( wadDir );
         }
-        catch ( IOException ioe )
+        catch ( IncorrectFormatException ife )
         {
-            throw ioe;
+            throw ife;
         }
         catch ( Throwable t )
         {
@@ -908,6 +1306,28 @@ public class WADFile
         this.wadResource = wadResource;
         this.wadFilename = getWADFileSimpleName( wadResource );
         
-        this.wadDir = readWADDirectory( wadResource );
+        final File file = LoaderUtils.getLocalFile( wadResource );
+        
+        if ( file != null )
+        {
+            this.wadBuffer = StreamUtils.mapFile( file ).order( ByteOrder.LITTLE_ENDIAN );
+            this.mapped = true;
+        }
+        else
+        {
+            InputStream in = wadResource.openStream();
+            try
+            {
+                this.wadBuffer = StreamUtils.readFullyToBuffer( in ).order( ByteOrder.LITTLE_ENDIAN );
+            }
+            finally
+            {
+                in.close();
+            }
+            
+            this.mapped = false;
+        }
+        
+        this.wadDir = readWADDirectory( wadBuffer );
     }
 }
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.bsp.lumps;
+
+/**
+ * Holds all faces of a BSP file in primitive arrays (one entry or one
+ * fixed size group of entries per face).
+ * 
+ * @see BSPFace
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class BSPFaceData
+{
+    /**
+     * The number of faces
+     */
+    public final int      count;
+    
+    /**
+     * The index into the texture array
+     */
+    public final int[]    textureID;
+    
+    /**
+     * The index for the effects (or -1 = n/a)
+     */
+    public final int[]    effect;
+    
+    /**
+     * <ul>
+     *     <li>1 = polygon</li>
+     *     <li>2 = patch</li>
+     *     <li>3 = mesh</li>
+     *     <li>4 = billboard</li>
+     * </ul>
+     */
+    public final int[]    type;
+    
+    /**
+     * The index into this face's first vertex
+     */
+    public final int[]    vertexIndex;
+    
+    /**
+     * The number of vertices for this face
+     */
+    public final int[]    numOfVerts;
+    
+    /**
+     * The index into the first meshvertex
+     */
+    public final int[]    meshVertIndex;
+    
+    /**
+     * The number of mesh vertices
+     */
+    public final int[]    numMeshVerts;
+    
+    /**
+     * The texture index for the lightmap
+     */
+    public final int[]    lightmapID;
+    
+    /**
+     * The face's lightmap corner in the image (two per face)
+     */
+    public final int[]    lMapCorner;
+    
+    /**
+     * The size of the lightmap section (two per face)
+     */
+    public final int[]    lMapSize;
+    
+    /**
+     * The 3D origin of lightmap (three per face)
+     */
+    public final float[]  lMapPos;
+    
+    /**
+     * The 3D space for s and t unit vectors (six per face: s, then t)
+     */
+    public final float[]  lMapBitsets;
+    
+    /**
+     * The face normal (three per face)
+     */
+    public final float[]  vNormal;
+    
+    /**
+     * The bezier patch dimensions (two per face)
+     */
+    public final int[]    size;
+    
+    public BSPFaceData( int count )
+    {
+        this.count = count;
+        this.textureID = new int[ count ];
+        this.effect = new int[ count ];
+        this.type = new int[ count ];
+        this.vertexIndex = new int[ count ];
+        this.numOfVerts = new int[ count ];
+        this.meshVertIndex = new int[ count ];
+        this.numMeshVerts = new int[ count ];
+        this.lightmapID = new int[ count ];
+        this.lMapCorner = new int[ count * 2 ];
+        this.lMapSize = new int[ count * 2 ];
+        this.lMapPos = new float[ count * 3 ];
+        this.lMapBitsets = new float[ count * 6 ];
+        this.vNormal = new float[ count * 3 ];
+        this.size = new int[ count * 2 ];
+    }
+}
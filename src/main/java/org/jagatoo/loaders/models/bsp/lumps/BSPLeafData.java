@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.bsp.lumps;
+
+/**
+ * Holds all leafs of a BSP file in primitive arrays (one entry or one
+ * fixed size group of entries per leaf).
+ * 
+ * @see BSPLeaf
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class BSPLeafData
+{
+    /**
+     * The number of leafs
+     */
+    public final int    count;
+    
+    /**
+     * The visibility cluster
+     */
+    public final int[]  cluster;
+    
+    /**
+     * The area portal
+     */
+    public final int[]  area;
+    
+    /**
+     * The bounding box min positions (three per leaf)
+     */
+    public final int[]  mins;
+    
+    /**
+     * The bounding box max positions (three per leaf)
+     */
+    public final int[]  maxs;
+    
+    /**
+     * The first index into the face array
+     */
+    public final int[]  leafFace;
+    
+    /**
+     * The number of faces for this leaf
+     */
+    public final int[]  numOfLeafFaces;
+    
+    /**
+     * The first index for into the brushes
+     */
+    public final int[]  leafBrush;
+    
+    /**
+     * The number of brushes for this leaf
+     */
+    public final int[]  numOfLeafBrushes;
+    
+    public BSPLeafData( int count )
+    {
+        this.count = count;
+        this.cluster = new int[ count ];
+        this.area = new int[ count ];
+        this.mins = new int[ count * 3 ];
+        this.maxs = new int[ count * 3 ];
+        this.leafFace = new int[ count ];
+        this.numOfLeafFaces = new int[ count ];
+        this.leafBrush = new int[ count ];
+        this.numOfLeafBrushes = new int[ count ];
+    }
+}
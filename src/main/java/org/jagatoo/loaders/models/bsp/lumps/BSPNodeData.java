@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.bsp.lumps;
+
+/**
+ * Holds all nodes of a BSP file in primitive arrays (one entry or one
+ * fixed size group of entries per node).
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class BSPNodeData
+{
+    /**
+     * The number of nodes
+     */
+    public final int    count;
+    
+    /**
+     * The index into the planes array
+     */
+    public final int[]  plane;
+    
+    /**
+     * The child index for the front node
+     */
+    public final int[]  front;
+    
+    /**
+     * The child index for the back node
+     */
+    public final int[]  back;
+    
+    /**
+     * The bounding box min positions (three per node).
+     */
+    public final int[]  mins;
+    
+    /**
+     * The bounding box max positions (three per node).
+     */
+    public final int[]  maxs;
+    
+    public BSPNodeData( int count )
+    {
+        this.count = count;
+        this.plane = new int[ count ];
+        this.front = new int[ count ];
+        this.back = new int[ count ];
+        this.mins = new int[ count * 3 ];
+        this.maxs = new int[ count * 3 ];
+    }
+}
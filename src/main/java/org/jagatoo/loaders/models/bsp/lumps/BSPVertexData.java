@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.bsp.lumps;
+
+/**
+ * Holds all vertices of a BSP file in primitive arrays (one fixed size
+ * group of entries per vertex).<br>
+ * Half-Life maps only provide positions. The other arrays are null then.
+ * 
+ * @see BSPVertex
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class BSPVertexData
+{
+    /**
+     * The number of vertices
+     */
+    public final int      count;
+    
+    /**
+     * Three floats per vertex
+     */
+    public final float[]  positions;
+    
+    /**
+     * Two floats per vertex
+     */
+    public final float[]  texCoords;
+    
+    /**
+     * Two floats per vertex
+     */
+    public final float[]  lightTexCoords;
+    
+    /**
+     * Three floats per vertex
+     */
+    public final float[]  normals;
+    
+    /**
+     * Four floats per vertex (RGBA)
+     */
+    public final float[]  colors;
+    
+    /**
+     * Copies the index'th vertex into the given {@link BSPVertex}.
+     * 
+     * @param index
+     * @param vertex
+     * 
+     * @return the passed vertex.
+     */
+    public BSPVertex get( int index, BSPVertex vertex )
+    {
+        vertex.position.setX( positions[ index * 3 + 0 ] );
+        vertex.position.setY( positions[ index * 3 + 1 ] );
+        vertex.position.setZ( positions[ index * 3 + 2 ] );
+        
+        if ( texCoords != null )
+        {
+            vertex.texCoord.setS( texCoords[ index * 2 + 0 ] );
+            vertex.texCoord.setT( texCoords[ index * 2 + 1 ] );
+            
+            vertex.lightTexCoord.setS( lightTexCoords[ index * 2 + 0 ] );
+            vertex.lightTexCoord.setT( lightTexCoords[ index * 2 + 1 ] );
+            
+            vertex.normal.setX( normals[ index * 3 + 0 ] );
+            vertex.normal.setY( normals[ index * 3 + 1 ] );
+            vertex.normal.setZ( normals[ index * 3 + 2 ] );
+            
+            vertex.color.setRed( colors[ index * 4 + 0 ] );
+            vertex.color.setGreen( colors[ index * 4 + 1 ] );
+            vertex.color.setBlue( colors[ index * 4 + 2 ] );
+            vertex.color.setAlpha( colors[ index * 4 + 3 ] );
+        }
+        
+        return ( vertex );
+    }
+    
+    /**
+     * Copies the given {@link BSPVertex} into the index'th vertex.
+     * 
+     * @param index
+     * @param vertex
+     */
+    public void set( int index, BSPVertex vertex )
+    {
+        positions[ index * 3 + 0 ] = vertex.position.getX();
+        positions[ index * 3 + 1 ] = vertex.position.getY();
+        positions[ index * 3 + 2 ] = vertex.position.getZ();
+        
+        if ( texCoords != null )
+        {
+            texCoords[ index * 2 + 0 ] = vertex.texCoord.getS();
+            texCoords[ index * 2 + 1 ] = vertex.texCoord.getT();
+            
+            lightTexCoords[ index * 2 + 0 ] = vertex.lightTexCoord.getS();
+            lightTexCoords[ index * 2 + 1 ] = vertex.lightTexCoord.getT();
+            
+            normals[ index * 3 + 0 ] = vertex.normal.getX();
+            normals[ index * 3 + 1 ] = vertex.normal.getY();
+            normals[ index * 3 + 2 ] = vertex.normal.getZ();
+            
+            colors[ index * 4 + 0 ] = vertex.color.getRed();
+            colors[ index * 4 + 1 ] = vertex.color.getGreen();
+            colors[ index * 4 + 2 ] = vertex.color.getBlue();
+            colors[ index * 4 + 3 ] = vertex.color.getAlpha();
+        }
+    }
+    
+    public BSPVertexData( int count, boolean positionsOnly )
+    {
+        this.count = count;
+        this.positions = new float[ count * 3 ];
+        
+        if ( positionsOnly )
+        {
+            this.texCoords = null;
+            this.lightTexCoords = null;
+            this.normals = null;
+            this.colors = null;
+        }
+        else
+        {
+            this.texCoords = new float[ count * 2 ];
+            this.lightTexCoords = new float[ count * 2 ];
+            this.normals = new float[ count * 3 ];
+            this.colors = new float[ count * 4 ];
+        }
+    }
+}
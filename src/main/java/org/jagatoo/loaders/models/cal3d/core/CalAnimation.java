@@ -29,6 +29,8 @@
  */
 package org.jagatoo.loaders.models.cal3d.core;
 
+import java.util.Arrays;
+
 import org.openmali.vecmath2.Quaternion4f;
 import org.openmali.vecmath2.Vector3f;
 
@@ -68,6 +70,9 @@ public class CalAnimation {
     Vector3f rootDisplacement;
     Quaternion4f rootRotation;
     
+    /** The keyframe cursors of this instance, one per core track. */
+    private int[] trackCursors;
+    
     /*****************************************************************************/
     /** Constructs the animation instance.
      *
@@ -133,6 +138,26 @@ public class CalAnimation {
     }
     
     
+    /*****************************************************************************/
+    /** Returns the keyframe cursors.
+     *
+     * This function returns the keyframe cursors of the animation instance, one
+     * per core track of the core animation, to be passed to
+     * CalCoreTrack.getState(float, int, Vector3f, Quaternion4f).
+     *
+     * @return The cursor array (-1 for tracks, that have not been sampled yet).
+     *****************************************************************************/
+    
+    int[] getTrackCursors() {
+        int numTracks = coreAnimation.getListCoreTrack().size();
+        if ((trackCursors == null) || (trackCursors.length != numTracks)) {
+            trackCursors = new int[numTracks];
+            Arrays.fill(trackCursors, -1);
+        }
+        return trackCursors;
+    }
+    
+    
     /*****************************************************************************/
     /** Returns the type.
      *
@@ -62,6 +62,8 @@ public class CalCoreSubmesh {
     protected int coreMaterialThreadId;
     protected int lodCount;
     
+    private volatile SkinningData skinningData = null;
+    
     
     /*****************************************************************************/
     /** Constructs the core submesh instance.
@@ -228,6 +230,7 @@ public class CalCoreSubmesh {
         vectorVertexInfo = new VertexInfo [vertexCount];
         vertexPositions = new Vector3fBuffer(vertexCount);
         vertexNormals = new Vector3fBuffer(vertexCount);
+        skinningData = null;
         
         textureCoordinateBuffers = new TexCoord2fBuffer [textureCoordinateCount];
         
@@ -349,6 +352,27 @@ public class CalCoreSubmesh {
         vectorVertexInfo[vertexId] = vertex;
         vertexPositions.put(vertexId, position);
         vertexNormals.put(vertexId, normal);
+        skinningData = null;
+    }
+    
+    
+    /*****************************************************************************/
+    /** Returns the vertex data packed for skinning.
+     *
+     * This function returns the positions, normals and influences of all
+     * vertices in flat arrays. They are built on first use and rebuilt after
+     * the vertices have been modified.
+     *
+     * @return The packed skinning data.
+     *****************************************************************************/
+    
+    SkinningData getSkinningData() {
+        SkinningData data = skinningData;
+        if (data == null) {
+            data = new SkinningData(vectorVertexInfo, vertexPositions, vertexNormals);
+            skinningData = data;
+        }
+        return data;
     }
     
     /*****************************************************************************/
@@ -529,6 +553,7 @@ public class CalCoreSubmesh {
     public void scale(float factor) {
         // rescale all vertices
         vertexPositions.scale(factor, factor, factor);
+        skinningData = null;
         
         if(vectorSpring != null) {
             // There is a problem when we resize and that there is
@@ -588,6 +613,54 @@ public class CalCoreSubmesh {
     };
     
     
+    /// The core submesh vertices packed into flat arrays for skinning.
+    static final class SkinningData {
+        /// x, y, z per vertex
+        final float [] positions;
+        /// x, y, z per vertex
+        final float [] normals;
+        /// the influences of vertex i are [influenceOffsets[i], influenceOffsets[i + 1])
+        final int [] influenceOffsets;
+        final int [] influenceBoneIds;
+        final float [] influenceWeights;
+        
+        SkinningData(VertexInfo [] vertices, Vector3fBuffer vertexPositions, Vector3fBuffer vertexNormals) {
+            int vertexCount = vertices.length;
+            
+            positions = new float [vertexCount * 3];
+            normals = new float [vertexCount * 3];
+            influenceOffsets = new int [vertexCount + 1];
+            
+            int influenceCount = 0;
+            for (int i = 0; i < vertexCount; i++) {
+                influenceOffsets[i] = influenceCount;
+                if (vertices[i] != null)
+                    influenceCount += vertices[i].influenceBoneIds.length;
+            }
+            influenceOffsets[vertexCount] = influenceCount;
+            
+            influenceBoneIds = new int [influenceCount];
+            influenceWeights = new float [influenceCount];
+            
+            for (int i = 0; i < vertexCount; i++) {
+                positions[i * 3 + 0] = vertexPositions.getX(i);
+                positions[i * 3 + 1] = vertexPositions.getY(i);
+                positions[i * 3 + 2] = vertexPositions.getZ(i);
+                
+                normals[i * 3 + 0] = vertexNormals.getX(i);
+                normals[i * 3 + 1] = vertexNormals.getY(i);
+                normals[i * 3 + 2] = vertexNormals.getZ(i);
+                
+                if (vertices[i] != null) {
+                    int n = vertices[i].influenceBoneIds.length;
+                    System.arraycopy(vertices[i].influenceBoneIds, 0, influenceBoneIds, influenceOffsets[i], n);
+                    System.arraycopy(vertices[i].influenceWeights, 0, influenceWeights, influenceOffsets[i], n);
+                }
+            }
+        }
+    };
+    
+    
     /// The core submesh Face.
     public static class Face {
         public int [] vertexId = new int [3];
@@ -30,7 +30,6 @@
 package org.jagatoo.loaders.models.cal3d.core;
 
 import java.util.Comparator;
-import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -60,6 +59,48 @@ public class CalCoreTrack {
 		public boolean equals(Object o1, Object o2) { return compare(o1, o2) == 0; }
     }); // sorted by time
     
+    /*****************************************************************************/
+    /** The keyframes packed into parallel primitive arrays.
+     *
+     * This is built lazily from the keyframe set and dropped whenever the set
+     * may have changed. Instances are immutable, so a track can be shared by
+     * models animated on different threads.
+     *****************************************************************************/
+    
+    protected static final class PackedKeyframes {
+        final int numKeyframes;
+        final float[] times;
+        final float[] translations; // x, y, z per keyframe
+        final float[] rotations; // a, b, c, d per keyframe
+        
+        PackedKeyframes(SortedSet<CalCoreKeyframe> keyframes) {
+            numKeyframes = keyframes.size();
+            times = new float[numKeyframes];
+            translations = new float[numKeyframes * 3];
+            rotations = new float[numKeyframes * 4];
+            
+            int i = 0;
+            for (CalCoreKeyframe keyframe : keyframes) {
+                times[i] = keyframe.getTime();
+                
+                Vector3f t = keyframe.getTranslation();
+                translations[i * 3 + 0] = t.getX();
+                translations[i * 3 + 1] = t.getY();
+                translations[i * 3 + 2] = t.getZ();
+                
+                Quaternion4f r = keyframe.getRotation();
+                rotations[i * 4 + 0] = r.getA();
+                rotations[i * 4 + 1] = r.getB();
+                rotations[i * 4 + 2] = r.getC();
+                rotations[i * 4 + 3] = r.getD();
+                
+                i++;
+            }
+        }
+    }
+    
+    private volatile PackedKeyframes packedKeyframes = null;
+    
     /*****************************************************************************/
     /** Constructs the core track instance.
      *
@@ -85,6 +126,7 @@ public class CalCoreTrack {
     
     public void addCoreKeyframe(CalCoreKeyframe coreKeyframe) {
         coreKeyframes.add(coreKeyframe);
+        packedKeyframes = null;
     }
     
     
@@ -110,14 +152,32 @@ public class CalCoreTrack {
      * This function returns the map that contains all core keyframes of the core
      * track instance.
      *
+     * Since the returned set may be modified, the packed keyframe arrays are
+     * rebuilt on the next call to getState().
+     *
      * @return A reference to the core keyframe map.
      *****************************************************************************/
     
     public SortedSet<CalCoreKeyframe> getCoreKeyFrames() {
+        packedKeyframes = null;
         return coreKeyframes;
     }
     
     
+    /*****************************************************************************/
+    /** Returns the packed keyframes, building them if necessary.
+     *****************************************************************************/
+    
+    protected PackedKeyframes getPackedKeyframes() {
+        PackedKeyframes packed = packedKeyframes;
+        if (packed == null) {
+            packed = new PackedKeyframes(coreKeyframes);
+            packedKeyframes = packed;
+        }
+        return packed;
+    }
+    
+    
     /*****************************************************************************/
     /** Returns a specified state.
      *
@@ -131,55 +191,161 @@ public class CalCoreTrack {
      *                 with the specified state.
      *****************************************************************************/
     
-    @SuppressWarnings("unchecked")
-	public void getState(float time, Vector3f translation, Quaternion4f rotation) {
-        // This is rewritten from Cal3d for java.util.SortedMap semantics
+    public void getState(float time, Vector3f translation, Quaternion4f rotation) {
+        getState(time, -1, translation, rotation);
+    }
+    
+    
+    /*****************************************************************************/
+    /** Returns a specified state using a keyframe cursor.
+     *
+     * This function returns the state (translation and rotation of the core bone)
+     * for the specified time. The cursor is the index of the first keyframe at or
+     * after the time of the previous call. For sequential playback the matching
+     * keyframe pair is found in constant time, otherwise it falls back to a binary
+     * search. No objects are allocated.
+     *
+     * @param time The time in seconds at which the state should be returned.
+     * @param cursor The cursor returned by the previous call for this track and
+     *               animation instance or -1, if there is none.
+     * @param translation A reference to the translation reference that will be
+     *                    filled with the specified state.
+     * @param rotation A reference to the rotation reference that will be filled
+     *                 with the specified state.
+     *
+     * @return The cursor to pass to the next call.
+     *****************************************************************************/
+    
+    public int getState(float time, int cursor, Vector3f translation, Quaternion4f rotation) {
+        final PackedKeyframes packed = getPackedKeyframes();
+        final int n = packed.numKeyframes;
         
-        // partition the keyframe map before the requested one
-        SortedSet<CalCoreKeyframe> setCoreKeyframeBefore = ((SortedSet) coreKeyframes).headSet(new Float(time));
+        if (n == 0) {
+            System.out.println("empty cal core track");
+            return -1;
+        }
         
-        // partition the keyframe map after the requested time
-        SortedSet<CalCoreKeyframe> setCoreKeyframeAfter = ((SortedSet) coreKeyframes).tailSet(new Float(time));
+        // find the first keyframe at or after the requested time
+        final int after = findKeyframeAfter(packed.times, n, time, cursor);
         
         // check if the time is after the last keyframe
-        if (setCoreKeyframeAfter.isEmpty() && !setCoreKeyframeBefore.isEmpty()) {
-            // return the last keyframe state
-            CalCoreKeyframe coreKeyframeBefore = setCoreKeyframeBefore.last();
-            rotation.set(coreKeyframeBefore.getRotation());
-            translation.set(coreKeyframeBefore.getTranslation());
-            
-            return;
+        if (after == n) {
+            setKeyframeState(packed, n - 1, translation, rotation);
+            return after;
         }
         
         // check if the time is before the first keyframe
-        if (setCoreKeyframeBefore.isEmpty() && !setCoreKeyframeAfter.isEmpty()) {
-            // return the first keyframe state
-            CalCoreKeyframe coreKeyframeAfter = setCoreKeyframeAfter.first();
-            rotation.set(coreKeyframeAfter.getRotation());
-            translation.set(coreKeyframeAfter.getTranslation());
-            
-            return;
+        if (after == 0) {
+            setKeyframeState(packed, 0, translation, rotation);
+            return after;
         }
         
-        try {
-        CalCoreKeyframe coreKeyframeBefore = setCoreKeyframeBefore.last();
-        CalCoreKeyframe coreKeyframeAfter = setCoreKeyframeAfter.first();
+        final int before = after - 1;
         
         // calculate the blending factor between the two keyframe states
-        float blendFactor = (time - coreKeyframeBefore.getTime()) / (coreKeyframeAfter.getTime() - coreKeyframeBefore.getTime());
+        final float[] times = packed.times;
+        final float blendFactor = (time - times[before]) / (times[after] - times[before]);
         
         // blend between the two keyframes
-        translation.set(coreKeyframeBefore.getTranslation());
-        translation.interpolate(coreKeyframeAfter.getTranslation(), blendFactor);
-        
-        rotation.set(coreKeyframeBefore.getRotation());
-        rotation.interpolate(coreKeyframeAfter.getRotation(), blendFactor);
-        //QuatInterpolator.interpolate(rotation,coreKeyframeAfter.getRotation(), blendFactor);
-        } catch (NoSuchElementException e) {
-        	System.out.println("empty cal core track");
+        final float[] t = packed.translations;
+        final int t0 = before * 3;
+        final int t1 = after * 3;
+        translation.set((1.0f - blendFactor) * t[t0 + 0] + blendFactor * t[t1 + 0],
+                        (1.0f - blendFactor) * t[t0 + 1] + blendFactor * t[t1 + 1],
+                        (1.0f - blendFactor) * t[t0 + 2] + blendFactor * t[t1 + 2]);
+        
+        slerp(packed.rotations, before * 4, after * 4, blendFactor, rotation);
+        
+        return after;
+    }
+    
+    
+    /*****************************************************************************/
+    /** Finds the index of the first keyframe with a time at or after the given
+     * time (n, if there is none).
+     *
+     * The cursor and its successor are tried first, since that is where the
+     * next keyframe is during playback.
+     *****************************************************************************/
+    
+    private static int findKeyframeAfter(float[] times, int n, float time, int cursor) {
+        if ((cursor >= 0) && (cursor <= n)) {
+            if (isKeyframeAfter(times, n, time, cursor))
+                return cursor;
+            if ((cursor < n) && isKeyframeAfter(times, n, time, cursor + 1))
+                return cursor + 1;
+        }
+        
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+                low = mid + 1;
+            else
+                high = mid;
         }
+        
+        return low;
+    }
+    
+    private static boolean isKeyframeAfter(float[] times, int n, float time, int index) {
+        return ((index == 0) || (times[index - 1] < time)) && ((index == n) || (times[index] >= time));
     }
     
+    private static void setKeyframeState(PackedKeyframes packed, int index, Vector3f translation, Quaternion4f rotation) {
+        final float[] t = packed.translations;
+        translation.set(t[index * 3 + 0], t[index * 3 + 1], t[index * 3 + 2]);
+        
+        final float[] r = packed.rotations;
+        rotation.setA(r[index * 4 + 0]);
+        rotation.setB(r[index * 4 + 1]);
+        rotation.setC(r[index * 4 + 2]);
+        rotation.setD(r[index * 4 + 3]);
+    }
+    
+    /*****************************************************************************/
+    /** Spherical linear interpolation between two packed rotations.
+     *
+     * This is the same algorithm as Quaternion4f.interpolate(), but leaves the
+     * keyframe data untouched when the second quaternion has to be negated.
+     *****************************************************************************/
+    
+    private static void slerp(float[] r, int i0, int i1, float alpha, Quaternion4f result) {
+        double a1 = r[i1 + 0];
+        double b1 = r[i1 + 1];
+        double c1 = r[i1 + 2];
+        double d1 = r[i1 + 3];
+        
+        double dot = r[i0 + 0] * a1 + r[i0 + 1] * b1 + r[i0 + 2] * c1 + r[i0 + 3] * d1;
+        
+        if (dot < 0.0) {
+            a1 = -a1;
+            b1 = -b1;
+            c1 = -c1;
+            d1 = -d1;
+            dot = -dot;
+        }
+        
+        final double s0, s1;
+        if ((1.0 - dot) > SLERP_EPSILON) {
+            final double om = Math.acos(dot);
+            final double sinom = Math.sin(om);
+            s0 = Math.sin((1.0 - alpha) * om) / sinom;
+            s1 = Math.sin(alpha * om) / sinom;
+        } else {
+            s0 = 1.0 - alpha;
+            s1 = alpha;
+        }
+        
+        result.setA((float)(s0 * r[i0 + 0] + s1 * a1));
+        result.setB((float)(s0 * r[i0 + 1] + s1 * b1));
+        result.setC((float)(s0 * r[i0 + 2] + s1 * c1));
+        result.setD((float)(s0 * r[i0 + 3] + s1 * d1));
+    }
+    
+    private static final double SLERP_EPSILON = 0.000001;
+    
     
     /*****************************************************************************/
     /** Sets the ID of the core bone.
@@ -211,6 +377,7 @@ public class CalCoreTrack {
         for (CalCoreKeyframe keyFrame : coreKeyframes) {
             keyFrame.getTranslation().scale(factor);
         }
+        packedKeyframes = null;
     }
 }
 
@@ -44,6 +44,7 @@ import org.openmali.vecmath2.Quaternion4f;
 import org.openmali.vecmath2.Vector2f;
 import org.openmali.vecmath2.Vector3f;
 
+import org.jagatoo.loaders.LoadMetrics;
 import org.jagatoo.util.streams.LittleEndianDataInputStream;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -108,7 +109,7 @@ public class CalLoader {
     
     public static CalCoreAnimation loadCoreAnimation(URL resource, String name) throws IOException {
         
-        InputStream in = resource.openStream();
+        InputStream in = LoadMetrics.current().wrap( resource.openStream() );
         
         if (resource.toExternalForm().toLowerCase().endsWith(ANIMATION_XMLFILE_EXTENSION)) {
             return loadXmlCoreAnimation(in);
@@ -329,7 +330,7 @@ public class CalLoader {
     
     public static CalCoreMaterial loadCoreMaterial(URL resource) throws IOException {
         
-        InputStream in = resource.openStream();
+        InputStream in = LoadMetrics.current().wrap( resource.openStream() );
         
         if (resource.toExternalForm().toLowerCase().endsWith(MATERIAL_XMLFILE_EXTENSION)) {
             return loadXmlCoreMaterial(in);
@@ -443,7 +444,7 @@ public class CalLoader {
     
     public static CalCoreMesh loadCoreMesh(URL resource) throws IOException {
         
-        InputStream in = resource.openStream();
+        InputStream in = LoadMetrics.current().wrap( resource.openStream() );
         
         if (resource.toExternalForm().toLowerCase().endsWith(MESH_XMLFILE_EXTENSION)) {
             return loadXmlCoreMesh(in);
@@ -509,7 +510,7 @@ public class CalLoader {
     
     public static CalCoreSkeleton loadCoreSkeleton(URL resource) throws IOException {
 
-        InputStream in = resource.openStream();
+        InputStream in = LoadMetrics.current().wrap( resource.openStream() );
         
         if (resource.toExternalForm().toLowerCase().endsWith(SKELETON_XMLFILE_EXTENSION)) {
             return loadXmlCoreSkeleton(in);
@@ -498,12 +498,16 @@ public class CalMixer {
             CalCoreAnimation coreAnimation = animationAction.getCoreAnimation();
             
             // loop through all core tracks of the core animation
-            for (CalCoreTrack coreTrack : coreAnimation.getListCoreTrack()) {
+            List<CalCoreTrack> listCoreTrack = coreAnimation.getListCoreTrack();
+            int[] trackCursors = animationAction.getTrackCursors();
+            for (int i = 0; i < listCoreTrack.size(); i++) {
+                CalCoreTrack coreTrack = listCoreTrack.get(i);
+                
                 // get the appropriate bone of the track
                 CalBone bone = vectorBone [coreTrack.getCoreBoneId()];
                 
                 // get the current translation and rotation
-                coreTrack.getState(animationAction.getTime(), translation, rotation);
+                trackCursors[i] = coreTrack.getState(animationAction.getTime(), trackCursors[i], translation, rotation);
                 
                 // blend the bone state with the new state
                 bone.blendState(animationAction.getWeight(), translation, rotation);
@@ -527,12 +531,16 @@ public class CalMixer {
             }
             
             // loop through all core tracks of the core animation
-            for(CalCoreTrack coreTrack : coreAnimation.getListCoreTrack()) {
+            List<CalCoreTrack> listCoreTrack = coreAnimation.getListCoreTrack();
+            int[] trackCursors = animationCycle.getTrackCursors();
+            for (int i = 0; i < listCoreTrack.size(); i++) {
+                CalCoreTrack coreTrack = listCoreTrack.get(i);
+                
                 // get the appropriate bone of the track
                 CalBone bone = vectorBone [coreTrack.getCoreBoneId()];
                 
                 // get the current translation and rotation
-                coreTrack.getState(animationTime, translation, rotation);
+                trackCursors[i] = coreTrack.getState(animationTime, trackCursors[i], translation, rotation);
                 
                 if (coreTrack.getCoreBoneId() == 0) {
                     if (animationCycle.rootDisplacement != null){
@@ -555,7 +563,11 @@ public class CalMixer {
         
         for(CalAnimationRelative animation : additiveAnimationCycles) {
             // loop through all core tracks of the core animation
-            for(CalCoreTrack coreTrack : animation.getCoreAnimation().getListCoreTrack()) {
+            List<CalCoreTrack> listCoreTrack = animation.getCoreAnimation().getListCoreTrack();
+            int[] trackCursors = animation.getTrackCursors();
+            for (int i = 0; i < listCoreTrack.size(); i++) {
+                CalCoreTrack coreTrack = listCoreTrack.get(i);
+                
                 // get the appropriate bone of the track
                 CalBone bone = vectorBone [coreTrack.getCoreBoneId()];
                 
@@ -565,7 +577,7 @@ public class CalMixer {
                 animation.getBaseState(coreTrack, translation0, rotation0);
                 
                 // get the current translation and rotation
-                coreTrack.getState(animation.getTime(), translation, rotation);
+                trackCursors[i] = coreTrack.getState(animation.getTime(), trackCursors[i], translation, rotation);
                 
                 // find the deltas - for now (just in case) set translation to (0,0,0)
                 translation.set(0, 0, 0);
@@ -29,23 +29,83 @@
  */
 package org.jagatoo.loaders.models.cal3d.core;
 
+import org.openmali.vecmath2.Quaternion4f;
 import org.openmali.vecmath2.Vector3f;
 
+import org.jagatoo.loaders.LoadMetrics;
 import org.jagatoo.loaders.models.cal3d.buffer.Vector3fBuffer;
+import org.jagatoo.util.threads.WorkerPool;
 
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 
 /*******************************************************************************
  * The physique class. This synchronizes on the model for which it is providing
  * the physique.
+ * 
+ * The bone states are converted into one 3x4 matrix per bone, before any
+ * vertex is skinned. The vertices are then skinned from the flat arrays of
+ * the core submesh without any shared temporaries, so different models can be
+ * skinned concurrently. Large models are split into vertex ranges, that are
+ * skinned on a shared worker pool (see {@link #setNumThreads(int)}).
  ******************************************************************************/
 public class CalPhysique
 {
+    /**
+     * Vertex ranges smaller than this are not worth a task of their own.
+     */
+    private static final int MIN_VERTICES_PER_TASK = 2048;
+    
+    private static final int MATRIX_SIZE = 12;
+    
+    private static volatile int numThreads = Runtime.getRuntime().availableProcessors();
+    // The calling thread skins one range itself.
+    private static final WorkerPool workers = new WorkerPool( "CalPhysique", Math.max( 1, numThreads - 1 ), Thread.NORM_PRIORITY );
+    
     protected CalModel model;
     
     protected boolean  normalize = true;
     
+    /**
+     * Row-major 3x4 matrices (rotation | translation) of all bones.
+     */
+    protected float[] boneMatrices = new float[ 0 ];
+    
+    /*
+     * The vertex ranges of the last update(), kept to not allocate them every frame.
+     */
+    private CalSubmesh[] rangeSubmeshes = new CalSubmesh[ 0 ];
+    private int[] rangeStarts = new int[ 0 ];
+    private int[] rangeEnds = new int[ 0 ];
+    private RangeTask[] rangeTasks = new RangeTask[ 0 ];
+    private Future<?>[] rangeFutures = new Future<?>[ 0 ];
+    
+    /**
+     * Sets the number of threads used to skin large models.
+     * Use 1 to skin all models on the calling thread.
+     * 
+     * @param n
+     */
+    public static synchronized void setNumThreads( int n )
+    {
+        if( n < 1 ) throw new IllegalArgumentException( "n must be at least 1." );
+        
+        workers.setNumThreads( Math.max( 1, n - 1 ) );
+        
+        numThreads = n;
+    }
+    
+    /**
+     * @return the number of threads used to skin large models.
+     */
+    public static int getNumThreads()
+    {
+        return numThreads;
+    }
+    
     /**
      * Constructs the physique instance.
      * 
@@ -75,6 +135,48 @@ public class CalPhysique
         this.normalize = normalize;
     }
     
+    /**
+     * Calculates the skinning matrices of all bones.
+     * 
+     * The matrix of a bone maps a vertex the same way as
+     * CalCoreBone.transform() with the bone space rotation followed by adding
+     * the bone space translation.
+     */
+    protected void calculateBoneMatrices()
+    {
+        CalBone[] vectorBone = model.getSkeleton().getBones();
+        
+        if( boneMatrices.length != vectorBone.length * MATRIX_SIZE )
+        {
+            boneMatrices = new float[ vectorBone.length * MATRIX_SIZE ];
+        }
+        
+        for( int boneId = 0; boneId < vectorBone.length; boneId ++ )
+        {
+            Quaternion4f q = vectorBone[ boneId ].getRotationBoneSpace();
+            Vector3f t = vectorBone[ boneId ].getTranslationBoneSpace();
+            
+            float x = q.getA(), y = q.getB(), z = q.getC(), w = q.getD();
+            
+            // conj(q) * v * q = ( w^2 - |u|^2 ) v + 2 ( u.v ) u - 2 w ( u x v )
+            float d = w * w - x * x - y * y - z * z;
+            
+            int m = boneId * MATRIX_SIZE;
+            boneMatrices[ m +  0 ] = d + 2 * x * x;
+            boneMatrices[ m +  1 ] = 2 * ( x * y + w * z );
+            boneMatrices[ m +  2 ] = 2 * ( x * z - w * y );
+            boneMatrices[ m +  3 ] = t.getX();
+            boneMatrices[ m +  4 ] = 2 * ( x * y - w * z );
+            boneMatrices[ m +  5 ] = d + 2 * y * y;
+            boneMatrices[ m +  6 ] = 2 * ( y * z + w * x );
+            boneMatrices[ m +  7 ] = t.getY();
+            boneMatrices[ m +  8 ] = 2 * ( x * z + w * y );
+            boneMatrices[ m +  9 ] = 2 * ( y * z - w * x );
+            boneMatrices[ m + 10 ] = d + 2 * z * z;
+            boneMatrices[ m + 11 ] = t.getZ();
+        }
+    }
+    
     /**
      * Calculates the transformed vertex data.
      * 
@@ -95,108 +197,104 @@ public class CalPhysique
     {
         synchronized( model )
         {
-            // get bone vector of the skeleton
-            CalBone[] vectorBone = model.getSkeleton().getBones();
+            calculateBoneMatrices();
             
-            // get vertex vector of the core submesh
-            Vector3fBuffer vertexPositions = submesh.getCoreSubmesh().getVertexPositions();
-            CalCoreSubmesh.VertexInfo[] vectorVertex = submesh.getCoreSubmesh().getVectorVertexInfo();
+            int vertexCount = submesh.getVertexCount();
+            skinVertices( submesh, vertexBuffer, 0, vertexCount );
             
-            // get physical property vector of the core submesh
-            float[] vectorPhysicalProperty = submesh.getCoreSubmesh().getVectorPhysicalProperty();
+            return vertexCount;
+        }
+    }
+    
+    /**
+     * Blends the morph targets of one vertex into the given vector.
+     */
+    private static void blendMorphTargets( CalSubmesh submesh, Vector<CalCoreSubMorphTarget> vectorSubMorphTarget, int vertexId, boolean normals, float baseX, float baseY, float baseZ, Vector3f v, Vector3f result )
+    {
+        float baseWeight = submesh.getBaseWeight();
+        
+        result.setX( baseWeight * baseX );
+        result.setY( baseWeight * baseY );
+        result.setZ( baseWeight * baseZ );
+        
+        int morphTargetCount = submesh.getMorphTargetWeightCount();
+        for( int morphTargetId = 0; morphTargetId < morphTargetCount; morphTargetId ++ )
+        {
+            if( normals )
+                vectorSubMorphTarget.get( morphTargetId ).getBlendVertexNormal( vertexId, v );
+            else
+                vectorSubMorphTarget.get( morphTargetId ).getBlendVertexPosition( vertexId, v );
             
-            // get the number of vertices
-            int vertexCount = submesh.getVertexCount();
+            float currentWeight = submesh.getMorphTargetWeight( morphTargetId );
+            result.addX( currentWeight * v.getX() );
+            result.addY( currentWeight * v.getY() );
+            result.addZ( currentWeight * v.getZ() );
+        }
+    }
+    
+    /**
+     * Skins the vertex positions [start, end) of a submesh with the current
+     * bone matrices.
+     */
+    protected void skinVertices( CalSubmesh submesh, Vector3fBuffer vertexBuffer, int start, int end )
+    {
+        final CalCoreSubmesh coreSubmesh = submesh.getCoreSubmesh();
+        final CalCoreSubmesh.SkinningData data = coreSubmesh.getSkinningData();
+        final float[] matrices = boneMatrices;
+        
+        final float[] positions = data.positions;
+        final int[] offsets = data.influenceOffsets;
+        final int[] boneIds = data.influenceBoneIds;
+        final float[] weights = data.influenceWeights;
+        
+        // vertices with a physical weight are moved by the spring system
+        final float[] vectorPhysicalProperty = ( coreSubmesh.getSpringCount() > 0 && submesh.hasInternalData() ) ? coreSubmesh.getVectorPhysicalProperty() : null;
+        
+        final boolean morph = ( submesh.getBaseWeight() != 1.0f );
+        final Vector<CalCoreSubMorphTarget> vectorSubMorphTarget = coreSubmesh.getCoreSubMorphTargets();
+        final Vector3f v = morph ? new Vector3f() : null;
+        final Vector3f position = morph ? new Vector3f() : null;
+        
+        for( int vertexId = start; vertexId < end; vertexId ++ )
+        {
+            if( ( vectorPhysicalProperty != null ) && ( vectorPhysicalProperty[ vertexId ] != 0.0f ) )
+                continue;
             
-            // get the sub morph target vector from the core sub mesh
-            Vector<CalCoreSubMorphTarget> vectorSubMorphTarget = submesh.getCoreSubmesh().getCoreSubMorphTargets();
+            float px = positions[ vertexId * 3 + 0 ];
+            float py = positions[ vertexId * 3 + 1 ];
+            float pz = positions[ vertexId * 3 + 2 ];
             
-            // calculate the base weight
-            float baseWeight = submesh.getBaseWeight();
+            // blend the morph targets
+            if( morph )
+            {
+                blendMorphTargets( submesh, vectorSubMorphTarget, vertexId, false, px, py, pz, v, position );
+                px = position.getX();
+                py = position.getY();
+                pz = position.getZ();
+            }
             
-            // get the number of morph targets
-            int morphTargetCount = submesh.getMorphTargetWeightCount();
+            int i0 = offsets[ vertexId ];
+            int i1 = offsets[ vertexId + 1 ];
             
-            // calculate all submesh vertices
-            // loop temps
-            Vector3f v = new Vector3f(), position = new Vector3f();
-            for( int vertexId = 0; vertexId < vertexCount; vertexId ++ )
+            if( i0 == i1 )
             {
-                // get the vertex
-                CalCoreSubmesh.VertexInfo vertex = vectorVertex[ vertexId ];
-                vertexPositions.get( vertexId, v );
-                
-                // blend the morph targets
-                if( baseWeight == 1.0f )
-                {
-                    position.set( v );;
-                }
-                else
-                {
-                    position.setX( baseWeight * v.getX() );
-                    position.setY( baseWeight * v.getY() );
-                    position.setZ( baseWeight * v.getZ() );
-                    for( int morphTargetId = 0; morphTargetId < morphTargetCount; ++ morphTargetId )
-                    {
-                        vectorSubMorphTarget.get( morphTargetId ).getBlendVertexPosition( vertexId, v );
-                        float currentWeight = submesh.getMorphTargetWeight( morphTargetId );
-                        position.addX( currentWeight * v.getX() );
-                        position.addY( currentWeight * v.getY() );
-                        position.addZ( currentWeight * v.getZ() );
-                    }
-                }
-                
-                // initialize vertex
-                float x = 0, y = 0, z = 0;
-                
-                // blend together all vertex influences
-                int influenceCount = vertex.influenceBoneIds.length;
-                if( influenceCount == 0 )
-                {
-                    x = position.getX();
-                    y = position.getY();
-                    z = position.getZ();
-                }
-                else
-                {
-                    for( int influenceId = 0; influenceId < influenceCount; influenceId ++ )
-                    {
-                        // get the influence
-                        int boneId = vertex.influenceBoneIds[ influenceId ];
-                        float weight = vertex.influenceWeights[ influenceId ];
-                        
-                        // get the bone of the influence vertex
-                        CalBone bone = vectorBone[ boneId ];
-                        
-                        // transform vertex with current state of the bone
-                        v.set( position );
-                        CalCoreBone.transform( v, bone.getRotationBoneSpace() );
-                        v.add( bone.getTranslationBoneSpace() );
-                        
-                        x += weight * v.getX();
-                        y += weight * v.getY();
-                        z += weight * v.getZ();
-                    }
-                }
+                vertexBuffer.put( vertexId, px, py, pz );
+                continue;
+            }
+            
+            // blend together all vertex influences
+            float x = 0, y = 0, z = 0;
+            for( int i = i0; i < i1; i ++ )
+            {
+                int m = boneIds[ i ] * MATRIX_SIZE;
+                float weight = weights[ i ];
                 
-                // save vertex position
-                if( submesh.getCoreSubmesh().getSpringCount() > 0 && submesh.hasInternalData() )
-                {
-                    // get the pgysical property of the vertex
-                    float physicalProperty = vectorPhysicalProperty[ vertexId ];
-                    
-                    // assign new vertex position if there is no vertex weight
-                    if( physicalProperty == 0.0f )
-                    {
-                        vertexBuffer.put( vertexId, x, y, z );
-                    }
-                }
-                else
-                {
-                    vertexBuffer.put( vertexId, x, y, z );
-                }
+                x += weight * ( matrices[ m + 0 ] * px + matrices[ m + 1 ] * py + matrices[ m +  2 ] * pz + matrices[ m +  3 ] );
+                y += weight * ( matrices[ m + 4 ] * px + matrices[ m + 5 ] * py + matrices[ m +  6 ] * pz + matrices[ m +  7 ] );
+                z += weight * ( matrices[ m + 8 ] * px + matrices[ m + 9 ] * py + matrices[ m + 10 ] * pz + matrices[ m + 11 ] );
             }
-            return vertexCount;
+            
+            vertexBuffer.put( vertexId, x, y, z );
         }
     }
     
@@ -220,92 +318,94 @@ public class CalPhysique
     {
         synchronized( model )
         {
-            // get bone vector of the skeleton
-            CalBone[] vectorBone = model.getSkeleton().getBones();
-            
-            // get vertex vector of the submesh
-            Vector3fBuffer vertexNormals = submesh.getCoreSubmesh().getVertexNormals();
-            CalCoreSubmesh.VertexInfo[] vectorVertex = submesh.getCoreSubmesh().getVectorVertexInfo();
+            calculateBoneMatrices();
             
-            // get the number of vertices
             int vertexCount = submesh.getVertexCount();
+            skinNormals( submesh, normalBuffer, 0, vertexCount );
             
-            // get the sub morph target vector from the core sub mesh
-            Vector<CalCoreSubMorphTarget> vectorSubMorphTarget = submesh.getCoreSubmesh().getCoreSubMorphTargets();
-            
-            // calculate the base weight
-            float baseWeight = submesh.getBaseWeight();
+            return vertexCount;
+        }
+    }
+    
+    /**
+     * Rotates the direction (nx, ny, nz) by the influences [i0, i1) and writes
+     * the (optionally normalized) result.
+     */
+    private void putRotated( Vector3fBuffer buffer, int vertexId, int[] boneIds, float[] weights, int i0, int i1, float nx, float ny, float nz )
+    {
+        final float[] matrices = boneMatrices;
+        
+        float x, y, z;
+        if( i0 == i1 )
+        {
+            x = nx;
+            y = ny;
+            z = nz;
+        }
+        else
+        {
+            x = 0;
+            y = 0;
+            z = 0;
+            for( int i = i0; i < i1; i ++ )
+            {
+                int m = boneIds[ i ] * MATRIX_SIZE;
+                float weight = weights[ i ];
+                
+                x += weight * ( matrices[ m + 0 ] * nx + matrices[ m + 1 ] * ny + matrices[ m +  2 ] * nz );
+                y += weight * ( matrices[ m + 4 ] * nx + matrices[ m + 5 ] * ny + matrices[ m +  6 ] * nz );
+                z += weight * ( matrices[ m + 8 ] * nx + matrices[ m + 9 ] * ny + matrices[ m + 10 ] * nz );
+            }
+        }
+        
+        // re-normalize if desired
+        if( normalize )
+        {
+            float scale = 1.0f / ( float ) Math.sqrt( x * x + y * y + z * z );
             
-            // get the number of morph targets
-            int morphTargetCount = submesh.getMorphTargetWeightCount();
+            buffer.put( vertexId, x * scale, y * scale, z * scale );
+        }
+        else
+        {
+            buffer.put( vertexId, x, y, z );
+        }
+    }
+    
+    /**
+     * Skins the normals [start, end) of a submesh with the current bone
+     * matrices.
+     */
+    protected void skinNormals( CalSubmesh submesh, Vector3fBuffer normalBuffer, int start, int end )
+    {
+        final CalCoreSubmesh coreSubmesh = submesh.getCoreSubmesh();
+        final CalCoreSubmesh.SkinningData data = coreSubmesh.getSkinningData();
+        
+        final float[] normals = data.normals;
+        final int[] offsets = data.influenceOffsets;
+        final int[] boneIds = data.influenceBoneIds;
+        final float[] weights = data.influenceWeights;
+        
+        final boolean morph = ( submesh.getBaseWeight() != 1.0f );
+        final Vector<CalCoreSubMorphTarget> vectorSubMorphTarget = coreSubmesh.getCoreSubMorphTargets();
+        final Vector3f v = morph ? new Vector3f() : null;
+        final Vector3f normal = morph ? new Vector3f() : null;
+        
+        for( int vertexId = start; vertexId < end; vertexId ++ )
+        {
+            float nx = normals[ vertexId * 3 + 0 ];
+            float ny = normals[ vertexId * 3 + 1 ];
+            float nz = normals[ vertexId * 3 + 2 ];
             
-            // calculate normal for all submesh vertices
-            // loop temps
-            Vector3f v = new Vector3f(), normal = new Vector3f();
-            for( int vertexId = 0; vertexId < vertexCount; vertexId ++ )
+            // blend the morph targets
+            if( morph )
             {
-                // get the vertex
-                CalCoreSubmesh.VertexInfo vertex = vectorVertex[ vertexId ];
-                
-                vertexNormals.get( vertexId, v );
-                
-                // blend the morph targets
-                if( baseWeight == 1.0f )
-                {
-                    normal.set( v );
-                }
-                else
-                {
-                    normal.setX( baseWeight * v.getX() );
-                    normal.setY( baseWeight * v.getY() );
-                    normal.setZ( baseWeight * v.getZ() );
-                    for( int morphTargetId = 0; morphTargetId < morphTargetCount; morphTargetId ++ )
-                    {
-                        vectorSubMorphTarget.get( morphTargetId ).getBlendVertexNormal( vertexId, v );
-                        float currentWeight = submesh.getMorphTargetWeight( morphTargetId );
-                        normal.addX( currentWeight * v.getX() );
-                        normal.addY( currentWeight * v.getY() );
-                        normal.addZ( currentWeight * v.getZ() );
-                    }
-                }
-                
-                // initialize normal
-                float nx = 0, ny = 0, nz = 0;
-                
-                // blend together all vertex influences
-                int influenceCount = vertex.influenceBoneIds.length;
-                for( int influenceId = 0; influenceId < influenceCount; influenceId ++ )
-                {
-                    // get the influence
-                    int boneId = vertex.influenceBoneIds[ influenceId ];
-                    float weight = vertex.influenceWeights[ influenceId ];
-                    
-                    // get the bone of the influence vertex
-                    CalBone bone = vectorBone[ boneId ];
-                    
-                    // transform normal with current state of the bone
-                    v.set( normal );
-                    CalCoreBone.transform( v, bone.getRotationBoneSpace() );
-                    
-                    nx += weight * v.getX();
-                    ny += weight * v.getY();
-                    nz += weight * v.getZ();
-                }
-                
-                // re-normalize normal if desired
-                if( normalize )
-                {
-                    float scale = 1.0f / ( float ) Math.sqrt( nx * nx + ny * ny + nz * nz );
-                    
-                    normalBuffer.put( vertexId, nx * scale, ny * scale, nz * scale );
-                }
-                else
-                {
-                    normalBuffer.put( vertexId, nx, ny, nz );
-                }
+                blendMorphTargets( submesh, vectorSubMorphTarget, vertexId, true, nx, ny, nz, v, normal );
+                nx = normal.getX();
+                ny = normal.getY();
+                nz = normal.getZ();
             }
             
-            return vertexCount;
+            putRotated( normalBuffer, vertexId, boneIds, weights, offsets[ vertexId ], offsets[ vertexId + 1 ], nx, ny, nz );
         }
     }
     
@@ -326,91 +426,142 @@ public class CalPhysique
      * 
      * @return The number of tangents written to the buffer.
      */
-    @SuppressWarnings( "unused" )
     public int calculateTangents( CalSubmesh submesh, int mapId, Vector3fBuffer tangentBuffer )
     {
         synchronized( model )
         {
-            // get bone vector of the skeleton
-            CalBone[] vectorBone = model.getSkeleton().getBones();
-            
-            // get vertex vector of the submesh
-            CalCoreSubmesh.VertexInfo[] vectorVertex = submesh.getCoreSubmesh().getVectorVertexInfo();
-            Vector3fBuffer vertexTangents = submesh.getCoreSubmesh().getVertexTangents( mapId );
+            calculateBoneMatrices();
             
-            // get the number of vertices
             int vertexCount = submesh.getVertexCount();
+            skinTangents( submesh, mapId, tangentBuffer, 0, vertexCount );
             
-            // get the sub morph target vector from the core sub mesh
-            Vector<CalCoreSubMorphTarget> vectorSubMorphTarget = submesh.getCoreSubmesh().getCoreSubMorphTargets();
-            
-            // calculate the base weight
-            float baseWeight = submesh.getBaseWeight();
-            
-            // get the number of morph targets
-            int morphTargetCount = submesh.getMorphTargetWeightCount();
-            
-            // calculate tangent for all submesh vertices
-            // loop temps
-            Vector3f v = new Vector3f(), tangent = new Vector3f();
-            for( int vertexId = 0; vertexId < vertexCount; vertexId ++ )
+            return vertexCount;
+        }
+    }
+    
+    /**
+     * Skins the tangents [start, end) of a submesh with the current bone
+     * matrices. Morph targets are not blended into tangents.
+     */
+    protected void skinTangents( CalSubmesh submesh, int mapId, Vector3fBuffer tangentBuffer, int start, int end )
+    {
+        final CalCoreSubmesh coreSubmesh = submesh.getCoreSubmesh();
+        final CalCoreSubmesh.SkinningData data = coreSubmesh.getSkinningData();
+        final Vector3fBuffer vertexTangents = coreSubmesh.getVertexTangents( mapId );
+        
+        final int[] offsets = data.influenceOffsets;
+        final int[] boneIds = data.influenceBoneIds;
+        final float[] weights = data.influenceWeights;
+        
+        for( int vertexId = start; vertexId < end; vertexId ++ )
+        {
+            putRotated( tangentBuffer, vertexId, boneIds, weights, offsets[ vertexId ], offsets[ vertexId + 1 ], vertexTangents.getX( vertexId ), vertexTangents.getY( vertexId ), vertexTangents.getZ( vertexId ) );
+        }
+    }
+    
+    /**
+     * Skins the vertices, normals and enabled tangents of one vertex range of
+     * a submesh, that handles its vertex data internally.
+     */
+    protected void skinInternalRange( CalSubmesh submesh, int start, int end )
+    {
+        // calculate the transformed vertices and store them in the submesh
+        skinVertices( submesh, submesh.getVertexPositions(), start, end );
+        
+        // calculate the transformed normals and store them in the submesh
+        skinNormals( submesh, submesh.getVertexNormals(), start, end );
+        
+        for( int mapId = 0; mapId < submesh.getVertexTangentsMapCount(); mapId ++ )
+        {
+            if( submesh.isTangentsEnabled( mapId ) )
             {
-                // get the vertex
-                CalCoreSubmesh.VertexInfo vertex = vectorVertex[ vertexId ];
-                
-                vertexTangents.get( vertexId, tangent );
-                
-                // we don't blend morph targets - why?
-                /*
-                 * if(baseWeight == 1.0f) { tangent.x = v.x; tangent.y = v.y;
-                 * tangent.z = v.z; } else { tangent.x = baseWeight*v.x;
-                 * tangent.y = baseWeight*v.y; tangent.z = baseWeight*v.z; for
-                 * (int morphTargetId=0; morphTargetId < morphTargetCount;
-                 * morphTargetId++) { vectorSubMorphTarget.get
-                 * (morphTargetId).getBlendVertexT(vertexId, v); float
-                 * currentWeight = submesh.getMorphTargetWeight (morphTargetId);
-                 * tangent.x += currentWeight*v.x; tangent.y +=
-                 * currentWeight*v.y; tangent.z += currentWeight*v.z; } }
-                 */
-
-                // initialize normal
-                float tx = 0, ty = 0, tz = 0;
-                
-                // blend together all vertex influences
-                int influenceCount = vertex.influenceBoneIds.length;
-                for( int influenceId = 0; influenceId < influenceCount; influenceId ++ )
+                skinTangents( submesh, mapId, submesh.getVertexTangents( mapId ), start, end );
+            }
+        }
+    }
+    
+    private class RangeTask implements Runnable
+    {
+        private final int range;
+        
+        public void run()
+        {
+            skinInternalRange( rangeSubmeshes[ range ], rangeStarts[ range ], rangeEnds[ range ] );
+        }
+        
+        public RangeTask( int range )
+        {
+            this.range = range;
+        }
+    }
+    
+    /**
+     * Makes sure, that the range arrays hold at least n ranges.
+     */
+    private void ensureRangeCapacity( int n )
+    {
+        if( rangeStarts.length >= n )
+            return;
+        
+        int capacity = Math.max( n, rangeStarts.length * 2 );
+        
+        CalSubmesh[] submeshes2 = new CalSubmesh[ capacity ];
+        System.arraycopy( rangeSubmeshes, 0, submeshes2, 0, rangeSubmeshes.length );
+        rangeSubmeshes = submeshes2;
+        
+        int[] starts2 = new int[ capacity ];
+        System.arraycopy( rangeStarts, 0, starts2, 0, rangeStarts.length );
+        rangeStarts = starts2;
+        
+        int[] ends2 = new int[ capacity ];
+        System.arraycopy( rangeEnds, 0, ends2, 0, rangeEnds.length );
+        rangeEnds = ends2;
+        
+        RangeTask[] tasks2 = new RangeTask[ capacity ];
+        System.arraycopy( rangeTasks, 0, tasks2, 0, rangeTasks.length );
+        for( int i = rangeTasks.length; i < capacity; i ++ )
+        {
+            tasks2[ i ] = new RangeTask( i );
+        }
+        rangeTasks = tasks2;
+        
+        rangeFutures = new Future<?>[ capacity ];
+    }
+    
+    /**
+     * Collects the vertex ranges of all submeshes, that handle vertex data
+     * internally.
+     * 
+     * @return the number of ranges.
+     */
+    private int collectRanges()
+    {
+        int numRanges = 0;
+        
+        for( CalMesh mesh: model.getMeshes() )
+        {
+            for( CalSubmesh submesh: mesh.getSubmeshes() )
+            {
+                if( submesh.hasInternalData() )
                 {
-                    // get the influence
-                    int boneId = vertex.influenceBoneIds[ influenceId ];
-                    float weight = vertex.influenceWeights[ influenceId ];
-                    
-                    // get the bone of the influence vertex
-                    CalBone bone = vectorBone[ boneId ];
+                    int vertexCount = submesh.getVertexCount();
+                    int submeshRanges = Math.max( 1, Math.min( numThreads, vertexCount / MIN_VERTICES_PER_TASK ) );
+                    int rangeSize = ( vertexCount + submeshRanges - 1 ) / submeshRanges;
                     
-                    // transform normal with current state of the bone
-                    v.set( tangent );
-                    CalCoreBone.transform( v, bone.getRotationBoneSpace() );
-                    
-                    tx += weight * v.getX();
-                    ty += weight * v.getY();
-                    tz += weight * v.getZ();
-                }
-                
-                // re-normalize tangent if desired
-                if( normalize )
-                {
-                    float scale = 1.0f / ( float ) Math.sqrt( tx * tx + ty * ty + tz * tz );
+                    ensureRangeCapacity( numRanges + submeshRanges );
                     
-                    tangentBuffer.put( vertexId, tx * scale, ty * scale, tz * scale );
-                }
-                else
-                {
-                    tangentBuffer.put( vertexId, tx, ty, tz );
+                    for( int start = 0; start < vertexCount; start += rangeSize )
+                    {
+                        rangeSubmeshes[ numRanges ] = submesh;
+                        rangeStarts[ numRanges ] = start;
+                        rangeEnds[ numRanges ] = Math.min( start + rangeSize, vertexCount );
+                        numRanges ++;
+                    }
                 }
             }
-            
-            return vertexCount;
         }
+        
+        return numRanges;
     }
     
     /**
@@ -424,35 +575,82 @@ public class CalPhysique
     {
         synchronized( model )
         {
-            // loop through all the attached meshes
-            for (CalMesh mesh: model.getMeshes())
+            calculateBoneMatrices();
+            
+            int numRanges = collectRanges();
+            int totalVertexCount = 0;
+            for( int i = 0; i < numRanges; i ++ )
+            {
+                totalVertexCount += rangeEnds[ i ] - rangeStarts[ i ];
+            }
+            
+            if( ( numThreads <= 1 ) || ( numRanges <= 1 ) || ( totalVertexCount < 2 * MIN_VERTICES_PER_TASK ) )
+            {
+                for( int i = 0; i < numRanges; i ++ )
+                {
+                    skinInternalRange( rangeSubmeshes[ i ], rangeStarts[ i ], rangeEnds[ i ] );
+                }
+                
+                return;
+            }
+            
+            ThreadPoolExecutor pool = workers.getExecutor();
+            LoadMetrics metrics = LoadMetrics.current();
+            
+            for( int i = 1; i < numRanges; i ++ )
+            {
+                rangeFutures[ i ] = pool.submit( metrics.bind( rangeTasks[ i ] ) );
+            }
+            
+            Throwable failure = null;
+            try
+            {
+                skinInternalRange( rangeSubmeshes[ 0 ], rangeStarts[ 0 ], rangeEnds[ 0 ] );
+            }
+            catch( Throwable t )
+            {
+                failure = t;
+            }
+            
+            // The other ranges must be done, before the range arrays are reused or the spring system runs.
+            boolean interrupted = false;
+            for( int i = 1; i < numRanges; i ++ )
             {
-                // loop through all the submeshes of the mesh
-                for (CalSubmesh submesh: mesh.getSubmeshes())
+                while( true )
                 {
-                    // check if the submesh handles vertex data internally
-                    if ( submesh.hasInternalData() )
+                    try
+                    {
+                        rangeFutures[ i ].get();
+                        break;
+                    }
+                    catch( InterruptedException e )
+                    {
+                        interrupted = true;
+                    }
+                    catch( ExecutionException e )
                     {
-                        // calculate the transformed vertices and store them in
-                        // the submesh
-                        Vector3fBuffer vectorVertex = submesh.getVertexPositions();
-                        calculateVertices( submesh, vectorVertex );
-                        
-                        // calculate the transformed normals and store them in
-                        // the submesh
-                        Vector3fBuffer vectorNormal = submesh.getVertexNormals();
-                        calculateNormals( submesh, vectorNormal );
-                        
-                        for( int mapId = 0; mapId < submesh.getVertexTangentsMapCount(); mapId ++ )
-                        {
-                            if( submesh.isTangentsEnabled( mapId ) )
-                            {
-                                calculateTangents( submesh, mapId, submesh.getVertexTangents( mapId ) );
-                            }
-                        }
+                        if( failure == null )
+                            failure = e.getCause();
+                        break;
                     }
                 }
+                
+                rangeFutures[ i ] = null;
+            }
+            
+            if( interrupted )
+            {
+                Thread.currentThread().interrupt();
             }
+            
+            if( failure instanceof RuntimeException )
+                throw ( RuntimeException ) failure;
+            
+            if( failure instanceof Error )
+                throw ( Error ) failure;
+            
+            if( failure != null )
+                throw new RuntimeException( failure );
         }
     }
 }
@@ -38,17 +38,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models.cal3d.core.CalCoreAnimation;
 import org.jagatoo.loaders.models.cal3d.core.CalCoreMaterial;
 import org.jagatoo.loaders.models.cal3d.core.CalCoreMesh;
 import org.jagatoo.loaders.models.cal3d.core.CalCoreModel;
 import org.jagatoo.loaders.models.cal3d.core.CalCoreSkeleton;
+import org.jagatoo.loaders.models.cal3d.core.CalCoreSubmesh;
 import org.jagatoo.loaders.models.cal3d.core.CalLoader;
 import org.jagatoo.loaders.models.cal3d.core.CalModel;
 import org.jagatoo.loaders.models.cal3d.loader.KCal3dDefinition.Cal3dAnimDef;
 import org.jagatoo.loaders.models.cal3d.loader.KCal3dDefinition.Cal3dModelDef;
 import org.jagatoo.loaders.models.cal3d.loader.KCal3dDefinition.Cal3dSubMeshDef;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * 
@@ -58,6 +62,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class KCal3dLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( KCal3dLoader.class );
+    
     private static Map<String, CalCoreModel> coreModelCache = new HashMap<String, CalCoreModel>();
     private static Map<String, CalCoreMaterial> coreMaterialCache = new HashMap<String, CalCoreMaterial>();
     
@@ -70,7 +76,7 @@ public class KCal3dLoader
             BufferedReader br = new BufferedReader( new InputStreamReader( in ) );
             
             data.baseURL = baseURL;
-            JAGTLog.debug( "Path = " + data.baseURL );
+            LOG.debug( "Path = " + data.baseURL );
             
             String line;
             while ( ( line = br.readLine() ) != null )
@@ -87,13 +93,13 @@ public class KCal3dLoader
                 {
                     final String path = line.substring( line.lastIndexOf( "=" ) + 1 );
                     data.baseURL = new URL( data.baseURL, path );
-                    JAGTLog.debug( "[KCal3dLoader] data.path = " + data.baseURL );
+                    LOG.debug( "[KCal3dLoader] data.path = " + data.baseURL );
                 }
                 else if ( line.startsWith( "skeleton=" ) )
                 {
                     final String skeFile = line.substring( line.lastIndexOf( "=" ) + 1 );
                     data.skeleton = new URL( data.baseURL, skeFile );
-                    JAGTLog.debug( "[KCal3dLoader] Set skeleton to " + data.skeleton );
+                    LOG.debug( "[KCal3dLoader] Set skeleton to " + data.skeleton );
                 }
                 else if ( line.startsWith( "animation=" ) )
                 {
@@ -104,7 +110,7 @@ public class KCal3dLoader
                     name = name.substring( name.lastIndexOf( "/" ) + 1 );
                     Cal3dAnimDef anim = new Cal3dAnimDef( name, animURL );
                     data.animations.add( anim );
-                    JAGTLog.debug( "[KCal3dLoader] Added anim " + animURL );
+                    LOG.debug( "[KCal3dLoader] Added anim " + animURL );
                 }
                 else if ( line.startsWith( "mesh=" ) )
                 {
@@ -112,17 +118,17 @@ public class KCal3dLoader
                     URL meshURL = new URL( data.baseURL, meshFile );
                     Cal3dSubMeshDef subMesh = new Cal3dSubMeshDef( meshURL );
                     data.meshes.add( subMesh );
-                    JAGTLog.debug( "[KCal3dLoader] Added mesh " + meshURL );
+                    LOG.debug( "[KCal3dLoader] Added mesh " + meshURL );
                 }
                 else if ( line.startsWith( "material=" ) )
                 {
                     final String matFile = line.substring( line.lastIndexOf( "=" ) + 1 );
                     data.material = new URL( data.baseURL, matFile );
-                    JAGTLog.debug( "[KCal3dLoader] Set material to " + data.material );
+                    LOG.debug( "[KCal3dLoader] Set material to " + data.material );
                 }
                 else
                 {
-                    JAGTLog.debug( "[KCal3dLoader] Unsupported line : " + line );
+                    LOG.debug( "[KCal3dLoader] Unsupported line : " + line );
                 }
             }
         }
@@ -185,7 +191,18 @@ public class KCal3dLoader
         }
     }
     
-    public static CalCoreModel loadCoreModel( Cal3dModelDef modelDef, URL modelResource, String name )
+    private static void addGeometries( CalCoreMesh coreMesh, LoadMetrics metrics )
+    {
+        if ( !metrics.isActive() )
+            return;
+        
+        for ( CalCoreSubmesh submesh : coreMesh.getVectorCoreSubmesh() )
+        {
+            metrics.addGeometry( submesh.getVertexCount(), submesh.getFaceCount() * 3 );
+        }
+    }
+    
+    private static CalCoreModel loadCoreModel( Cal3dModelDef modelDef, URL modelResource, String name, LoadMetrics metrics )
     {
         try
         {
@@ -195,6 +212,7 @@ public class KCal3dLoader
             if ( modelDef.mesh != null && !modelDef.mesh.toExternalForm().equals( "" ) )
             {
                 CalCoreMesh coreMesh = CalLoader.loadCoreMesh( modelDef.mesh );
+                addGeometries( coreMesh, metrics );
                 coreMesh.skin = modelDef.skin;
                 if ( modelDef.material != null && !modelDef.material.toExternalForm().equals( "" ) )
                 {
@@ -209,6 +227,7 @@ public class KCal3dLoader
             for ( Cal3dSubMeshDef subMesh : modelDef.meshes )
             {
                 CalCoreMesh coreMesh = CalLoader.loadCoreMesh( subMesh.mesh );
+                addGeometries( coreMesh, metrics );
                 coreMesh.skin = subMesh.skin;
                 if ( ( subMesh.material != null ) && !subMesh.material.equals( "" ) )
                 {
@@ -236,4 +255,24 @@ public class KCal3dLoader
             return ( null );
         }
     }
+    
+    public static CalCoreModel loadCoreModel( Cal3dModelDef modelDef, URL modelResource, String name )
+    {
+        final MeteredLoad load = MeteredLoad.begin( "Cal3D", modelResource, null );
+        CalCoreModel coreModel = null;
+        
+        try
+        {
+            coreModel = loadCoreModel( modelDef, modelResource, name, load.getMetrics() );
+            
+            if ( coreModel != null )
+                load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
+        
+        return ( coreModel );
+    }
 }
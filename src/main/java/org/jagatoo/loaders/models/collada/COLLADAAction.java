@@ -38,6 +38,7 @@ import org.jagatoo.loaders.models.collada.datastructs.animation.KeyFrameTuple3f;
 import org.jagatoo.loaders.models.collada.datastructs.animation.KeyFrameQuat4f;
 import org.jagatoo.loaders.models.collada.datastructs.animation.Skeleton;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * A COLLADA "Action", or "Animation" or "Animation clip" or "Animation strip",
@@ -48,6 +49,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class COLLADAAction
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( COLLADAAction.class );
+    
     /**
      * The identifier of this animation. It should be unique in the same model,
      * ex. you cannot have two animations that have the same ID for the same
@@ -123,12 +126,12 @@ public class COLLADAAction
         {
         	Bone bone = iterator.next();
             
-        	JAGTLog.debug( rotKeyFrames.get( bone ) );
+        	LOG.debug( rotKeyFrames.get( bone ) );
             
         	bone.rotKeyFrames = rotKeyFrames.get( bone );
             bone.scaleKeyFrames = scaleKeyFrames.get( bone );
             
-            JAGTLog.debug( bone.rotKeyFrames.equals( rotKeyFrames.get( bone ) ) );
+            LOG.debug( bone.rotKeyFrames.equals( rotKeyFrames.get( bone ) ) );
         }
     }
 }
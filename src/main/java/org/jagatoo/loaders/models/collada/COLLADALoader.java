@@ -38,6 +38,8 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import org.jagatoo.util.errorhandling.ParsingException;
+import org.jagatoo.loaders.LoadPhase;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models.collada.datastructs.AssetFolder;
 import org.jagatoo.loaders.models.collada.datastructs.ColladaProtoypeModel;
 import org.jagatoo.loaders.models.collada.stax.XMLCOLLADA;
@@ -49,6 +51,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLLibraryImages;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryMaterials;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryVisualScenes;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * This is a really simple COLLADA file loader. Its features are limited for now
@@ -58,6 +61,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class COLLADALoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( COLLADALoader.class );
+    
     private static final XMLInputFactory factory;
     
     static
@@ -86,11 +91,14 @@ public class COLLADALoader
     {
         long t1 = System.nanoTime();
         
+        final MeteredLoad load = MeteredLoad.begin( "COLLADA", basePath, null );
+        stream = load.wrap( stream );
+        
         AssetFolder colladaFile = new AssetFolder( basePath );
         
         try
         {
-            JAGTLog.debug( "TT] Parsing..." );
+            LOG.debug( "TT] Parsing..." );
             JAGTLog.increaseIndentation();
             
             long l1 = System.nanoTime();
@@ -117,17 +125,19 @@ public class COLLADALoader
             }
             
             long l2 = System.nanoTime();
-            JAGTLog.debug( "TT] Took ", ( ( l2 - l1 ) / 1000000 ), " milliseconds to parse" );
+            LOG.debug( "TT] Took ", ( ( l2 - l1 ) / 1000000 ), " milliseconds to parse" );
             
             JAGTLog.decreaseIndentation();
             
-            JAGTLog.debug( "--] This is a COLLADA ", collada.version, " file" );
-            JAGTLog.debug( "--] Note that the loader don't care whether it's 1.4.0 or 1.4.1, though",
+            LOG.debug( "--] This is a COLLADA ", collada.version, " file" );
+            LOG.debug( "--] Note that the loader don't care whether it's 1.4.0 or 1.4.1, though",
                            "\n the COLLADA schema used for parsing is the for 1.4.1, tests for development",
                            "\n have been done with 1.4.0 files exported by Blender (Illusoft script)"
                          );
             
-            JAGTLog.debug( "TT] Exploring libraries..." );
+            LOG.debug( "TT] Exploring libraries..." );
+            
+            load.enterPhase( LoadPhase.CONVERT );
             
             JAGTLog.increaseIndentation();
             
@@ -136,7 +146,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryGeometries libraryGeometries : libraryGeometriesList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryGeometries ! We know that !" );
+                    LOG.debug( "CC] Found LibraryGeometries ! We know that !" );
                     JAGTLog.increaseIndentation();
                     LibraryGeometriesLoader.loadLibraryGeometries( colladaFile, libraryGeometries );
                     JAGTLog.decreaseIndentation();
@@ -148,7 +158,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryControllers libraryControllers : libraryControllersList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryControllers ! Investigating... !" );
+                    LOG.debug( "CC] Found LibraryControllers ! Investigating... !" );
                     JAGTLog.increaseIndentation();
                     LibraryControllersLoader.loadLibraryControllers( colladaFile, libraryControllers );
                     JAGTLog.decreaseIndentation();
@@ -160,7 +170,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryEffects libraryEffects : libraryEffectsList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryEffects ! Investigating... !" );
+                    LOG.debug( "CC] Found LibraryEffects ! Investigating... !" );
                     JAGTLog.increaseIndentation();
                     LibraryEffectsLoader.loadLibraryEffects( colladaFile, libraryEffects );
                     JAGTLog.decreaseIndentation();
@@ -172,7 +182,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryImages libraryImages : libraryImagesList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryImages ! We know that !" );
+                    LOG.debug( "CC] Found LibraryImages ! We know that !" );
                     JAGTLog.increaseIndentation();
                     LibraryImagesLoader.loadLibraryImages( colladaFile, libraryImages );
                     JAGTLog.decreaseIndentation();
@@ -184,7 +194,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryVisualScenes libraryVisualScenes : libraryVisualScenesList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryVisualScenes ! Investigating... !" );
+                    LOG.debug( "CC] Found LibraryVisualScenes ! Investigating... !" );
                     JAGTLog.increaseIndentation();
                     LibraryVisualScenesLoader.loadLibraryVisualScenes( colladaFile, libraryVisualScenes, collada.asset.getUpVector() );
                     JAGTLog.decreaseIndentation();
@@ -196,7 +206,7 @@ public class COLLADALoader
             {
                 for ( XMLLibraryMaterials libraryMaterials : libraryMaterialsList )
                 {
-                    JAGTLog.debug( "CC] Found LibraryMaterials ! We know that !" );
+                    LOG.debug( "CC] Found LibraryMaterials ! We know that !" );
                     JAGTLog.increaseIndentation();
                     LibraryMaterialsLoader.loadLibraryMaterials( colladaFile, libraryMaterials );
                     JAGTLog.decreaseIndentation();
@@ -208,7 +218,7 @@ public class COLLADALoader
             {
             	for ( XMLLibraryAnimations libraryAnimations : libraryAnimationsList )
             	{
-            		JAGTLog.debug( "CC] Found LibraryAnimations ! We should know that !" );
+            		LOG.debug( "CC] Found LibraryAnimations ! We should know that !" );
                     JAGTLog.increaseIndentation();
                     LibraryAnimationsLoader.loadLibraryAnimations( colladaFile, libraryAnimations );
                     JAGTLog.decreaseIndentation();
@@ -220,15 +230,20 @@ public class COLLADALoader
             //creates a simple model to perform the skeleton animation algorithm
             colladaFile.setModel( new ColladaProtoypeModel( colladaFile ) );
             
+            load.setSuccessful();
         }
         catch ( Exception e )
         {
             e.printStackTrace();
         }
+        finally
+        {
+            load.end();
+        }
         
         long t2 = System.nanoTime();
         
-        JAGTLog.debug( "TT] Took ", ( ( t2 - t1 ) / 1000L / 1000L ), " milliseconds to load." );
+        LOG.debug( "TT] Took ", ( ( t2 - t1 ) / 1000L / 1000L ), " milliseconds to load." );
         
         // We still don't know what we will return..
         return ( colladaFile );
@@ -47,6 +47,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLChannel;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryAnimations;
 import org.jagatoo.loaders.models.collada.stax.XMLChannel.ChannelType;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Library animations loader.
@@ -56,6 +57,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryAnimationsLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryAnimationsLoader.class );
+    
     private static final int MAX_ANIMATIONS_PER_BONE = 4;
     
     /**
@@ -110,7 +113,7 @@ public class LibraryAnimationsLoader
     public static void loadLibraryAnimations( AssetFolder colladaFile, XMLLibraryAnimations libAnim )
     {
         Collection<XMLAnimation> anims = libAnim.animations.values();
-        JAGTLog.debug( "There ", ( anims.size() > 1 ? "are" : "is" ), " ", anims.size(), " animation", ( anims.size() > 1 ? "s" : "" ), " in this file." );
+        LOG.debug( "There ", ( anims.size() > 1 ? "are" : "is" ), " ", anims.size(), " animation", ( anims.size() > 1 ? "s" : "" ), " in this file." );
         
         HashMap<String, COLLADAAction> colAnims = colladaFile.getLibraryAnimations().getAnimations();
         
@@ -126,7 +129,7 @@ public class LibraryAnimationsLoader
             Skeleton skeleton = iterator.next();
             //create new Action
             skeleton.resetIterator();
-            JAGTLog.debug( "Creating new COLLADAAction with ID of ", skeleton.getRootBone().getName(), "-action." );
+            LOG.debug( "Creating new COLLADAAction with ID of ", skeleton.getRootBone().getName(), "-action." );
             COLLADAAction currAction = new COLLADAAction( skeleton.getRootBone().getName() + "-action" );
             currAction.setSkeleton( skeleton );
             
@@ -138,7 +141,7 @@ public class LibraryAnimationsLoader
             {
                 Bone bone = it.next();
                 
-                JAGTLog.debug( "Loading animations for bone ", bone.getName() );
+                LOG.debug( "Loading animations for bone ", bone.getName() );
                 
                 JAGTLog.increaseIndentation();
                 
@@ -149,7 +152,7 @@ public class LibraryAnimationsLoader
                 {
                     if ( animCount < MAX_ANIMATIONS_PER_BONE && animation.getTargetBone().equals( bone.getName() ) )
                     {
-                        JAGTLog.debug( "Loading animation ", animation.name, " of type ", animation.getType(),
+                        LOG.debug( "Loading animation ", animation.name, " of type ", animation.getType(),
                                        ( animation.getType() == ChannelType.ROTATE ? ( " and of axis " + animation.getRotationAxis() ) : "" ) );
                         if ( animation.getType() == null )
                             animation.channels.get( 0 ).type = XMLChannel.ChannelType.SCALE;
@@ -159,7 +162,7 @@ public class LibraryAnimationsLoader
                             case TRANSLATE:
                                 
                                 // it's a translation key frame
-                                JAGTLog.debug( "Translation key frame..." );
+                                LOG.debug( "Translation key frame..." );
                                 for ( int j = 0, k = 0; j < animation.getInput().length; j++, k += 3 )
                                 {
                                     keyFrame = KeyFrame.buildPoint3fKeyFrame( animation.getInput()[j],
@@ -36,6 +36,7 @@ import org.jagatoo.loaders.models.collada.datastructs.controllers.SkeletalContro
 import org.jagatoo.loaders.models.collada.stax.XMLController;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryControllers;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for LibraryMaterials
@@ -44,6 +45,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryControllersLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryControllersLoader.class );
+    
     /**
      * Load LibraryControllers
      * 
@@ -60,7 +63,7 @@ public class LibraryControllersLoader
         {
             String source = controller.skin.source.replaceAll( " ", "_" );
             String id = controller.id;
-            JAGTLog.debug( "TT] Found controller with Id : \"", id, "\" and source : \"", source + "\"" );
+            LOG.debug( "TT] Found controller with Id : \"", id, "\" and source : \"", source + "\"" );
             colladaFile.getLibraryControllers().getControllers().put( id, new SkeletalController( colladaFile.getLibraryGeometries(), source, controller, colladaFile.getLibraryAnimations(), colladaFile.getLibraryVisualsScenes().getSkeletons().get( id.replace( "-skin", "" ) ) ) );
         }
     }
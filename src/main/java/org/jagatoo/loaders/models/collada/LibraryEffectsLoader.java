@@ -48,6 +48,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLProfileCOMMON_NewParam;
 import org.jagatoo.loaders.models.collada.stax.XMLSampler2D;
 import org.jagatoo.loaders.models.collada.stax.XMLSurface;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for LibraryEffects
@@ -56,6 +57,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryEffectsLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryEffectsLoader.class );
+    
     /**
      * Load LibraryEffects
      * 
@@ -71,7 +74,7 @@ public class LibraryEffectsLoader
         
         for ( XMLEffect effect : effects )
         {
-            JAGTLog.debug( "TT] Effect \"", effect.id, "\"" );
+            LOG.debug( "TT] Effect \"", effect.id, "\"" );
             JAGTLog.increaseIndentation();
             Effect colladaEffect = new Effect( effect.id );
             colLibEffects.getEffects().put( colladaEffect.getId(), colladaEffect );
@@ -79,7 +82,7 @@ public class LibraryEffectsLoader
             
             if ( effect.profileCOMMON != null )
             {
-                JAGTLog.debug( "TT] Profile COMMON : loading..." );
+                LOG.debug( "TT] Profile COMMON : loading..." );
                 JAGTLog.increaseIndentation();
                 colladaEffect.profiles.add(LibraryEffectsLoader.loadCommonProfile(effect, effect.profileCOMMON));
                 JAGTLog.decreaseIndentation();
@@ -87,12 +90,12 @@ public class LibraryEffectsLoader
             
             if ( effect.profileCG != null )
             {
-                JAGTLog.debug( "EE] CG shaders profile isn't implemented yet !" );
+                LOG.debug( "EE] CG shaders profile isn't implemented yet !" );
             }
             
             if ( effect.profileGLSL != null )
             {
-                JAGTLog.debug( "EE] GLSL shaders profile isn't implemented yet !" );
+                LOG.debug( "EE] GLSL shaders profile isn't implemented yet !" );
             }
             
             JAGTLog.decreaseIndentation();
@@ -142,21 +145,21 @@ public class LibraryEffectsLoader
                     XMLSurface surface = newParam.surface;
                     Surface colladaSurface = new Surface( newParam.sid );
                     colladaSurface.imageIds = new ArrayList<String>();
-                    JAGTLog.debug( "TT] Found surface ! (id = ", newParam.sid, ")" );
+                    LOG.debug( "TT] Found surface ! (id = ", newParam.sid, ")" );
                     JAGTLog.increaseIndentation();
                     
                     String imageId = surface.initFrom;
-                    JAGTLog.debug( "TT] Image id : ", imageId );
+                    LOG.debug( "TT] Image id : ", imageId );
                     colladaSurface.imageIds.add( imageId );
                     colladaProfile.getSurfaces().put( colladaSurface.getId(), colladaSurface );
                     JAGTLog.decreaseIndentation();
                 }
                 else if ( newParam.sampler2D != null )
                 {
-                    JAGTLog.debug( "TT] Found sampler ! (id = ", newParam.sid, ")" );
+                    LOG.debug( "TT] Found sampler ! (id = ", newParam.sid, ")" );
                     JAGTLog.increaseIndentation();
                     XMLSampler2D sampler2D = newParam.sampler2D;
-                    JAGTLog.debug( "TT] Sampler using source : ", sampler2D.source );
+                    LOG.debug( "TT] Sampler using source : ", sampler2D.source );
                     JAGTLog.decreaseIndentation();
                 }
             }
@@ -48,6 +48,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLMesh;
 import org.jagatoo.loaders.models.collada.stax.XMLSource;
 import org.jagatoo.loaders.models.collada.stax.XMLTriangles;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for LibraryGeometries
@@ -56,6 +57,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryGeometriesLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryGeometriesLoader.class );
+    
     /**
      * Loads LibraryGeometries.
      * 
@@ -70,12 +73,12 @@ public class LibraryGeometriesLoader
         LibraryGeometries colladaLibGeoms = colladaFile.getLibraryGeometries();
         
         Collection<XMLGeometry> geoms = libGeoms.geometries.values();
-        JAGTLog.debug( "There ", ( geoms.size() > 1 ? "are" : "is" ), " ", geoms.size(), " geometr", ( geoms.size() > 1 ? "ies" : "y" ), " in this file." );
+        LOG.debug( "There ", ( geoms.size() > 1 ? "are" : "is" ), " ", geoms.size(), " geometr", ( geoms.size() > 1 ? "ies" : "y" ), " in this file." );
         
         int i = 0;
         for ( XMLGeometry geom : geoms )
         {
-            JAGTLog.debug( "Handling geometry ", i++ );
+            LOG.debug( "Handling geometry ", i++ );
 
             ArrayList<Geometry> loadedGeom = LibraryGeometriesLoader.loadGeom( geom );
             for (int j=0; j< loadedGeom.size(); j++)
@@ -120,8 +123,8 @@ public class LibraryGeometriesLoader
 	            // Try triangles
 	            if ( tris != null )
 	            {
-	                JAGTLog.debug( "TT] Primitives of type triangles" );
-	                JAGTLog.debug( "TT] Polygon count = ", tris.count );
+	                LOG.debug( "TT] Primitives of type triangles" );
+	                LOG.debug( "TT] Polygon count = ", tris.count );
 
 
 	                colGeom = LibraryGeometriesLoader.loadTriangles( geom, tris, sourcesMap );
@@ -141,8 +144,8 @@ public class LibraryGeometriesLoader
         /*
         else if ( !polys.isEmpty() )
         {
-            JAGTLog.debug( "TT] Primitives of type polygons" );
-            JAGTLog.debug( "TT] Polygon count = ", polys.count );
+            LOG.debug( "TT] Primitives of type polygons" );
+            LOG.debug( "TT] Polygon count = ", polys.count );
             
             colGeom = loadPolygons( geom, polys, sourcesMap );
         }
@@ -154,7 +157,7 @@ public class LibraryGeometriesLoader
         // Well, no luck
         else
         {
-            JAGTLog.debug( "EE] Can't load object : ", geom.name,
+            LOG.debug( "EE] Can't load object : ", geom.name,
                            " because couldn't find a supported element type...",
                            "\n (note that the only well supported type is triangles, so e.g.",
                            "\n in Blender, activate the appropriate option in the export script"
@@ -185,13 +188,13 @@ public class LibraryGeometriesLoader
             if ( verticesSource.equals( source.id ) )
             {
                 sourcesMap.put( mesh.vertices.id, source );
-                JAGTLog.debug( "TT] Source ", i, " ID = ", mesh.vertices.id );
+                LOG.debug( "TT] Source ", i, " ID = ", mesh.vertices.id );
             }
             else
             {
                 // FIXME: Are there other special cases ?
                 sourcesMap.put( source.id, source );
-                JAGTLog.debug( "TT] Source ", i, " ID = ", source.id );
+                LOG.debug( "TT] Source ", i, " ID = ", source.id );
             }
         }
         
@@ -302,12 +305,12 @@ public class LibraryGeometriesLoader
         int[] uvOffsets = new int[ inputs.size() ];
         int numUVOffsets = 0;
 
-        JAGTLog.debug( "TT] Parsing semantics...." );
+        LOG.debug( "TT] Parsing semantics...." );
 
         for ( int j = 0; j < inputs.size(); j++ )
         {
             XMLInput input = inputs.get( j );
-            JAGTLog.debug( "TT] Input semantic ", input.semantic, ", offset ", input.offset, ", from source = ", input.source );
+            LOG.debug( "TT] Input semantic ", input.semantic, ", offset ", input.offset, ", from source = ", input.source );
 
             if ( input.offset > meshDataInfo.maxOffset )
             {
@@ -340,7 +343,7 @@ public class LibraryGeometriesLoader
             }
             else
             {
-                JAGTLog.debug( "EE] We don't know that semantic :", input.semantic, " ! Ignoring.." );
+                LOG.debug( "EE] We don't know that semantic :", input.semantic, " ! Ignoring.." );
             }
         }
 
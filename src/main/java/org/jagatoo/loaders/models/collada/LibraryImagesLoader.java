@@ -37,6 +37,7 @@ import org.jagatoo.loaders.models.collada.datastructs.images.LibraryImages;
 import org.jagatoo.loaders.models.collada.stax.XMLImage;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryImages;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for LibraryImages
@@ -45,6 +46,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryImagesLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryImagesLoader.class );
+    
     /**
      * Loads LibraryImages.
      * 
@@ -63,7 +66,7 @@ public class LibraryImagesLoader
         JAGTLog.increaseIndentation();
         for ( XMLImage image : images )
         {
-            JAGTLog.debug( "TT] Found image [", image.id, ":", image.initFrom, "]" );
+            LOG.debug( "TT] Found image [", image.id, ":", image.initFrom, "]" );
             colImages.put( image.id, image.initFrom );
         }
         
@@ -38,6 +38,7 @@ import org.jagatoo.loaders.models.collada.datastructs.materials.Material;
 import org.jagatoo.loaders.models.collada.stax.XMLLibraryMaterials;
 import org.jagatoo.loaders.models.collada.stax.XMLMaterial;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Loader for LibraryMaterials
@@ -46,6 +47,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class LibraryMaterialsLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryMaterialsLoader.class );
+    
     /**
      * Load LibraryMaterials
      * 
@@ -65,7 +68,7 @@ public class LibraryMaterialsLoader
         for ( XMLMaterial material : materials )
         {
             Material colMaterial = new Material( colladaFile, material.id, material.instanceEffect.url );
-            JAGTLog.debug( "TT] Found material [", colMaterial.getId(), ":", colMaterial.getEffect(), "]" );
+            LOG.debug( "TT] Found material [", colMaterial.getId(), ":", colMaterial.getEffect(), "]" );
             colMaterials.put( colMaterial.getId(), colMaterial );
         }
         
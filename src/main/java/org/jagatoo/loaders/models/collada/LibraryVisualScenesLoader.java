@@ -52,6 +52,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLLibraryVisualScenes;
 import org.jagatoo.loaders.models.collada.stax.XMLNode;
 import org.jagatoo.loaders.models.collada.stax.XMLVisualScene;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.vecmath2.Vector3f;
 
 /**
@@ -61,6 +62,8 @@ import org.openmali.vecmath2.Vector3f;
  */
 public class LibraryVisualScenesLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( LibraryVisualScenesLoader.class );
+    
     /**
      * Load LibraryVisualScenes
      * 
@@ -82,7 +85,7 @@ public class LibraryVisualScenesLoader
             Scene colScene = new Scene( visualScene.id, visualScene.name );
             scenes.put( colScene.getId(), colScene );
 
-            JAGTLog.debug( "TT] Found scene [", colScene.getId(), ":", colScene.getName(), "]" );
+            LOG.debug( "TT] Found scene [", colScene.getId(), ":", colScene.getName(), "]" );
             JAGTLog.increaseIndentation();
             for ( XMLNode node : visualScene.nodes.values() )
             {
@@ -90,7 +93,7 @@ public class LibraryVisualScenesLoader
 
                 if ( colNode != null && node.type != XMLNode.Type.JOINT )
                 {
-                	JAGTLog.debug( "TT] Successfully adding colNode ", colNode.getId() );
+                	LOG.debug( "TT] Successfully adding colNode ", colNode.getId() );
                     colScene.getNodes().put( colNode.getId(), colNode );
                 }
             }
@@ -103,7 +106,7 @@ public class LibraryVisualScenesLoader
 
     static Node processNode( XMLNode node, LibraryVisualScenes colLibVisualScenes, AssetFolder colladaFile, Vector3f upVector )
     {
-        JAGTLog.debug( "TT] Found node [", node.id, ":", node.name, "]" );
+        LOG.debug( "TT] Found node [", node.id, ":", node.name, "]" );
         JAGTLog.increaseIndentation();
 
         Node colNode = new Node( colladaFile, node.id, node.name, new MatrixTransform( node.matrix.matrix4f ) );
@@ -115,11 +118,11 @@ public class LibraryVisualScenesLoader
                 colNode.addChild( processNode( child, colLibVisualScenes, colladaFile, upVector ) );
             }
 
-            JAGTLog.debug( "TT] Alright, it's a basic node" );
+            LOG.debug( "TT] Alright, it's a basic node" );
 
             if ( node.instanceGeometries != null && !node.instanceGeometries.isEmpty() )
             {
-                JAGTLog.debug( "TT] A geometry node!" );
+                LOG.debug( "TT] A geometry node!" );
 
                 for ( XMLInstanceGeometry instanceGeometry: node.instanceGeometries )
                 {
@@ -128,7 +131,7 @@ public class LibraryVisualScenesLoader
             }
             else if ( node.instanceControllers != null && !node.instanceControllers.isEmpty() )
             {
-                JAGTLog.debug( "TT] A controller node!" );
+                LOG.debug( "TT] A controller node!" );
 
                 for ( XMLInstanceController instanceController: node.instanceControllers )
                 {
@@ -139,7 +142,7 @@ public class LibraryVisualScenesLoader
                     {
                         final SkeletalController skelController = (SkeletalController)controller;
 
-                        JAGTLog.debug( "Wow! It's a Skeletal Controller Node!" );
+                        LOG.debug( "Wow! It's a Skeletal Controller Node!" );
                         skelController.setSkeleton( colLibVisualScenes.getSkeletons().get( instanceController.skeleton ) );
                         skelController.setDestinationMesh( colladaFile.getLibraryGeometries().getGeometries().get( skelController.getSourceMeshId() ).get(0) );
                     }
@@ -148,7 +151,7 @@ public class LibraryVisualScenesLoader
         }
         else if ( node.type == XMLNode.Type.JOINT )
         {
-            JAGTLog.debug( "TT] Alright, it's a skeleton node" );
+            LOG.debug( "TT] Alright, it's a skeleton node" );
 
             Skeleton skeleton = SkeletonLoader.loadSkeleton( node, upVector );
             colLibVisualScenes.getSkeletons().put( node.id, skeleton );
@@ -168,7 +171,7 @@ public class LibraryVisualScenesLoader
         }
         else
         {
-            JAGTLog.debug( "TT] Node is of type : ", node.type, " we don't support specific nodes yet..." );
+            LOG.debug( "TT] Node is of type : ", node.type, " we don't support specific nodes yet..." );
         }
 
         JAGTLog.decreaseIndentation();
@@ -205,7 +208,7 @@ public class LibraryVisualScenesLoader
     //            }
     //            else
     //            {
-    //                JAGTLog.debug( "TT] Several materials for the same geometry instance ! Skipping...." );
+    //                LOG.debug( "TT] Several materials for the same geometry instance ! Skipping...." );
     //            }
             }
         }
@@ -246,7 +249,7 @@ public class LibraryVisualScenesLoader
             }
             else
             {
-                JAGTLog.debug( "TT] Several materials for the same controller instance ! Skipping...." );
+                LOG.debug( "TT] Several materials for the same controller instance ! Skipping...." );
             }
         }
 
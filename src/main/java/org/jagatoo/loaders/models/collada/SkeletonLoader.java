@@ -35,6 +35,7 @@ import org.jagatoo.loaders.models.collada.datastructs.animation.Bone;
 import org.jagatoo.loaders.models.collada.datastructs.animation.Skeleton;
 import org.jagatoo.loaders.models.collada.stax.XMLNode;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.FastMath;
 import org.openmali.vecmath2.Matrix4f;
 import org.openmali.vecmath2.Point3f;
@@ -48,6 +49,8 @@ import org.openmali.vecmath2.Vector3f;
  */
 public class SkeletonLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( SkeletonLoader.class );
+    
     /**
      * Loads a Joint/Bone, and its children.
      * 
@@ -63,8 +66,8 @@ public class SkeletonLoader
         
         if ( node.childrenList == null || ( node.childrenList != null && node.childrenList.isEmpty() ) )
         {
-            JAGTLog.debug( "=====================================" );
-            JAGTLog.debug( "[[Bone]] " + bone.getName() );
+            LOG.debug( "=====================================" );
+            LOG.debug( "[[Bone]] " + bone.getName() );
         }
         else
         {
@@ -72,7 +75,7 @@ public class SkeletonLoader
              * Get the node tip
              */
             Matrix4f colMatrix = node.childrenList.get( 0 ).matrix.matrix4f;
-            JAGTLog.debug( "ColMatrix = ", colMatrix );
+            LOG.debug( "ColMatrix = ", colMatrix );
             Point3f nodeTip = new Point3f(
                     parentTip.getX() + colMatrix.get( 0, 3 ),
                     parentTip.getY() + colMatrix.get( 1, 3 ),
@@ -99,18 +102,18 @@ public class SkeletonLoader
             Vector3f parentVecW = new Vector3f();
             parentVecW.sub( parentTipW, parentRootW );
             
-            JAGTLog.debug( "=====================================" );
-            JAGTLog.debug( "[[Bone]] ", bone.getName() );
-            JAGTLog.debug( "parentRoot = ", parentRoot );
-            JAGTLog.debug( "parentTip = ", parentTip );
-            JAGTLog.debug( "nodeTip = ", nodeTip );
-            JAGTLog.debug( "---" );
-            JAGTLog.debug( "parentRootW = ", parentRootW );
-            JAGTLog.debug( "parentTipW = ", parentTipW );
-            JAGTLog.debug( "nodeTipW = ", nodeTipW );
-            JAGTLog.debug( "---" );
-            JAGTLog.debug( "parentVecW = ", parentVecW );
-            JAGTLog.debug( "nodeVecW = ", nodeVecW );
+            LOG.debug( "=====================================" );
+            LOG.debug( "[[Bone]] ", bone.getName() );
+            LOG.debug( "parentRoot = ", parentRoot );
+            LOG.debug( "parentTip = ", parentTip );
+            LOG.debug( "nodeTip = ", nodeTip );
+            LOG.debug( "---" );
+            LOG.debug( "parentRootW = ", parentRootW );
+            LOG.debug( "parentTipW = ", parentTipW );
+            LOG.debug( "nodeTipW = ", nodeTipW );
+            LOG.debug( "---" );
+            LOG.debug( "parentVecW = ", parentVecW );
+            LOG.debug( "nodeVecW = ", nodeVecW );
             
             // Retrieve length now, we'll normalize just after
             float length = nodeVecW.length();
@@ -161,11 +164,11 @@ public class SkeletonLoader
             bone.setBindRotation( quat );
             bone.setLength( length );
             
-            JAGTLog.debug( "---" );
-            JAGTLog.debug( "angle = ", FastMath.toDeg( angle ) );
-            JAGTLog.debug( "axis = ", axis );
-            JAGTLog.debug( "length = ", length );
-            JAGTLog.debug( "quat = ", quat );
+            LOG.debug( "---" );
+            LOG.debug( "angle = ", FastMath.toDeg( angle ) );
+            LOG.debug( "axis = ", axis );
+            LOG.debug( "length = ", length );
+            LOG.debug( "quat = ", quat );
             
             for ( XMLNode child : node.childrenList )
             {
@@ -189,7 +192,7 @@ public class SkeletonLoader
         Matrix4f localToWorld;
         // Get the localToWorld matrix
         localToWorld = rootNode.matrix.matrix4f;
-        JAGTLog.debug( "LocalToWorld = ", localToWorld );
+        LOG.debug( "LocalToWorld = ", localToWorld );
         
         // Get the root bone root position
         skeletonPos = new Point3f( localToWorld.m03(), localToWorld.m13(), localToWorld.m23() );
@@ -35,6 +35,7 @@ import org.jagatoo.loaders.models.collada.datastructs.animation.KeyFrame;
 import org.jagatoo.loaders.models.collada.datastructs.animation.KeyFrameTuple3f;
 import org.jagatoo.loaders.models.collada.datastructs.animation.KeyFrameQuat4f;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.vecmath2.Quaternion4f;
 import org.openmali.vecmath2.Tuple3f;
 import org.openmali.vecmath2.util.Interpolation;
@@ -48,6 +49,8 @@ import org.openmali.vecmath2.util.Interpolation;
  */
 public class KeyFrameComputer
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( KeyFrameComputer.class );
+    
     /**
      * Interpolates a Tuple3f between two keyframes.
      * 
@@ -86,7 +89,7 @@ public class KeyFrameComputer
              * Case 3 : we're between two keyframes
              * Solution : interpolate
              */
-            JAGTLog.debug( "Interpolating..." );
+            LOG.debug( "Interpolating..." );
             KeyFrameTuple3f prevFrame = keyFrames.get( frame - 1 );
             KeyFrameTuple3f nextFrame = keyFrames.get( frame );
             
@@ -110,7 +113,7 @@ public class KeyFrameComputer
     public static void computeQuaternion4f( long currentTime, List<KeyFrameQuat4f> keyFrames, Quaternion4f toInterpolate )
     {
         int frame = KeyFrame.searchNextFrame( keyFrames, currentTime );
-        JAGTLog.debug( "Frame = ", frame );
+        LOG.debug( "Frame = ", frame );
         
         if ( frame == 0 )
         {
@@ -30,6 +30,7 @@
 package org.jagatoo.loaders.models.collada.datastructs.controllers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -44,12 +45,12 @@ import org.jagatoo.loaders.models.collada.datastructs.geometries.Geometry;
 import org.jagatoo.loaders.models.collada.datastructs.geometries.GeometryProvider;
 import org.jagatoo.loaders.models.collada.datastructs.geometries.LibraryGeometries;
 import org.jagatoo.loaders.models.collada.datastructs.geometries.Mesh;
-import org.jagatoo.loaders.models.collada.datastructs.geometries.MeshSources;
 import org.jagatoo.loaders.models.collada.datastructs.geometries.TrianglesGeometry;
 import org.jagatoo.loaders.models.collada.stax.XMLController;
 import org.jagatoo.loaders.models.collada.stax.XMLSkin;
 import org.jagatoo.logging.JAGTLog;
-import org.openmali.vecmath2.Point3f;
+import org.jagatoo.logging.LogHandle;
+import org.openmali.vecmath2.Matrix4f;
 
 /**
  * A COLLADA Skeletal Controller. It computes mesh
@@ -62,6 +63,8 @@ import org.openmali.vecmath2.Point3f;
  */
 public class SkeletalController extends Controller implements AnimatableModel
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( SkeletalController.class );
+    
     /** The ID of the source mesh */
     private final String sourceMeshId;
 
@@ -169,178 +172,422 @@ public class SkeletalController extends Controller implements AnimatableModel
         playing = true;
     }
 
-    private static final void readVertexCoord( final float[] vertexCoordData, int dataOffset, Point3f coord )
-    {
-        coord.set( vertexCoordData[dataOffset + 0],
-                   vertexCoordData[dataOffset + 1],
-                   vertexCoordData[dataOffset + 2]
-                 );
-    }
+    // // // // // // SKINNING PART - BEGINS// // // // // //
 
-    private static final void writeVertexCoord( Point3f coord, final float[] vertexCoordData, int dataOffset )
-    {
-        vertexCoordData[dataOffset + 0] = coord.getX();
-        vertexCoordData[dataOffset + 1] = coord.getY();
-        vertexCoordData[dataOffset + 2] = coord.getZ();
-    }
+    /**
+     * Size of one joint matrix (3 rows of 4 floats)
+     */
+    private static final int MATRIX_SIZE = 12;
 
-    @Override
-    public Geometry updateDestinationGeometry( long currTime )
+    /**
+     * The joint source IDs of the skin. Joint -1 is the bind shape matrix.
+     */
+    private String[] jointSourceIds = null;
+
+    /**
+     * Influences of vertex i are [influenceOffsets[i], influenceOffsets[i + 1])
+     */
+    private int[] influenceOffsets = null;
+    private int[] influenceJoints = null;
+    private float[] influenceWeights = null;
+
+    /**
+     * For each normal the vertex, whose influences it is skinned with (-1 for none)
+     */
+    private int[] normalVertices = null;
+
+    /**
+     * The skeleton, {@link #jointBones} have been resolved from
+     */
+    private Skeleton jointsSkeleton = null;
+    private Bone[] jointBones = null;
+
+    /**
+     * Row-major 3x4 matrices of all joints and the bind shape matrix (last)
+     */
+    private float[] jointMatrices = null;
+
+    /**
+     * Packs the skin's influences into flat arrays. This is done once.
+     * The weights of each vertex are normalized to sum up to one.
+     *
+     * @param skin
+     * @param numVertices
+     */
+    private void buildInfluences( XMLSkin skin, int numVertices )
     {
-        // TODO: once this method works well, we should optimize all the variables declarations
+        jointSourceIds = skin.getJointsSource().idrefArray.idrefs;
+        final float[] weightsData = skin.getWeightsSource().floatArray.floats;
+        final int[] vcount = skin.vertexWeights.vcount.ints;
+        final int[] v = skin.vertexWeights.v.ints;
+
+        influenceOffsets = new int[ numVertices + 1 ];
+        int numInfluences = 0;
+        for ( int i = 0; i < numVertices; i++ )
+        {
+            influenceOffsets[ i ] = numInfluences;
+            if ( i < vcount.length )
+                numInfluences += vcount[ i ];
+        }
+        influenceOffsets[ numVertices ] = numInfluences;
 
-        if ( sourceGeom == null )
+        influenceJoints = new int[ numInfluences ];
+        influenceWeights = new float[ numInfluences ];
+
+        int vIndex = 0;
+        for ( int i = 0; i < numVertices && i < vcount.length; i++ )
         {
-            sourceGeom = getLibraryGeometries().getGeometries().get( sourceMeshId ).get(0);
+            final int first = influenceOffsets[ i ];
+            float sum = 0f;
 
-            if ( !( sourceGeom instanceof TrianglesGeometry ) )
+            for ( int j = 0; j < vcount[ i ]; j++ )
             {
-                throw new Error( "Only TrianglesGeometry is supported for now ! " +
-                                 "Make sure, your model is triangulated when exporting from your modeling tool." );
+                influenceJoints[ first + j ] = v[ vIndex + j * 2 + 0 ];
+                influenceWeights[ first + j ] = weightsData[ v[ vIndex + j * 2 + 1 ] ];
+                sum += influenceWeights[ first + j ];
             }
-            else
+
+            if ( ( sum > 0f ) && ( sum != 1f ) )
             {
-                this.destinationGeometry = sourceGeom.copy();
+                for ( int j = 0; j < vcount[ i ]; j++ )
+                {
+                    influenceWeights[ first + j ] /= sum;
+                }
             }
+
+            vIndex += vcount[ i ] * 2;
         }
 
-    	if ( !playing )
-    	    return( this.destinationGeometry );
+        jointMatrices = new float[ ( jointSourceIds.length + 1 ) * MATRIX_SIZE ];
+        final int bindShapeOffset = jointSourceIds.length * MATRIX_SIZE;
+        if ( skin.bindShapeMatrix != null )
+        {
+            writeMatrix( skin.bindShapeMatrix.matrix4f, jointMatrices, bindShapeOffset );
+        }
+        else
+        {
+            // no bind_shape_matrix means identity
+            jointMatrices[ bindShapeOffset +  0 ] = 1f;
+            jointMatrices[ bindShapeOffset +  5 ] = 1f;
+            jointMatrices[ bindShapeOffset + 10 ] = 1f;
+        }
+    }
 
-        if ( skeleton == null )
+    /**
+     * Maps each normal to the vertex of the first triangle corner, that uses it.
+     */
+    private void buildNormalVertices( Mesh mesh, int numNormals )
+    {
+        normalVertices = new int[ numNormals ];
+        Arrays.fill( normalVertices, -1 );
+
+        final int[] vertexIndices = mesh.getVertexIndices();
+        final int[] normalIndices = mesh.getNormalIndices();
+
+        if ( normalIndices == null )
         {
-            JAGTLog.debug( "Hey ! We haven't been initialized yet... Darn." );
+            // normals are indexed like the vertices
+            for ( int i = 0; i < numNormals; i++ )
+            {
+                normalVertices[ i ] = i;
+            }
         }
         else
         {
-            JAGTLog.debug( "Our skeleton root bone is named \"",
-                           skeleton.getRootBone().getName(), "\"" );
+            for ( int c = 0; c < normalIndices.length; c++ )
+            {
+                if ( normalVertices[ normalIndices[ c ] ] == -1 )
+                    normalVertices[ normalIndices[ c ] ] = vertexIndices[ c ];
+            }
+        }
+    }
 
-            // deltaT to animate
-            currentTime = currTime;
+    private static final void writeMatrix( Matrix4f m, float[] matrices, int offset )
+    {
+        matrices[ offset +  0 ] = m.m00();
+        matrices[ offset +  1 ] = m.m01();
+        matrices[ offset +  2 ] = m.m02();
+        matrices[ offset +  3 ] = m.m03();
+        matrices[ offset +  4 ] = m.m10();
+        matrices[ offset +  5 ] = m.m11();
+        matrices[ offset +  6 ] = m.m12();
+        matrices[ offset +  7 ] = m.m13();
+        matrices[ offset +  8 ] = m.m20();
+        matrices[ offset +  9 ] = m.m21();
+        matrices[ offset + 10 ] = m.m22();
+        matrices[ offset + 11 ] = m.m23();
+    }
 
-            // Translation : only for the skeleton
+    /**
+     * Captures the current absolute transformations of all joints.
+     * This must be called on the thread, that animates the skeleton,
+     * before {@link #skinVertices(int, int)} and {@link #skinNormals(int, int)}.
+     *
+     * @return false, if there is nothing to skin (yet).
+     */
+    public boolean prepareSkinning()
+    {
+        if ( ( sourceGeom == null ) || ( skeleton == null ) || ( destinationGeometry == null ) )
+            return( false );
 
-            KeyFrameComputer.computeTuple3f( currentTime, skeleton.transKeyFrames, skeleton.relativeTranslation );
+        final Mesh mesh = sourceGeom.getMesh();
 
-            if ( currentAction == null )
-                return( destinationGeometry );
+        if ( influenceOffsets == null )
+        {
+            buildInfluences( this.getController().skin, mesh.getSources().getVertices().length / 3 );
+        }
 
-            if ( !bonesPrepared )
+        if ( ( normalVertices == null ) && ( mesh.getSources().getNormals() != null ) )
+        {
+            buildNormalVertices( mesh, mesh.getSources().getNormals().length / 3 );
+        }
+
+        if ( jointsSkeleton != skeleton )
+        {
+            jointBones = new Bone[ jointSourceIds.length ];
+            for ( int j = 0; j < jointSourceIds.length; j++ )
             {
-            	currentAction.prepareBones();
-                this.skeleton = currentAction.getSkeleton();
+                jointBones[ j ] = skeleton.getBoneBySourceId( jointSourceIds[ j ] );
             }
+            jointsSkeleton = skeleton;
+        }
 
-            // Loop through all bones...
-            boneIt = this.skeleton;
-            for ( Bone bone : boneIt )
-            {
-                // If there is no keyframe, don't do any transformations.
-                if ( !bone.hasKeyFrames() )
-                {
-                    JAGTLog.debug( "no keyframes!" );
-                    bone.setNoRelativeMovement();
-                    continue;
-                }
+        for ( int j = 0; j < jointBones.length; j++ )
+        {
+            if ( jointBones[ j ] != null )
+                writeMatrix( jointBones[ j ].getAbsoluteTransformation(), jointMatrices, j * MATRIX_SIZE );
+        }
 
-                JAGTLog.debug( "Keyframes" );
+        return( true );
+    }
 
-                // Scaling
-                KeyFrameComputer.computeTuple3f( currentTime, bone.scaleKeyFrames, bone.relativeScaling );
+    /**
+     * Returns the offset of the matrix of the given joint index (-1 for the bind shape).
+     */
+    private final int getMatrixOffset( int joint )
+    {
+        return( ( joint == -1 ? jointSourceIds.length : joint ) * MATRIX_SIZE );
+    }
 
-                // Rotation
-                KeyFrameComputer.computeQuaternion4f( currentTime, bone.rotKeyFrames, bone.relativeRotation );
+    /**
+     * Skins the vertex positions [start, end) from the source geometry into the
+     * destination geometry using the matrices captured by {@link #prepareSkinning()}.
+     * Disjoint ranges may be skinned concurrently, also off the render thread.
+     * Vertices without influences keep their positions.
+     *
+     * @param start
+     * @param end
+     */
+    public void skinVertices( int start, int end )
+    {
+        final float[] src = sourceGeom.getMesh().getSources().getVertices();
+        final float[] trg = destinationGeometry.getMesh().getSources().getVertices();
+        final float[] matrices = jointMatrices;
+
+        for ( int vi = start; vi < end; vi++ )
+        {
+            final int i0 = influenceOffsets[ vi ];
+            final int i1 = influenceOffsets[ vi + 1 ];
+
+            // Check if there is any influence!
+            if ( i0 == i1 )
+                continue;
+
+            final int vi3 = vi * 3;
+            final float px = src[ vi3 + 0 ];
+            final float py = src[ vi3 + 1 ];
+            final float pz = src[ vi3 + 2 ];
+
+            float x = 0f, y = 0f, z = 0f;
+            for ( int i = i0; i < i1; i++ )
+            {
+                final int m = getMatrixOffset( influenceJoints[ i ] );
+                final float weight = influenceWeights[ i ];
+
+                x += weight * ( matrices[ m + 0 ] * px + matrices[ m + 1 ] * py + matrices[ m +  2 ] * pz + matrices[ m +  3 ] );
+                y += weight * ( matrices[ m + 4 ] * px + matrices[ m + 5 ] * py + matrices[ m +  6 ] * pz + matrices[ m +  7 ] );
+                z += weight * ( matrices[ m + 8 ] * px + matrices[ m + 9 ] * py + matrices[ m + 10 ] * pz + matrices[ m + 11 ] );
             }
 
-            // Update absolutes transitions for all bones.
-            skeleton.updateAbsolutes();
+            trg[ vi3 + 0 ] = x;
+            trg[ vi3 + 1 ] = y;
+            trg[ vi3 + 2 ] = z;
         }
+    }
 
-        /*
-         * Now I need to to apply transitions to every vertex. I need the
-         * following information and I don't know where
-         *     1) The mesh I am animating is
-         *     2) The triangles of that mesh are
-         *     3) The vertices, 3 for each triangle, are
-         *     4) The normals 3 for each triangle are.
-         *
-         * I suppose, there should be something in Geometry. The only place,
-         * I could find something is Mesh. It has the vertices and normals
-         * indices, but not the triangles.
-         */
+    /**
+     * Skins the normals [start, end) from the source geometry into the
+     * destination geometry (rotation only, re-normalized).
+     * Disjoint ranges may be skinned concurrently, also off the render thread.
+     *
+     * @param start
+     * @param end
+     */
+    public void skinNormals( int start, int end )
+    {
+        final float[] src = sourceGeom.getMesh().getSources().getNormals();
+        final float[] trg = destinationGeometry.getMesh().getSources().getNormals();
+        final float[] matrices = jointMatrices;
 
-        /*
-         * Apply the transitions to every vertex using the bones' weights.
-         */
-        //TrianglesGeometry triMesh = (TrianglesGeometry)sourceGeom;
+        if ( ( src == null ) || ( trg == null ) )
+            return;
 
-        // current mesh
-        Mesh mesh = sourceGeom.getMesh();
+        for ( int ni = start; ni < end; ni++ )
+        {
+            final int vi = normalVertices[ ni ];
 
-        // vertices and normals sources
-        MeshSources sources = mesh.getSources();
+            if ( vi < 0 )
+                continue;
 
-        // skin info
-        XMLSkin skin = this.getController().skin;
+            final int i0 = influenceOffsets[ vi ];
+            final int i1 = influenceOffsets[ vi + 1 ];
 
-        /*
-         * 1. transform the normals, only rotation
-         * 2. transform the vertex, rotation and translation
-         */
+            if ( i0 == i1 )
+                continue;
 
-        destinationGeometry = sourceGeom.copy();
+            final int ni3 = ni * 3;
+            final float nx = src[ ni3 + 0 ];
+            final float ny = src[ ni3 + 1 ];
+            final float nz = src[ ni3 + 2 ];
 
-        MeshSources targets = destinationGeometry.getMesh().getSources();
+            float x = 0f, y = 0f, z = 0f;
+            for ( int i = i0; i < i1; i++ )
+            {
+                final int m = getMatrixOffset( influenceJoints[ i ] );
+                final float weight = influenceWeights[ i ];
+
+                x += weight * ( matrices[ m + 0 ] * nx + matrices[ m + 1 ] * ny + matrices[ m +  2 ] * nz );
+                y += weight * ( matrices[ m + 4 ] * nx + matrices[ m + 5 ] * ny + matrices[ m +  6 ] * nz );
+                z += weight * ( matrices[ m + 8 ] * nx + matrices[ m + 9 ] * ny + matrices[ m + 10 ] * nz );
+            }
+
+            final float length = (float)Math.sqrt( x * x + y * y + z * z );
+            if ( length > 0f )
+            {
+                trg[ ni3 + 0 ] = x / length;
+                trg[ ni3 + 1 ] = y / length;
+                trg[ ni3 + 2 ] = z / length;
+            }
+        }
+    }
+
+    /**
+     * @return the number of vertices of the source geometry.
+     */
+    public int getNumVertices()
+    {
+        return( sourceGeom == null ? 0 : sourceGeom.getMesh().getSources().getVertices().length / 3 );
+    }
 
-        // This is a big test, still under construction.
-        final int numVertices = sources.getVertices().length / 3;
+    /**
+     * @return the number of normals of the source geometry.
+     */
+    public int getNumNormals()
+    {
+        if ( ( sourceGeom == null ) || ( sourceGeom.getMesh().getSources().getNormals() == null ) )
+            return( 0 );
 
-        skin.buildInfluences( skeleton, numVertices );
+        return( sourceGeom.getMesh().getSources().getNormals().length / 3 );
+    }
 
-        Point3f coord0 = Point3f.fromPool();
-        Point3f coordTrans = Point3f.fromPool();
-        Point3f coord1 = Point3f.fromPool();
+    // // // // // // SKINNING PART - ENDS// // // // // //
 
-        for ( int vi = 0; vi < numVertices; vi++ )
+    /**
+     * Animates the skeleton for the given time.
+     *
+     * @param currTime
+     *
+     * @return false, if there is no current action to skin with.
+     */
+    private boolean updateSkeleton( long currTime )
+    {
+        if ( skeleton == null )
         {
-            Influence[] influences = skin.getInfluencesForVertex( vi );
+            LOG.debug( "Hey ! We haven't been initialized yet... Darn." );
 
-            // Check if there is any influence!
-        	if ( influences.length <= 0 )
-        	    //return( destinationGeometry );
-        	    continue;
+            return( false );
+        }
 
-            final int vi3 = vi * 3;
+        // deltaT to animate
+        currentTime = currTime;
 
-            readVertexCoord( sources.getVertices(), vi3, coord0 );
+        // Translation : only for the skeleton
 
-            //skin.bindShapeMatrix.matrix4f.transform( coord0 );
+        KeyFrameComputer.computeTuple3f( currentTime, skeleton.transKeyFrames, skeleton.relativeTranslation );
 
-        	coord1.setZero();
+        if ( currentAction == null )
+            return( false );
 
-        	for ( int ii = 0; ii < influences.length; ii++ )
-        	{
-        	    final Influence influence = influences[ii];
+        if ( !bonesPrepared )
+        {
+            currentAction.prepareBones();
+            this.skeleton = currentAction.getSkeleton();
+        }
 
-        	    coordTrans.set( coord0 );
-        	    influence.getMatrix().transform( coordTrans );
-        	    /*
-        	    coordTrans.addX( influence.getMatrix().m03() );
-                coordTrans.addY( influence.getMatrix().m13() );
-                coordTrans.addZ( influence.getMatrix().m23() );
-        	    coordTrans.mul( influence.getWeight() );
-        	    */
+        // Loop through all bones...
+        boneIt = this.skeleton;
+        for ( Bone bone : boneIt )
+        {
+            // If there is no keyframe, don't do any transformations.
+            if ( !bone.hasKeyFrames() )
+            {
+                bone.setNoRelativeMovement();
+                continue;
+            }
 
-        	    coord1.add( coordTrans );
-        	}
+            // Scaling
+            KeyFrameComputer.computeTuple3f( currentTime, bone.scaleKeyFrames, bone.relativeScaling );
 
-            writeVertexCoord( coord1, targets.getVertices(), vi3 );
+            // Rotation
+            KeyFrameComputer.computeQuaternion4f( currentTime, bone.rotKeyFrames, bone.relativeRotation );
         }
 
-        Point3f.toPool( coord1 );
-        Point3f.toPool( coordTrans );
-        Point3f.toPool( coord0 );
+        // Update absolutes transitions for all bones.
+        skeleton.updateAbsolutes();
+
+        return( true );
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The destination geometry is copied from the source geometry once and
+     * then skinned in place every frame.
+     */
+    @Override
+    public Geometry updateDestinationGeometry( long currTime )
+    {
+        if ( sourceGeom == null )
+        {
+            sourceGeom = getLibraryGeometries().getGeometries().get( sourceMeshId ).get(0);
+
+            if ( !( sourceGeom instanceof TrianglesGeometry ) )
+            {
+                throw new Error( "Only TrianglesGeometry is supported for now ! " +
+                                 "Make sure, your model is triangulated when exporting from your modeling tool." );
+            }
+        }
+
+        if ( this.destinationGeometry == null )
+        {
+            this.destinationGeometry = sourceGeom.copy();
+        }
+
+        if ( !playing )
+            return( this.destinationGeometry );
+
+        if ( !updateSkeleton( currTime ) )
+            return( destinationGeometry );
+
+        /*
+         * 1. transform the vertex, rotation and translation
+         * 2. transform the normals, only rotation
+         */
+        if ( prepareSkinning() )
+        {
+            skinVertices( 0, getNumVertices() );
+            skinNormals( 0, getNumNormals() );
+        }
 
         return( destinationGeometry );
     }
@@ -402,7 +649,7 @@ public class SkeletalController extends Controller implements AnimatableModel
 
             if ( entry.getKey().equals( actionId ) )
             {
-                JAGTLog.debug( "Action found" );
+                LOG.debug( "Action found" );
                 actions.put( entry.getKey(), entry.getValue() );
             }
         }
@@ -39,6 +39,7 @@ import javax.xml.stream.XMLStreamReader;
 
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.openmali.FastMath;
 import org.openmali.vecmath2.Matrix4f;
 import org.openmali.vecmath2.Point3f;
@@ -54,6 +55,7 @@ import org.openmali.vecmath2.util.MatrixUtils;
  * @author Joe LaFata (aka qbproger)
  */
 public class XMLNode {
+    private static final LogHandle LOG = JAGTLog.getHandle( XMLNode.class );
     
     public ArrayList< String > layers = null;
     public String sid = null;
@@ -92,9 +94,9 @@ public class XMLNode {
         Matrix4f mat = new Matrix4f();
         mat.setIdentity();
         mat.setTranslation(translate);
-        //JAGTLog.debug( "Mat before translate : \n", matrix.matrix4f );
+        //LOG.debug( "Mat before translate : \n", matrix.matrix4f );
         matrix.matrix4f.mul(mat);
-        //JAGTLog.debug( "Mat after translate of "+translate+" : \n", matrix.matrix4f );
+        //LOG.debug( "Mat after translate of "+translate+" : \n", matrix.matrix4f );
     }
     
     public void applyRotate(String str) {
@@ -107,9 +109,9 @@ public class XMLNode {
         float angle = FastMath.toRad( Float.parseFloat(tknz.nextToken()) );
         rotate.mul( angle );
         Matrix4f mat = MatrixUtils.eulerToMatrix4f(rotate);
-        //JAGTLog.debug( "Mat before rotate : \n", matrix.matrix4f );
+        //LOG.debug( "Mat before rotate : \n", matrix.matrix4f );
         matrix.matrix4f.mul(mat);
-        //JAGTLog.debug( "Mat after rotate of "+rotate+" : \n", matrix.matrix4f );
+        //LOG.debug( "Mat after rotate of "+rotate+" : \n", matrix.matrix4f );
     }
     
     public void applyScale(String str) {
@@ -121,7 +123,7 @@ public class XMLNode {
                 Float.parseFloat(tknz.nextToken())
         );
         
-        //JAGTLog.debug( "Mat before scale : \n", matrix.matrix4f );
+        //LOG.debug( "Mat before scale : \n", matrix.matrix4f );
         
         matrix.matrix4f.mul( 0, 0, scale.getX() );
         matrix.matrix4f.mul( 0, 1, scale.getX() );
@@ -138,7 +140,7 @@ public class XMLNode {
         matrix.matrix4f.mul( 2, 2, scale.getZ() );
         matrix.matrix4f.mul( 2, 3, scale.getZ() );
         
-        //JAGTLog.debug( "Mat after scale of ", scale, ": \n", matrix.matrix4f );
+        //LOG.debug( "Mat after scale of ", scale, ": \n", matrix.matrix4f );
     }
     
     public void parse( XMLStreamReader parser ) throws XMLStreamException
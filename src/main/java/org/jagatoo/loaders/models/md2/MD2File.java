@@ -67,6 +67,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.net.URL;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -75,12 +76,15 @@ import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler.SpecialItemType;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.util.streams.LittleEndianDataInputStream;
 import org.openmali.spatial.bounds.BoundsType;
 
@@ -95,6 +99,8 @@ import org.openmali.spatial.bounds.BoundsType;
  */
 public class MD2File
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( MD2File.class );
+    
     private final LittleEndianDataInputStream in;
     
     private final MD2Header header;
@@ -169,7 +175,7 @@ public class MD2File
     private NamedObject[] readSkins( int skinsOffset, int numSkins, URL baseURL, AppearanceFactory appFactory ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 skins..." );
+        LOG.debug( "Loading MD2 skins..." );
         
         in.skipBytes( skinsOffset - in.getPointer() );
         
@@ -182,7 +188,7 @@ public class MD2File
             skins[ i ] = createSkin( skinName, baseURL, appFactory );
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( skins );
     }
@@ -190,7 +196,7 @@ public class MD2File
     private float[] readTextureCoordinates( int textureCoordsOffset, int numTexCoords, int skinWidth, int skinHeight ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 texture-coordinates..." );
+        LOG.debug( "Loading MD2 texture-coordinates..." );
         
         in.skipBytes( textureCoordsOffset - in.getPointer() );
         
@@ -215,7 +221,7 @@ public class MD2File
             data[i * 2 + 1] = (float)in.readUnsignedShort() * scaleT;
         }
         */
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( data );
     }
@@ -223,7 +229,7 @@ public class MD2File
     private int[][] readTriangles( int trianglesOffset, int numTriangles ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 triangles..." );
+        LOG.debug( "Loading MD2 triangles..." );
         
         in.skipBytes( trianglesOffset - in.getPointer() );
         
@@ -254,7 +260,7 @@ public class MD2File
         int[][] data = new int[][] { coordIndices, texCoordIndices };
         */
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( data );
     }
@@ -262,7 +268,7 @@ public class MD2File
     private Object[][] readFrames( int framesOffset, int numFrames, int numVertices, boolean convertZup2Yup, float scale ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 frames..." );
+        LOG.debug( "Loading MD2 frames..." );
         
         in.skipBytes( framesOffset - in.getPointer() );
         
@@ -309,7 +315,7 @@ public class MD2File
             frames[i] = new Object[] { name, coords, normalIndices };
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( frames );
     }
@@ -328,7 +334,7 @@ public class MD2File
     private void readGLCommands( int commandsOffset, Object[][] framesData, GeometryFactory geomFactory, boolean convertZup2Yup, AnimationFactory animFactory, AppearanceFactory appFactory, URL baseURL, NodeFactory nodeFactory, NamedObject rootGroup, NamedObject[] skins, String skin, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 GL-commands..." );
+        LOG.debug( "Loading MD2 GL-commands..." );
         
         in.skipBytes( commandsOffset - in.getPointer() );
         
@@ -433,6 +439,21 @@ public class MD2File
                                                              stripVertexCount, 0, stripCounts
                                                            );
         
+        // The texture coordinates are the same for all frames.
+        FloatBuffer fanTexCoords = GeometryBuffers.createFloatBuffer( geomFactory, fanVertexCount * 2 );
+        FloatBuffer stripTexCoords = GeometryBuffers.createFloatBuffer( geomFactory, stripVertexCount * 2 );
+        
+        for ( int i = 0; i < numSets; i++ )
+        {
+            if ( geomTypes.get( i ) == GeometryFactory.GeometryType.TRIANGLE_FAN_ARRAY )
+                fanTexCoords.put( texCoords.get( i ) );
+            else
+                stripTexCoords.put( texCoords.get( i ) );
+        }
+        
+        fanTexCoords.rewind();
+        stripTexCoords.rewind();
+        
         NamedObject fanShape = null;
         NamedObject stripShape = null;
         
@@ -486,7 +507,6 @@ public class MD2File
             for ( int i = 0; i < numSets; i++ )
             {
                 GeometryFactory.GeometryType geomType = geomTypes.get( i );
-                float[] st = texCoords.get( i );
                 int[] vertexIndices_ = vertexIndices.get( i );
                 int numVertices = vertexIndices_.length;
                 
@@ -497,18 +517,6 @@ public class MD2File
                         int vertexIndex = vertexIndices_[j];
                         int normalIndex = normalIndices[j];
                         
-                        if ( f == 0 )
-                        {
-                            //geomFactory.setCoordinates( fanArray, geomType, fanIndex, coords, vertexIndex * 3, 1 );
-                            geomFactory.setTexCoords( fanArray, geomType, 0, 2, fanIndex, st, j * 2, 1 );
-                            /*
-                            if ( convertZup2Yup )
-                                geomFactory.setNormals( fanArray, geomType, fanIndex, MD2Normals.dataYup, normalIndex * 3, 1 );
-                            else
-                                geomFactory.setNormals( fanArray, geomType, fanIndex, MD2Normals.dataZup, normalIndex * 3, 1 );
-                            */
-                        }
-                        
                         System.arraycopy( coords, vertexIndex * 3, frameFanCoords, fanIndex * 3, 3 );
                         if ( convertZup2Yup )
                             System.arraycopy( MD2Normals.dataYup, normalIndex * 3, frameFanNormals, fanIndex * 3, 3 );
@@ -525,18 +533,6 @@ public class MD2File
                         int vertexIndex = vertexIndices_[j];
                         int normalIndex = normalIndices[j];
                         
-                        if ( f == 0 )
-                        {
-                            //geomFactory.setCoordinates( stripArray, geomType, stripIndex, coords, vertexIndex * 3, 1 );
-                            geomFactory.setTexCoords( stripArray, geomType, 0, 2, stripIndex, st, j * 2, 1 );
-                            /*
-                            if ( convertZup2Yup )
-                                geomFactory.setNormals( stripArray, geomType, stripIndex, MD2Normals.dataYup, normalIndex * 3, 1 );
-                            else
-                                geomFactory.setNormals( stripArray, geomType, stripIndex, MD2Normals.dataZup, normalIndex * 3, 1 );
-                            */
-                        }
-                        
                         System.arraycopy( coords, vertexIndex * 3, frameStripCoords, stripIndex * 3, 3 );
                         if ( convertZup2Yup )
                             System.arraycopy( MD2Normals.dataYup, normalIndex * 3, frameStripNormals, stripIndex * 3, 3 );
@@ -554,6 +550,8 @@ public class MD2File
                 geomFactory.setNormals( fanArray, GeometryFactory.GeometryType.TRIANGLE_FAN_ARRAY, 0, frameFanNormals, 0, fanIndex );
                 geomFactory.setCoordinates( stripArray, GeometryFactory.GeometryType.TRIANGLE_STRIP_ARRAY, 0, frameStripCoords, 0, stripIndex );
                 geomFactory.setNormals( stripArray, GeometryFactory.GeometryType.TRIANGLE_STRIP_ARRAY, 0, frameStripNormals, 0, stripIndex );
+                GeometryBuffers.setTexCoords( geomFactory, fanArray, GeometryFactory.GeometryType.TRIANGLE_FAN_ARRAY, 0, 2, fanTexCoords, fanVertexCount );
+                GeometryBuffers.setTexCoords( geomFactory, stripArray, GeometryFactory.GeometryType.TRIANGLE_STRIP_ARRAY, 0, 2, stripTexCoords, stripVertexCount );
                 
                 geomFactory.finalizeGeometry( fanArray, GeometryFactory.GeometryType.TRIANGLE_FAN_ARRAY, 0, fanVertexCount, 0, 0 );
                 geomFactory.finalizeGeometry( stripArray, GeometryFactory.GeometryType.TRIANGLE_STRIP_ARRAY, 0, stripVertexCount, 0, 0 );
@@ -608,7 +606,7 @@ public class MD2File
             frames.clear();
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
     }
     
     private MD2File( InputStream in, URL baseURL, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
@@ -643,6 +641,16 @@ public class MD2File
     
     public static final void load( InputStream in, URL baseURL, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
-        new MD2File( in, baseURL, appFactory, skin, geomFactory, convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup );
+        final MeteredLoad load = MeteredLoad.begin( "MD2", baseURL, geomFactory );
+        try
+        {
+            new MD2File( load.wrap( in ), baseURL, appFactory, skin, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
     }
 }
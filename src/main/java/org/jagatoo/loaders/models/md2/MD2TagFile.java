@@ -36,6 +36,7 @@ import java.io.InputStream;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.util.streams.LittleEndianDataInputStream;
 import org.openmali.vecmath2.Matrix4f;
 
@@ -47,6 +48,8 @@ import org.openmali.vecmath2.Matrix4f;
  */
 public class MD2TagFile
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( MD2TagFile.class );
+    
     private static int MAGIC_NUMBER = 0x3250444A;
     private static int VERSION = 1;
     private static int MAX_TAG_NAME_LENGTH = 64;
@@ -98,7 +101,7 @@ public class MD2TagFile
     private String[] readTagNames( LittleEndianDataInputStream in ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 TAG names..." );
+        LOG.debug( "Loading MD2 TAG names..." );
         
         in.skipBytes( offsetNames - in.getPointer() );
         
@@ -109,7 +112,7 @@ public class MD2TagFile
             tagNames[i] = in.readCString( MAX_TAG_NAME_LENGTH, true );
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( tagNames );
     }
@@ -176,7 +179,7 @@ public class MD2TagFile
     private Matrix4f[][] readMatrices( LittleEndianDataInputStream in, boolean convertZup2Yup, float scale ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD2 TAG matrices..." );
+        LOG.debug( "Loading MD2 TAG matrices..." );
         
         in.skipBytes( offsetMatrices - in.getPointer() );
         
@@ -198,7 +201,7 @@ public class MD2TagFile
             }
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( matrices );
     }
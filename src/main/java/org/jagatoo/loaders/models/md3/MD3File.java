@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.net.URL;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -42,12 +43,15 @@ import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler.SpecialItemType;
 import org.jagatoo.loaders.textures.AbstractTexture;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.util.streams.LittleEndianDataInputStream;
 import org.openmali.FastMath;
 import org.openmali.spatial.bounds.BoundsType;
@@ -67,6 +71,8 @@ import org.openmali.vecmath2.util.VecMathUtils;
  */
 public class MD3File
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( MD3File.class );
+    
     private final LittleEndianDataInputStream in;
     
     private final MD3Header header;
@@ -96,7 +102,7 @@ public class MD3File
     private void readFrames() throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 frames..." );
+        LOG.debug( "Loading MD3 frames..." );
         
         in.skipBytes( header.frameOffset - in.getPointer() );
         
@@ -107,7 +113,7 @@ public class MD3File
             frames[i] = MD3Frame.readFrame( in );
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
     }
     
     private Matrix4f[][] readTags( boolean convertZup2Yup, float scale, SpecialItemsHandler siHandler ) throws IOException, IncorrectFormatException, ParsingException
@@ -118,7 +124,7 @@ public class MD3File
         }
         
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 tags..." );
+        LOG.debug( "Loading MD3 tags..." );
         
         in.skipBytes( header.tagOffset - in.getPointer() );
         
@@ -181,7 +187,7 @@ public class MD3File
         Vector3f.toPool( translation );
         Matrix3f.toPool( rotation );
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( tagFrames );
     }
@@ -269,7 +275,7 @@ public class MD3File
     private NamedObject[] readShaders( int shadersOffset, int numShaders, URL baseURL, AppearanceFactory appFactory ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 shaders..." );
+        LOG.debug( "Loading MD3 shaders..." );
         
         in.skipBytes( header.surfaceOffset + shadersOffset - in.getPointer() );
         
@@ -298,54 +304,66 @@ public class MD3File
             shaders[ shaderIndex ] = shader;
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( shaders );
     }
     
-    private void readTriangles( int trianglesOffset, int numTriangles, GeometryFactory geomFactory, NamedObject geometry ) throws IOException, IncorrectFormatException, ParsingException
+    /**
+     * @return the vertex remap table of the mesh optimization or null.
+     */
+    private int[] readTriangles( String surfaceName, int trianglesOffset, int numTriangles, int numVertices, GeometryFactory geomFactory, NamedObject geometry ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 triangles..." );
+        LOG.debug( "Loading MD3 triangles..." );
         
         in.skipBytes( header.surfaceOffset + trianglesOffset - in.getPointer() );
         
-        int[] buffer = new int[ 3 ];
+        int[] indices = new int[ numTriangles * 3 ];
         
-        for ( int i = 0; i < numTriangles; i++ )
+        for ( int i = 0; i < numTriangles * 3; i++ )
         {
-            buffer[0] = in.readInt();
-            buffer[1] = in.readInt();
-            buffer[2] = in.readInt();
-            
-            geomFactory.setIndex( geometry, GEOM_TYPE, i * 3, buffer, 0, 3 );
+            indices[i] = in.readInt();
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        // The frames share the vertex order. So all of them are written in the remapped order.
+        final int[] remap = GeometryBuffers.optimizeMesh( surfaceName, indices, indices.length, numVertices, null );
+        
+        GeometryBuffers.setIndex( geomFactory, geometry, GEOM_TYPE, indices, 0, numTriangles * 3 );
+        
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        
+        return ( remap );
     }
     
-    private void readTextureCoordinates( int textureCoordsOffset, int numVertices, GeometryFactory geomFactory, NamedObject geometry ) throws IOException, IncorrectFormatException, ParsingException
+    private void readTextureCoordinates( int textureCoordsOffset, int numVertices, int[] remap, GeometryFactory geomFactory, NamedObject geometry ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 texture-coordinates..." );
+        LOG.debug( "Loading MD3 texture-coordinates..." );
         
         in.skipBytes( header.surfaceOffset + textureCoordsOffset - in.getPointer() );
         
+        FloatBuffer buffer = GeometryBuffers.createFloatBuffer( geomFactory, numVertices * 2 );
+        
         for ( int i = 0; i < numVertices; i++ )
         {
+            final int v = ( remap == null ) ? i : remap[ i ];
             float s = in.readFloat();
             float t = 1f - in.readFloat();
             
-            geomFactory.setTexCoord( geometry, GEOM_TYPE, 0, i, s, t );
+            buffer.put( v * 2 + 0, s ).put( v * 2 + 1, t );
         }
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        buffer.rewind();
+        GeometryBuffers.setTexCoords( geomFactory, geometry, GEOM_TYPE, 0, 2, buffer, numVertices );
+        
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
     }
     
-    private Object[] readCoordinatesAndNormals( int numFrames, int coordNormalOffset, int numVertices, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NamedObject geometry, AnimationFactory animFactory ) throws IOException, IncorrectFormatException, ParsingException
+    private Object[] readCoordinatesAndNormals( int numFrames, int coordNormalOffset, int numVertices, int[] remap, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NamedObject geometry, AnimationFactory animFactory ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 vertex-coordinates and -normals (for all frames)..." );
+        LOG.debug( "Loading MD3 vertex-coordinates and -normals (for all frames)..." );
         
         in.skipBytes( header.surfaceOffset + coordNormalOffset - in.getPointer() );
         
@@ -355,6 +373,10 @@ public class MD3File
         Vector3f normal = Vector3f.fromPool();
         float x, y, z;
         
+        // The first frame is handed over to the GeometryFactory as a whole.
+        FloatBuffer coords = GeometryBuffers.createFloatBuffer( geomFactory, numVertices * 3 );
+        FloatBuffer normals = GeometryBuffers.createFloatBuffer( geomFactory, numVertices * 3 );
+        
         for ( int f = 0; f < numFrames; f++ )
         {
             float[] keyFrameCoords = null;
@@ -368,6 +390,8 @@ public class MD3File
             
             for ( int i = 0; i < numVertices; i++ )
             {
+                final int v = ( remap == null ) ? i : remap[ i ];
+                
                 x = (float)in.readShort() * scale;
                 y = (float)in.readShort() * scale;
                 z = (float)in.readShort() * scale;
@@ -383,14 +407,14 @@ public class MD3File
                 
                 if ( f == 0 )
                 {
-                    geomFactory.setCoordinate( geometry, GEOM_TYPE, i, x, y, z );
+                    coords.put( v * 3 + 0, x ).put( v * 3 + 1, y ).put( v * 3 + 2, z );
                 }
                 
                 if ( numFrames > 1 )
                 {
-                    keyFrameCoords[i * 3 + 0] = x;
-                    keyFrameCoords[i * 3 + 1] = y;
-                    keyFrameCoords[i * 3 + 2] = z;
+                    keyFrameCoords[v * 3 + 0] = x;
+                    keyFrameCoords[v * 3 + 1] = y;
+                    keyFrameCoords[v * 3 + 2] = z;
                 }
                 
                 // normal
@@ -419,14 +443,14 @@ public class MD3File
                 
                 if ( f == 0 )
                 {
-                    geomFactory.setNormal( geometry, GEOM_TYPE, i, x, y, z );
+                    normals.put( v * 3 + 0, x ).put( v * 3 + 1, y ).put( v * 3 + 2, z );
                 }
                 
                 if ( numFrames > 1 )
                 {
-                    keyFrameNormals[i * 3 + 0] = x;
-                    keyFrameNormals[i * 3 + 1] = y;
-                    keyFrameNormals[i * 3 + 2] = z;
+                    keyFrameNormals[v * 3 + 0] = x;
+                    keyFrameNormals[v * 3 + 1] = y;
+                    keyFrameNormals[v * 3 + 2] = z;
                 }
             }
             
@@ -443,10 +467,15 @@ public class MD3File
             }
         }
         
+        coords.rewind();
+        normals.rewind();
+        GeometryBuffers.setCoordinates( geomFactory, geometry, GEOM_TYPE, coords, numVertices );
+        GeometryBuffers.setNormals( geomFactory, geometry, GEOM_TYPE, normals, numVertices );
+        
         Vector3f.toPool( normal );
         Point3f.toPool( coord );
         
-        JAGTLog.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
         
         return ( keyFrames );
     }
@@ -454,7 +483,7 @@ public class MD3File
     private void readSurfaces( URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, Matrix4f[][] frameTags, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
         long t0 = System.currentTimeMillis();
-        JAGTLog.debug( "Loading MD3 surfaces..." );
+        LOG.debug( "Loading MD3 surfaces..." );
         
         in.skipBytes( header.surfaceOffset - in.getPointer() );
         
@@ -486,9 +515,9 @@ public class MD3File
                                                                         );
             
             NamedObject[] shaders = readShaders( shadersOffset, numShaders, baseURL, appFactory );
-            readTriangles( trianglesOffset, numTriangles, geomFactory, geometry );
-            readTextureCoordinates( textureCoordsOffset, numVertices, geomFactory, geometry );
-            Object[] keyFrames = readCoordinatesAndNormals( numFrames, coordNormalOffset, numVertices, geomFactory, convertZup2Yup, scale, geometry, animFactory );
+            final int[] remap = readTriangles( surfaceName, trianglesOffset, numTriangles, numVertices, geomFactory, geometry );
+            readTextureCoordinates( textureCoordsOffset, numVertices, remap, geomFactory, geometry );
+            Object[] keyFrames = readCoordinatesAndNormals( numFrames, coordNormalOffset, numVertices, remap, geomFactory, convertZup2Yup, scale, geometry, animFactory );
             
             NamedObject shape = nodeFactory.createShape( surfaceName, geometry, ( shaders.length > 0 ) ? shaders[0] : null, BoundsType.SPHERE );
             
@@ -510,7 +539,7 @@ public class MD3File
             siHandler.addAnimation( animation );
         }
         
-        JAGTLog.debug( "done loading ", header.numSurfaces, " surfaces. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
+        LOG.debug( "done loading ", header.numSurfaces, " surfaces. (", ( System.currentTimeMillis() - t0 ) / 1000f, " seconds)" );
     }
     
     private MD3File( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
@@ -543,6 +572,16 @@ public class MD3File
     
     public static final void load( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
-        new MD3File( in, baseURL, appFactory, geomFactory, convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup );
+        final MeteredLoad load = MeteredLoad.begin( "MD3", baseURL, geomFactory );
+        try
+        {
+            new MD3File( load.wrap( in ), baseURL, appFactory, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
     }
 }
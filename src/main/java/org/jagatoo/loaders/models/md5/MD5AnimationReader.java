@@ -35,6 +35,7 @@ import org.jagatoo.util.errorhandling.ParsingException;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.util.strings.SimpleStringTokenizer;
@@ -175,6 +176,21 @@ public class MD5AnimationReader
     }
     
     public static void load( InputStream in, String filename, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, NamedObject[] shapes, Object[][][] boneWeights, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "MD5Anim", filename, geomFactory );
+        try
+        {
+            loadAnimation( load.wrap( in ), filename, baseURL, appFactory, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, shapes, boneWeights, animFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    private static void loadAnimation( InputStream in, String filename, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, NamedObject[] shapes, Object[][][] boneWeights, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
         float[] baseFrame = null;
         float frameRate = 25f;
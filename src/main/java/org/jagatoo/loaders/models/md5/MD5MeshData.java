@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.md5;
+
+import java.io.IOException;
+
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+import org.jagatoo.loaders.models._util.ModelCacheWriter;
+
+/**
+ * The parsed contents of an MD5MESH file in flat arrays.<br>
+ * This is what {@link MD5MeshReader} stores in the model cache. It is taken
+ * before any scaling, skinning or mesh optimization, so a cache entry doesn't
+ * depend on the load parameters.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+final class MD5MeshData
+{
+    public static final String LOADER_ID = "MD5";
+    
+    /**
+     * Increment this, whenever the layout changes.
+     */
+    public static final int VERSION = 1;
+    
+    static final class Mesh
+    {
+        final String name;
+        /**
+         * The unconverted shader name or null.
+         */
+        final String shaderName;
+        
+        final int numVertices;
+        /**
+         * s, t per vertex (t already flipped)
+         */
+        final float[] texCoords;
+        final int[] firstWeights;
+        final int[] weightCounts;
+        
+        /**
+         * three vertex indices per triangle
+         */
+        final int[] triangles;
+        
+        final int[] weightBones;
+        /**
+         * the unscaled weights
+         */
+        final float[] weightValues;
+        /**
+         * x, y, z per weight
+         */
+        final float[] weightOffsets;
+        
+        Mesh( String name, String shaderName, int numVertices, int numTriangles, int numWeights )
+        {
+            this( name, shaderName, numVertices, new float[ numVertices * 2 ], new int[ numVertices ], new int[ numVertices ], new int[ numTriangles * 3 ], new int[ numWeights ], new float[ numWeights ], new float[ numWeights * 3 ] );
+        }
+        
+        Mesh( String name, String shaderName, int numVertices, float[] texCoords, int[] firstWeights, int[] weightCounts, int[] triangles, int[] weightBones, float[] weightValues, float[] weightOffsets )
+        {
+            this.name = name;
+            this.shaderName = shaderName;
+            this.numVertices = numVertices;
+            this.texCoords = texCoords;
+            this.firstWeights = firstWeights;
+            this.weightCounts = weightCounts;
+            this.triangles = triangles;
+            this.weightBones = weightBones;
+            this.weightValues = weightValues;
+            this.weightOffsets = weightOffsets;
+        }
+    }
+    
+    final String[] jointNames;
+    /**
+     * x, y, z per joint
+     */
+    final float[] jointTranslations;
+    /**
+     * the first three quaternion components per joint (the fourth is computed)
+     */
+    final float[] jointRotations;
+    
+    final Mesh[] meshes;
+    
+    public void write( ModelCacheWriter out ) throws IOException
+    {
+        out.writeInt( jointNames.length );
+        for ( int i = 0; i < jointNames.length; i++ )
+            out.writeString( jointNames[ i ] );
+        out.writeFloats( jointTranslations );
+        out.writeFloats( jointRotations );
+        
+        out.writeInt( meshes.length );
+        for ( int i = 0; i < meshes.length; i++ )
+        {
+            final Mesh mesh = meshes[ i ];
+            
+            out.writeString( mesh.name );
+            out.writeString( mesh.shaderName );
+            out.writeInt( mesh.numVertices );
+            out.writeFloats( mesh.texCoords );
+            out.writeInts( mesh.firstWeights );
+            out.writeInts( mesh.weightCounts );
+            out.writeInts( mesh.triangles );
+            out.writeInts( mesh.weightBones );
+            out.writeFloats( mesh.weightValues );
+            out.writeFloats( mesh.weightOffsets );
+        }
+    }
+    
+    private static void check( boolean condition ) throws IOException
+    {
+        if ( !condition )
+            throw new IOException( "Inconsistent MD5 cache entry" );
+    }
+    
+    public static MD5MeshData read( ModelCacheReader in ) throws IOException
+    {
+        final int numJoints = in.readInt();
+        check( numJoints >= 0 );
+        
+        String[] jointNames = new String[ numJoints ];
+        for ( int i = 0; i < numJoints; i++ )
+            jointNames[ i ] = in.readString();
+        float[] jointTranslations = in.readFloats();
+        float[] jointRotations = in.readFloats();
+        check( ( jointTranslations.length == numJoints * 3 ) && ( jointRotations.length == numJoints * 3 ) );
+        
+        final int numMeshes = in.readInt();
+        check( numMeshes >= 0 );
+        
+        Mesh[] meshes = new Mesh[ numMeshes ];
+        for ( int i = 0; i < numMeshes; i++ )
+        {
+            final String name = in.readString();
+            final String shaderName = in.readString();
+            final int numVertices = in.readInt();
+            
+            Mesh mesh = new Mesh( name, shaderName, numVertices, in.readFloats(), in.readInts(), in.readInts(), in.readInts(), in.readInts(), in.readFloats(), in.readFloats() );
+            
+            check( ( numVertices >= 0 ) && ( mesh.texCoords.length == numVertices * 2 ) && ( mesh.firstWeights.length == numVertices ) && ( mesh.weightCounts.length == numVertices ) );
+            check( ( mesh.triangles.length % 3 == 0 ) && ( mesh.weightValues.length == mesh.weightBones.length ) && ( mesh.weightOffsets.length == mesh.weightBones.length * 3 ) );
+            
+            meshes[ i ] = mesh;
+        }
+        
+        return ( new MD5MeshData( jointNames, jointTranslations, jointRotations, meshes ) );
+    }
+    
+    MD5MeshData( String[] jointNames, float[] jointTranslations, float[] jointRotations, Mesh[] meshes )
+    {
+        this.jointNames = jointNames;
+        this.jointTranslations = jointTranslations;
+        this.jointRotations = jointRotations;
+        this.meshes = meshes;
+    }
+}
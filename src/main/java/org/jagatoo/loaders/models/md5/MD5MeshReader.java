@@ -32,9 +32,17 @@ package org.jagatoo.loaders.models.md5;
 import org.jagatoo.datatypes.NamedObject;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.LoaderUtils;
+import org.jagatoo.loaders.models._util.MeteredLoad;
+import org.jagatoo.loaders.models._util.ModelCache;
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+import org.jagatoo.loaders.models._util.ModelCacheWriter;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models._util.GeometryFactory.GeometryType;
@@ -111,34 +119,38 @@ public class MD5MeshReader
     private MD5Bone[] skeleton;
     private MD5Mesh[] meshes;
     
-    private MD5Bone parseBone( SimpleStringTokenizer st, boolean convertZup2Yup )
+    private static void parseBone( SimpleStringTokenizer st, int joint, String[] names, float[] translations, float[] rotations )
     {
-        String boneName = StringUtils.unquoteString( st.getLastToken() );
+        names[ joint ] = StringUtils.unquoteString( st.getLastToken() );
         st.skipToken(); // skip parent bone-index
         
         st.skipToken(); // skip "("
         
-        Vector3f translation = new Vector3f();
-        translation.setX( Float.parseFloat( st.nextToken() ) );
-        translation.setY( Float.parseFloat( st.nextToken() ) );
-        translation.setZ( Float.parseFloat( st.nextToken() ) );
+        translations[ joint * 3 + 0 ] = Float.parseFloat( st.nextToken() );
+        translations[ joint * 3 + 1 ] = Float.parseFloat( st.nextToken() );
+        translations[ joint * 3 + 2 ] = Float.parseFloat( st.nextToken() );
         
         st.skipToken(); // skip ")"
         st.skipToken(); // skip "("
         
-        float q1 = Float.parseFloat( st.nextToken() );
-        float q2 = Float.parseFloat( st.nextToken() );
-        float q3 = Float.parseFloat( st.nextToken() );
-        Quaternion4f rotation = new Quaternion4f( q1, q2, q3, 0f ).computeD();
+        rotations[ joint * 3 + 0 ] = Float.parseFloat( st.nextToken() );
+        rotations[ joint * 3 + 1 ] = Float.parseFloat( st.nextToken() );
+        rotations[ joint * 3 + 2 ] = Float.parseFloat( st.nextToken() );
         
         //str.nextToken(); // skip ")"
+    }
+    
+    private MD5Bone compileBone( MD5MeshData data, int joint, boolean convertZup2Yup )
+    {
+        Vector3f translation = new Vector3f( data.jointTranslations[ joint * 3 + 0 ], data.jointTranslations[ joint * 3 + 1 ], data.jointTranslations[ joint * 3 + 2 ] );
+        Quaternion4f rotation = new Quaternion4f( data.jointRotations[ joint * 3 + 0 ], data.jointRotations[ joint * 3 + 1 ], data.jointRotations[ joint * 3 + 2 ], 0f ).computeD();
         
         if ( convertZup2Yup )
         {
             //rotation.mul( Quaternion4f.Z_UP_TO_Y_UP, rotation );
         }
         
-        return ( new MD5Bone( boneName, translation, rotation ) );
+        return ( new MD5Bone( data.jointNames[ joint ], translation, rotation ) );
     }
     
     private NamedObject createShader( String shaderName, AppearanceFactory appFactory, URL baseURL )
@@ -166,21 +178,9 @@ public class MD5MeshReader
         return ( shader );
     }
     
-    private MD5Mesh compileMesh( String meshName, NamedObject shader, ArrayList< String > vertDefs, ArrayList< String > triDefs, ArrayList< String > weightDefs, GeometryFactory geomFactory, float scale, AnimationFactory animFactory )
+    private static MD5MeshData.Mesh parseMesh( String meshName, String shaderName, ArrayList< String > vertDefs, ArrayList< String > triDefs, ArrayList< String > weightDefs )
     {
-        MD5Mesh result = new MD5Mesh();
-        
-        result.name = meshName;
-        result.shader = shader;
-        
-        result.numVertices = vertDefs.size();
-        result.numTriangles = triDefs.size();
-        
-        result.geom = geomFactory.createGeometry( meshName, GEOM_TYPE, 3, vertDefs.size(), triDefs.size() * 3, null );
-        
-        result.boneWeightBones = new int[ weightDefs.size() ];
-        result.boneWeightWeights = new float[ weightDefs.size() ];
-        result.boneWeightOffsets = new Vector3f[ weightDefs.size() ];
+        MD5MeshData.Mesh result = new MD5MeshData.Mesh( meshName, shaderName, vertDefs.size(), triDefs.size(), weightDefs.size() );
         
         SimpleStringTokenizer st = new SimpleStringTokenizer( "" );
         
@@ -190,27 +190,28 @@ public class MD5MeshReader
             
             st.skipToken(); // skip index
             
-            int bone = Integer.parseInt( st.nextToken() );
-            float weight = Float.parseFloat( st.nextToken() );
+            result.weightBones[i] = Integer.parseInt( st.nextToken() );
+            result.weightValues[i] = Float.parseFloat( st.nextToken() );
             
             st.skipToken();
             
-            Vector3f offset = new Vector3f();
-            offset.setX( Float.parseFloat( st.nextToken() ) );
-            offset.setY( Float.parseFloat( st.nextToken() ) );
-            offset.setZ( Float.parseFloat( st.nextToken() ) );
-            
-            result.boneWeightBones[i] = bone;
-            result.boneWeightWeights[i] = weight * scale;
-            result.boneWeightOffsets[i] = offset;
+            result.weightOffsets[i * 3 + 0] = Float.parseFloat( st.nextToken() );
+            result.weightOffsets[i * 3 + 1] = Float.parseFloat( st.nextToken() );
+            result.weightOffsets[i * 3 + 2] = Float.parseFloat( st.nextToken() );
             
             //str.nextToken();
         }
         
-        result.firstWeights = new int[ vertDefs.size() ];
-        result.weightCounts = new int[ vertDefs.size() ];
-        
-        Object[][] boneWeights = null;
+        for ( int i = 0; i < triDefs.size(); i++ )
+        {
+            st.setString( triDefs.get( i ) );
+            
+            st.skipToken(); // skip index
+            
+            result.triangles[i * 3 + 0] = Integer.parseInt( st.nextToken() );
+            result.triangles[i * 3 + 1] = Integer.parseInt( st.nextToken() );
+            result.triangles[i * 3 + 2] = Integer.parseInt( st.nextToken() );
+        }
         
         for ( int i = 0; i < vertDefs.size(); i++ )
         {
@@ -220,21 +221,71 @@ public class MD5MeshReader
             
             st.skipToken();
             
-            float s = Float.parseFloat( st.nextToken() );
-            float t = 1.0f - Float.parseFloat( st.nextToken() );
-            geomFactory.setTexCoord( result.geom, GEOM_TYPE, 0, i, s, t );
+            result.texCoords[i * 2 + 0] = Float.parseFloat( st.nextToken() );
+            result.texCoords[i * 2 + 1] = 1.0f - Float.parseFloat( st.nextToken() );
             
             st.skipToken();
             
-            int firstWeight = Integer.parseInt( st.nextToken() );
-            int weightCount = Integer.parseInt( st.nextToken() );
+            result.firstWeights[i] = Integer.parseInt( st.nextToken() );
+            result.weightCounts[i] = Integer.parseInt( st.nextToken() );
+        }
+        
+        return ( result );
+    }
+    
+    private MD5Mesh compileMesh( MD5MeshData.Mesh data, URL baseURL, String skin, AppearanceFactory appFactory, GeometryFactory geomFactory, float scale, AnimationFactory animFactory )
+    {
+        MD5Mesh result = new MD5Mesh();
+        
+        result.name = data.name;
+        
+        if ( ( skin == null ) && ( data.shaderName != null ) )
+        {
+            result.shader = createShader( data.shaderName, appFactory, baseURL );
+        }
+        
+        result.numVertices = data.numVertices;
+        result.numTriangles = data.triangles.length / 3;
+        
+        result.geom = geomFactory.createGeometry( data.name, GEOM_TYPE, 3, data.numVertices, data.triangles.length, null );
+        
+        final int numWeights = data.weightBones.length;
+        result.boneWeightBones = data.weightBones;
+        result.boneWeightWeights = new float[ numWeights ];
+        result.boneWeightOffsets = new Vector3f[ numWeights ];
+        
+        for ( int i = 0; i < numWeights; i++ )
+        {
+            result.boneWeightWeights[i] = data.weightValues[i] * scale;
+            result.boneWeightOffsets[i] = new Vector3f( data.weightOffsets[i * 3 + 0], data.weightOffsets[i * 3 + 1], data.weightOffsets[i * 3 + 2] );
+        }
+        
+        // The parsed data stays untouched, since it may still be written to the cache.
+        int[] triangles = data.triangles.clone();
+        
+        // The triangles are known first, so that the vertices can be stored in the optimized order.
+        final int[] remap = GeometryBuffers.optimizeMesh( result.name, triangles, triangles.length, result.numVertices, null );
+        
+        result.firstWeights = new int[ data.numVertices ];
+        result.weightCounts = new int[ data.numVertices ];
+        
+        Object[][] boneWeights = null;
+        
+        for ( int i = 0; i < data.numVertices; i++ )
+        {
+            final int v = ( remap == null ) ? i : remap[ i ];
+            
+            geomFactory.setTexCoord( result.geom, GEOM_TYPE, 0, v, data.texCoords[i * 2 + 0], data.texCoords[i * 2 + 1] );
+            
+            int firstWeight = data.firstWeights[i];
+            int weightCount = data.weightCounts[i];
             
-            result.firstWeights[i] = firstWeight;
-            result.weightCounts[i] = weightCount;
+            result.firstWeights[v] = firstWeight;
+            result.weightCounts[v] = weightCount;
             
             if ( boneWeights != null )
             {
-                boneWeights[i] = null;
+                boneWeights[v] = null;
             }
             
             for ( int w = 0; w < weightCount; w++ )
@@ -247,32 +298,19 @@ public class MD5MeshReader
                     
                     boneWeights = (Object[][])Array.newInstance( bws.getClass(), result.numVertices );
                     
-                    boneWeights[i] = bws;
+                    boneWeights[v] = bws;
                 }
-                else if ( boneWeights[i] == null )
+                else if ( boneWeights[v] == null )
                 {
-                    boneWeights[i] = (Object[])Array.newInstance( bw.getClass(), weightCount );
+                    boneWeights[v] = (Object[])Array.newInstance( bw.getClass(), weightCount );
                 }
                 
-                boneWeights[i][w] = bw;
+                boneWeights[v][w] = bw;
             }
         }
         
         result.boneWeights = boneWeights;
         
-        int[] triangles = new int[ result.numTriangles * 3 ];
-        
-        for ( int i = 0; i < triDefs.size(); i++ )
-        {
-            st.setString( triDefs.get( i ) );
-            
-            st.skipToken(); // skip index
-            
-            triangles[i * 3 + 0] = Integer.parseInt( st.nextToken() );
-            triangles[i * 3 + 1] = Integer.parseInt( st.nextToken() );
-            triangles[i * 3 + 2] = Integer.parseInt( st.nextToken() );
-        }
-        
         result.triangles = triangles;
         
         geomFactory.setIndex( result.geom, GEOM_TYPE, 0, triangles, 0, triangles.length );
@@ -280,13 +318,30 @@ public class MD5MeshReader
         return ( result );
     }
     
-    private void readMeshFile( InputStream in, URL baseURL, String skin, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, AnimationFactory animFactory ) throws IOException
+    private void compile( MD5MeshData data, URL baseURL, String skin, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, AnimationFactory animFactory )
     {
-        int numJoints = 0;
-        int numMeshes = 0;
+        MD5Bone[] skeleton = new MD5Bone[ data.jointNames.length ];
+        for ( int i = 0; i < skeleton.length; i++ )
+        {
+            skeleton[i] = compileBone( data, i, convertZup2Yup );
+        }
         
-        MD5Bone[] skeleton = null;
-        ArrayList<MD5Mesh> meshes = null;
+        MD5Mesh[] meshes = new MD5Mesh[ data.meshes.length ];
+        for ( int i = 0; i < meshes.length; i++ )
+        {
+            meshes[i] = compileMesh( data.meshes[i], baseURL, skin, appFactory, geomFactory, scale, animFactory );
+        }
+        
+        this.skeleton = skeleton;
+        this.meshes = meshes;
+    }
+    
+    private static MD5MeshData parseMeshFile( InputStream in ) throws IOException, IncorrectFormatException
+    {
+        String[] jointNames = new String[ 0 ];
+        float[] jointTranslations = new float[ 0 ];
+        float[] jointRotations = new float[ 0 ];
+        ArrayList<MD5MeshData.Mesh> meshes = new ArrayList<MD5MeshData.Mesh>();
         
         BufferedReader br = new BufferedReader( new InputStreamReader( in ) );
         String line;
@@ -320,16 +375,18 @@ public class MD5MeshReader
             */
             else if ( token.equals( "numJoints" ) )
             {
-                numJoints = Integer.parseInt( st.nextToken() );
+                final int numJoints = Integer.parseInt( st.nextToken() );
+                jointNames = new String[ numJoints ];
+                jointTranslations = new float[ numJoints * 3 ];
+                jointRotations = new float[ numJoints * 3 ];
             }
             else if ( token.equals( "numMeshes" ) )
             {
-                numMeshes = Integer.parseInt( st.nextToken() );
-                meshes = new ArrayList<MD5Mesh>( numMeshes );
+                meshes.ensureCapacity( Integer.parseInt( st.nextToken() ) );
             }
             else if ( token.equals( "joints" ) )
             {
-                ArrayList< MD5Bone > bones = new ArrayList< MD5Bone >( numJoints );
+                int joint = 0;
                 
                 while ( ( line = br.readLine() ) != null )
                 {
@@ -346,22 +403,24 @@ public class MD5MeshReader
                         break;
                     }
                     
-                    bones.add( parseBone( st, convertZup2Yup ) );
+                    if ( joint == jointNames.length )
+                    {
+                        br.close();
+                        
+                        throw new IncorrectFormatException( "More joints than the declared " + jointNames.length + "." );
+                    }
+                    
+                    parseBone( st, joint++, jointNames, jointTranslations, jointRotations );
                 }
-                
-                skeleton = bones.toArray( new MD5Bone[ bones.size() ] );
             }
             else if ( token.equals( "mesh" ) )
             {
                 String meshName = "";
-                NamedObject shader = null;
-                int numVertices = 0;
-                int numTriangles = 0;
-                int numWeights = 0;
+                String shaderName = null;
                 
-                ArrayList< String > vertDefs = null;
-                ArrayList< String > triDefs = null;
-                ArrayList< String > weightDefs = null;
+                ArrayList< String > vertDefs = new ArrayList< String >();
+                ArrayList< String > triDefs = new ArrayList< String >();
+                ArrayList< String > weightDefs = new ArrayList< String >();
                 
                 // parse mesh-name
                 {
@@ -382,8 +441,7 @@ public class MD5MeshReader
                     
                     if ( token.equals( "numverts" ) )
                     {
-                        numVertices = Integer.parseInt( st.getRest() );
-                        vertDefs = new ArrayList< String >( numVertices );
+                        vertDefs.ensureCapacity( Integer.parseInt( st.getRest() ) );
                     }
                     else if ( token.equals( "vert" ) )
                     {
@@ -391,8 +449,7 @@ public class MD5MeshReader
                     }
                     else if ( token.equals( "numtris" ) )
                     {
-                        numTriangles = Integer.parseInt( st.getRest() );
-                        triDefs = new ArrayList< String >( numTriangles );
+                        triDefs.ensureCapacity( Integer.parseInt( st.getRest() ) );
                     }
                     else if ( token.equals( "tri" ) )
                     {
@@ -400,8 +457,7 @@ public class MD5MeshReader
                     }
                     else if ( token.equals( "numweights" ) )
                     {
-                        numWeights = Integer.parseInt( st.getRest() );
-                        weightDefs = new ArrayList< String >( numWeights );
+                        weightDefs.ensureCapacity( Integer.parseInt( st.getRest() ) );
                     }
                     else if ( token.equals( "weight" ) )
                     {
@@ -409,12 +465,7 @@ public class MD5MeshReader
                     }
                     else if ( token.equals( "shader" ) )
                     {
-                        String shaderName = st.getUnquotedRest();
-                        
-                        if ( skin == null )
-                        {
-                            shader = createShader( shaderName, appFactory, baseURL );
-                        }
+                        shaderName = st.getUnquotedRest();
                     }
                     else if ( token.equals( "}" ) )
                     {
@@ -422,14 +473,13 @@ public class MD5MeshReader
                     }
                 }
                 
-                meshes.add( compileMesh( meshName, shader, vertDefs, triDefs, weightDefs, geomFactory, scale, animFactory ) );
+                meshes.add( parseMesh( meshName, shaderName, vertDefs, triDefs, weightDefs ) );
             }
         }
         
         br.close();
         
-        this.skeleton = skeleton;
-        this.meshes = meshes.toArray( new MD5Mesh[ meshes.size() ] );
+        return ( new MD5MeshData( jointNames, jointTranslations, jointRotations, meshes.toArray( new MD5MeshData.Mesh[ meshes.size() ] ) ) );
     }
     
     private static void computeNormals( float[] coords, int[] triangles, NamedObject geom, GeometryFactory geomFactory )
@@ -521,10 +571,112 @@ public class MD5MeshReader
     }
     
     public static Object[][][] load( InputStream in, URL baseURL, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "MD5", baseURL, geomFactory );
+        try
+        {
+            final MD5MeshData data = parseMeshFile( load.wrap( in ) );
+            
+            final Object[][][] result = loadMeshes( data, baseURL, appFactory, skin, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup, load.getMetrics() );
+            
+            load.setSuccessful();
+            
+            return ( result );
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    /**
+     * Reads the parsed mesh file from the cache or parses it and (re)writes the cache entry.
+     */
+    private static MD5MeshData readMeshData( URL url, ModelCache cache, MeteredLoad load ) throws IOException, IncorrectFormatException
+    {
+        if ( cache == null )
+            return ( parseMeshFile( load.wrap( url.openStream() ) ) );
+        
+        ModelCacheReader reader = cache.open( url, MD5MeshData.LOADER_ID, MD5MeshData.VERSION );
+        
+        if ( reader != null )
+        {
+            try
+            {
+                return ( MD5MeshData.read( reader ) );
+            }
+            catch ( IOException e )
+            {
+                // corrupt cache file. It is rewritten below.
+            }
+            catch ( RuntimeException e )
+            {
+                // truncated cache file. It is rewritten below.
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        
+        // Stamped before reading, so that a change during the load invalidates the cache entry.
+        final ModelCache.Stamp stamp = cache.stamp( url );
+        
+        final MD5MeshData data = parseMeshFile( load.wrap( url.openStream() ) );
+        
+        ModelCacheWriter writer = ( stamp == null ) ? null : cache.create( stamp, MD5MeshData.LOADER_ID, MD5MeshData.VERSION );
+        
+        if ( writer != null )
+        {
+            try
+            {
+                data.write( writer );
+                writer.close();
+            }
+            catch ( IOException e )
+            {
+                // The model is loaded anyway. It just isn't cached.
+                writer.abort();
+            }
+        }
+        
+        return ( data );
+    }
+    
+    /**
+     * Loads the MD5MESH file through the given cache.<br>
+     * If the cache holds a valid entry for the url, the source is not parsed
+     * at all. Otherwise the source is parsed and the cache entry is (re)written.
+     * Only local files and entries of local jars are cached.
+     * 
+     * @param url the MD5MESH file
+     * @param cache the cache to use (may be null)
+     */
+    public static Object[][][] load( URL url, ModelCache cache, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "MD5", url, geomFactory );
+        try
+        {
+            final MD5MeshData data = readMeshData( url, cache, load );
+            
+            final Object[][][] result = loadMeshes( data, LoaderUtils.extractBaseURL( url ), appFactory, skin, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, animFactory, siHandler, rootGroup, load.getMetrics() );
+            
+            load.setSuccessful();
+            
+            return ( result );
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    private static Object[][][] loadMeshes( MD5MeshData data, URL baseURL, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup, LoadMetrics metrics ) throws IOException, IncorrectFormatException, ParsingException
     {
         MD5MeshReader reader = new MD5MeshReader();
         
-        reader.readMeshFile( in, baseURL, skin, appFactory, geomFactory, convertZup2Yup, scale, animFactory );
+        metrics.enterPhase( LoadPhase.CONVERT );
+        reader.compile( data, baseURL, skin, appFactory, geomFactory, convertZup2Yup, scale, animFactory );
         
         Object[][][] weights = new Object[ reader.meshes.length ][][];
         
@@ -34,12 +34,24 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jagatoo.loaders.models._util.MeteredLoad;
+
 public class MS3DPrototypeLoader {
 
 	public static MS3DPrototypeModel load( InputStream inputStream ) {
+		return load( inputStream, null );
+	}
+
+	/**
+	 * @param inputStream
+	 * @param resource the loaded resource (e.g. its URL) for the load metrics, may be null
+	 */
+	public static MS3DPrototypeModel load( InputStream inputStream, Object resource ) {
+
+		final MeteredLoad load = MeteredLoad.begin( "MS3D", resource, null );
 
 		try {
-			BufferedInputStream in = new BufferedInputStream( inputStream );
+			BufferedInputStream in = new BufferedInputStream( load.wrap( inputStream ) );
 
 			System.out.println( "Loading MS3D model..." );
 
@@ -47,6 +59,8 @@ public class MS3DPrototypeLoader {
 
 	        System.out.println( "Model successfully  loaded" );
 
+	        load.setSuccessful();
+
 	        return model;
 
 		} catch (FileNotFoundException e) {
@@ -54,6 +68,8 @@ public class MS3DPrototypeLoader {
 		} catch (IOException e) {
 			System.out.println( e.getMessage() );
 			throw new RuntimeException( e );
+		} finally {
+			load.end();
 		}
 	}
 
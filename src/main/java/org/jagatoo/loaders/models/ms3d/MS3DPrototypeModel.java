@@ -33,6 +33,7 @@ import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 
+import org.jagatoo.loaders.LoadMetrics;
 import org.jagatoo.loaders.models.ms3d.utils.RotationUtils;
 import org.jagatoo.util.streams.LittleEndianDataInputStream;
 import org.openmali.vecmath2.Matrix4f;
@@ -110,6 +111,8 @@ public class MS3DPrototypeModel {
 			triangles[ i ] = new MS3DTriangle( in );
 		}
 
+		LoadMetrics.current().addGeometry( numVerts, numTriangles * 3 );
+
 		//read mesh groups
 		numMeshes = in.readUnsignedShort();
 		meshes = new MS3DMesh[ numMeshes ];
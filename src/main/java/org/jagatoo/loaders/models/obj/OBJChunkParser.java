@@ -0,0 +1,513 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+import java.util.ArrayList;
+
+/**
+ * Parses a range of OBJ file bytes, that starts and ends at line boundaries.
+ * The bytes are scanned directly (no Strings or tokenizers for the geometry
+ * lines) and the results are collected in primitive arrays.<br>
+ * Relative (negative) indices can't be resolved before the preceding chunks
+ * are known. They are stored as RELATIVE_BIAS + local count + index and
+ * resolved by {@link #resolveIndex(int, int)}.<br>
+ * Group, material and mtllib statements are recorded as events with the
+ * number of faces parsed before them, so that they can be replayed in order.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+final class OBJChunkParser
+{
+    public static final int EVENT_GROUP = 1;
+    public static final int EVENT_MTLLIB = 2;
+    public static final int EVENT_USEMTL = 3;
+    
+    private static final int RELATIVE_BIAS = Integer.MIN_VALUE / 2;
+    
+    // exactly representable powers of ten
+    private static final double[] POWERS_OF_TEN = new double[ 23 ];
+    static
+    {
+        POWERS_OF_TEN[ 0 ] = 1.0;
+        for ( int i = 1; i < POWERS_OF_TEN.length; i++ )
+            POWERS_OF_TEN[ i ] = POWERS_OF_TEN[ i - 1 ] * 10.0;
+    }
+    
+    private byte[] data;
+    private final int end;
+    private int pos;
+    
+    private final float[] geomOffset;
+    private final boolean debug;
+    
+    final OBJVertexData vertexData;
+    
+    int[] corners = new int[ 3 * 256 ];
+    int numCorners = 0;
+    int[] faceSizes = new int[ 64 ];
+    int numFaces = 0;
+    
+    int[] eventTypes = new int[ 8 ];
+    int[] eventFaces = new int[ 8 ];
+    final ArrayList<String> eventArgs = new ArrayList<String>();
+    int numEvents = 0;
+    
+    /**
+     * Resolves an index stored by the parser.
+     * 
+     * @param index the stored index
+     * @param base the number of elements defined by the preceding chunks
+     * 
+     * @return the absolute 0-based index or -1.
+     */
+    static int resolveIndex( int index, int base )
+    {
+        if ( index >= -1 )
+            return ( index );
+        
+        return ( index - RELATIVE_BIAS + base );
+    }
+    
+    private static boolean isBlank( byte b )
+    {
+        return ( ( b == ' ' ) || ( b == '\t' ) );
+    }
+    
+    private static boolean isLineEnd( byte b )
+    {
+        return ( ( b == '\n' ) || ( b == '\r' ) );
+    }
+    
+    private void skipBlanks()
+    {
+        while ( ( pos < end ) && isBlank( data[ pos ] ) )
+            pos++;
+    }
+    
+    private void skipLine()
+    {
+        while ( ( pos < end ) && ( data[ pos ] != '\n' ) )
+            pos++;
+        
+        pos++;
+    }
+    
+    private boolean atLineEnd()
+    {
+        return ( ( pos >= end ) || isLineEnd( data[ pos ] ) );
+    }
+    
+    /**
+     * @return the rest of the line without leading and trailing whitespace or null, if it is empty.
+     */
+    private String restOfLine()
+    {
+        skipBlanks();
+        
+        final int start = pos;
+        while ( !atLineEnd() )
+            pos++;
+        
+        int stop = pos;
+        while ( ( stop > start ) && isBlank( data[ stop - 1 ] ) )
+            stop--;
+        
+        if ( stop == start )
+            return ( null );
+        
+        return ( new String( data, start, stop - start ) );
+    }
+    
+    private String nextToken()
+    {
+        skipBlanks();
+        
+        final int start = pos;
+        while ( !atLineEnd() && !isBlank( data[ pos ] ) )
+            pos++;
+        
+        if ( pos == start )
+            return ( null );
+        
+        return ( new String( data, start, pos - start ) );
+    }
+    
+    private boolean keywordEquals( int start, int length, String keyword )
+    {
+        if ( length != keyword.length() )
+            return ( false );
+        
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( data[ start + i ] != keyword.charAt( i ) )
+                return ( false );
+        }
+        
+        return ( true );
+    }
+    
+    /**
+     * Parses a decimal float. Up to 18 significant digits and exponents, that
+     * keep the scale exactly representable, are computed directly. Anything
+     * else (including "nan" and "inf") is handed to Float.parseFloat().
+     * 
+     * @return the float value or 0, if the line has no further token.
+     */
+    private float parseFloat()
+    {
+        skipBlanks();
+        
+        // a trailing comment ends the line
+        if ( ( pos < end ) && ( data[ pos ] == '#' ) )
+            return ( 0f );
+        
+        final int start = pos;
+        
+        boolean negative = false;
+        if ( ( pos < end ) && ( ( data[ pos ] == '-' ) || ( data[ pos ] == '+' ) ) )
+        {
+            negative = ( data[ pos ] == '-' );
+            pos++;
+        }
+        
+        long mantissa = 0L;
+        int numDigits = 0;
+        int scale = 0;
+        boolean anyDigits = false;
+        
+        while ( ( pos < end ) && ( data[ pos ] >= '0' ) && ( data[ pos ] <= '9' ) )
+        {
+            if ( numDigits < 18 )
+            {
+                mantissa = mantissa * 10L + ( data[ pos ] - '0' );
+                if ( mantissa != 0L )
+                    numDigits++;
+            }
+            else
+            {
+                scale++;
+            }
+            
+            anyDigits = true;
+            pos++;
+        }
+        
+        if ( ( pos < end ) && ( data[ pos ] == '.' ) )
+        {
+            pos++;
+            
+            while ( ( pos < end ) && ( data[ pos ] >= '0' ) && ( data[ pos ] <= '9' ) )
+            {
+                if ( numDigits < 18 )
+                {
+                    mantissa = mantissa * 10L + ( data[ pos ] - '0' );
+                    if ( mantissa != 0L )
+                        numDigits++;
+                    scale--;
+                }
+                
+                anyDigits = true;
+                pos++;
+            }
+        }
+        
+        if ( anyDigits && ( pos < end ) && ( ( data[ pos ] == 'e' ) || ( data[ pos ] == 'E' ) ) )
+        {
+            pos++;
+            
+            boolean negativeExp = false;
+            if ( ( pos < end ) && ( ( data[ pos ] == '-' ) || ( data[ pos ] == '+' ) ) )
+            {
+                negativeExp = ( data[ pos ] == '-' );
+                pos++;
+            }
+            
+            int exp = 0;
+            while ( ( pos < end ) && ( data[ pos ] >= '0' ) && ( data[ pos ] <= '9' ) )
+            {
+                if ( exp < 10000 )
+                    exp = exp * 10 + ( data[ pos ] - '0' );
+                pos++;
+            }
+            
+            scale += negativeExp ? -exp : exp;
+        }
+        
+        if ( anyDigits && ( atLineEnd() || isBlank( data[ pos ] ) || ( data[ pos ] == '#' ) ) )
+        {
+            double value = mantissa;
+            
+            if ( ( scale == 0 ) || ( mantissa == 0L ) )
+            {
+                return ( negative ? (float)-value : (float)value );
+            }
+            
+            if ( ( mantissa < ( 1L << 53 ) ) && ( scale >= -22 ) && ( scale <= 22 ) )
+            {
+                if ( scale < 0 )
+                    value /= POWERS_OF_TEN[ -scale ];
+                else
+                    value *= POWERS_OF_TEN[ scale ];
+                
+                return ( negative ? (float)-value : (float)value );
+            }
+        }
+        
+        // fallback
+        while ( !atLineEnd() && !isBlank( data[ pos ] ) )
+            pos++;
+        
+        if ( pos == start )
+            return ( 0f );
+        
+        return ( Float.parseFloat( new String( data, start, pos - start ) ) );
+    }
+    
+    /**
+     * Parses a 1-based (or negative relative) OBJ index.
+     * 
+     * @param count the number of elements defined so far in this chunk
+     * 
+     * @return the 0-based index, a relative index or -1, if there is none.
+     */
+    private int parseIndex( int count )
+    {
+        boolean negative = false;
+        if ( ( pos < end ) && ( data[ pos ] == '-' ) )
+        {
+            negative = true;
+            pos++;
+        }
+        
+        int value = 0;
+        boolean anyDigits = false;
+        while ( ( pos < end ) && ( data[ pos ] >= '0' ) && ( data[ pos ] <= '9' ) )
+        {
+            value = value * 10 + ( data[ pos ] - '0' );
+            anyDigits = true;
+            pos++;
+        }
+        
+        if ( !anyDigits || ( value == 0 ) )
+            return ( -1 );
+        
+        if ( negative )
+            return ( RELATIVE_BIAS + count - value );
+        
+        return ( value - 1 );
+    }
+    
+    private void parseFace()
+    {
+        int size = 0;
+        
+        while ( true )
+        {
+            skipBlanks();
+            
+            if ( atLineEnd() || ( data[ pos ] == '#' ) )
+                break;
+            
+            final int v = parseIndex( vertexData.getNumVertices() );
+            int t = -1;
+            int n = -1;
+            
+            if ( ( pos < end ) && ( data[ pos ] == '/' ) )
+            {
+                pos++;
+                t = parseIndex( vertexData.getNumTexCoords() );
+                
+                if ( ( pos < end ) && ( data[ pos ] == '/' ) )
+                {
+                    pos++;
+                    n = parseIndex( vertexData.getNumNormals() );
+                }
+            }
+            
+            // skip anything unexpected up to the next corner
+            while ( !atLineEnd() && !isBlank( data[ pos ] ) )
+                pos++;
+            
+            final int c = ( numCorners + size ) * 3;
+            if ( c + 3 > corners.length )
+            {
+                int[] newCorners = new int[ corners.length << 1 ];
+                System.arraycopy( corners, 0, newCorners, 0, c );
+                corners = newCorners;
+            }
+            
+            corners[ c + 0 ] = v;
+            corners[ c + 1 ] = t;
+            corners[ c + 2 ] = n;
+            size++;
+        }
+        
+        // Points and lines don't make up a face.
+        if ( size < 3 )
+            return;
+        
+        if ( numFaces == faceSizes.length )
+        {
+            int[] newSizes = new int[ numFaces << 1 ];
+            System.arraycopy( faceSizes, 0, newSizes, 0, numFaces );
+            faceSizes = newSizes;
+        }
+        
+        faceSizes[ numFaces++ ] = size;
+        numCorners += size;
+    }
+    
+    private void addEvent( int type, String arg )
+    {
+        if ( numEvents == eventTypes.length )
+        {
+            int[] newTypes = new int[ numEvents << 1 ];
+            System.arraycopy( eventTypes, 0, newTypes, 0, numEvents );
+            eventTypes = newTypes;
+            
+            int[] newFaces = new int[ numEvents << 1 ];
+            System.arraycopy( eventFaces, 0, newFaces, 0, numEvents );
+            eventFaces = newFaces;
+        }
+        
+        eventTypes[ numEvents ] = type;
+        eventFaces[ numEvents ] = numFaces;
+        eventArgs.add( arg );
+        numEvents++;
+    }
+    
+    private void printIgnored( int lineStart, String message )
+    {
+        pos = lineStart;
+        
+        System.err.println( OBJPrototypeLoader.class.getName() + ":  " + message + ":  \"" + restOfLine() + "\"" );
+    }
+    
+    public void parse()
+    {
+        while ( pos < end )
+        {
+            skipBlanks();
+            
+            final int keyStart = pos;
+            while ( !atLineEnd() && !isBlank( data[ pos ] ) )
+                pos++;
+            final int keyLength = pos - keyStart;
+            
+            if ( keyLength == 0 )
+            {
+                // empty line: ignore
+            }
+            else if ( data[ keyStart ] == '#' )
+            {
+                // comment: ignore
+            }
+            else if ( keywordEquals( keyStart, keyLength, "v" ) )
+            {
+                float x = parseFloat();
+                float y = parseFloat();
+                float z = parseFloat();
+                
+                if ( geomOffset != null )
+                {
+                    x += geomOffset[ 0 ];
+                    y += geomOffset[ 1 ];
+                    z += geomOffset[ 2 ];
+                }
+                
+                vertexData.addVertex( x, y, z );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "vn" ) )
+            {
+                final float x = parseFloat();
+                final float y = parseFloat();
+                final float z = parseFloat();
+                
+                vertexData.addNormal( x, y, z );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "vt" ) )
+            {
+                final float s = parseFloat();
+                final float t = parseFloat();
+                
+                vertexData.addTexCoord( s, t );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "f" ) )
+            {
+                parseFace();
+            }
+            else if ( keywordEquals( keyStart, keyLength, "g" ) || keywordEquals( keyStart, keyLength, "o" ) )
+            {
+                addEvent( EVENT_GROUP, restOfLine() );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "mtllib" ) )
+            {
+                addEvent( EVENT_MTLLIB, nextToken() );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "usemtl" ) )
+            {
+                addEvent( EVENT_USEMTL, restOfLine() );
+            }
+            else if ( keywordEquals( keyStart, keyLength, "s" ) )
+            {
+                if ( debug )
+                    printIgnored( keyStart, "smoothing groups not currently supported" );
+            }
+            else
+            {
+                if ( debug )
+                    printIgnored( keyStart, "ignoring unknown OBJ tag" );
+            }
+            
+            skipLine();
+        }
+        
+        // Only the parsed data is needed from now on.
+        data = null;
+    }
+    
+    /**
+     * @param data the file's bytes
+     * @param start the first byte of this chunk (at a line start)
+     * @param end the end of this chunk (at a line start or the end of data)
+     * @param geomOffset an offset to add to all vertices (may be null)
+     * @param debug print ignored lines?
+     */
+    public OBJChunkParser( byte[] data, int start, int end, float[] geomOffset, boolean debug )
+    {
+        this.data = data;
+        this.pos = start;
+        this.end = end;
+        this.geomOffset = geomOffset;
+        this.debug = debug;
+        
+        this.vertexData = new OBJVertexData( ( end - start ) / 128 );
+    }
+}
@@ -34,7 +34,9 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.jagatoo.datatypes.NamedObject;
+import org.jagatoo.geometry.MeshOptimizer;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
@@ -46,13 +48,16 @@ import org.jagatoo.opengl.enums.TextureMode;
 import org.openmali.spatial.bounds.BoundsType;
 
 /**
- * Insert type comment here.
+ * Insert type comment here.<br>
+ * The shapes' geometries are {@link GeometryType#INDEXED_TRIANGLE_ARRAY}s
+ * (they used to be non-indexed TRIANGLE_ARRAYs), since corners, that share
+ * the same vertex, texCoord and normal, are merged.
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
 public class OBJConverter
 {
-    private static final GeometryType GEOM_TYPE = GeometryType.TRIANGLE_ARRAY;
+    private static final GeometryType GEOM_TYPE = GeometryType.INDEXED_TRIANGLE_ARRAY;
     
     private static NamedObject textureAttribs = null;
     private static NamedObject transpAttribs = null;
@@ -118,56 +123,240 @@ public class OBJConverter
         }
     }
     
-    private static NamedObject buildShape( OBJFaceList faceList, String name, GeometryFactory geomFactory, HashMap<String, NamedObject> appMap, NodeFactory nodeFactory )
+    private static void computeFaceNormal( OBJFaceList faceList, int face, float[] out, int offset )
     {
-        int totalVerts = 0;
-        int[] indexs = new int[ faceList.getFaces().size() ];
+        final float[] verts = faceList.getVertexData().getVertices();
+        final int numVertices = faceList.getVertexData().getNumVertices();
+        final int start = faceList.getFaceStart( face );
+        
+        final int i0 = faceList.getVertexIndex( start + 0 );
+        final int i1 = faceList.getVertexIndex( start + 1 );
+        final int i2 = faceList.getVertexIndex( start + 2 );
+        
+        out[ offset + 0 ] = 0f;
+        out[ offset + 1 ] = 0f;
+        out[ offset + 2 ] = 0f;
+        
+        if ( ( i0 < 0 ) || ( i1 < 0 ) || ( i2 < 0 ) || ( i0 >= numVertices ) || ( i1 >= numVertices ) || ( i2 >= numVertices ) )
+            return;
+        
+        final float ax = verts[ i1 * 3 + 0 ] - verts[ i0 * 3 + 0 ];
+        final float ay = verts[ i1 * 3 + 1 ] - verts[ i0 * 3 + 1 ];
+        final float az = verts[ i1 * 3 + 2 ] - verts[ i0 * 3 + 2 ];
+        final float bx = verts[ i2 * 3 + 0 ] - verts[ i0 * 3 + 0 ];
+        final float by = verts[ i2 * 3 + 1 ] - verts[ i0 * 3 + 1 ];
+        final float bz = verts[ i2 * 3 + 2 ] - verts[ i0 * 3 + 2 ];
         
-        for ( int i = 0; i < faceList.getFaces().size(); i++ )
+        final float nx = ay * bz - az * by;
+        final float ny = az * bx - ax * bz;
+        final float nz = ax * by - ay * bx;
+        
+        final float length = (float)Math.sqrt( nx * nx + ny * ny + nz * nz );
+        
+        if ( length > 0f )
         {
-            OBJFace face = faceList.getFaces().get( i );
-            totalVerts += face.getCount();
-            
-            if ( i < faceList.getFaces().size() - 1 )
-            {
-                indexs[ i + 1 ] = face.getCount();
-            }
+            // negated, like the OBJ winding expects
+            out[ offset + 0 ] = -nx / length;
+            out[ offset + 1 ] = -ny / length;
+            out[ offset + 2 ] = -nz / length;
         }
+    }
+    
+    private static int hashCorner( int v, int t, int n )
+    {
+        int h = v * 0x9E3779B1;
+        h ^= t * 0x85EBCA6B;
+        h ^= n * 0xC2B2AE35;
         
-        NamedObject geom = geomFactory.createGeometry( name, GEOM_TYPE, 3, totalVerts, 0, null );
+        return ( h ^ ( h >>> 16 ) );
+    }
+    
+    /**
+     * Deduplicates the face list's corners, computes the missing normals and optimizes the mesh.
+     */
+    static OBJMesh computeMesh( OBJFaceList faceList, String name )
+    {
+        final OBJVertexData vertexData = faceList.getVertexData();
+        final int numFaces = faceList.getNumFaces();
+        final boolean useNormals = faceList.normalsSupported();
+        final boolean useTex = faceList.texturesUsed() && faceList.texturesSupported();
         
-        int currentVert = 0;
+        /*
+         * Collect the unique (vertex, texCoord, normal) corners in an open
+         * addressing hash. Corners without a normal get the face normal and
+         * are therefore only shared within their face (n = -2 - face).
+         */
+        int[] unique = new int[ 3 * Math.max( 16, faceList.getNumCorners() / 2 ) ];
+        int numUnique = 0;
         
-        float[][] dataVerts = new float[ totalVerts ][ 3 ];
-        float[][] dataNormals = new float[ totalVerts ][ 3 ];
-        float[][] dataTexs = new float[ totalVerts ][ 3 ];
+        int tableSize = 16;
+        while ( tableSize < faceList.getNumCorners() * 2 )
+            tableSize <<= 1;
+        final int[] table = new int[ tableSize ];
+        final int mask = tableSize - 1;
         
-        NamedObject app = null;
+        final int[] indices = new int[ faceList.getNumTriangles() * 3 ];
+        int numIndices = 0;
         
-        for ( int i = 0; i < faceList.getFaces().size(); i++ )
+        int[] faceCorners = new int[ 16 ];
+        
+        String materialName = null;
+        
+        for ( int f = 0; f < numFaces; f++ )
         {
-            OBJFace face = faceList.getFaces().get( i );
             // hawkwind hack:
-            if ( face.getMaterial() != null )
+            OBJMaterial mat = faceList.getMaterial( f );
+            if ( mat != null )
             {
-                app = appMap.get( face.getMaterial().getName() );
+                materialName = mat.getName();
             }
             
-            face.configure( dataVerts, dataNormals, dataTexs, currentVert );
-            currentVert += face.getCount();
+            final int start = faceList.getFaceStart( f );
+            final int size = faceList.getFaceSize( f );
+            
+            if ( size > faceCorners.length )
+                faceCorners = new int[ size ];
+            
+            for ( int k = 0; k < size; k++ )
+            {
+                final int v = faceList.getVertexIndex( start + k );
+                final int t = useTex ? faceList.getTexCoordIndex( start + k ) : -1;
+                int n = useNormals ? faceList.getNormalIndex( start + k ) : -1;
+                if ( n < 0 )
+                    n = -2 - f;
+                
+                int slot = hashCorner( v, t, n ) & mask;
+                int index;
+                while ( true )
+                {
+                    index = table[ slot ] - 1;
+                    
+                    if ( index < 0 )
+                    {
+                        index = numUnique++;
+                        table[ slot ] = numUnique;
+                        
+                        if ( numUnique * 3 > unique.length )
+                        {
+                            int[] newUnique = new int[ unique.length << 1 ];
+                            System.arraycopy( unique, 0, newUnique, 0, index * 3 );
+                            unique = newUnique;
+                        }
+                        
+                        unique[ index * 3 + 0 ] = v;
+                        unique[ index * 3 + 1 ] = t;
+                        unique[ index * 3 + 2 ] = n;
+                        break;
+                    }
+                    
+                    if ( ( unique[ index * 3 + 0 ] == v ) && ( unique[ index * 3 + 1 ] == t ) && ( unique[ index * 3 + 2 ] == n ) )
+                        break;
+                    
+                    slot = ( slot + 1 ) & mask;
+                }
+                
+                faceCorners[ k ] = index;
+            }
+            
+            // triangle fan
+            for ( int k = 1; k < size - 1; k++ )
+            {
+                indices[ numIndices++ ] = faceCorners[ 0 ];
+                indices[ numIndices++ ] = faceCorners[ k ];
+                indices[ numIndices++ ] = faceCorners[ k + 1 ];
+            }
         }
         
-        boolean useTex = faceList.texturesUsed() && ( dataTexs != null );
+        final float[] verts = vertexData.getVertices();
+        final float[] normals = vertexData.getNormals();
+        final float[] texs = vertexData.getTexCoords();
+        
+        float[] dataVerts = new float[ numUnique * 3 ];
+        float[] dataNormals = new float[ numUnique * 3 ];
+        float[] dataTexs = useTex ? new float[ numUnique * 2 ] : null;
         
-        for ( int i = 0 ; i < totalVerts; i++ )
+        for ( int i = 0; i < numUnique; i++ )
         {
-            geomFactory.setCoordinates( geom, GEOM_TYPE, i, dataVerts[i], 0, 1 );
-            geomFactory.setNormals( geom, GEOM_TYPE, i, dataNormals[i], 0, 1 );
+            final int v = unique[ i * 3 + 0 ];
+            final int t = unique[ i * 3 + 1 ];
+            final int n = unique[ i * 3 + 2 ];
+            
+            if ( ( v >= 0 ) && ( v < vertexData.getNumVertices() ) )
+                System.arraycopy( verts, v * 3, dataVerts, i * 3, 3 );
             
-            if ( useTex )
-                geomFactory.setTexCoords( geom, GEOM_TYPE, 0, 2, i, dataTexs[i], 0, 1 );
+            if ( ( n >= 0 ) && ( n < vertexData.getNumNormals() ) )
+                System.arraycopy( normals, n * 3, dataNormals, i * 3, 3 );
+            else if ( n <= -2 )
+                computeFaceNormal( faceList, -2 - n, dataNormals, i * 3 );
+            
+            if ( ( dataTexs != null ) && ( t >= 0 ) && ( t < vertexData.getNumTexCoords() ) )
+                System.arraycopy( texs, t * 2, dataTexs, i * 2, 2 );
+        }
+        
+        final int[] remap = GeometryBuffers.optimizeMesh( name, indices, numIndices, numUnique, dataVerts );
+        if ( remap != null )
+        {
+            dataVerts = MeshOptimizer.remapVertexData( dataVerts, 3, remap );
+            dataNormals = MeshOptimizer.remapVertexData( dataNormals, 3, remap );
+            
+            if ( dataTexs != null )
+                dataTexs = MeshOptimizer.remapVertexData( dataTexs, 2, remap );
+        }
+        
+        int[] meshIndices = indices;
+        if ( numIndices < indices.length )
+        {
+            meshIndices = new int[ numIndices ];
+            System.arraycopy( indices, 0, meshIndices, 0, numIndices );
+        }
+        
+        return ( new OBJMesh( numUnique, dataVerts, dataNormals, dataTexs, meshIndices, materialName ) );
+    }
+    
+    /**
+     * Computes the meshes of all groups, that don't have one, yet.
+     * {@link #convert(OBJModelPrototype, URL, AppearanceFactory, String, GeometryFactory, boolean, float, NodeFactory, SpecialItemsHandler, NamedObject)}
+     * then only passes them to the factories.
+     * 
+     * @param group
+     */
+    static void computeMeshes( OBJGroup group )
+    {
+        if ( ( group.getMesh() == null ) && ( group.getNumFaces() > 0 ) )
+        {
+            String shapeName = ( ( group.hasName() ) && ( !group.isTopGroup() ) ) ? group.getName() : "";
+            group.setMesh( computeMesh( group, shapeName ) );
         }
         
+        for ( int i = 0; i < group.getChildren().size(); i++ )
+        {
+            computeMeshes( group.getChildren().get( i ) );
+        }
+    }
+    
+    private static NamedObject buildShape( OBJFaceList faceList, String name, GeometryFactory geomFactory, HashMap<String, NamedObject> appMap, NodeFactory nodeFactory )
+    {
+        OBJMesh mesh = faceList.getMesh();
+        if ( mesh == null )
+            mesh = computeMesh( faceList, name );
+        
+        final int numVertices = mesh.numVertices;
+        final int numIndices = mesh.indices.length;
+        
+        NamedObject app = ( mesh.materialName == null ) ? null : appMap.get( mesh.materialName );
+        
+        NamedObject geom = geomFactory.createGeometry( name, GEOM_TYPE, 3, numVertices, numIndices, null );
+        
+        geomFactory.setCoordinates( geom, GEOM_TYPE, 0, mesh.coords, 0, numVertices );
+        geomFactory.setNormals( geom, GEOM_TYPE, 0, mesh.normals, 0, numVertices );
+        
+        if ( mesh.texCoords != null )
+            geomFactory.setTexCoords( geom, GEOM_TYPE, 0, 2, 0, mesh.texCoords, 0, numVertices );
+        
+        geomFactory.setIndex( geom, GEOM_TYPE, 0, mesh.indices, 0, numIndices );
+        
+        geomFactory.finalizeGeometry( geom, GEOM_TYPE, 0, numVertices, 0, numIndices );
+        
         NamedObject shape = nodeFactory.createShape( name, geom, app, BoundsType.SPHERE );
         
         return ( shape );
@@ -176,12 +365,12 @@ public class OBJConverter
     private static void build( HashMap<String, NamedObject> appMap, OBJGroup objGroup, NamedObject parentGroup, GeometryFactory geomFactory, NodeFactory nodeFactory, SpecialItemsHandler siHandler )
     {
         List<OBJGroup> children = objGroup.getChildren();
-        if ( ( children.size() > 0 ) || ( objGroup.getFaces().size() == 0 ) )
+        if ( ( children.size() > 0 ) || !objGroup.hasGeometry() )
         {
             String name = "";
             if ( objGroup.hasName() )
             {
-                if ( objGroup.getFaces().size() > 0 )
+                if ( objGroup.hasGeometry() )
                     name = objGroup.getName() + "_children";
                 else
                     name = objGroup.getName();
@@ -202,7 +391,7 @@ public class OBJConverter
             nodeFactory.addNodeToGroup( childrenGroup, parentGroup );
         }
         
-        if ( objGroup.getFaces().size() > 0 )
+        if ( objGroup.hasGeometry() )
         {
             String shapeName = ( ( objGroup.hasName() ) && ( !objGroup.isTopGroup() ) ) ? objGroup.getName() : "";
             NamedObject shape = buildShape( objGroup, shapeName, geomFactory, appMap, nodeFactory );
@@ -33,112 +33,113 @@
  */
 package org.jagatoo.loaders.models.obj;
 
-import java.util.List;
-
-import org.jagatoo.util.arrays.ArrayVector;
-import org.jagatoo.util.geometry.Polygon;
-
 /**
- * An OBJFace.
+ * An OBJFace.<br>
+ * This is a read-only view on one face of an {@link OBJFaceList}.
  * 
  * @author Kevin Glass
+ * @author Marvin Froehlich (aka Qudus)
+ * 
+ * @deprecated The faces are stored as index triples in {@link OBJFaceList}.
+ *             Use {@link OBJFaceList#getFaceStart(int)}, {@link OBJFaceList#getFaceSize(int)}
+ *             and the index getters instead.
  */
+@Deprecated
 public class OBJFace
 {
-    private OBJFaceList  faceList;
-    private int[]        vData;
-    private int[]        tData;
-    private int[]        nData;
-    private int i;
-    private OBJMaterial  mat;
-    private Polygon      poly = new Polygon();
+    private final OBJFaceList faceList;
+    private final int         face;
     
     public OBJMaterial getMaterial()
     {
-        return ( mat );
+        return ( faceList.getMaterial( face ) );
     }
     
     public int getCount()
     {
-        return ( ( vData.length - 2 ) * 3 );
+        return ( ( faceList.getFaceSize( face ) - 2 ) * 3 );
     }
     
-    private int findIndex( float[] vt )
+    private static float[] get( float[] data, int numElements, int index, int size )
     {
-        for ( int i = 0; i < vData.length; i++ )
-        {
-            if ( faceList.getVertexList().get( vData[ i ] ) == vt )
-            {
-                return ( i );
-            }
-        }
+        if ( ( index < 0 ) || ( index >= numElements ) )
+            return ( null );
+        
+        float[] result = new float[ size ];
+        System.arraycopy( data, index * size, result, 0, size );
         
-        return ( -1 );
+        return ( result );
     }
     
+    /**
+     * Writes the fanned triangles of this face to the given arrays.
+     * 
+     * @param dataVerts
+     * @param dataNormals
+     * @param dataTexs
+     * @param index the first array element to write
+     */
     public void configure( float[][] dataVerts, float[][] dataNormals, float[][] dataTexs, int index )
     {
-        float[] v1 = new float[ 3 ];
-        float[] v2 = new float[ 3 ];
-        float[] faceNormal = new float[ 3 ];
+        final OBJVertexData vertexData = faceList.getVertexData();
+        final int start = faceList.getFaceStart( face );
+        final int size = faceList.getFaceSize( face );
         
-        ArrayVector.sub( faceList.getVertexList().get( vData[ 1 ] ), faceList.getVertexList().get( vData[ 0 ] ), v1 );
-        ArrayVector.sub( faceList.getVertexList().get( vData[ 2 ] ), faceList.getVertexList().get( vData[ 0 ] ), v2 );
-        ArrayVector.cross( v1, v2, faceNormal );
-        ArrayVector.normalize( faceNormal );
-        ArrayVector.negate( faceNormal );
+        float[] faceNormal = new float[ 3 ];
+        float[] v0 = get( vertexData.getVertices(), vertexData.getNumVertices(), faceList.getVertexIndex( start + 0 ), 3 );
+        float[] v1 = get( vertexData.getVertices(), vertexData.getNumVertices(), faceList.getVertexIndex( start + 1 ), 3 );
+        float[] v2 = get( vertexData.getVertices(), vertexData.getNumVertices(), faceList.getVertexIndex( start + 2 ), 3 );
         
-        for ( int i = 0; i < vData.length; i++ )
+        if ( ( v0 != null ) && ( v1 != null ) && ( v2 != null ) )
         {
-            poly.add( faceList.getVertexList().get( vData[ i ] ) );
+            final float ax = v1[ 0 ] - v0[ 0 ];
+            final float ay = v1[ 1 ] - v0[ 1 ];
+            final float az = v1[ 2 ] - v0[ 2 ];
+            final float bx = v2[ 0 ] - v0[ 0 ];
+            final float by = v2[ 1 ] - v0[ 1 ];
+            final float bz = v2[ 2 ] - v0[ 2 ];
+            
+            faceNormal[ 0 ] = ay * bz - az * by;
+            faceNormal[ 1 ] = az * bx - ax * bz;
+            faceNormal[ 2 ] = ax * by - ay * bx;
+            
+            final float length = (float)Math.sqrt( faceNormal[ 0 ] * faceNormal[ 0 ] + faceNormal[ 1 ] * faceNormal[ 1 ] + faceNormal[ 2 ] * faceNormal[ 2 ] );
+            
+            if ( length > 0f )
+            {
+                faceNormal[ 0 ] /= -length;
+                faceNormal[ 1 ] /= -length;
+                faceNormal[ 2 ] /= -length;
+            }
         }
         
-        List<Polygon> list = poly.getAsTriangles();
-        for ( int i = 0; i < list.size(); i++ )
+        for ( int i = 0; i < size - 2; i++ )
         {
-            Polygon tri = list.get( i );
             for ( int v = 0; v < 3; v++ )
             {
-                int ptIndex = index + ( i * 3 ) + v;
-                int vIndex = findIndex( (float[])tri.getVertices().get( v ) );
+                final int corner = start + ( ( v == 0 ) ? 0 : ( i + v ) );
+                final int ptIndex = index + ( i * 3 ) + v;
                 
-                //array.setCoordinate( index + i, verts.get( vData[ i ] ) );
-                dataVerts[ ptIndex ] = faceList.getVertexList().get( vData[ vIndex ] );
+                dataVerts[ ptIndex ] = get( vertexData.getVertices(), vertexData.getNumVertices(), faceList.getVertexIndex( corner ), 3 );
                 
-                if ( ( nData[ i ] != -1 ) && ( faceList.normalsSupported() ) )
-                {
-                    dataNormals[ ptIndex ] = faceList.getNormalList().get( nData[ vIndex ] );
-                }
-                else
-                {
-                    dataNormals[ ptIndex ] = faceNormal;
-                }
+                float[] normal = null;
+                if ( faceList.normalsSupported() )
+                    normal = get( vertexData.getNormals(), vertexData.getNumNormals(), faceList.getNormalIndex( corner ), 3 );
+                dataNormals[ ptIndex ] = ( normal != null ) ? normal : faceNormal;
                 
-                if ( ( tData[ i ] != -1) && (faceList.texturesSupported() ) )
+                if ( faceList.texturesSupported() )
                 {
-                    dataTexs[ ptIndex ] = faceList.getTexList().get( tData[ vIndex ] );
+                    float[] texCoord = get( vertexData.getTexCoords(), vertexData.getNumTexCoords(), faceList.getTexCoordIndex( corner ), 2 );
+                    if ( texCoord != null )
+                        dataTexs[ ptIndex ] = texCoord;
                 }
             }
         }
     }
     
-    protected void add( int v, int n, int t )
-    {
-        vData[ i ] = v;
-        nData[ i ] = n;
-        tData[ i ] = t;
-        
-        i++;
-    }
-    
-    public OBJFace( OBJFaceList faceList, int count, OBJMaterial mat )
+    OBJFace( OBJFaceList faceList, int face )
     {
         this.faceList = faceList;
-        
-        this.vData = new int[ count ];
-        this.nData = new int[ count ];
-        this.tData = new int[ count ];
-        
-        this.mat = mat;
+        this.face = face;
     }
 }
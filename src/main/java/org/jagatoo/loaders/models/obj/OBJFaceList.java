@@ -64,20 +64,29 @@ package org.jagatoo.loaders.models.obj;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
- * A list of the faces that build up the obj file
+ * A list of the faces that build up the obj file.<br>
+ * The faces are stored as (vertex, texCoord, normal) index triples per
+ * corner in a flat int array. Indices are 0-based, -1 marks a missing one.
  * 
  * @author Kevin Glass
  * @author Marvin Froehlich (aka Qudus)
  */
 public class OBJFaceList
 {
-    private List<OBJFace> faces = new ArrayList<OBJFace>();
-    private List<float[]> verts;
-    private List<float[]> normals;
-    private List<float[]> texs;
+    private final OBJVertexData vertexData;
+    
+    private int[] corners = new int[ 3 * 64 ];
+    private int numCorners = 0;
+    private int[] faceStarts = new int[ 16 ];
+    private int numFaces = 0;
+    private int numTriangles = 0;
+    
+    // the material used from the face at materialStarts[i] on
+    private OBJMaterial[] materials = new OBJMaterial[ 1 ];
+    private int[] materialStarts = new int[ 1 ];
+    private int numMaterialRuns = 0;
     
     private boolean texturesUsed = false;
     private boolean normalsUsed = false;
@@ -85,50 +94,104 @@ public class OBJFaceList
     private boolean supportNormals = true;
     private boolean supportTextures = true;
     
-    public void setFaces( List<OBJFace> faces )
+    private OBJMesh mesh = null;
+    
+    public final OBJVertexData getVertexData()
     {
-        this.faces = faces;
+        return ( vertexData );
     }
     
-    public List<OBJFace> getFaces()
+    public final int getNumFaces()
     {
-        return ( faces );
+        return ( numFaces );
+    }
+    
+    public final int getNumCorners()
+    {
+        return ( numCorners );
+    }
+    
+    /**
+     * @return the number of triangles, the faces are fanned into.
+     */
+    public final int getNumTriangles()
+    {
+        return ( numTriangles );
     }
     
-    /*
-    public void setVertexList( List<Vector3f> verts )
+    /**
+     * @param face
+     * 
+     * @return the index of the face's first corner.
+     */
+    public final int getFaceStart( int face )
     {
-        this.verts = verts;
+        return ( faceStarts[ face ] );
     }
-    */
     
-    public List<float[]> getVertexList()
+    public final int getFaceSize( int face )
     {
-        return ( verts );
+        final int end = ( face + 1 < numFaces ) ? faceStarts[ face + 1 ] : numCorners;
+        
+        return ( end - faceStarts[ face ] );
     }
     
-    /*
-    public void setNormalList( List<float[]> normals )
+    public final int getVertexIndex( int corner )
     {
-        this.normals = normals;
+        return ( corners[ corner * 3 + 0 ] );
     }
-    */
     
-    public List<float[]> getNormalList()
+    public final int getTexCoordIndex( int corner )
     {
-        return ( normals );
+        return ( corners[ corner * 3 + 1 ] );
     }
     
-    /*
-    public void setTexList( List<float[]> texs )
+    public final int getNormalIndex( int corner )
     {
-        this.texs = texs;
+        return ( corners[ corner * 3 + 2 ] );
+    }
+    
+    public OBJMaterial getMaterial( int face )
+    {
+        int low = 0;
+        int high = numMaterialRuns - 1;
+        int run = -1;
+        
+        while ( low <= high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            
+            if ( materialStarts[ mid ] <= face )
+            {
+                run = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        
+        return ( ( run < 0 ) ? null : materials[ run ] );
     }
-    */
     
-    public List<float[]> getTexList()
+    /**
+     * @return a view on each face.
+     * 
+     * @deprecated Use {@link #getNumFaces()}, {@link #getFaceStart(int)}, {@link #getFaceSize(int)}
+     *             and the index getters instead.
+     */
+    @Deprecated
+    public List<OBJFace> getFaces()
     {
-        return ( texs );
+        ArrayList<OBJFace> faces = new ArrayList<OBJFace>( numFaces );
+        
+        for ( int i = 0; i < numFaces; i++ )
+        {
+            faces.add( new OBJFace( this, i ) );
+        }
+        
+        return ( faces );
     }
     
     public void setNormalsUsed( boolean used )
@@ -161,120 +224,83 @@ public class OBJFaceList
         return ( supportTextures );
     }
     
-    
-    private int parseInt( String token )
+    private static int[] grow( int[] array, int length )
     {
-        if ( token.length() == 0 )
-        {
-            return ( -1 );
-        }
+        if ( length <= array.length )
+            return ( array );
         
-        return ( Integer.parseInt( token ) );
-    }
-    
-    private int parseVertIndex(String token)
-    {
-        if ( token.indexOf( "/" ) >= 0 )
-        {
-            return ( parseInt( token.substring( 0, token.indexOf( "/" ) ) ) );
-        }
+        int[] newArray = new int[ Math.max( length, array.length << 1 ) ];
+        System.arraycopy( array, 0, newArray, 0, array.length );
         
-        return ( parseInt( token ) );
+        return ( newArray );
     }
     
-    private int parseTextureIndex( String token )
+    /**
+     * Adds a face.
+     * 
+     * @param data (vertex, texCoord, normal) index triples
+     * @param offset the offset in data
+     * @param size the number of corners
+     * @param mat the face's material (may be null)
+     */
+    public void addFace( int[] data, int offset, int size, OBJMaterial mat )
     {
-        int result;
-        
-        int slashPos = token.indexOf( "/" );
-        
-        if ( slashPos < 0 )
+        if ( ( numMaterialRuns == 0 ) || ( materials[ numMaterialRuns - 1 ] != mat ) )
         {
-            return ( -1 );
-        }
-        token = token.substring( slashPos + 1 );
-        slashPos = token.indexOf( "/" );
-        
-        if ( slashPos >= 0 )
-        {
-            result = parseInt( token.substring( 0, slashPos ) );
-            if (result != -1)
+            if ( numMaterialRuns == materials.length )
             {
-                texturesUsed = true;
+                OBJMaterial[] newMaterials = new OBJMaterial[ numMaterialRuns << 1 ];
+                System.arraycopy( materials, 0, newMaterials, 0, numMaterialRuns );
+                materials = newMaterials;
+                materialStarts = grow( materialStarts, numMaterialRuns << 1 );
             }
             
-            return ( result );
+            materials[ numMaterialRuns ] = mat;
+            materialStarts[ numMaterialRuns ] = numFaces;
+            numMaterialRuns++;
         }
         
-        result = parseInt( token );
-        if ( result != -1 )
+        faceStarts = grow( faceStarts, numFaces + 1 );
+        faceStarts[ numFaces++ ] = numCorners;
+        
+        corners = grow( corners, ( numCorners + size ) * 3 );
+        System.arraycopy( data, offset, corners, numCorners * 3, size * 3 );
+        
+        for ( int i = 0; i < size; i++ )
         {
-            texturesUsed = true;
+            if ( data[ offset + i * 3 + 1 ] != -1 )
+                texturesUsed = true;
+            if ( data[ offset + i * 3 + 2 ] != -1 )
+                normalsUsed = true;
         }
         
-        return ( result );
+        numCorners += size;
+        numTriangles += size - 2;
     }
     
-    private int parseNormalIndex( String token )
+    /**
+     * @return the converted mesh or null, if it hasn't been computed yet.
+     */
+    final OBJMesh getMesh()
     {
-        int result;
-        
-        if (token.indexOf( "/" ) < 0)
-        {
-            return ( -1 );
-        }
-        token = token.substring( token.indexOf( "/" ) + 1 );
-        if ( token.indexOf( "/" ) < 0 )
-        {
-            return ( -1 );
-        }
-        token = token.substring( token.indexOf( "/" ) + 1 );
-        
-        if ( token.indexOf( "/" ) >= 0 )
-        {
-            result = parseInt( token.substring( 0, token.indexOf( "/" ) ) );
-            if ( result != -1 )
-            {
-               normalsUsed = true;
-            }
-            
-            return ( result );
-        }
-        
-        result = parseInt( token );
-        if ( result != -1 )
-        {
-           normalsUsed = true;
-        }
-        
-        return ( result );
+        return ( mesh );
     }
     
-    public void add( String line, OBJMaterial mat )
+    final void setMesh( OBJMesh mesh )
     {
-        StringTokenizer tokens = new StringTokenizer( line );
-        
-        OBJFace face = new OBJFace( this, tokens.countTokens() - 1, mat );
-        
-        tokens.nextToken();
-        while ( tokens.hasMoreTokens() )
-        {
-            String pt = tokens.nextToken();
-            
-            int vi = parseVertIndex( pt );
-            int ti = parseTextureIndex( pt );
-            int ni = parseNormalIndex( pt );
-            
-            face.add( ( vi > 0 ) ? vi - 1 : -1, ( ni > 0 ) ? ni - 1 : -1, ( ti > 0 ) ? ti - 1 : -1 );
-        }
-        
-        faces.add( face );
+        this.mesh = mesh;
+    }
+    
+    /**
+     * @return true, if this list has faces or a converted mesh (read from a cache).
+     */
+    final boolean hasGeometry()
+    {
+        return ( ( numFaces > 0 ) || ( mesh != null ) );
     }
     
-    public OBJFaceList( List<float[]> verts, List<float[]> normals, List<float[]> texs )
+    public OBJFaceList( OBJVertexData vertexData )
     {
-        this.verts = verts;
-        this.normals = normals;
-        this.texs = texs;
+        this.vertexData = vertexData;
     }
 }
@@ -107,21 +107,21 @@ public class OBJGroup extends OBJFaceList
         return ( children );
     }
     
-    private OBJGroup( String name, boolean isTopGroup, List<float[]> verts, List<float[]> normals, List<float[]> texs )
+    private OBJGroup( String name, boolean isTopGroup, OBJVertexData vertexData )
     {
-        super( verts, normals, texs );
+        super( vertexData );
         
         this.name = name;
         this.isTopGroup = isTopGroup;
     }
     
-    public OBJGroup( String name, List<float[]> verts, List<float[]> normals, List<float[]> texs )
+    public OBJGroup( String name, OBJVertexData vertexData )
     {
-        this( name, false, verts, normals, texs );
+        this( name, false, vertexData );
     }
     
-    public static OBJGroup createTopGroup( List<float[]> verts, List<float[]> normals, List<float[]> texs )
+    public static OBJGroup createTopGroup( OBJVertexData vertexData )
     {
-        return ( new OBJGroup( "top", true, verts, normals, texs ) );
+        return ( new OBJGroup( "top", true, vertexData ) );
     }
 }
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+/**
+ * The converted geometry of an {@link OBJFaceList}: deduplicated vertices
+ * with their normals and texture coordinates and the triangle indices.
+ * This is what {@link OBJConverter} passes to the GeometryFactory, so that
+ * it can be cached and replayed without recomputing it.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+final class OBJMesh
+{
+    final int numVertices;
+    final float[] coords;
+    final float[] normals;
+    // null, if textures are unused
+    final float[] texCoords;
+    final int[] indices;
+    
+    // the name of the material of the last face, that has one (may be null)
+    final String materialName;
+    
+    OBJMesh( int numVertices, float[] coords, float[] normals, float[] texCoords, int[] indices, String materialName )
+    {
+        this.numVertices = numVertices;
+        this.coords = coords;
+        this.normals = normals;
+        this.texCoords = texCoords;
+        this.indices = indices;
+        this.materialName = materialName;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jagatoo.loaders.models._util.GeometryBuffers;
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+import org.jagatoo.loaders.models._util.ModelCacheWriter;
+
+/**
+ * Writes and reads {@link OBJModelPrototype}s to/from the jagatoo binary
+ * cache format.<br>
+ * The layout is the mesh optimization switches, the material map and the
+ * group tree. Each group stores its converted {@link OBJMesh} (see
+ * {@link OBJConverter#computeMeshes(OBJGroup)}) instead of the faces, so a
+ * cached model is passed to the factories without any conversion.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+final class OBJPrototypeCache
+{
+    public static final String LOADER_ID = "OBJ";
+    
+    /**
+     * Increment this, whenever the layout changes.
+     */
+    public static final int VERSION = 2;
+    
+    private static void writeMaterial( OBJMaterial mat, ModelCacheWriter out ) throws IOException
+    {
+        out.writeString( mat.getName() );
+        out.writeOptionalFloats( mat.getColor() );
+        out.writeOptionalFloats( mat.getAmbientColor() );
+        out.writeOptionalFloats( mat.getDiffuseColor() );
+        out.writeOptionalFloats( mat.getSpecularColor() );
+        out.writeFloat( mat.getShininess() );
+        out.writeString( mat.getTextureName() );
+    }
+    
+    private static OBJMaterial readMaterial( ModelCacheReader in ) throws IOException
+    {
+        OBJMaterial mat = new OBJMaterial( in.readString() );
+        
+        float[] color = in.readOptionalFloats();
+        if ( color != null )
+            mat.setColor( color );
+        
+        color = in.readOptionalFloats();
+        if ( color != null )
+            mat.setAmbientColor( color );
+        
+        color = in.readOptionalFloats();
+        if ( color != null )
+            mat.setDiffuseColor( color );
+        
+        color = in.readOptionalFloats();
+        if ( color != null )
+            mat.setSpecularColor( color );
+        
+        mat.setShininess( in.readFloat() );
+        mat.setTextureName( in.readString() );
+        
+        return ( mat );
+    }
+    
+    private static void writeGroup( OBJGroup group, ModelCacheWriter out ) throws IOException
+    {
+        out.writeString( group.getName() );
+        
+        final OBJMesh mesh = group.getMesh();
+        out.writeBoolean( mesh != null );
+        
+        if ( mesh != null )
+        {
+            out.writeString( mesh.materialName );
+            out.writeInt( mesh.numVertices );
+            out.writeFloats( mesh.coords, 0, mesh.numVertices * 3 );
+            out.writeFloats( mesh.normals, 0, mesh.numVertices * 3 );
+            out.writeOptionalFloats( mesh.texCoords );
+            out.writeInts( mesh.indices );
+        }
+        
+        out.writeInt( group.getChildren().size() );
+        for ( int i = 0; i < group.getChildren().size(); i++ )
+            writeGroup( group.getChildren().get( i ), out );
+    }
+    
+    private static void readGroup( OBJGroup group, ModelCacheReader in ) throws IOException
+    {
+        if ( in.readBoolean() )
+        {
+            final String materialName = in.readString();
+            final int numVertices = in.readInt();
+            final float[] coords = in.readFloats();
+            final float[] normals = in.readFloats();
+            final float[] texCoords = in.readOptionalFloats();
+            final int[] indices = in.readInts();
+            
+            group.setMesh( new OBJMesh( numVertices, coords, normals, texCoords, indices, materialName ) );
+        }
+        
+        final int numChildren = in.readInt();
+        for ( int i = 0; i < numChildren; i++ )
+        {
+            OBJGroup child = new OBJGroup( in.readString(), group.getVertexData() );
+            readGroup( child, in );
+            group.addChild( child );
+        }
+    }
+    
+    /**
+     * Writes the switches, the cached meshes depend on.
+     */
+    public static void writeSettings( float[] geomOffset, ModelCacheWriter out ) throws IOException
+    {
+        out.writeOptionalFloats( geomOffset );
+        out.writeBoolean( GeometryBuffers.isMeshOptimizationEnabled() );
+        out.writeBoolean( GeometryBuffers.isOverdrawOptimizationEnabled() );
+    }
+    
+    /**
+     * @return true, if the cached meshes have been computed with the same settings.
+     */
+    public static boolean readSettings( float[] geomOffset, ModelCacheReader in ) throws IOException
+    {
+        final float[] cachedOffset = in.readOptionalFloats();
+        final boolean meshOptimization = in.readBoolean();
+        final boolean overdrawOptimization = in.readBoolean();
+        
+        return ( Arrays.equals( cachedOffset, geomOffset ) && ( meshOptimization == GeometryBuffers.isMeshOptimizationEnabled() ) && ( overdrawOptimization == GeometryBuffers.isOverdrawOptimizationEnabled() ) );
+    }
+    
+    /**
+     * Writes the prototype. The groups' meshes are computed, if necessary.
+     */
+    public static void write( OBJModelPrototype prototype, ModelCacheWriter out ) throws IOException
+    {
+        OBJConverter.computeMeshes( prototype.getTopGroup() );
+        
+        out.writeInt( prototype.getMaterialMap().size() );
+        for ( Map.Entry<String, OBJMaterial> entry: prototype.getMaterialMap().entrySet() )
+        {
+            out.writeString( entry.getKey() );
+            writeMaterial( entry.getValue(), out );
+        }
+        
+        writeGroup( prototype.getTopGroup(), out );
+    }
+    
+    public static OBJModelPrototype read( ModelCacheReader in ) throws IOException
+    {
+        final int numMapEntries = in.readInt();
+        HashMap<String, OBJMaterial> matMap = new HashMap<String, OBJMaterial>( Math.max( 16, numMapEntries * 2 ) );
+        for ( int i = 0; i < numMapEntries; i++ )
+        {
+            final String name = in.readString();
+            matMap.put( name, readMaterial( in ) );
+        }
+        
+        OBJGroup topGroup = OBJGroup.createTopGroup( new OBJVertexData( 0 ) );
+        in.readString();
+        readGroup( topGroup, in );
+        
+        return ( new OBJModelPrototype( matMap, topGroup ) );
+    }
+    
+    private OBJPrototypeCache()
+    {
+    }
+}
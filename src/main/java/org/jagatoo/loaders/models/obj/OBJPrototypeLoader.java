@@ -67,22 +67,37 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.jagatoo.datatypes.NamedObject;
 import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
+import org.jagatoo.loaders.models._util.LoaderUtils;
+import org.jagatoo.loaders.models._util.ModelCache;
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+import org.jagatoo.loaders.models._util.ModelCacheWriter;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
+import org.jagatoo.util.streams.StreamUtils;
+import org.jagatoo.util.threads.WorkerPool;
 
 /**
- * A loader to create abstract java data from a Wavefront OBJ file.
+ * A loader to create abstract java data from a Wavefront OBJ file.<br>
+ * The file is scanned byte-wise by {@link OBJChunkParser}. Large files are
+ * split at line boundaries and the chunks are parsed in parallel.
  * 
  * @author Kevin Glass
  * @author <a href="http://www.CroftSoft.com/">David Wallace Croft</a>
@@ -93,34 +108,12 @@ public final class OBJPrototypeLoader
 {
     protected static Boolean debug = false;
     
-    private static float[] parseVector( String line )
-    {
-        StringTokenizer tokens = new StringTokenizer( line );
-        
-        tokens.nextToken();
-        
-        float[] vector = new float[ 3 ];
-        
-        vector[ 0 ] = Float.parseFloat( tokens.nextToken() );
-        vector[ 1 ] = Float.parseFloat( tokens.nextToken() );
-        vector[ 2 ] = Float.parseFloat( tokens.nextToken() );
-        
-        return ( vector );
-    }
+    /**
+     * Files are only split into chunks parsed in parallel, if each chunk gets at least this many bytes.
+     */
+    private static final int MIN_CHUNK_SIZE = 4 * 1024 * 1024;
     
-    private static float[] parseTexCoord( String line )
-    {
-        StringTokenizer tokens = new StringTokenizer( line );
-        
-        tokens.nextToken();
-        
-        float[] texCoord = new float[ 2 ];
-        
-        texCoord[ 0 ] = Float.parseFloat( tokens.nextToken() );
-        texCoord[ 1 ] = Float.parseFloat( tokens.nextToken() );
-        
-        return ( texCoord );
-    }
+    private static final WorkerPool parseWorkers = new WorkerPool( "OBJParser", Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ), Thread.NORM_PRIORITY - 1 );
     
     private static float[] parseColor( String token )
     {
@@ -135,7 +128,7 @@ public final class OBJPrototypeLoader
         return ( color );
     }
     
-    private static List<OBJMaterial> parseMatLib( URL baseURL, String name ) throws IOException
+    private static List<OBJMaterial> parseMatLib( URL baseURL, String name, ModelCache cache, List<ModelCache.Stamp> dependencies ) throws IOException
     {
         List<OBJMaterial> matList = new ArrayList<OBJMaterial>( 1 );
         OBJMaterial       mat     = null;
@@ -146,7 +139,14 @@ public final class OBJPrototypeLoader
         {
             try
             {
-                bufferedReader = new BufferedReader( new InputStreamReader( new URL( baseURL, name ).openStream() ) );
+                final URL matLibURL = new URL( baseURL, name );
+                
+                // Stamped before reading, so that a change during the load invalidates the cache entry
+                // and a missing library is recorded, too.
+                if ( dependencies != null )
+                    dependencies.add( cache.stamp( matLibURL ) );
+                
+                bufferedReader = new BufferedReader( new InputStreamReader( matLibURL.openStream() ) );
             }
             catch ( FileNotFoundException f )
             {
@@ -250,117 +250,302 @@ public final class OBJPrototypeLoader
         return ( matList );
     }
     
-    public static OBJModelPrototype load( InputStream in, URL baseURL, float[] geomOffset ) throws IOException
+    /**
+     * Splits the data into chunks at line boundaries and parses them.
+     * Large files are parsed in parallel.
+     */
+    private static OBJChunkParser[] parseChunks( byte[] data, float[] geomOffset, boolean debug ) throws IOException
     {
-        if ( ( geomOffset != null ) && ( geomOffset.length != 3 ) )
+        final int numChunks = Math.max( 1, Math.min( parseWorkers.getNumThreads() + 1, data.length / MIN_CHUNK_SIZE ) );
+        
+        OBJChunkParser[] chunks = new OBJChunkParser[ numChunks ];
+        
+        int start = 0;
+        for ( int i = 0; i < numChunks; i++ )
         {
-            throw new IllegalArgumentException( "geomOffset must be either null or length 3." );
+            int end = data.length;
+            
+            if ( i < numChunks - 1 )
+            {
+                end = Math.max( start, (int)( (long)data.length * ( i + 1 ) / numChunks ) );
+                
+                while ( ( end > 0 ) && ( end < data.length ) && ( data[ end - 1 ] != '\n' ) )
+                    end++;
+            }
+            
+            chunks[ i ] = new OBJChunkParser( data, start, end, geomOffset, debug );
+            start = end;
+        }
+        
+        if ( numChunks == 1 )
+        {
+            chunks[ 0 ].parse();
+            
+            return ( chunks );
+        }
+        
+        ThreadPoolExecutor workers = parseWorkers.getExecutor();
+        LoadMetrics metrics = LoadMetrics.current();
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>( numChunks - 1 );
+        
+        for ( int i = 1; i < numChunks; i++ )
+        {
+            final OBJChunkParser chunk = chunks[ i ];
+            
+            futures.add( workers.submit( metrics.bind( new Runnable()
+            {
+                public void run()
+                {
+                    chunk.parse();
+                }
+            } ) ) );
+        }
+        
+        chunks[ 0 ].parse();
+        
+        for ( int i = 0; i < futures.size(); i++ )
+        {
+            try
+            {
+                futures.get( i ).get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                
+                throw new InterruptedIOException( "Interrupted while parsing the OBJ file." );
+            }
+            catch ( ExecutionException e )
+            {
+                if ( e.getCause() instanceof RuntimeException )
+                    throw (RuntimeException)e.getCause();
+                if ( e.getCause() instanceof Error )
+                    throw (Error)e.getCause();
+                
+                throw new IOException( e.getCause().getMessage() );
+            }
         }
         
-        BufferedReader br = new BufferedReader( new InputStreamReader( in ) );
+        return ( chunks );
+    }
+    
+    /**
+     * Assembles the model from the parsed chunks.
+     * 
+     * @param cache the cache to stamp the material libraries with (may be null, if dependencies is null)
+     * @param dependencies the material libraries' stamps are added to this list (may be null)
+     */
+    private static OBJModelPrototype assemble( OBJChunkParser[] chunks, URL baseURL, ModelCache cache, List<ModelCache.Stamp> dependencies ) throws IOException
+    {
+        int numVertices = 0;
+        for ( int i = 0; i < chunks.length; i++ )
+            numVertices += chunks[ i ].vertexData.getNumVertices();
         
         HashMap<String, OBJMaterial> matMap = new HashMap<String, OBJMaterial>();
         
-        List<float[]> verts = new ArrayList<float[]>();
-        List<float[]> normals = new ArrayList<float[]>();
-        List<float[]> texs = new ArrayList<float[]>();
+        OBJVertexData vertexData = new OBJVertexData( numVertices );
         
-        OBJGroup topGroup = OBJGroup.createTopGroup( verts, normals, texs );
+        OBJGroup topGroup = OBJGroup.createTopGroup( vertexData );
         
-        try
+        OBJMaterial currentMat = null;
+        
+        OBJGroup currentGroup = topGroup;
+        
+        // Replay the chunks in order and resolve the relative indices.
+        for ( int i = 0; i < chunks.length; i++ )
         {
-            OBJMaterial currentMat = null;
+            final OBJChunkParser chunk = chunks[ i ];
+            final int[] corners = chunk.corners;
             
-            OBJGroup currentGroup = topGroup;
+            final int vertexBase = vertexData.getNumVertices();
+            final int texCoordBase = vertexData.getNumTexCoords();
+            final int normalBase = vertexData.getNumNormals();
             
-            String line = null;
+            int event = 0;
+            int corner = 0;
             
-            while ((line = br.readLine()) != null)
+            for ( int f = 0; f <= chunk.numFaces; f++ )
             {
-                if (line.startsWith( "#" ))
-                {
-                    // comment: ignore
-                }
-                else if (line.length() == 0)
-                {
-                    // empty line: ignore
-                }
-                else if (line.startsWith( "vn" ))
-                {
-                    normals.add( parseVector( line ) );
-                }
-                else if (line.startsWith( "vt" ))
-                {
-                    texs.add( parseTexCoord( line ) );
-                }
-                else if (line.startsWith( "v" ))
-                {
-                    float[] vert = parseVector( line );
-                    if (geomOffset != null)
-                    {
-                        vert[ 0 ] += geomOffset[ 0 ];
-                        vert[ 1 ] += geomOffset[ 1 ];
-                        vert[ 2 ] += geomOffset[ 2 ];
-                    }
-                    verts.add( vert );
-                }
-                else if (line.startsWith( "f" ))
-                {
-                    currentGroup.add( line, currentMat );
-                }
-                else if (line.startsWith( "g" ))
-                {
-                    String name = (line.trim().length() >= 3) ? line.substring( 2 ) : null;
-                    OBJGroup g = new OBJGroup( name, verts, normals, texs );
-                    topGroup.addChild( g );
-                    currentGroup = g;
-                }
-                else if (line.startsWith( "o" ))
-                {
-                    String name = (line.trim().length() >= 3) ? line.substring( 2 ) : null;
-                    OBJGroup g = new OBJGroup( name, verts, normals, texs );
-                    topGroup.addChild( g );
-                    currentGroup = g;
-                }
-                else if (line.startsWith( "mtllib" ))
-                {
-                    StringTokenizer tokens = new StringTokenizer( line );
-                    tokens.nextToken();
-                    String name = tokens.nextToken();
-                    List<OBJMaterial> matList = parseMatLib( baseURL, name );
-                    for (OBJMaterial mat: matList)
-                    {
-                        if (mat != null)
-                            matMap.put( mat.getName(), mat );
-                    }
-                }
-                else if (line.startsWith( "usemtl" ))
+                for ( ; ( event < chunk.numEvents ) && ( chunk.eventFaces[ event ] == f ); event++ )
                 {
-                    String name = line.substring( line.indexOf( " " ) + 1 );
-                    currentMat = matMap.get( name );
-                }
-                else if (line.startsWith( "s" ))
-                {
-                    if (debug != null && debug.booleanValue())
+                    final String arg = chunk.eventArgs.get( event );
+                    
+                    switch ( chunk.eventTypes[ event ] )
                     {
-                        System.err.println( OBJPrototypeLoader.class.getName() + ":  smoothing groups not currently supported:  \"" + line + "\"" );
+                        case OBJChunkParser.EVENT_GROUP:
+                            OBJGroup g = new OBJGroup( arg, vertexData );
+                            topGroup.addChild( g );
+                            currentGroup = g;
+                            break;
+                            
+                        case OBJChunkParser.EVENT_MTLLIB:
+                            if ( arg != null )
+                            {
+                                List<OBJMaterial> matList = parseMatLib( baseURL, arg, cache, dependencies );
+                                for (OBJMaterial mat: matList)
+                                {
+                                    if (mat != null)
+                                        matMap.put( mat.getName(), mat );
+                                }
+                            }
+                            break;
+                            
+                        case OBJChunkParser.EVENT_USEMTL:
+                            currentMat = ( arg == null ) ? null : matMap.get( arg );
+                            break;
                     }
                 }
-                else
+                
+                if ( f == chunk.numFaces )
+                    break;
+                
+                final int size = chunk.faceSizes[ f ];
+                
+                for ( int c = corner * 3; c < ( corner + size ) * 3; c += 3 )
                 {
-                    if (debug != null && debug.booleanValue())
-                    {
-                        System.err.println( OBJPrototypeLoader.class.getName() + ":  ignoring unknown OBJ tag:  \"" + line + "\"" );
-                    }
+                    corners[ c + 0 ] = OBJChunkParser.resolveIndex( corners[ c + 0 ], vertexBase );
+                    corners[ c + 1 ] = OBJChunkParser.resolveIndex( corners[ c + 1 ], texCoordBase );
+                    corners[ c + 2 ] = OBJChunkParser.resolveIndex( corners[ c + 2 ], normalBase );
                 }
+                
+                currentGroup.addFace( corners, corner * 3, size, currentMat );
+                
+                corner += size;
             }
+            
+            vertexData.append( chunk.vertexData );
+            
+            chunks[ i ] = null;
+        }
+        
+        return ( new OBJModelPrototype( matMap, topGroup ) );
+    }
+    
+    public static OBJModelPrototype load( InputStream in, URL baseURL, float[] geomOffset ) throws IOException
+    {
+        if ( ( geomOffset != null ) && ( geomOffset.length != 3 ) )
+        {
+            throw new IllegalArgumentException( "geomOffset must be either null or length 3." );
+        }
+        
+        byte[] data;
+        try
+        {
+            data = StreamUtils.readFully( in );
         }
         finally
         {
-            br.close();
+            in.close();
         }
         
-        return ( new OBJModelPrototype( matMap, topGroup ) );
+        LoadMetrics.current().noteTemporaryBytes( data.length );
+        
+        OBJChunkParser[] chunks = parseChunks( data, geomOffset, ( debug != null ) && debug.booleanValue() );
+        // The chunks have released the data, so it can be collected while they are assembled.
+        data = null;
+        
+        return ( assemble( chunks, baseURL, null, null ) );
+    }
+    
+    /**
+     * Loads the OBJ prototype through the given cache.<br>
+     * If the cache holds a valid entry for the url, the source is not parsed
+     * at all and the cached groups already hold their converted meshes.
+     * Otherwise the source is parsed and the cache entry is (re)written.
+     * The geomOffset and the mesh optimization switches are part of the cache key.
+     * Only local files and entries of local jars are cached.
+     * 
+     * @param url
+     * @param geomOffset
+     * @param cache the cache to use (may be null)
+     */
+    public static OBJModelPrototype load( URL url, float[] geomOffset, ModelCache cache ) throws IOException
+    {
+        if ( ( geomOffset != null ) && ( geomOffset.length != 3 ) )
+        {
+            throw new IllegalArgumentException( "geomOffset must be either null or length 3." );
+        }
+        
+        final URL baseURL = LoaderUtils.extractBaseURL( url );
+        
+        if ( cache == null )
+            return ( load( LoadMetrics.current().wrap( url.openStream() ), baseURL, geomOffset ) );
+        
+        ModelCacheReader reader = cache.open( url, OBJPrototypeCache.LOADER_ID, OBJPrototypeCache.VERSION );
+        
+        if ( reader != null )
+        {
+            try
+            {
+                if ( OBJPrototypeCache.readSettings( geomOffset, reader ) )
+                    return ( OBJPrototypeCache.read( reader ) );
+            }
+            catch ( IOException e )
+            {
+                // corrupt cache file. It is rewritten below.
+            }
+            catch ( RuntimeException e )
+            {
+                // truncated cache file. It is rewritten below.
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        
+        // Stamped before reading, so that a change during the load invalidates the cache entry.
+        final ModelCache.Stamp stamp = cache.stamp( url );
+        
+        InputStream in = LoadMetrics.current().wrap( url.openStream() );
+        byte[] data;
+        try
+        {
+            data = StreamUtils.readFully( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        
+        LoadMetrics.current().noteTemporaryBytes( data.length );
+        
+        OBJChunkParser[] chunks = parseChunks( data, geomOffset, ( debug != null ) && debug.booleanValue() );
+        data = null;
+        
+        ArrayList<ModelCache.Stamp> dependencies = new ArrayList<ModelCache.Stamp>();
+        OBJModelPrototype prototype = assemble( chunks, baseURL, cache, dependencies );
+        
+        if ( ( stamp == null ) || dependencies.contains( null ) )
+        {
+            // A source, that cannot be validated, is never cached.
+            return ( prototype );
+        }
+        
+        ModelCacheWriter writer = cache.create( stamp, OBJPrototypeCache.LOADER_ID, OBJPrototypeCache.VERSION );
+        
+        if ( writer != null )
+        {
+            try
+            {
+                for ( int i = 0; i < dependencies.size(); i++ )
+                    writer.addDependency( dependencies.get( i ) );
+                
+                OBJPrototypeCache.writeSettings( geomOffset, writer );
+                OBJPrototypeCache.write( prototype, writer );
+                writer.close();
+            }
+            catch ( IOException e )
+            {
+                // The model is loaded anyway. It just isn't cached.
+                writer.abort();
+                
+                if ( ( debug != null ) && debug.booleanValue() )
+                    e.printStackTrace();
+            }
+        }
+        
+        return ( prototype );
     }
     
     public static OBJModelPrototype load( InputStream in, URL baseURL ) throws IOException
@@ -370,9 +555,43 @@ public final class OBJPrototypeLoader
     
     public static void load( InputStream in, URL baseURL, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
     {
-        OBJModelPrototype prototype = load( in, baseURL );
-        
-        OBJConverter.convert( prototype, baseURL, appFactory, skin, geomFactory, convertZup2Yup, scale, nodeFactory, siHandler, rootGroup );
+        final MeteredLoad load = MeteredLoad.begin( "OBJ", baseURL, geomFactory );
+        try
+        {
+            OBJModelPrototype prototype = load( load.wrap( in ), baseURL );
+            
+            load.enterPhase( LoadPhase.CONVERT );
+            OBJConverter.convert( prototype, baseURL, appFactory, skin, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    /**
+     * Loads the model through the given cache and replays it through the factories.
+     * 
+     * @see #load(URL, float[], ModelCache)
+     */
+    public static void load( URL url, ModelCache cache, AppearanceFactory appFactory, String skin, GeometryFactory geomFactory, boolean convertZup2Yup, float scale, NodeFactory nodeFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "OBJ", url, geomFactory );
+        try
+        {
+            OBJModelPrototype prototype = load( url, null, cache );
+            
+            load.enterPhase( LoadPhase.CONVERT );
+            OBJConverter.convert( prototype, LoaderUtils.extractBaseURL( url ), appFactory, skin, load.getGeometryFactory(), convertZup2Yup, scale, nodeFactory, siHandler, rootGroup );
+            
+            load.setSuccessful();
+        }
+        finally
+        {
+            load.end();
+        }
     }
     
     private OBJPrototypeLoader()
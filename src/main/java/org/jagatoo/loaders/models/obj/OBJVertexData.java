@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+/**
+ * Growable primitive storage for the vertices, normals and texture
+ * coordinates of an OBJ file. The data is kept in flat float arrays
+ * (3 floats per vertex and normal, 2 per texture coordinate), that are
+ * shared by all groups of a model.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class OBJVertexData
+{
+    private float[] vertices;
+    private int     numVertices = 0;
+    private float[] normals;
+    private int     numNormals = 0;
+    private float[] texCoords;
+    private int     numTexCoords = 0;
+    
+    private static float[] ensureCapacity( float[] array, int length )
+    {
+        if ( length <= array.length )
+            return ( array );
+        
+        float[] newArray = new float[ Math.max( length, array.length + ( array.length >> 1 ) ) ];
+        System.arraycopy( array, 0, newArray, 0, array.length );
+        
+        return ( newArray );
+    }
+    
+    public final int getNumVertices()
+    {
+        return ( numVertices );
+    }
+    
+    /**
+     * @return the backing array (3 floats per vertex). Only the first
+     * getNumVertices() * 3 values are valid.
+     */
+    public final float[] getVertices()
+    {
+        return ( vertices );
+    }
+    
+    public final int getNumNormals()
+    {
+        return ( numNormals );
+    }
+    
+    /**
+     * @return the backing array (3 floats per normal). Only the first
+     * getNumNormals() * 3 values are valid.
+     */
+    public final float[] getNormals()
+    {
+        return ( normals );
+    }
+    
+    public final int getNumTexCoords()
+    {
+        return ( numTexCoords );
+    }
+    
+    /**
+     * @return the backing array (2 floats per texture coordinate). Only the
+     * first getNumTexCoords() * 2 values are valid.
+     */
+    public final float[] getTexCoords()
+    {
+        return ( texCoords );
+    }
+    
+    public final void addVertex( float x, float y, float z )
+    {
+        final int i = numVertices * 3;
+        vertices = ensureCapacity( vertices, i + 3 );
+        vertices[ i + 0 ] = x;
+        vertices[ i + 1 ] = y;
+        vertices[ i + 2 ] = z;
+        numVertices++;
+    }
+    
+    public final void addNormal( float x, float y, float z )
+    {
+        final int i = numNormals * 3;
+        normals = ensureCapacity( normals, i + 3 );
+        normals[ i + 0 ] = x;
+        normals[ i + 1 ] = y;
+        normals[ i + 2 ] = z;
+        numNormals++;
+    }
+    
+    public final void addTexCoord( float s, float t )
+    {
+        final int i = numTexCoords * 2;
+        texCoords = ensureCapacity( texCoords, i + 2 );
+        texCoords[ i + 0 ] = s;
+        texCoords[ i + 1 ] = t;
+        numTexCoords++;
+    }
+    
+    /**
+     * Appends all the data of the given OBJVertexData.
+     * 
+     * @param other
+     */
+    public void append( OBJVertexData other )
+    {
+        vertices = ensureCapacity( vertices, ( numVertices + other.numVertices ) * 3 );
+        System.arraycopy( other.vertices, 0, vertices, numVertices * 3, other.numVertices * 3 );
+        numVertices += other.numVertices;
+        
+        normals = ensureCapacity( normals, ( numNormals + other.numNormals ) * 3 );
+        System.arraycopy( other.normals, 0, normals, numNormals * 3, other.numNormals * 3 );
+        numNormals += other.numNormals;
+        
+        texCoords = ensureCapacity( texCoords, ( numTexCoords + other.numTexCoords ) * 2 );
+        System.arraycopy( other.texCoords, 0, texCoords, numTexCoords * 2, other.numTexCoords * 2 );
+        numTexCoords += other.numTexCoords;
+    }
+    
+    /**
+     * @param initialVertices the expected number of vertices (normals and
+     *                        texture coordinates are optional and start small)
+     */
+    public OBJVertexData( int initialVertices )
+    {
+        this.vertices = new float[ Math.max( 16, initialVertices ) * 3 ];
+        this.normals = new float[ 16 * 3 ];
+        this.texCoords = new float[ 16 * 2 ];
+    }
+    
+    public OBJVertexData()
+    {
+        this( 1024 );
+    }
+}
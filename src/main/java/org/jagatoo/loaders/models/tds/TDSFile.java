@@ -46,15 +46,19 @@ import org.jagatoo.util.errorhandling.IncorrectFormatException;
 import org.jagatoo.util.errorhandling.ParsingException;
 import org.openmali.vecmath2.Matrix3f;
 
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
 import org.jagatoo.loaders.models._util.GeometryFactory;
+import org.jagatoo.loaders.models._util.MeteredLoad;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models.tds.chunks.TDSChunkType;
 import org.jagatoo.loaders.models.tds.chunks.processors.ChunkProcessor;
 import org.jagatoo.loaders.models.tds.internal.ModelContext;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * Responsbile for handling the reading of the data file
@@ -64,6 +68,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class TDSFile
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( TDSFile.class );
+    
     private final DataInputStream din;
     private final URL baseURL;
     private final ModelContext context = new ModelContext();
@@ -278,12 +284,12 @@ public class TDSFile
         //long t0 = System.currentTimeMillis();
         if ( cp != null )
         {
-            JAGTLog.debug( "Processing chunk: ", logChunkType );
+            LOG.debug( "Processing chunk: ", logChunkType );
             cp.process( this, appFactory, geomFactory, nodeFactory, animFactory, siHandler, this.getContext(), length );
         }
         else
         {
-            JAGTLog.debug( "Skipping Chunk: ", logChunkType );
+            LOG.debug( "Skipping Chunk: ", logChunkType );
             this.skipChunk( length );
         }
         //System.out.println( System.currentTimeMillis() - t0 );
@@ -346,6 +352,23 @@ public class TDSFile
     }
     
     public static final TDSFile load( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup ) throws IOException, IncorrectFormatException, ParsingException
+    {
+        final MeteredLoad load = MeteredLoad.begin( "3DS", baseURL, geomFactory );
+        try
+        {
+            final TDSFile result = loadModel( load.wrap( in ), baseURL, appFactory, load.getGeometryFactory(), convertZup2Yup, nodeFactory, animFactory, siHandler, rootGroup, load.getMetrics() );
+            
+            load.setSuccessful();
+            
+            return ( result );
+        }
+        finally
+        {
+            load.end();
+        }
+    }
+    
+    private static TDSFile loadModel( InputStream in, URL baseURL, AppearanceFactory appFactory, GeometryFactory geomFactory, boolean convertZup2Yup, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, NamedObject rootGroup, LoadMetrics metrics ) throws IOException, IncorrectFormatException, ParsingException
     {
         TDSFile file = new TDSFile( in, baseURL, appFactory, geomFactory, convertZup2Yup, nodeFactory, animFactory, siHandler );
         
@@ -372,6 +395,7 @@ public class TDSFile
             file.close();
         }
         
+        metrics.enterPhase( LoadPhase.CONVERT );
         file.finalizeModel( convertZup2Yup, rootGroup, nodeFactory, siHandler );
         
         return ( file );
@@ -43,6 +43,7 @@ import org.jagatoo.loaders.models._util.SpecialItemsHandler;
 import org.jagatoo.loaders.models.tds.TDSFile;
 import org.jagatoo.loaders.models.tds.internal.ModelContext;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * A processor to handle the hierachy header chunk
@@ -52,6 +53,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class HierarchyHeaderProcessor extends ChunkProcessor
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( HierarchyHeaderProcessor.class );
+    
     @Override
     public void process( TDSFile file, AppearanceFactory appFactory, GeometryFactory geomFactory, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, ModelContext context, int length ) throws IOException
     {
@@ -60,7 +63,7 @@ public class HierarchyHeaderProcessor extends ChunkProcessor
         context.framesCount = file.readUnsignedShort();
         /*int blank = */file.readUnsignedShort();
         
-        JAGTLog.debug( "Frame Count: ", context.framesCount );
+        LOG.debug( "Frame Count: ", context.framesCount );
     }
     
     public HierarchyHeaderProcessor()
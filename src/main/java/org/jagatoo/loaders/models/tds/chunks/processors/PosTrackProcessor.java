@@ -47,6 +47,7 @@ import org.jagatoo.loaders.models.tds.TDSFile;
 import org.jagatoo.loaders.models.tds.internal.ModelContext;
 import org.jagatoo.loaders.models.tds.internal.PosTransform;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * A chunk to process "PosTrack" chunks
@@ -56,6 +57,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class PosTrackProcessor extends TransformTrackProcessor
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( PosTrackProcessor.class );
+    
     public static final int ANIM_TYPE_SINGLE = 0;
     public static final int ANIM_TYPE_REPEAT = 2;
     public static final int ANIM_TYPE_LOOP = 3;
@@ -112,7 +115,7 @@ public class PosTrackProcessor extends TransformTrackProcessor
         
         context.translation = new PosTransform();
         
-        JAGTLog.debug( "Translation key frames: ", numKeys );
+        LOG.debug( "Translation key frames: ", numKeys );
         
         for ( int i = 0; i < numKeys; i++ )
         {
@@ -137,7 +140,7 @@ public class PosTrackProcessor extends TransformTrackProcessor
                 context.pivot = new Point3f( 0f, 0f, 0f );
             }
             
-            JAGTLog.debug( "\tTranslation key frame: ", frameNumber + " : ", translation );
+            LOG.debug( "\tTranslation key frame: ", frameNumber + " : ", translation );
             
             context.translation.addKeyFrame( frameNumber, (float)frameNumber / (float)context.framesCount, translation );
         }
@@ -46,6 +46,7 @@ import org.jagatoo.loaders.models.tds.TDSFile;
 import org.jagatoo.loaders.models.tds.internal.ModelContext;
 import org.jagatoo.loaders.models.tds.internal.RotTransform;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * A processor to handle the "RotTrack" chunk
@@ -55,6 +56,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class RotTrackProcessor extends TransformTrackProcessor
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( RotTrackProcessor.class );
+    
     @Override
     public void process( TDSFile file, AppearanceFactory appFactory, GeometryFactory geomFactory, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, ModelContext context, int length ) throws IOException
     {
@@ -65,7 +68,7 @@ public class RotTrackProcessor extends TransformTrackProcessor
         
         context.orientation = new RotTransform();
         
-        JAGTLog.debug( "Rotation key frames: ", numKeys );
+        LOG.debug( "Rotation key frames: ", numKeys );
         
         Quaternion4f prevRot = null;
         Quaternion4f tmp = new Quaternion4f();
@@ -46,6 +46,7 @@ import org.jagatoo.loaders.models.tds.TDSFile;
 import org.jagatoo.loaders.models.tds.internal.ModelContext;
 import org.jagatoo.loaders.models.tds.internal.ScaleTransform;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 /**
  * A processor to handle scale tracking chunks
@@ -55,6 +56,8 @@ import org.jagatoo.logging.JAGTLog;
  */
 public class SclTrackProcessor extends TransformTrackProcessor
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( SclTrackProcessor.class );
+    
     @Override
     public void process( TDSFile file, AppearanceFactory appFactory, GeometryFactory geomFactory, NodeFactory nodeFactory, AnimationFactory animFactory, SpecialItemsHandler siHandler, ModelContext context, int length ) throws IOException
     {
@@ -65,7 +68,7 @@ public class SclTrackProcessor extends TransformTrackProcessor
         
         context.scale = new ScaleTransform();
         
-        JAGTLog.debug( "Scale key frames: ", numKeys );
+        LOG.debug( "Scale key frames: ", numKeys );
         
         for ( int i = 0; i < numKeys; i++ )
         {
@@ -85,7 +88,7 @@ public class SclTrackProcessor extends TransformTrackProcessor
                 //scale = new Tuple3f( x, z, -y );
             
             //context.scale = new Vector3f(x, z, y);
-            JAGTLog.debug( "\tScale key frame: ", frameNumber + " : ", scale );
+            LOG.debug( "\tScale key frame: ", frameNumber + " : ", scale );
             
             context.scale.addKeyFrame( frameNumber, (float)frameNumber / (float)context.framesCount, scale );
         }
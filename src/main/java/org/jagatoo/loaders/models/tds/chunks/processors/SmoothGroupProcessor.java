@@ -40,6 +40,7 @@ import org.openmali.vecmath2.TexCoord2f;
 import org.openmali.vecmath2.Vector3f;
 import org.jagatoo.loaders.models._util.AnimationFactory;
 import org.jagatoo.loaders.models._util.AppearanceFactory;
+import org.jagatoo.loaders.models._util.GeometryBuffers;
 import org.jagatoo.loaders.models._util.GeometryFactory;
 import org.jagatoo.loaders.models._util.NodeFactory;
 import org.jagatoo.loaders.models._util.SpecialItemsHandler;
@@ -184,15 +185,27 @@ public class SmoothGroupProcessor extends ChunkProcessor
                 
             }
             
+            Point3f[] coords = context.vertexCoords;
+            TexCoord2f[] texCoords = context.textureCoords;
+            
+            // The object has one appearance (the material group's face lists are skipped), so all faces are reordered together.
+            final int[] remap = GeometryBuffers.optimizeMesh( context.objectName, indices, indices.length, coords.length, null );
+            if ( remap != null )
+            {
+                coords = remapVertices( coords, remap );
+                normals = remapVertices( normals, remap );
+                if ( texCoords != null )
+                    texCoords = remapVertices( padTexCoords( texCoords, coords.length ), remap );
+            }
+            
             GeometryFactory.GeometryType geomType = GeometryFactory.GeometryType.INDEXED_TRIANGLE_ARRAY;
-            geomFactory.setCoordinates( context.geometry, geomType, 0, context.vertexCoords, 0, context.vertexCoords.length );
+            geomFactory.setCoordinates( context.geometry, geomType, 0, coords, 0, coords.length );
             geomFactory.setNormals( context.geometry, geomType, 0, normals, 0, normals.length );
             geomFactory.setIndex( context.geometry, geomType, 0, indices, 0, indices.length );
             
-            if ( context.textureCoords != null )
+            if ( texCoords != null )
             {
-                System.out.println( context.vertexCoords.length + ", " + normals.length + ", " + context.textureCoords.length );
-                geomFactory.setTexCoords( context.geometry, geomType, 0, 2, 0, context.textureCoords, 0, context.textureCoords.length );
+                geomFactory.setTexCoords( context.geometry, geomType, 0, 2, 0, texCoords, 0, texCoords.length );
             }
             //context.indexedGeometry.calculateFaceNormals();
             
@@ -259,6 +272,37 @@ public class SmoothGroupProcessor extends ChunkProcessor
         context.facesCreated = true;
     }
     
+    /**
+     * Some exporters write fewer texture coordinates than vertices. The missing
+     * ones are (0, 0), so that the remap table can be applied to all vertices.
+     */
+    private static TexCoord2f[] padTexCoords( TexCoord2f[] texCoords, int numVertices )
+    {
+        if ( texCoords.length >= numVertices )
+            return ( texCoords );
+        
+        TexCoord2f[] result = new TexCoord2f[ numVertices ];
+        System.arraycopy( texCoords, 0, result, 0, texCoords.length );
+        
+        for ( int v = texCoords.length; v < numVertices; v++ )
+            result[ v ] = new TexCoord2f( 0f, 0f );
+        
+        return ( result );
+    }
+    
+    /**
+     * Reorders per-vertex data by the remap table of the mesh optimization.
+     */
+    private static <T> T[] remapVertices( T[] data, int[] remap )
+    {
+        T[] result = data.clone();
+        
+        for ( int v = 0; v < remap.length; v++ )
+            result[ remap[ v ] ] = data[ v ];
+        
+        return ( result );
+    }
+    
     public SmoothGroupProcessor()
     {
     }
@@ -30,6 +30,8 @@
 package org.jagatoo.loaders.textures;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -37,11 +39,24 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.jagatoo.loaders.LoadMetrics;
+import org.jagatoo.loaders.LoadPhase;
+import org.jagatoo.loaders.textures.cache.DiskTextureCache;
 import org.jagatoo.loaders.textures.cache.HashTextureCache;
 import org.jagatoo.loaders.textures.cache.TextureCache;
+import org.jagatoo.util.threads.WorkerPool;
 import org.jagatoo.loaders.textures.formats.TextureFormatLoader;
 import org.jagatoo.loaders.textures.formats.TextureFormatLoaderDDS;
+import org.jagatoo.loaders.textures.formats.TextureFormatSignature;
 import org.jagatoo.loaders.textures.formats.TextureImageFormatLoader;
 import org.jagatoo.loaders.textures.formats.TextureImageFormatLoaderBMP;
 import org.jagatoo.loaders.textures.formats.TextureImageFormatLoaderGIF;
@@ -53,6 +68,7 @@ import org.jagatoo.loaders.textures.locators.TextureStreamLocator;
 import org.jagatoo.loaders.textures.locators.TextureStreamLocatorFile;
 import org.jagatoo.loaders.textures.locators.TextureStreamLocatorURL;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.logging.ProfileTimer;
 import org.jagatoo.opengl.enums.TextureImageFormat;
 
@@ -65,13 +81,23 @@ import org.jagatoo.opengl.enums.TextureImageFormat;
  * All {@link TextureStreamLocator}s are tried in the order, in which they are
  * registered.<br>
  * If a stream was found then the following is tried on the stream:<br>
- * All {@link TextureImageFormatLoader}s are tried in the order, in which they are
+ * The stream's header is checked against all format-loaders implementing
+ * {@link TextureFormatSignature} (in the order below) and the first matching
+ * one is used directly.<br>
+ * Otherwise all other {@link TextureImageFormatLoader}s are tried in the order, in which they are
  * registered. A texture can then be created from this {@link AbstractTextureImage}.<br>
- * All {@link TextureFormatLoader}s are tried in the order, in which they are
+ * All other {@link TextureFormatLoader}s are tried in the order, in which they are
  * registered.<br>
+ * Then the format-loaders, whose signature didn't match, are tried the same way,
+ * since a signature check can reject streams, that the loader is still able to decode.<br>
  * At last the fallback {@link TextureImageFormatLoader} is used to load the
  * Texture. It will most probably use ImageIO.<br>
- * The loading stops as soon as a Texture is created.
+ * The loading stops as soon as a Texture is created.<br>
+ * <br>
+ * Textures can also be loaded <b>asynchronously</b>. Locating, decoding and
+ * mipmap generation are then done on a bounded pool of worker threads, while
+ * concurrent requests for the same cache-key share one load. Register all
+ * locators and format-loaders before the first asynchronous load is started.
  * 
  * @author Matthias Mann
  * @author Marvin Froehlich (aka Qudus)
@@ -79,7 +105,10 @@ import org.jagatoo.opengl.enums.TextureImageFormat;
  */
 public abstract class AbstractTextureLoader
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( AbstractTextureLoader.class );
+    
     private TextureCache textureCache;
+    private volatile DiskTextureCache diskCache = null;
     
     protected final ArrayList<TextureStreamLocator> textureStreamLocators = new ArrayList<TextureStreamLocator>();
     protected boolean autoDotAddedOnce = false;
@@ -89,6 +118,19 @@ public abstract class AbstractTextureLoader
     
     protected TextureImageFormatLoader fallbackTextureImageFormatLoader;
     
+    private final WorkerPool asyncWorkers = new WorkerPool( "TextureLoader", Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ), Thread.NORM_PRIORITY - 1 );
+    private final ConcurrentHashMap<String, Future<AbstractTexture>> pendingAsyncLoads = new ConcurrentHashMap<String, Future<AbstractTexture>>();
+    
+    /**
+     * The number of bytes, that are kept buffered while a loader decodes a stream,
+     * that was dispatched by its signature. Most format-loaders reject a wrongly
+     * dispatched stream within this range, so that it can be reset and handed to the other loaders.
+     */
+    private static final int DISPATCH_MARK_LIMIT = 64 * 1024;
+    
+    private final AtomicLong numSignatureDispatches = new AtomicLong( 0L );
+    private final AtomicLong numMisDispatches = new AtomicLong( 0L );
+    
     /**
      * Sets the new {@link TextureCache} to be used to cache loaded Textures.
      * 
@@ -132,6 +174,25 @@ public abstract class AbstractTextureLoader
         return ( textureCache );
     }
     
+    /**
+     * Sets the {@link DiskTextureCache}, that is consulted, when a Texture is
+     * not in the (in-memory) {@link TextureCache}. Decoded Textures are written to it.
+     * 
+     * @param diskCache the new disk-cache or null to disable it
+     */
+    public void setDiskCache( DiskTextureCache diskCache )
+    {
+        this.diskCache = diskCache;
+    }
+    
+    /**
+     * @return the {@link DiskTextureCache} or null, if none is used.
+     */
+    public final DiskTextureCache getDiskCache()
+    {
+        return ( diskCache );
+    }
+    
     /**
      * Registers a {@link TextureStreamLocator}. A TextureStreamLocator returns an
      * InputStream that holds the data for a Texture or an Image. Note: No check
@@ -301,6 +362,34 @@ public abstract class AbstractTextureLoader
         return ( fallbackTextureImageFormatLoader );
     }
     
+    /**
+     * @return the number of streams, that have been handed directly to a format-loader
+     * because of a matching {@link TextureFormatSignature}.
+     */
+    public final long getNumSignatureDispatches()
+    {
+        return ( numSignatureDispatches.get() );
+    }
+    
+    /**
+     * @return the number of streams, that have been handed to a format-loader
+     * because of a matching {@link TextureFormatSignature}, but which that loader
+     * failed to decode.
+     */
+    public final long getNumMisDispatches()
+    {
+        return ( numMisDispatches.get() );
+    }
+    
+    /**
+     * Resets the signature-dispatch counters to zero.
+     */
+    public void resetDispatchCounters()
+    {
+        numSignatureDispatches.set( 0L );
+        numMisDispatches.set( 0L );
+    }
+    
     
     protected AbstractTexture createTextureFromTextureImage( AbstractTextureImage ti, boolean loadMipmaps, TextureFactory texFactory )
     {
@@ -335,13 +424,23 @@ public abstract class AbstractTextureLoader
         }
     }
     
-    private AbstractTextureImage tryToLoadFromTextureImageFormatLoaders( BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean allowStreching, TextureFactory texFactory )
+    /**
+     * @param signatureLoaders try the loaders implementing {@link TextureFormatSignature} (true) or all the others (false)?
+     * @param skippedLoader a loader, that has already failed on the stream (may be null)
+     */
+    private AbstractTextureImage tryToLoadFromTextureImageFormatLoaders( BufferedInputStream in, boolean signatureLoaders, TextureFormatSignature skippedLoader, boolean flipVertically, boolean acceptAlpha, boolean allowStreching, TextureFactory texFactory )
     {
         AbstractTextureImage ti = null;
         
         for ( int i = 0; ( i < textureImageFormatLoaders.size() ) && ( ti == null ); i++ )
         {
             TextureImageFormatLoader tifl = textureImageFormatLoaders.get( i );
+            
+            if ( ( ( tifl instanceof TextureFormatSignature ) != signatureLoaders ) || ( tifl == skippedLoader ) )
+            {
+                continue;
+            }
+            
             try
             {
                 ti = tifl.loadTextureImage( in, acceptAlpha, flipVertically, allowStreching, texFactory );
@@ -357,7 +456,11 @@ public abstract class AbstractTextureLoader
         return ( ti );
     }
     
-    private AbstractTexture tryToLoadFromTextureFormatLoaders( BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
+    /**
+     * @param signatureLoaders try the loaders implementing {@link TextureFormatSignature} (true) or all the others (false)?
+     * @param skippedLoader a loader, that has already failed on the stream (may be null)
+     */
+    private AbstractTexture tryToLoadFromTextureFormatLoaders( BufferedInputStream in, boolean signatureLoaders, TextureFormatSignature skippedLoader, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
     {
         AbstractTexture tex = null;
         
@@ -365,6 +468,11 @@ public abstract class AbstractTextureLoader
         {
             TextureFormatLoader tfl = textureFormatLoaders.get( i );
             
+            if ( ( ( tfl instanceof TextureFormatSignature ) != signatureLoaders ) || ( tfl == skippedLoader ) )
+            {
+                continue;
+            }
+            
             try
             {
                 tex = tfl.loadTexture( in, acceptAlpha, flipVertically, loadMipmaps, allowStreching, texFactory );
@@ -404,6 +512,166 @@ public abstract class AbstractTextureLoader
         return ( tex );
     }
     
+    private static boolean resetInputStream( BufferedInputStream in )
+    {
+        try
+        {
+            in.reset();
+            
+            return ( true );
+        }
+        catch ( IOException e )
+        {
+            // The loader has read beyond the mark-limit.
+            return ( false );
+        }
+    }
+    
+    private static boolean matchesSignature( Object loader, byte[] header, int length )
+    {
+        return ( ( loader instanceof TextureFormatSignature ) && ( (TextureFormatSignature)loader ).matchesSignature( header, length ) );
+    }
+    
+    /**
+     * Peeks the stream's header and searches the first format-loader, whose
+     * {@link TextureFormatSignature} matches. The stream is left at its current position.
+     * 
+     * @param in
+     * 
+     * @return the matching loader or null.
+     */
+    private TextureFormatSignature findLoaderBySignature( BufferedInputStream in )
+    {
+        final byte[] header = new byte[ TextureFormatSignature.MAX_SIGNATURE_SIZE ];
+        int length = 0;
+        
+        try
+        {
+            in.mark( header.length );
+            
+            int read;
+            while ( ( length < header.length ) && ( ( read = in.read( header, length, header.length - length ) ) > 0 ) )
+            {
+                length += read;
+            }
+            
+            in.reset();
+        }
+        catch ( IOException e )
+        {
+            e.printStackTrace();
+            
+            return ( null );
+        }
+        
+        for ( int i = 0; i < textureImageFormatLoaders.size(); i++ )
+        {
+            if ( matchesSignature( textureImageFormatLoaders.get( i ), header, length ) )
+                return ( (TextureFormatSignature)textureImageFormatLoaders.get( i ) );
+        }
+        
+        for ( int i = 0; i < textureFormatLoaders.size(); i++ )
+        {
+            if ( matchesSignature( textureFormatLoaders.get( i ), header, length ) )
+                return ( (TextureFormatSignature)textureFormatLoaders.get( i ) );
+        }
+        
+        if ( matchesSignature( fallbackTextureImageFormatLoader, header, length ) )
+            return ( (TextureFormatSignature)fallbackTextureImageFormatLoader );
+        
+        return ( null );
+    }
+    
+    private AbstractTexture loadTextureWithLoader( TextureFormatSignature loader, BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
+    {
+        try
+        {
+            if ( loader instanceof TextureImageFormatLoader )
+            {
+                AbstractTextureImage ti = ( (TextureImageFormatLoader)loader ).loadTextureImage( in, acceptAlpha, flipVertically, allowStreching, texFactory );
+                
+                if ( ti != null )
+                {
+                    return ( createTextureFromTextureImage( ti, loadMipmaps, texFactory ) );
+                }
+            }
+            else if ( loader instanceof TextureFormatLoader )
+            {
+                return ( ( (TextureFormatLoader)loader ).loadTexture( in, acceptAlpha, flipVertically, loadMipmaps, allowStreching, texFactory ) );
+            }
+        }
+        catch ( Throwable t )
+        {
+            t.printStackTrace();
+        }
+        
+        return ( null );
+    }
+    
+    private AbstractTextureImage loadTextureImageWithLoader( TextureFormatSignature loader, BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean allowStreching, TextureFactory texFactory )
+    {
+        if ( loader instanceof TextureImageFormatLoader )
+        {
+            try
+            {
+                return ( ( (TextureImageFormatLoader)loader ).loadTextureImage( in, acceptAlpha, flipVertically, allowStreching, texFactory ) );
+            }
+            catch ( Throwable t )
+            {
+                t.printStackTrace();
+                
+                return ( null );
+            }
+        }
+        
+        // TextureFormatLoaders only decode to complete textures.
+        AbstractTexture tex = loadTextureWithLoader( loader, in, flipVertically, acceptAlpha, false, allowStreching, texFactory );
+        
+        if ( tex == null )
+            return ( null );
+        
+        return ( tex.getImage( 0 ) );
+    }
+    
+    /**
+     * Resets the stream after a mis-dispatch. If the loader has read beyond the
+     * mark-limit, the stream is reopened from its source, if possible.
+     * 
+     * @param in
+     * @param source the texture's name or URL (may be null)
+     * 
+     * @return the stream to continue with or null, if it could not be recovered.
+     */
+    private BufferedInputStream recoverInputStream( BufferedInputStream in, Object source )
+    {
+        if ( resetInputStream( in ) )
+            return ( in );
+        
+        try
+        {
+            in.close();
+        }
+        catch ( IOException e )
+        {
+            //e.printStackTrace();
+        }
+        
+        try
+        {
+            if ( source instanceof String )
+                return ( getInputStream( (String)source ) );
+            
+            if ( source instanceof URL )
+                return ( new BufferedInputStream( ( (URL)source ).openStream() ) );
+        }
+        catch ( IOException e )
+        {
+            e.printStackTrace();
+        }
+        
+        return ( null );
+    }
+    
     /**
      * Tries to load the texture-image from an InputStream.
      * 
@@ -417,6 +685,11 @@ public abstract class AbstractTextureLoader
      * @return the loaded TextureImage or null.
      */
     protected AbstractTextureImage loadTextureImageFromStream( BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean allowStreching, TextureFactory texFactory )
+    {
+        return ( loadTextureImageFromStream( in, null, flipVertically, acceptAlpha, allowStreching, texFactory ) );
+    }
+    
+    private AbstractTextureImage loadTextureImageFromStream( BufferedInputStream in, Object source, boolean flipVertically, boolean acceptAlpha, boolean allowStreching, TextureFactory texFactory )
     {
         if ( in == null )
         {
@@ -440,16 +713,49 @@ public abstract class AbstractTextureLoader
         
         if ( available > 0 )
         {
-            in.mark( Integer.MAX_VALUE );
+            final TextureFormatSignature sigLoader = findLoaderBySignature( in );
             
-            if ( texImg == null )
+            if ( sigLoader != null )
             {
-                texImg = tryToLoadFromTextureImageFormatLoaders( in, flipVertically, acceptAlpha, allowStreching, texFactory );
+                numSignatureDispatches.incrementAndGet();
+                
+                in.mark( DISPATCH_MARK_LIMIT );
+                
+                texImg = loadTextureImageWithLoader( sigLoader, in, flipVertically, acceptAlpha, allowStreching, texFactory );
+                
+                if ( texImg == null )
+                {
+                    numMisDispatches.incrementAndGet();
+                    
+                    in = recoverInputStream( in, source );
+                }
             }
             
-            if ( texImg == null )
+            if ( ( texImg == null ) && ( in != null ) )
             {
-                AbstractTexture tex = tryToLoadFromTextureFormatLoaders( in, flipVertically, acceptAlpha, false, allowStreching, texFactory );
+                in.mark( Integer.MAX_VALUE );
+                
+                texImg = tryToLoadFromTextureImageFormatLoaders( in, false, sigLoader, flipVertically, acceptAlpha, allowStreching, texFactory );
+            }
+            
+            if ( ( texImg == null ) && ( in != null ) )
+            {
+                AbstractTexture tex = tryToLoadFromTextureFormatLoaders( in, false, sigLoader, flipVertically, acceptAlpha, false, allowStreching, texFactory );
+                
+                if ( tex != null )
+                {
+                    texImg = tex.getImage( 0 );
+                }
+            }
+            
+            if ( ( texImg == null ) && ( in != null ) )
+            {
+                texImg = tryToLoadFromTextureImageFormatLoaders( in, true, sigLoader, flipVertically, acceptAlpha, allowStreching, texFactory );
+            }
+            
+            if ( ( texImg == null ) && ( in != null ) )
+            {
+                AbstractTexture tex = tryToLoadFromTextureFormatLoaders( in, true, sigLoader, flipVertically, acceptAlpha, false, allowStreching, texFactory );
                 
                 if ( tex != null )
                 {
@@ -457,7 +763,7 @@ public abstract class AbstractTextureLoader
                 }
             }
             
-            if ( texImg == null )
+            if ( ( texImg == null ) && ( in != null ) && ( sigLoader != fallbackTextureImageFormatLoader ) )
             {
                 try
                 {
@@ -472,13 +778,16 @@ public abstract class AbstractTextureLoader
             }
         }
         
-        try
-        {
-            in.close();
-        }
-        catch ( IOException e )
+        if ( in != null )
         {
-            //e.printStackTrace();
+            try
+            {
+                in.close();
+            }
+            catch ( IOException e )
+            {
+                //e.printStackTrace();
+            }
         }
         
         return ( texImg );
@@ -497,6 +806,11 @@ public abstract class AbstractTextureLoader
      * @return the loaded Texture or null.
      */
     protected AbstractTexture loadTextureFromStream( BufferedInputStream in, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
+    {
+        return ( loadTextureFromStream( in, null, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory ) );
+    }
+    
+    private AbstractTexture loadTextureFromStream( BufferedInputStream in, Object source, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
     {
         if ( in == null )
         {
@@ -520,11 +834,44 @@ public abstract class AbstractTextureLoader
         
         if ( available > 0 )
         {
-            in.mark( Integer.MAX_VALUE );
+            final TextureFormatSignature sigLoader = findLoaderBySignature( in );
+            
+            if ( sigLoader != null )
+            {
+                numSignatureDispatches.incrementAndGet();
+                
+                in.mark( DISPATCH_MARK_LIMIT );
+                
+                tex = loadTextureWithLoader( sigLoader, in, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+                
+                if ( tex == null )
+                {
+                    numMisDispatches.incrementAndGet();
+                    
+                    in = recoverInputStream( in, source );
+                }
+            }
+            
+            if ( ( tex == null ) && ( in != null ) )
+            {
+                in.mark( Integer.MAX_VALUE );
+                
+                AbstractTextureImage ti = tryToLoadFromTextureImageFormatLoaders( in, false, sigLoader, flipVertically, acceptAlpha, allowStreching, texFactory );
+                
+                if ( ti != null )
+                {
+                    tex = createTextureFromTextureImage( ti, loadMipmaps, texFactory );
+                }
+            }
+            
+            if ( ( tex == null ) && ( in != null ) )
+            {
+                tex = tryToLoadFromTextureFormatLoaders( in, false, sigLoader, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+            }
             
-            if ( tex == null )
+            if ( ( tex == null ) && ( in != null ) )
             {
-                AbstractTextureImage ti = tryToLoadFromTextureImageFormatLoaders( in, flipVertically, acceptAlpha, allowStreching, texFactory );
+                AbstractTextureImage ti = tryToLoadFromTextureImageFormatLoaders( in, true, sigLoader, flipVertically, acceptAlpha, allowStreching, texFactory );
                 
                 if ( ti != null )
                 {
@@ -532,24 +879,27 @@ public abstract class AbstractTextureLoader
                 }
             }
             
-            if ( tex == null )
+            if ( ( tex == null ) && ( in != null ) )
             {
-                tex = tryToLoadFromTextureFormatLoaders( in, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+                tex = tryToLoadFromTextureFormatLoaders( in, true, sigLoader, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
             }
             
-            if ( tex == null )
+            if ( ( tex == null ) && ( in != null ) && ( sigLoader != fallbackTextureImageFormatLoader ) )
             {
                 tex = loadFromFallbackLoader( in, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
             }
         }
         
-        try
+        if ( in != null )
         {
-            in.close();
-        }
-        catch ( IOException e )
-        {
-            //e.printStackTrace();
+            try
+            {
+                in.close();
+            }
+            catch ( IOException e )
+            {
+                //e.printStackTrace();
+            }
         }
         
         return ( tex );
@@ -565,22 +915,22 @@ public abstract class AbstractTextureLoader
     
     protected final AbstractTexture checkCache( String name, String key )
     {
-        synchronized ( getCache() )
+        // No lock here. TextureCache.get() is thread-safe in all implementations.
+        final TextureCache cache = getCache();
+        
+        if ( !cache.isEnabled() )
+            return ( null );
+        
+        AbstractTexture tex = cache.get( key );
+        
+        if ( tex == null )
         {
-            if ( !getCache().isEnabled() )
-                return ( null );
-            
-            AbstractTexture tex = getCache().get( key );
-            
-            if ( tex == null )
-            {
-                return ( null );
-            }
-            
-            JAGTLog.debug( "Texture [", name, "] taken from cache" );
-            
-            return ( tex );
+            return ( null );
         }
+        
+        LOG.debug( "Texture [", name, "] taken from cache" );
+        
+        return ( tex );
     }
     
     
@@ -588,11 +938,14 @@ public abstract class AbstractTextureLoader
     {
         InputStream in = null;
         
-        if ( ( !autoDotAddedOnce ) && ( textureStreamLocators.isEmpty() ) )
+        synchronized ( this )
         {
-            // Added for noobs
-            addTextureStreamLocator( new TextureStreamLocatorFile( new File( "." ) ) );
-            autoDotAddedOnce = true;
+            if ( ( !autoDotAddedOnce ) && ( textureStreamLocators.isEmpty() ) )
+            {
+                // Added for noobs
+                addTextureStreamLocator( new TextureStreamLocatorFile( new File( "." ) ) );
+                autoDotAddedOnce = true;
+            }
         }
         
         for ( int i = 0; ( i < textureStreamLocators.size() ) && ( in == null ); i++ )
@@ -645,20 +998,21 @@ public abstract class AbstractTextureLoader
     {
         ProfileTimer.startProfile( JAGTLog.LOG_CHANNEL, "TextureLoader::loadOrGetTextureImage" );
         
-        if ( ( name == null ) || name.equals( "" ) )
+        try
         {
-            return ( null );
+            if ( ( name == null ) || name.equals( "" ) )
+            {
+                return ( null );
+            }
+            
+            BufferedInputStream in = getInputStream( name );
+            
+            return ( loadTextureImageFromStream( in, name, flipVertically, acceptAlpha, allowStreching, texFactory ) );
+        }
+        finally
+        {
+            ProfileTimer.endProfile();
         }
-        
-        AbstractTextureImage texImg = null;
-        
-        BufferedInputStream in = getInputStream( name );
-        
-        texImg = loadTextureImageFromStream( in, flipVertically, acceptAlpha, allowStreching, texFactory );
-        
-        ProfileTimer.endProfile();
-        
-        return ( texImg );
     }
     
     /**
@@ -704,47 +1058,359 @@ public abstract class AbstractTextureLoader
     {
         ProfileTimer.startProfile( JAGTLog.LOG_CHANNEL, "TextureLoader::loadOrGetTexture" );
         
-        if ( ( name == null ) || name.equals( "" ) )
+        try
+        {
+            if ( ( name == null ) || name.equals( "" ) )
+            {
+                return ( null );
+            }
+            
+            AbstractTexture tex = null;
+            
+            String cacheKey = generateCacheKey( name, acceptAlpha, loadMipmaps, flipVertically, allowStreching );
+            
+            if ( useCache && ( ( tex = checkCache( name, cacheKey ) ) != null ) )
+            {
+                return ( tex );
+            }
+            
+            Future<AbstractTexture> pending = useCache ? pendingAsyncLoads.get( cacheKey ) : null;
+            if ( pending != null )
+            {
+                // The same texture is currently being loaded asynchronously. Don't load it twice.
+                return ( waitForAsyncLoad( pending ) );
+            }
+            
+            tex = loadTextureUncached( name, cacheKey, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+            
+            if ( tex != null )
+            {
+                registerLoadedTexture( tex, name, cacheKey, useCache, writeToCache );
+                
+                onTextureLoaded( tex, name );
+            }
+            
+            return ( tex );
+        }
+        finally
+        {
+            ProfileTimer.endProfile();
+        }
+    }
+    
+    /**
+     * Locates and decodes the texture (and creates mipmaps, if requested)
+     * without consulting the in-memory cache and without calling {@link #onTextureLoaded(AbstractTexture, String)}.
+     */
+    private AbstractTexture loadTextureUncached( String name, String cacheKey, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory )
+    {
+        final LoadMetrics parent = LoadMetrics.current();
+        final LoadPhase prevPhase = parent.enterPhase( LoadPhase.TEXTURES );
+        final LoadMetrics metrics = LoadMetrics.begin( "Texture", name );
+        AbstractTexture tex = null;
+        
+        try
         {
+            tex = loadTextureUncached( name, cacheKey, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory, metrics );
+        }
+        finally
+        {
+            metrics.end( tex != null );
+            parent.enterPhase( prevPhase );
+        }
+        
+        if ( tex != null )
+            parent.addTextures( 1 );
+        
+        return ( tex );
+    }
+    
+    private AbstractTexture loadTextureUncached( String name, String cacheKey, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory, LoadMetrics metrics )
+    {
+        BufferedInputStream in = getInputStream( name );
+        
+        if ( metrics.isActive() )
+            in = new BufferedInputStream( metrics.wrap( in ) );
+        
+        final DiskTextureCache diskCache = this.diskCache;
+        
+        if ( diskCache == null )
+        {
+            return ( loadTextureFromStream( in, name, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory ) );
+        }
+        
+        // The source data is needed for the content-hash anyway. So it is completely read once.
+        final byte[] sourceData;
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream( Math.max( 1024, in.available() ) );
+            byte[] buffer = new byte[ 8192 ];
+            int n;
+            while ( ( n = in.read( buffer ) ) > 0 )
+            {
+                baos.write( buffer, 0, n );
+            }
+            
+            in.close();
+            
+            sourceData = baos.toByteArray();
+            
+            metrics.noteTemporaryBytes( sourceData.length );
+        }
+        catch ( IOException e )
+        {
+            // Texture not found.
             return ( null );
         }
         
-        AbstractTexture tex = null;
+        final String blobKey = diskCache.computeBlobKey( cacheKey, sourceData );
         
-        String cacheKey = generateCacheKey( name, acceptAlpha, loadMipmaps, flipVertically, allowStreching );
+        AbstractTexture tex = diskCache.load( blobKey, texFactory );
         
-        if ( useCache && ( ( tex = checkCache( name, cacheKey ) ) != null ) )
+        if ( tex != null )
         {
             return ( tex );
         }
         
-        BufferedInputStream in = getInputStream( name );
-        
-        tex = loadTextureFromStream( in, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+        tex = loadTextureFromStream( new BufferedInputStream( new ByteArrayInputStream( sourceData ) ), name, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
         
         if ( tex != null )
         {
-            // If tex has been loaded successfully, put it in the cache.
-            // We don't put it in the cache if it has not been loaded, or
-            // it will never be loaded correctly (if created after having
-            // tried once to load it.
-            if ( useCache && writeToCache && getCache().isEnabled() )
+            try
+            {
+                diskCache.store( blobKey, tex );
+            }
+            catch ( IOException e )
+            {
+                e.printStackTrace();
+            }
+        }
+        
+        return ( tex );
+    }
+    
+    private void registerLoadedTexture( AbstractTexture tex, String name, String cacheKey, boolean useCache, boolean writeToCache )
+    {
+        // If tex has been loaded successfully, put it in the cache.
+        // We don't put it in the cache if it has not been loaded, or
+        // it will never be loaded correctly (if created after having
+        // tried once to load it.
+        if ( useCache && writeToCache && getCache().isEnabled() )
+        {
+            synchronized ( getCache() )
+            {
+                getCache().add( cacheKey, tex );
+                tex.setCacheKey( cacheKey );
+            }
+        }
+        
+        tex.setName( name );
+    }
+    
+    /**
+     * Sets the maximum number of worker threads used for asynchronous texture loading.
+     * The default is the number of available processors minus one (at least one).
+     * 
+     * @param numWorkers
+     */
+    public void setNumAsyncWorkers( int numWorkers )
+    {
+        asyncWorkers.setNumThreads( numWorkers );
+    }
+    
+    /**
+     * @return the maximum number of worker threads used for asynchronous texture loading.
+     */
+    public final int getNumAsyncWorkers()
+    {
+        return ( asyncWorkers.getNumThreads() );
+    }
+    
+    /**
+     * @return the number of asynchronous loads, that have been started, but not yet finished.
+     */
+    public final int getNumPendingAsyncLoads()
+    {
+        return ( pendingAsyncLoads.size() );
+    }
+    
+    /**
+     * Stops the worker threads used for asynchronous texture loading.
+     * Already queued loads are still finished. A new pool is created by the next
+     * asynchronous load.
+     */
+    public void shutdownAsyncWorkers()
+    {
+        asyncWorkers.shutdown();
+    }
+    
+    private static Future<AbstractTexture> newDoneFuture( AbstractTexture tex )
+    {
+        FutureTask<AbstractTexture> future = new FutureTask<AbstractTexture>( new Runnable()
+        {
+            public void run()
             {
-                synchronized ( getCache() )
-                {
-                    getCache().add( cacheKey, tex );
-                    tex.setCacheKey( cacheKey );
-                }
             }
+        }, tex );
+        
+        future.run();
+        
+        return ( future );
+    }
+    
+    /**
+     * Waits for the given asynchronous load to finish.
+     * 
+     * @param future
+     * 
+     * @return the loaded texture or null, if it failed or the current thread has been interrupted.
+     */
+    protected static AbstractTexture waitForAsyncLoad( Future<AbstractTexture> future )
+    {
+        try
+        {
+            return ( future.get() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
             
-            tex.setName( name );
+            return ( null );
+        }
+        catch ( ExecutionException e )
+        {
+            e.getCause().printStackTrace();
             
+            return ( null );
+        }
+    }
+    
+    private void dispatchOnTextureLoaded( final AbstractTexture tex, final String name, Executor callbackExecutor )
+    {
+        if ( callbackExecutor == null )
+        {
             onTextureLoaded( tex, name );
         }
+        else
+        {
+            callbackExecutor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    onTextureLoaded( tex, name );
+                }
+            } );
+        }
+    }
+    
+    /**
+     * Loads the texture with the given name asynchronously on one of the
+     * loader's worker threads. See {@link #loadOrGetTexture(String, boolean, boolean, boolean, boolean, TextureFactory, boolean, boolean)}
+     * for the loading order.<br>
+     * <br>
+     * If useCache is true, a cached texture is returned through an already
+     * completed Future and concurrent requests for the same cache-key share
+     * the same Future.<br>
+     * <br>
+     * The Future completes as soon as the texture is decoded (and mipmapped)
+     * and has been put into the cache. {@link #onTextureLoaded(AbstractTexture, String)}
+     * is handed to the callbackExecutor (e.g. a queue processed by the render-thread).
+     * If callbackExecutor is null, it is invoked on the worker-thread right before the Future completes.
+     * 
+     * @param name The name of the texture.
+     * @param flipVertically flip the image vertically or not
+     * @param acceptAlpha try to load with alpha channel or not
+     * @param loadMipmaps create mipmaps?
+     * @param allowStreching If true, the image is streched to power-of-two width and height, if necessary.
+     * @param texFactory
+     * @param useCache
+     * @param writeToCache ignored, if useCache is false
+     * @param callbackExecutor the Executor to invoke {@link #onTextureLoaded(AbstractTexture, String)} on (may be null)
+     * 
+     * @return a Future, that will provide the {@link AbstractTexture} object or null, if it was not found.
+     */
+    protected Future<AbstractTexture> loadTextureAsync( final String name, final boolean flipVertically, final boolean acceptAlpha, final boolean loadMipmaps, final boolean allowStreching, final TextureFactory texFactory, final boolean useCache, final boolean writeToCache, final Executor callbackExecutor )
+    {
+        if ( ( name == null ) || name.equals( "" ) )
+        {
+            return ( newDoneFuture( null ) );
+        }
         
-        ProfileTimer.endProfile();
+        final String cacheKey = generateCacheKey( name, acceptAlpha, loadMipmaps, flipVertically, allowStreching );
         
-        return ( tex );
+        AbstractTexture tex;
+        if ( useCache && ( ( tex = checkCache( name, cacheKey ) ) != null ) )
+        {
+            return ( newDoneFuture( tex ) );
+        }
+        
+        final Callable<AbstractTexture> loadTask = new Callable<AbstractTexture>()
+        {
+            public AbstractTexture call()
+            {
+                AbstractTexture tex = loadTextureUncached( name, cacheKey, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+                
+                if ( tex != null )
+                {
+                    registerLoadedTexture( tex, name, cacheKey, useCache, writeToCache );
+                    
+                    dispatchOnTextureLoaded( tex, name, callbackExecutor );
+                }
+                
+                return ( tex );
+            }
+        };
+        
+        final FutureTask<AbstractTexture> future = new FutureTask<AbstractTexture>( loadTask )
+        {
+            @Override
+            protected void done()
+            {
+                pendingAsyncLoads.remove( cacheKey, this );
+            }
+        };
+        
+        if ( useCache )
+        {
+            Future<AbstractTexture> pending = pendingAsyncLoads.putIfAbsent( cacheKey, future );
+            
+            if ( pending != null )
+            {
+                return ( pending );
+            }
+        }
+        
+        asyncWorkers.getExecutor().execute( LoadMetrics.current().bind( future ) );
+        
+        return ( future );
+    }
+    
+    /**
+     * Loads all the given textures asynchronously.
+     * See {@link #loadTextureAsync(String, boolean, boolean, boolean, boolean, TextureFactory, boolean, boolean, Executor)}.
+     * 
+     * @param names The names of the textures.
+     * @param flipVertically flip the image vertically or not
+     * @param acceptAlpha try to load with alpha channel or not
+     * @param loadMipmaps create mipmaps?
+     * @param allowStreching If true, the image is streched to power-of-two width and height, if necessary.
+     * @param texFactory
+     * @param useCache
+     * @param writeToCache ignored, if useCache is false
+     * @param callbackExecutor the Executor to invoke {@link #onTextureLoaded(AbstractTexture, String)} on (may be null)
+     * 
+     * @return one Future per name in the same order as the names.
+     */
+    protected List<Future<AbstractTexture>> loadTexturesBatch( String[] names, boolean flipVertically, boolean acceptAlpha, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory, boolean useCache, boolean writeToCache, Executor callbackExecutor )
+    {
+        ArrayList<Future<AbstractTexture>> futures = new ArrayList<Future<AbstractTexture>>( names.length );
+        
+        for ( int i = 0; i < names.length; i++ )
+        {
+            futures.add( loadTextureAsync( names[i], flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory, useCache, writeToCache, callbackExecutor ) );
+        }
+        
+        return ( futures );
     }
     
     /**
@@ -822,7 +1488,7 @@ public abstract class AbstractTextureLoader
             in = new BufferedInputStream( in );
         }
         
-        tex = loadTextureFromStream( (BufferedInputStream)in, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
+        tex = loadTextureFromStream( (BufferedInputStream)in, imageURL, flipVertically, acceptAlpha, loadMipmaps, allowStreching, texFactory );
         
         if ( tex != null )
         {
@@ -29,61 +29,453 @@
  */
 package org.jagatoo.loaders.textures;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.jagatoo.loaders.LoadMetrics;
 import org.jagatoo.loaders.textures.pixelprocessing.PixelProcessor;
+import org.jagatoo.util.threads.WorkerPool;
 
 /**
- * Generates Mipmaps for a Texture.
+ * Generates Mipmaps for a Texture.<br>
+ * <br>
+ * Each level is computed from the previous one directly into the new level's
+ * ByteBuffer. Large levels are split into bands of rows, which are filtered
+ * on a pool of worker threads.
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
 public class MipmapGenerator
 {
+    /**
+     * Levels with less texels than this are computed on the calling thread.
+     */
+    private static final int MIN_PARALLEL_TEXELS = 128 * 128;
+    
+    /**
+     * The minimum number of rows in one band.
+     */
+    private static final int MIN_BAND_HEIGHT = 16;
+    
+    private static final float[] BOX_WEIGHTS = { 0.5f, 0.5f };
+    private static final float[] IDENTITY_WEIGHTS = { 1.0f };
+    private static final float[] KAISER_WEIGHTS = createKaiserWeights( 4.0, 1.5 );
+    
+    private static final float[] SRGB_TO_LINEAR = new float[ 256 ];
+    private static final byte[] LINEAR_TO_SRGB = new byte[ 4096 ];
+    
+    static
+    {
+        for ( int i = 0; i < SRGB_TO_LINEAR.length; i++ )
+        {
+            double c = i / 255.0;
+            
+            SRGB_TO_LINEAR[i] = (float)( ( c <= 0.04045 ) ? ( c / 12.92 ) : Math.pow( ( c + 0.055 ) / 1.055, 2.4 ) );
+        }
+        
+        for ( int i = 0; i < LINEAR_TO_SRGB.length; i++ )
+        {
+            double l = i / (double)( LINEAR_TO_SRGB.length - 1 );
+            double c = ( l <= 0.0031308 ) ? ( l * 12.92 ) : ( 1.055 * Math.pow( l, 1.0 / 2.4 ) - 0.055 );
+            
+            LINEAR_TO_SRGB[i] = (byte)Math.round( c * 255.0 );
+        }
+    }
+    
+    private static MipmapFilter defaultFilter = MipmapFilter.BOX;
+    
+    private static volatile int numThreads = Runtime.getRuntime().availableProcessors();
+    // The calling thread filters one band itself.
+    private static final WorkerPool workers = new WorkerPool( "MipmapGenerator", Math.max( 1, numThreads - 1 ), Thread.NORM_PRIORITY );
+    
+    private static double besselI0( double x )
+    {
+        double sum = 1.0;
+        double term = 1.0;
+        final double halfX = x / 2.0;
+        
+        for ( int k = 1; k < 32; k++ )
+        {
+            term *= ( halfX / k ) * ( halfX / k );
+            sum += term;
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * Computes the six weights of a Kaiser-windowed sinc for a 2:1 reduction.
+     * The taps are located at -1.25, -0.75, -0.25, 0.25, 0.75 and 1.25 target texels.
+     */
+    private static float[] createKaiserWeights( double alpha, double halfWidth )
+    {
+        final float[] weights = new float[ 6 ];
+        double sum = 0.0;
+        
+        for ( int k = 0; k < weights.length; k++ )
+        {
+            final double t = ( k - 2.5 ) / 2.0;
+            final double sinc = Math.sin( Math.PI * t ) / ( Math.PI * t );
+            final double r = t / halfWidth;
+            final double window = besselI0( alpha * Math.sqrt( Math.max( 0.0, 1.0 - r * r ) ) ) / besselI0( alpha );
+            
+            weights[k] = (float)( sinc * window );
+            sum += weights[k];
+        }
+        
+        for ( int k = 0; k < weights.length; k++ )
+        {
+            weights[k] /= sum;
+        }
+        
+        return ( weights );
+    }
+    
+    /**
+     * Sets the {@link MipmapFilter} used by {@link #createMipMaps(AbstractTextureImage, AbstractTexture, TextureFactory)}.
+     * 
+     * @param filter
+     */
+    public static void setDefaultFilter( MipmapFilter filter )
+    {
+        if ( filter == null )
+        {
+            throw new IllegalArgumentException( "filter must not be null." );
+        }
+        
+        defaultFilter = filter;
+    }
+    
+    /**
+     * @return the {@link MipmapFilter} used by {@link #createMipMaps(AbstractTextureImage, AbstractTexture, TextureFactory)}.
+     */
+    public static MipmapFilter getDefaultFilter()
+    {
+        return ( defaultFilter );
+    }
+    
+    /**
+     * Sets the number of threads used to filter large mipmap levels.
+     * Use 1 to compute all levels on the calling thread.<br>
+     * A running pool is resized. Bands, that are already queued, are still completed.
+     * 
+     * @param n
+     */
+    public static synchronized void setNumThreads( int n )
+    {
+        if ( n < 1 )
+        {
+            throw new IllegalArgumentException( "n must be at least 1." );
+        }
+        
+        workers.setNumThreads( Math.max( 1, n - 1 ) );
+        
+        numThreads = n;
+    }
+    
+    /**
+     * @return the number of threads used to filter large mipmap levels.
+     */
+    public static int getNumThreads()
+    {
+        return ( numThreads );
+    }
+    
+    /**
+     * Filters the rows [y0, y1) of one mipmap level.
+     */
+    private static void filterRows( MipmapFilter filter, ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int pixelSize, int alphaChannel, int y0, int y1 )
+    {
+        switch ( filter )
+        {
+            case BOX:
+                filterRowsBox( src, srcWidth, srcHeight, trg, trgWidth, pixelSize, y0, y1 );
+                break;
+            case KAISER:
+                filterRowsWeighted( src, srcWidth, srcHeight, trg, trgWidth, pixelSize, y0, y1 );
+                break;
+            case GAMMA_CORRECT:
+                filterRowsGammaCorrect( src, srcWidth, srcHeight, trg, trgWidth, pixelSize, alphaChannel, y0, y1 );
+                break;
+        }
+    }
+    
+    private static void filterRowsBox( ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int pixelSize, int y0, int y1 )
+    {
+        final int srcLineSize = srcWidth * pixelSize;
+        final int trgLineSize = trgWidth * pixelSize;
+        
+        for ( int y = y0; y < y1; y++ )
+        {
+            final int srcRow0 = Math.min( y << 1, srcHeight - 1 ) * srcLineSize;
+            final int srcRow1 = Math.min( ( y << 1 ) + 1, srcHeight - 1 ) * srcLineSize;
+            int trgOffset = y * trgLineSize;
+            
+            for ( int x = 0; x < trgWidth; x++ )
+            {
+                final int srcCol0 = Math.min( x << 1, srcWidth - 1 ) * pixelSize;
+                final int srcCol1 = Math.min( ( x << 1 ) + 1, srcWidth - 1 ) * pixelSize;
+                
+                for ( int i = 0; i < pixelSize; i++ )
+                {
+                    int sum = ( src.get( srcRow0 + srcCol0 + i ) & 0xFF ) +
+                              ( src.get( srcRow0 + srcCol1 + i ) & 0xFF ) +
+                              ( src.get( srcRow1 + srcCol0 + i ) & 0xFF ) +
+                              ( src.get( srcRow1 + srcCol1 + i ) & 0xFF );
+                    
+                    trg.put( trgOffset++, (byte)( sum >> 2 ) );
+                }
+            }
+        }
+    }
+    
+    private static void filterRowsWeighted( ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int pixelSize, int y0, int y1 )
+    {
+        final int srcLineSize = srcWidth * pixelSize;
+        final int trgLineSize = trgWidth * pixelSize;
+        
+        // An axis, that isn't reduced anymore (size 1), is just copied.
+        final float[] weightsX = ( srcWidth > 1 ) ? KAISER_WEIGHTS : IDENTITY_WEIGHTS;
+        final float[] weightsY = ( srcHeight > 1 ) ? KAISER_WEIGHTS : IDENTITY_WEIGHTS;
+        final int firstTapX = ( srcWidth > 1 ) ? -2 : 0;
+        final int firstTapY = ( srcHeight > 1 ) ? -2 : 0;
+        final int scaleX = ( srcWidth > 1 ) ? 2 : 1;
+        final int scaleY = ( srcHeight > 1 ) ? 2 : 1;
+        
+        for ( int y = y0; y < y1; y++ )
+        {
+            int trgOffset = y * trgLineSize;
+            
+            for ( int x = 0; x < trgWidth; x++ )
+            {
+                for ( int i = 0; i < pixelSize; i++ )
+                {
+                    float sum = 0f;
+                    
+                    for ( int ty = 0; ty < weightsY.length; ty++ )
+                    {
+                        final int sy = Math.max( 0, Math.min( y * scaleY + firstTapY + ty, srcHeight - 1 ) );
+                        final int srcRow = sy * srcLineSize + i;
+                        float rowSum = 0f;
+                        
+                        for ( int tx = 0; tx < weightsX.length; tx++ )
+                        {
+                            final int sx = Math.max( 0, Math.min( x * scaleX + firstTapX + tx, srcWidth - 1 ) );
+                            
+                            rowSum += weightsX[tx] * ( src.get( srcRow + sx * pixelSize ) & 0xFF );
+                        }
+                        
+                        sum += weightsY[ty] * rowSum;
+                    }
+                    
+                    final int value = (int)( sum + 0.5f );
+                    
+                    trg.put( trgOffset++, (byte)( ( value < 0 ) ? 0 : ( ( value > 255 ) ? 255 : value ) ) );
+                }
+            }
+        }
+    }
+    
+    private static void filterRowsGammaCorrect( ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int pixelSize, int alphaChannel, int y0, int y1 )
+    {
+        final int srcLineSize = srcWidth * pixelSize;
+        final int trgLineSize = trgWidth * pixelSize;
+        final float maxIndex = LINEAR_TO_SRGB.length - 1;
+        
+        for ( int y = y0; y < y1; y++ )
+        {
+            final int srcRow0 = Math.min( y << 1, srcHeight - 1 ) * srcLineSize;
+            final int srcRow1 = Math.min( ( y << 1 ) + 1, srcHeight - 1 ) * srcLineSize;
+            int trgOffset = y * trgLineSize;
+            
+            for ( int x = 0; x < trgWidth; x++ )
+            {
+                final int srcCol0 = Math.min( x << 1, srcWidth - 1 ) * pixelSize;
+                final int srcCol1 = Math.min( ( x << 1 ) + 1, srcWidth - 1 ) * pixelSize;
+                
+                for ( int i = 0; i < pixelSize; i++ )
+                {
+                    final int s00 = src.get( srcRow0 + srcCol0 + i ) & 0xFF;
+                    final int s01 = src.get( srcRow0 + srcCol1 + i ) & 0xFF;
+                    final int s10 = src.get( srcRow1 + srcCol0 + i ) & 0xFF;
+                    final int s11 = src.get( srcRow1 + srcCol1 + i ) & 0xFF;
+                    
+                    if ( i == alphaChannel )
+                    {
+                        trg.put( trgOffset++, (byte)( ( s00 + s01 + s10 + s11 + 2 ) >> 2 ) );
+                    }
+                    else
+                    {
+                        final float linear = ( SRGB_TO_LINEAR[s00] + SRGB_TO_LINEAR[s01] + SRGB_TO_LINEAR[s10] + SRGB_TO_LINEAR[s11] ) * 0.25f;
+                        
+                        trg.put( trgOffset++, LINEAR_TO_SRGB[ (int)( linear * maxIndex + 0.5f ) ] );
+                    }
+                }
+            }
+        }
+    }
+    
+    private static class BandTask implements Runnable
+    {
+        private final MipmapFilter filter;
+        private final ByteBuffer src;
+        private final int srcWidth;
+        private final int srcHeight;
+        private final ByteBuffer trg;
+        private final int trgWidth;
+        private final int pixelSize;
+        private final int alphaChannel;
+        private final int y0;
+        private final int y1;
+        
+        public void run()
+        {
+            filterRows( filter, src, srcWidth, srcHeight, trg, trgWidth, pixelSize, alphaChannel, y0, y1 );
+        }
+        
+        public BandTask( MipmapFilter filter, ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int pixelSize, int alphaChannel, int y0, int y1 )
+        {
+            this.filter = filter;
+            this.src = src;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.trg = trg;
+            this.trgWidth = trgWidth;
+            this.pixelSize = pixelSize;
+            this.alphaChannel = alphaChannel;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+    }
+    
+    /**
+     * Filters one complete mipmap level. Only absolute get/put operations are
+     * used on the buffers, so that the bands can be processed concurrently.
+     */
+    private static void filterLevel( MipmapFilter filter, ByteBuffer src, int srcWidth, int srcHeight, ByteBuffer trg, int trgWidth, int trgHeight, int pixelSize, int alphaChannel )
+    {
+        final int threads = numThreads;
+        
+        if ( ( threads <= 1 ) || ( trgWidth * trgHeight < MIN_PARALLEL_TEXELS ) || ( trgHeight < 2 * MIN_BAND_HEIGHT ) )
+        {
+            filterRows( filter, src, srcWidth, srcHeight, trg, trgWidth, pixelSize, alphaChannel, 0, trgHeight );
+            
+            return;
+        }
+        
+        final int bandHeight = Math.max( MIN_BAND_HEIGHT, ( trgHeight + threads * 2 - 1 ) / ( threads * 2 ) );
+        final int numBands = ( trgHeight + bandHeight - 1 ) / bandHeight;
+        
+        final ThreadPoolExecutor pool = workers.getExecutor();
+        final LoadMetrics metrics = LoadMetrics.current();
+        final Future<?>[] bands = new Future<?>[ numBands - 1 ];
+        
+        for ( int b = 1; b < numBands; b++ )
+        {
+            final int y0 = b * bandHeight;
+            final int y1 = Math.min( y0 + bandHeight, trgHeight );
+            
+            bands[ b - 1 ] = pool.submit( metrics.bind( new BandTask( filter, src, srcWidth, srcHeight, trg, trgWidth, pixelSize, alphaChannel, y0, y1 ) ) );
+        }
+        
+        filterRows( filter, src, srcWidth, srcHeight, trg, trgWidth, pixelSize, alphaChannel, 0, Math.min( bandHeight, trgHeight ) );
+        
+        // The level must be complete, before the next one can be computed.
+        Throwable failure = null;
+        boolean interrupted = false;
+        for ( int i = 0; i < bands.length; i++ )
+        {
+            while ( true )
+            {
+                try
+                {
+                    bands[ i ].get();
+                    break;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( failure == null )
+                        failure = e.getCause();
+                    break;
+                }
+            }
+        }
+        
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+        
+        if ( failure instanceof RuntimeException )
+            throw (RuntimeException)failure;
+        
+        if ( failure instanceof Error )
+            throw (Error)failure;
+        
+        if ( failure != null )
+            throw new RuntimeException( failure );
+    }
+    
     /**
      * Creates mipmaps from the given {@link AbstractTextureImage}.<br>
      * 
      * @param ti0 the base-image
      * @param tex the target-texture.
+     * @param texFactory
+     * @param filter the filter to downsample each level with
      */
-    public static void createMipMaps( AbstractTextureImage ti0, AbstractTexture tex, TextureFactory texFactory )
+    public static void createMipMaps( AbstractTextureImage ti0, AbstractTexture tex, TextureFactory texFactory, MipmapFilter filter )
     {
+        // Validates the format.
         final PixelProcessor pp = PixelProcessor.selectPixelProcessor( ti0.getFormat() );
         
+        final int pixelSize = ti0.getPixelSize();
+        final int alphaChannel = ti0.getFormat().hasAlpha() ? ( pixelSize - 1 ) : -1;
+        
         int width = ti0.getWidth();
         int height = ti0.getHeight();
         
-        int lineSize = pp.getLineSize( width );
-        
-        /*
-        int numLevels = Integer.numberOfTrailingZeros( Math.max( width, height ) ) + 1;
-        
-        // For some ugly texture sizes the above algorithm will compute a wrong level-count.
-        if ( ( ( width >> numLevels ) > 0 ) || ( ( height >> numLevels ) > 0 ) )
-        {
-            numLevels++;
-        }
-        */
-        
         AbstractTextureImage ti = ti0;
         
-        //for ( int level = 1; level < numLevels; level++ )
         int level = 1;
         while ( ( width > 1 ) || ( height > 1 ) )
         {
-            /*
-            // Limit to 8 to avoid unecessarily small mipmaps!
-            if ( ( width <= 8 ) || ( height <= 8 ) )
-            {
-                break;
-            }
-            */
+            final int srcWidth = width;
+            final int srcHeight = height;
             
             // rounding based on OpenGL rule.
             width = Math.max( 1, width >> 1 );
             height = Math.max( 1, height >> 1 );
-            lineSize = pp.getLineSize( width );
             
-            ti = pp.calcMipMap( ti, 0, width, height, lineSize, texFactory );
+            AbstractTextureImage trgImg = texFactory.createTextureImage( width, height, width, height, pixelSize );
+            ByteBuffer trg = trgImg.getDataBuffer();
+            
+            filterLevel( filter, ti.getDataBuffer(), srcWidth, srcHeight, trg, width, height, pixelSize, alphaChannel );
+            
+            trg.position( 0 );
+            trg.limit( height * pp.getLineSize( width ) );
+            
+            ti = trgImg;
             tex.setImage( level++, ti );
         }
     }
+    
+    /**
+     * Creates mipmaps from the given {@link AbstractTextureImage}
+     * using the default {@link MipmapFilter}.<br>
+     * 
+     * @param ti0 the base-image
+     * @param tex the target-texture.
+     * @param texFactory
+     */
+    public static void createMipMaps( AbstractTextureImage ti0, AbstractTexture tex, TextureFactory texFactory )
+    {
+        createMipMaps( ti0, tex, texFactory, defaultFilter );
+    }
 }
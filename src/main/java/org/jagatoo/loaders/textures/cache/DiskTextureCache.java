@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.textures.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jagatoo.loaders.textures.AbstractTexture;
+import org.jagatoo.loaders.textures.AbstractTextureImage;
+import org.jagatoo.loaders.textures.TextureFactory;
+import org.jagatoo.opengl.enums.TextureFormat;
+import org.jagatoo.opengl.enums.TextureImageFormat;
+import org.jagatoo.opengl.enums.TextureImageInternalFormat;
+import org.jagatoo.opengl.enums.TextureType;
+
+/**
+ * A persistent second tier below the in-memory {@link TextureCache}.
+ * Decoded (and mipmapped) Textures are stored as one blob file per Texture in
+ * a local directory. The blob's name is a hash of the cache-key (resource-name
+ * and loader options) and the source data, so a changed source file never
+ * hits an outdated blob.<br>
+ * <br>
+ * Blobs are memory-mapped on load and copied level by level into the data
+ * buffers of the {@link AbstractTextureImage}s created by the {@link TextureFactory}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class DiskTextureCache
+{
+    private static final int MAGIC = 0x4A544443; // "JTDC"
+    private static final int VERSION = 1;
+    
+    private static final String BLOB_EXTENSION = ".jtex";
+    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private final File directory;
+    
+    private final AtomicLong numHits = new AtomicLong( 0L );
+    private final AtomicLong numMisses = new AtomicLong( 0L );
+    private final AtomicLong numWrites = new AtomicLong( 0L );
+    
+    /**
+     * @return the directory, where the blobs are stored.
+     */
+    public final File getDirectory()
+    {
+        return ( directory );
+    }
+    
+    public final long getNumHits()
+    {
+        return ( numHits.get() );
+    }
+    
+    public final long getNumMisses()
+    {
+        return ( numMisses.get() );
+    }
+    
+    public final long getNumWrites()
+    {
+        return ( numWrites.get() );
+    }
+    
+    /**
+     * Computes the key of the blob for the given cache-key and source data.
+     * 
+     * @param cacheKey the cache-key as generated by the TextureLoader
+     * @param sourceData the undecoded texture resource
+     * 
+     * @return the blob-key.
+     */
+    public String computeBlobKey( String cacheKey, byte[] sourceData )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            
+            digest.update( cacheKey.getBytes( "UTF-8" ) );
+            digest.update( (byte)0 );
+            digest.update( sourceData );
+            
+            byte[] hash = digest.digest();
+            char[] hex = new char[ hash.length * 2 ];
+            
+            for ( int i = 0; i < hash.length; i++ )
+            {
+                hex[i * 2 + 0] = HEX_DIGITS[( hash[i] >> 4 ) & 0x0F];
+                hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0x0F];
+            }
+            
+            return ( new String( hex ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-1 is guaranteed to be available.
+            throw new Error( e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            // UTF-8 is guaranteed to be available.
+            throw new Error( e );
+        }
+    }
+    
+    private final File getBlobFile( String blobKey )
+    {
+        return ( new File( directory, blobKey + BLOB_EXTENSION ) );
+    }
+    
+    private static void putString( ByteBuffer bb, Enum<?> e )
+    {
+        final String s = ( e == null ) ? "" : e.name();
+        
+        bb.put( (byte)s.length() );
+        for ( int i = 0; i < s.length(); i++ )
+        {
+            bb.put( (byte)s.charAt( i ) );
+        }
+    }
+    
+    private static String getString( ByteBuffer bb )
+    {
+        final int length = bb.get() & 0xFF;
+        final char[] chars = new char[ length ];
+        
+        for ( int i = 0; i < length; i++ )
+        {
+            chars[i] = (char)bb.get();
+        }
+        
+        return ( new String( chars ) );
+    }
+    
+    /**
+     * Loads the Texture stored under the given blob-key.
+     * 
+     * @param blobKey
+     * @param texFactory
+     * 
+     * @return the restored Texture or null, if no (valid) blob exists.
+     */
+    public AbstractTexture load( String blobKey, TextureFactory texFactory )
+    {
+        final File file = getBlobFile( blobKey );
+        
+        if ( !file.exists() )
+        {
+            numMisses.incrementAndGet();
+            
+            return ( null );
+        }
+        
+        FileInputStream in = null;
+        AbstractTexture tex = null;
+        
+        try
+        {
+            in = new FileInputStream( file );
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() );
+            
+            if ( ( mapped.getInt() != MAGIC ) || ( mapped.getInt() != VERSION ) )
+            {
+                throw new IOException( "Invalid texture blob " + file );
+            }
+            
+            final TextureType type = TextureType.valueOf( getString( mapped ) );
+            final TextureFormat format = TextureFormat.valueOf( getString( mapped ) );
+            final int numLevels = mapped.getInt();
+            
+            tex = texFactory.createTexture( type, format );
+            
+            for ( int level = 0; level < numLevels; level++ )
+            {
+                final int width = mapped.getInt();
+                final int height = mapped.getInt();
+                final int orgWidth = mapped.getInt();
+                final int orgHeight = mapped.getInt();
+                final int pixelSize = mapped.getInt();
+                final String internalFormatName = getString( mapped );
+                final TextureImageInternalFormat internalFormat = ( internalFormatName.length() == 0 ) ? null : TextureImageInternalFormat.valueOf( internalFormatName );
+                final TextureImageFormat imageFormat = TextureImageFormat.valueOf( getString( mapped ) );
+                final int dataSize = mapped.getInt();
+                
+                AbstractTextureImage image = texFactory.createTextureImage( width, height, orgWidth, orgHeight, pixelSize, dataSize, internalFormat, imageFormat );
+                
+                ByteBuffer src = mapped.slice();
+                src.limit( dataSize );
+                
+                ByteBuffer trg = image.getDataBuffer();
+                trg.position( 0 );
+                trg.limit( trg.capacity() );
+                trg.put( src );
+                trg.flip();
+                
+                mapped.position( mapped.position() + dataSize );
+                
+                tex.setImage( level, image );
+            }
+        }
+        catch ( Throwable t )
+        {
+            t.printStackTrace();
+            
+            tex = null;
+        }
+        finally
+        {
+            if ( in != null )
+            {
+                try
+                {
+                    in.close();
+                }
+                catch ( IOException e )
+                {
+                }
+            }
+        }
+        
+        if ( tex == null )
+        {
+            // A corrupt or outdated blob. It will be rewritten after the next decode.
+            file.delete();
+            
+            numMisses.incrementAndGet();
+            
+            return ( null );
+        }
+        
+        numHits.incrementAndGet();
+        
+        return ( tex );
+    }
+    
+    /**
+     * Stores the Texture under the given blob-key.
+     * The blob is written to a temporary file first and then renamed, so that
+     * concurrent readers never see a partial blob.
+     * 
+     * @param blobKey
+     * @param tex
+     * 
+     * @throws IOException
+     */
+    public void store( String blobKey, AbstractTexture tex ) throws IOException
+    {
+        if ( ( tex.getType() == null ) || ( tex.getFormat() == null ) )
+            return;
+        
+        final int numLevels = tex.getImagesCount();
+        
+        final ByteBuffer header = ByteBuffer.allocate( 64 + numLevels * 128 );
+        
+        header.putInt( MAGIC );
+        header.putInt( VERSION );
+        putString( header, tex.getType() );
+        putString( header, tex.getFormat() );
+        header.putInt( numLevels );
+        
+        final File tmpFile = File.createTempFile( blobKey, ".tmp", directory );
+        FileOutputStream out = new FileOutputStream( tmpFile );
+        
+        try
+        {
+            FileChannel channel = out.getChannel();
+            
+            for ( int level = 0; level < numLevels; level++ )
+            {
+                AbstractTextureImage image = tex.getImage( level );
+                
+                if ( ( image == null ) || ( image.getDataBuffer() == null ) )
+                {
+                    throw new IOException( "Texture level " + level + " has no data." );
+                }
+                
+                ByteBuffer data = image.getDataBuffer().duplicate();
+                data.position( 0 );
+                
+                header.putInt( image.getWidth() );
+                header.putInt( image.getHeight() );
+                header.putInt( image.getOriginalWidth() );
+                header.putInt( image.getOriginalHeight() );
+                header.putInt( image.getPixelSize() );
+                putString( header, image.getInternalFormat() );
+                putString( header, image.getFormat() );
+                header.putInt( data.remaining() );
+                
+                header.flip();
+                while ( header.hasRemaining() )
+                {
+                    channel.write( header );
+                }
+                header.clear();
+                
+                while ( data.hasRemaining() )
+                {
+                    channel.write( data );
+                }
+            }
+            
+            if ( numLevels == 0 )
+            {
+                header.flip();
+                while ( header.hasRemaining() )
+                {
+                    channel.write( header );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            out.close();
+            tmpFile.delete();
+            
+            throw e;
+        }
+        
+        out.close();
+        
+        final File file = getBlobFile( blobKey );
+        
+        if ( !tmpFile.renameTo( file ) )
+        {
+            // Another thread or process has written the same blob in the meantime.
+            file.delete();
+            
+            if ( !tmpFile.renameTo( file ) )
+            {
+                tmpFile.delete();
+                
+                return;
+            }
+        }
+        
+        numWrites.incrementAndGet();
+    }
+    
+    /**
+     * Deletes all blobs from the cache-directory.
+     */
+    public void clear()
+    {
+        File[] files = directory.listFiles();
+        
+        if ( files == null )
+            return;
+        
+        for ( int i = 0; i < files.length; i++ )
+        {
+            if ( files[i].getName().endsWith( BLOB_EXTENSION ) )
+            {
+                files[i].delete();
+            }
+        }
+    }
+    
+    /**
+     * @param directory the directory to store the blobs in. It is created, if necessary.
+     */
+    public DiskTextureCache( File directory )
+    {
+        if ( directory == null )
+            throw new NullPointerException( "directory must not be null." );
+        
+        if ( !directory.exists() && !directory.mkdirs() )
+            throw new IllegalArgumentException( "Cannot create the directory " + directory );
+        
+        this.directory = directory;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.textures.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jagatoo.loaders.textures.AbstractTexture;
+import org.jagatoo.loaders.textures.AbstractTextureImage;
+
+/**
+ * This {@link TextureCache} is bounded by the total size of the cached texel
+ * data (the capacities of all mipmap levels' data buffers). When the limit is
+ * exceeded, the least recently used Textures are evicted.<br>
+ * <br>
+ * {@link #get(String)} doesn't lock. Hits, misses, evictions and the cached
+ * bytes are counted for monitoring.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class LRUTextureCache extends TextureCache
+{
+    private static class Entry
+    {
+        public final String key;
+        public final AbstractTexture texture;
+        public final long numBytes;
+        public volatile long lastAccess;
+        
+        public Entry( String key, AbstractTexture texture, long numBytes, long lastAccess )
+        {
+            this.key = key;
+            this.texture = texture;
+            this.numBytes = numBytes;
+            this.lastAccess = lastAccess;
+        }
+    }
+    
+    private static final Comparator<Entry> LRU_COMPARATOR = new Comparator<Entry>()
+    {
+        public int compare( Entry e1, Entry e2 )
+        {
+            if ( e1.lastAccess < e2.lastAccess )
+                return ( -1 );
+            
+            if ( e1.lastAccess > e2.lastAccess )
+                return ( +1 );
+            
+            return ( 0 );
+        }
+    };
+    
+    private final ConcurrentHashMap<String, Entry> textureCache = new ConcurrentHashMap<String, Entry>();
+    private final CopyOnWriteArrayList<TextureEvictionListener> evictionListeners = new CopyOnWriteArrayList<TextureEvictionListener>();
+    
+    private final Object evictionLock = new Object();
+    
+    private volatile long maxBytes;
+    private final AtomicLong accessClock = new AtomicLong( 0L );
+    private final AtomicLong cachedBytes = new AtomicLong( 0L );
+    
+    private final AtomicLong numHits = new AtomicLong( 0L );
+    private final AtomicLong numMisses = new AtomicLong( 0L );
+    private final AtomicLong numEvictions = new AtomicLong( 0L );
+    private final AtomicLong numEvictedBytes = new AtomicLong( 0L );
+    
+    /**
+     * @param texture
+     * 
+     * @return the summed up capacities of all the Texture's image data buffers.
+     */
+    public static long computeTexelBytes( AbstractTexture texture )
+    {
+        long numBytes = 0L;
+        
+        for ( int i = 0; i < texture.getImagesCount(); i++ )
+        {
+            AbstractTextureImage image = texture.getImage( i );
+            
+            if ( ( image != null ) && ( image.getDataBuffer() != null ) )
+            {
+                numBytes += image.getDataBuffer().capacity();
+            }
+        }
+        
+        return ( numBytes );
+    }
+    
+    /**
+     * Sets the maximum number of texel bytes to keep cached.
+     * Evicts Textures immediately, if necessary.
+     * 
+     * @param maxBytes
+     */
+    public void setMaxBytes( long maxBytes )
+    {
+        if ( maxBytes < 0L )
+        {
+            throw new IllegalArgumentException( "maxBytes must not be negative." );
+        }
+        
+        this.maxBytes = maxBytes;
+        
+        evictIfNecessary();
+    }
+    
+    /**
+     * @return the maximum number of texel bytes to keep cached.
+     */
+    public final long getMaxBytes()
+    {
+        return ( maxBytes );
+    }
+    
+    /**
+     * @return the number of texel bytes currently cached.
+     */
+    public final long getCachedBytes()
+    {
+        return ( cachedBytes.get() );
+    }
+    
+    /**
+     * @return the number of currently cached Textures.
+     */
+    public final int getSize()
+    {
+        return ( textureCache.size() );
+    }
+    
+    public final long getNumHits()
+    {
+        return ( numHits.get() );
+    }
+    
+    public final long getNumMisses()
+    {
+        return ( numMisses.get() );
+    }
+    
+    public final long getNumEvictions()
+    {
+        return ( numEvictions.get() );
+    }
+    
+    public final long getNumEvictedBytes()
+    {
+        return ( numEvictedBytes.get() );
+    }
+    
+    /**
+     * Resets the hit, miss and eviction counters to zero.
+     */
+    public void resetStatistics()
+    {
+        numHits.set( 0L );
+        numMisses.set( 0L );
+        numEvictions.set( 0L );
+        numEvictedBytes.set( 0L );
+    }
+    
+    public void addEvictionListener( TextureEvictionListener l )
+    {
+        evictionListeners.add( l );
+    }
+    
+    public void removeEvictionListener( TextureEvictionListener l )
+    {
+        evictionListeners.remove( l );
+    }
+    
+    private void evictIfNecessary()
+    {
+        if ( cachedBytes.get() <= maxBytes )
+            return;
+        
+        ArrayList<Entry> evicted = null;
+        
+        synchronized ( evictionLock )
+        {
+            if ( cachedBytes.get() <= maxBytes )
+                return;
+            
+            Entry[] entries = textureCache.values().toArray( new Entry[ textureCache.size() ] );
+            Arrays.sort( entries, LRU_COMPARATOR );
+            
+            evicted = new ArrayList<Entry>();
+            
+            for ( int i = 0; ( i < entries.length ) && ( cachedBytes.get() > maxBytes ); i++ )
+            {
+                if ( textureCache.remove( entries[i].key, entries[i] ) )
+                {
+                    cachedBytes.addAndGet( -entries[i].numBytes );
+                    evicted.add( entries[i] );
+                }
+            }
+        }
+        
+        for ( int i = 0; i < evicted.size(); i++ )
+        {
+            Entry entry = evicted.get( i );
+            
+            removeCachedKey( entry.key );
+            
+            numEvictions.incrementAndGet();
+            numEvictedBytes.addAndGet( entry.numBytes );
+            
+            for ( TextureEvictionListener l : evictionListeners )
+            {
+                l.onTextureEvicted( entry.key, entry.texture, entry.numBytes );
+            }
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addImpl( String key, AbstractTexture texture )
+    {
+        Entry entry = new Entry( key, texture, computeTexelBytes( texture ), accessClock.incrementAndGet() );
+        
+        Entry prev = textureCache.put( key, entry );
+        
+        cachedBytes.addAndGet( entry.numBytes - ( ( prev == null ) ? 0L : prev.numBytes ) );
+        
+        evictIfNecessary();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeImpl( AbstractTexture texture )
+    {
+        String key = texture.getCacheKey();
+        
+        if ( key == null )
+            return;
+        
+        Entry entry = textureCache.get( key );
+        
+        if ( ( entry != null ) && ( entry.texture == texture ) && textureCache.remove( key, entry ) )
+        {
+            cachedBytes.addAndGet( -entry.numBytes );
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AbstractTexture get( String key )
+    {
+        Entry entry = textureCache.get( key );
+        
+        if ( entry == null )
+        {
+            numMisses.incrementAndGet();
+            
+            return ( null );
+        }
+        
+        entry.lastAccess = accessClock.incrementAndGet();
+        numHits.incrementAndGet();
+        
+        return ( entry.texture );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<AbstractTexture> getCachedTextures()
+    {
+        ArrayList<AbstractTexture> textures = new ArrayList<AbstractTexture>( textureCache.size() );
+        
+        for ( Entry entry : textureCache.values() )
+        {
+            textures.add( entry.texture );
+        }
+        
+        return ( textures );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        ArrayList<Entry> removed = new ArrayList<Entry>( textureCache.size() );
+        
+        synchronized ( evictionLock )
+        {
+            Iterator<Entry> it = textureCache.values().iterator();
+            
+            while ( it.hasNext() )
+            {
+                Entry entry = it.next();
+                
+                it.remove();
+                cachedBytes.addAndGet( -entry.numBytes );
+                removed.add( entry );
+            }
+        }
+        
+        // Not under the evictionLock, since add() locks in the opposite order.
+        for ( int i = 0; i < removed.size(); i++ )
+        {
+            removeCachedKey( removed.get( i ).key );
+        }
+    }
+    
+    /**
+     * @param maxBytes the maximum number of texel bytes to keep cached
+     */
+    public LRUTextureCache( long maxBytes )
+    {
+        super();
+        
+        setMaxBytes( maxBytes );
+    }
+}
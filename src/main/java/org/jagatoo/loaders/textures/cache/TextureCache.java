@@ -108,12 +108,26 @@ public abstract class TextureCache
     public synchronized final void remove( AbstractTexture texture )
     {
         cacheKeys.remove( texture.getCacheKey() );
+        
+        removeImpl( texture );
+    }
+    
+    /**
+     * Removes the key from the list of cached keys. Implementations, that
+     * evict Textures on their own, must call this for each evicted Texture.
+     * 
+     * @param key
+     */
+    protected synchronized final void removeCachedKey( String key )
+    {
+        cacheKeys.remove( key );
     }
     
     /**
      * @param key
      * 
      * @return the Texture cached under the given key or null.
+     *         Implementations must be thread-safe, since this is called without any lock.
      */
     public abstract AbstractTexture get( String key );
     
@@ -47,7 +47,7 @@ import org.jagatoo.opengl.enums.TextureImageInternalFormat;
  * @author Matthias Mann
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureFormatLoaderDDS implements TextureFormatLoader
+public class TextureFormatLoaderDDS implements TextureFormatLoader, TextureFormatSignature
 {
     /*
     private static final int DDSD_CAPS         = 0x00000001;
@@ -104,6 +104,12 @@ public class TextureFormatLoaderDDS implements TextureFormatLoader
     {
     }
     
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        // "DDS "
+        return ( ( length >= 4 ) && ( header[0] == (byte)'D' ) && ( header[1] == (byte)'D' ) && ( header[2] == (byte)'S' ) && ( header[3] == (byte)' ' ) );
+    }
+    
     public AbstractTexture loadTexture( BufferedInputStream in, boolean acceptAlpha, boolean flipVertically, boolean loadMipmaps, boolean allowStreching, TextureFactory texFactory ) throws IOException
     {
         if ( in.available() < 2 * 4 )
@@ -111,12 +117,15 @@ public class TextureFormatLoaderDDS implements TextureFormatLoader
             return ( null );
         }
         
-        if ( readInt( in ) != 0x20534444 ) // "DDS "
+        // local, so that concurrent (async) loads don't share a read-buffer.
+        final byte[] intBuffer = new byte[ 4 ];
+        
+        if ( readInt( in, intBuffer ) != 0x20534444 ) // "DDS "
         {
             return ( null );
         }
         
-        final int headerByteSize = readInt( in ); // size of the header
+        final int headerByteSize = readInt( in, intBuffer ); // size of the header
         if ( headerByteSize != 124 )
         {
             return ( null );
@@ -127,7 +136,7 @@ public class TextureFormatLoaderDDS implements TextureFormatLoader
         header[ 0 ] = headerByteSize;
         for ( int i = 1; i < headerIntSize; i++ )
         {
-            header[ i ] = readInt( in );
+            header[ i ] = readInt( in, intBuffer );
         }
         
         /*
@@ -363,9 +372,8 @@ public class TextureFormatLoaderDDS implements TextureFormatLoader
     }
     */
 
-    private int readInt( BufferedInputStream in ) throws IOException
+    private int readInt( BufferedInputStream in, byte[] tmp ) throws IOException
     {
-        byte[] tmp = tmpReadBuffer;
         readFully( in, tmp, 0, 4 );
         
         return ( ( ( tmp[ 3 ] & 255 ) << 24 ) | ( ( tmp[ 2 ] & 255 ) << 16 ) | ( ( tmp[ 1 ] & 255 ) << 8 ) | ( ( tmp[ 0 ] & 255 ) ) );
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.textures.formats;
+
+/**
+ * Optionally implemented by {@link TextureImageFormatLoader}s and
+ * {@link TextureFormatLoader}s, that can recognize their format from the
+ * first few bytes of a stream. The AbstractTextureLoader peeks the header
+ * once and dispatches directly to the first loader, whose signature matches,
+ * instead of trying all registered loaders in turn.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public interface TextureFormatSignature
+{
+    /**
+     * The number of header bytes, that are peeked from a stream.
+     */
+    public static final int MAX_SIGNATURE_SIZE = 128;
+    
+    /**
+     * Checks, whether the given header bytes belong to this loader's format.
+     * This method must not have any side effects.
+     * 
+     * @param header the first bytes of the stream
+     * @param length the number of valid bytes in header (less than {@link #MAX_SIGNATURE_SIZE} for tiny streams)
+     * 
+     * @return true, if this loader is most probably able to decode the stream.
+     */
+    public boolean matchesSignature( byte[] header, int length );
+}
@@ -55,7 +55,7 @@ import org.jagatoo.util.image.ImageUtility;
  * @author Scott Shaver
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderBMP implements TextureImageFormatLoader
+public class TextureImageFormatLoaderBMP implements TextureImageFormatLoader, TextureFormatSignature
 {
     private static final short readShort( BufferedInputStream in ) throws IOException
     {
@@ -177,6 +177,15 @@ public class TextureImageFormatLoaderBMP implements TextureImageFormatLoader
         return ( palette );
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        // "BM"
+        return ( ( length >= 2 ) && ( header[0] == (byte)66 ) && ( header[1] == (byte)77 ) );
+    }
+    
     /**
      * {@inheritDoc}
      */
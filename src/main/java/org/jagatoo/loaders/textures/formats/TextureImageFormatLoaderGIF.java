@@ -39,6 +39,7 @@ import org.jagatoo.loaders.textures.AbstractTextureImage;
 import org.jagatoo.loaders.textures.TextureFactory;
 import org.jagatoo.loaders.textures.formats.TextureImageFormatLoader;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 import org.jagatoo.util.image.ImageUtility;
 
 /**
@@ -46,8 +47,10 @@ import org.jagatoo.util.image.ImageUtility;
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader
+public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader, TextureFormatSignature
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( TextureImageFormatLoaderGIF.class );
+    
     private static final int HEADER_FORMAT_INVALID = 0;
     private static final int HEADER_FORMAT_GIF87a = 1;
     private static final int HEADER_FORMAT_GIF89a = 2;
@@ -152,7 +155,7 @@ public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader
                     if ( ( in.read() & 0x01 ) == 0x01 )
                     {
                         in.skip( 2 );
-                        JAGTLog.debug( "Found transparent GIF" );
+                        LOG.debug( "Found transparent GIF" );
                         transparentColorIndex = ( in.read() & 0xFF );
                         len = in.read(); // len = 0, block terminator!
                     }
@@ -477,6 +480,20 @@ public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader
         }
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        // GIF87a = 71, 73, 70, 56, 55, 97
+        // GIF89a = 71, 73, 70, 56, 57, 97
+        
+        if ( length < 6 )
+            return ( false );
+        
+        return ( ( header[0] == (byte)71 ) && ( header[1] == (byte)73 ) && ( header[2] == (byte)70 ) && ( header[3] == (byte)56 ) && ( ( header[4] == (byte)55 ) || ( header[4] == (byte)57 ) ) && ( header[5] == (byte)97 ) );
+    }
+    
     public AbstractTextureImage loadTextureImage( BufferedInputStream in, boolean acceptAlpha, boolean flipVertically, boolean allowStreching, TextureFactory texFactory ) throws IOException
     {
         final int headerFormat = checkFormatHeader( in );
@@ -500,7 +517,7 @@ public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader
             bitsPerPixel = ( flags & 0x07 ) + 1;
             colorsUsed = ( 1 << bitsPerPixel );
             
-            JAGTLog.debug( "GIF has global color palette with ", colorsUsed, " colors" );
+            LOG.debug( "GIF has global color palette with ", colorsUsed, " colors" );
             
             // bits of color resolution, insignificant 
             //int bitsPerColor = ( ( flags & 0x70 ) >> 4 ) + 1;
@@ -533,7 +550,7 @@ public class TextureImageFormatLoaderGIF implements TextureImageFormatLoader
             bitsPerPixel = ( flags2 & 0x07 ) + 1;
             colorsUsed = ( 1 << bitsPerPixel );
             
-            JAGTLog.debug( "GIF has local color palette with ", colorsUsed, " colors" );
+            LOG.debug( "GIF has local color palette with ", colorsUsed, " colors" );
             
             localColorPalette = readColorPalette( in, colorsUsed );
             colorPalette = localColorPalette;
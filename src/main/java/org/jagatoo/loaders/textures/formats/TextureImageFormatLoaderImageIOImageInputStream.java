@@ -53,7 +53,7 @@ import org.jagatoo.util.image.ImageUtility;
  * @author Matthias Mann
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderImageIOImageInputStream implements TextureImageFormatLoader
+public class TextureImageFormatLoaderImageIOImageInputStream implements TextureImageFormatLoader, TextureFormatSignature
 {
     private static SharedBufferedImage loadFromStream( InputStream in, boolean acceptAlpha ) throws IOException
     {
@@ -239,6 +239,26 @@ public class TextureImageFormatLoaderImageIOImageInputStream implements TextureI
         return ( ti );
     }
     
+    /**
+     * Only PNG and JPEG are recognized, which are the formats usually not
+     * handled by any of the other standard format-loaders.
+     */
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        if ( length < 4 )
+            return ( false );
+        
+        // PNG: 0x89, 'P', 'N', 'G'
+        if ( ( header[0] == (byte)0x89 ) && ( header[1] == (byte)'P' ) && ( header[2] == (byte)'N' ) && ( header[3] == (byte)'G' ) )
+            return ( true );
+        
+        // JPEG: SOI marker followed by any other marker
+        if ( ( header[0] == (byte)0xFF ) && ( header[1] == (byte)0xD8 ) && ( header[2] == (byte)0xFF ) )
+            return ( true );
+        
+        return ( false );
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -42,7 +42,7 @@ import org.jagatoo.util.streams.StreamUtils;
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderPCX implements TextureImageFormatLoader
+public class TextureImageFormatLoaderPCX implements TextureImageFormatLoader, TextureFormatSignature
 {
     /**
      * The header data block
@@ -209,6 +209,14 @@ public class TextureImageFormatLoaderPCX implements TextureImageFormatLoader
         }
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        return ( ( length >= 4 ) && PCXHeader.checkFirstFourBytes( header ) );
+    }
+    
     /**
      * {@inheritDoc}
      */
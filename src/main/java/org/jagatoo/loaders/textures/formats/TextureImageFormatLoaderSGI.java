@@ -16,7 +16,7 @@ import org.jagatoo.util.streams.StreamUtils;
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderSGI implements TextureImageFormatLoader
+public class TextureImageFormatLoaderSGI implements TextureImageFormatLoader, TextureFormatSignature
 {
     public static final int HEADER_SIZE = 512;
     public static final short MAGIC_NUMBER = 474;
@@ -83,6 +83,12 @@ public class TextureImageFormatLoaderSGI implements TextureImageFormatLoader
         }
     }
     
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        // big endian MAGIC_NUMBER
+        return ( ( length >= 2 ) && ( ( ( ( header[0] & 0xFF ) << 8 ) | ( header[1] & 0xFF ) ) == MAGIC_NUMBER ) );
+    }
+    
     public AbstractTextureImage loadTextureImage( BufferedInputStream in, boolean acceptAlpha, boolean flipVertically, boolean allowStreching, TextureFactory texFactory ) throws IOException
     {
         if ( in.available() < HEADER_SIZE ) // check header size.
@@ -45,7 +45,7 @@ import org.jagatoo.util.streams.StreamUtils;
  * 
  * @author Marvin Froehlich (aka Qudus)
  */
-public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
+public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader, TextureFormatSignature
 {
     private static final int HEADER_SIZE = 18;
     
@@ -79,13 +79,27 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
     {
         readBuffer( in, header );
         
-        boolean hasPalette = false;
-        int result = HEADER_INVALID;
+        final int result = checkFormatHeader( header, true );
         
         /*
          * 0: Length of Image-ID (usually 0)
+         * 
+         * If 'imgIDSize' is non-zero, we need to read the image-ID.
          */
         int imgIDSize = getUnsignedByte( header, 0 );
+        if ( ( result != HEADER_INVALID ) && ( imgIDSize != 0 ) )
+        {
+            // We don't need the image-ID. So we simply skip it.
+            StreamUtils.skipBytes( in, imgIDSize );
+        }
+        
+        return ( result );
+    }
+    
+    private static final int checkFormatHeader( byte[] header, boolean verbose )
+    {
+        boolean hasPalette = false;
+        int result = HEADER_INVALID;
         
         /*
          * 1: boolean for palette
@@ -117,7 +131,8 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
             case 1:
                 hasPalette = true;
                 result = HEADER_UNCOMPRESSED;
-                System.err.println( "Indexed TGA is not yet supported!" );
+                if ( verbose )
+                    System.err.println( "Indexed TGA is not yet supported!" );
                 return ( HEADER_INVALID );
             case 2:
                 result = HEADER_UNCOMPRESSED;
@@ -128,7 +143,8 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
             case 9:
                 hasPalette = true;
                 result = HEADER_COMPRESSED;
-                System.err.println( "Indexed TGA is not yet supported!" );
+                if ( verbose )
+                    System.err.println( "Indexed TGA is not yet supported!" );
                 return ( HEADER_INVALID );
             case 10:
                 result = HEADER_COMPRESSED;
@@ -222,7 +238,8 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
             case 8:
             case 15:
             case 16:
-                System.err.println( "TGAs with non RGB or RGBA pixels are not yet supported." );
+                if ( verbose )
+                    System.err.println( "TGAs with non RGB or RGBA pixels are not yet supported." );
                 return ( HEADER_INVALID );
             case 24:
             case 32:
@@ -235,15 +252,6 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
          * 17: attributes
          */
         
-        /*
-         * If 'imgIDSize' is non-zero, we need to read the image-ID.
-         */
-        if ( imgIDSize != 0 )
-        {
-            // We don't need the image-ID. So we simply skip it.
-            StreamUtils.skipBytes( in, imgIDSize );
-        }
-        
         return ( result );
     }
     
@@ -577,6 +585,17 @@ public class TextureImageFormatLoaderTGA implements TextureImageFormatLoader
         return ( image );
     }
     
+    /**
+     * TGA files don't have a magic number. So the complete header is validated.
+     */
+    public boolean matchesSignature( byte[] header, int length )
+    {
+        if ( length < HEADER_SIZE )
+            return ( false );
+        
+        return ( checkFormatHeader( header, false ) != HEADER_INVALID );
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -51,13 +51,18 @@
  */
 package org.jagatoo.logging;
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 
 /**
  * This class implements the LogInterface and adds support for
- * writing logs to files.  The filename is specified in the constructor.
+ * writing logs to files.  The filename is specified in the constructor.<br>
+ * <br>
+ * By default every line is flushed to the file immediately. While the
+ * {@link LogManager} is asynchronous, auto flushing is suspended, since
+ * the writer thread flushes the logs after each batch.
  * 
  * @author David Yazel
  * @author Marvin Froehlich (aka Qudus)
@@ -68,6 +73,8 @@ public class FileLog implements LogInterface
     private int channelFilter;
     private final FileOutputStream out;
     private final PrintStream prn;
+    private boolean autoFlush = true;
+    private volatile boolean flushDeferred = false;
     
     public final void setLogLevel( int logLevel )
     {
@@ -89,6 +96,34 @@ public class FileLog implements LogInterface
         return ( channelFilter );
     }
     
+    /**
+     * Sets whether each line is flushed to the file immediately.
+     * 
+     * @param autoFlush
+     */
+    public final void setAutoFlush( boolean autoFlush )
+    {
+        this.autoFlush = autoFlush;
+    }
+    
+    /**
+     * @return whether each line is flushed to the file immediately.
+     */
+    public final boolean isAutoFlush()
+    {
+        return ( autoFlush );
+    }
+    
+    /**
+     * Called by the {@link LogManager}, when it switches the asynchronous mode.
+     * 
+     * @param deferred
+     */
+    final void setFlushDeferred( boolean deferred )
+    {
+        this.flushDeferred = deferred;
+    }
+    
     public final boolean acceptsChannel( LogChannel channel )
     {
         return ( ( channelFilter & channel.getID() ) > 0 );
@@ -102,6 +137,9 @@ public class FileLog implements LogInterface
         if ( ( acceptsChannel( channel ) ) && ( logLevel <= this.logLevel ) )
         {
             prn.print( message );
+            
+            if ( autoFlush && !flushDeferred )
+                prn.flush();
         }
     }
     
@@ -113,6 +151,9 @@ public class FileLog implements LogInterface
         if ( ( acceptsChannel( channel ) ) && ( logLevel <= this.logLevel ) )
         {
             prn.println( message );
+            
+            if ( autoFlush && !flushDeferred )
+                prn.flush();
         }
     }
     
@@ -131,8 +172,8 @@ public class FileLog implements LogInterface
     {
         try
         {
-            out.close();
             prn.close();
+            out.close();
         }
         catch (Exception e)
         {
@@ -145,7 +186,7 @@ public class FileLog implements LogInterface
         this.channelFilter = channelFilter;
         
         this.out = new FileOutputStream( filename );
-        this.prn = new PrintStream( out, true );
+        this.prn = new PrintStream( new BufferedOutputStream( out, 16384 ), false );
     }
     
     public FileLog( int logLevel, String filename ) throws FileNotFoundException
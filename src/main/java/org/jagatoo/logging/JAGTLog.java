@@ -82,6 +82,19 @@ public final class JAGTLog
         return ( Log.getLogManager() );
     }
     
+    /**
+     * Creates a {@link LogHandle} on the JAGaToo channel for the given class' package.
+     * JAGaToo classes keep one in a static field for their debug and profile outputs.
+     * 
+     * @param clazz
+     * 
+     * @return the new LogHandle.
+     */
+    public static final LogHandle getHandle( Class<?> clazz )
+    {
+        return ( Log.getHandle( LOG_CHANNEL, clazz ) );
+    }
+    
     /**
      * Sets the String to be prefixed to the actualy logging output n times.
      * 
@@ -207,7 +220,9 @@ public final class JAGTLog
     }
     
     /**
-     * This is an alias for println( channel, DEBUG, message ).
+     * This is an alias for println( channel, DEBUG, message ).<br>
+     * The caller's package is found through a stack trace, if debugging is
+     * restricted to certain packages. Prefer a {@link LogHandle} (see {@link #getHandle(Class)}).
      * 
      * @param message
      */
@@ -217,7 +232,9 @@ public final class JAGTLog
     }
     
     /**
-     * This is an alias for println( channel, PROFILE, message ).
+     * This is an alias for println( channel, PROFILE, message ).<br>
+     * The caller's package is found through a stack trace, if debugging is
+     * restricted to certain packages. Prefer a {@link LogHandle} (see {@link #getHandle(Class)}).
      * 
      * @param message
      */
@@ -80,6 +80,21 @@ public final class Log
         return ( logMgr );
     }
     
+    /**
+     * Creates a {@link LogHandle}, that writes to the given channel on behalf
+     * of the given class' package. Its debug and profile calls are much cheaper
+     * than the static ones, when a debugging package filter is in use.
+     * 
+     * @param channel
+     * @param clazz
+     * 
+     * @return the new LogHandle.
+     */
+    public static final LogHandle getHandle( LogChannel channel, Class<?> clazz )
+    {
+        return ( logMgr.getHandle( channel, clazz ) );
+    }
+    
     /**
      * Sets the String to be prefixed to the actualy logging output n times.
      * 
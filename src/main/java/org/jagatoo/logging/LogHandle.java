@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+/**
+ * A LogHandle writes to one {@link LogChannel} on behalf of one package.<br>
+ * Whether debug and profile output is wanted from this package (see
+ * {@link LogManager#addDebuggingPackage(String)}) is resolved, when the
+ * handle is created and again, whenever the filter or the registered
+ * {@link LogInterface}s change. So a disabled debug call costs a single
+ * field read and the caller's package never has to be found through a
+ * stack trace.<br>
+ * <br>
+ * Handles are meant to be kept in static fields:
+ * <pre>
+ * private static final LogHandle LOG = Log.getHandle( MY_CHANNEL, MyClass.class );
+ * </pre>
+ * The fixed-arity variants of {@link #debug(Object)} and {@link #profile(Object)}
+ * don't create the message array, if the output is disabled.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class LogHandle
+{
+    private final LogManager logMgr;
+    private final LogChannel channel;
+    private final String packageName;
+    
+    private volatile boolean debugEnabled = false;
+    private volatile boolean profileEnabled = false;
+    
+    public final LogChannel getChannel()
+    {
+        return ( channel );
+    }
+    
+    /**
+     * @return the package name, this handle is bound to.
+     */
+    public final String getPackageName()
+    {
+        return ( packageName );
+    }
+    
+    /**
+     * Called by the {@link LogManager}, when the filter or the registered logs have changed.
+     */
+    final void refresh()
+    {
+        this.debugEnabled = logMgr.isDebuggingEnabled( channel, LogLevel.DEBUG, packageName );
+        this.profileEnabled = logMgr.isDebuggingEnabled( channel, LogLevel.PROFILE, packageName );
+    }
+    
+    /**
+     * @return whether {@link #debug(Object...)} outputs are currently written anywhere.
+     */
+    public final boolean isDebugEnabled()
+    {
+        return ( debugEnabled );
+    }
+    
+    /**
+     * @return whether {@link #profile(Object...)} outputs are currently written anywhere.
+     */
+    public final boolean isProfileEnabled()
+    {
+        return ( profileEnabled );
+    }
+    
+    public final void print( int logLevel, Object... message )
+    {
+        Log.print( channel, logLevel, message );
+    }
+    
+    public final void println( int logLevel, Object... message )
+    {
+        Log.println( channel, logLevel, message );
+    }
+    
+    public final void print( Throwable exception )
+    {
+        Log.print( channel, exception );
+    }
+    
+    public final void println( Object... message )
+    {
+        Log.println( channel, message );
+    }
+    
+    public final void printlnEx( Object... message )
+    {
+        Log.printlnEx( channel, message );
+    }
+    
+    public final void error( Object... message )
+    {
+        Log.error( channel, message );
+    }
+    
+    public final void exception( Object... message )
+    {
+        Log.exception( channel, message );
+    }
+    
+    public final void debug( Object message0 )
+    {
+        if ( debugEnabled )
+            logMgr.println( channel, LogLevel.DEBUG, new Object[] { message0 }, false );
+    }
+    
+    public final void debug( Object message0, Object message1 )
+    {
+        if ( debugEnabled )
+            logMgr.println( channel, LogLevel.DEBUG, new Object[] { message0, message1 }, false );
+    }
+    
+    public final void debug( Object message0, Object message1, Object message2 )
+    {
+        if ( debugEnabled )
+            logMgr.println( channel, LogLevel.DEBUG, new Object[] { message0, message1, message2 }, false );
+    }
+    
+    public final void debug( Object... message )
+    {
+        if ( debugEnabled )
+            logMgr.println( channel, LogLevel.DEBUG, message, false );
+    }
+    
+    public final void profile( Object message0 )
+    {
+        if ( profileEnabled )
+            logMgr.println( channel, LogLevel.PROFILE, new Object[] { message0 }, false );
+    }
+    
+    public final void profile( Object message0, Object message1 )
+    {
+        if ( profileEnabled )
+            logMgr.println( channel, LogLevel.PROFILE, new Object[] { message0, message1 }, false );
+    }
+    
+    public final void profile( Object message0, Object message1, Object message2 )
+    {
+        if ( profileEnabled )
+            logMgr.println( channel, LogLevel.PROFILE, new Object[] { message0, message1, message2 }, false );
+    }
+    
+    public final void profile( Object... message )
+    {
+        if ( profileEnabled )
+            logMgr.println( channel, LogLevel.PROFILE, message, false );
+    }
+    
+    LogHandle( LogManager logMgr, LogChannel channel, String packageName )
+    {
+        this.logMgr = logMgr;
+        this.channel = channel;
+        this.packageName = packageName;
+    }
+}
@@ -66,8 +66,13 @@ package org.jagatoo.logging;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This object manages multiple logs.  This provides a single point
@@ -75,7 +80,14 @@ import java.util.HashSet;
  * to be handled centrally.  Multiple LogInterface objects are registered
  * with the logger.  The LogManager will step through them when a logging
  * message comes in and give each LogInterface an opportunity to consume
- * the log message.
+ * the log message.<br>
+ * <br>
+ * In asynchronous mode (see {@link #setAsynchronous(boolean)}) the calling
+ * thread only publishes the message into a preallocated ring buffer. A
+ * single writer thread composes the messages and passes them to the
+ * LogInterfaces in batches, flushing them once per batch. The message
+ * elements are converted to Strings on the writer thread. So mutable
+ * objects should not be modified after they have been logged.
  * 
  * @author David Yazel
  * @author Marvin Froehlich (aka Qudus)
@@ -127,7 +139,7 @@ public class LogManager
                 
                 if ( ch == 13 )
                 {
-                    internalPrint( channel, type, new String[] { sb.toString() }, true );
+                    internalPrint( channel, type, new String[] { sb.toString() }, true, false );
                     sb.setLength( 0 );
                 }
                 else if ( ch >= 32 )
@@ -139,18 +151,50 @@ public class LogManager
     }
     
     private final ArrayList<LogInterface> logs;
-    private int minRegisteredLogLevel = -Integer.MAX_VALUE;
-    private int registeredChannels = 0;
+    private volatile int numRegisteredLogs = 0;
+    private volatile int minRegisteredLogLevel = -Integer.MAX_VALUE;
+    private volatile int registeredChannels = 0;
     private long startTime;
     private boolean timestampsEnabled = false;
     private boolean channelsVisible = false;
     private boolean lastNewLine = true;
     private final HashSet<String> debugPackageFilter = new HashSet<String>();
+    private volatile Set<String> debugPackageSnapshot = Collections.emptySet();
+    private final ArrayList<WeakReference<LogHandle>> handles = new ArrayList<WeakReference<LogHandle>>();
+    
+    private static final String LOGGING_PACKAGE = LogManager.class.getPackage().getName();
     
     private String indentationString = "    ";
-    private int indentation = 0;
+    private volatile int indentation = 0;
     private final StringBuilder strBuff = new StringBuilder();
     
+    public static final int DEFAULT_ASYNC_BUFFER_SIZE = 8192;
+    private static final int MAX_BATCH_SIZE = 256;
+    
+    private int asyncBufferSize = DEFAULT_ASYNC_BUFFER_SIZE;
+    private LogOverflowPolicy overflowPolicy = LogOverflowPolicy.BLOCK;
+    private volatile LogRingBuffer ringBuffer = null;
+    private volatile Thread writerThread = null;
+    private final Object asyncSwitchLock = new Object();
+    private final AtomicLong droppedMessages = new AtomicLong( 0L );
+    private final AtomicLong blockedPublishes = new AtomicLong( 0L );
+    private final AtomicLong failedWrites = new AtomicLong( 0L );
+    
+    private final LogRingBuffer.Consumer asyncConsumer = new LogRingBuffer.Consumer()
+    {
+        public void consume( LogChannel channel, int logLevel, Object[] message, boolean appendNL, int indentation, long timestamp )
+        {
+            try
+            {
+                write( channel, logLevel, message, appendNL, indentation, timestamp );
+            }
+            catch ( Throwable t )
+            {
+                onWriteFailed( t );
+            }
+        }
+    };
+    
     private static LogManager instance = null;
     
     /**
@@ -209,24 +253,331 @@ public class LogManager
         return ( channelsVisible );
     }
     
-    public final void addDebuggingPackage( String pkg )
+    /**
+     * Restricts debug and profile output to the given package (and any
+     * other package added this way).<br>
+     * Calls through the static {@link Log} methods have to find their
+     * caller's package through a stack trace, when this filter is in use.
+     * Calls through a {@link LogHandle} are resolved at once.
+     * 
+     * @param pkg
+     */
+    public final synchronized void addDebuggingPackage( String pkg )
     {
         debugPackageFilter.add( pkg );
+        
+        refreshDebugPackageSnapshot();
+        refreshHandles();
     }
     
-    public final void removeDebuggingPackage( String pkg )
+    public final synchronized void removeDebuggingPackage( String pkg )
     {
         debugPackageFilter.remove( pkg );
+        
+        refreshDebugPackageSnapshot();
+        refreshHandles();
     }
     
+    /**
+     * If the returned set is modified directly, {@link #refreshLogInterfaces()}
+     * must be called afterwards.
+     * 
+     * @return the set of packages, debug output is restricted to.
+     */
     public final HashSet<String> getDebuggingPackageFiler()
     {
         return ( debugPackageFilter );
     }
     
-    private String getTimeString()
+    /**
+     * Sets the number of messages, the asynchronous ring buffer can hold.
+     * This takes effect, when the asynchronous mode is (re)enabled.
+     * 
+     * @param size must be a power of two
+     */
+    public final void setAsyncBufferSize( int size )
+    {
+        if ( ( size < 2 ) || ( ( size & ( size - 1 ) ) != 0 ) )
+            throw new IllegalArgumentException( "The size must be a power of two." );
+        
+        this.asyncBufferSize = size;
+    }
+    
+    /**
+     * @return the number of messages, the asynchronous ring buffer can hold.
+     */
+    public final int getAsyncBufferSize()
+    {
+        return ( asyncBufferSize );
+    }
+    
+    /**
+     * Sets, what happens to a message, when the asynchronous ring buffer is full.
+     * 
+     * @param policy
+     */
+    public final void setOverflowPolicy( LogOverflowPolicy policy )
+    {
+        if ( policy == null )
+            throw new IllegalArgumentException( "policy must not be null." );
+        
+        this.overflowPolicy = policy;
+    }
+    
+    /**
+     * @return what happens to a message, when the asynchronous ring buffer is full.
+     */
+    public final LogOverflowPolicy getOverflowPolicy()
+    {
+        return ( overflowPolicy );
+    }
+    
+    /**
+     * @return the number of messages dropped because of a full ring buffer.
+     */
+    public final long getDroppedMessagesCount()
+    {
+        final LogRingBuffer rb = ringBuffer;
+        
+        return ( droppedMessages.get() + ( ( rb == null ) ? 0L : rb.getDroppedMessagesCount() ) );
+    }
+    
+    /**
+     * @return the number of messages, that could not be written by the writer thread,
+     * because a {@link LogInterface} or a message element has thrown an exception.
+     */
+    public final long getFailedWritesCount()
+    {
+        return ( failedWrites.get() );
+    }
+    
+    /**
+     * The writer thread must survive a failing {@link LogInterface} or toString().
+     * Only the first failure is reported, since the logs may be the reason.
+     */
+    private void onWriteFailed( Throwable t )
+    {
+        if ( failedWrites.getAndIncrement() == 0L )
+        {
+            System.err.println( "LogWriter: A log message could not be written. Further failures are only counted." );
+            t.printStackTrace();
+        }
+    }
+    
+    /**
+     * @return the number of times a caller had to wait for a full ring buffer.
+     */
+    public final long getBlockedPublishesCount()
+    {
+        final LogRingBuffer rb = ringBuffer;
+        
+        return ( blockedPublishes.get() + ( ( rb == null ) ? 0L : rb.getBlockedPublishesCount() ) );
+    }
+    
+    /**
+     * @return the number of messages waiting for the writer thread.
+     */
+    public final int getPendingMessagesCount()
+    {
+        final LogRingBuffer rb = ringBuffer;
+        
+        if ( rb == null )
+            return ( 0 );
+        
+        return ( (int)( rb.getTailSequence() - rb.getHeadSequence() ) );
+    }
+    
+    private void runWriter( LogRingBuffer rb )
+    {
+        boolean finished = false;
+        
+        try
+        {
+            while ( ringBuffer == rb )
+            {
+                drainBatches( rb );
+                
+                rb.await( 100000000L );
+            }
+            
+            // write, what has been published until the switch
+            drainBatches( rb );
+            
+            finished = true;
+        }
+        finally
+        {
+            if ( !finished )
+                abandonRingBuffer( rb );
+        }
+    }
+    
+    /**
+     * Falls back to the synchronous mode, if the writer thread dies unexpectedly.
+     * Otherwise the publishers would wait for free space forever.
+     */
+    private void abandonRingBuffer( LogRingBuffer rb )
+    {
+        synchronized ( this )
+        {
+            if ( ringBuffer != rb )
+                return;
+            
+            this.ringBuffer = null;
+            this.writerThread = null;
+        }
+        
+        rb.close();
+        
+        droppedMessages.addAndGet( rb.getDroppedMessagesCount() );
+        blockedPublishes.addAndGet( rb.getBlockedPublishesCount() );
+        
+        try
+        {
+            drainRemaining( rb );
+            updateFileLogFlushing();
+        }
+        catch ( Throwable t )
+        {
+            onWriteFailed( t );
+        }
+    }
+    
+    private void drainBatches( LogRingBuffer rb )
+    {
+        while ( !rb.isEmpty() )
+        {
+            final int n;
+            synchronized ( this )
+            {
+                n = rb.drain( asyncConsumer, MAX_BATCH_SIZE );
+                
+                if ( n > 0 )
+                {
+                    try
+                    {
+                        flushLogs();
+                    }
+                    catch ( Throwable t )
+                    {
+                        onWriteFailed( t );
+                    }
+                }
+            }
+            
+            if ( n == 0 )
+                Thread.yield(); // a message has been claimed, but not yet published
+        }
+    }
+    
+    /**
+     * Writes the messages left in a ring buffer, that is not used anymore.
+     * A message, that has been claimed, but not yet published, is written
+     * by its publisher (see {@link #internalPrint(LogChannel, int, Object[], boolean, boolean)}).
+     */
+    private synchronized void drainRemaining( LogRingBuffer rb )
+    {
+        while ( rb.drain( asyncConsumer, MAX_BATCH_SIZE ) > 0 )
+        {
+        }
+        
+        flushLogs();
+    }
+    
+    /**
+     * Enables or disables the asynchronous mode.<br>
+     * When disabled, all pending messages are written, before this method returns.
+     * 
+     * @param async
+     */
+    public final void setAsynchronous( boolean async )
+    {
+        // A separate lock, since the writer thread needs the monitor of this while it is joined.
+        synchronized ( asyncSwitchLock )
+        {
+            if ( async == isAsynchronous() )
+                return;
+            
+            if ( async )
+            {
+                final LogRingBuffer rb = new LogRingBuffer( asyncBufferSize );
+                
+                Thread thread = new Thread( "LogWriter" )
+                {
+                    @Override
+                    public void run()
+                    {
+                        runWriter( rb );
+                    }
+                };
+                thread.setDaemon( true );
+                thread.setPriority( Thread.NORM_PRIORITY - 1 );
+                
+                rb.setConsumer( thread );
+                
+                synchronized ( this )
+                {
+                    this.writerThread = thread;
+                    this.ringBuffer = rb;
+                }
+                
+                thread.start();
+                
+                updateFileLogFlushing();
+            }
+            else
+            {
+                final LogRingBuffer rb;
+                final Thread thread;
+                
+                synchronized ( this )
+                {
+                    rb = ringBuffer;
+                    thread = writerThread;
+                    
+                    // The writer thread may have given up meanwhile.
+                    if ( rb == null )
+                        return;
+                    
+                    this.ringBuffer = null;
+                    this.writerThread = null;
+                }
+                
+                rb.close();
+                LockSupport.unpark( thread );
+                
+                if ( thread != Thread.currentThread() )
+                {
+                    try
+                    {
+                        thread.join();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                
+                drainRemaining( rb );
+                updateFileLogFlushing();
+                
+                droppedMessages.addAndGet( rb.getDroppedMessagesCount() );
+                blockedPublishes.addAndGet( rb.getBlockedPublishesCount() );
+            }
+        }
+    }
+    
+    /**
+     * @return whether the asynchronous mode is enabled.
+     */
+    public final boolean isAsynchronous()
+    {
+        return ( ringBuffer != null );
+    }
+    
+    private String getTimeString( long timestamp )
     {
-        final long delta = System.currentTimeMillis() - startTime;
+        final long delta = timestamp - startTime;
         
         return ( LogFormatter.formatTime( delta ) );
     }
@@ -240,20 +591,117 @@ public class LogManager
         return ( LogFormatter.formatMemory( mem - free ) + "/" + LogFormatter.formatMemory( mem ) );
     }
     
+    /**
+     * Checks, if debug or profile output from the given package would be written anywhere.
+     * 
+     * @param channel
+     * @param logLevel
+     * @param packageName
+     */
+    final boolean isDebuggingEnabled( LogChannel channel, int logLevel, String packageName )
+    {
+        if ( !isAnyLogInterfaceRegistered( channel, logLevel ) )
+            return ( false );
+        
+        final Set<String> filter = debugPackageSnapshot;
+        
+        return ( filter.isEmpty() || filter.contains( packageName ) );
+    }
+    
+    /**
+     * Copies the debug package filter for the unsynchronized readers.
+     */
+    private void refreshDebugPackageSnapshot()
+    {
+        if ( debugPackageFilter.isEmpty() )
+            debugPackageSnapshot = Collections.emptySet();
+        else
+            debugPackageSnapshot = Collections.unmodifiableSet( new HashSet<String>( debugPackageFilter ) );
+    }
+    
+    private void refreshHandles()
+    {
+        for ( int i = handles.size() - 1; i >= 0; i-- )
+        {
+            final LogHandle handle = handles.get( i ).get();
+            
+            if ( handle == null )
+                handles.remove( i );
+            else
+                handle.refresh();
+        }
+    }
+    
+    /**
+     * Creates a {@link LogHandle}, that writes to the given channel on behalf of the given package.
+     * 
+     * @param channel
+     * @param packageName
+     * 
+     * @return the new LogHandle.
+     */
+    public final synchronized LogHandle getHandle( LogChannel channel, String packageName )
+    {
+        final LogHandle handle = new LogHandle( this, channel, packageName );
+        handle.refresh();
+        
+        handles.add( new WeakReference<LogHandle>( handle ) );
+        
+        return ( handle );
+    }
+    
+    /**
+     * Creates a {@link LogHandle}, that writes to the given channel on behalf of the given class' package.
+     * 
+     * @param channel
+     * @param clazz
+     * 
+     * @return the new LogHandle.
+     */
+    public final LogHandle getHandle( LogChannel channel, Class<?> clazz )
+    {
+        final String className = clazz.getName();
+        final int lastDot = className.lastIndexOf( '.' );
+        
+        return ( getHandle( channel, ( lastDot >= 0 ) ? className.substring( 0, lastDot ) : "" ) );
+    }
+    
     /**
      * Must be called, if the logLevel of a registeredLogInterface has been changed.
      */
-    public final void refreshLogInterfaces()
+    public final synchronized void refreshLogInterfaces()
     {
-        minRegisteredLogLevel = -Integer.MAX_VALUE;
-        registeredChannels = 0;
+        int minLogLevel = -Integer.MAX_VALUE;
+        int channels = 0;
         
         for ( int i = 0; i < logs.size(); i++ )
         {
             final LogInterface log = logs.get( i );
             
-            minRegisteredLogLevel = Math.max( minRegisteredLogLevel, log.getLogLevel() );
-            registeredChannels |= log.getChannelFilter();
+            minLogLevel = Math.max( minLogLevel, log.getLogLevel() );
+            channels |= log.getChannelFilter();
+        }
+        
+        this.minRegisteredLogLevel = minLogLevel;
+        this.registeredChannels = channels;
+        this.numRegisteredLogs = logs.size();
+        
+        refreshDebugPackageSnapshot();
+        refreshHandles();
+        updateFileLogFlushing();
+    }
+    
+    /**
+     * {@link FileLog}s don't flush each line, while the writer thread flushes them after each batch.
+     */
+    private synchronized void updateFileLogFlushing()
+    {
+        final boolean deferred = ( ringBuffer != null );
+        
+        for ( int i = 0; i < logs.size(); i++ )
+        {
+            if ( logs.get( i ) instanceof FileLog )
+                ( (FileLog)logs.get( i ) ).setFlushDeferred( deferred );
         }
     }
     
@@ -262,7 +710,7 @@ public class LogManager
      * LogInterface. Every log so registered will get a copy of every
      * log message, along with its mask.
      */
-    public final void registerLog( LogInterface log )
+    public final synchronized void registerLog( LogInterface log )
     {
         logs.add( log );
         
@@ -274,16 +722,19 @@ public class LogManager
      * LogInterface. Every log so deregistered won't get a copy of every
      * log message anymore.
      */
-    public final void deregisterLog( LogInterface log )
+    public final synchronized void deregisterLog( LogInterface log )
     {
         logs.remove( log );
         
+        if ( log instanceof FileLog )
+            ( (FileLog)log ).setFlushDeferred( false );
+        
         refreshLogInterfaces();
     }
     
     public final boolean isAnyLogInterfaceRegistered( LogChannel channel, int logLevel )
     {
-        if ( logs.size() == 0 )
+        if ( numRegisteredLogs == 0 )
             return ( false );
         
         if ( minRegisteredLogLevel < logLevel )
@@ -302,7 +753,7 @@ public class LogManager
         String callerClass = null;
         for ( int i = 3; i < stes.length; i++ )
         {
-            if ( !stes[ i ].getClassName().startsWith( LogManager.class.getPackage().getName() ) )
+            if ( !stes[ i ].getClassName().startsWith( LOGGING_PACKAGE ) )
             {
                 callerClass = stes[ i ].getClassName();
                 break;
@@ -322,7 +773,7 @@ public class LogManager
         return ( callerPackage );
     }
     
-    private final String composeMessage( String prefix1, String prefix2, Object[] message )
+    private final String composeMessage( String prefix1, String prefix2, Object[] message, int indentation )
     {
         strBuff.setLength( 0 );
         for ( int i = 0; i < indentation; i++ )
@@ -345,7 +796,7 @@ public class LogManager
             return ( strBuff.toString() );
     }
     
-    private final synchronized void internalPrint( LogChannel channel, int logLevel, Object[] message, boolean appendNL )
+    private final void internalPrint( LogChannel channel, int logLevel, Object[] message, boolean appendNL, boolean checkCallerPackage )
     {
         if ( ( message == null ) || ( message.length == 0 ) )
             return;
@@ -353,16 +804,43 @@ public class LogManager
         if ( !isAnyLogInterfaceRegistered( channel, logLevel ) )
             return;
         
-        if ( logLevel >= LogLevel.DEBUG )
+        if ( checkCallerPackage && ( logLevel >= LogLevel.DEBUG ) )
         {
-            if ( !debugPackageFilter.isEmpty() )
+            final Set<String> filter = debugPackageSnapshot;
+            if ( !filter.isEmpty() )
             {
                 final String callerPackage = getCallerPackage();
-                if ( !debugPackageFilter.contains( callerPackage  ) )
+                if ( !filter.contains( callerPackage  ) )
                     return;
             }
         }
         
+        final int indentation = this.indentation;
+        
+        final LogRingBuffer rb = ringBuffer;
+        if ( rb != null )
+        {
+            if ( rb.publish( channel, logLevel, message, appendNL, indentation, System.currentTimeMillis(), overflowPolicy ) )
+            {
+                if ( ringBuffer != rb )
+                {
+                    // The asynchronous mode has been disabled meanwhile. So the writer thread may have missed this message.
+                    drainRemaining( rb );
+                }
+            }
+            else if ( rb.isClosed() )
+            {
+                write( channel, logLevel, message, appendNL, indentation, System.currentTimeMillis() );
+            }
+        }
+        else
+        {
+            write( channel, logLevel, message, appendNL, indentation, System.currentTimeMillis() );
+        }
+    }
+    
+    private final synchronized void write( LogChannel channel, int logLevel, Object[] message, boolean appendNL, int indentation, long timestamp )
+    {
         final String prefix1;
         if ( lastNewLine && areChannelsVisible() )
         {
@@ -376,7 +854,7 @@ public class LogManager
         final String prefix2;
         if ( lastNewLine && isTimestampingEnabled() )
         {
-            prefix2 = "[" + getTimeString() + ", " + getMemory() + "] ";
+            prefix2 = "[" + getTimeString( timestamp ) + ", " + getMemory() + "] ";
         }
         else
         {
@@ -388,9 +866,9 @@ public class LogManager
             final LogInterface log = logs.get( i );
             
             if ( appendNL )
-                log.println( channel, logLevel, composeMessage( prefix1, prefix2, message ) );
+                log.println( channel, logLevel, composeMessage( prefix1, prefix2, message, indentation ) );
             else
-                log.print( channel, logLevel, composeMessage( prefix1, prefix2, message ) );
+                log.print( channel, logLevel, composeMessage( prefix1, prefix2, message, indentation ) );
         }
         
         this.lastNewLine = true;
@@ -403,9 +881,21 @@ public class LogManager
      * @param logLevel the logLevel of this message
      * @param message the string message to be printed to the log
      */
-    synchronized final void print( LogChannel channel, int logLevel, Object[] message )
+    final void print( LogChannel channel, int logLevel, Object[] message )
+    {
+        internalPrint( channel, logLevel, message, false, true );
+    }
+    
+    /**
+     * This method will call all the log objects to store the message,
+     * if they want to.
+     * 
+     * @param logLevel the logLevel of this message
+     * @param message the string message to be printed to the log
+     */
+    final void println( LogChannel channel, int logLevel, Object[] message )
     {
-        internalPrint( channel, logLevel, message, false );
+        internalPrint( channel, logLevel, message, true, true );
     }
     
     /**
@@ -414,10 +904,11 @@ public class LogManager
      * 
      * @param logLevel the logLevel of this message
      * @param message the string message to be printed to the log
+     * @param checkCallerPackage check debug output against the package filter? (false, if the caller already did)
      */
-    synchronized final void println( LogChannel channel, int logLevel, Object[] message )
+    final void println( LogChannel channel, int logLevel, Object[] message, boolean checkCallerPackage )
     {
-        internalPrint( channel, logLevel, message, true );
+        internalPrint( channel, logLevel, message, true, checkCallerPackage );
     }
     
     final void print( LogChannel channel, Throwable e )
@@ -435,9 +926,31 @@ public class LogManager
     
     /**
      * Steps through the logs and flushes all of them. Necessary since they
-     * could be implemented using files with buffers.
+     * could be implemented using files with buffers.<br>
+     * In asynchronous mode this waits, until the messages published so far
+     * have been written.
      */
     final void flush()
+    {
+        final LogRingBuffer rb = ringBuffer;
+        if ( ( rb != null ) && ( Thread.currentThread() != writerThread ) )
+        {
+            final long seq = rb.getTailSequence();
+            
+            while ( ( ringBuffer == rb ) && ( rb.getHeadSequence() < seq ) )
+            {
+                LockSupport.unpark( writerThread );
+                LockSupport.parkNanos( 100000L );
+            }
+        }
+        
+        synchronized ( this )
+        {
+            flushLogs();
+        }
+    }
+    
+    private final void flushLogs()
     {
         for ( int i = 0; i < logs.size(); i++ )
         {
@@ -447,10 +960,13 @@ public class LogManager
     
     /**
      * Steps through the logs and closes all of them. Necessary since they
-     * could be implemented using files with buffers.
+     * could be implemented using files with buffers.<br>
+     * The asynchronous mode is disabled first, so that all pending messages are written.
      */
     final void close()
     {
+        setAsynchronous( false );
+        
         for ( int i = 0; i < logs.size(); i++ )
         {
             logs.get( i ).close();
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded multi-producer, single-consumer ring buffer of log messages.<br>
+ * The slots are preallocated as parallel arrays. A producer claims a slot
+ * through a CAS on the tail sequence and publishes it through the slot's
+ * sequence number, so no lock is involved on the calling thread.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+final class LogRingBuffer
+{
+    private final int capacity;
+    private final int mask;
+    
+    private final AtomicLongArray sequences;
+    private final LogChannel[] channels;
+    private final int[] logLevels;
+    private final Object[][] messages;
+    private final boolean[] appendNLs;
+    private final int[] indentations;
+    private final long[] timestamps;
+    
+    private final AtomicLong tail = new AtomicLong( 0L );
+    private volatile long head = 0L;
+    
+    private final AtomicLong droppedMessages = new AtomicLong( 0L );
+    private final AtomicLong blockedPublishes = new AtomicLong( 0L );
+    
+    private volatile Thread consumer = null;
+    private volatile boolean consumerWaiting = false;
+    private volatile boolean closed = false;
+    
+    public final int getCapacity()
+    {
+        return ( capacity );
+    }
+    
+    public final long getDroppedMessagesCount()
+    {
+        return ( droppedMessages.get() );
+    }
+    
+    public final long getBlockedPublishesCount()
+    {
+        return ( blockedPublishes.get() );
+    }
+    
+    public final boolean isEmpty()
+    {
+        return ( head == tail.get() );
+    }
+    
+    /**
+     * @return the sequence number of the next message to be published.
+     */
+    public final long getTailSequence()
+    {
+        return ( tail.get() );
+    }
+    
+    /**
+     * @return the sequence number of the next message to be consumed.
+     */
+    public final long getHeadSequence()
+    {
+        return ( head );
+    }
+    
+    /**
+     * Marks this buffer as abandoned. Publishers, that wait for free space, give up then.
+     */
+    public final void close()
+    {
+        this.closed = true;
+    }
+    
+    /**
+     * @return whether {@link #close()} has been called.
+     */
+    public final boolean isClosed()
+    {
+        return ( closed );
+    }
+    
+    public final void setConsumer( Thread consumer )
+    {
+        this.consumer = consumer;
+    }
+    
+    /**
+     * Publishes a message.
+     * 
+     * @return false, if the message has been dropped.
+     */
+    public boolean publish( LogChannel channel, int logLevel, Object[] message, boolean appendNL, int indentation, long timestamp, LogOverflowPolicy policy )
+    {
+        boolean blocked = false;
+        
+        while ( true )
+        {
+            final long pos = tail.get();
+            final int index = (int)pos & mask;
+            final long seq = sequences.get( index );
+            
+            if ( seq == pos )
+            {
+                if ( tail.compareAndSet( pos, pos + 1L ) )
+                {
+                    channels[ index ] = channel;
+                    logLevels[ index ] = logLevel;
+                    messages[ index ] = message;
+                    appendNLs[ index ] = appendNL;
+                    indentations[ index ] = indentation;
+                    timestamps[ index ] = timestamp;
+                    
+                    // A full volatile write, so that a publisher, that checks the LogManager's
+                    // ring buffer afterwards, and the final drain cannot both miss the message.
+                    sequences.set( index, pos + 1L );
+                    
+                    if ( consumerWaiting )
+                        LockSupport.unpark( consumer );
+                    
+                    return ( true );
+                }
+            }
+            else if ( seq < pos )
+            {
+                // full
+                if ( closed )
+                {
+                    // not counted as dropped, the caller writes the message itself
+                    return ( false );
+                }
+                
+                if ( ( policy == LogOverflowPolicy.DROP ) || ( ( policy == LogOverflowPolicy.DROP_VERBOSE ) && ( logLevel > LogLevel.REGULAR ) ) || ( Thread.currentThread() == consumer ) )
+                {
+                    droppedMessages.incrementAndGet();
+                    
+                    return ( false );
+                }
+                
+                if ( !blocked )
+                {
+                    blocked = true;
+                    blockedPublishes.incrementAndGet();
+                }
+                
+                LockSupport.unpark( consumer );
+                LockSupport.parkNanos( 50000L );
+            }
+        }
+    }
+    
+    /**
+     * The callback for {@link LogRingBuffer#drain(Consumer, int)}.
+     */
+    static interface Consumer
+    {
+        public void consume( LogChannel channel, int logLevel, Object[] message, boolean appendNL, int indentation, long timestamp );
+    }
+    
+    /**
+     * Passes up to maxMessages published messages to the consumer.
+     * Must only be called from the consumer thread or, after the consumer
+     * thread has finished, under the same lock.
+     * 
+     * @return the number of consumed messages.
+     */
+    public int drain( Consumer consumer, int maxMessages )
+    {
+        int n = 0;
+        long pos = head;
+        
+        while ( n < maxMessages )
+        {
+            final int index = (int)pos & mask;
+            
+            if ( sequences.get( index ) != pos + 1L )
+                break;
+            
+            final Object[] message = messages[ index ];
+            messages[ index ] = null;
+            
+            try
+            {
+                consumer.consume( channels[ index ], logLevels[ index ], message, appendNLs[ index ], indentations[ index ], timestamps[ index ] );
+            }
+            finally
+            {
+                channels[ index ] = null;
+                
+                sequences.lazySet( index, pos + capacity );
+                pos++;
+                head = pos;
+                n++;
+            }
+        }
+        
+        return ( n );
+    }
+    
+    /**
+     * Parks the consumer thread, until a message is published or the timeout elapses.
+     */
+    public void await( long timeoutNanos )
+    {
+        consumerWaiting = true;
+        
+        if ( isEmpty() )
+            LockSupport.parkNanos( this, timeoutNanos );
+        
+        consumerWaiting = false;
+    }
+    
+    public LogRingBuffer( int capacity )
+    {
+        if ( ( capacity < 2 ) || ( ( capacity & ( capacity - 1 ) ) != 0 ) )
+            throw new IllegalArgumentException( "The capacity must be a power of two." );
+        
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        
+        this.sequences = new AtomicLongArray( capacity );
+        for ( int i = 0; i < capacity; i++ )
+            sequences.set( i, i );
+        
+        this.channels = new LogChannel[ capacity ];
+        this.logLevels = new int[ capacity ];
+        this.messages = new Object[ capacity ][];
+        this.appendNLs = new boolean[ capacity ];
+        this.indentations = new int[ capacity ];
+        this.timestamps = new long[ capacity ];
+    }
+}
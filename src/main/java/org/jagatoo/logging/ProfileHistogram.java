@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+/**
+ * A log-linear histogram of durations in nanoseconds.<br>
+ * Each power of two is split into 8 buckets, so any percentile is
+ * accurate to 12.5 percent. Minimum, maximum, count and total are exact.
+ * Recording is a few arithmetic operations without any allocation.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class ProfileHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = ( 64 - SUB_BUCKET_BITS + 1 ) << SUB_BUCKET_BITS;
+    
+    private final long[] buckets = new long[ NUM_BUCKETS ];
+    private long count = 0L;
+    private long total = 0L;
+    private long min = Long.MAX_VALUE;
+    private long max = 0L;
+    
+    private static final int getBucket( long value )
+    {
+        if ( value < SUB_BUCKETS )
+            return ( (int)value );
+        
+        final int msb = 63 - Long.numberOfLeadingZeros( value );
+        final int sub = (int)( ( value >>> ( msb - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 ) );
+        
+        return ( ( ( msb - SUB_BUCKET_BITS + 1 ) << SUB_BUCKET_BITS ) + sub );
+    }
+    
+    private static final long getBucketUpperBound( int bucket )
+    {
+        if ( bucket < SUB_BUCKETS )
+            return ( bucket );
+        
+        final int msb = ( bucket >> SUB_BUCKET_BITS ) - 1 + SUB_BUCKET_BITS;
+        final long sub = bucket & ( SUB_BUCKETS - 1 );
+        final long lower = ( 1L << msb ) | ( sub << ( msb - SUB_BUCKET_BITS ) );
+        
+        return ( lower + ( 1L << ( msb - SUB_BUCKET_BITS ) ) - 1L );
+    }
+    
+    /**
+     * Records one duration.
+     * 
+     * @param nanos
+     */
+    public final void record( long nanos )
+    {
+        if ( nanos < 0L )
+            nanos = 0L;
+        
+        buckets[ getBucket( nanos ) ]++;
+        count++;
+        total += nanos;
+        
+        if ( nanos < min )
+            min = nanos;
+        if ( nanos > max )
+            max = nanos;
+    }
+    
+    /**
+     * Adds all the values recorded by the given histogram to this one.
+     * 
+     * @param histogram
+     */
+    public void merge( ProfileHistogram histogram )
+    {
+        for ( int i = 0; i < NUM_BUCKETS; i++ )
+            this.buckets[ i ] += histogram.buckets[ i ];
+        
+        this.count += histogram.count;
+        this.total += histogram.total;
+        this.min = Math.min( this.min, histogram.min );
+        this.max = Math.max( this.max, histogram.max );
+    }
+    
+    public void reset()
+    {
+        for ( int i = 0; i < NUM_BUCKETS; i++ )
+            buckets[ i ] = 0L;
+        
+        count = 0L;
+        total = 0L;
+        min = Long.MAX_VALUE;
+        max = 0L;
+    }
+    
+    public final long getCount()
+    {
+        return ( count );
+    }
+    
+    /**
+     * @return the sum of all recorded durations in nanoseconds.
+     */
+    public final long getTotal()
+    {
+        return ( total );
+    }
+    
+    public final long getMin()
+    {
+        return ( ( count == 0L ) ? 0L : min );
+    }
+    
+    public final long getMax()
+    {
+        return ( max );
+    }
+    
+    public final long getMean()
+    {
+        return ( ( count == 0L ) ? 0L : total / count );
+    }
+    
+    /**
+     * @param percentile (0.0 - 100.0)
+     * 
+     * @return the duration, that the given percentage of the recorded durations did not exceed.
+     */
+    public final long getPercentile( double percentile )
+    {
+        if ( count == 0L )
+            return ( 0L );
+        
+        final long rank = Math.max( 1L, (long)Math.ceil( count * percentile / 100.0 ) );
+        
+        long n = 0L;
+        for ( int i = 0; i < NUM_BUCKETS; i++ )
+        {
+            n += buckets[ i ];
+            
+            if ( n >= rank )
+                return ( Math.max( getMin(), Math.min( getBucketUpperBound( i ), max ) ) );
+        }
+        
+        return ( max );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return ( "count=" + getCount() + ", min=" + getMin() + "ns, avg=" + getMean() + "ns, p50=" + getPercentile( 50.0 ) + "ns, p99=" + getPercentile( 99.0 ) + "ns, max=" + getMax() + "ns" );
+    }
+}
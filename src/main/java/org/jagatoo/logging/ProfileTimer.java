@@ -29,11 +29,30 @@
  */
 package org.jagatoo.logging;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.jagatoo.util.timing.TimerInterface;
 
 /**
  * ProfileTimer is used as an internal profiling class for
- * the whole engine.
+ * the whole engine.<br>
+ * <br>
+ * Each thread profiles into its own {@link ProfileContainer}, which is
+ * found through a ThreadLocal. Section names are interned to int IDs (see
+ * {@link #getSectionID(String)}), so that a child node is found through
+ * a small hash table. Times are taken from System.nanoTime(). Every node
+ * keeps a {@link ProfileHistogram} of its durations. If a trace capacity
+ * is set (see {@link #setTraceCapacity(int)}), the last spans of each
+ * thread are kept and can be exported in the Chrome trace event format
+ * (see {@link #exportChromeTrace(Writer)}) to be inspected in
+ * chrome://tracing or Perfetto.
  * 
  * @author David Yazel
  * @author Marvin Froehlich (aka Qudus)
@@ -44,18 +63,23 @@ public class ProfileTimer
     public static class ProfileNode
     {
         LogChannel channel;
+        final int sectionID;
         int numCalls;
         String name;
         long startTime;
         int recursionCount;
         long totalTime;
+        final ProfileHistogram histogram = new ProfileHistogram();
         ProfileNode parent;
         public ProfileNode next; // pointer to the next profile node
         ProfileNode children;    // pointer to the children
+        private ProfileNode[] childTable = null;
+        private int numChildren = 0;
         
-        ProfileNode( LogChannel channel, String name, ProfileNode parent )
+        ProfileNode( LogChannel channel, int sectionID, String name, ProfileNode parent )
         {
             this.channel = channel;
+            this.sectionID = sectionID;
             this.name = name;
             this.parent = parent;
             recursionCount = 0;
@@ -74,16 +98,39 @@ public class ProfileTimer
             return ( name );
         }
         
+        public final int getSectionID()
+        {
+            return ( sectionID );
+        }
+        
         public ProfileNode getParent()
         {
             return ( parent );
         }
         
+        public final int getNumCalls()
+        {
+            return ( numCalls );
+        }
+        
+        /**
+         * @return the total time spent in this node in nanoseconds.
+         */
+        public final long getTotalTime()
+        {
+            return ( totalTime );
+        }
+        
+        /**
+         * @return the histogram of this node's durations.
+         */
+        public final ProfileHistogram getHistogram()
+        {
+            return ( histogram );
+        }
+        
         public void printLog( int level )
         {
-            // convert total time to nanoseconds
-            totalTime = (long) (((double) totalTime * (double) 1000000000) / (double) ProfileTimer.getResolution());
-            
             StringBuffer sb = new StringBuffer( 200 );
             
             for ( int i = 0; i < (level * 3); i++ )
@@ -98,7 +145,7 @@ public class ProfileTimer
                 long percentTime = (1000L * totalTime) / parent.totalTime;
                 sb.append( ", percent=" );
                 sb.append( (float) percentTime / 10f );
-                sb.append( "%, " );
+                sb.append( "%" );
             }
             
             if ( numCalls > 0 )
@@ -111,6 +158,19 @@ public class ProfileTimer
                 sb.append( "ms)" );
             }
             
+            if ( histogram.getCount() > 0L )
+            {
+                sb.append( ", min=" );
+                sb.append( histogram.getMin() );
+                sb.append( "ns, p50=" );
+                sb.append( histogram.getPercentile( 50.0 ) );
+                sb.append( "ns, p99=" );
+                sb.append( histogram.getPercentile( 99.0 ) );
+                sb.append( "ns, max=" );
+                sb.append( histogram.getMax() );
+                sb.append( "ns" );
+            }
+            
             Log.profile( channel, sb.toString() );
             
             ProfileNode child = children;
@@ -130,22 +190,60 @@ public class ProfileTimer
          */
         public ProfileNode getSubNode( String n )
         {
-            ProfileNode child = children;
+            return ( getSubNode( ProfileTimer.getSectionID( n ) ) );
+        }
+        
+        private void insertIntoTable( ProfileNode[] table, ProfileNode node )
+        {
+            final int mask = table.length - 1;
+            int slot = ( node.sectionID * 0x9E3779B1 ) >>> 16 & mask;
             
-            while ( child != null )
+            while ( table[ slot ] != null )
+                slot = ( slot + 1 ) & mask;
+            
+            table[ slot ] = node;
+        }
+        
+        /**
+         * @return the node of the child with the specified section.  It will create
+         * a new one if it does not exist and insert it into the child list
+         * 
+         * @param sectionID
+         */
+        public ProfileNode getSubNode( int sectionID )
+        {
+            if ( childTable != null )
             {
-                if ( child.name == n )
+                final int mask = childTable.length - 1;
+                int slot = ( sectionID * 0x9E3779B1 ) >>> 16 & mask;
+                
+                ProfileNode child;
+                while ( ( child = childTable[ slot ] ) != null )
                 {
-                    return ( child );
+                    if ( child.sectionID == sectionID )
+                        return ( child );
+                    
+                    slot = ( slot + 1 ) & mask;
                 }
-                
-                child = child.next;
             }
             
-            ProfileNode newChild = new ProfileNode( channel, n, this );
+            ProfileNode newChild = new ProfileNode( channel, sectionID, getSectionName( sectionID ), this );
             newChild.next = children;
             children = newChild;
             
+            if ( ( childTable == null ) || ( ( numChildren + 1 ) * 2 > childTable.length ) )
+            {
+                ProfileNode[] table = new ProfileNode[ ( childTable == null ) ? 8 : childTable.length * 2 ];
+                
+                for ( ProfileNode child = children.next; child != null; child = child.next )
+                    insertIntoTable( table, child );
+                
+                childTable = table;
+            }
+            
+            insertIntoTable( childTable, newChild );
+            numChildren++;
+            
             return ( newChild );
         }
         
@@ -167,21 +265,35 @@ public class ProfileTimer
         /**
          * leaves the current profile area.
          */
-        boolean leave()
+        boolean leave( ProfileContainer container )
         {
             if ( (--recursionCount == 0) && (numCalls != 0) )
             {
                 long time = getTime();
-                totalTime += ( time - startTime );
+                final long duration = time - startTime;
+                totalTime += duration;
+                histogram.record( duration );
+                
+                container.addSpan( sectionID, startTime, duration );
             }
             
             return ( recursionCount == 0 );
         }
+        
+        void collectHistogram( int sectionID, ProfileHistogram result )
+        {
+            if ( this.sectionID == sectionID )
+                result.merge( histogram );
+            
+            for ( ProfileNode child = children; child != null; child = child.next )
+                child.collectHistogram( sectionID, result );
+        }
     }
     
     /**
      * Contains a thread's worth of profile nodes.  Since we handle the proper
-     * nesting of routines, we need one per thread to manage the stack properly
+     * nesting of routines, we need one per thread to manage the stack properly.<br>
+     * It also keeps the last spans of its thread for the trace export.
      * 
      * @author David Yazel
      * @author Marvin Froehlich (aka Qudus)
@@ -194,19 +306,24 @@ public class ProfileTimer
         Thread thread;
         public ProfileContainer next; // linked list of profile containers
         
+        private int[] traceSections = null;
+        private long[] traceStarts = null;
+        private long[] traceDurations = null;
+        private volatile long traceCount = 0L;
+        
         public ProfileContainer( LogChannel channel )
         {
             thread = Thread.currentThread();
             next = null;
-            currentNode = new ProfileNode( channel, thread.getName(), null );
+            currentNode = new ProfileNode( channel, -1, thread.getName(), null );
             root = currentNode;
         }
         
-        void startProfile( String name )
+        void startProfile( int sectionID )
         {
-            if ( currentNode.getName() != name )
+            if ( currentNode.sectionID != sectionID )
             {
-                currentNode = currentNode.getSubNode( name );
+                currentNode = currentNode.getSubNode( sectionID );
             }
             
             currentNode.enter();
@@ -214,12 +331,73 @@ public class ProfileTimer
         
         void endProfile()
         {
-            if ( currentNode.leave() )
+            if ( currentNode.leave( this ) )
             {
                 currentNode = currentNode.getParent();
             }
         }
         
+        void addSpan( int sectionID, long start, long duration )
+        {
+            final int capacity = traceCapacity;
+            
+            if ( capacity == 0 )
+                return;
+            
+            if ( ( traceSections == null ) || ( traceSections.length != capacity ) )
+            {
+                traceSections = new int[ capacity ];
+                traceStarts = new long[ capacity ];
+                traceDurations = new long[ capacity ];
+                traceCount = 0L;
+            }
+            
+            final long n = traceCount;
+            final int index = (int)( n % capacity );
+            
+            traceSections[ index ] = sectionID;
+            traceStarts[ index ] = start;
+            traceDurations[ index ] = duration;
+            
+            traceCount = n + 1L;
+        }
+        
+        void writeTraceEvents( Writer out, boolean first ) throws IOException
+        {
+            // Read the volatile count first, so that the spans up to it are visible.
+            final long count = traceCount;
+            final int[] sections = traceSections;
+            final long[] starts = traceStarts;
+            final long[] durations = traceDurations;
+            
+            if ( !first )
+                out.write( ",\n" );
+            
+            out.write( "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getId() + ",\"args\":{\"name\":\"" + escapeJSON( thread.getName() ) + "\"}}" );
+            
+            if ( sections == null )
+                return;
+            
+            final String category = escapeJSON( root.getChannel().getName() );
+            StringBuilder sb = new StringBuilder( 128 );
+            
+            for ( long i = Math.max( 0L, count - sections.length ); i < count; i++ )
+            {
+                final int index = (int)( i % sections.length );
+                
+                sb.setLength( 0 );
+                sb.append( ",\n{\"name\":\"" ).append( escapeJSON( getSectionName( sections[ index ] ) ) );
+                sb.append( "\",\"cat\":\"" ).append( category );
+                sb.append( "\",\"ph\":\"X\",\"ts\":" );
+                appendMicros( sb, starts[ index ] - BASE_TIME );
+                sb.append( ",\"dur\":" );
+                appendMicros( sb, durations[ index ] );
+                sb.append( ",\"pid\":1,\"tid\":" ).append( thread.getId() ).append( '}' );
+                
+                out.write( sb.toString() );
+            }
+        }
+        
         void printLog()
         {
             while ( ( currentNode != root ) && ( root.recursionCount >= 0 ) )
@@ -230,9 +408,15 @@ public class ProfileTimer
         }
     }
     
-    private static ProfileContainer containers = null;
-    private static TimerInterface timer = null;
-    private static boolean profilingEnabled = false;
+    private static final long BASE_TIME = System.nanoTime();
+    
+    private static final ConcurrentHashMap<String, Integer> sectionIDs = new ConcurrentHashMap<String, Integer>();
+    private static final ArrayList<String> sectionNames = new ArrayList<String>();
+    
+    private static final ThreadLocal<ProfileContainer> localContainer = new ThreadLocal<ProfileContainer>();
+    private static volatile ProfileContainer containers = null;
+    private static volatile boolean profilingEnabled = false;
+    private static volatile int traceCapacity = 0;
     
     private ProfileTimer()
     {
@@ -240,13 +424,25 @@ public class ProfileTimer
     
     /**
      * Enabled/disable profiling
+     * 
      * @param enable
-     * @param timerInstance A timer used to profile
      */
-    public static void setProfilingEnabled( boolean enable, TimerInterface timerInstance )
+    public static void setProfilingEnabled( boolean enable )
     {
         profilingEnabled = enable;
-        timer = timerInstance;
+    }
+    
+    /**
+     * Enabled/disable profiling
+     * @param enable
+     * @param timerInstance not used anymore. The times are taken from System.nanoTime().
+     * 
+     * @deprecated use {@link #setProfilingEnabled(boolean)}
+     */
+    @Deprecated
+    public static void setProfilingEnabled( boolean enable, TimerInterface timerInstance )
+    {
+        setProfilingEnabled( enable );
     }
     
     public static final boolean isProfilingEnabled()
@@ -254,6 +450,73 @@ public class ProfileTimer
         return ( profilingEnabled );
     }
     
+    /**
+     * Sets the number of spans to keep per thread for {@link #exportChromeTrace(Writer)}.
+     * Zero (the default) disables the span capturing.
+     * 
+     * @param capacity
+     */
+    public static void setTraceCapacity( int capacity )
+    {
+        if ( capacity < 0 )
+            throw new IllegalArgumentException( "capacity must not be negative." );
+        
+        traceCapacity = capacity;
+    }
+    
+    /**
+     * @return the number of spans kept per thread for {@link #exportChromeTrace(Writer)}.
+     */
+    public static final int getTraceCapacity()
+    {
+        return ( traceCapacity );
+    }
+    
+    /**
+     * Interns a section name.
+     * 
+     * @param name
+     * 
+     * @return the section ID to be passed to {@link #startProfile(LogChannel, int)}.
+     */
+    public static int getSectionID( String name )
+    {
+        Integer id = sectionIDs.get( name );
+        
+        if ( id == null )
+        {
+            synchronized ( sectionNames )
+            {
+                id = sectionIDs.get( name );
+                
+                if ( id == null )
+                {
+                    id = sectionNames.size();
+                    sectionNames.add( name );
+                    sectionIDs.put( name, id );
+                }
+            }
+        }
+        
+        return ( id.intValue() );
+    }
+    
+    /**
+     * @param sectionID
+     * 
+     * @return the section name for the given ID.
+     */
+    public static String getSectionName( int sectionID )
+    {
+        if ( sectionID < 0 )
+            return ( null );
+        
+        synchronized ( sectionNames )
+        {
+            return ( sectionNames.get( sectionID ) );
+        }
+    }
+    
     private static synchronized ProfileContainer newContainer( LogChannel channel )
     {
         ProfileContainer c = new ProfileContainer( channel );
@@ -266,29 +529,35 @@ public class ProfileTimer
     /**
      * Start a new profile
      */
-    public static void startProfile( LogChannel channel, String name )
+    public static void startProfile( LogChannel channel, int sectionID )
     {
         if ( !profilingEnabled )
         {
             return;
         }
         
-        ProfileContainer c = containers;
-        Thread t = Thread.currentThread();
+        ProfileContainer c = localContainer.get();
         
-        while ( c != null )
+        if ( c == null )
         {
-            if ( t == c.thread )
-            {
-                c.startProfile( name );
-                
-                return;
-            }
-            
-            c = c.next;
+            c = newContainer( channel );
+            localContainer.set( c );
+        }
+        
+        c.startProfile( sectionID );
+    }
+    
+    /**
+     * Start a new profile
+     */
+    public static void startProfile( LogChannel channel, String name )
+    {
+        if ( !profilingEnabled )
+        {
+            return;
         }
         
-        newContainer( channel ).startProfile( name );
+        startProfile( channel, getSectionID( name ) );
     }
     
     /**
@@ -302,20 +571,12 @@ public class ProfileTimer
             return ( null );
         }
         
-        ProfileContainer c = containers;
-        Thread t = Thread.currentThread();
+        ProfileContainer c = localContainer.get();
         
-        while ( c != null )
-        {
-            if ( t == c.thread )
-            {
-                return ( c.currentNode.getName() );
-            }
-            
-            c = c.next;
-        }
+        if ( c == null )
+            return ( null );
         
-        return ( null );
+        return ( c.currentNode.getName() );
     }
     
     /**
@@ -329,43 +590,154 @@ public class ProfileTimer
             return;
         }
         
-        ProfileContainer c = containers;
-        Thread t = Thread.currentThread();
+        ProfileContainer c = localContainer.get();
         
-        while ( c != null )
+        if ( c != null )
+            c.endProfile();
+    }
+    
+    /**
+     * Merges the histograms of all nodes of the given section in all threads.<br>
+     * The values are read without synchronization. So they may be slightly off,
+     * while other threads are profiling.
+     * 
+     * @param sectionName
+     * 
+     * @return the merged histogram or null, if the section has never been profiled.
+     */
+    public static ProfileHistogram getHistogram( String sectionName )
+    {
+        final Integer id = sectionIDs.get( sectionName );
+        
+        if ( id == null )
+            return ( null );
+        
+        final int sectionID = id.intValue();
+        ProfileHistogram result = new ProfileHistogram();
+        
+        for ( ProfileContainer c = containers; c != null; c = c.next )
+            c.root.collectHistogram( sectionID, result );
+        
+        return ( result );
+    }
+    
+    private static String escapeJSON( String s )
+    {
+        if ( s == null )
+            return ( "" );
+        
+        StringBuilder sb = null;
+        
+        for ( int i = 0; i < s.length(); i++ )
         {
-            if ( t == c.thread )
+            final char ch = s.charAt( i );
+            
+            if ( ( ch == '"' ) || ( ch == '\\' ) || ( ch < 32 ) )
             {
-                c.endProfile();
+                if ( sb == null )
+                {
+                    sb = new StringBuilder( s.length() + 16 );
+                    sb.append( s, 0, i );
+                }
                 
-                return;
+                if ( ch == '"' )
+                    sb.append( "\\\"" );
+                else if ( ch == '\\' )
+                    sb.append( "\\\\" );
+                else
+                    sb.append( String.format( "\\u%04x", (int)ch ) );
             }
-            
-            c = c.next;
+            else if ( sb != null )
+            {
+                sb.append( ch );
+            }
+        }
+        
+        return ( ( sb == null ) ? s : sb.toString() );
+    }
+    
+    private static void appendMicros( StringBuilder sb, long nanos )
+    {
+        if ( nanos < 0L )
+        {
+            sb.append( '-' );
+            nanos = -nanos;
         }
+        
+        sb.append( nanos / 1000L ).append( '.' );
+        
+        final long frac = nanos % 1000L;
+        if ( frac < 100L )
+            sb.append( '0' );
+        if ( frac < 10L )
+            sb.append( '0' );
+        sb.append( frac );
     }
     
     /**
-     * Print all logs.
+     * Writes the captured spans of all threads in the Chrome trace event
+     * format (JSON object format with complete events).<br>
+     * Spans are only captured, if a trace capacity has been set.
+     * 
+     * @param out
      * 
-     * If timer is null, instantly returns.
+     * @throws IOException
      */
-    public static void printLogs()
+    public static void exportChromeTrace( Writer out ) throws IOException
     {
-        if ( timer == null )
-            return;
+        out.write( "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n" );
+        
+        boolean first = true;
+        for ( ProfileContainer c = containers; c != null; c = c.next )
+        {
+            c.writeTraceEvents( out, first );
+            first = false;
+        }
         
+        out.write( "\n]}\n" );
+        out.flush();
+    }
+    
+    /**
+     * Writes the captured spans of all threads in the Chrome trace event format.
+     * 
+     * @param file
+     * 
+     * @throws IOException
+     * 
+     * @see #exportChromeTrace(Writer)
+     */
+    public static void exportChromeTrace( File file ) throws IOException
+    {
+        Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+        
+        try
+        {
+            exportChromeTrace( out );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+    
+    /**
+     * Print all logs.
+     */
+    public static void printLogs()
+    {
         ProfileContainer c = containers;
         
+        if ( c == null )
+            return;
+        
         Log.profile( c.currentNode.channel, "Timer resolution = " + ProfileTimer.getResolution() + " ticks/second" );
-        Log.profile( c.currentNode.channel, "Timer resolution = " + ((double) ProfileTimer.getResolution() / 1000000000.0) + " ns" );
         
         while ( c != null )
         {
             c.printLog();
             c = c.next;
         }
-        
     }
     
     /**
@@ -373,7 +745,7 @@ public class ProfileTimer
      */
     public static long getTime()
     {
-        return ( timer.getTime() );
+        return ( System.nanoTime() );
     }
     
     /**
@@ -381,23 +753,6 @@ public class ProfileTimer
      */
     public static long getResolution()
     {
-        return ( timer.getResolution() );
-    }
-    
-    /*
-    public static void main( String[] args )
-    {
-        ConsoleLog cl = new ConsoleLog( LogLevel.PROFILE );
-        Log.getLogManager().registerLog( cl );
-        System.out.println( "Timer resolution is " + ProfileTimer.getResolution() + " ns" );
-        ProfileTimer.startProfile( "main loop" );
-        
-        int a = 0;
-        for ( int i = 0; i < 10000000; i++ )
-            a++;
-        
-        ProfileTimer.endProfile();
-        ProfileTimer.printLogs();
+        return ( 1000000000L );
     }
-    */
 }
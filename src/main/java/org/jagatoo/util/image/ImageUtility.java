@@ -32,6 +32,7 @@ package org.jagatoo.util.image;
 import org.jagatoo.image.DirectBufferedImage;
 import org.jagatoo.image.SharedBufferedImage;
 import org.jagatoo.logging.JAGTLog;
+import org.jagatoo.logging.LogHandle;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -56,6 +57,8 @@ import java.util.Map;
  */
 public class ImageUtility
 {
+    private static final LogHandle LOG = JAGTLog.getHandle( ImageUtility.class );
+    
     private static Map< Integer, List< int[] >> intArrays = new HashMap< Integer, List< int[] >>();
     private static Map< String, BufferedImage > images = new HashMap< String, BufferedImage >();
     
@@ -263,7 +266,7 @@ public class ImageUtility
             }
         }
         
-        JAGTLog.debug( "Image alpha bounds : ", lx, ",", ly, " -> ", ux, ",", uy );
+        LOG.debug( "Image alpha bounds : ", lx, ",", ly, " -> ", ux, ",", uy );
         r.setBounds( lx, ly, ux - lx + 1, uy - ly + 1 );
         
         return ( r );
@@ -301,9 +304,9 @@ public class ImageUtility
     public static BufferedImage centerAndScale( BufferedImage image, int width, int height, int margin )
     {
         Rectangle r = alphaBounds( image );
-        JAGTLog.debug( "   Alpha bounds : ", (int)r.getWidth(), "+", (int)r.getHeight() );
-        JAGTLog.debug( "      min : ", (int)r.getMinX(), ",", (int)r.getMinY() );
-        JAGTLog.debug( "      max : ", (int)r.getMaxX(), ",", (int)r.getMaxY() );
+        LOG.debug( "   Alpha bounds : ", (int)r.getWidth(), "+", (int)r.getHeight() );
+        LOG.debug( "      min : ", (int)r.getMinX(), ",", (int)r.getMinY() );
+        LOG.debug( "      max : ", (int)r.getMaxX(), ",", (int)r.getMaxY() );
         
         int w;
         int h;
@@ -323,8 +326,8 @@ public class ImageUtility
             h = (int)( w * scale );
         }
         
-        JAGTLog.debug( "   New width ", w );
-        JAGTLog.debug( "   New height ", h );
+        LOG.debug( "   New width ", w );
+        LOG.debug( "   New height ", h );
         
         lx = ( ( width / 2 ) - ( w / 2 ) );
         ly = ( ( height / 2 ) - ( h / 2 ) );
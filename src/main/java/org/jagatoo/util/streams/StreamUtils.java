@@ -30,8 +30,13 @@
 package org.jagatoo.util.streams;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.jagatoo.util.arrays.ArrayUtils;
 
@@ -42,6 +47,12 @@ import org.jagatoo.util.arrays.ArrayUtils;
  */
 public class StreamUtils
 {
+    /**
+     * Some VMs reserve header words in an array, so this is the largest array size,
+     * that is safe to allocate.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    
     /**
      * Skips and discards the given number of bytes from the given stream.
      * 
@@ -516,4 +527,104 @@ public class StreamUtils
     {
         return ( buildByteArray( in, in.available() ) );
     }
+    
+    private static final byte[] readToEnd( InputStream in, int[] length ) throws IOException
+    {
+        byte[] data = new byte[ Math.max( in.available(), 64 * 1024 ) ];
+        int offset = 0;
+        int n;
+        
+        while ( ( n = in.read( data, offset, data.length - offset ) ) >= 0 )
+        {
+            offset += n;
+            
+            if ( offset == data.length )
+            {
+                if ( data.length == MAX_ARRAY_SIZE )
+                {
+                    if ( in.read() < 0 )
+                        break;
+                    
+                    throw new IOException( "The stream is longer than " + MAX_ARRAY_SIZE + " bytes." );
+                }
+                
+                int newLength = ( data.length < ( MAX_ARRAY_SIZE >> 1 ) ) ? ( data.length << 1 ) : MAX_ARRAY_SIZE;
+                byte[] newData = new byte[ newLength ];
+                System.arraycopy( data, 0, newData, 0, offset );
+                data = newData;
+            }
+        }
+        
+        length[0] = offset;
+        
+        return ( data );
+    }
+    
+    /**
+     * Reads the given InputStream up to its end.<br>
+     * Unlike {@link #buildByteArray(InputStream)} this doesn't rely on
+     * {@link InputStream#available()} to detect the end of the stream.<br>
+     * The InputStream is NOT closed at the end.
+     * 
+     * @param in the InputStream to get data from
+     * @return the filled and correctly sized byte-array
+     * 
+     * @throws IOException if the stream cannot be read or is too long for a single array
+     */
+    public static final byte[] readFully( InputStream in ) throws IOException
+    {
+        int[] length = new int[ 1 ];
+        byte[] data = readToEnd( in, length );
+        
+        if ( length[0] == data.length )
+            return ( data );
+        
+        byte[] result = new byte[ length[0] ];
+        System.arraycopy( data, 0, result, 0, length[0] );
+        
+        return ( result );
+    }
+    
+    /**
+     * Reads the given InputStream up to its end into a heap buffer.
+     * The data is not copied into a correctly sized array, so the buffer's limit
+     * is the number of read bytes.<br>
+     * The InputStream is NOT closed at the end.
+     * 
+     * @param in the InputStream to get data from
+     * @return the filled buffer
+     * 
+     * @throws IOException if the stream cannot be read or is too long for a single array
+     */
+    public static final ByteBuffer readFullyToBuffer( InputStream in ) throws IOException
+    {
+        int[] length = new int[ 1 ];
+        byte[] data = readToEnd( in, length );
+        
+        return ( ByteBuffer.wrap( data, 0, length[0] ).slice() );
+    }
+    
+    /**
+     * Maps the whole file read-only.
+     * 
+     * @param file the file to map
+     * @return the mapped buffer
+     * 
+     * @throws IOException
+     */
+    public static final MappedByteBuffer mapFile( File file ) throws IOException
+    {
+        FileInputStream in = new FileInputStream( file );
+        
+        try
+        {
+            FileChannel channel = in.getChannel();
+            
+            return ( channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() ) );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
 }
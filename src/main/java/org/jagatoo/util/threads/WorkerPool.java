@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.util.threads;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size pool of daemon worker threads, that is created on first use.
+ * Idle threads are stopped after a while, so an unused pool doesn't hold any threads.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class WorkerPool
+{
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    
+    private final String threadNamePrefix;
+    private final int threadPriority;
+    
+    private int numThreads;
+    private ThreadPoolExecutor executor = null;
+    
+    /**
+     * Sets the number of worker threads. An existing pool is resized and keeps
+     * processing its queued tasks.
+     * 
+     * @param numThreads
+     */
+    public synchronized void setNumThreads( int numThreads )
+    {
+        if ( numThreads < 1 )
+        {
+            throw new IllegalArgumentException( "numThreads must be at least 1." );
+        }
+        
+        if ( executor != null )
+        {
+            if ( numThreads > executor.getMaximumPoolSize() )
+            {
+                executor.setMaximumPoolSize( numThreads );
+                executor.setCorePoolSize( numThreads );
+            }
+            else
+            {
+                executor.setCorePoolSize( numThreads );
+                executor.setMaximumPoolSize( numThreads );
+            }
+        }
+        
+        this.numThreads = numThreads;
+    }
+    
+    /**
+     * @return the number of worker threads.
+     */
+    public final synchronized int getNumThreads()
+    {
+        return ( numThreads );
+    }
+    
+    /**
+     * @return the executor, which is created, if necessary.
+     */
+    public synchronized ThreadPoolExecutor getExecutor()
+    {
+        if ( executor == null )
+        {
+            final ThreadFactory threadFactory = new ThreadFactory()
+            {
+                private final AtomicInteger threadIndex = new AtomicInteger( 0 );
+                
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, threadNamePrefix + "-" + threadIndex.incrementAndGet() );
+                    thread.setDaemon( true );
+                    thread.setPriority( threadPriority );
+                    
+                    return ( thread );
+                }
+            };
+            
+            executor = new ThreadPoolExecutor( numThreads, numThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory );
+            executor.allowCoreThreadTimeOut( true );
+        }
+        
+        return ( executor );
+    }
+    
+    /**
+     * Stops the worker threads. Already queued tasks are still finished.
+     * A new executor is created by the next call to {@link #getExecutor()}.
+     */
+    public synchronized void shutdown()
+    {
+        if ( executor != null )
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+    
+    /**
+     * @param threadNamePrefix the threads are named prefix-1, prefix-2, ...
+     * @param numThreads the number of worker threads
+     * @param threadPriority the worker threads' priority
+     */
+    public WorkerPool( String threadNamePrefix, int numThreads, int threadPriority )
+    {
+        if ( numThreads < 1 )
+        {
+            throw new IllegalArgumentException( "numThreads must be at least 1." );
+        }
+        
+        this.threadNamePrefix = threadNamePrefix;
+        this.numThreads = numThreads;
+        this.threadPriority = threadPriority;
+    }
+}
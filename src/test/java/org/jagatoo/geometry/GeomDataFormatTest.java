@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the half-float and normalized conversions of {@link GeomDataFormat}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class GeomDataFormatTest extends TestCase
+{
+    private static void assertHalf( int expectedBits, float value )
+    {
+        assertEquals( Float.toString( value ), expectedBits, GeomDataFormat.floatToHalf( value ) & 0xFFFF );
+    }
+    
+    public void testExactHalfValues()
+    {
+        assertHalf( 0x0000, 0f );
+        assertHalf( 0x8000, -0f );
+        assertHalf( 0x3C00, 1f );
+        assertHalf( 0xC000, -2f );
+        assertHalf( 0x3800, 0.5f );
+        assertHalf( 0x7BFF, 65504f );
+        assertHalf( 0x0400, 6.1035156e-5f ); // smallest normalized half
+        assertHalf( 0x0001, 5.9604645e-8f ); // smallest denormalized half
+    }
+    
+    public void testSpecialHalfValues()
+    {
+        assertHalf( 0x7C00, Float.POSITIVE_INFINITY );
+        assertHalf( 0xFC00, Float.NEGATIVE_INFINITY );
+        assertHalf( 0x7C00, 65520f ); // rounds up to Inf
+        assertHalf( 0x7C00, 1e10f );
+        assertHalf( 0x0000, 1e-10f );
+        
+        assertTrue( Float.isNaN( GeomDataFormat.halfToFloat( GeomDataFormat.floatToHalf( Float.NaN ) ) ) );
+    }
+    
+    public void testHalfRoundsToNearestEven()
+    {
+        // 1 + 2^-11 is halfway between 1 and 1 + 2^-10
+        assertHalf( 0x3C00, 1f + 1f / 2048f );
+        // 1 + 3 * 2^-11 is halfway between 1 + 2^-10 and 1 + 2^-9
+        assertHalf( 0x3C02, 1f + 3f / 2048f );
+        assertHalf( 0x3C01, 1f + 1.5f / 1024f - 1f / 8192f );
+    }
+    
+    public void testAllHalvesRoundTrip()
+    {
+        for ( int bits = 0; bits <= 0xFFFF; bits++ )
+        {
+            final short half = (short)bits;
+            final float f = GeomDataFormat.halfToFloat( half );
+            
+            if ( Float.isNaN( f ) )
+            {
+                assertEquals( 0x7C00, bits & 0x7C00 );
+                continue;
+            }
+            
+            assertEquals( Integer.toHexString( bits ), bits, GeomDataFormat.floatToHalf( f ) & 0xFFFF );
+        }
+    }
+    
+    public void testBufferRoundTrip()
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate( 16 ).order( ByteOrder.nativeOrder() );
+        final float[] values = { -1f, -0.5f, 0f, 0.25f, 1f };
+        
+        for ( GeomDataFormat format : GeomDataFormat.values() )
+        {
+            // normalized byte formats have a precision of 1/127 at worst
+            final float epsilon = ( format.getComponentSize() == 1 ) ? 0.005f : 0.0001f;
+            
+            for ( int i = 0; i < values.length; i++ )
+            {
+                final float expected = format.isSigned() ? values[ i ] : Math.max( values[ i ], 0f );
+                
+                format.put( buffer, 4, values[ i ] );
+                assertEquals( format.name(), expected, format.get( buffer, 4 ), epsilon );
+            }
+        }
+    }
+}
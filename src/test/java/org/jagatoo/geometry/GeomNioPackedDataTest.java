@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the layout and the copies of {@link GeomNioPackedData}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class GeomNioPackedDataTest extends TestCase
+{
+    private static GeomNioPackedData createData( int numVertices )
+    {
+        return ( new GeomNioPackedData( numVertices,
+                                        new int[] { GeometryDataContainer.COORDINATES, GeometryDataContainer.NORMALS, GeometryDataContainer.TEXTURE_COORDINATES },
+                                        new int[] { 0, 0, 0 },
+                                        new int[] { 3, 3, 2 },
+                                        new GeomDataFormat[] { GeomDataFormat.FLOAT, GeomDataFormat.NORMALIZED_BYTE, GeomDataFormat.HALF_FLOAT }
+                                      ) );
+    }
+    
+    public void testLayout()
+    {
+        final GeomNioPackedData data = createData( 2 );
+        
+        assertEquals( 0, data.getOffset( 0 ) );
+        assertEquals( 12, data.getOffset( 1 ) );
+        assertEquals( 16, data.getOffset( 2 ) );
+        assertEquals( 20, data.getStride() );
+        assertEquals( 2 * 20, data.getBuffer().capacity() );
+        assertEquals( 2, data.findAttribute( GeometryDataContainer.TEXTURE_COORDINATES, 0 ) );
+        assertEquals( -1, data.findAttribute( GeometryDataContainer.COLORS, 0 ) );
+    }
+    
+    public void testSetGet()
+    {
+        final GeomNioPackedData data = createData( 2 );
+        final float[] values = new float[ 3 ];
+        
+        data.set( 1, 0, new float[] { 1f, 2f, 3f }, 0 );
+        data.set( 1, 1, new float[] { 0f, 1f, 0f }, 0 );
+        data.set( 1, 2, new float[] { 0.5f, 0.25f }, 0 );
+        
+        data.get( 1, 0, values, 0 );
+        assertEquals( 1f, values[ 0 ], 0f );
+        assertEquals( 2f, values[ 1 ], 0f );
+        assertEquals( 3f, values[ 2 ], 0f );
+        
+        data.get( 1, 1, values, 0 );
+        assertEquals( 0f, values[ 0 ], 0f );
+        assertEquals( 1f, values[ 1 ], 0f );
+        
+        data.get( 1, 2, values, 0 );
+        assertEquals( 0.5f, values[ 0 ], 0f );
+        assertEquals( 0.25f, values[ 1 ], 0f );
+        
+        // vertex 0 is untouched
+        data.get( 0, 0, values, 0 );
+        assertEquals( 0f, values[ 0 ], 0f );
+    }
+    
+    public void testDuplicate()
+    {
+        final GeomNioPackedData data = createData( 2 );
+        data.set( 0, 0, new float[] { 1f, 2f, 3f }, 0 );
+        
+        final GeomNioPackedData copy = data.duplicate();
+        assertNotSame( data.getBuffer(), copy.getBuffer() );
+        assertEquals( data.getStride(), copy.getStride() );
+        assertEquals( data.getNumAttributes(), copy.getNumAttributes() );
+        
+        final float[] values = new float[ 3 ];
+        copy.get( 0, 0, values, 0 );
+        assertEquals( 2f, values[ 1 ], 0f );
+        
+        copy.set( 0, 0, new float[] { 4f, 5f, 6f }, 0 );
+        data.get( 0, 0, values, 0 );
+        assertEquals( 2f, values[ 1 ], 0f );
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import org.jagatoo.opengl.enums.GeometryArrayType;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks, that packed data with a released source survives copies and
+ * {@link GeometryDataContainer#releasePackedData()}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class GeometryDataContainerPackedTest extends TestCase
+{
+    private static GeometryDataContainer createPackedTriangle()
+    {
+        GeometryDataContainer geom = new GeometryDataContainer( GeometryArrayType.TRIANGLES, 3, 3 );
+        
+        geom.setCoordinate( 0, 0f, 0f, 0f );
+        geom.setCoordinate( 1, 1f, 0f, 0f );
+        geom.setCoordinate( 2, 0f, 1f, 0f );
+        
+        for ( int i = 0; i < 3; i++ )
+        {
+            geom.setNormal( i, 0f, 0f, 1f );
+            geom.setTextureCoordinate( 0, i, i * 0.5f, 0.25f );
+        }
+        
+        geom.makePacked( GeomDataFormat.NORMALIZED_BYTE, GeomDataFormat.NORMALIZED_UNSIGNED_BYTE, GeomDataFormat.HALF_FLOAT, true );
+        
+        return ( geom );
+    }
+    
+    private static void assertUnpacked( GeometryDataContainer geom )
+    {
+        assertTrue( geom.hasNormals() );
+        assertTrue( geom.hasTextureCoordinates( 0 ) );
+        
+        final float[] values = new float[ 3 ];
+        for ( int i = 0; i < 3; i++ )
+        {
+            geom.getNormal( i, values );
+            assertEquals( 0f, values[ 0 ], 0.01f );
+            assertEquals( 0f, values[ 1 ], 0.01f );
+            assertEquals( 1f, values[ 2 ], 0.01f );
+            
+            geom.getTextureCoordinate( 0, i, values );
+            assertEquals( i * 0.5f, values[ 0 ], 0.001f );
+            assertEquals( 0.25f, values[ 1 ], 0.001f );
+        }
+    }
+    
+    public void testReleasedSource()
+    {
+        final GeometryDataContainer geom = createPackedTriangle();
+        
+        assertTrue( geom.isPacked() );
+        assertTrue( geom.isPackedSourceReleased() );
+        assertFalse( geom.hasNormals() );
+        assertFalse( geom.hasTextureCoordinates( 0 ) );
+        
+        geom.releasePackedData();
+        
+        assertFalse( geom.isPacked() );
+        assertFalse( geom.isPackedSourceReleased() );
+        assertUnpacked( geom );
+    }
+    
+    public void testCopyKeepsPackedData()
+    {
+        final GeometryDataContainer geom = createPackedTriangle();
+        final GeometryDataContainer copy = new GeometryDataContainer( GeometryArrayType.TRIANGLES, 3, 3 );
+        copy.copyFrom( geom, true );
+        
+        assertTrue( copy.isPacked() );
+        assertTrue( copy.isPackedSourceReleased() );
+        assertNotSame( geom.getPackedData(), copy.getPackedData() );
+        assertEquals( geom.getPackedData().getStride(), copy.getPackedData().getStride() );
+        
+        copy.releasePackedData();
+        assertUnpacked( copy );
+        
+        // the original is left untouched
+        assertTrue( geom.isPacked() );
+        assertFalse( geom.hasNormals() );
+    }
+}
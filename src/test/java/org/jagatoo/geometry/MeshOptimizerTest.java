@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.geometry;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jagatoo.opengl.enums.GeometryArrayType;
+
+/**
+ * Checks, that the {@link MeshOptimizer} keeps the meshes intact.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class MeshOptimizerTest extends TestCase
+{
+    /**
+     * A grid of (n + 1) x (n + 1) vertices with the triangles in random order.
+     */
+    private static int[] createShuffledGrid( int n, Random rnd )
+    {
+        int[] indices = new int[ n * n * 6 ];
+        int k = 0;
+        for ( int y = 0; y < n; y++ )
+        {
+            for ( int x = 0; x < n; x++ )
+            {
+                final int v = y * ( n + 1 ) + x;
+                
+                indices[ k++ ] = v;
+                indices[ k++ ] = v + 1;
+                indices[ k++ ] = v + n + 1;
+                
+                indices[ k++ ] = v + 1;
+                indices[ k++ ] = v + n + 2;
+                indices[ k++ ] = v + n + 1;
+            }
+        }
+        
+        for ( int t = indices.length / 3 - 1; t > 0; t-- )
+        {
+            final int s = rnd.nextInt( t + 1 );
+            for ( int j = 0; j < 3; j++ )
+            {
+                final int tmp = indices[ t * 3 + j ];
+                indices[ t * 3 + j ] = indices[ s * 3 + j ];
+                indices[ s * 3 + j ] = tmp;
+            }
+        }
+        
+        return ( indices );
+    }
+    
+    /**
+     * @return the triangles as sorted keys (rotated to the smallest index first, so the winding is kept).
+     */
+    private static long[] triangleKeys( int[] indices, int offset, int numIndices )
+    {
+        long[] keys = new long[ numIndices / 3 ];
+        
+        for ( int t = 0; t < keys.length; t++ )
+        {
+            int a = indices[ offset + t * 3 + 0 ];
+            int b = indices[ offset + t * 3 + 1 ];
+            int c = indices[ offset + t * 3 + 2 ];
+            
+            while ( ( a > b ) || ( a > c ) )
+            {
+                final int tmp = a;
+                a = b;
+                b = c;
+                c = tmp;
+            }
+            
+            keys[ t ] = ( (long)a << 42 ) | ( (long)b << 21 ) | c;
+        }
+        
+        Arrays.sort( keys );
+        
+        return ( keys );
+    }
+    
+    public void testCheckIndices()
+    {
+        final int[] indices = { 0, 1, 2, 2, 1, 3 };
+        
+        assertTrue( MeshOptimizer.checkIndices( indices, 0, 6, 4 ) );
+        assertFalse( MeshOptimizer.checkIndices( indices, 0, 6, 3 ) );
+        assertTrue( MeshOptimizer.checkIndices( indices, 0, 3, 3 ) );
+        
+        indices[ 4 ] = -1;
+        assertFalse( MeshOptimizer.checkIndices( indices, 0, 6, 4 ) );
+    }
+    
+    public void testOptimizeTrianglesKeepsTriangles()
+    {
+        Random rnd = new Random( 17L );
+        
+        for ( int n = 1; n <= 24; n += 3 )
+        {
+            final int[] original = createShuffledGrid( n, rnd );
+            final int numVertices = ( n + 1 ) * ( n + 1 );
+            
+            // surrounded by indices, that must not be touched
+            int[] indices = new int[ original.length + 6 ];
+            Arrays.fill( indices, 4711 );
+            System.arraycopy( original, 0, indices, 3, original.length );
+            
+            MeshOptimizer.Statistics stats = MeshOptimizer.optimizeTriangles( indices, 3, original.length, numVertices, null );
+            
+            assertEquals( original.length / 3, stats.getNumTriangles() );
+            assertEquals( numVertices, stats.getNumVertices() );
+            assertTrue( stats.getACMRAfter() <= stats.getACMRBefore() );
+            
+            assertTrue( Arrays.equals( triangleKeys( original, 0, original.length ), triangleKeys( indices, 3, original.length ) ) );
+            
+            for ( int i = 0; i < 3; i++ )
+            {
+                assertEquals( 4711, indices[ i ] );
+                assertEquals( 4711, indices[ indices.length - 1 - i ] );
+            }
+        }
+    }
+    
+    public void testOptimizeVertexFetch()
+    {
+        final int[] original = { 5, 3, 0, 3, 5, 2, 2, 5, 0 };
+        final int numVertices = 7;
+        
+        int[] indices = original.clone();
+        int[] remap = MeshOptimizer.optimizeVertexFetch( indices, 0, indices.length, numVertices );
+        
+        // a permutation
+        boolean[] used = new boolean[ numVertices ];
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            assertFalse( used[ remap[ v ] ] );
+            used[ remap[ v ] ] = true;
+        }
+        
+        // the indices are remapped
+        for ( int i = 0; i < indices.length; i++ )
+            assertEquals( remap[ original[ i ] ], indices[ i ] );
+        
+        // in the order of first use, unreferenced vertices at the end
+        final int[] expected = { 0, 1, 2, 1, 0, 3, 3, 0, 2 };
+        for ( int i = 0; i < expected.length; i++ )
+            assertEquals( expected[ i ], indices[ i ] );
+        assertTrue( remap[ 1 ] >= 4 );
+        assertTrue( remap[ 4 ] >= 4 );
+        assertTrue( remap[ 6 ] >= 4 );
+        
+        // the data follows its vertex
+        float[] data = new float[ numVertices * 2 ];
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            data[ v * 2 + 0 ] = v;
+            data[ v * 2 + 1 ] = -v;
+        }
+        
+        float[] remapped = MeshOptimizer.remapVertexData( data, 2, remap );
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            assertEquals( (float)v, remapped[ remap[ v ] * 2 + 0 ], 0f );
+            assertEquals( (float)-v, remapped[ remap[ v ] * 2 + 1 ], 0f );
+        }
+    }
+    
+    private static GeometryDataContainer createGeometry( int[] indices, int numVertices, int indexCapacity )
+    {
+        GeometryDataContainer geom = new GeometryDataContainer( GeometryArrayType.TRIANGLES, 3, numVertices, indexCapacity );
+        
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            geom.setCoordinate( v, v, v * 2f, v * 3f );
+            geom.setNormal( v, 0f, 0f, v );
+            geom.setTextureCoordinate( 0, v, v, -v );
+        }
+        
+        int[] index = new int[ indexCapacity ];
+        System.arraycopy( indices, 0, index, 0, indices.length );
+        geom.setIndex( index );
+        
+        return ( geom );
+    }
+    
+    /**
+     * @return the vertex id (written by {@link #createGeometry(int[], int, int)}) of each rendered index.
+     */
+    private static int[] renderedVertexIds( GeometryDataContainer geom, int numIndices )
+    {
+        float[] coord = new float[ 3 ];
+        float[] normal = new float[ 3 ];
+        float[] texCoord = new float[ 2 ];
+        
+        int[] ids = new int[ numIndices ];
+        for ( int i = 0; i < numIndices; i++ )
+        {
+            final int v = geom.getIndex( i );
+            
+            geom.getCoordinate( v, coord );
+            geom.getNormal( v, normal );
+            geom.getTextureCoordinate( 0, v, texCoord );
+            
+            ids[ i ] = (int)coord[ 0 ];
+            assertEquals( coord[ 0 ] * 2f, coord[ 1 ], 0f );
+            assertEquals( coord[ 0 ] * 3f, coord[ 2 ], 0f );
+            assertEquals( coord[ 0 ], normal[ 2 ], 0f );
+            assertEquals( coord[ 0 ], texCoord[ 0 ], 0f );
+            assertEquals( -coord[ 0 ], texCoord[ 1 ], 0f );
+        }
+        
+        return ( ids );
+    }
+    
+    /**
+     * @return the triangles of vertex ids, so that they can be compared independently of the vertex order.
+     */
+    private static long[] renderedTriangles( GeometryDataContainer geom, int numIndices )
+    {
+        return ( triangleKeys( renderedVertexIds( geom, numIndices ), 0, numIndices ) );
+    }
+    
+    public void testOptimizeGeometry()
+    {
+        final int n = 10;
+        final int[] indices = createShuffledGrid( n, new Random( 23L ) );
+        
+        GeometryDataContainer geom = createGeometry( indices, ( n + 1 ) * ( n + 1 ), indices.length );
+        final long[] expected = renderedTriangles( geom, indices.length );
+        
+        MeshOptimizer.Statistics stats = MeshOptimizer.optimize( geom, false );
+        
+        assertNotNull( stats );
+        assertTrue( Arrays.equals( expected, renderedTriangles( geom, indices.length ) ) );
+        
+        // the vertices are in the order of first use now
+        int next = 0;
+        for ( int i = 0; i < indices.length; i++ )
+        {
+            assertTrue( geom.getIndex( i ) <= next );
+            if ( geom.getIndex( i ) == next )
+                next++;
+        }
+    }
+    
+    public void testOptimizeValidRangeOnly()
+    {
+        final int n = 6;
+        final int[] indices = createShuffledGrid( n, new Random( 42L ) );
+        
+        // spare index and vertex capacity, that is not rendered
+        GeometryDataContainer geom = createGeometry( indices, ( n + 1 ) * ( n + 1 ) + 5, indices.length + 9 );
+        geom.setValidVertexCount( indices.length );
+        
+        final long[] expected = renderedTriangles( geom, indices.length );
+        
+        assertNotNull( MeshOptimizer.optimize( geom, true ) );
+        assertTrue( Arrays.equals( expected, renderedTriangles( geom, indices.length ) ) );
+        
+        // the spare indices still reference the vertex, they have referenced before
+        assertEquals( 0, renderedVertexIds( geom, indices.length + 9 )[ indices.length ] );
+    }
+    
+    public void testOutOfRangeIndicesAreNotOptimized()
+    {
+        final int[] indices = { 0, 1, 2, 2, 1, 3, 3, 1, 9 };
+        
+        GeometryDataContainer geom = createGeometry( new int[ 0 ], 4, indices.length );
+        geom.setIndex( indices );
+        
+        assertNull( MeshOptimizer.optimize( geom, false ) );
+        
+        for ( int i = 0; i < indices.length; i++ )
+            assertEquals( indices[ i ], geom.getIndex( i ) );
+    }
+}
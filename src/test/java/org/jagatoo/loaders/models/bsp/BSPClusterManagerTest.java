@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.bsp;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jagatoo.loaders.models.bsp.lumps.BSPVisData;
+import org.openmali.vecmath2.Matrix4f;
+
+/**
+ * Compares the word-parallel PVS evaluation of the {@link BSPClusterManager}
+ * with the straight per-bit evaluation on random maps.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class BSPClusterManagerTest extends TestCase
+{
+    private static final int MAX_FACES = 300;
+    
+    private int numLeafs;
+    private int[] leafToCluster;
+    private int[][] leafFaces;
+    private int[][][] clusterLeafs;
+    private BSPVisData visData;
+    
+    /**
+     * Builds a random map. The BSP tree is a chain of nodes splitting along x,
+     * so that a camera at x = i is in leaf i.
+     */
+    private void buildMap( Random rnd, int numClusters, boolean withVis )
+    {
+        numLeafs = numClusters * 2 + rnd.nextInt( numClusters + 2 );
+        leafToCluster = new int[ numLeafs ];
+        leafFaces = new int[ numLeafs ][];
+        
+        int[] clusterSizes = new int[ numClusters ];
+        for ( int l = 0; l < numLeafs; l++ )
+        {
+            // Some leafs are outside of any cluster (solid).
+            leafToCluster[ l ] = ( rnd.nextInt( 8 ) == 0 ) ? -1 : rnd.nextInt( numClusters );
+            
+            leafFaces[ l ] = new int[ rnd.nextInt( 6 ) ];
+            for ( int k = 0; k < leafFaces[ l ].length; k++ )
+                leafFaces[ l ][ k ] = rnd.nextInt( MAX_FACES );
+            
+            if ( leafToCluster[ l ] >= 0 )
+                clusterSizes[ leafToCluster[ l ] ]++;
+        }
+        
+        clusterLeafs = new int[ numClusters ][][];
+        for ( int c = 0; c < numClusters; c++ )
+        {
+            if ( clusterSizes[ c ] > 0 )
+                clusterLeafs[ c ] = new int[ clusterSizes[ c ] ][];
+            clusterSizes[ c ] = 0;
+        }
+        for ( int l = 0; l < numLeafs; l++ )
+        {
+            final int c = leafToCluster[ l ];
+            if ( c >= 0 )
+                clusterLeafs[ c ][ clusterSizes[ c ]++ ] = leafFaces[ l ];
+        }
+        
+        visData = new BSPVisData();
+        visData.numOfClusters = numClusters;
+        if ( withVis )
+        {
+            // Padding bytes must be ignored.
+            visData.bytesPerCluster = ( ( numClusters + 7 ) / 8 ) + rnd.nextInt( 3 );
+            visData.pBitsets = new byte[ numClusters * visData.bytesPerCluster ];
+            rnd.nextBytes( visData.pBitsets );
+        }
+    }
+    
+    private BSPClusterManager createManager( BitSet shapeBitset )
+    {
+        final float[] planes = new float[ numLeafs * 4 ];
+        final int[] nodes = new int[ ( numLeafs - 1 ) * 3 ];
+        
+        for ( int i = 0; i < numLeafs - 1; i++ )
+        {
+            planes[ i * 4 + 0 ] = 1.0f;
+            planes[ i * 4 + 3 ] = i + 0.5f;
+            
+            nodes[ i * 3 + 0 ] = i;
+            nodes[ i * 3 + 1 ] = ( i + 1 < numLeafs - 1 ) ? ( i + 1 ) : -numLeafs;
+            nodes[ i * 3 + 2 ] = -( i + 1 );
+        }
+        
+        return ( new BSPClusterManager( visData, clusterLeafs, leafToCluster, planes, nodes, shapeBitset ) );
+    }
+    
+    /**
+     * The previous algorithm: one bit test per cluster and a set per leaf face.
+     */
+    private BitSet computeExpected( int camCluster )
+    {
+        final BitSet expected = new BitSet( MAX_FACES );
+        final boolean allVisible = ( visData.pBitsets == null ) || ( camCluster < 0 );
+        
+        for ( int c = 0; c < clusterLeafs.length; c++ )
+        {
+            if ( clusterLeafs[ c ] == null )
+                continue;
+            
+            if ( !allVisible && ( ( visData.pBitsets[ camCluster * visData.bytesPerCluster + ( c / 8 ) ] & ( 1 << ( c & 7 ) ) ) == 0 ) )
+                continue;
+            
+            for ( int j = 0; j < clusterLeafs[ c ].length; j++ )
+            {
+                for ( int k = 0; k < clusterLeafs[ c ][ j ].length; k++ )
+                    expected.set( clusterLeafs[ c ][ j ][ k ] );
+            }
+        }
+        
+        return ( expected );
+    }
+    
+    private void runRandomWalk( long seed, int numClusters, boolean withVis )
+    {
+        final Random rnd = new Random( seed );
+        
+        buildMap( rnd, numClusters, withVis );
+        
+        final BitSet shapeBitset = new BitSet( MAX_FACES );
+        final BSPClusterManager manager = createManager( shapeBitset );
+        final Matrix4f camera = new Matrix4f();
+        camera.setIdentity();
+        
+        BitSet prevExpected = null;
+        
+        for ( int step = 0; step < 200; step++ )
+        {
+            // Mostly revisits a few leafs to hit the cache, sometimes jumps anywhere to evict.
+            final int leaf = ( rnd.nextInt( 4 ) == 0 ) ? rnd.nextInt( numLeafs ) : rnd.nextInt( Math.min( numLeafs, 6 ) );
+            camera.m03( leaf );
+            
+            final boolean changed = manager.updateVisibility( camera );
+            final BitSet expected = computeExpected( leafToCluster[ leaf ] );
+            
+            assertEquals( "seed " + seed + ", step " + step + ", leaf " + leaf, expected, shapeBitset );
+            assertEquals( "seed " + seed + ", step " + step, shapeBitset.cardinality(), manager.getNumVisibleFaces() );
+            assertEquals( "seed " + seed + ", step " + step + ", changed", ( prevExpected == null ) || !expected.equals( prevExpected ), changed );
+            
+            prevExpected = expected;
+        }
+        
+        if ( numClusters > BSPClusterManager.VIS_CACHE_SIZE )
+            assertTrue( "no cache misses after warm-up", manager.getVisCacheMisses() > BSPClusterManager.VIS_CACHE_SIZE );
+        if ( numClusters > 1 )
+            assertTrue( "no cache hits", manager.getVisCacheHits() > 0L );
+    }
+    
+    public void testMatchesPerBitEvaluation()
+    {
+        final int[] clusterCounts = { 1, 7, 63, 64, 65, 130 };
+        
+        for ( int i = 0; i < clusterCounts.length; i++ )
+        {
+            for ( long seed = 0L; seed < 10L; seed++ )
+            {
+                runRandomWalk( seed * 31L + i, clusterCounts[ i ], true );
+            }
+        }
+    }
+    
+    public void testWithoutVisData()
+    {
+        for ( long seed = 0L; seed < 5L; seed++ )
+        {
+            runRandomWalk( seed, 20, false );
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.cal3d.core;
+
+import org.jagatoo.loaders.models.cal3d.buffer.Vector3fBuffer;
+import org.openmali.vecmath2.Quaternion4f;
+import org.openmali.vecmath2.Vector3f;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks, that the parallel skinning of {@link CalPhysique} matches the
+ * serial one and that failures in worker ranges reach the caller.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class CalPhysiqueTest extends TestCase
+{
+    private static final int VERTEX_COUNT = 3 * 2048 + 17;
+    
+    private int oldNumThreads;
+    
+    @Override
+    protected void setUp()
+    {
+        oldNumThreads = CalPhysique.getNumThreads();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        CalPhysique.setNumThreads( oldNumThreads );
+    }
+    
+    private static CalCoreBone createBone( String name, int parentId, Quaternion4f rotation, Vector3f translation )
+    {
+        CalCoreBone bone = new CalCoreBone( name );
+        bone.setParentId( parentId );
+        bone.setRotation( rotation );
+        bone.setTranslation( translation );
+        bone.setRotationBoneSpace( new Quaternion4f( 0f, 0f, 0f, 1f ) );
+        bone.setTranslationBoneSpace( new Vector3f( 0f, 0f, 0f ) );
+        
+        return ( bone );
+    }
+    
+    /**
+     * Builds a model with two bones and one submesh, that handles its vertex data
+     * internally (it has a spring), so that {@link CalPhysique#update()} skins it.
+     * 
+     * @param badVertex a vertex, that gets an illegal bone id, or -1
+     */
+    private static CalModel createModel( int badVertex )
+    {
+        CalCoreSkeleton skeleton = new CalCoreSkeleton();
+        
+        final float s = (float)Math.sqrt( 0.5 );
+        CalCoreBone root = createBone( "root", -1, new Quaternion4f( 0f, 0f, s, s ), new Vector3f( 1f, 2f, 3f ) );
+        skeleton.addCoreBone( root );
+        CalCoreBone child = createBone( "child", 0, new Quaternion4f( s, 0f, 0f, s ), new Vector3f( 0f, 1f, 0f ) );
+        root.addChildId( skeleton.addCoreBone( child ) );
+        skeleton.calculateState();
+        
+        CalCoreSubmesh coreSubmesh = new CalCoreSubmesh();
+        coreSubmesh.setLodCount( 1 );
+        coreSubmesh.reserve( VERTEX_COUNT, 0, 0, 1 );
+        
+        Vector3f position = new Vector3f();
+        Vector3f normal = new Vector3f();
+        for ( int i = 0; i < VERTEX_COUNT; i++ )
+        {
+            CalCoreSubmesh.VertexInfo vertex = new CalCoreSubmesh.VertexInfo();
+            
+            position.set( i * 0.01f, ( i % 7 ) - 3f, ( i % 13 ) * 0.5f );
+            normal.set( ( i % 3 ) - 1f, 1f, ( i % 5 ) * 0.25f );
+            
+            final float w = ( i % 11 ) / 10f;
+            vertex.influenceBoneIds = new int[] { 0, ( i == badVertex ) ? 99 : 1 };
+            vertex.influenceWeights = new float[] { w, 1f - w };
+            
+            coreSubmesh.setVertex( i, vertex, position, normal );
+            coreSubmesh.setPhysicalProperty( i, 0f );
+        }
+        
+        CalCoreSubmesh.Spring spring = new CalCoreSubmesh.Spring();
+        spring.vertexId0 = 0;
+        spring.vertexId1 = 1;
+        coreSubmesh.setSpring( 0, spring );
+        
+        CalCoreMesh coreMesh = new CalCoreMesh();
+        coreMesh.addCoreSubmesh( coreSubmesh );
+        
+        CalCoreModel coreModel = new CalCoreModel( "test", skeleton );
+        coreModel.addCoreMesh( "mesh", coreMesh );
+        
+        CalModel model = new CalModel( coreModel );
+        model.attachMesh( "mesh" );
+        model.getSkeleton().calculateState();
+        
+        return ( model );
+    }
+    
+    private static CalSubmesh skin( int numThreads )
+    {
+        CalPhysique.setNumThreads( numThreads );
+        
+        CalModel model = createModel( -1 );
+        model.getPhysique().update();
+        
+        return ( model.getMeshes().get( 0 ).getSubmeshes().get( 0 ) );
+    }
+    
+    private static void assertBuffersEqual( Vector3fBuffer expected, Vector3fBuffer actual )
+    {
+        for ( int i = 0; i < VERTEX_COUNT; i++ )
+        {
+            assertEquals( expected.getX( i ), actual.getX( i ), 0f );
+            assertEquals( expected.getY( i ), actual.getY( i ), 0f );
+            assertEquals( expected.getZ( i ), actual.getZ( i ), 0f );
+        }
+    }
+    
+    public void testParallelMatchesSerial()
+    {
+        CalSubmesh serial = skin( 1 );
+        CalSubmesh parallel = skin( 4 );
+        
+        assertBuffersEqual( serial.getVertexPositions(), parallel.getVertexPositions() );
+        assertBuffersEqual( serial.getVertexNormals(), parallel.getVertexNormals() );
+    }
+    
+    public void testRepeatedUpdates()
+    {
+        CalPhysique.setNumThreads( 4 );
+        
+        CalModel model = createModel( -1 );
+        CalSubmesh submesh = model.getMeshes().get( 0 ).getSubmeshes().get( 0 );
+        
+        model.getPhysique().update();
+        final float x = submesh.getVertexPositions().getX( VERTEX_COUNT - 1 );
+        
+        model.getPhysique().update();
+        assertEquals( x, submesh.getVertexPositions().getX( VERTEX_COUNT - 1 ), 0f );
+    }
+    
+    public void testWorkerFailureReachesCaller()
+    {
+        CalPhysique.setNumThreads( 4 );
+        
+        // the last vertex is skinned by a worker thread
+        CalModel model = createModel( VERTEX_COUNT - 1 );
+        
+        try
+        {
+            model.getPhysique().update();
+            fail( "The failure of a worker range has been swallowed." );
+        }
+        catch ( ArrayIndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.md5;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.jagatoo.loaders.models._util.ModelCache;
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+import org.jagatoo.loaders.models._util.ModelCacheWriter;
+
+/**
+ * Writes {@link MD5MeshData} to a {@link ModelCache} entry and reads it back.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class MD5MeshDataTest extends TestCase
+{
+    private File source;
+    private URL url;
+    private ModelCache cache;
+    
+    @Override
+    protected void setUp() throws IOException
+    {
+        source = File.createTempFile( "model", ".md5mesh" );
+        FileOutputStream out = new FileOutputStream( source );
+        out.write( "MD5Version 10\n".getBytes( "US-ASCII" ) );
+        out.close();
+        
+        url = source.toURI().toURL();
+        cache = new ModelCache();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        cache.invalidate( url, MD5MeshData.LOADER_ID );
+        source.delete();
+    }
+    
+    private static MD5MeshData createData()
+    {
+        MD5MeshData.Mesh body = new MD5MeshData.Mesh( "body", "models/body.tga", 4, 2, 5 );
+        for ( int i = 0; i < body.texCoords.length; i++ )
+            body.texCoords[i] = i * 0.125f;
+        for ( int i = 0; i < 4; i++ )
+        {
+            body.firstWeights[i] = i;
+            body.weightCounts[i] = ( i == 3 ) ? 2 : 1;
+        }
+        body.triangles[0] = 0; body.triangles[1] = 1; body.triangles[2] = 2;
+        body.triangles[3] = 2; body.triangles[4] = 3; body.triangles[5] = 0;
+        for ( int i = 0; i < 5; i++ )
+        {
+            body.weightBones[i] = i % 2;
+            body.weightValues[i] = ( i == 3 || i == 4 ) ? 0.5f : 1.0f;
+            body.weightOffsets[i * 3 + 0] = i;
+            body.weightOffsets[i * 3 + 1] = -i;
+            body.weightOffsets[i * 3 + 2] = i * 0.5f;
+        }
+        
+        // a mesh without a shader line
+        MD5MeshData.Mesh empty = new MD5MeshData.Mesh( "", null, 0, 0, 0 );
+        
+        return ( new MD5MeshData( new String[] { "origin", "spine" }, new float[] { 0f, 0f, 0f, 0f, 1f, 2f }, new float[] { 0f, 0f, 0f, 0.5f, -0.5f, 0.5f }, new MD5MeshData.Mesh[] { body, empty } ) );
+    }
+    
+    private static void assertEquals( float[] expected, float[] actual )
+    {
+        assertEquals( expected.length, actual.length );
+        for ( int i = 0; i < expected.length; i++ )
+            assertEquals( expected[i], actual[i], 0f );
+    }
+    
+    private static void assertEquals( int[] expected, int[] actual )
+    {
+        assertEquals( expected.length, actual.length );
+        for ( int i = 0; i < expected.length; i++ )
+            assertEquals( expected[i], actual[i] );
+    }
+    
+    private void write( MD5MeshData data ) throws IOException
+    {
+        ModelCacheWriter writer = cache.create( cache.stamp( url ), MD5MeshData.LOADER_ID, MD5MeshData.VERSION );
+        assertNotNull( writer );
+        
+        data.write( writer );
+        writer.close();
+    }
+    
+    public void testRoundTrip() throws IOException
+    {
+        MD5MeshData expected = createData();
+        write( expected );
+        
+        ModelCacheReader reader = cache.open( url, MD5MeshData.LOADER_ID, MD5MeshData.VERSION );
+        assertNotNull( reader );
+        
+        MD5MeshData actual;
+        try
+        {
+            actual = MD5MeshData.read( reader );
+        }
+        finally
+        {
+            reader.close();
+        }
+        
+        assertEquals( expected.jointNames.length, actual.jointNames.length );
+        for ( int i = 0; i < expected.jointNames.length; i++ )
+            assertEquals( expected.jointNames[i], actual.jointNames[i] );
+        assertEquals( expected.jointTranslations, actual.jointTranslations );
+        assertEquals( expected.jointRotations, actual.jointRotations );
+        
+        assertEquals( expected.meshes.length, actual.meshes.length );
+        for ( int m = 0; m < expected.meshes.length; m++ )
+        {
+            MD5MeshData.Mesh e = expected.meshes[m];
+            MD5MeshData.Mesh a = actual.meshes[m];
+            
+            assertEquals( e.name, a.name );
+            assertEquals( e.shaderName, a.shaderName );
+            assertEquals( e.numVertices, a.numVertices );
+            assertEquals( e.texCoords, a.texCoords );
+            assertEquals( e.firstWeights, a.firstWeights );
+            assertEquals( e.weightCounts, a.weightCounts );
+            assertEquals( e.triangles, a.triangles );
+            assertEquals( e.weightBones, a.weightBones );
+            assertEquals( e.weightValues, a.weightValues );
+            assertEquals( e.weightOffsets, a.weightOffsets );
+        }
+    }
+    
+    public void testInconsistentEntryIsRejected() throws IOException
+    {
+        MD5MeshData valid = createData();
+        MD5MeshData.Mesh body = valid.meshes[0];
+        
+        // one texture coordinate too few for the declared vertex count
+        MD5MeshData.Mesh broken = new MD5MeshData.Mesh( body.name, body.shaderName, body.numVertices, new float[ body.texCoords.length - 2 ], body.firstWeights, body.weightCounts, body.triangles, body.weightBones, body.weightValues, body.weightOffsets );
+        write( new MD5MeshData( valid.jointNames, valid.jointTranslations, valid.jointRotations, new MD5MeshData.Mesh[] { broken } ) );
+        
+        ModelCacheReader reader = cache.open( url, MD5MeshData.LOADER_ID, MD5MeshData.VERSION );
+        assertNotNull( reader );
+        try
+        {
+            MD5MeshData.read( reader );
+            fail( "IOException expected" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+    
+    public void testVersionMismatchIsNotOpened() throws IOException
+    {
+        write( createData() );
+        
+        assertNull( cache.open( url, MD5MeshData.LOADER_ID, MD5MeshData.VERSION + 1 ) );
+    }
+}
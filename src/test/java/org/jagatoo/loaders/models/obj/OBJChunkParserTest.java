@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the byte level float and index parsing of the {@link OBJChunkParser}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class OBJChunkParserTest extends TestCase
+{
+    private static byte[] bytes( String s ) throws UnsupportedEncodingException
+    {
+        return ( s.getBytes( "US-ASCII" ) );
+    }
+    
+    private static OBJChunkParser parse( String s ) throws UnsupportedEncodingException
+    {
+        byte[] data = bytes( s );
+        
+        OBJChunkParser parser = new OBJChunkParser( data, 0, data.length, null, false );
+        parser.parse();
+        
+        return ( parser );
+    }
+    
+    /**
+     * The fast path may round twice (decimal to double to float), so it is
+     * allowed to be one ulp off.
+     */
+    private static void assertParsed( String token, float actual )
+    {
+        final float expected = Float.parseFloat( token );
+        
+        if ( Float.isNaN( expected ) || Float.isInfinite( expected ) )
+            assertEquals( token, Float.floatToIntBits( expected ), Float.floatToIntBits( actual ) );
+        else
+            assertEquals( token, expected, actual, Math.ulp( expected ) );
+    }
+    
+    private static void assertParsedVertex( String x, String y, String z ) throws UnsupportedEncodingException
+    {
+        OBJChunkParser parser = parse( "v " + x + " " + y + "\t" + z + "\n" );
+        
+        assertEquals( 1, parser.vertexData.getNumVertices() );
+        float[] v = parser.vertexData.getVertices();
+        assertParsed( x, v[ 0 ] );
+        assertParsed( y, v[ 1 ] );
+        assertParsed( z, v[ 2 ] );
+    }
+    
+    public void testFixedFloats() throws UnsupportedEncodingException
+    {
+        assertParsedVertex( "0", "-0.0", "+1.5" );
+        assertParsedVertex( "1.", ".5", "-.25" );
+        assertParsedVertex( "123456.789", "0.000001", "-99999999" );
+        assertParsedVertex( "1e3", "2.5E-3", "-7e+2" );
+        assertParsedVertex( "1e-30", "3.4e38", "1.4e-45" );
+        assertParsedVertex( "0.1234567890123456789012", "12345678901234567890", "0.30000000000000004" );
+        assertParsedVertex( "NaN", "Infinity", "-Infinity" );
+    }
+    
+    public void testRandomFloats() throws UnsupportedEncodingException
+    {
+        Random rnd = new Random( 4711L );
+        
+        for ( int i = 0; i < 20000; i++ )
+        {
+            final float f = ( rnd.nextFloat() - 0.5f ) * (float)Math.pow( 10.0, rnd.nextInt( 13 ) - 6 );
+            
+            final String x = Float.toString( f );
+            final String y = String.format( Locale.US, "%.6f", f );
+            final String z = String.format( Locale.US, "%.9e", f );
+            
+            assertParsedVertex( x, y, z );
+        }
+    }
+    
+    public void testMissingAndTrailing() throws UnsupportedEncodingException
+    {
+        OBJChunkParser parser = parse( "v 1 2 # no z\nvt 0.5\r\nvn 0 0 1 1\n" );
+        
+        float[] v = parser.vertexData.getVertices();
+        assertEquals( 1f, v[ 0 ], 0f );
+        assertEquals( 2f, v[ 1 ], 0f );
+        assertEquals( 0f, v[ 2 ], 0f );
+        
+        float[] t = parser.vertexData.getTexCoords();
+        assertEquals( 1, parser.vertexData.getNumTexCoords() );
+        assertEquals( 0.5f, t[ 0 ], 0f );
+        assertEquals( 0f, t[ 1 ], 0f );
+        
+        float[] n = parser.vertexData.getNormals();
+        assertEquals( 1, parser.vertexData.getNumNormals() );
+        assertEquals( 1f, n[ 2 ], 0f );
+    }
+    
+    public void testAbsoluteIndices() throws UnsupportedEncodingException
+    {
+        OBJChunkParser parser = parse( "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvn 0 0 1\nf 1/1/1 2//1 3/1\n" );
+        
+        assertEquals( 1, parser.numFaces );
+        assertEquals( 3, parser.faceSizes[ 0 ] );
+        
+        final int[] expected = { 0, 0, 0, 1, -1, 0, 2, 0, -1 };
+        for ( int i = 0; i < expected.length; i++ )
+            assertEquals( expected[ i ], OBJChunkParser.resolveIndex( parser.corners[ i ], 0 ) );
+    }
+    
+    public void testRelativeIndicesAcrossChunks() throws UnsupportedEncodingException
+    {
+        final String first = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvn 0 0 1\n";
+        final String second = "v 1 1 0\nv 2 1 0\nvt 1 1\nf -5/-3/-1 -2/-1/-1 -1/-2/-1\nv 3 3 3\nf -1 -4 1\n";
+        
+        byte[] data = bytes( first + second );
+        
+        OBJChunkParser chunk0 = new OBJChunkParser( data, 0, first.length(), null, false );
+        OBJChunkParser chunk1 = new OBJChunkParser( data, first.length(), data.length, null, false );
+        chunk0.parse();
+        chunk1.parse();
+        
+        assertEquals( 0, chunk0.numFaces );
+        assertEquals( 2, chunk1.numFaces );
+        
+        // the bases are the element counts of the preceding chunk
+        final int vertexBase = chunk0.vertexData.getNumVertices();
+        final int texCoordBase = chunk0.vertexData.getNumTexCoords();
+        final int normalBase = chunk0.vertexData.getNumNormals();
+        
+        final int[] expected =
+        {
+            0, 0, 0,   3, 2, 0,   4, 1, 0,
+            5, -1, -1,   2, -1, -1,   0, -1, -1,
+        };
+        
+        for ( int c = 0; c < expected.length; c += 3 )
+        {
+            assertEquals( "vertex " + c / 3, expected[ c + 0 ], OBJChunkParser.resolveIndex( chunk1.corners[ c + 0 ], vertexBase ) );
+            assertEquals( "texCoord " + c / 3, expected[ c + 1 ], OBJChunkParser.resolveIndex( chunk1.corners[ c + 1 ], texCoordBase ) );
+            assertEquals( "normal " + c / 3, expected[ c + 2 ], OBJChunkParser.resolveIndex( chunk1.corners[ c + 2 ], normalBase ) );
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.loaders.models.obj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jagatoo.loaders.models._util.ModelCache;
+import org.jagatoo.loaders.models._util.ModelCacheReader;
+
+/**
+ * Loads an OBJ file through the {@link ModelCache} and compares the cached
+ * prototype with the parsed one.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class OBJPrototypeCacheTest extends TestCase
+{
+    private static final String MODEL =
+        "# two groups sharing one vertex pool\n" +
+        "v 0 0 0\n" +
+        "v 1 0 0\n" +
+        "v 1 1 0\n" +
+        "v 0 1 0\n" +
+        "v 0.5 0.5 1\n" +
+        "vt 0 0\n" +
+        "vt 1 0\n" +
+        "vt 1 1\n" +
+        "vt 0 1\n" +
+        "vn 0 0 1\n" +
+        "vn 0 0 -1\n" +
+        "g bottom\n" +
+        "f 1/1/2 4/4/2 3/3/2 2/2/2\n" +
+        "g top\n" +
+        "f 1/1/1 2/2/1 5/3/1\n" +
+        "f -4/2/1 -3/3/1 -1/4/1\n" +
+        "f 3//1 4//1 5//1\n";
+    
+    private File dir;
+    private File objFile;
+    private URL url;
+    private ModelCache cache;
+    
+    @Override
+    protected void setUp() throws IOException
+    {
+        dir = File.createTempFile( "objcache", "" );
+        dir.delete();
+        dir.mkdirs();
+        
+        objFile = new File( dir, "model.obj" );
+        FileOutputStream out = new FileOutputStream( objFile );
+        out.write( MODEL.getBytes( "US-ASCII" ) );
+        out.close();
+        
+        url = objFile.toURI().toURL();
+        cache = new ModelCache();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if ( files != null )
+        {
+            for ( int i = 0; i < files.length; i++ )
+                files[i].delete();
+        }
+        
+        dir.delete();
+    }
+    
+    private static void assertEquals( float[] expected, int expectedLength, float[] actual, int actualLength )
+    {
+        assertEquals( expectedLength, actualLength );
+        
+        for ( int i = 0; i < expectedLength; i++ )
+            assertEquals( expected[i], actual[i], 0f );
+    }
+    
+    private static void assertSameFaces( OBJFaceList expected, OBJFaceList actual )
+    {
+        assertEquals( expected.getNumFaces(), actual.getNumFaces() );
+        assertEquals( expected.getNumCorners(), actual.getNumCorners() );
+        assertEquals( expected.getNumTriangles(), actual.getNumTriangles() );
+        assertEquals( expected.texturesUsed(), actual.texturesUsed() );
+        assertEquals( expected.normalsUsed(), actual.normalsUsed() );
+        
+        for ( int f = 0; f < expected.getNumFaces(); f++ )
+        {
+            assertEquals( expected.getFaceStart( f ), actual.getFaceStart( f ) );
+            assertEquals( expected.getFaceSize( f ), actual.getFaceSize( f ) );
+            
+            OBJMaterial expectedMat = expected.getMaterial( f );
+            OBJMaterial actualMat = actual.getMaterial( f );
+            assertEquals( expectedMat == null, actualMat == null );
+            if ( expectedMat != null )
+                assertEquals( expectedMat.getName(), actualMat.getName() );
+        }
+        
+        for ( int c = 0; c < expected.getNumCorners(); c++ )
+        {
+            assertEquals( expected.getVertexIndex( c ), actual.getVertexIndex( c ) );
+            assertEquals( expected.getTexCoordIndex( c ), actual.getTexCoordIndex( c ) );
+            assertEquals( expected.getNormalIndex( c ), actual.getNormalIndex( c ) );
+        }
+    }
+    
+    private static void assertSameGroup( OBJGroup expected, OBJGroup actual )
+    {
+        assertEquals( expected.getName(), actual.getName() );
+        assertSameFaces( expected, actual );
+        
+        List<OBJGroup> expectedChildren = expected.getChildren();
+        List<OBJGroup> actualChildren = actual.getChildren();
+        assertEquals( expectedChildren.size(), actualChildren.size() );
+        
+        for ( int i = 0; i < expectedChildren.size(); i++ )
+            assertSameGroup( expectedChildren.get( i ), actualChildren.get( i ) );
+    }
+    
+    private static void assertSamePrototype( OBJModelPrototype expected, OBJModelPrototype actual )
+    {
+        OBJVertexData expectedData = expected.getTopGroup().getVertexData();
+        OBJVertexData actualData = actual.getTopGroup().getVertexData();
+        
+        assertEquals( expectedData.getVertices(), expectedData.getNumVertices() * 3, actualData.getVertices(), actualData.getNumVertices() * 3 );
+        assertEquals( expectedData.getNormals(), expectedData.getNumNormals() * 3, actualData.getNormals(), actualData.getNumNormals() * 3 );
+        assertEquals( expectedData.getTexCoords(), expectedData.getNumTexCoords() * 2, actualData.getTexCoords(), actualData.getNumTexCoords() * 2 );
+        
+        assertEquals( expected.getMaterialMap().keySet(), actual.getMaterialMap().keySet() );
+        
+        assertSameGroup( expected.getTopGroup(), actual.getTopGroup() );
+    }
+    
+    public void testCachedEqualsParsed() throws IOException
+    {
+        OBJModelPrototype parsed = OBJPrototypeLoader.load( url, null, null );
+        
+        OBJModelPrototype first = OBJPrototypeLoader.load( url, null, cache );
+        assertSamePrototype( parsed, first );
+        assertTrue( cache.getCacheFile( url, OBJPrototypeCache.LOADER_ID ).isFile() );
+        
+        // read the entry directly, so that a silent re-parse cannot hide a broken cache
+        ModelCacheReader reader = cache.open( url, OBJPrototypeCache.LOADER_ID, OBJPrototypeCache.VERSION );
+        assertNotNull( reader );
+        try
+        {
+            assertTrue( OBJPrototypeCache.readSettings( null, reader ) );
+            assertSamePrototype( parsed, OBJPrototypeCache.read( reader ) );
+        }
+        finally
+        {
+            reader.close();
+        }
+        
+        assertSamePrototype( parsed, OBJPrototypeLoader.load( url, null, cache ) );
+    }
+    
+    public void testCorruptCacheFallsBackToParsing() throws IOException
+    {
+        OBJModelPrototype parsed = OBJPrototypeLoader.load( url, null, null );
+        
+        OBJPrototypeLoader.load( url, null, cache );
+        File cacheFile = cache.getCacheFile( url, OBJPrototypeCache.LOADER_ID );
+        final long length = cacheFile.length();
+        
+        // cut off the body, but keep the (valid) header
+        RandomAccessFile raf = new RandomAccessFile( cacheFile, "rw" );
+        raf.setLength( length - 24 );
+        raf.close();
+        
+        assertSamePrototype( parsed, OBJPrototypeLoader.load( url, null, cache ) );
+        
+        // the corrupt entry has been rewritten
+        assertEquals( length, cacheFile.length() );
+        
+        // garbage instead of a cache file
+        FileOutputStream out = new FileOutputStream( cacheFile );
+        out.write( new byte[] { 1, 2, 3, 4, 5, 6, 7 } );
+        out.close();
+        
+        assertSamePrototype( parsed, OBJPrototypeLoader.load( url, null, cache ) );
+        assertEquals( length, cacheFile.length() );
+    }
+    
+    public void testGeomOffsetIsPartOfTheEntry() throws IOException
+    {
+        final float[] offset = new float[] { 1f, 2f, 3f };
+        
+        OBJModelPrototype parsed = OBJPrototypeLoader.load( url, offset, null );
+        
+        OBJPrototypeLoader.load( url, null, cache );
+        
+        assertSamePrototype( parsed, OBJPrototypeLoader.load( url, offset, cache ) );
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks, that the asynchronous writer thread survives failing log messages.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class LogManagerAsyncTest extends TestCase
+{
+    private static final LogChannel CHANNEL = new LogChannel( "AsyncTest" );
+    
+    private static class CollectingLog implements LogInterface
+    {
+        private final List<String> lines = new ArrayList<String>();
+        
+        public synchronized void print( LogChannel channel, int logLevel, String message )
+        {
+            lines.add( message );
+        }
+        
+        public synchronized void println( LogChannel channel, int logLevel, String message )
+        {
+            lines.add( message );
+        }
+        
+        public synchronized boolean contains( String message )
+        {
+            for ( int i = 0; i < lines.size(); i++ )
+            {
+                if ( lines.get( i ).endsWith( message ) )
+                    return ( true );
+            }
+            
+            return ( false );
+        }
+        
+        public int getLogLevel()
+        {
+            return ( LogLevel.REGULAR );
+        }
+        
+        public int getChannelFilter()
+        {
+            return ( CHANNEL.getID() );
+        }
+        
+        public void flush()
+        {
+        }
+        
+        public void close()
+        {
+        }
+    }
+    
+    private static final Object BAD_MESSAGE = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            throw new IllegalStateException( "broken toString()" );
+        }
+    };
+    
+    public void testWriterSurvivesFailingMessage() throws InterruptedException
+    {
+        final LogManager logMgr = LogManager.getInstance();
+        final CollectingLog log = new CollectingLog();
+        
+        logMgr.registerLog( log );
+        logMgr.setAsynchronous( true );
+        
+        try
+        {
+            final long failedBefore = logMgr.getFailedWritesCount();
+            
+            logMgr.println( CHANNEL, LogLevel.REGULAR, new Object[] { BAD_MESSAGE } );
+            logMgr.println( CHANNEL, LogLevel.REGULAR, new Object[] { "after the failure" } );
+            
+            final long timeout = System.currentTimeMillis() + 5000L;
+            while ( !log.contains( "after the failure" ) && ( System.currentTimeMillis() < timeout ) )
+            {
+                Thread.sleep( 10L );
+            }
+            
+            assertTrue( log.contains( "after the failure" ) );
+            assertTrue( logMgr.isAsynchronous() );
+            assertEquals( failedBefore + 1L, logMgr.getFailedWritesCount() );
+            
+            // The writer must still be draining.
+            logMgr.println( CHANNEL, LogLevel.REGULAR, new Object[] { "still alive" } );
+        }
+        finally
+        {
+            logMgr.setAsynchronous( false );
+            logMgr.deregisterLog( log );
+        }
+        
+        assertTrue( log.contains( "still alive" ) );
+    }
+}
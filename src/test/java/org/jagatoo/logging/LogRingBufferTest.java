@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the ring buffer's wrap-around and overflow policies.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class LogRingBufferTest extends TestCase
+{
+    private static final LogChannel CHANNEL = new LogChannel( "RingBufferTest" );
+    
+    private static class Collector implements LogRingBuffer.Consumer
+    {
+        final List<Object> messages = new ArrayList<Object>();
+        
+        public void consume( LogChannel channel, int logLevel, Object[] message, boolean appendNL, int indentation, long timestamp )
+        {
+            messages.add( message[ 0 ] );
+        }
+    }
+    
+    private static boolean publish( LogRingBuffer rb, int logLevel, Object message, LogOverflowPolicy policy )
+    {
+        return ( rb.publish( CHANNEL, logLevel, new Object[] { message }, true, 0, 0L, policy ) );
+    }
+    
+    public void testWrapAround()
+    {
+        final LogRingBuffer rb = new LogRingBuffer( 4 );
+        final Collector collector = new Collector();
+        
+        int next = 0;
+        for ( int round = 0; round < 10; round++ )
+        {
+            for ( int i = 0; i < 3; i++ )
+                assertTrue( publish( rb, LogLevel.REGULAR, Integer.valueOf( next++ ), LogOverflowPolicy.DROP ) );
+            
+            assertEquals( 3, rb.drain( collector, 100 ) );
+            assertTrue( rb.isEmpty() );
+        }
+        
+        assertEquals( next, collector.messages.size() );
+        for ( int i = 0; i < next; i++ )
+            assertEquals( Integer.valueOf( i ), collector.messages.get( i ) );
+    }
+    
+    public void testDrainLimit()
+    {
+        final LogRingBuffer rb = new LogRingBuffer( 8 );
+        final Collector collector = new Collector();
+        
+        for ( int i = 0; i < 6; i++ )
+            publish( rb, LogLevel.REGULAR, Integer.valueOf( i ), LogOverflowPolicy.DROP );
+        
+        assertEquals( 4, rb.drain( collector, 4 ) );
+        assertEquals( 2, rb.drain( collector, 4 ) );
+        assertEquals( 0, rb.drain( collector, 4 ) );
+    }
+    
+    public void testDropPolicy()
+    {
+        final LogRingBuffer rb = new LogRingBuffer( 4 );
+        
+        for ( int i = 0; i < 4; i++ )
+            assertTrue( publish( rb, LogLevel.REGULAR, Integer.valueOf( i ), LogOverflowPolicy.DROP ) );
+        
+        assertFalse( publish( rb, LogLevel.REGULAR, "dropped", LogOverflowPolicy.DROP ) );
+        assertEquals( 1L, rb.getDroppedMessagesCount() );
+        assertEquals( 0L, rb.getBlockedPublishesCount() );
+    }
+    
+    public void testDropVerbosePolicy()
+    {
+        final LogRingBuffer rb = new LogRingBuffer( 2 );
+        final Collector collector = new Collector();
+        
+        publish( rb, LogLevel.REGULAR, "a", LogOverflowPolicy.DROP_VERBOSE );
+        publish( rb, LogLevel.REGULAR, "b", LogOverflowPolicy.DROP_VERBOSE );
+        
+        // debug output is dropped at once
+        assertFalse( publish( rb, LogLevel.DEBUG, "debug", LogOverflowPolicy.DROP_VERBOSE ) );
+        assertEquals( 1L, rb.getDroppedMessagesCount() );
+        
+        // regular output waits for the consumer
+        final Thread consumer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep( 50L );
+                }
+                catch ( InterruptedException e )
+                {
+                }
+                
+                rb.drain( collector, 1 );
+            }
+        };
+        consumer.start();
+        
+        assertTrue( publish( rb, LogLevel.ERROR, "error", LogOverflowPolicy.DROP_VERBOSE ) );
+        assertEquals( 1L, rb.getBlockedPublishesCount() );
+        assertEquals( 1L, rb.getDroppedMessagesCount() );
+    }
+    
+    public void testClosedBufferReleasesBlockedPublisher() throws InterruptedException
+    {
+        final LogRingBuffer rb = new LogRingBuffer( 2 );
+        
+        publish( rb, LogLevel.REGULAR, "a", LogOverflowPolicy.BLOCK );
+        publish( rb, LogLevel.REGULAR, "b", LogOverflowPolicy.BLOCK );
+        
+        final boolean[] result = { true };
+        final Thread publisher = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                result[ 0 ] = publish( rb, LogLevel.REGULAR, "c", LogOverflowPolicy.BLOCK );
+            }
+        };
+        publisher.start();
+        
+        Thread.sleep( 50L );
+        rb.close();
+        publisher.join( 5000L );
+        
+        assertFalse( publisher.isAlive() );
+        assertFalse( result[ 0 ] );
+        // not dropped, the caller writes it itself
+        assertEquals( 0L, rb.getDroppedMessagesCount() );
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2007-2009, JAGaToo Project Group all rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.jagatoo.logging;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the histograms and the trace export of the {@link ProfileTimer}.
+ * 
+ * @author Marvin Froehlich (aka Qudus)
+ */
+public class ProfileTimerTest extends TestCase
+{
+    private static final LogChannel CHANNEL = new LogChannel( "ProfileTest" );
+    
+    @Override
+    protected void setUp()
+    {
+        ProfileTimer.setProfilingEnabled( true );
+        ProfileTimer.setTraceCapacity( 16 );
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        ProfileTimer.setTraceCapacity( 0 );
+        ProfileTimer.setProfilingEnabled( false );
+    }
+    
+    public void testUnknownSectionHasNoHistogram()
+    {
+        assertNull( ProfileTimer.getHistogram( "ProfileTimerTest::neverProfiled" ) );
+        // ...and the lookup doesn't register it.
+        assertNull( ProfileTimer.getHistogram( "ProfileTimerTest::neverProfiled" ) );
+    }
+    
+    public void testHistogram()
+    {
+        for ( int i = 0; i < 5; i++ )
+        {
+            ProfileTimer.startProfile( CHANNEL, "ProfileTimerTest::section" );
+            ProfileTimer.endProfile();
+        }
+        
+        ProfileHistogram histogram = ProfileTimer.getHistogram( "ProfileTimerTest::section" );
+        assertNotNull( histogram );
+        assertEquals( 5L, histogram.getCount() );
+    }
+    
+    public void testChromeTrace() throws IOException
+    {
+        ProfileTimer.startProfile( CHANNEL, "ProfileTimerTest::traced" );
+        ProfileTimer.endProfile();
+        
+        StringWriter out = new StringWriter();
+        ProfileTimer.exportChromeTrace( out );
+        
+        final String json = out.toString();
+        assertTrue( json.contains( "\"name\":\"ProfileTimerTest::traced\"" ) );
+        assertTrue( json.contains( "\"ph\":\"X\"" ) );
+    }
+}